@@ -0,0 +1,100 @@
+package com.bentham.voiceagent.loadgen;
+
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator for concurrent STOMP voice sessions.
+ *
+ * <p>Opens the requested number of sessions against {@code /ws}, ramping them up evenly, and
+ * drives each through start, real-time paced PCM audio and stop. Prints latency percentiles,
+ * throughput and error counts at the end, and exits with status 1 if the session error rate
+ * exceeds {@code --max-error-rate}, so it can gate a release pipeline.</p>
+ *
+ * <p>To run offline, start the application with the {@code loadtest} profile:</p>
+ * <pre>
+ * ./gradlew bootRun --args='--spring.profiles.active=loadtest'
+ * ./gradlew :load-generator:run --args='--sessions=200 --duration=60 --fixtures=/path/to/wavs'
+ * </pre>
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        LoadGeneratorOptions options = LoadGeneratorOptions.parse(args);
+        List<PcmFixture> fixtures = options.getFixtures() == null
+                ? List.of(PcmFixture.synthetic(options.getSampleRate(), 10))
+                : PcmFixture.loadDirectory(options.getFixtures(), options.getSampleRate());
+
+        System.out.printf("Running %d sessions for %d s each against %s (%d fixture(s), %d ms frames)%n",
+                options.getSessions(), options.getDurationSeconds(), options.getUrl(),
+                fixtures.size(), options.getFrameMillis());
+
+        LoadStatistics statistics = new LoadStatistics();
+        WebSocketStompClient stompClient = createStompClient();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+        long started = System.nanoTime();
+        try {
+            List<CompletableFuture<Void>> sessions = new ArrayList<>();
+            long rampStepNanos = options.getSessions() > 1
+                    ? TimeUnit.SECONDS.toNanos(options.getRampUpSeconds()) / (options.getSessions() - 1)
+                    : 0;
+            for (int i = 0; i < options.getSessions(); i++) {
+                VoiceSessionDriver driver = new VoiceSessionDriver(i, stompClient, options,
+                        fixtures.get(i % fixtures.size()), statistics, scheduler);
+                CompletableFuture<Void> session = new CompletableFuture<>();
+                scheduler.schedule(() -> driver.run().whenComplete((ignored, error) -> session.complete(null)),
+                        i * rampStepNanos, TimeUnit.NANOSECONDS);
+                sessions.add(session);
+            }
+
+            long deadlineSeconds = options.getRampUpSeconds() + options.getDurationSeconds()
+                    + 2L * options.getStopTimeoutSeconds();
+            CompletableFuture.allOf(sessions.toArray(new CompletableFuture[0]))
+                    .orTimeout(deadlineSeconds, TimeUnit.SECONDS)
+                    .exceptionally(error -> null)
+                    .join();
+        } finally {
+            scheduler.shutdownNow();
+            stompClient.stop();
+        }
+
+        statistics.report(System.out, options.getSessions(), Duration.ofNanos(System.nanoTime() - started));
+        if (options.getHistogramFile() != null) {
+            statistics.writeHistograms(options.getHistogramFile());
+            System.out.println("Histograms written to " + options.getHistogramFile());
+        }
+
+        double errorRate = statistics.sessionErrorRate(options.getSessions());
+        if (errorRate > options.getMaxErrorRate()) {
+            System.out.printf("FAILED: session error rate %.2f%% exceeds %.2f%%%n",
+                    errorRate * 100, options.getMaxErrorRate() * 100);
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    private static WebSocketStompClient createStompClient() {
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new CompositeMessageConverter(List.of(
+                new ByteArrayMessageConverter(),
+                new StringMessageConverter(),
+                new MappingJackson2MessageConverter())));
+        // Heartbeats would need a task scheduler and add nothing to a bounded run
+        stompClient.setDefaultHeartbeat(new long[] {0, 0});
+        return stompClient;
+    }
+}
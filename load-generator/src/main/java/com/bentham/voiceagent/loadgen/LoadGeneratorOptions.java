@@ -0,0 +1,162 @@
+package com.bentham.voiceagent.loadgen;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options for the load generator.
+ * Options are given as {@code --name=value}; every option has a default so the generator
+ * can be pointed at a locally running application with no arguments at all.
+ */
+public class LoadGeneratorOptions {
+
+    private String url = "ws://localhost:8080/api/ws/websocket";
+    private int sessions = 10;
+    private int durationSeconds = 30;
+    private int rampUpSeconds = 5;
+    private int frameMillis = 100;
+    private int sampleRate = 16000;
+    private int stopTimeoutSeconds = 10;
+    private double maxErrorRate = 0.01;
+    private Path fixtures;
+    private Path histogramFile;
+
+    /**
+     * Parses command line arguments.
+     *
+     * @param args the arguments, each of the form {@code --name=value}
+     * @return the parsed options
+     * @throws IllegalArgumentException if an argument is malformed or unknown
+     */
+    public static LoadGeneratorOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        LoadGeneratorOptions options = new LoadGeneratorOptions();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String value = entry.getValue();
+            switch (entry.getKey()) {
+                case "url" -> options.url = value;
+                case "sessions" -> options.sessions = positive(entry.getKey(), value);
+                case "duration" -> options.durationSeconds = positive(entry.getKey(), value);
+                case "ramp-up" -> options.rampUpSeconds = Integer.parseInt(value);
+                case "frame-ms" -> options.frameMillis = positive(entry.getKey(), value);
+                case "sample-rate" -> options.sampleRate = positive(entry.getKey(), value);
+                case "stop-timeout" -> options.stopTimeoutSeconds = positive(entry.getKey(), value);
+                case "max-error-rate" -> options.maxErrorRate = Double.parseDouble(value);
+                case "fixtures" -> options.fixtures = Path.of(value);
+                case "histogram-file" -> options.histogramFile = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: --" + entry.getKey());
+            }
+        }
+        return options;
+    }
+
+    private static int positive(String name, String value) {
+        int parsed = Integer.parseInt(value);
+        if (parsed <= 0) {
+            throw new IllegalArgumentException("--" + name + " must be positive but was " + parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Gets the raw WebSocket URL of the STOMP endpoint.
+     * The application registers {@code /ws} with SockJS, which also serves plain WebSocket
+     * clients at {@code /ws/websocket}; binary audio frames need the plain transport.
+     *
+     * @return the WebSocket URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the number of concurrent sessions to open.
+     *
+     * @return the session count
+     */
+    public int getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Gets how long each session streams audio for.
+     *
+     * @return the streaming duration in seconds
+     */
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * Gets the period over which session starts are spread.
+     *
+     * @return the ramp-up period in seconds
+     */
+    public int getRampUpSeconds() {
+        return rampUpSeconds;
+    }
+
+    /**
+     * Gets the duration of audio carried by each frame sent.
+     *
+     * @return the frame duration in milliseconds
+     */
+    public int getFrameMillis() {
+        return frameMillis;
+    }
+
+    /**
+     * Gets the sample rate of the PCM audio sent.
+     *
+     * @return the sample rate in Hz
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Gets how long to wait for the reply to a session's start, and for the final transcription
+     * after stopping it.
+     *
+     * @return the stop timeout in seconds
+     */
+    public int getStopTimeoutSeconds() {
+        return stopTimeoutSeconds;
+    }
+
+    /**
+     * Gets the session error rate above which the run is reported as failed.
+     *
+     * @return the maximum error rate (0.0 to 1.0)
+     */
+    public double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    /**
+     * Gets the directory of WAV fixtures, if any.
+     *
+     * @return the fixture directory, or null to use synthetic audio
+     */
+    public Path getFixtures() {
+        return fixtures;
+    }
+
+    /**
+     * Gets the file the full latency histograms are written to, if any.
+     *
+     * @return the histogram file, or null to skip writing it
+     */
+    public Path getHistogramFile() {
+        return histogramFile;
+    }
+}
@@ -0,0 +1,174 @@
+package com.bentham.voiceagent.loadgen;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms, throughput counters and error counts for a load-test run.
+ * All recording methods are thread-safe; latencies are recorded in microseconds.
+ */
+public class LoadStatistics {
+
+    private final Histogram connectLatency = new ConcurrentHistogram(3);
+    private final Histogram startLatency = new ConcurrentHistogram(3);
+    private final Histogram partialLatency = new ConcurrentHistogram(3);
+    private final Histogram finalLatency = new ConcurrentHistogram(3);
+
+    private final LongAdder sessionsStarted = new LongAdder();
+    private final LongAdder sessionsCompleted = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder partialsReceived = new LongAdder();
+    private final LongAdder finalsReceived = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    /**
+     * Records the time taken to open a STOMP session.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void recordConnect(long nanos) {
+        connectLatency.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Records the time from sending {@code /app/transcription/start} to receiving the session ID.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void recordStart(long nanos) {
+        sessionsStarted.increment();
+        startLatency.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Records the time from sending audio to receiving a partial transcript that reflects it.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void recordPartial(long nanos) {
+        partialsReceived.increment();
+        partialLatency.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Records the time from sending {@code /app/transcription/stop} to receiving the final transcript.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void recordFinal(long nanos) {
+        finalsReceived.increment();
+        finalLatency.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Records an audio frame sent to the server.
+     *
+     * @param bytes the frame size in bytes
+     */
+    public void recordFrame(int bytes) {
+        framesSent.increment();
+        bytesSent.add(bytes);
+    }
+
+    /**
+     * Records a session that ran to completion.
+     */
+    public void recordSessionCompleted() {
+        sessionsCompleted.increment();
+    }
+
+    /**
+     * Records an error.
+     *
+     * @param type a short error category such as {@code connect} or {@code stop-timeout}
+     */
+    public void recordError(String type) {
+        errors.computeIfAbsent(type, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Gets the fraction of sessions that did not complete.
+     *
+     * @param sessions the number of sessions attempted
+     * @return the error rate (0.0 to 1.0)
+     */
+    public double sessionErrorRate(int sessions) {
+        return sessions == 0 ? 0.0 : 1.0 - (double) sessionsCompleted.sum() / sessions;
+    }
+
+    /**
+     * Prints a summary of the run.
+     *
+     * @param out the stream to print to
+     * @param sessions the number of sessions attempted
+     * @param elapsed the wall-clock duration of the run
+     */
+    public void report(PrintStream out, int sessions, Duration elapsed) {
+        double seconds = Math.max(elapsed.toMillis(), 1) / 1000.0;
+
+        out.println();
+        out.println("=== Load test summary ===");
+        out.printf("Sessions: %d attempted, %d started, %d completed (error rate %.2f%%)%n",
+                sessions, sessionsStarted.sum(), sessionsCompleted.sum(), sessionErrorRate(sessions) * 100);
+        out.printf("Elapsed: %.1f s%n", seconds);
+        out.printf("Throughput: %.1f frames/s, %.1f KiB/s audio, %.1f partials/s%n",
+                framesSent.sum() / seconds, bytesSent.sum() / 1024.0 / seconds, partialsReceived.sum() / seconds);
+        out.println();
+        out.println("Latency (ms)            count       p50       p90       p99     p99.9       max");
+        printLatency(out, "connect", connectLatency);
+        printLatency(out, "start", startLatency);
+        printLatency(out, "audio -> partial", partialLatency);
+        printLatency(out, "stop -> final", finalLatency);
+
+        if (!errors.isEmpty()) {
+            out.println();
+            out.println("Errors:");
+            new TreeMap<>(errors).forEach((type, count) -> out.printf("  %-20s %d%n", type, count.sum()));
+        }
+    }
+
+    private static void printLatency(PrintStream out, String name, Histogram histogram) {
+        out.printf("%-20s %9d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                name,
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    /**
+     * Writes the full percentile distribution of every latency histogram, in milliseconds,
+     * in the HdrHistogram text format that the usual plotting tools read.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeHistograms(Path file) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            writeHistogram(out, "connect", connectLatency);
+            writeHistogram(out, "start", startLatency);
+            writeHistogram(out, "audio-to-partial", partialLatency);
+            writeHistogram(out, "stop-to-final", finalLatency);
+        }
+    }
+
+    private static void writeHistogram(PrintStream out, String name, Histogram histogram) {
+        out.println("# " + name);
+        histogram.outputPercentileDistribution(out, 1000.0);
+        out.println();
+    }
+}
@@ -0,0 +1,165 @@
+package com.bentham.voiceagent.loadgen;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Recorded audio replayed by a load-test session.
+ * Audio is held as 16-bit signed little-endian mono PCM, the format the browser client sends
+ * to {@code /app/transcription/audio}, and is cut into fixed-duration frames that wrap around
+ * when a session streams for longer than the recording.
+ */
+public class PcmFixture {
+
+    private static final int BYTES_PER_SAMPLE = 2;
+
+    private final String name;
+    private final byte[] pcm;
+    private final int sampleRate;
+
+    /**
+     * Creates a fixture from raw PCM.
+     *
+     * @param name the fixture name, used in reports
+     * @param pcm 16-bit signed little-endian mono samples
+     * @param sampleRate the sample rate in Hz
+     */
+    public PcmFixture(String name, byte[] pcm, int sampleRate) {
+        if (pcm.length < BYTES_PER_SAMPLE) {
+            throw new IllegalArgumentException("Fixture " + name + " contains no audio");
+        }
+        this.name = name;
+        this.pcm = pcm;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Loads every {@code .wav} file in a directory.
+     *
+     * @param directory the fixture directory
+     * @param sampleRate the sample rate the fixtures must be recorded at
+     * @return the fixtures, sorted by file name
+     * @throws IOException if the directory or a fixture cannot be read
+     */
+    public static List<PcmFixture> loadDirectory(Path directory, int sampleRate) throws IOException {
+        List<PcmFixture> fixtures = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.toString().toLowerCase().endsWith(".wav")).sorted().toList()) {
+                fixtures.add(load(file, sampleRate));
+            }
+        }
+        if (fixtures.isEmpty()) {
+            throw new IOException("No .wav fixtures found in " + directory);
+        }
+        return fixtures;
+    }
+
+    /**
+     * Loads a WAV fixture.
+     * Java Sound can convert sample encoding and byte order but not sample rate or channel
+     * count, so fixtures must already be mono at the requested rate.
+     *
+     * @param file the WAV file
+     * @param sampleRate the sample rate the fixture must be recorded at
+     * @return the fixture
+     * @throws IOException if the file cannot be read or has the wrong format
+     */
+    public static PcmFixture load(Path file, int sampleRate) throws IOException {
+        AudioFormat target = new AudioFormat(sampleRate, 16, 1, true, false);
+        try (AudioInputStream source = AudioSystem.getAudioInputStream(file.toFile())) {
+            AudioFormat format = source.getFormat();
+            if (format.getChannels() != 1 || Math.round(format.getSampleRate()) != sampleRate) {
+                throw new IOException("Fixture " + file + " must be mono at " + sampleRate + " Hz but is " + format);
+            }
+            try (AudioInputStream converted = AudioSystem.getAudioInputStream(target, source)) {
+                return new PcmFixture(file.getFileName().toString(), converted.readAllBytes(), sampleRate);
+            }
+        } catch (UnsupportedAudioFileException | IllegalArgumentException e) {
+            throw new IOException("Unsupported fixture " + file, e);
+        }
+    }
+
+    /**
+     * Creates a synthetic fixture for runs without recordings.
+     * The signal alternates short voiced tone bursts with pauses so it exercises the same
+     * speech/silence pattern a real caller produces.
+     *
+     * @param sampleRate the sample rate in Hz
+     * @param seconds the fixture length in seconds
+     * @return the fixture
+     */
+    public static PcmFixture synthetic(int sampleRate, int seconds) {
+        int samples = sampleRate * seconds;
+        byte[] pcm = new byte[samples * BYTES_PER_SAMPLE];
+        int burstSamples = sampleRate * 3 / 4;
+        int pauseSamples = sampleRate / 4;
+        for (int i = 0; i < samples; i++) {
+            int positionInCycle = i % (burstSamples + pauseSamples);
+            double value = 0.0;
+            if (positionInCycle < burstSamples) {
+                double t = (double) i / sampleRate;
+                value = 0.3 * Math.sin(2 * Math.PI * 180 * t) + 0.15 * Math.sin(2 * Math.PI * 720 * t);
+            }
+            short sample = (short) Math.round(value * Short.MAX_VALUE);
+            pcm[i * BYTES_PER_SAMPLE] = (byte) sample;
+            pcm[i * BYTES_PER_SAMPLE + 1] = (byte) (sample >> 8);
+        }
+        return new PcmFixture("synthetic", pcm, sampleRate);
+    }
+
+    /**
+     * Gets the number of bytes in one frame of the given duration.
+     *
+     * @param frameMillis the frame duration in milliseconds
+     * @return the frame size in bytes, always a whole number of samples
+     */
+    public int frameBytes(int frameMillis) {
+        return Math.max(1, sampleRate * frameMillis / 1000) * BYTES_PER_SAMPLE;
+    }
+
+    /**
+     * Gets a frame of audio, wrapping around to the start of the recording when needed.
+     *
+     * @param index the zero-based frame index
+     * @param frameBytes the frame size in bytes
+     * @return a new array holding the frame
+     */
+    public byte[] frame(long index, int frameBytes) {
+        byte[] frame = new byte[frameBytes];
+        int offset = (int) ((index * frameBytes) % pcm.length);
+        int copied = 0;
+        while (copied < frameBytes) {
+            int length = Math.min(frameBytes - copied, pcm.length - offset);
+            System.arraycopy(pcm, offset, frame, copied, length);
+            copied += length;
+            offset = 0;
+        }
+        return frame;
+    }
+
+    /**
+     * Gets the fixture name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the fixture duration.
+     *
+     * @return the duration in milliseconds
+     */
+    public long getDurationMillis() {
+        return (long) pcm.length / BYTES_PER_SAMPLE * 1000 / sampleRate;
+    }
+}
@@ -0,0 +1,249 @@
+package com.bentham.voiceagent.loadgen;
+
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Drives one voice session through its whole lifecycle:
+ * connect, {@code /app/transcription/start}, real-time paced audio on
+ * {@code /app/transcription/audio}, {@code /app/transcription/stop}, and disconnect.
+ *
+ * <p>Audio-to-partial latency is measured from the first frame sent after the last change in
+ * the session's partial transcript to the arrival of the next changed partial. The server
+ * re-sends the latest transcript after every frame, so unchanged partials carry no new
+ * information and are not counted.</p>
+ */
+public class VoiceSessionDriver {
+
+    private final int index;
+    private final WebSocketStompClient stompClient;
+    private final LoadGeneratorOptions options;
+    private final PcmFixture fixture;
+    private final LoadStatistics statistics;
+    private final ScheduledExecutorService scheduler;
+
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final CompletableFuture<Void> finalReceived = new CompletableFuture<>();
+    private final AtomicLong frameIndex = new AtomicLong();
+    private final AtomicLong pendingAudioSince = new AtomicLong();
+    private final CompletableFuture<String> startReply = new CompletableFuture<>();
+
+    private volatile StompSession session;
+    private volatile String transcriptionSessionId;
+    private volatile String lastTranscript = "";
+    private volatile ScheduledFuture<?> streamingTask;
+
+    /**
+     * Creates a session driver.
+     *
+     * @param index the session index, used to pick a fixture and in error messages
+     * @param stompClient the shared STOMP client
+     * @param options the load-test options
+     * @param fixture the audio to stream
+     * @param statistics where measurements are recorded
+     * @param scheduler scheduler that paces audio frames
+     */
+    public VoiceSessionDriver(int index, WebSocketStompClient stompClient, LoadGeneratorOptions options,
+                              PcmFixture fixture, LoadStatistics statistics, ScheduledExecutorService scheduler) {
+        this.index = index;
+        this.stompClient = stompClient;
+        this.options = options;
+        this.fixture = fixture;
+        this.statistics = statistics;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Runs the session.
+     *
+     * @return a future completed when the session has disconnected, exceptionally if any step failed
+     */
+    public CompletableFuture<Void> run() {
+        long connectStart = System.nanoTime();
+        stompClient.connectAsync(options.getUrl(), new SessionHandler())
+                .whenComplete((connected, error) -> {
+                    if (error != null) {
+                        fail("connect", error);
+                        return;
+                    }
+                    statistics.recordConnect(System.nanoTime() - connectStart);
+                    session = connected;
+                    subscribeAndStart();
+                });
+        return completion;
+    }
+
+    private void subscribeAndStart() {
+        session.subscribe("/user/queue/session", new JsonFrameHandler(this::onSessionMessage));
+        session.subscribe("/user/queue/transcription", new JsonFrameHandler(this::onTranscriptionMessage));
+        session.subscribe("/user/queue/errors", new JsonFrameHandler(this::onErrorMessage));
+
+        // Every driver starts as soon as it connects; the server admits or queues the starts
+        long startRequested = System.nanoTime();
+        session.send("/app/transcription/start", "");
+        startReply
+                .orTimeout(options.getStopTimeoutSeconds(), TimeUnit.SECONDS)
+                .whenComplete((sessionId, error) -> {
+                    if (error != null) {
+                        fail("start", error);
+                        return;
+                    }
+                    statistics.recordStart(System.nanoTime() - startRequested);
+                    transcriptionSessionId = sessionId;
+                    startStreaming();
+                });
+    }
+
+    private void startStreaming() {
+        int frameBytes = fixture.frameBytes(options.getFrameMillis());
+        long frameCount = Math.max(1, TimeUnit.SECONDS.toMillis(options.getDurationSeconds()) / options.getFrameMillis());
+        streamingTask = scheduler.scheduleAtFixedRate(() -> {
+            long frame = frameIndex.getAndIncrement();
+            if (frame >= frameCount) {
+                cancelStreaming();
+                stop();
+                return;
+            }
+            sendFrame(fixture.frame(frame, frameBytes));
+        }, 0, options.getFrameMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void sendFrame(byte[] frame) {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination("/app/transcription/audio");
+        headers.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        try {
+            pendingAudioSince.compareAndSet(0, System.nanoTime());
+            session.send(headers, frame);
+            statistics.recordFrame(frame.length);
+        } catch (RuntimeException e) {
+            fail("send", e);
+        }
+    }
+
+    private void cancelStreaming() {
+        // The first tick can run before scheduleAtFixedRate has returned the task
+        ScheduledFuture<?> task = streamingTask;
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    private void stop() {
+        long stopRequested = System.nanoTime();
+        session.send("/app/transcription/stop", "");
+        finalReceived
+                .orTimeout(options.getStopTimeoutSeconds(), TimeUnit.SECONDS)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        fail("stop-timeout", error);
+                        return;
+                    }
+                    statistics.recordFinal(System.nanoTime() - stopRequested);
+                    statistics.recordSessionCompleted();
+                    session.disconnect();
+                    completion.complete(null);
+                });
+    }
+
+    private void onSessionMessage(Map<String, Object> payload) {
+        Object sessionId = payload.get("sessionId");
+        if (sessionId != null) {
+            startReply.complete(sessionId.toString());
+        }
+    }
+
+    private void onTranscriptionMessage(Map<String, Object> payload) {
+        if (transcriptionSessionId == null || !transcriptionSessionId.equals(payload.get("sessionId"))) {
+            return;
+        }
+        // Jackson names the isPartial() getter "partial"
+        boolean partial = Boolean.TRUE.equals(payload.get("partial"));
+        String transcript = Objects.toString(payload.get("transcript"), "");
+        if (!partial) {
+            finalReceived.complete(null);
+            return;
+        }
+        if (!transcript.equals(lastTranscript)) {
+            lastTranscript = transcript;
+            long since = pendingAudioSince.getAndSet(0);
+            if (since != 0) {
+                statistics.recordPartial(System.nanoTime() - since);
+            }
+        }
+    }
+
+    private void onErrorMessage(Map<String, Object> message) {
+        IllegalStateException error = new IllegalStateException(String.valueOf(message.get("message")));
+        fail("rejected-" + message.getOrDefault("reason", "unknown"), error);
+        startReply.completeExceptionally(error);
+    }
+
+    private void fail(String type, Throwable error) {
+        if (completion.isDone()) {
+            return;
+        }
+        statistics.recordError(type);
+        cancelStreaming();
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            current.disconnect();
+        }
+        completion.completeExceptionally(new IllegalStateException("Session " + index + " failed at " + type, error));
+    }
+
+    /**
+     * Reports transport and frame errors raised on the STOMP session.
+     */
+    private class SessionHandler extends StompSessionHandlerAdapter {
+
+        @Override
+        public void handleException(StompSession stompSession, StompCommand command, StompHeaders headers,
+                                    byte[] payload, Throwable exception) {
+            fail("frame", exception);
+        }
+
+        @Override
+        public void handleTransportError(StompSession stompSession, Throwable exception) {
+            fail("transport", exception);
+        }
+    }
+
+    /**
+     * Frame handler that hands JSON message bodies to a callback as maps.
+     */
+    private static class JsonFrameHandler implements StompFrameHandler {
+
+        private final Consumer<Map<String, Object>> callback;
+
+        JsonFrameHandler(Consumer<Map<String, Object>> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return Map.class;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void handleFrame(StompHeaders headers, Object payload) {
+            callback.accept((Map<String, Object>) payload);
+        }
+    }
+}
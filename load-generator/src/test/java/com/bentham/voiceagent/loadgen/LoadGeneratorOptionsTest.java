@@ -0,0 +1,45 @@
+package com.bentham.voiceagent.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the LoadGeneratorOptions class.
+ */
+class LoadGeneratorOptionsTest {
+
+    @Test
+    void parseShouldApplyDefaults() {
+        LoadGeneratorOptions options = LoadGeneratorOptions.parse(new String[0]);
+
+        assertEquals("ws://localhost:8080/api/ws/websocket", options.getUrl());
+        assertEquals(10, options.getSessions());
+        assertEquals(100, options.getFrameMillis());
+        assertNull(options.getFixtures());
+    }
+
+    @Test
+    void parseShouldReadOptions() {
+        // Act
+        LoadGeneratorOptions options = LoadGeneratorOptions.parse(new String[] {
+                "--sessions=250", "--duration=60", "--frame-ms=40", "--fixtures=/tmp/wavs", "--max-error-rate=0.05"
+        });
+
+        // Assert
+        assertEquals(250, options.getSessions());
+        assertEquals(60, options.getDurationSeconds());
+        assertEquals(40, options.getFrameMillis());
+        assertEquals(Path.of("/tmp/wavs"), options.getFixtures());
+        assertEquals(0.05, options.getMaxErrorRate(), 0.0001);
+    }
+
+    @Test
+    void parseShouldRejectMalformedAndUnknownOptions() {
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse(new String[] {"sessions=5"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse(new String[] {"--bogus=1"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse(new String[] {"--sessions=0"}));
+    }
+}
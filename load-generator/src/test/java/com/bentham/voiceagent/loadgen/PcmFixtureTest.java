@@ -0,0 +1,81 @@
+package com.bentham.voiceagent.loadgen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the PcmFixture class.
+ */
+class PcmFixtureTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void frameBytesShouldCoverWholeSamples() {
+        PcmFixture fixture = PcmFixture.synthetic(16000, 1);
+
+        assertEquals(3200, fixture.frameBytes(100));
+        assertEquals(2, fixture.frameBytes(0));
+    }
+
+    @Test
+    void frameShouldWrapAroundTheRecording() {
+        // Arrange
+        byte[] pcm = {1, 2, 3, 4, 5, 6};
+        PcmFixture fixture = new PcmFixture("test", pcm, 16000);
+
+        // Act
+        byte[] frame = fixture.frame(1, 4);
+
+        // Assert
+        assertArrayEquals(new byte[] {5, 6, 1, 2}, frame);
+    }
+
+    @Test
+    void loadDirectoryShouldReadMonoWavFixtures() throws IOException {
+        // Arrange
+        writeWav(tempDir.resolve("b.wav"), new AudioFormat(16000, 16, 1, true, false), 1600);
+        writeWav(tempDir.resolve("a.wav"), new AudioFormat(16000, 16, 1, true, false), 3200);
+
+        // Act
+        List<PcmFixture> fixtures = PcmFixture.loadDirectory(tempDir, 16000);
+
+        // Assert
+        assertEquals(2, fixtures.size());
+        assertEquals("a.wav", fixtures.get(0).getName());
+        assertEquals(200, fixtures.get(0).getDurationMillis());
+        assertEquals(100, fixtures.get(1).getDurationMillis());
+    }
+
+    @Test
+    void loadShouldRejectWrongSampleRate() throws IOException {
+        Path file = tempDir.resolve("wrong-rate.wav");
+        writeWav(file, new AudioFormat(8000, 16, 1, true, false), 800);
+
+        assertThrows(IOException.class, () -> PcmFixture.load(file, 16000));
+    }
+
+    @Test
+    void loadDirectoryShouldFailWhenEmpty() {
+        assertThrows(IOException.class, () -> PcmFixture.loadDirectory(tempDir, 16000));
+    }
+
+    private static void writeWav(Path file, AudioFormat format, int frames) throws IOException {
+        byte[] data = new byte[frames * format.getFrameSize()];
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(data), format, frames)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file.toFile());
+        }
+    }
+}
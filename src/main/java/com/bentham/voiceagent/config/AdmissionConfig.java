@@ -0,0 +1,125 @@
+package com.bentham.voiceagent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+/**
+ * Configuration properties for admission control of streaming sessions.
+ * This class holds the global concurrency limit, the wait queue settings and the per-tenant quotas.
+ */
+@Configuration
+@PropertySource("classpath:application.yml")
+public class AdmissionConfig {
+
+    @Value("${voice.admission.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${voice.admission.max-concurrent-sessions:25}")
+    private Integer maxConcurrentSessions;
+
+    @Value("${voice.admission.max-queued-sessions:50}")
+    private Integer maxQueuedSessions;
+
+    @Value("${voice.admission.max-queue-wait-ms:2000}")
+    private Integer maxQueueWaitMs;
+
+    @Value("${voice.admission.tenant.api-keys:}")
+    private String tenantApiKeys;
+
+    @Value("${voice.admission.tenant.sessions-per-second:5.0}")
+    private Double tenantSessionsPerSecond;
+
+    @Value("${voice.admission.tenant.session-burst:25}")
+    private Integer tenantSessionBurst;
+
+    @Value("${voice.admission.tenant.audio-bytes-per-second:800000}")
+    private Integer tenantAudioBytesPerSecond;
+
+    @Value("${voice.admission.tenant.audio-burst-bytes:1600000}")
+    private Integer tenantAudioBurstBytes;
+
+    /**
+     * Checks if admission control is applied.
+     *
+     * @return true if admission control is enabled, false otherwise
+     */
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the most streaming sessions that may be open at once, across all tenants.
+     * This should not exceed the account's concurrent stream quota for Amazon Transcribe.
+     *
+     * @return the global session limit
+     */
+    public Integer getMaxConcurrentSessions() {
+        return maxConcurrentSessions;
+    }
+
+    /**
+     * Gets the most session starts that may wait for a free slot at once.
+     *
+     * @return the wait queue capacity
+     */
+    public Integer getMaxQueuedSessions() {
+        return maxQueuedSessions;
+    }
+
+    /**
+     * Gets how long a session start waits for a free slot before it is rejected.
+     *
+     * @return the maximum wait in milliseconds
+     */
+    public Integer getMaxQueueWaitMs() {
+        return maxQueueWaitMs;
+    }
+
+    /**
+     * Gets the API keys by which clients name their tenant, as comma-separated
+     * {@code key=tenant} pairs. When empty, each client address is its own tenant.
+     *
+     * @return the API keys and their tenants
+     */
+    public String getTenantApiKeys() {
+        return tenantApiKeys;
+    }
+
+    /**
+     * Gets the sustained rate at which each tenant may start sessions.
+     *
+     * @return the session start rate per second
+     */
+    public Double getTenantSessionsPerSecond() {
+        return tenantSessionsPerSecond;
+    }
+
+    /**
+     * Gets how many sessions a tenant may start in a burst above its sustained rate.
+     *
+     * @return the session burst size
+     */
+    public Integer getTenantSessionBurst() {
+        return tenantSessionBurst;
+    }
+
+    /**
+     * Gets the sustained audio rate each tenant may send across all its sessions. This should
+     * cover as many streams as a tenant may hold, up to the global session limit.
+     *
+     * @return the audio rate in bytes per second
+     */
+    public Integer getTenantAudioBytesPerSecond() {
+        return tenantAudioBytesPerSecond;
+    }
+
+    /**
+     * Gets how much audio a tenant may send in a burst above its sustained rate.
+     *
+     * @return the audio burst size in bytes
+     */
+    public Integer getTenantAudioBurstBytes() {
+        return tenantAudioBurstBytes;
+    }
+}
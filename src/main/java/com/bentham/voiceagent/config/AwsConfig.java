@@ -3,16 +3,20 @@ package com.bentham.voiceagent.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.polly.PollyAsyncClient;
 import software.amazon.awssdk.services.polly.PollyClient;
 import software.amazon.awssdk.services.transcribe.TranscribeClient;
+import software.amazon.awssdk.services.transcribestreaming.TranscribeStreamingAsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
 
 /**
  * Configuration class for AWS services.
- * This class provides beans for AWS service clients used in the application.
+ * This class provides beans for AWS service clients used in the application, all of them
+ * signing with the credentials provider of the active profile.
  */
 @Configuration
 public class AwsConfig {
@@ -23,52 +27,102 @@ public class AwsConfig {
     /**
      * Creates a TranscribeClient bean for Amazon Transcribe service.
      *
+     * @param credentialsProvider the credentials the client signs with
      * @return configured TranscribeClient
      */
     @Bean
-    public TranscribeClient transcribeClient() {
+    public TranscribeClient transcribeClient(AwsCredentialsProvider credentialsProvider) {
         return TranscribeClient.builder()
                 .region(Region.of(awsRegion))
-                .credentialsProvider(DefaultCredentialsProvider.create())
+                .credentialsProvider(credentialsProvider)
+                .build();
+    }
+
+    /**
+     * Creates a TranscribeStreamingAsyncClient bean for Amazon Transcribe streaming.
+     * Audio is sent and results received over one HTTP/2 stream per session, with demand
+     * flowing in both directions.
+     *
+     * @param credentialsProvider the credentials the client signs with
+     * @return configured TranscribeStreamingAsyncClient
+     */
+    @Bean
+    public TranscribeStreamingAsyncClient transcribeStreamingAsyncClient(AwsCredentialsProvider credentialsProvider) {
+        return TranscribeStreamingAsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(credentialsProvider)
                 .build();
     }
 
     /**
      * Creates a PollyClient bean for Amazon Polly service.
      *
+     * @param credentialsProvider the credentials the client signs with
      * @return configured PollyClient
      */
     @Bean
-    public PollyClient pollyClient() {
+    public PollyClient pollyClient(AwsCredentialsProvider credentialsProvider) {
         return PollyClient.builder()
                 .region(Region.of(awsRegion))
-                .credentialsProvider(DefaultCredentialsProvider.create())
+                .credentialsProvider(credentialsProvider)
+                .build();
+    }
+    
+    /**
+     * Creates a PollyAsyncClient bean for Amazon Polly service.
+     * Used for synthesis that may be cancelled while in flight.
+     *
+     * @param credentialsProvider the credentials the client signs with
+     * @return configured PollyAsyncClient
+     */
+    @Bean
+    public PollyAsyncClient pollyAsyncClient(AwsCredentialsProvider credentialsProvider) {
+        return PollyAsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(credentialsProvider)
                 .build();
     }
     
     /**
      * Creates an S3Client bean for Amazon S3 service.
      *
+     * @param credentialsProvider the credentials the client signs with
      * @return configured S3Client
      */
     @Bean
-    public S3Client s3Client() {
+    public S3Client s3Client(AwsCredentialsProvider credentialsProvider) {
         return S3Client.builder()
                 .region(Region.of(awsRegion))
-                .credentialsProvider(DefaultCredentialsProvider.create())
+                .credentialsProvider(credentialsProvider)
                 .build();
     }
     
     /**
      * Creates a CloudWatchClient bean for Amazon CloudWatch service.
      *
+     * @param credentialsProvider the credentials the client signs with
      * @return configured CloudWatchClient
      */
     @Bean
-    public CloudWatchClient cloudWatchClient() {
+    public CloudWatchClient cloudWatchClient(AwsCredentialsProvider credentialsProvider) {
         return CloudWatchClient.builder()
                 .region(Region.of(awsRegion))
-                .credentialsProvider(DefaultCredentialsProvider.create())
+                .credentialsProvider(credentialsProvider)
+                .build();
+    }
+    
+    /**
+     * Creates a BedrockRuntimeAsyncClient bean for Amazon Bedrock.
+     * The asynchronous client lets an in-flight request be abandoned by cancelling its future.
+     *
+     * @param credentialsProvider the credentials the client signs with
+     * @return configured BedrockRuntimeAsyncClient
+     */
+    @Bean
+    public BedrockRuntimeAsyncClient bedrockRuntimeAsyncClient(AwsCredentialsProvider credentialsProvider) {
+        return BedrockRuntimeAsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(credentialsProvider)
                 .build();
     }
 }
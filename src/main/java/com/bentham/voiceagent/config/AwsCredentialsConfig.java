@@ -4,9 +4,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 
 /**
  * Configuration for AWS credentials.
@@ -43,13 +45,26 @@ public class AwsCredentialsConfig {
         return DefaultCredentialsProvider.create();
     }
 
+    /**
+     * Creates an AWS credentials provider for load testing.
+     * Uses fixed placeholder credentials so the application starts without an AWS account
+     * and never walks the default provider chain (which probes the instance metadata endpoint).
+     *
+     * @return the AWS credentials provider
+     */
+    @Bean
+    @Profile("loadtest")
+    public AwsCredentialsProvider loadTestCredentialsProvider() {
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create("loadtest", "loadtest"));
+    }
+
     /**
      * Creates a default AWS credentials provider for any other environment.
      *
      * @return the AWS credentials provider
      */
     @Bean
-    @Profile("!dev & !prod")
+    @Profile("!dev & !prod & !loadtest")
     public AwsCredentialsProvider defaultCredentialsProvider() {
         return DefaultCredentialsProvider.create();
     }
@@ -21,6 +21,24 @@ public class BedrockConfig {
     @Value("${aws.bedrock.max-tokens:1024}")
     private Integer maxTokens;
 
+    @Value("${aws.bedrock.system-prompt:}")
+    private String systemPrompt;
+
+    @Value("${aws.bedrock.prompt-caching.enabled:false}")
+    private Boolean promptCachingEnabled;
+
+    @Value("${aws.bedrock.prompt-caching.min-prefix-chars:4096}")
+    private Integer promptCacheMinPrefixChars;
+
+    @Value("${aws.bedrock.prompt-caching.ttl-seconds:300}")
+    private Integer promptCacheTtlSeconds;
+
+    @Value("${aws.bedrock.fallback-model-id:anthropic.claude-3-haiku-20240307-v1:0}")
+    private String fallbackModelId;
+
+    @Value("${aws.bedrock.hedge-region:}")
+    private String hedgeRegion;
+
     /**
      * Gets the model ID for the Bedrock service.
      *
@@ -47,4 +65,60 @@ public class BedrockConfig {
     public Integer getMaxTokens() {
         return maxTokens;
     }
+
+    /**
+     * Gets the system prompt sent ahead of every request.
+     *
+     * @return the system prompt, or an empty string for none
+     */
+    public String getSystemPrompt() {
+        return systemPrompt;
+    }
+
+    /**
+     * Checks if stable prompt prefixes are marked for Bedrock prompt caching.
+     * The model must support prompt caching.
+     *
+     * @return true if prompt caching is enabled, false otherwise
+     */
+    public Boolean getPromptCachingEnabled() {
+        return promptCachingEnabled;
+    }
+
+    /**
+     * Gets the shortest prefix, in characters, worth marking for caching.
+     * Bedrock only caches prefixes above a model-specific token count, typically 1024 tokens.
+     *
+     * @return the minimum prefix length in characters
+     */
+    public Integer getPromptCacheMinPrefixChars() {
+        return promptCacheMinPrefixChars;
+    }
+
+    /**
+     * Gets how long a cached prefix stays warm after it was last used.
+     *
+     * @return the cache time to live in seconds
+     */
+    public Integer getPromptCacheTtlSeconds() {
+        return promptCacheTtlSeconds;
+    }
+
+    /**
+     * Gets the model used while the circuit for the configured model is open.
+     *
+     * @return the fallback model ID
+     */
+    public String getFallbackModelId() {
+        return fallbackModelId;
+    }
+
+    /**
+     * Gets the region hedged requests are sent to.
+     *
+     * @return the hedge region, or an empty string to hedge in the primary region
+     */
+    public String getHedgeRegion() {
+        return hedgeRegion;
+    }
 }
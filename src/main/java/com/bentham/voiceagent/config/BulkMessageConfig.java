@@ -0,0 +1,75 @@
+package com.bentham.voiceagent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+/**
+ * Configuration properties for bulk message processing.
+ * This class holds the concurrency bounds and retry settings for offline jobs sent to Bedrock.
+ */
+@Configuration
+@PropertySource("classpath:application.yml")
+public class BulkMessageConfig {
+
+    @Value("${voice.bulk.initial-concurrency:4}")
+    private Integer initialConcurrency;
+
+    @Value("${voice.bulk.min-concurrency:1}")
+    private Integer minConcurrency;
+
+    @Value("${voice.bulk.max-concurrency:16}")
+    private Integer maxConcurrency;
+
+    @Value("${voice.bulk.max-attempts:5}")
+    private Integer maxAttempts;
+
+    @Value("${voice.bulk.retry-backoff-ms:1000}")
+    private Integer retryBackoffMs;
+
+    /**
+     * Gets the number of messages sent to Bedrock at once before any throttling has been seen.
+     *
+     * @return the initial concurrency
+     */
+    public Integer getInitialConcurrency() {
+        return initialConcurrency;
+    }
+
+    /**
+     * Gets the fewest messages kept in flight however much Bedrock throttles.
+     *
+     * @return the minimum concurrency
+     */
+    public Integer getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    /**
+     * Gets the most messages sent to Bedrock at once across all bulk jobs.
+     * This should be set from the account's Bedrock throughput quota for the model.
+     *
+     * @return the maximum concurrency
+     */
+    public Integer getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Gets the number of times a throttled message is sent before it is reported as failed.
+     *
+     * @return the maximum attempts per message
+     */
+    public Integer getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Gets the delay before a throttled message is first retried; later retries back off exponentially.
+     *
+     * @return the retry backoff in milliseconds
+     */
+    public Integer getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+}
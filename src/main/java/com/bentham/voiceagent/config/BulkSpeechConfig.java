@@ -0,0 +1,75 @@
+package com.bentham.voiceagent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+/**
+ * Configuration properties for bulk speech rendering.
+ * This class holds the concurrency bounds and retry settings for clips pre-rendered with Polly.
+ */
+@Configuration
+@PropertySource("classpath:application.yml")
+public class BulkSpeechConfig {
+
+    @Value("${voice.bulk-speech.initial-concurrency:4}")
+    private Integer initialConcurrency;
+
+    @Value("${voice.bulk-speech.min-concurrency:1}")
+    private Integer minConcurrency;
+
+    @Value("${voice.bulk-speech.max-concurrency:16}")
+    private Integer maxConcurrency;
+
+    @Value("${voice.bulk-speech.max-attempts:5}")
+    private Integer maxAttempts;
+
+    @Value("${voice.bulk-speech.retry-backoff-ms:1000}")
+    private Integer retryBackoffMs;
+
+    /**
+     * Gets the number of clips sent to Polly at once before any throttling has been seen.
+     *
+     * @return the initial concurrency
+     */
+    public Integer getInitialConcurrency() {
+        return initialConcurrency;
+    }
+
+    /**
+     * Gets the fewest clips kept in flight however much Polly throttles.
+     *
+     * @return the minimum concurrency
+     */
+    public Integer getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    /**
+     * Gets the most clips sent to Polly at once across all bulk jobs.
+     * This should be set from the account's SynthesizeSpeech rate quota.
+     *
+     * @return the maximum concurrency
+     */
+    public Integer getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Gets the number of times a throttled clip is sent before it is reported as failed.
+     *
+     * @return the maximum attempts per clip
+     */
+    public Integer getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Gets the delay before a throttled clip is first retried; later retries back off exponentially.
+     *
+     * @return the retry backoff in milliseconds
+     */
+    public Integer getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+}
@@ -0,0 +1,75 @@
+package com.bentham.voiceagent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+/**
+ * Configuration properties for JDK Flight Recorder recordings.
+ * This class holds the settings for the recording started at boot or from the admin endpoint.
+ */
+@Configuration
+@PropertySource("classpath:application.yml")
+public class FlightRecorderConfig {
+
+    @Value("${voice.flight-recorder.start-on-boot:false}")
+    private Boolean startOnBoot;
+
+    @Value("${voice.flight-recorder.settings:default}")
+    private String settings;
+
+    @Value("${voice.flight-recorder.max-age-seconds:900}")
+    private Integer maxAgeSeconds;
+
+    @Value("${voice.flight-recorder.max-size-mb:256}")
+    private Integer maxSizeMb;
+
+    @Value("${voice.flight-recorder.directory:flight-recordings}")
+    private String directory;
+
+    /**
+     * Checks if a recording is started with the application, so one is always running.
+     *
+     * @return true if a recording starts at boot, false otherwise
+     */
+    public Boolean getStartOnBoot() {
+        return startOnBoot;
+    }
+
+    /**
+     * Gets the JDK event settings: {@code default}, designed to cost under 1% CPU, or
+     * {@code profile}, which records more at about 2%.
+     *
+     * @return the settings name
+     */
+    public String getSettings() {
+        return settings;
+    }
+
+    /**
+     * Gets how much history the recording keeps.
+     *
+     * @return the maximum age of recorded events in seconds
+     */
+    public Integer getMaxAgeSeconds() {
+        return maxAgeSeconds;
+    }
+
+    /**
+     * Gets how much disk the recording's history may take.
+     *
+     * @return the maximum size in megabytes
+     */
+    public Integer getMaxSizeMb() {
+        return maxSizeMb;
+    }
+
+    /**
+     * Gets the directory recordings are dumped to.
+     *
+     * @return the dump directory
+     */
+    public String getDirectory() {
+        return directory;
+    }
+}
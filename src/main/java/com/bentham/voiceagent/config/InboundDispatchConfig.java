@@ -0,0 +1,67 @@
+package com.bentham.voiceagent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+/**
+ * Configuration properties for dispatching inbound STOMP messages.
+ * This class holds the settings for handling each session's messages in order, for putting
+ * sequence-numbered audio frames back in order and for resuming sessions after a reconnect.
+ */
+@Configuration
+@PropertySource("classpath:application.yml")
+public class InboundDispatchConfig {
+
+    @Value("${voice.inbound.ordered-dispatch:true}")
+    private Boolean orderedDispatch;
+
+    @Value("${voice.inbound.threads:0}")
+    private Integer threads;
+
+    @Value("${voice.inbound.reorder-window:32}")
+    private Integer reorderWindow;
+
+    @Value("${voice.inbound.resume-grace-ms:10000}")
+    private Integer resumeGraceMs;
+
+    /**
+     * Checks if the messages of each WebSocket session are handled one at a time in the order
+     * they arrived. When disabled, Spring's shared inbound pool handles them in any order.
+     *
+     * @return true if ordered dispatch is enabled, false otherwise
+     */
+    public Boolean getOrderedDispatch() {
+        return orderedDispatch;
+    }
+
+    /**
+     * Gets the number of threads handling inbound messages; 0 uses twice the number of processors.
+     *
+     * @return the inbound thread count
+     */
+    public Integer getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the number of sequence-numbered audio frames held while waiting for a missing one.
+     * Once more are waiting, the missing frames are skipped.
+     *
+     * @return the reorder window in frames
+     */
+    public Integer getReorderWindow() {
+        return reorderWindow;
+    }
+
+    /**
+     * Gets how long the transcription session of a dropped WebSocket connection is kept for the
+     * client to resume; 0 stops it straight away. Amazon Transcribe ends a stream after 15 seconds
+     * without audio, so this should stay well below that.
+     *
+     * @return the resume grace period in milliseconds
+     */
+    public Integer getResumeGraceMs() {
+        return resumeGraceMs;
+    }
+}
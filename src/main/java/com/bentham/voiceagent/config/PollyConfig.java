@@ -18,6 +18,24 @@ public class PollyConfig {
     @Value("${aws.polly.output-format:mp3}")
     private String outputFormat;
 
+    @Value("${aws.polly.fallback-voice-id:Matthew}")
+    private String fallbackVoiceId;
+
+    @Value("${aws.polly.hedge-region:}")
+    private String hedgeRegion;
+
+    @Value("${aws.polly.stitching.enabled:true}")
+    private Boolean stitchingEnabled;
+
+    @Value("${aws.polly.stitching.cache-size:256}")
+    private Integer stitchingCacheSize;
+
+    @Value("${aws.polly.voices.ttl-ms:300000}")
+    private Integer voicesTtlMs;
+
+    @Value("${aws.polly.voices.stale-ms:3600000}")
+    private Integer voicesStaleMs;
+
     /**
      * Gets the voice ID for speech synthesis.
      *
@@ -35,4 +53,58 @@ public class PollyConfig {
     public String getOutputFormat() {
         return outputFormat;
     }
+
+    /**
+     * Gets the voice used while the circuit for the configured voice is open.
+     *
+     * @return the fallback voice ID
+     */
+    public String getFallbackVoiceId() {
+        return fallbackVoiceId;
+    }
+
+    /**
+     * Gets the region hedged synthesis requests are sent to.
+     *
+     * @return the hedge region, or an empty string to hedge in the primary region
+     */
+    public String getHedgeRegion() {
+        return hedgeRegion;
+    }
+
+    /**
+     * Checks if SSML templates are synthesized by joining cached static segments.
+     *
+     * @return true if template stitching is enabled
+     */
+    public Boolean getStitchingEnabled() {
+        return stitchingEnabled;
+    }
+
+    /**
+     * Gets the number of synthesized static template segments to cache.
+     *
+     * @return the segment cache size
+     */
+    public Integer getStitchingCacheSize() {
+        return stitchingCacheSize;
+    }
+
+    /**
+     * Gets how long the list of available voices is reused before Polly is asked again.
+     *
+     * @return the voice list TTL in milliseconds
+     */
+    public Integer getVoicesTtlMs() {
+        return voicesTtlMs;
+    }
+
+    /**
+     * Gets how long after its TTL the list of voices is still served while it is refreshed.
+     *
+     * @return the stale window in milliseconds
+     */
+    public Integer getVoicesStaleMs() {
+        return voicesStaleMs;
+    }
 }
@@ -0,0 +1,50 @@
+package com.bentham.voiceagent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+/**
+ * Configuration properties for session audio recording.
+ * This class holds configuration values for recording the audio received by streaming sessions.
+ */
+@Configuration
+@PropertySource("classpath:application.yml")
+public class RecordingConfig {
+
+    @Value("${voice.recording.enabled:false}")
+    private Boolean enabled;
+
+    @Value("${voice.recording.directory:recordings}")
+    private String directory;
+
+    @Value("${voice.recording.segment-size-bytes:8388608}")
+    private Integer segmentSizeBytes;
+
+    /**
+     * Checks if session audio is recorded.
+     *
+     * @return true if recording is enabled, false otherwise
+     */
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the directory recordings are written to, one subdirectory per session.
+     *
+     * @return the recording directory
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the size of each memory-mapped segment file.
+     *
+     * @return the segment size in bytes
+     */
+    public Integer getSegmentSizeBytes() {
+        return segmentSizeBytes;
+    }
+}
@@ -0,0 +1,135 @@
+package com.bentham.voiceagent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+/**
+ * Configuration properties for hedging and circuit breaking of Polly and Bedrock calls.
+ * This class holds the settings shared by every resilient operation; the fallback voice and
+ * model and the hedge regions are set in {@link PollyConfig} and {@link BedrockConfig}.
+ */
+@Configuration
+@PropertySource("classpath:application.yml")
+public class ResilienceConfig {
+
+    @Value("${voice.resilience.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${voice.resilience.hedging.enabled:true}")
+    private Boolean hedgingEnabled;
+
+    @Value("${voice.resilience.hedging.percentile:0.95}")
+    private Double hedgingPercentile;
+
+    @Value("${voice.resilience.hedging.min-samples:20}")
+    private Integer hedgingMinSamples;
+
+    @Value("${voice.resilience.hedging.min-delay-ms:20}")
+    private Integer hedgingMinDelayMs;
+
+    @Value("${voice.resilience.latency-window-size:512}")
+    private Integer latencyWindowSize;
+
+    @Value("${voice.resilience.circuit.window-size:50}")
+    private Integer circuitWindowSize;
+
+    @Value("${voice.resilience.circuit.minimum-calls:20}")
+    private Integer circuitMinimumCalls;
+
+    @Value("${voice.resilience.circuit.failure-rate-threshold:0.5}")
+    private Double circuitFailureRateThreshold;
+
+    @Value("${voice.resilience.circuit.open-duration-ms:30000}")
+    private Integer circuitOpenDurationMs;
+
+    /**
+     * Checks if Polly and Bedrock calls go through the resilience layer.
+     *
+     * @return true if the resilience layer is enabled, false otherwise
+     */
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Checks if slow calls are hedged with a duplicate request.
+     *
+     * @return true if hedging is enabled, false otherwise
+     */
+    public Boolean getHedgingEnabled() {
+        return hedgingEnabled;
+    }
+
+    /**
+     * Gets the observed latency percentile after which a hedged request is sent.
+     *
+     * @return the hedging percentile, between 0 and 1
+     */
+    public Double getHedgingPercentile() {
+        return hedgingPercentile;
+    }
+
+    /**
+     * Gets the number of latency samples an operation needs before its calls are hedged.
+     *
+     * @return the minimum sample count
+     */
+    public Integer getHedgingMinSamples() {
+        return hedgingMinSamples;
+    }
+
+    /**
+     * Gets the shortest delay before a hedged request is sent, however fast the operation has been.
+     *
+     * @return the minimum hedging delay in milliseconds
+     */
+    public Integer getHedgingMinDelayMs() {
+        return hedgingMinDelayMs;
+    }
+
+    /**
+     * Gets the number of most recent latency samples kept per operation.
+     *
+     * @return the latency window size
+     */
+    public Integer getLatencyWindowSize() {
+        return latencyWindowSize;
+    }
+
+    /**
+     * Gets the number of most recent calls the failure rate is computed over.
+     *
+     * @return the circuit window size
+     */
+    public Integer getCircuitWindowSize() {
+        return circuitWindowSize;
+    }
+
+    /**
+     * Gets the number of calls that must be seen before the circuit may open.
+     *
+     * @return the minimum call count
+     */
+    public Integer getCircuitMinimumCalls() {
+        return circuitMinimumCalls;
+    }
+
+    /**
+     * Gets the failure rate at which the circuit opens and calls go to the fallback.
+     *
+     * @return the failure rate threshold, between 0 and 1
+     */
+    public Double getCircuitFailureRateThreshold() {
+        return circuitFailureRateThreshold;
+    }
+
+    /**
+     * Gets how long the circuit stays open before a trial call is let through.
+     *
+     * @return the open duration in milliseconds
+     */
+    public Integer getCircuitOpenDurationMs() {
+        return circuitOpenDurationMs;
+    }
+}
@@ -0,0 +1,87 @@
+package com.bentham.voiceagent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+/**
+ * Configuration properties for delivering synthesized speech to clients.
+ * This class holds the chunking and clip caching settings for the speech endpoints.
+ */
+@Configuration
+@PropertySource("classpath:application.yml")
+public class SpeechStreamingConfig {
+
+    @Value("${voice.speech-streaming.chunk-bytes:4096}")
+    private Integer chunkBytes;
+
+    @Value("${voice.speech-streaming.clip-cache-size:64}")
+    private Integer clipCacheSize;
+
+    @Value("${voice.speech-streaming.max-cached-clip-bytes:1048576}")
+    private Integer maxCachedClipBytes;
+
+    @Value("${voice.speech-streaming.prerendered-max-bytes:67108864}")
+    private Integer prerenderedMaxBytes;
+
+    @Value("${voice.speech-streaming.send-time-limit-ms:10000}")
+    private Integer sendTimeLimitMs;
+
+    @Value("${voice.speech-streaming.send-buffer-bytes:262144}")
+    private Integer sendBufferBytes;
+
+    /**
+     * Gets the most audio sent in one WebSocket frame or HTTP chunk.
+     *
+     * @return the chunk size in bytes
+     */
+    public Integer getChunkBytes() {
+        return chunkBytes;
+    }
+
+    /**
+     * Gets the number of fully delivered clips kept for repeat and Range requests.
+     *
+     * @return the clip cache size
+     */
+    public Integer getClipCacheSize() {
+        return clipCacheSize;
+    }
+
+    /**
+     * Gets the size of the largest clip that is cached.
+     *
+     * @return the largest cached clip in bytes
+     */
+    public Integer getMaxCachedClipBytes() {
+        return maxCachedClipBytes;
+    }
+
+    /**
+     * Gets the total size of the clips pre-rendered by bulk jobs that are kept. They are kept
+     * apart from the clip cache, so on-demand requests do not evict them.
+     *
+     * @return the pre-rendered clip store size in bytes
+     */
+    public Integer getPrerenderedMaxBytes() {
+        return prerenderedMaxBytes;
+    }
+
+    /**
+     * Gets how long a single WebSocket send may take before the session is closed as too slow.
+     *
+     * @return the send time limit in milliseconds
+     */
+    public Integer getSendTimeLimitMs() {
+        return sendTimeLimitMs;
+    }
+
+    /**
+     * Gets how much audio may be queued for a slow WebSocket client before the session is closed.
+     *
+     * @return the send buffer limit in bytes
+     */
+    public Integer getSendBufferBytes() {
+        return sendBufferBytes;
+    }
+}
@@ -0,0 +1,31 @@
+package com.bentham.voiceagent.config;
+
+import com.bentham.voiceagent.controller.SpeechWebSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Configuration for the raw speech WebSocket.
+ * Speech is sent as binary frames on a plain WebSocket rather than over STOMP, so browsers can
+ * hand the frames straight to their audio pipeline.
+ */
+@Configuration
+@EnableWebSocket
+public class SpeechWebSocketConfig implements WebSocketConfigurer {
+
+    private final SpeechWebSocketHandler speechWebSocketHandler;
+
+    @Autowired
+    public SpeechWebSocketConfig(SpeechWebSocketHandler speechWebSocketHandler) {
+        this.speechWebSocketHandler = speechWebSocketHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(speechWebSocketHandler, "/speech/ws")
+                .setAllowedOriginPatterns("*");
+    }
+}
@@ -0,0 +1,96 @@
+package com.bentham.voiceagent.config;
+
+import com.bentham.voiceagent.util.FileSpanExporter;
+import com.bentham.voiceagent.util.VoiceTracing;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration for OpenTelemetry tracing of the voice pipeline.
+ * The OpenTelemetry SDK, its sampler ({@code management.tracing.sampling.probability}) and its
+ * OTLP exporter ({@code management.otlp.tracing.endpoint}) are set up by Spring Boot; this class
+ * hands the SDK to {@link VoiceTracing} and adds a file exporter for tracing offline.
+ */
+@Configuration
+@PropertySource("classpath:application.yml")
+public class TracingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(TracingConfig.class);
+
+    @Value("${voice.tracing.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${voice.tracing.file.enabled:false}")
+    private Boolean fileEnabled;
+
+    @Value("${voice.tracing.file.path:traces/spans.jsonl}")
+    private String filePath;
+
+    /**
+     * Checks if the voice pipeline records spans.
+     *
+     * @return true if tracing is enabled, false otherwise
+     */
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Checks if spans are also written to a file.
+     *
+     * @return true if the file exporter is enabled, false otherwise
+     */
+    public Boolean getFileEnabled() {
+        return fileEnabled;
+    }
+
+    /**
+     * Gets the file spans are written to, one line of OTLP JSON per batch.
+     *
+     * @return the file path
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Creates a span exporter writing to {@code voice.tracing.file.path}, which the SDK uses
+     * alongside any OTLP exporter.
+     *
+     * @return the file exporter
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "voice.tracing.file", name = "enabled", havingValue = "true")
+    public SpanExporter fileSpanExporter() {
+        return new FileSpanExporter(Path.of(filePath));
+    }
+
+    /**
+     * Hands the OpenTelemetry SDK to the voice pipeline once every bean, exporters included,
+     * has been created.
+     *
+     * @param openTelemetry the SDK, if tracing is on the classpath and enabled
+     * @return the installer
+     */
+    @Bean
+    public SmartInitializingSingleton voiceTracingInstaller(ObjectProvider<OpenTelemetry> openTelemetry) {
+        return () -> {
+            if (!Boolean.TRUE.equals(enabled)) {
+                logger.info("Voice pipeline tracing is disabled");
+                return;
+            }
+            openTelemetry.ifAvailable(VoiceTracing::install);
+        };
+    }
+}
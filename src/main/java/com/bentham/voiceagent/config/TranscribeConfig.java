@@ -21,6 +21,96 @@ public class TranscribeConfig {
     @Value("${aws.transcribe.enable-partial-results:true}")
     private Boolean enablePartialResults;
 
+    @Value("${aws.transcribe.aggregation.enabled:true}")
+    private Boolean aggregationEnabled;
+
+    @Value("${aws.transcribe.aggregation.target-chunk-ms:100}")
+    private Integer aggregationTargetChunkMs;
+
+    @Value("${aws.transcribe.aggregation.max-delay-ms:120}")
+    private Integer aggregationMaxDelayMs;
+
+    @Value("${aws.transcribe.stream.max-buffered-frames:64}")
+    private Integer streamMaxBufferedFrames;
+
+    @Value("${aws.transcribe.preprocessing.enabled:false}")
+    private Boolean preprocessingEnabled;
+
+    @Value("${aws.transcribe.preprocessing.noise-suppression-db:12}")
+    private Double preprocessingNoiseSuppressionDb;
+
+    @Value("${aws.transcribe.preprocessing.target-level-dbfs:-20}")
+    private Double preprocessingTargetLevelDbfs;
+
+    @Value("${aws.transcribe.preprocessing.max-gain-db:24}")
+    private Double preprocessingMaxGainDb;
+
+    @Value("${aws.transcribe.pool.enabled:false}")
+    private Boolean poolEnabled;
+
+    @Value("${aws.transcribe.pool.min-idle:1}")
+    private Integer poolMinIdle;
+
+    @Value("${aws.transcribe.pool.max-idle:8}")
+    private Integer poolMaxIdle;
+
+    @Value("${aws.transcribe.pool.max-idle-age-ms:10000}")
+    private Integer poolMaxIdleAgeMs;
+
+    @Value("${aws.transcribe.pool.refill-interval-ms:500}")
+    private Integer poolRefillIntervalMs;
+
+    @Value("${aws.transcribe.pool.stop-timeout-ms:5000}")
+    private Integer poolStopTimeoutMs;
+
+    @Value("${aws.transcribe.vocabulary.enabled:false}")
+    private Boolean vocabularyEnabled;
+
+    @Value("${aws.transcribe.vocabulary.dictionary:classpath:vocabulary/legal.txt}")
+    private String vocabularyDictionary;
+
+    @Value("${aws.transcribe.vocabulary.reload-interval-ms:30000}")
+    private Integer vocabularyReloadIntervalMs;
+
+    @Value("${aws.transcribe.split.enabled:false}")
+    private Boolean splitEnabled;
+
+    @Value("${aws.transcribe.split.target-segment-seconds:90}")
+    private Integer splitTargetSegmentSeconds;
+
+    @Value("${aws.transcribe.split.max-segment-seconds:150}")
+    private Integer splitMaxSegmentSeconds;
+
+    @Value("${aws.transcribe.split.min-silence-ms:300}")
+    private Integer splitMinSilenceMs;
+
+    @Value("${aws.transcribe.split.silence-margin-db:10}")
+    private Double splitSilenceMarginDb;
+
+    @Value("${aws.transcribe.split.overlap-ms:1000}")
+    private Integer splitOverlapMs;
+
+    @Value("${aws.transcribe.split.max-concurrency:8}")
+    private Integer splitMaxConcurrency;
+
+    @Value("${aws.transcribe.split.max-streams:16}")
+    private Integer splitMaxStreams;
+
+    @Value("${aws.transcribe.results.fanout.enabled:true}")
+    private Boolean resultFanoutEnabled;
+
+    @Value("${aws.transcribe.results.fanout.ring-size:1024}")
+    private Integer resultFanoutRingSize;
+
+    @Value("${aws.transcribe.job-status.ttl-ms:500}")
+    private Integer jobStatusTtlMs;
+
+    @Value("${aws.transcribe.job-status.stale-ms:250}")
+    private Integer jobStatusStaleMs;
+
+    @Value("${aws.transcribe.job-status.max-entries:1024}")
+    private Integer jobStatusMaxEntries;
+
     /**
      * Gets the language code for transcription.
      *
@@ -47,4 +137,285 @@ public class TranscribeConfig {
     public Boolean getEnablePartialResults() {
         return enablePartialResults;
     }
+
+    /**
+     * Checks if incoming audio frames are re-chunked before being streamed upstream.
+     *
+     * @return true if frame aggregation is enabled, false otherwise
+     */
+    public Boolean getAggregationEnabled() {
+        return aggregationEnabled;
+    }
+
+    /**
+     * Gets the duration of audio in each chunk streamed upstream.
+     * Transcribe streaming performs best with chunks of roughly 50 to 200 ms.
+     *
+     * @return the target chunk duration in milliseconds
+     */
+    public Integer getAggregationTargetChunkMs() {
+        return aggregationTargetChunkMs;
+    }
+
+    /**
+     * Gets the longest time audio may wait for a chunk to fill before it is sent upstream anyway.
+     *
+     * @return the maximum aggregation delay in milliseconds
+     */
+    public Integer getAggregationMaxDelayMs() {
+        return aggregationMaxDelayMs;
+    }
+
+    /**
+     * Gets the number of audio frames a client of the streaming WebSocket may be ahead of
+     * Transcribe. Reading from the client pauses once half of them are buffered; where the
+     * container cannot pause reading, a client that exceeds the limit is disconnected.
+     *
+     * @return the maximum number of buffered frames
+     */
+    public Integer getStreamMaxBufferedFrames() {
+        return streamMaxBufferedFrames;
+    }
+
+    /**
+     * Checks if each streaming session's audio is denoised and levelled before it is transcribed.
+     *
+     * @return true if audio preprocessing is enabled, false otherwise
+     */
+    public Boolean getPreprocessingEnabled() {
+        return preprocessingEnabled;
+    }
+
+    /**
+     * Gets the most that noise is attenuated by preprocessing.
+     *
+     * @return the maximum noise suppression in dB
+     */
+    public Double getPreprocessingNoiseSuppressionDb() {
+        return preprocessingNoiseSuppressionDb;
+    }
+
+    /**
+     * Gets the speech level that preprocessing's gain control aims for.
+     *
+     * @return the target level in dB relative to full scale
+     */
+    public Double getPreprocessingTargetLevelDbfs() {
+        return preprocessingTargetLevelDbfs;
+    }
+
+    /**
+     * Gets the most that preprocessing's gain control amplifies quiet callers.
+     *
+     * @return the maximum gain in dB
+     */
+    public Double getPreprocessingMaxGainDb() {
+        return preprocessingMaxGainDb;
+    }
+
+    /**
+     * Checks if streaming sessions are sent to Amazon Transcribe over streams opened ahead of
+     * demand. When disabled, sessions use the local simulated transcription.
+     *
+     * @return true if the warm stream pool is enabled, false otherwise
+     */
+    public Boolean getPoolEnabled() {
+        return poolEnabled;
+    }
+
+    /**
+     * Gets the fewest warm streams kept open while the pool is enabled, however quiet it is.
+     *
+     * @return the minimum number of warm streams
+     */
+    public Integer getPoolMinIdle() {
+        return poolMinIdle;
+    }
+
+    /**
+     * Gets the most warm streams kept open, however busy it is.
+     *
+     * @return the maximum number of warm streams
+     */
+    public Integer getPoolMaxIdle() {
+        return poolMaxIdle;
+    }
+
+    /**
+     * Gets how long a warm stream may wait for a session before it is replaced. Transcribe ends
+     * streams that receive no audio for 15 seconds, so this must stay well below that.
+     *
+     * @return the maximum warm stream age in milliseconds
+     */
+    public Integer getPoolMaxIdleAgeMs() {
+        return poolMaxIdleAgeMs;
+    }
+
+    /**
+     * Gets how often expired warm streams are replaced and the pool is resized.
+     *
+     * @return the refill interval in milliseconds
+     */
+    public Integer getPoolRefillIntervalMs() {
+        return poolRefillIntervalMs;
+    }
+
+    /**
+     * Gets how long a stopping session waits for Transcribe's last results before its stream is
+     * cancelled. No thread is held while it waits.
+     *
+     * @return the stop timeout in milliseconds
+     */
+    public Integer getPoolStopTimeoutMs() {
+        return poolStopTimeoutMs;
+    }
+
+    /**
+     * Checks if known misrecognitions in final transcripts are replaced with the phrases meant.
+     *
+     * @return true if vocabulary correction is enabled, false otherwise
+     */
+    public Boolean getVocabularyEnabled() {
+        return vocabularyEnabled;
+    }
+
+    /**
+     * Gets the vocabulary dictionary: a file path, or a {@code classpath:} resource, which is
+     * never reloaded.
+     *
+     * @return the dictionary location
+     */
+    public String getVocabularyDictionary() {
+        return vocabularyDictionary;
+    }
+
+    /**
+     * Gets how often the dictionary file is checked for changes; 0 turns reloading off.
+     *
+     * @return the reload interval in milliseconds
+     */
+    public Integer getVocabularyReloadIntervalMs() {
+        return vocabularyReloadIntervalMs;
+    }
+
+    /**
+     * Checks if recordings are transcribed as segments split at pauses and streamed in
+     * parallel, rather than as a single batch job.
+     *
+     * @return true if split transcription is enabled, false otherwise
+     */
+    public Boolean getSplitEnabled() {
+        return splitEnabled;
+    }
+
+    /**
+     * Gets the segment length the splitter aims for.
+     *
+     * @return the target segment length in seconds
+     */
+    public Integer getSplitTargetSegmentSeconds() {
+        return splitTargetSegmentSeconds;
+    }
+
+    /**
+     * Gets the longest a segment may run when no pause is found nearer the target.
+     *
+     * @return the maximum segment length in seconds
+     */
+    public Integer getSplitMaxSegmentSeconds() {
+        return splitMaxSegmentSeconds;
+    }
+
+    /**
+     * Gets the shortest pause a recording may be split in.
+     *
+     * @return the minimum silence in milliseconds
+     */
+    public Integer getSplitMinSilenceMs() {
+        return splitMinSilenceMs;
+    }
+
+    /**
+     * Gets how far above the recording's noise floor audio still counts as silence.
+     *
+     * @return the silence margin in dB
+     */
+    public Double getSplitSilenceMarginDb() {
+        return splitSilenceMarginDb;
+    }
+
+    /**
+     * Gets how far each segment extends into its neighbours, so words at a cut are heard whole.
+     *
+     * @return the overlap in milliseconds
+     */
+    public Integer getSplitOverlapMs() {
+        return splitOverlapMs;
+    }
+
+    /**
+     * Gets how many segments of a recording are streamed to Transcribe at once.
+     *
+     * @return the maximum concurrent streams per recording
+     */
+    public Integer getSplitMaxConcurrency() {
+        return splitMaxConcurrency;
+    }
+
+    /**
+     * Gets how many segments of all recordings together are streamed to Transcribe at once.
+     *
+     * @return the maximum concurrent segment streams across the service
+     */
+    public Integer getSplitMaxStreams() {
+        return splitMaxStreams;
+    }
+
+    /**
+     * Checks if results are handed to listeners through per-session ring buffers, each listener
+     * reading on its own thread, rather than called on the streaming thread.
+     *
+     * @return true if result fan-out is enabled
+     */
+    public Boolean getResultFanoutEnabled() {
+        return resultFanoutEnabled;
+    }
+
+    /**
+     * Gets how many results a session's ring buffer holds before a listener that has fallen
+     * behind loses results.
+     *
+     * @return the ring size, rounded up to a power of two
+     */
+    public Integer getResultFanoutRingSize() {
+        return resultFanoutRingSize;
+    }
+
+    /**
+     * Gets how long a batch job's status is reused before Transcribe is asked again.
+     * Kept below the one-second polling interval, so each poll sees a new status.
+     *
+     * @return the job status TTL in milliseconds
+     */
+    public Integer getJobStatusTtlMs() {
+        return jobStatusTtlMs;
+    }
+
+    /**
+     * Gets how long after its TTL a job status is still served while it is refreshed.
+     *
+     * @return the stale window in milliseconds
+     */
+    public Integer getJobStatusStaleMs() {
+        return jobStatusStaleMs;
+    }
+
+    /**
+     * Gets the most batch jobs whose status is cached.
+     *
+     * @return the maximum number of cached job statuses
+     */
+    public Integer getJobStatusMaxEntries() {
+        return jobStatusMaxEntries;
+    }
 }
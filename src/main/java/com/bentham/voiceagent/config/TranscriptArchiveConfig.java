@@ -0,0 +1,75 @@
+package com.bentham.voiceagent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+/**
+ * Configuration properties for the transcript archive.
+ * This class holds configuration values for archiving and indexing final transcripts.
+ */
+@Configuration
+@PropertySource("classpath:application.yml")
+public class TranscriptArchiveConfig {
+
+    @Value("${voice.archive.enabled:false}")
+    private Boolean enabled;
+
+    @Value("${voice.archive.directory:transcripts}")
+    private String directory;
+
+    @Value("${voice.archive.segment-size-bytes:67108864}")
+    private Integer segmentSizeBytes;
+
+    @Value("${voice.archive.queue-capacity:10000}")
+    private Integer queueCapacity;
+
+    @Value("${voice.archive.flush-interval-ms:1000}")
+    private Integer flushIntervalMs;
+
+    /**
+     * Checks if final transcripts are archived.
+     *
+     * @return true if the archive is enabled, false otherwise
+     */
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the directory the archive segments are written to.
+     *
+     * @return the archive directory
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the log size at which a segment is sealed and its index written. At most 1 GB, so
+     * the index can be mapped as one buffer.
+     *
+     * @return the segment size in bytes
+     */
+    public Integer getSegmentSizeBytes() {
+        return segmentSizeBytes;
+    }
+
+    /**
+     * Gets the number of transcripts that may wait to be archived before new ones are dropped.
+     *
+     * @return the queue capacity
+     */
+    public Integer getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Gets the longest time an archived transcript may wait before it is forced to disk.
+     *
+     * @return the flush interval in milliseconds
+     */
+    public Integer getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+}
@@ -0,0 +1,36 @@
+package com.bentham.voiceagent.config;
+
+import com.bentham.voiceagent.controller.TenantHandshakeInterceptor;
+import com.bentham.voiceagent.controller.TranscriptionStreamWebSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Configuration for the raw transcription WebSocket.
+ * Audio is received as binary frames on a plain WebSocket rather than over STOMP, so reading
+ * from each client can be paused while Transcribe catches up.
+ */
+@Configuration
+@EnableWebSocket
+public class TranscriptionStreamWebSocketConfig implements WebSocketConfigurer {
+
+    private final TranscriptionStreamWebSocketHandler transcriptionStreamWebSocketHandler;
+    private final TenantHandshakeInterceptor tenantHandshakeInterceptor;
+
+    @Autowired
+    public TranscriptionStreamWebSocketConfig(TranscriptionStreamWebSocketHandler transcriptionStreamWebSocketHandler,
+                                              TenantHandshakeInterceptor tenantHandshakeInterceptor) {
+        this.transcriptionStreamWebSocketHandler = transcriptionStreamWebSocketHandler;
+        this.tenantHandshakeInterceptor = tenantHandshakeInterceptor;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(transcriptionStreamWebSocketHandler, "/transcription/ws")
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(tenantHandshakeInterceptor);
+    }
+}
@@ -0,0 +1,75 @@
+package com.bentham.voiceagent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+/**
+ * Configuration properties for voice turns.
+ * This class holds configuration values for turning final transcripts into responses,
+ * including speculative processing of stable partial transcripts.
+ */
+@Configuration
+@PropertySource("classpath:application.yml")
+public class VoiceTurnConfig {
+
+    @Value("${voice.turn.speech.enabled:true}")
+    private Boolean speechEnabled;
+
+    @Value("${voice.turn.barge-in.enabled:true}")
+    private Boolean bargeInEnabled;
+
+    @Value("${voice.turn.speculation.enabled:true}")
+    private Boolean speculationEnabled;
+
+    @Value("${voice.turn.speculation.stability-window-ms:300}")
+    private Integer stabilityWindowMs;
+
+    @Value("${voice.turn.speculation.min-words:2}")
+    private Integer minWords;
+
+    /**
+     * Checks if responses are synthesized and streamed to the client as audio.
+     *
+     * @return true if speech is enabled, false otherwise
+     */
+    public Boolean getSpeechEnabled() {
+        return speechEnabled;
+    }
+
+    /**
+     * Checks if new speech from the user cancels the response still being generated or spoken.
+     *
+     * @return true if barge-in is enabled, false otherwise
+     */
+    public Boolean getBargeInEnabled() {
+        return bargeInEnabled;
+    }
+
+    /**
+     * Checks if stable partial transcripts are processed before the final transcript arrives.
+     *
+     * @return true if speculation is enabled, false otherwise
+     */
+    public Boolean getSpeculationEnabled() {
+        return speculationEnabled;
+    }
+
+    /**
+     * Gets how long a partial transcript must stay unchanged before it is processed speculatively.
+     *
+     * @return the stability window in milliseconds
+     */
+    public Integer getStabilityWindowMs() {
+        return stabilityWindowMs;
+    }
+
+    /**
+     * Gets the fewest words a partial transcript must have to be processed speculatively.
+     *
+     * @return the minimum word count
+     */
+    public Integer getMinWords() {
+        return minWords;
+    }
+}
@@ -1,25 +1,77 @@
 package com.bentham.voiceagent.config;
 
+import com.bentham.voiceagent.controller.TenantHandshakeInterceptor;
+import com.bentham.voiceagent.util.KeyedSerialExecutor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.support.MessageHandlingRunnable;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Configuration for WebSocket communication.
  * This class sets up the WebSocket endpoints and message broker for real-time communication.
+ *
+ * <p>Spring hands each inbound STOMP message to the inbound channel's executor on the thread
+ * that read it, so in the order the session sent them, but a plain pool may then handle two
+ * frames of one session at once, or out of order. With {@code voice.inbound.ordered-dispatch}
+ * set, messages are keyed by WebSocket session and each session's messages run one at a time
+ * in arrival order, while different sessions run in parallel.</p>
+ *
+ * <p>Metrics: {@code voice.inbound.pending} gauges the inbound messages waiting or running and
+ * {@code voice.inbound.sessions} the sessions they belong to.</p>
  */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final InboundDispatchConfig inboundDispatchConfig;
+    private final TenantHandshakeInterceptor tenantHandshakeInterceptor;
+    private final ExecutorService inboundPool;
+    private final KeyedSerialExecutor inboundExecutor;
+
+    @Autowired
+    public WebSocketConfig(InboundDispatchConfig inboundDispatchConfig,
+                           TenantHandshakeInterceptor tenantHandshakeInterceptor,
+                           MeterRegistry meterRegistry) {
+        this.inboundDispatchConfig = inboundDispatchConfig;
+        this.tenantHandshakeInterceptor = tenantHandshakeInterceptor;
+        int threads = inboundDispatchConfig.getThreads() > 0
+                ? inboundDispatchConfig.getThreads()
+                : 2 * Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.inboundPool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "voice-inbound-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.inboundExecutor = new KeyedSerialExecutor(inboundPool);
+        Gauge.builder("voice.inbound.pending", inboundExecutor, KeyedSerialExecutor::getPendingCount)
+                .description("Inbound STOMP messages waiting or being handled")
+                .register(meterRegistry);
+        Gauge.builder("voice.inbound.sessions", inboundExecutor, KeyedSerialExecutor::getActiveKeyCount)
+                .description("WebSocket sessions with inbound STOMP messages waiting or being handled")
+                .register(meterRegistry);
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Enable a simple in-memory message broker for sending messages to clients
-        // Messages with destinations starting with /topic will be routed to the broker
-        config.enableSimpleBroker("/topic");
-        
+        // Messages with destinations starting with /topic will be routed to the broker;
+        // /queue carries per-client messages such as /user/queue/errors
+        config.enableSimpleBroker("/topic", "/queue");
+
         // Set the application destination prefix for client-to-server messages
         // Messages with destinations starting with /app will be routed to @MessageMapping methods
         config.setApplicationDestinationPrefixes("/app");
@@ -30,6 +82,33 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Register a simple WebSocket endpoint
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*") // Use patterns instead of origins for CORS
+                .addInterceptors(tenantHandshakeInterceptor)
                 .withSockJS();
     }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (!Boolean.TRUE.equals(inboundDispatchConfig.getOrderedDispatch())) {
+            return;
+        }
+        registration.executor(task -> {
+            Object key = null;
+            if (task instanceof MessageHandlingRunnable handling) {
+                key = SimpMessageHeaderAccessor.getSessionId(handling.getMessage().getHeaders());
+            }
+            if (key != null) {
+                inboundExecutor.execute(key, task);
+            } else {
+                inboundPool.execute(task);
+            }
+        });
+    }
+
+    /**
+     * Stops the inbound threads.
+     */
+    @PreDestroy
+    public void shutdown() {
+        inboundPool.shutdownNow();
+    }
 }
@@ -0,0 +1,107 @@
+package com.bentham.voiceagent.controller;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Puts the audio frames of one session back into the order of their client sequence numbers,
+ * which start at 0 with each transcription session.
+ *
+ * <p>A frame that arrives ahead of its turn waits for the frames before it. Once more than the
+ * window of frames are waiting, the missing frames are given up on and delivery continues from
+ * the oldest waiting frame, so one lost frame cannot hold up a session indefinitely. Frames at
+ * or behind the delivery point are dropped as duplicates. Instances are thread-safe.</p>
+ */
+class AudioReorderBuffer {
+
+    private final int window;
+    private final Counter reordered;
+    private final Counter skipped;
+    private final Counter duplicates;
+    private final TreeMap<Long, byte[]> waiting = new TreeMap<>();
+    private long next;
+
+    /**
+     * Creates a buffer expecting sequence number 0 first.
+     *
+     * @param window the most frames held while waiting for a missing one
+     * @param reordered counts frames that arrived ahead of their turn
+     * @param skipped counts missing frames given up on
+     * @param duplicates counts frames dropped as already delivered
+     */
+    AudioReorderBuffer(int window, Counter reordered, Counter skipped, Counter duplicates) {
+        this.window = Math.max(1, window);
+        this.reordered = reordered;
+        this.skipped = skipped;
+        this.duplicates = duplicates;
+    }
+
+    /**
+     * Accepts a frame and returns the frames now ready, in order.
+     *
+     * @param sequence the frame's sequence number
+     * @param frame the audio
+     * @return the frames to deliver, possibly none
+     */
+    synchronized List<byte[]> accept(long sequence, byte[] frame) {
+        if (sequence < next || waiting.containsKey(sequence)) {
+            duplicates.increment();
+            return List.of();
+        }
+        if (sequence > next) {
+            reordered.increment();
+            waiting.put(sequence, frame);
+            if (waiting.size() <= window) {
+                return List.of();
+            }
+            // Give up on the gap before the oldest waiting frame
+            long resumeAt = waiting.firstKey();
+            skipped.increment(resumeAt - next);
+            next = resumeAt;
+            return release();
+        }
+        List<byte[]> ready = new ArrayList<>();
+        ready.add(frame);
+        next++;
+        ready.addAll(release());
+        return ready;
+    }
+
+    /**
+     * Takes every waiting frame in order, skipping any gaps. Called when the audio ends.
+     *
+     * @return the waiting frames
+     */
+    synchronized List<byte[]> drain() {
+        List<byte[]> remaining = new ArrayList<>(waiting.size());
+        for (Map.Entry<Long, byte[]> entry : waiting.entrySet()) {
+            skipped.increment(entry.getKey() - next);
+            remaining.add(entry.getValue());
+            next = entry.getKey() + 1;
+        }
+        waiting.clear();
+        return remaining;
+    }
+
+    /**
+     * Gets the sequence number of the next frame to deliver. A resuming client resends from here.
+     *
+     * @return the next sequence number
+     */
+    synchronized long getNextSequence() {
+        return next;
+    }
+
+    private List<byte[]> release() {
+        List<byte[]> ready = new ArrayList<>();
+        while (!waiting.isEmpty() && waiting.firstKey() == next) {
+            ready.add(waiting.pollFirstEntry().getValue());
+            next++;
+        }
+        return ready;
+    }
+}
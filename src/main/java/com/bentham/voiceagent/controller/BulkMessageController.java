@@ -0,0 +1,157 @@
+package com.bentham.voiceagent.controller;
+
+import com.bentham.voiceagent.model.BulkMessageRequest;
+import com.bentham.voiceagent.model.BulkMessageResult;
+import com.bentham.voiceagent.service.impl.BulkMessageService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Controller for bulk message processing.
+ * This controller streams newline-delimited JSON messages through the language model and
+ * streams the results back as newline-delimited JSON in the order they complete.
+ */
+@RestController
+public class BulkMessageController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkMessageController.class);
+
+    private final BulkMessageService bulkMessageService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public BulkMessageController(BulkMessageService bulkMessageService, ObjectMapper objectMapper) {
+        this.bulkMessageService = bulkMessageService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Processes a stream of messages.
+     * Each request line is an object with an {@code id}, a {@code message} and optional
+     * {@code parameters}; each response line has the {@code id} and either a {@code response}
+     * or an {@code error}. Messages without an ID are given {@code line-<n>}, their line number,
+     * and lines that cannot be parsed are answered with an error under that ID. The request body
+     * is read as capacity allows, so clients may keep sending while results arrive.
+     *
+     * @param request the HTTP request carrying the messages
+     * @param response the HTTP response the results are written to
+     * @throws IOException if the request cannot be read
+     */
+    @PostMapping(path = "/messages/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void processBulk(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        NdjsonWriter writer = new NdjsonWriter(response.getOutputStream());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        try {
+            bulkMessageService.process(new RequestLines(reader, writer), writer::write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while processing bulk messages");
+        } catch (UncheckedIOException e) {
+            logger.info("Bulk client went away: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes results as lines, flushing each so the client sees it straight away.
+     */
+    private class NdjsonWriter {
+
+        private final OutputStream output;
+
+        NdjsonWriter(OutputStream output) {
+            this.output = output;
+        }
+
+        synchronized void write(BulkMessageResult result) {
+            try {
+                output.write(objectMapper.writeValueAsBytes(result));
+                output.write('\n');
+                output.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Reads requests from the body, answering unreadable lines directly with an error.
+     */
+    private class RequestLines implements Iterator<BulkMessageRequest> {
+
+        private final BufferedReader reader;
+        private final NdjsonWriter writer;
+        private BulkMessageRequest next;
+        private int lineNumber;
+
+        RequestLines(BufferedReader reader, NdjsonWriter writer) {
+            this.reader = reader;
+            this.writer = writer;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                String line;
+                try {
+                    line = reader.readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (line == null) {
+                    return false;
+                }
+                lineNumber++;
+                if (!line.isBlank()) {
+                    next = parse(line);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public BulkMessageRequest next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BulkMessageRequest request = next;
+            next = null;
+            return request;
+        }
+
+        private BulkMessageRequest parse(String line) {
+            String lineId = "line-" + lineNumber;
+            try {
+                BulkMessageRequest request = objectMapper.readValue(line, BulkMessageRequest.class);
+                if (request.getId() == null) {
+                    request.setId(lineId);
+                }
+                if (request.getMessage() == null || request.getMessage().isBlank()) {
+                    writer.write(BulkMessageResult.failure(request.getId(), "Message must not be empty", 0, 0));
+                    return null;
+                }
+                return request;
+            } catch (JsonProcessingException e) {
+                writer.write(BulkMessageResult.failure(lineId, "Invalid JSON: " + e.getOriginalMessage(), 0, 0));
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.bentham.voiceagent.controller;
+
+import com.bentham.voiceagent.model.BulkSpeechRequest;
+import com.bentham.voiceagent.model.BulkSpeechResult;
+import com.bentham.voiceagent.model.BulkSpeechSummary;
+import com.bentham.voiceagent.model.SpeechFormat;
+import com.bentham.voiceagent.service.impl.BulkSpeechService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Controller for pre-rendering speech in bulk.
+ * A manifest of clips is sent as newline-delimited JSON and rendered with adaptive concurrency;
+ * the clips come back as a zip, or are kept in the pre-rendered clip store, as they complete.
+ */
+@RestController
+public class BulkSpeechController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkSpeechController.class);
+
+    // Name of the zip entry listing each clip's result, followed by the job summary
+    static final String REPORT_ENTRY = "report.ndjson";
+
+    private final BulkSpeechService bulkSpeechService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public BulkSpeechController(BulkSpeechService bulkSpeechService, ObjectMapper objectMapper) {
+        this.bulkSpeechService = bulkSpeechService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Renders a manifest of clips.
+     * Each request line is an object with an {@code id}, either {@code text} or {@code ssml}, and
+     * an optional {@code voiceId} and {@code format}. Clips without an ID are given
+     * {@code line-<n>}, their line number, and lines that cannot be parsed are answered with an
+     * error under that ID and counted as failed.
+     *
+     * <p>With {@code output=zip}, the response is a zip holding each clip as
+     * {@code <id>.<extension>}, written as it completes, and a {@code report.ndjson} entry with a
+     * result line per clip and the job summary last. With {@code output=cache}, clips are kept in
+     * the pre-rendered clip store, to be served by {@code /speech/clips/{clipId}} and text clips
+     * by {@code /speech} too, and the response streams a result line per clip and then the
+     * summary.</p>
+     *
+     * <p>A job that stopped part way is resumed by sending its manifest again. Clips kept by
+     * {@code output=cache} are taken from the store rather than synthesized again. A zip is not
+     * kept, so for {@code output=zip} what the previous run rendered is sent ahead of the
+     * manifest: the lines of its report, or, if it stopped before writing one, a
+     * {@code {"id":"<id>","skipped":true}} line for each clip whose entry was received. Those
+     * clips are skipped, reported with {@code "skipped":true} and no entry, except one whose
+     * reported clip ID shows its text, voice or format has changed since. Such lines are told
+     * from clips by having no {@code text} or {@code ssml}.</p>
+     *
+     * @param output where the clips go: {@code zip} or {@code cache}
+     * @param request the HTTP request carrying the manifest
+     * @param response the HTTP response the clips or results are written to
+     * @throws IOException if the request cannot be read
+     */
+    @PostMapping(path = "/speech/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void renderBulk(@RequestParam(defaultValue = "zip") String output,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ClipWriter writer = switch (output) {
+            case "zip" -> new ZipClipWriter(response);
+            case "cache" -> new NdjsonClipWriter(response);
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Unsupported output: " + output + "; expected zip or cache");
+        };
+        BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        try {
+            Map<String, BulkSpeechResult> rendered = new HashMap<>();
+            BulkSpeechSummary summary = bulkSpeechService.process(new RequestLines(reader, rendered),
+                    "cache".equals(output), rendered, writer::write);
+            writer.finish(summary);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while rendering bulk speech");
+        } catch (UncheckedIOException e) {
+            logger.info("Bulk speech client went away: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes clips and their results to the response as they complete.
+     */
+    private abstract static class ClipWriter {
+
+        abstract void write(BulkSpeechResult result, byte[] audio);
+
+        abstract void finish(BulkSpeechSummary summary) throws IOException;
+    }
+
+    /**
+     * Writes each clip as a zip entry, flushing it so the client receives it straight away.
+     * The results are kept for the report, which is written last.
+     */
+    private class ZipClipWriter extends ClipWriter {
+
+        private final ZipOutputStream zip;
+        private final ByteArrayOutputStream report = new ByteArrayOutputStream();
+        private final Set<String> names = new HashSet<>();
+
+        ZipClipWriter(HttpServletResponse response) throws IOException {
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"speech.zip\"");
+            zip = new ZipOutputStream(response.getOutputStream());
+        }
+
+        @Override
+        synchronized void write(BulkSpeechResult result, byte[] audio) {
+            try {
+                if (audio != null) {
+                    zip.putNextEntry(new ZipEntry(entryName(result)));
+                    zip.write(audio);
+                    zip.closeEntry();
+                    zip.flush();
+                }
+                report.write(objectMapper.writeValueAsBytes(result));
+                report.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        synchronized void finish(BulkSpeechSummary summary) throws IOException {
+            report.write(objectMapper.writeValueAsBytes(summary));
+            report.write('\n');
+            zip.putNextEntry(new ZipEntry(REPORT_ENTRY));
+            report.writeTo(zip);
+            zip.closeEntry();
+            zip.finish();
+            zip.flush();
+        }
+
+        /**
+         * Names a clip's entry after its ID, made safe for a file name and unique in the zip.
+         */
+        private String entryName(BulkSpeechResult result) {
+            String base = result.getId().replaceAll("[^A-Za-z0-9._-]", "_");
+            String extension = SpeechFormat.fromValue(result.getFormat()).getExtension();
+            String name = base + "." + extension;
+            for (int n = 2; !names.add(name); n++) {
+                name = base + "-" + n + "." + extension;
+            }
+            return name;
+        }
+    }
+
+    /**
+     * Writes each result as a line, flushing it so the client sees it straight away.
+     */
+    private class NdjsonClipWriter extends ClipWriter {
+
+        private final OutputStream output;
+
+        NdjsonClipWriter(HttpServletResponse response) throws IOException {
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            output = response.getOutputStream();
+        }
+
+        @Override
+        synchronized void write(BulkSpeechResult result, byte[] audio) {
+            writeLine(result);
+        }
+
+        @Override
+        synchronized void finish(BulkSpeechSummary summary) {
+            writeLine(summary);
+        }
+
+        private void writeLine(Object value) {
+            try {
+                output.write(objectMapper.writeValueAsBytes(value));
+                output.write('\n');
+                output.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Reads clips from the body, keeping the results of a previous run it carries and passing
+     * unreadable lines on as invalid requests.
+     */
+    private class RequestLines implements Iterator<BulkSpeechRequest> {
+
+        private final BufferedReader reader;
+        private final Map<String, BulkSpeechResult> rendered;
+        private BulkSpeechRequest next;
+        private int lineNumber;
+
+        RequestLines(BufferedReader reader, Map<String, BulkSpeechResult> rendered) {
+            this.reader = reader;
+            this.rendered = rendered;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                String line;
+                try {
+                    line = reader.readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (line == null) {
+                    return false;
+                }
+                lineNumber++;
+                if (!line.isBlank()) {
+                    next = parse(line);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public BulkSpeechRequest next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BulkSpeechRequest request = next;
+            next = null;
+            return request;
+        }
+
+        /**
+         * Parses a line into a clip, or returns null for a result or summary line of a previous run.
+         */
+        private BulkSpeechRequest parse(String line) {
+            String lineId = "line-" + lineNumber;
+            try {
+                JsonNode node = objectMapper.readTree(line);
+                if (node.isObject() && !node.has("text") && !node.has("ssml")
+                        && (node.has("clipId") || node.has("skipped") || node.has("error") || node.has("elapsedMs"))) {
+                    remember(node);
+                    return null;
+                }
+                BulkSpeechRequest request = objectMapper.treeToValue(node, BulkSpeechRequest.class);
+                if (request.getId() == null) {
+                    request.setId(lineId);
+                }
+                return request;
+            } catch (JsonProcessingException e) {
+                return BulkSpeechRequest.invalid(lineId, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+
+        /**
+         * Keeps a successful result of a previous run; failures and the summary are ignored.
+         */
+        private void remember(JsonNode result) {
+            if (!result.hasNonNull("id") || result.hasNonNull("error") || result.has("elapsedMs")) {
+                return;
+            }
+            String id = result.get("id").asText();
+            rendered.put(id, BulkSpeechResult.skipped(id,
+                    result.hasNonNull("clipId") ? result.get("clipId").asText() : null,
+                    result.hasNonNull("format") ? result.get("format").asText() : null,
+                    result.hasNonNull("bytes") ? result.get("bytes").asLong() : null));
+        }
+    }
+}
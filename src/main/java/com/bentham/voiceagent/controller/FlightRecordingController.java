@@ -0,0 +1,103 @@
+package com.bentham.voiceagent.controller;
+
+import com.bentham.voiceagent.service.impl.FlightRecordingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Admin controller for JDK Flight Recorder recordings.
+ * This controller starts, stops and dumps the recording that captures the voice pipeline's
+ * events, so a latency spike in production can be examined without turning on debug logging.
+ * It is meant for operators and should not be reachable from outside the deployment.
+ */
+@RestController
+@RequestMapping("/admin/flight-recording")
+public class FlightRecordingController {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecordingController.class);
+
+    private final FlightRecordingService flightRecordingService;
+
+    @Autowired
+    public FlightRecordingController(FlightRecordingService flightRecordingService) {
+        this.flightRecordingService = flightRecordingService;
+    }
+
+    /**
+     * Gets the status of the recording.
+     *
+     * @return the status
+     */
+    @GetMapping
+    public FlightRecordingService.Status status() {
+        return flightRecordingService.getStatus();
+    }
+
+    /**
+     * Starts the recording, unless it is already running.
+     *
+     * @return the status
+     */
+    @PostMapping("/start")
+    public FlightRecordingService.Status start() {
+        try {
+            return flightRecordingService.start();
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the recording and dumps it to the recording directory.
+     *
+     * @return the status, with the dump file
+     */
+    @PostMapping("/stop")
+    public FlightRecordingService.Status stop() {
+        try {
+            return flightRecordingService.stop();
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Could not dump flight recording", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not dump flight recording");
+        }
+    }
+
+    /**
+     * Dumps the recording to the recording directory and downloads the dump.
+     *
+     * @return the recording file
+     */
+    @GetMapping("/dump")
+    public ResponseEntity<Resource> dump() {
+        Path file;
+        try {
+            file = flightRecordingService.dump();
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Could not dump flight recording", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not dump flight recording");
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                .body(new FileSystemResource(file));
+    }
+}
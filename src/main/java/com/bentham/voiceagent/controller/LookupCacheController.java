@@ -0,0 +1,78 @@
+package com.bentham.voiceagent.controller;
+
+import com.bentham.voiceagent.service.impl.AmazonPollyService;
+import com.bentham.voiceagent.service.impl.AmazonTranscribeService;
+import com.bentham.voiceagent.util.SingleFlightCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Admin controller for the caches in front of idempotent AWS lookups.
+ * It reports, for each cache and each key in it, how many requests were made and how many of
+ * them reached AWS, so the calls the cache saves can be seen key by key.
+ * It is meant for operators and should not be reachable from outside the deployment.
+ */
+@RestController
+@RequestMapping("/admin/lookup-caches")
+public class LookupCacheController {
+
+    private final AmazonPollyService pollyService;
+    private final AmazonTranscribeService transcribeService;
+
+    @Autowired
+    public LookupCacheController(AmazonPollyService pollyService, AmazonTranscribeService transcribeService) {
+        this.pollyService = pollyService;
+        this.transcribeService = transcribeService;
+    }
+
+    /**
+     * Gets the requests and upstream calls of each lookup cache, in total and by key.
+     *
+     * @return the counts by cache name
+     */
+    @GetMapping
+    public Map<String, CacheStats> stats() {
+        Map<String, CacheStats> caches = new LinkedHashMap<>();
+        caches.put("polly.voices", new CacheStats(pollyService.getVoiceLookups()));
+        caches.put("transcribe.job-status", new CacheStats(transcribeService.getJobStatusLookups()));
+        return caches;
+    }
+
+    /**
+     * The counts of one cache.
+     */
+    public static class CacheStats {
+
+        private final long requests;
+        private final long upstreamCalls;
+        private final Map<String, SingleFlightCache.Stats> keys;
+
+        CacheStats(SingleFlightCache<String, ?> cache) {
+            this.requests = cache.getRequests();
+            this.upstreamCalls = cache.getUpstreamCalls();
+            this.keys = new TreeMap<>(cache.getStats());
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getUpstreamCalls() {
+            return upstreamCalls;
+        }
+
+        public long getCallsSaved() {
+            return requests - upstreamCalls;
+        }
+
+        public Map<String, SingleFlightCache.Stats> getKeys() {
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.bentham.voiceagent.controller;
+
+import com.bentham.voiceagent.service.impl.AudioRecordingService;
+import com.bentham.voiceagent.service.impl.RecordingReplayDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+
+/**
+ * Controller for replaying recorded sessions.
+ * This controller feeds a session recording back through the transcription service so that
+ * latency and quality issues seen in production can be reproduced. Replays run in the
+ * background; starting one returns a replay ID whose status can then be polled.
+ */
+@RestController
+public class RecordingReplayController {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordingReplayController.class);
+
+    private final AudioRecordingService audioRecordingService;
+    private final RecordingReplayDriver replayDriver;
+
+    @Autowired
+    public RecordingReplayController(AudioRecordingService audioRecordingService,
+                                     RecordingReplayDriver replayDriver) {
+        this.audioRecordingService = audioRecordingService;
+        this.replayDriver = replayDriver;
+    }
+
+    /**
+     * Starts replaying a recorded session.
+     *
+     * @param sessionId the ID of the recorded session
+     * @param speed the replay speed; 1 for the original pace, 0 to send as fast as possible
+     * @return the replay, with its ID, accepted but not yet finished
+     */
+    @PostMapping("/recordings/{sessionId}/replay")
+    public ResponseEntity<RecordingReplayDriver.Replay> replay(@PathVariable String sessionId,
+                                                               @RequestParam(defaultValue = "1") double speed) {
+        if (speed < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Replay speed must not be negative");
+        }
+        try {
+            RecordingReplayDriver.Replay replay = replayDriver.submit(sessionId,
+                    audioRecordingService.getRecordingDirectory(sessionId),
+                    speed == 0 ? Double.POSITIVE_INFINITY : speed);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(replay);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Could not replay recording for session: {}", sessionId, e);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No readable recording for session: " + sessionId);
+        }
+    }
+
+    /**
+     * Gets the status of a replay, with its outcome once it has finished.
+     *
+     * @param replayId the ID returned when the replay was started
+     * @return the replay
+     */
+    @GetMapping("/recordings/replays/{replayId}")
+    public RecordingReplayDriver.Replay replayStatus(@PathVariable String replayId) {
+        RecordingReplayDriver.Replay replay = replayDriver.getReplay(replayId);
+        if (replay == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown replay: " + replayId);
+        }
+        return replay;
+    }
+}
@@ -0,0 +1,212 @@
+package com.bentham.voiceagent.controller;
+
+import com.bentham.voiceagent.config.PollyConfig;
+import com.bentham.voiceagent.model.SpeechFormat;
+import com.bentham.voiceagent.service.impl.SpeechStreamingService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Controller for delivering synthesized speech over HTTP.
+ * Audio is sent with chunked transfer encoding as Polly produces it, so playback can start
+ * before synthesis finishes. Clips that have been delivered once are cached and served with
+ * a length, and then support Range requests so players can seek.
+ */
+@RestController
+public class SpeechStreamingController {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpeechStreamingController.class);
+
+    // Response header naming the clip, which can be fetched again from /speech/clips/{clipId}
+    static final String CLIP_ID_HEADER = "X-Clip-Id";
+
+    private final SpeechStreamingService speechStreamingService;
+    private final PollyConfig pollyConfig;
+
+    @Autowired
+    public SpeechStreamingController(SpeechStreamingService speechStreamingService, PollyConfig pollyConfig) {
+        this.speechStreamingService = speechStreamingService;
+        this.pollyConfig = pollyConfig;
+    }
+
+    /**
+     * Speaks text. The format is taken from the {@code format} parameter, then from the Accept
+     * header ({@code audio/mpeg}, {@code audio/ogg} or {@code audio/pcm}), then from
+     * {@code aws.polly.output-format}.
+     *
+     * @param text the text to speak
+     * @param voiceId the voice to speak with, or none for the configured voice
+     * @param format the audio format: {@code mp3}, {@code ogg_vorbis} or {@code pcm}
+     * @param accept the Accept header
+     * @param range the Range header, honoured once the clip is cached
+     * @param response the HTTP response the audio is written to
+     * @throws IOException if the audio could not be sent in full
+     */
+    @GetMapping("/speech")
+    public void speak(@RequestParam String text,
+                      @RequestParam(required = false) String voiceId,
+                      @RequestParam(required = false) String format,
+                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                      @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                      HttpServletResponse response) throws IOException {
+        if (text.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Text must not be blank");
+        }
+        SpeechFormat speechFormat = resolveFormat(format, accept);
+        String voice = voiceId != null && !voiceId.isBlank() ? voiceId : pollyConfig.getVoiceId();
+
+        SpeechStreamingService.Clip cached = speechStreamingService.getCachedClip(
+                SpeechStreamingService.clipId(text, voice, speechFormat));
+        if (cached != null) {
+            writeClip(cached, range, response);
+            return;
+        }
+        streamClip(text, voice, speechFormat, response);
+    }
+
+    /**
+     * Serves a cached clip, such as one announced on the speech WebSocket.
+     *
+     * @param clipId the clip ID
+     * @param range the Range header
+     * @param response the HTTP response the audio is written to
+     * @throws IOException if the audio could not be sent
+     */
+    @GetMapping("/speech/clips/{clipId}")
+    public void clip(@PathVariable String clipId,
+                     @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                     HttpServletResponse response) throws IOException {
+        SpeechStreamingService.Clip clip = speechStreamingService.getCachedClip(clipId);
+        if (clip == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No cached clip: " + clipId);
+        }
+        writeClip(clip, range, response);
+    }
+
+    private SpeechFormat resolveFormat(String format, String accept) {
+        try {
+            if (format != null && !format.isBlank()) {
+                return SpeechFormat.fromValue(format);
+            }
+            SpeechFormat accepted = SpeechFormat.fromAccept(accept);
+            return accepted != null ? accepted : SpeechFormat.fromValue(pollyConfig.getOutputFormat());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private void streamClip(String text, String voiceId, SpeechFormat format, HttpServletResponse response)
+            throws IOException {
+        response.setContentType(format.getContentType());
+        response.setHeader(CLIP_ID_HEADER, SpeechStreamingService.clipId(text, voiceId, format));
+        // No length is known yet, so the container sends each flushed chunk as it is written
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+        OutputStream output = response.getOutputStream();
+        ClientSink sink = new ClientSink(output);
+
+        CompletableFuture<SpeechStreamingService.Delivery> delivery =
+                speechStreamingService.stream(text, voiceId, format, sink);
+        try {
+            delivery.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            delivery.cancel(true);
+        } catch (CancellationException e) {
+            logger.debug("Speech delivery cancelled");
+        } catch (ExecutionException e) {
+            if (sink.failed) {
+                logger.info("Speech client went away: {}", e.getCause().getMessage());
+            } else if (!response.isCommitted()) {
+                logger.warn("Speech synthesis failed", e.getCause());
+                throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Speech synthesis failed");
+            } else {
+                // Abort rather than end the chunked body cleanly, so the client sees a truncated clip
+                throw new IOException("Speech stream failed after it started", e.getCause());
+            }
+        }
+    }
+
+    private static void writeClip(SpeechStreamingService.Clip clip, String rangeHeader, HttpServletResponse response)
+            throws IOException {
+        byte[] audio = clip.getAudio();
+        response.setContentType(clip.getFormat().getContentType());
+        response.setHeader(CLIP_ID_HEADER, clip.getId());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, "\"" + clip.getId() + "\"");
+
+        List<HttpRange> ranges;
+        try {
+            ranges = rangeHeader != null ? HttpRange.parseRanges(rangeHeader) : List.of();
+        } catch (IllegalArgumentException e) {
+            // An unreadable Range header is ignored and the whole clip sent
+            ranges = List.of();
+        }
+        if (ranges.size() != 1) {
+            response.setContentLength(audio.length);
+            response.getOutputStream().write(audio);
+            return;
+        }
+
+        long start;
+        long end;
+        try {
+            start = ranges.get(0).getRangeStart(audio.length);
+            end = ranges.get(0).getRangeEnd(audio.length);
+        } catch (IllegalArgumentException e) {
+            start = audio.length;
+            end = -1;
+        }
+        if (start >= audio.length || start > end) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + audio.length);
+            return;
+        }
+        int length = (int) (end - start + 1);
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + audio.length);
+        response.setContentLength(length);
+        response.getOutputStream().write(audio, (int) start, length);
+    }
+
+    /**
+     * Writes and flushes each chunk, noting whether a failure was the client's.
+     */
+    private static class ClientSink implements SpeechStreamingService.ChunkSink {
+
+        private final OutputStream output;
+        private volatile boolean failed;
+
+        ClientSink(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void send(byte[] chunk) throws IOException {
+            try {
+                output.write(chunk);
+                output.flush();
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.bentham.voiceagent.controller;
+
+import com.bentham.voiceagent.config.PollyConfig;
+import com.bentham.voiceagent.config.SpeechStreamingConfig;
+import com.bentham.voiceagent.model.SpeechFormat;
+import com.bentham.voiceagent.service.impl.SpeechStreamingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebSocket endpoint that delivers synthesized speech as binary frames.
+ *
+ * <p>Clients send JSON text frames: {@code {"type": "speak", "text": ...}} queues a clip,
+ * {@code {"type": "format", "format": ...}} switches the format of later clips and
+ * {@code {"type": "stop"}} cancels the clip being sent and any queued ones. The initial format
+ * and voice can be given as {@code format} and {@code voiceId} query parameters.</p>
+ *
+ * <p>Each clip is announced with a {@code start} event carrying its format and content type,
+ * sent as binary frames as Polly produces it, and closed with an {@code end} event carrying the
+ * clip ID, which can be fetched again from {@code /speech/clips/{clipId}}. Clips are sent in the
+ * order they were requested. A client that falls behind by more than
+ * {@code voice.speech-streaming.send-buffer-bytes} is disconnected.</p>
+ */
+@Component
+public class SpeechWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpeechWebSocketHandler.class);
+
+    private final SpeechStreamingService speechStreamingService;
+    private final SpeechStreamingConfig streamingConfig;
+    private final PollyConfig pollyConfig;
+    private final ObjectMapper objectMapper;
+    private final Map<String, SpeechSession> sessions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SpeechWebSocketHandler(SpeechStreamingService speechStreamingService, SpeechStreamingConfig streamingConfig,
+                                  PollyConfig pollyConfig, ObjectMapper objectMapper) {
+        this.speechStreamingService = speechStreamingService;
+        this.streamingConfig = streamingConfig;
+        this.pollyConfig = pollyConfig;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        MultiValueMap<String, String> query = session.getUri() != null
+                ? UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams()
+                : new LinkedMultiValueMap<>();
+        WebSocketSession sender = new ConcurrentWebSocketSessionDecorator(session,
+                streamingConfig.getSendTimeLimitMs(), streamingConfig.getSendBufferBytes());
+
+        SpeechFormat format;
+        try {
+            String requested = query.getFirst("format");
+            format = SpeechFormat.fromValue(requested != null ? requested : pollyConfig.getOutputFormat());
+        } catch (IllegalArgumentException e) {
+            sendEvent(sender, Map.of("type", "error", "message", e.getMessage()));
+            session.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+        String voiceId = query.getFirst("voiceId");
+        SpeechSession speechSession = new SpeechSession(sender, format,
+                voiceId != null && !voiceId.isBlank() ? voiceId : pollyConfig.getVoiceId());
+        sessions.put(session.getId(), speechSession);
+        sendFormat(speechSession);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        SpeechSession speechSession = sessions.get(session.getId());
+        if (speechSession == null) {
+            return;
+        }
+        JsonNode request;
+        try {
+            request = objectMapper.readTree(message.getPayload());
+        } catch (IOException e) {
+            sendEvent(speechSession.sender, Map.of("type", "error", "message", "Messages must be JSON objects"));
+            return;
+        }
+
+        String type = request.path("type").asText();
+        switch (type) {
+            case "speak" -> {
+                String text = request.path("text").asText();
+                if (text.isBlank()) {
+                    sendEvent(speechSession.sender, Map.of("type", "error", "message", "Text must not be blank"));
+                    return;
+                }
+                String voiceId = request.path("voiceId").asText(speechSession.voiceId);
+                speechSession.enqueue(text, voiceId.isBlank() ? speechSession.voiceId : voiceId);
+            }
+            case "format" -> {
+                try {
+                    speechSession.format = SpeechFormat.fromValue(request.path("format").asText());
+                    sendFormat(speechSession);
+                } catch (IllegalArgumentException e) {
+                    sendEvent(speechSession.sender, Map.of("type", "error", "message", e.getMessage()));
+                }
+            }
+            case "stop" -> speechSession.stop();
+            default -> sendEvent(speechSession.sender, Map.of("type", "error", "message", "Unknown message type: " + type));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        SpeechSession speechSession = sessions.remove(session.getId());
+        if (speechSession != null) {
+            speechSession.stop();
+        }
+    }
+
+    private void sendFormat(SpeechSession speechSession) {
+        SpeechFormat format = speechSession.format;
+        sendEvent(speechSession.sender, Map.of("type", "format", "format", format.getValue(),
+                "contentType", format.getContentType()));
+    }
+
+    private void sendEvent(WebSocketSession sender, Map<String, Object> event) {
+        try {
+            sender.sendMessage(new TextMessage(objectMapper.writeValueAsString(event)));
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not send speech event to WebSocket session {}", sender.getId(), e);
+        }
+    }
+
+    /**
+     * The negotiated format and queue of clips of one WebSocket session.
+     */
+    private class SpeechSession {
+
+        private final WebSocketSession sender;
+        private final String voiceId;
+        private volatile SpeechFormat format;
+
+        // Guarded by this; the last queued clip, and the stop generation clips were queued in
+        private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+        private CompletableFuture<SpeechStreamingService.Delivery> current;
+        private int generation;
+
+        SpeechSession(WebSocketSession sender, SpeechFormat format, String voiceId) {
+            this.sender = sender;
+            this.format = format;
+            this.voiceId = voiceId;
+        }
+
+        synchronized void enqueue(String text, String clipVoiceId) {
+            SpeechFormat clipFormat = format;
+            int queuedGeneration = generation;
+            tail = tail.handle((ignored, error) -> null)
+                    .thenCompose(ignored -> deliver(text, clipVoiceId, clipFormat, queuedGeneration));
+        }
+
+        private CompletableFuture<?> deliver(String text, String clipVoiceId, SpeechFormat clipFormat,
+                                             int queuedGeneration) {
+            CompletableFuture<SpeechStreamingService.Delivery> delivery;
+            synchronized (this) {
+                if (queuedGeneration != generation || !sender.isOpen()) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                Map<String, Object> start = new LinkedHashMap<>();
+                start.put("type", "start");
+                start.put("format", clipFormat.getValue());
+                start.put("contentType", clipFormat.getContentType());
+                sendEvent(sender, start);
+                delivery = speechStreamingService.stream(text, clipVoiceId, clipFormat,
+                        chunk -> sender.sendMessage(new BinaryMessage(chunk)));
+                current = delivery;
+            }
+            return delivery.whenComplete((result, error) -> {
+                Map<String, Object> end = new LinkedHashMap<>();
+                if (error == null) {
+                    end.put("type", "end");
+                    end.put("clipId", result.getClipId());
+                    end.put("bytes", result.getBytes());
+                    end.put("cached", result.isCached());
+                } else if (delivery.isCancelled() || error instanceof CancellationException) {
+                    end.put("type", "stopped");
+                } else {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    logger.warn("Speech delivery failed for WebSocket session {}", sender.getId(), cause);
+                    end.put("type", "error");
+                    end.put("message", "Speech synthesis failed");
+                }
+                sendEvent(sender, end);
+            });
+        }
+
+        synchronized void stop() {
+            generation++;
+            if (current != null) {
+                current.cancel(true);
+            }
+        }
+    }
+}
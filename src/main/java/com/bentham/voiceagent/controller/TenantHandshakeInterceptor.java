@@ -0,0 +1,96 @@
+package com.bentham.voiceagent.controller;
+
+import com.bentham.voiceagent.config.AdmissionConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Handshake interceptor that decides which tenant a WebSocket connection is charged to.
+ *
+ * <p>An authenticated handshake is charged to its principal. Otherwise, with
+ * {@code voice.admission.tenant.api-keys} set, the client names its tenant with an API key, in
+ * an {@code X-Api-Key} header or, since browsers cannot set headers on a WebSocket handshake, an
+ * {@code api-key} query parameter, and a handshake without a known key is refused. With no keys
+ * set, each client address is a tenant of its own. The tenant is stored in the
+ * {@link TranscriptionWebSocketController#TENANT_ATTRIBUTE} handshake attribute.</p>
+ */
+@Component
+public class TenantHandshakeInterceptor implements HandshakeInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantHandshakeInterceptor.class);
+
+    static final String API_KEY_HEADER = "X-Api-Key";
+    static final String API_KEY_PARAMETER = "api-key";
+
+    // Tenant of each API key
+    private final Map<String, String> apiKeys;
+
+    @Autowired
+    public TenantHandshakeInterceptor(AdmissionConfig admissionConfig) {
+        this.apiKeys = parseApiKeys(admissionConfig.getTenantApiKeys());
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        if (request.getPrincipal() != null) {
+            return true;
+        }
+        if (apiKeys.isEmpty()) {
+            InetSocketAddress remoteAddress = request.getRemoteAddress();
+            attributes.put(TranscriptionWebSocketController.TENANT_ATTRIBUTE,
+                    remoteAddress != null ? remoteAddress.getHostString() : TranscriptionWebSocketController.DEFAULT_TENANT);
+            return true;
+        }
+        String apiKey = request.getHeaders().getFirst(API_KEY_HEADER);
+        if (apiKey == null) {
+            apiKey = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst(API_KEY_PARAMETER);
+        }
+        String tenantId = apiKey != null ? apiKeys.get(apiKey) : null;
+        if (tenantId == null) {
+            logger.info("Refused WebSocket handshake from {} without a known API key", request.getRemoteAddress());
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        attributes.put(TranscriptionWebSocketController.TENANT_ATTRIBUTE, tenantId);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    /**
+     * Parses {@code key=tenant} pairs separated by commas.
+     */
+    static Map<String, String> parseApiKeys(String value) {
+        Map<String, String> apiKeys = new HashMap<>();
+        if (value == null) {
+            return apiKeys;
+        }
+        for (String pair : value.split(",")) {
+            if (pair.isBlank()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            if (equals <= 0 || equals == pair.length() - 1) {
+                throw new IllegalArgumentException("voice.admission.tenant.api-keys entries must be key=tenant");
+            }
+            apiKeys.put(pair.substring(0, equals).trim(), pair.substring(equals + 1).trim());
+        }
+        return apiKeys;
+    }
+}
@@ -0,0 +1,55 @@
+package com.bentham.voiceagent.controller;
+
+import com.bentham.voiceagent.model.TranscriptSearchResult;
+import com.bentham.voiceagent.service.impl.TranscriptArchiveService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+
+/**
+ * Controller for searching archived transcripts.
+ * Queries match every word given, in any order; words in double quotes must occur together
+ * as a phrase. Hits are returned newest first.
+ */
+@RestController
+public class TranscriptSearchController {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranscriptSearchController.class);
+
+    private final TranscriptArchiveService transcriptArchiveService;
+
+    @Autowired
+    public TranscriptSearchController(TranscriptArchiveService transcriptArchiveService) {
+        this.transcriptArchiveService = transcriptArchiveService;
+    }
+
+    /**
+     * Searches the transcript archive.
+     *
+     * @param query the query, such as {@code refund "account number"}
+     * @param limit the maximum number of hits to return
+     * @return the total number of matches and the newest matching utterances
+     */
+    @GetMapping("/transcripts/search")
+    public TranscriptSearchResult search(@RequestParam("q") String query,
+                                         @RequestParam(defaultValue = "50") int limit) {
+        if (!transcriptArchiveService.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Transcript archive is disabled");
+        }
+        try {
+            return transcriptArchiveService.search(query, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Transcript search failed for query: {}", query, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Transcript search failed");
+        }
+    }
+}
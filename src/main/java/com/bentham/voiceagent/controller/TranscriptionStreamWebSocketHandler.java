@@ -0,0 +1,320 @@
+package com.bentham.voiceagent.controller;
+
+import com.bentham.voiceagent.config.TranscribeConfig;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.service.AdmissionRejectedException;
+import com.bentham.voiceagent.service.TranscriptionService;
+import com.bentham.voiceagent.service.impl.SessionAdmissionService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.tomcat.websocket.WsSession;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.NativeWebSocketSession;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket endpoint for reactive transcription sessions.
+ *
+ * <p>Clients send audio as binary frames of 16-bit PCM and {@code {"type": "stop"}} once the
+ * audio is complete. Results come back as {@code result} events carrying a
+ * {@link TranscriptionResult}, followed by an {@code end} event before the socket is closed.
+ * The tenant is the authenticated principal, or the one {@link TenantHandshakeInterceptor}
+ * assigned during the handshake.</p>
+ *
+ * <p>Each connection is one {@link TranscriptionService#transcribe} session, started once it is
+ * admitted; until then its frames are buffered under the same limit. Frames are handed
+ * on only as fast as Transcribe accepts them; once
+ * {@code aws.transcribe.stream.max-buffered-frames} / 2 are waiting, the socket stops reading
+ * until they drain, so TCP flow control slows the client. Results are requested one at a time
+ * as each is sent.</p>
+ */
+@Component
+public class TranscriptionStreamWebSocketHandler extends AbstractWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranscriptionStreamWebSocketHandler.class);
+
+    private static final int SEND_TIME_LIMIT_MS = 10000;
+    private static final int SEND_BUFFER_BYTES = 64 * 1024;
+
+    private final TranscriptionService transcriptionService;
+    private final SessionAdmissionService admissionService;
+    private final TranscribeConfig transcribeConfig;
+    private final ObjectMapper objectMapper;
+    private final Map<String, StreamSession> sessions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TranscriptionStreamWebSocketHandler(TranscriptionService transcriptionService,
+                                               SessionAdmissionService admissionService,
+                                               TranscribeConfig transcribeConfig,
+                                               ObjectMapper objectMapper) {
+        this.transcriptionService = transcriptionService;
+        this.admissionService = admissionService;
+        this.transcribeConfig = transcribeConfig;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        WebSocketSession sender = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_BYTES);
+        String tenantId = getTenantId(session);
+        // Audio that arrives while the session waits for admission is buffered, and reading is
+        // paused as for a slow transcription, so the wait holds no container thread
+        StreamSession streamSession = new StreamSession(session, sender, tenantId);
+        sessions.put(session.getId(), streamSession);
+        streamSession.admission = admissionService.admit(tenantId);
+        streamSession.admission.whenComplete((permit, error) -> {
+            if (error == null) {
+                streamSession.start(permit);
+                return;
+            }
+            if (sessions.remove(session.getId(), streamSession)) {
+                streamSession.cancel();
+                if (error instanceof AdmissionRejectedException rejection) {
+                    sendError(sender, rejection);
+                }
+                streamSession.close(CloseStatus.SERVICE_OVERLOAD);
+            }
+        });
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        StreamSession streamSession = sessions.get(session.getId());
+        if (streamSession == null) {
+            return;
+        }
+        // The container reuses the payload buffer once this returns
+        ByteBuffer payload = message.getPayload();
+        byte[] frame = new byte[payload.remaining()];
+        payload.get(frame);
+        try {
+            admissionService.checkAudio(streamSession.tenantId, frame.length);
+        } catch (AdmissionRejectedException e) {
+            sendError(streamSession.sender, e);
+            return;
+        }
+        streamSession.onAudio(frame);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        StreamSession streamSession = sessions.get(session.getId());
+        if (streamSession == null) {
+            return;
+        }
+        String type;
+        try {
+            JsonNode request = objectMapper.readTree(message.getPayload());
+            type = request.path("type").asText();
+        } catch (IOException e) {
+            sendEvent(streamSession.sender, Map.of("type", "error", "message", "Messages must be JSON objects"));
+            return;
+        }
+        if ("stop".equals(type)) {
+            streamSession.endAudio();
+        } else {
+            sendEvent(streamSession.sender, Map.of("type", "error", "message", "Unknown message type: " + type));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        StreamSession streamSession = sessions.remove(session.getId());
+        if (streamSession != null) {
+            streamSession.cancel();
+        }
+    }
+
+    private void sendError(WebSocketSession sender, AdmissionRejectedException e) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("type", "error");
+        error.put("reason", e.getReason());
+        error.put("message", e.getMessage());
+        sendEvent(sender, error);
+    }
+
+    private void sendEvent(WebSocketSession sender, Map<String, Object> event) {
+        try {
+            sender.sendMessage(new TextMessage(objectMapper.writeValueAsString(event)));
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not send transcription event to WebSocket session {}", sender.getId(), e);
+        }
+    }
+
+    private static String getTenantId(WebSocketSession session) {
+        return TranscriptionWebSocketController.getTenantId(session.getPrincipal(), session.getAttributes());
+    }
+
+    /**
+     * The audio and results of one connection.
+     */
+    private class StreamSession {
+
+        private final WebSocketSession session;
+        private final WebSocketSession sender;
+        private final String tenantId;
+        private final Sinks.Many<DataBuffer> audio = Sinks.many().unicast().onBackpressureBuffer();
+        private final ResultSender results = new ResultSender();
+        private final int maxBufferedFrames;
+        private final WsSession flowControl;
+
+        // Frames received but not yet taken by the transcription
+        private final AtomicInteger buffered = new AtomicInteger();
+        // Guarded by this
+        private boolean suspended;
+        private SessionAdmissionService.Permit permit;
+        private boolean cancelled;
+        private volatile CompletableFuture<SessionAdmissionService.Permit> admission;
+
+        StreamSession(WebSocketSession session, WebSocketSession sender, String tenantId) {
+            this.session = session;
+            this.sender = sender;
+            this.tenantId = tenantId;
+            this.maxBufferedFrames = Math.max(2, transcribeConfig.getStreamMaxBufferedFrames());
+            this.flowControl = session instanceof NativeWebSocketSession nativeSession
+                    ? nativeSession.getNativeSession(WsSession.class) : null;
+            if (flowControl == null) {
+                logger.debug("WebSocket session {} cannot pause reading; slow sessions will be closed", session.getId());
+            }
+        }
+
+        /**
+         * Starts transcribing once admitted, unless the connection has closed while it waited.
+         */
+        void start(SessionAdmissionService.Permit permit) {
+            synchronized (this) {
+                if (cancelled) {
+                    permit.close();
+                    return;
+                }
+                this.permit = permit;
+            }
+            transcriptionService.transcribe(audio.asFlux().doOnNext(frame -> onFrameTaken()))
+                    .subscribe(results);
+        }
+
+        void onAudio(byte[] frame) {
+            int waiting = buffered.incrementAndGet();
+            if (audio.tryEmitNext(DefaultDataBufferFactory.sharedInstance.wrap(frame)).isFailure()) {
+                buffered.decrementAndGet();
+                return;
+            }
+            if (waiting >= maxBufferedFrames / 2) {
+                synchronized (this) {
+                    if (flowControl != null && !suspended) {
+                        suspended = true;
+                        flowControl.suspend();
+                    }
+                }
+                if (flowControl == null && waiting > maxBufferedFrames) {
+                    logger.info("Closing transcription WebSocket {}: {} audio frames waiting", session.getId(), waiting);
+                    close(CloseStatus.POLICY_VIOLATION.withReason("Audio sent faster than it can be transcribed"));
+                }
+            }
+        }
+
+        private void onFrameTaken() {
+            int waiting = buffered.decrementAndGet();
+            if (waiting <= maxBufferedFrames / 4) {
+                synchronized (this) {
+                    if (suspended) {
+                        suspended = false;
+                        flowControl.resume();
+                    }
+                }
+            }
+        }
+
+        void endAudio() {
+            audio.tryEmitComplete();
+        }
+
+        void cancel() {
+            if (admission != null) {
+                admission.cancel(false);
+            }
+            results.dispose();
+            audio.tryEmitComplete();
+            releasePermit();
+        }
+
+        private void releasePermit() {
+            SessionAdmissionService.Permit held;
+            synchronized (this) {
+                cancelled = true;
+                held = permit;
+            }
+            if (held != null) {
+                held.close();
+            }
+        }
+
+        void close(CloseStatus status) {
+            try {
+                session.close(status);
+            } catch (IOException e) {
+                logger.debug("Error closing transcription WebSocket {}", session.getId(), e);
+            }
+        }
+
+        /**
+         * Sends results to the client, requesting the next once the last has been sent.
+         */
+        private class ResultSender extends BaseSubscriber<TranscriptionResult> {
+
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(TranscriptionResult result) {
+                Map<String, Object> event = new LinkedHashMap<>();
+                event.put("type", "result");
+                event.put("result", result);
+                sendEvent(sender, event);
+                request(1);
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                sendEvent(sender, Map.of("type", "end"));
+                close(CloseStatus.NORMAL);
+            }
+
+            @Override
+            protected void hookOnError(Throwable throwable) {
+                logger.warn("Transcription failed for WebSocket session {}", session.getId(), throwable);
+                sendEvent(sender, Map.of("type", "error", "message", "Transcription failed"));
+                close(CloseStatus.SERVER_ERROR);
+            }
+
+            @Override
+            protected void hookFinally(SignalType type) {
+                releasePermit();
+            }
+        }
+    }
+}
@@ -1,61 +1,305 @@
 package com.bentham.voiceagent.controller;
 
+import com.bentham.voiceagent.config.InboundDispatchConfig;
 import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.service.AdmissionRejectedException;
 import com.bentham.voiceagent.service.TranscriptionService;
+import com.bentham.voiceagent.service.impl.SessionAdmissionService;
+import com.bentham.voiceagent.service.impl.SessionMessenger;
+import com.bentham.voiceagent.util.VoiceEvents;
+import com.bentham.voiceagent.util.VoiceTracing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Scope;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Controller for handling WebSocket transcription requests.
  * This controller provides endpoints for starting, stopping, and streaming audio for transcription.
+ *
+ * <p>Audio frames may carry a {@code seq} header numbering them from 0 within each transcription
+ * session. Numbered frames are put back in order before they are transcribed, which covers
+ * transports such as SockJS fallbacks that may deliver frames out of order. A client that starts
+ * with a {@code sequenced: true} header promises to number every frame, and once a session has
+ * numbered frames, unnumbered ones are rejected with an error on {@code /user/queue/errors}, as
+ * they could neither be put in order nor told apart from frames resent after a resume.</p>
+ *
+ * <p>Partial transcripts, and the final one in reply to a stop, are sent on
+ * {@code /user/queue/transcription} to the connection whose session they belong to, and to no
+ * other.</p>
+ *
+ * <p>The start response, sent to the starting connection alone on {@code /user/queue/session},
+ * carries a resume token if the session is sequenced, as resuming relies on the frame numbers to
+ * know where the client should resend from. When a connection drops, its transcription session is kept open for
+ * {@code voice.inbound.resume-grace-ms}, and a client that reconnects and starts again with the
+ * token in a {@code resume-token} header gets the same session back, without a new upstream
+ * stream. The response then gives the sequence number to resend from, and frames the server
+ * already has are dropped as duplicates. A token only resumes a session for the tenant that
+ * started it; presented by any other, it is ignored and a new session is started.</p>
+ *
+ * <p>Metrics: {@code voice.inbound.audio.reordered} counts numbered frames that arrived early,
+ * {@code voice.inbound.audio.skipped} the missing frames given up on and
+ * {@code voice.inbound.audio.duplicates} the frames dropped as repeats.
+ * {@code voice.session.resumed} counts resumed sessions, {@code voice.session.resume.expired} the
+ * detached sessions stopped after the grace period and {@code voice.session.detached} gauges the
+ * sessions waiting to be resumed.</p>
+ *
+ * <p>A start that has to wait for admission does not hold its inbound thread. The reply is sent
+ * once the start is admitted or rejected, and the session's later messages are held until then
+ * and handled in the order they arrived.</p>
+ *
+ * <p>Each start, audio and stop message is recorded as a {@link VoiceEvents.StompMessage} flight
+ * recorder event lasting as long as the controller took to handle it, admission waits included.
+ * Start messages are also traced as server spans, and a new session's span is started as a
+ * child of its start's span. Audio frames are not traced, to keep tracing off the per-frame
+ * path.</p>
  */
 @Controller
 public class TranscriptionWebSocketController {
 
     private static final Logger logger = LoggerFactory.getLogger(TranscriptionWebSocketController.class);
     
+    // Handshake attribute naming the tenant, set by TenantHandshakeInterceptor; the client
+    // cannot set it
+    static final String TENANT_ATTRIBUTE = "voice.tenant-id";
+    static final String DEFAULT_TENANT = "default";
+    
+    // STOMP header on audio frames carrying the client's sequence number
+    static final String SEQUENCE_HEADER = "seq";
+    
+    // STOMP header on the start frame by which the client promises to number its audio frames
+    static final String SEQUENCED_HEADER = "sequenced";
+    
+    // STOMP header on the start frame carrying the resume token of a dropped session
+    static final String RESUME_TOKEN_HEADER = "resume-token";
+    
+    // User destination of a session's partial and final transcripts
+    static final String TRANSCRIPTION_DESTINATION = "/queue/transcription";
+    
     private final TranscriptionService transcriptionService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final SessionAdmissionService admissionService;
+    private final SessionMessenger sessionMessenger;
+    private final InboundDispatchConfig inboundDispatchConfig;
     private final Map<String, String> sessionMap = new ConcurrentHashMap<>();
     
+    // Reorder buffers of the WebSocket sessions sending numbered audio frames
+    private final Map<String, AudioReorderBuffer> reorderBuffers = new ConcurrentHashMap<>();
+    
+    private final Counter reorderedFrames;
+    private final Counter skippedFrames;
+    private final Counter duplicateFrames;
+    private final Counter resumedSessions;
+    private final Counter expiredSessions;
+    
+    // Resume token of each WebSocket session with a transcription session, and the reverse
+    private final Map<String, String> resumeTokens = new ConcurrentHashMap<>();
+    private final Map<String, String> tokenOwners = new ConcurrentHashMap<>();
+    
+    // Transcription sessions of dropped connections, by resume token
+    private final Map<String, DetachedSession> detachedSessions = new ConcurrentHashMap<>();
+    
+    private final ScheduledExecutorService resumeExpiry;
+    
+    // Admission permit and tenant of each WebSocket session with a transcription session
+    private final Map<String, AdmittedSession> admittedSessions = new ConcurrentHashMap<>();
+    
+    // Starts waiting for admission, and the messages held behind them, by WebSocket session
+    private final Map<String, PendingStart> pendingStarts = new ConcurrentHashMap<>();
+    
     @Autowired
     public TranscriptionWebSocketController(TranscriptionService transcriptionService, 
-                                           SimpMessagingTemplate messagingTemplate) {
+                                           SessionAdmissionService admissionService,
+                                           SessionMessenger sessionMessenger,
+                                           InboundDispatchConfig inboundDispatchConfig,
+                                           MeterRegistry meterRegistry) {
         this.transcriptionService = transcriptionService;
-        this.messagingTemplate = messagingTemplate;
+        this.admissionService = admissionService;
+        this.sessionMessenger = sessionMessenger;
+        this.inboundDispatchConfig = inboundDispatchConfig;
+        this.reorderedFrames = meterRegistry.counter("voice.inbound.audio.reordered");
+        this.skippedFrames = meterRegistry.counter("voice.inbound.audio.skipped");
+        this.duplicateFrames = meterRegistry.counter("voice.inbound.audio.duplicates");
+        this.resumedSessions = meterRegistry.counter("voice.session.resumed");
+        this.expiredSessions = meterRegistry.counter("voice.session.resume.expired");
+        Gauge.builder("voice.session.detached", detachedSessions, Map::size)
+                .description("Transcription sessions of dropped connections waiting to be resumed")
+                .register(meterRegistry);
+        this.resumeExpiry = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "voice-resume-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
     
     /**
-     * Starts a new transcription session.
+     * Starts a new transcription session, or resumes the one named by a {@code resume-token} header.
+     * A new start waits for admission and is rejected with a message on {@code /user/queue/errors}
+     * if the tenant is over quota or no capacity frees up in time. A token that has expired, or
+     * that belongs to another tenant, starts a new session, reported with {@code resumed} set to
+     * false. The response goes to the starting connection only, as the token must stay secret.
      *
      * @param headerAccessor the message headers
-     * @return a map containing the session ID
+     * @return a future of a map containing the session ID, the resume token, whether the session
+     *         was resumed and the audio sequence number to send next
      */
     @MessageMapping("/transcription/start")
-    @SendTo("/topic/session")
-    public Map<String, String> startTranscription(SimpMessageHeaderAccessor headerAccessor) {
+    @SendToUser(destinations = "/queue/session", broadcast = false)
+    public CompletableFuture<Map<String, String>> startTranscription(SimpMessageHeaderAccessor headerAccessor) {
+        CompletableFuture<Map<String, String>> response = new CompletableFuture<>();
+        if (!holdWhileStarting(headerAccessor.getSessionId(), () -> start(headerAccessor, response))) {
+            start(headerAccessor, response);
+        }
+        return response;
+    }
+    
+    private void start(SimpMessageHeaderAccessor headerAccessor, CompletableFuture<Map<String, String>> response) {
+        VoiceEvents.StompMessage event = new VoiceEvents.StompMessage();
+        event.begin();
+        Span span = VoiceTracing.startSpan("STOMP /transcription/start", SpanKind.SERVER);
+        span.setAttribute(VoiceTracing.WEBSOCKET_SESSION_ID, headerAccessor.getSessionId());
+        CompletableFuture<Map<String, String>> started;
+        try (Scope scope = span.makeCurrent()) {
+            started = doStartTranscription(headerAccessor, span);
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((result, error) -> {
+            String transcriptionSessionId = result != null ? result.get("sessionId") : null;
+            if (error != null) {
+                VoiceTracing.recordFailure(span, error);
+            } else if (transcriptionSessionId != null) {
+                span.setAttribute(VoiceTracing.SESSION_ID, transcriptionSessionId);
+            }
+            span.end();
+            commit(event, "start", headerAccessor.getSessionId(), transcriptionSessionId, 0);
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause == null || cause instanceof CancellationException) {
+                // A start given up on because its connection closed has no one to reply to
+                response.complete(result);
+            } else {
+                response.completeExceptionally(cause);
+            }
+        });
+    }
+    
+    private CompletableFuture<Map<String, String>> doStartTranscription(SimpMessageHeaderAccessor headerAccessor,
+                                                                        Span span) {
         String webSocketSessionId = headerAccessor.getSessionId();
+        
+        // Claim the session first, in case the token belongs to this connection
+        String tenantId = getTenantId(headerAccessor);
+        String resumeToken = headerAccessor.getFirstNativeHeader(RESUME_TOKEN_HEADER);
+        DetachedSession detached = resumeToken != null ? claim(resumeToken, tenantId, webSocketSessionId) : null;
+        
+        // A client that starts again without stopping would otherwise leak its first session
+        closeSession(webSocketSessionId);
+        
+        if (detached != null) {
+            return CompletableFuture.completedFuture(resume(webSocketSessionId, resumeToken, detached));
+        }
+        if (resumeToken != null) {
+            logger.info("Resume token for WebSocket session {} is not valid; starting a new session",
+                    webSocketSessionId);
+        }
         logger.info("Starting transcription session for WebSocket session: {}", webSocketSessionId);
         
+        // Only numbered audio can be resumed, as the numbers tell the client where to resend from
+        boolean sequenced = "true".equalsIgnoreCase(headerAccessor.getFirstNativeHeader(SEQUENCED_HEADER));
+        CompletableFuture<SessionAdmissionService.Permit> admission = admissionService.admit(tenantId);
+        if (admission.isDone()) {
+            return admission.thenApply(permit -> finishStart(webSocketSessionId, tenantId, sequenced, permit, null));
+        }
+        
+        // Queued: the session's later messages wait behind the start, so no audio is lost
+        PendingStart pending = new PendingStart(webSocketSessionId, admission);
+        pendingStarts.put(webSocketSessionId, pending);
+        CompletableFuture<Map<String, String>> started = admission.thenApply(permit -> {
+            try (Scope scope = span.makeCurrent()) {
+                return finishStart(webSocketSessionId, tenantId, sequenced, permit, pending);
+            }
+        });
+        started.whenComplete((result, error) -> pending.release());
+        return started;
+    }
+    
+    /**
+     * Opens the transcription session of an admitted start.
+     *
+     * @param pending the start as it waited for admission, or null if it did not wait
+     * @return the start response, or null if the connection closed while the start waited
+     */
+    private Map<String, String> finishStart(String webSocketSessionId, String tenantId, boolean sequenced,
+                                            SessionAdmissionService.Permit permit, PendingStart pending) {
+        if (pending != null && pending.cancelled) {
+            permit.close();
+            return null;
+        }
+        
         // Start a new streaming transcription session
-        String transcriptionSessionId = transcriptionService.startStreamingTranscription();
+        String transcriptionSessionId;
+        try {
+            transcriptionSessionId = transcriptionService.startStreamingTranscription();
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
         
         // Store the mapping between WebSocket session ID and transcription session ID
         sessionMap.put(webSocketSessionId, transcriptionSessionId);
+        sessionMessenger.bind(transcriptionSessionId, webSocketSessionId);
+        admittedSessions.put(webSocketSessionId, new AdmittedSession(tenantId, permit));
         
         Map<String, String> response = new HashMap<>();
         response.put("sessionId", transcriptionSessionId);
+        response.put("resumed", "false");
+        response.put("nextSequence", "0");
+        
+        if (sequenced) {
+            reorderBuffers.put(webSocketSessionId, newReorderBuffer());
+        }
+        if (sequenced && inboundDispatchConfig.getResumeGraceMs() > 0) {
+            String newToken = UUID.randomUUID().toString();
+            putResumeToken(webSocketSessionId, newToken);
+            response.put("resumeToken", newToken);
+        }
+        
+        // The connection may have closed just as the start was admitted
+        if (pending != null && pending.cancelled) {
+            closeSession(webSocketSessionId);
+            return null;
+        }
         return response;
     }
     
@@ -67,9 +311,25 @@ public class TranscriptionWebSocketController {
      */
     @MessageMapping("/transcription/audio")
     public void processAudio(@Payload byte[] audioData, SimpMessageHeaderAccessor headerAccessor) {
+        if (!holdWhileStarting(headerAccessor.getSessionId(), () -> handleAudio(audioData, headerAccessor))) {
+            handleAudio(audioData, headerAccessor);
+        }
+    }
+    
+    private void handleAudio(byte[] audioData, SimpMessageHeaderAccessor headerAccessor) {
+        VoiceEvents.StompMessage event = new VoiceEvents.StompMessage();
+        event.begin();
         String webSocketSessionId = headerAccessor.getSessionId();
         String transcriptionSessionId = sessionMap.get(webSocketSessionId);
-        
+        try {
+            doProcessAudio(audioData, headerAccessor, webSocketSessionId, transcriptionSessionId);
+        } finally {
+            commit(event, "audio", webSocketSessionId, transcriptionSessionId, audioData.length);
+        }
+    }
+    
+    private void doProcessAudio(byte[] audioData, SimpMessageHeaderAccessor headerAccessor,
+                                String webSocketSessionId, String transcriptionSessionId) {        
         if (transcriptionSessionId == null) {
             logger.warn("No transcription session found for WebSocket session: {}", webSocketSessionId);
             return;
@@ -77,21 +337,36 @@ public class TranscriptionWebSocketController {
         
         logger.debug("Received audio data for session {}: {} bytes", transcriptionSessionId, audioData.length);
         
-        // Send the audio data to the transcription service
-        transcriptionService.sendAudioChunk(transcriptionSessionId, audioData);
+        AdmittedSession admitted = admittedSessions.get(webSocketSessionId);
+        admissionService.checkAudio(tenantOf(admitted), audioData.length);
         
-        // Get the latest transcription and send it back to the client
+        // Send the audio data to the transcription service, in sequence order if numbered
+        String sequence = headerAccessor.getFirstNativeHeader(SEQUENCE_HEADER);
+        if (sequence != null) {
+            long sequenceNumber;
+            try {
+                sequenceNumber = Long.parseLong(sequence.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring audio frame with invalid sequence number {} for session {}",
+                        sequence, transcriptionSessionId);
+                return;
+            }
+            AudioReorderBuffer buffer = reorderBuffers.computeIfAbsent(webSocketSessionId, id -> newReorderBuffer());
+            sendAudio(transcriptionSessionId, buffer.accept(sequenceNumber, audioData));
+        } else if (reorderBuffers.containsKey(webSocketSessionId)) {
+            throw new UnnumberedAudioException(transcriptionSessionId);
+        } else {
+            transcriptionService.sendAudioChunk(transcriptionSessionId, audioData);
+        }
+        
+        // Get the latest transcription and send it back to the client, and to no other
         String transcription = transcriptionService.getLatestTranscription(transcriptionSessionId);
         if (transcription != null && !transcription.isEmpty()) {
-            // Send to general topic instead of user-specific destination
             TranscriptionResult result = TranscriptionResult.partial(
                 transcriptionSessionId, 
                 transcription
             );
-            messagingTemplate.convertAndSend(
-                    "/topic/transcription",
-                    result
-            );
+            sessionMessenger.sendToConnection(webSocketSessionId, TRANSCRIPTION_DESTINATION, result);
         }
     }
     
@@ -99,32 +374,486 @@ public class TranscriptionWebSocketController {
      * Stops a transcription session.
      *
      * @param headerAccessor the message headers
-     * @return the final transcription result
+     * @return a future of the final transcription result, sent to the stopping connection alone
+     *         on {@code /user/queue/transcription}
      */
     @MessageMapping("/transcription/stop")
-    @SendTo("/topic/transcription")
-    public TranscriptionResult stopTranscription(SimpMessageHeaderAccessor headerAccessor) {
+    @SendToUser(destinations = TRANSCRIPTION_DESTINATION, broadcast = false)
+    public CompletableFuture<TranscriptionResult> stopTranscription(SimpMessageHeaderAccessor headerAccessor) {
+        CompletableFuture<TranscriptionResult> response = new CompletableFuture<>();
+        Runnable stop = () -> {
+            try {
+                stop(headerAccessor).whenComplete((result, error) -> {
+                    if (error != null) {
+                        response.completeExceptionally(error);
+                    } else {
+                        response.complete(result);
+                    }
+                });
+            } catch (RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+        };
+        if (!holdWhileStarting(headerAccessor.getSessionId(), stop)) {
+            stop.run();
+        }
+        return response;
+    }
+    
+    private CompletableFuture<TranscriptionResult> stop(SimpMessageHeaderAccessor headerAccessor) {
+        VoiceEvents.StompMessage event = new VoiceEvents.StompMessage();
+        event.begin();
         String webSocketSessionId = headerAccessor.getSessionId();
         String transcriptionSessionId = sessionMap.get(webSocketSessionId);
-        
+        try {
+            return doStopTranscription(webSocketSessionId, transcriptionSessionId);
+        } finally {
+            commit(event, "stop", webSocketSessionId, transcriptionSessionId, 0);
+        }
+    }
+    
+    private CompletableFuture<TranscriptionResult> doStopTranscription(String webSocketSessionId,
+                                                                        String transcriptionSessionId) {
         if (transcriptionSessionId == null) {
             logger.warn("No transcription session found for WebSocket session: {}", webSocketSessionId);
-            return TranscriptionResult.final_(null, "No active transcription session", 0.0);
+            return CompletableFuture.completedFuture(
+                    TranscriptionResult.final_(null, "No active transcription session", 0.0));
         }
         
         logger.info("Stopping transcription session: {}", transcriptionSessionId);
         
-        // Stop the streaming session and get the final transcription
-        String finalTranscription = transcriptionService.stopStreamingTranscription(transcriptionSessionId);
+        // Frames still waiting for a missing one are sent rather than lost
+        AudioReorderBuffer buffer = reorderBuffers.remove(webSocketSessionId);
+        if (buffer != null) {
+            sendAudio(transcriptionSessionId, buffer.drain());
+        }
         
-        // Remove the session mapping
+        // Remove the session mapping now, so the connection's later frames and its next start
+        // are not taken for this session while it stops
         sessionMap.remove(webSocketSessionId);
+        removeResumeToken(webSocketSessionId);
+        AdmittedSession admitted = admittedSessions.remove(webSocketSessionId);
+        
+        // Stop the streaming session without holding the inbound thread for its last results.
+        // It stays bound to the connection until then, so replies to them still reach the client
+        return stopAsync(transcriptionSessionId)
+            .whenComplete((finalTranscription, error) -> {
+                sessionMessenger.unbind(transcriptionSessionId, webSocketSessionId);
+                release(admitted);
+            })
+            .thenApply(finalTranscription -> TranscriptionResult.final_(
+                transcriptionSessionId,
+                finalTranscription,
+                0.95 // Example confidence score
+            ));
+    }
+    
+    /**
+     * Handles a WebSocket session that closed without stopping its transcription session. The
+     * session is kept for the client to resume during the grace period, and otherwise stopped so
+     * it does not keep its admission slot.
+     *
+     * @param event the disconnect event
+     */
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        String webSocketSessionId = event.getSessionId();
+        PendingStart pending = pendingStarts.remove(webSocketSessionId);
+        if (pending != null) {
+            pending.cancel();
+        }
+        String resumeToken = resumeTokens.get(webSocketSessionId);
+        if (resumeToken == null || !detach(webSocketSessionId, resumeToken)) {
+            closeSession(webSocketSessionId);
+        }
+    }
+    
+    /**
+     * Stops the transcription sessions still waiting to be resumed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        resumeExpiry.shutdownNow();
+        for (Map.Entry<String, DetachedSession> entry : detachedSessions.entrySet()) {
+            expire(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * Reports an admission rejection to the client that sent the rejected frame.
+     *
+     * @param exception the rejection
+     * @return the error sent to {@code /user/queue/errors}
+     */
+    @MessageExceptionHandler(AdmissionRejectedException.class)
+    @SendToUser(destinations = "/queue/errors", broadcast = false)
+    public Map<String, String> handleAdmissionRejected(AdmissionRejectedException exception) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "admission-rejected");
+        error.put("reason", exception.getReason());
+        error.put("message", exception.getMessage());
+        return error;
+    }
+    
+    /**
+     * Reports an unnumbered audio frame on a sequenced session to the client that sent it. The
+     * frame is dropped and the session carries on.
+     *
+     * @param exception the rejection
+     * @return the error sent to {@code /user/queue/errors}
+     */
+    @MessageExceptionHandler(UnnumberedAudioException.class)
+    @SendToUser(destinations = "/queue/errors", broadcast = false)
+    public Map<String, String> handleUnnumberedAudio(UnnumberedAudioException exception) {
+        logger.debug(exception.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "unnumbered-audio");
+        error.put("message", exception.getMessage());
+        return error;
+    }
+    
+    /**
+     * Holds a message of a WebSocket session whose start is waiting for admission, to be handled
+     * once the start is done.
+     *
+     * @return false if no start is waiting, and the message should be handled now
+     */
+    private boolean holdWhileStarting(String webSocketSessionId, Runnable message) {
+        while (true) {
+            PendingStart pending = pendingStarts.get(webSocketSessionId);
+            if (pending == null) {
+                return false;
+            }
+            // A start that has just finished is about to leave the map
+            if (pending.hold(message)) {
+                return true;
+            }
+        }
+    }
+    
+    private AudioReorderBuffer newReorderBuffer() {
+        return new AudioReorderBuffer(inboundDispatchConfig.getReorderWindow(),
+                reorderedFrames, skippedFrames, duplicateFrames);
+    }
+    
+    private static void commit(VoiceEvents.StompMessage event, String destination, String webSocketSessionId,
+                               String transcriptionSessionId, int bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.destination = destination;
+            event.webSocketSessionId = webSocketSessionId;
+            event.sessionId = transcriptionSessionId;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+    
+    private void sendAudio(String transcriptionSessionId, List<byte[]> frames) {
+        for (byte[] frame : frames) {
+            transcriptionService.sendAudioChunk(transcriptionSessionId, frame);
+        }
+    }
+    
+    /**
+     * Moves a connection's transcription session out of the per-connection maps and schedules it
+     * to be stopped unless resumed first.
+     *
+     * @return false if the token no longer belonged to the connection
+     */
+    private boolean detach(String webSocketSessionId, String resumeToken) {
+        if (!resumeTokens.remove(webSocketSessionId, resumeToken)) {
+            return false;
+        }
+        tokenOwners.remove(resumeToken, webSocketSessionId);
+        String transcriptionSessionId = sessionMap.remove(webSocketSessionId);
+        if (transcriptionSessionId == null) {
+            return false;
+        }
+        sessionMessenger.unbind(transcriptionSessionId, webSocketSessionId);
+        DetachedSession detached = new DetachedSession(transcriptionSessionId,
+                admittedSessions.remove(webSocketSessionId), reorderBuffers.remove(webSocketSessionId));
+        detachedSessions.put(resumeToken, detached);
+        logger.info("Keeping transcription session {} for {} ms to be resumed", transcriptionSessionId,
+                inboundDispatchConfig.getResumeGraceMs());
+        try {
+            detached.expiry = resumeExpiry.schedule(() -> expire(resumeToken, detached),
+                    inboundDispatchConfig.getResumeGraceMs(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            expire(resumeToken, detached);
+        }
+        return true;
+    }
+    
+    /**
+     * Takes the transcription session of a resume token, detaching it first if the connection
+     * holding it has not been seen to close yet, as happens when a client reconnects before the
+     * server notices the old connection has gone. The session is only touched if it belongs to
+     * the claiming tenant, so a token that leaked cannot be used to take over or cut off another
+     * tenant's session.
+     *
+     * @return the session, or null if the token is unknown, has expired or belongs to another tenant
+     */
+    private DetachedSession claim(String resumeToken, String tenantId, String webSocketSessionId) {
+        String owner = tokenOwners.get(resumeToken);
+        if (owner != null) {
+            if (!tenantId.equals(tenantOf(admittedSessions.get(owner)))) {
+                return rejectClaim(webSocketSessionId, tenantId);
+            }
+            detach(owner, resumeToken);
+        }
+        DetachedSession detached = detachedSessions.get(resumeToken);
+        if (detached == null) {
+            return null;
+        }
+        if (!tenantId.equals(tenantOf(detached.admitted))) {
+            return rejectClaim(webSocketSessionId, tenantId);
+        }
+        if (!detachedSessions.remove(resumeToken, detached)) {
+            return null;
+        }
+        if (detached.expiry != null) {
+            detached.expiry.cancel(false);
+        }
+        return detached;
+    }
+    
+    private DetachedSession rejectClaim(String webSocketSessionId, String tenantId) {
+        logger.warn("WebSocket session {} of tenant {} presented the resume token of another tenant",
+                webSocketSessionId, tenantId);
+        return null;
+    }
+    
+    private Map<String, String> resume(String webSocketSessionId, String resumeToken, DetachedSession detached) {
+        logger.info("Resuming transcription session {} on WebSocket session {}", detached.transcriptionSessionId,
+                webSocketSessionId);
+        sessionMap.put(webSocketSessionId, detached.transcriptionSessionId);
+        sessionMessenger.bind(detached.transcriptionSessionId, webSocketSessionId);
+        if (detached.admitted != null) {
+            admittedSessions.put(webSocketSessionId, detached.admitted);
+        }
+        long nextSequence = 0;
+        if (detached.reorderBuffer != null) {
+            reorderBuffers.put(webSocketSessionId, detached.reorderBuffer);
+            nextSequence = detached.reorderBuffer.getNextSequence();
+        }
+        putResumeToken(webSocketSessionId, resumeToken);
+        resumedSessions.increment();
         
-        // Return a TranscriptionResult instead of a String
-        return TranscriptionResult.final_(
-            transcriptionSessionId,
-            finalTranscription,
-            0.95 // Example confidence score
-        );
+        Map<String, String> response = new HashMap<>();
+        response.put("sessionId", detached.transcriptionSessionId);
+        response.put("resumed", "true");
+        response.put("nextSequence", Long.toString(nextSequence));
+        response.put("resumeToken", resumeToken);
+        return response;
+    }
+    
+    /**
+     * Stops a detached transcription session unless it has been resumed in the meantime.
+     */
+    private void expire(String resumeToken, DetachedSession detached) {
+        if (!detachedSessions.remove(resumeToken, detached)) {
+            return;
+        }
+        logger.info("Resume grace period over; stopping transcription session {}", detached.transcriptionSessionId);
+        expiredSessions.increment();
+        stopAbandoned(detached.transcriptionSessionId).whenComplete((finalTranscription, error) -> release(detached.admitted));
+    }
+    
+    private void closeSession(String webSocketSessionId) {
+        reorderBuffers.remove(webSocketSessionId);
+        removeResumeToken(webSocketSessionId);
+        String transcriptionSessionId = sessionMap.remove(webSocketSessionId);
+        AdmittedSession admitted = admittedSessions.remove(webSocketSessionId);
+        if (transcriptionSessionId == null) {
+            release(admitted);
+            return;
+        }
+        sessionMessenger.unbind(transcriptionSessionId, webSocketSessionId);
+        logger.info("Closing abandoned transcription session: {}", transcriptionSessionId);
+        stopAbandoned(transcriptionSessionId).whenComplete((finalTranscription, error) -> release(admitted));
+    }
+    
+    private void putResumeToken(String webSocketSessionId, String resumeToken) {
+        resumeTokens.put(webSocketSessionId, resumeToken);
+        tokenOwners.put(resumeToken, webSocketSessionId);
+    }
+    
+    private void removeResumeToken(String webSocketSessionId) {
+        String resumeToken = resumeTokens.remove(webSocketSessionId);
+        if (resumeToken != null) {
+            tokenOwners.remove(resumeToken, webSocketSessionId);
+        }
+    }
+    
+    /**
+     * Starts stopping a transcription session, failing the returned future rather than throwing.
+     */
+    private CompletableFuture<String> stopAsync(String transcriptionSessionId) {
+        try {
+            return transcriptionService.stopStreamingTranscriptionAsync(transcriptionSessionId);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    /**
+     * Stops a transcription session no client is waiting on, logging a failure to stop it.
+     */
+    private CompletableFuture<String> stopAbandoned(String transcriptionSessionId) {
+        return stopAsync(transcriptionSessionId).whenComplete((finalTranscription, error) -> {
+            if (error != null) {
+                logger.warn("Failed to stop transcription session: {}", transcriptionSessionId, error);
+            }
+        });
+    }
+    
+    private static void release(AdmittedSession admitted) {
+        if (admitted != null) {
+            admitted.permit.close();
+        }
+    }
+    
+    private static String tenantOf(AdmittedSession admitted) {
+        return admitted != null ? admitted.tenantId : DEFAULT_TENANT;
+    }
+    
+    private static String getTenantId(SimpMessageHeaderAccessor headerAccessor) {
+        return getTenantId(headerAccessor.getUser(), headerAccessor.getSessionAttributes());
+    }
+
+    /**
+     * Gets the tenant a connection is charged to: the authenticated principal, else the
+     * {@link #TENANT_ATTRIBUTE} handshake attribute set by {@link TenantHandshakeInterceptor},
+     * else the default tenant. Nothing the client sends in messages is trusted, as a tenant
+     * could otherwise spend another's quota.
+     */
+    static String getTenantId(Principal user, Map<String, Object> attributes) {
+        if (user != null && user.getName() != null && !user.getName().isBlank()) {
+            return user.getName();
+        }
+        Object tenantId = attributes != null ? attributes.get(TENANT_ATTRIBUTE) : null;
+        return tenantId instanceof String && !((String) tenantId).isBlank() ? (String) tenantId : DEFAULT_TENANT;
+    }
+    
+    /**
+     * An audio frame without a {@code seq} header sent on a session whose frames are numbered.
+     */
+    static class UnnumberedAudioException extends RuntimeException {
+        
+        UnnumberedAudioException(String transcriptionSessionId) {
+            super("Audio frames for transcription session " + transcriptionSessionId
+                    + " must carry a seq header");
+        }
+    }
+    
+    /**
+     * A start waiting for admission, with the later messages of its WebSocket session.
+     */
+    private class PendingStart {
+        
+        private final String webSocketSessionId;
+        private final CompletableFuture<SessionAdmissionService.Permit> admission;
+        // Guarded by this
+        private final Deque<Runnable> held = new ArrayDeque<>();
+        private boolean done;
+        private volatile boolean cancelled;
+        
+        PendingStart(String webSocketSessionId, CompletableFuture<SessionAdmissionService.Permit> admission) {
+            this.webSocketSessionId = webSocketSessionId;
+            this.admission = admission;
+        }
+        
+        synchronized boolean hold(Runnable message) {
+            if (done) {
+                return false;
+            }
+            held.addLast(message);
+            return true;
+        }
+        
+        /**
+         * Puts messages ahead of those already held, as they arrived before them.
+         */
+        synchronized boolean holdFirst(Deque<Runnable> messages) {
+            if (done) {
+                return false;
+            }
+            for (Iterator<Runnable> it = messages.descendingIterator(); it.hasNext(); ) {
+                held.addFirst(it.next());
+            }
+            return true;
+        }
+        
+        /**
+         * Gives up on the start, as its connection has closed.
+         */
+        void cancel() {
+            cancelled = true;
+            admission.cancel(false);
+            synchronized (this) {
+                held.clear();
+            }
+        }
+        
+        /**
+         * Handles the held messages in order once the start is done, then lets the session's
+         * messages through. If a held start has to wait for admission in turn, the rest wait
+         * behind it instead.
+         */
+        void release() {
+            while (true) {
+                Runnable next;
+                synchronized (this) {
+                    PendingStart current = pendingStarts.get(webSocketSessionId);
+                    if (current != null && current != this && current.holdFirst(held)) {
+                        held.clear();
+                        done = true;
+                        return;
+                    }
+                    next = held.pollFirst();
+                    if (next == null) {
+                        done = true;
+                        pendingStarts.remove(webSocketSessionId, this);
+                        return;
+                    }
+                }
+                try {
+                    next.run();
+                } catch (RuntimeException e) {
+                    logger.debug("Held message for WebSocket session {} failed", webSocketSessionId, e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * The tenant and admission permit of a transcription session.
+     */
+    private static class AdmittedSession {
+        
+        private final String tenantId;
+        private final SessionAdmissionService.Permit permit;
+        
+        AdmittedSession(String tenantId, SessionAdmissionService.Permit permit) {
+            this.tenantId = tenantId;
+            this.permit = permit;
+        }
+    }
+    
+    /**
+     * A transcription session whose connection dropped, waiting to be resumed.
+     */
+    private static class DetachedSession {
+        
+        private final String transcriptionSessionId;
+        private final AdmittedSession admitted;
+        private final AudioReorderBuffer reorderBuffer;
+        private volatile ScheduledFuture<?> expiry;
+        
+        DetachedSession(String transcriptionSessionId, AdmittedSession admitted, AudioReorderBuffer reorderBuffer) {
+            this.transcriptionSessionId = transcriptionSessionId;
+            this.admitted = admitted;
+            this.reorderBuffer = reorderBuffer;
+        }
     }
 }
@@ -0,0 +1,88 @@
+package com.bentham.voiceagent.model;
+
+import java.util.Map;
+
+/**
+ * Model class representing one message of a bulk job.
+ * The ID is chosen by the client and returned with the result, so results can be matched to
+ * messages when they arrive out of order.
+ */
+public class BulkMessageRequest {
+
+    private String id;
+    private String message;
+    private Map<String, Object> parameters;
+
+    /**
+     * Creates an empty request, for deserialization.
+     */
+    public BulkMessageRequest() {
+    }
+
+    /**
+     * Creates a new bulk message request.
+     *
+     * @param id the correlation ID
+     * @param message the user message
+     * @param parameters additional parameters for the model, or null for none
+     */
+    public BulkMessageRequest(String id, String message, Map<String, Object> parameters) {
+        this.id = id;
+        this.message = message;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Gets the correlation ID.
+     *
+     * @return the ID
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets the correlation ID.
+     *
+     * @param id the ID
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the user message.
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Sets the user message.
+     *
+     * @param message the message
+     */
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Gets the additional parameters for the model.
+     *
+     * @return the parameters, or null for none
+     */
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Sets the additional parameters for the model.
+     *
+     * @param parameters the parameters
+     */
+    public void setParameters(Map<String, Object> parameters) {
+        this.parameters = parameters;
+    }
+}
@@ -0,0 +1,107 @@
+package com.bentham.voiceagent.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Model class representing the result of one message of a bulk job.
+ * Exactly one of the response and the error is set.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkMessageResult {
+
+    private final String id;
+    private final String response;
+    private final String error;
+    private final int attempts;
+    private final long latencyMs;
+
+    private BulkMessageResult(String id, String response, String error, int attempts, long latencyMs) {
+        this.id = id;
+        this.response = response;
+        this.error = error;
+        this.attempts = attempts;
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * Creates a successful result.
+     *
+     * @param id the correlation ID of the message
+     * @param response the generated response
+     * @param attempts the number of times the message was sent
+     * @param latencyMs the time from the first attempt to the response
+     * @return a new successful result
+     */
+    public static BulkMessageResult success(String id, String response, int attempts, long latencyMs) {
+        return new BulkMessageResult(id, response, null, attempts, latencyMs);
+    }
+
+    /**
+     * Creates a failed result.
+     *
+     * @param id the correlation ID of the message
+     * @param error a description of the failure
+     * @param attempts the number of times the message was sent
+     * @param latencyMs the time from the first attempt to the final failure
+     * @return a new failed result
+     */
+    public static BulkMessageResult failure(String id, String error, int attempts, long latencyMs) {
+        return new BulkMessageResult(id, null, error, attempts, latencyMs);
+    }
+
+    /**
+     * Gets the correlation ID of the message.
+     *
+     * @return the ID
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the generated response.
+     *
+     * @return the response, or null if the message failed
+     */
+    public String getResponse() {
+        return response;
+    }
+
+    /**
+     * Gets a description of the failure.
+     *
+     * @return the error, or null if the message succeeded
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Gets the number of times the message was sent.
+     *
+     * @return the attempt count
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Gets the time from the first attempt to the final outcome.
+     *
+     * @return the latency in milliseconds
+     */
+    public long getLatencyMs() {
+        return latencyMs;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkMessageResult{" +
+                "id='" + id + '\'' +
+                ", response='" + response + '\'' +
+                ", error='" + error + '\'' +
+                ", attempts=" + attempts +
+                ", latencyMs=" + latencyMs +
+                '}';
+    }
+}
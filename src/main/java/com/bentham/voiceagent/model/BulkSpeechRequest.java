@@ -0,0 +1,155 @@
+package com.bentham.voiceagent.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Model class representing one clip of a bulk speech job.
+ * A clip is either plain text or SSML; the voice and format default to the configured ones.
+ * The ID is chosen by the client, names the clip's file and is returned with its result.
+ */
+public class BulkSpeechRequest {
+
+    private String id;
+    private String text;
+    private String ssml;
+    private String voiceId;
+    private String format;
+    @JsonIgnore
+    private String error;
+
+    /**
+     * Creates an empty request, for deserialization.
+     */
+    public BulkSpeechRequest() {
+    }
+
+    /**
+     * Creates a new bulk speech request.
+     *
+     * @param id the correlation ID
+     * @param text the text to speak, or null for SSML
+     * @param ssml the SSML to speak, or null for text
+     * @param voiceId the voice, or null for the configured voice
+     * @param format the audio format, or null for the configured format
+     */
+    public BulkSpeechRequest(String id, String text, String ssml, String voiceId, String format) {
+        this.id = id;
+        this.text = text;
+        this.ssml = ssml;
+        this.voiceId = voiceId;
+        this.format = format;
+    }
+
+    /**
+     * Creates a request for a manifest line that could not be read, to be answered with an error.
+     *
+     * @param id the correlation ID
+     * @param error why the line could not be read
+     * @return a new invalid request
+     */
+    public static BulkSpeechRequest invalid(String id, String error) {
+        BulkSpeechRequest request = new BulkSpeechRequest(id, null, null, null, null);
+        request.error = error;
+        return request;
+    }
+
+    /**
+     * Gets the correlation ID.
+     *
+     * @return the ID
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets the correlation ID.
+     *
+     * @param id the ID
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the text to speak.
+     *
+     * @return the text, or null for SSML
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Sets the text to speak.
+     *
+     * @param text the text
+     */
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Gets the SSML to speak.
+     *
+     * @return the SSML, or null for text
+     */
+    public String getSsml() {
+        return ssml;
+    }
+
+    /**
+     * Sets the SSML to speak.
+     *
+     * @param ssml the SSML
+     */
+    public void setSsml(String ssml) {
+        this.ssml = ssml;
+    }
+
+    /**
+     * Gets the voice to speak with.
+     *
+     * @return the voice ID, or null for the configured voice
+     */
+    public String getVoiceId() {
+        return voiceId;
+    }
+
+    /**
+     * Sets the voice to speak with.
+     *
+     * @param voiceId the voice ID
+     */
+    public void setVoiceId(String voiceId) {
+        this.voiceId = voiceId;
+    }
+
+    /**
+     * Gets the audio format.
+     *
+     * @return the format, such as {@code mp3}, or null for the configured format
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the audio format.
+     *
+     * @param format the format
+     */
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    /**
+     * Gets why the request's manifest line could not be read.
+     *
+     * @return the error, or null for a readable request
+     */
+    @JsonIgnore
+    public String getError() {
+        return error;
+    }
+}
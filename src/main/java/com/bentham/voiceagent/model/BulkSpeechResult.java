@@ -0,0 +1,186 @@
+package com.bentham.voiceagent.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Model class representing the result of one clip of a bulk speech job.
+ * A rendered clip has its clip ID and size; a failed one has an error instead. A clip a previous
+ * run of the job already rendered is skipped, and keeps the clip ID and size it had then.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkSpeechResult {
+
+    private final String id;
+    private final String clipId;
+    private final String format;
+    private final Long bytes;
+    private final boolean cached;
+    private final boolean skipped;
+    private final String error;
+    private final int attempts;
+    private final long latencyMs;
+
+    private BulkSpeechResult(String id, String clipId, String format, Long bytes, boolean cached, boolean skipped,
+                             String error, int attempts, long latencyMs) {
+        this.id = id;
+        this.clipId = clipId;
+        this.format = format;
+        this.bytes = bytes;
+        this.cached = cached;
+        this.skipped = skipped;
+        this.error = error;
+        this.attempts = attempts;
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * Creates the result of a clip synthesized by Polly.
+     *
+     * @param id the correlation ID of the clip
+     * @param clipId the ID the clip is cached under
+     * @param format the audio format, such as {@code mp3}
+     * @param bytes the size of the audio
+     * @param attempts the number of times the clip was sent
+     * @param latencyMs the time from the first attempt to the whole clip being received
+     * @return a new successful result
+     */
+    public static BulkSpeechResult synthesized(String id, String clipId, String format, long bytes, int attempts,
+                                               long latencyMs) {
+        return new BulkSpeechResult(id, clipId, format, bytes, false, false, null, attempts, latencyMs);
+    }
+
+    /**
+     * Creates the result of a clip taken from the speech clip cache.
+     *
+     * @param id the correlation ID of the clip
+     * @param clipId the ID the clip is cached under
+     * @param format the audio format, such as {@code mp3}
+     * @param bytes the size of the audio
+     * @return a new successful result
+     */
+    public static BulkSpeechResult cached(String id, String clipId, String format, long bytes) {
+        return new BulkSpeechResult(id, clipId, format, bytes, true, false, null, 0, 0);
+    }
+
+    /**
+     * Creates the result of a clip skipped because a previous run of the job rendered it.
+     *
+     * @param id the correlation ID of the clip
+     * @param clipId the ID the clip was rendered under, or null if not known
+     * @param format the audio format, such as {@code mp3}, or null if not known
+     * @param bytes the size of the audio, or null if not known
+     * @return a new successful result
+     */
+    public static BulkSpeechResult skipped(String id, String clipId, String format, Long bytes) {
+        return new BulkSpeechResult(id, clipId, format, bytes, false, true, null, 0, 0);
+    }
+
+    /**
+     * Creates a failed result.
+     *
+     * @param id the correlation ID of the clip
+     * @param error a description of the failure
+     * @param attempts the number of times the clip was sent
+     * @param latencyMs the time from the first attempt to the final failure
+     * @return a new failed result
+     */
+    public static BulkSpeechResult failure(String id, String error, int attempts, long latencyMs) {
+        return new BulkSpeechResult(id, null, null, null, false, false, error, attempts, latencyMs);
+    }
+
+    /**
+     * Gets the correlation ID of the clip.
+     *
+     * @return the ID
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the ID the clip is cached under; a cached clip is served by {@code /speech/clips/{clipId}}.
+     *
+     * @return the clip ID, or null if the clip failed
+     */
+    public String getClipId() {
+        return clipId;
+    }
+
+    /**
+     * Gets the audio format of the clip.
+     *
+     * @return the format, such as {@code mp3}, or null if the clip failed
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets the size of the audio.
+     *
+     * @return the size in bytes, or null if the clip failed
+     */
+    public Long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Checks if the clip was taken from the cache rather than synthesized.
+     *
+     * @return true for a cached clip
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * Checks if the clip was skipped because a previous run of the job rendered it.
+     *
+     * @return true for a skipped clip
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Gets a description of the failure.
+     *
+     * @return the error, or null if the clip was rendered
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Gets the number of times the clip was sent to Polly.
+     *
+     * @return the attempt count
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Gets the time from the first attempt to the final outcome.
+     *
+     * @return the latency in milliseconds
+     */
+    public long getLatencyMs() {
+        return latencyMs;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkSpeechResult{" +
+                "id='" + id + '\'' +
+                ", clipId='" + clipId + '\'' +
+                ", format='" + format + '\'' +
+                ", bytes=" + bytes +
+                ", cached=" + cached +
+                ", skipped=" + skipped +
+                ", error='" + error + '\'' +
+                ", attempts=" + attempts +
+                ", latencyMs=" + latencyMs +
+                '}';
+    }
+}
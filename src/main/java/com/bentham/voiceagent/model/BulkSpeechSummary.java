@@ -0,0 +1,104 @@
+package com.bentham.voiceagent.model;
+
+/**
+ * Model class representing the outcome of a whole bulk speech job.
+ */
+public class BulkSpeechSummary {
+
+    private final int synthesized;
+    private final int cached;
+    private final int skipped;
+    private final int failed;
+    private final long elapsedMs;
+
+    /**
+     * Creates a new summary.
+     *
+     * @param synthesized the clips synthesized by Polly
+     * @param cached the clips taken from the cache
+     * @param skipped the clips skipped because a previous run rendered them
+     * @param failed the clips that failed
+     * @param elapsedMs the time the job took
+     */
+    public BulkSpeechSummary(int synthesized, int cached, int skipped, int failed, long elapsedMs) {
+        this.synthesized = synthesized;
+        this.cached = cached;
+        this.skipped = skipped;
+        this.failed = failed;
+        this.elapsedMs = elapsedMs;
+    }
+
+    /**
+     * Gets the number of clips in the job.
+     *
+     * @return the clip count
+     */
+    public int getClips() {
+        return synthesized + cached + skipped + failed;
+    }
+
+    /**
+     * Gets the number of clips synthesized by Polly.
+     *
+     * @return the synthesized count
+     */
+    public int getSynthesized() {
+        return synthesized;
+    }
+
+    /**
+     * Gets the number of clips taken from the cache, such as those rendered before a job was resumed.
+     *
+     * @return the cached count
+     */
+    public int getCached() {
+        return cached;
+    }
+
+    /**
+     * Gets the number of clips skipped because a previous run of the job rendered them.
+     *
+     * @return the skipped count
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Gets the number of clips that failed.
+     *
+     * @return the failed count
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the time the job took.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    /**
+     * Gets the rate clips were synthesized at. Cached, skipped and failed clips are not counted.
+     *
+     * @return the synthesized clips per second
+     */
+    public double getClipsPerSecond() {
+        return elapsedMs > 0 ? synthesized * 1000.0 / elapsedMs : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkSpeechSummary{" +
+                "synthesized=" + synthesized +
+                ", cached=" + cached +
+                ", skipped=" + skipped +
+                ", failed=" + failed +
+                ", elapsedMs=" + elapsedMs +
+                '}';
+    }
+}
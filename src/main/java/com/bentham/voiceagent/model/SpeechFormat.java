@@ -0,0 +1,97 @@
+package com.bentham.voiceagent.model;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Audio formats speech can be delivered in, with the Polly output format and the content type
+ * each is served as. PCM is signed 16-bit little-endian mono at Polly's default 16 kHz, so it
+ * is not served as {@code audio/L16}, which is big-endian by definition (RFC 2586).
+ */
+public enum SpeechFormat {
+
+    MP3("mp3", "audio/mpeg", "mp3"),
+    OGG_VORBIS("ogg_vorbis", "audio/ogg", "ogg"),
+    PCM("pcm", "audio/pcm;rate=16000;encoding=signed-int;bits=16;endian=little", "pcm");
+
+    private final String value;
+    private final String contentType;
+    private final String extension;
+
+    SpeechFormat(String value, String contentType, String extension) {
+        this.value = value;
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /**
+     * Gets the Polly output format.
+     *
+     * @return the output format, such as {@code ogg_vorbis}
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Gets the content type the audio is served as.
+     *
+     * @return the MIME type
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Gets the file extension audio in this format is saved with.
+     *
+     * @return the extension, without a dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Finds a format by its Polly output format name.
+     *
+     * @param value the output format, such as {@code pcm}
+     * @return the format
+     * @throws IllegalArgumentException if the format is not supported
+     */
+    public static SpeechFormat fromValue(String value) {
+        for (SpeechFormat format : values()) {
+            if (format.value.equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported audio format: " + value + "; expected one of "
+                + Arrays.stream(values()).map(SpeechFormat::getValue).collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Finds the first supported format in an HTTP Accept header, in the client's order.
+     * Quality values are not weighed.
+     *
+     * @param accept the Accept header value, possibly null
+     * @return the format, or null if the header names none of them
+     */
+    public static SpeechFormat fromAccept(String accept) {
+        if (accept == null) {
+            return null;
+        }
+        for (String range : accept.split(",")) {
+            String mediaType = range.split(";")[0].trim().toLowerCase();
+            switch (mediaType) {
+                case "audio/mpeg", "audio/mp3":
+                    return MP3;
+                case "audio/ogg":
+                    return OGG_VORBIS;
+                case "audio/pcm":
+                    return PCM;
+                default:
+                    break;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,65 @@
+package com.bentham.voiceagent.model;
+
+import java.time.Instant;
+
+/**
+ * Model class representing an archived utterance that matched a transcript search.
+ */
+public class TranscriptHit {
+
+    private final String sessionId;
+    private final String transcript;
+    private final double confidence;
+    private final Instant timestamp;
+
+    /**
+     * Creates a new transcript hit.
+     *
+     * @param sessionId the ID of the session the utterance belongs to
+     * @param transcript the transcribed text
+     * @param confidence the confidence score (0.0 to 1.0)
+     * @param timestamp when the utterance was transcribed
+     */
+    public TranscriptHit(String sessionId, String transcript, double confidence, Instant timestamp) {
+        this.sessionId = sessionId;
+        this.transcript = transcript;
+        this.confidence = confidence;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Gets the ID of the session the utterance belongs to.
+     *
+     * @return the session ID
+     */
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Gets the transcribed text.
+     *
+     * @return the transcript
+     */
+    public String getTranscript() {
+        return transcript;
+    }
+
+    /**
+     * Gets the confidence score.
+     *
+     * @return the confidence score (0.0 to 1.0)
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Gets when the utterance was transcribed.
+     *
+     * @return the timestamp
+     */
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,81 @@
+package com.bentham.voiceagent.model;
+
+import java.util.List;
+
+/**
+ * Model class representing the result of a transcript search.
+ * Hits are ordered newest first and may be fewer than the total number of matches. Matches are
+ * counted only up to the limit, so if more matched, the total is the limit and is not exact.
+ */
+public class TranscriptSearchResult {
+
+    private final String query;
+    private final long totalHits;
+    private final boolean totalHitsExact;
+    private final List<TranscriptHit> hits;
+    private final long tookMicros;
+
+    /**
+     * Creates a new search result.
+     *
+     * @param query the query as given
+     * @param totalHits the number of utterances that matched, counted up to the limit
+     * @param totalHitsExact false if more utterances matched than were counted
+     * @param hits the newest matching utterances
+     * @param tookMicros the time the search took in microseconds
+     */
+    public TranscriptSearchResult(String query, long totalHits, boolean totalHitsExact, List<TranscriptHit> hits,
+                                  long tookMicros) {
+        this.query = query;
+        this.totalHits = totalHits;
+        this.totalHitsExact = totalHitsExact;
+        this.hits = hits;
+        this.tookMicros = tookMicros;
+    }
+
+    /**
+     * Gets the query as given.
+     *
+     * @return the query
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Gets the number of utterances that matched.
+     *
+     * @return the total number of matches
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Checks if the total counts every match. If not, more utterances matched than the limit,
+     * and the total is the limit.
+     *
+     * @return true if the total is exact
+     */
+    public boolean isTotalHitsExact() {
+        return totalHitsExact;
+    }
+
+    /**
+     * Gets the newest matching utterances.
+     *
+     * @return the hits, newest first
+     */
+    public List<TranscriptHit> getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the time the search took.
+     *
+     * @return the search time in microseconds
+     */
+    public long getTookMicros() {
+        return tookMicros;
+    }
+}
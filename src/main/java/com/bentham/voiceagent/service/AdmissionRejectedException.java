@@ -0,0 +1,29 @@
+package com.bentham.voiceagent.service;
+
+/**
+ * Thrown when a session start or audio frame is refused by admission control.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final String reason;
+
+    /**
+     * Creates a new rejection.
+     *
+     * @param reason a short machine-readable reason, such as {@code queue-timeout}
+     * @param message a description for the client
+     */
+    public AdmissionRejectedException(String reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    /**
+     * Gets the machine-readable reason for the rejection.
+     *
+     * @return the reason
+     */
+    public String getReason() {
+        return reason;
+    }
+}
@@ -35,6 +35,17 @@ public interface NaturalLanguageService {
      */
     CompletableFuture<String> processMessageWithParams(String message, Map<String, Object> parameters);
 
+    /**
+     * Processes a user message with conversation context and additional parameters and generates a response.
+     *
+     * @param message the user message
+     * @param conversationId the ID of the conversation
+     * @param parameters additional parameters for the model
+     * @return a CompletableFuture that will be completed with the generated response
+     */
+    CompletableFuture<String> processMessageWithParams(String message, String conversationId,
+                                                       Map<String, Object> parameters);
+
     /**
      * Creates a new conversation.
      *
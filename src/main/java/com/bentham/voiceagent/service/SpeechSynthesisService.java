@@ -26,6 +26,16 @@ public interface SpeechSynthesisService {
      */
     CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId);
 
+    /**
+     * Synthesizes speech from text with a specific voice and output format.
+     *
+     * @param text the text to synthesize
+     * @param voiceId the ID of the voice to use
+     * @param outputFormat the audio format, such as {@code mp3}, {@code ogg_vorbis} or {@code pcm}
+     * @return a CompletableFuture that will be completed with an input stream of the synthesized speech
+     */
+    CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId, String outputFormat);
+
     /**
      * Gets a list of available voices.
      *
@@ -40,4 +50,13 @@ public interface SpeechSynthesisService {
      * @return a CompletableFuture that will be completed with an input stream of the synthesized speech
      */
     CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml);
+
+    /**
+     * Synthesizes speech from SSML with a specific voice.
+     *
+     * @param ssml the SSML text to synthesize
+     * @param voiceId the ID of the voice to use
+     * @return a CompletableFuture that will be completed with an input stream of the synthesized speech
+     */
+    CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml, String voiceId);
 }
@@ -0,0 +1,46 @@
+package com.bentham.voiceagent.service;
+
+import com.bentham.voiceagent.model.TranscriptionResult;
+
+/**
+ * Listener for the transcription results of streaming sessions.
+ * Each listener is called on a thread of its own, with the results of a session in order; with
+ * {@code aws.transcribe.results.fanout.enabled} off, listeners are called on the session's
+ * streaming thread and must return quickly.
+ */
+public interface TranscriptionResultListener {
+
+    /**
+     * What a listener that has fallen a whole ring of results behind its session does next.
+     */
+    enum Overflow {
+        /** Carry on from the oldest result still held, losing only those overwritten. */
+        DROP_OLDEST,
+        /** Carry on from the latest result, for listeners that only need the current transcript. */
+        SKIP_TO_LATEST
+    }
+
+    /**
+     * Called for each partial and final result of a streaming session.
+     *
+     * @param result the transcription result
+     */
+    void onResult(TranscriptionResult result);
+
+    /**
+     * Called once a streaming session has stopped and will produce no more results.
+     *
+     * @param sessionId the session ID
+     */
+    default void onSessionClosed(String sessionId) {
+    }
+
+    /**
+     * Gets what this listener does when it falls too far behind a session.
+     *
+     * @return the overflow policy
+     */
+    default Overflow getOverflowPolicy() {
+        return Overflow.DROP_OLDEST;
+    }
+}
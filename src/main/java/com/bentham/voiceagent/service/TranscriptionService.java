@@ -1,5 +1,9 @@
 package com.bentham.voiceagent.service;
 
+import com.bentham.voiceagent.model.TranscriptionResult;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+
 import java.io.InputStream;
 import java.util.concurrent.CompletableFuture;
 
@@ -24,6 +28,15 @@ public interface TranscriptionService {
      */
     String startStreamingTranscription();
 
+    /**
+     * Starts a streaming transcription session, choosing whether its audio is recorded.
+     *
+     * @param recorded false to leave the session unrecorded even when recording is enabled,
+     *                 as for a replay of an earlier recording
+     * @return a session ID for the streaming transcription
+     */
+    String startStreamingTranscription(boolean recorded);
+
     /**
      * Sends audio data to an ongoing streaming transcription session.
      *
@@ -47,4 +60,23 @@ public interface TranscriptionService {
      * @return the final transcription result
      */
     String stopStreamingTranscription(String sessionId);
+
+    /**
+     * Stops a streaming transcription session without waiting for its last results.
+     *
+     * @param sessionId the session ID
+     * @return a future completed with the final transcription result once the session has stopped
+     */
+    CompletableFuture<String> stopStreamingTranscriptionAsync(String sessionId);
+
+    /**
+     * Transcribes a stream of audio as a reactive session. Audio is requested only as fast as
+     * it can be sent upstream, and results are produced only as fast as they are requested, so
+     * a slow consumer slows the audio source rather than filling buffers.
+     *
+     * @param audio the audio, as 16-bit PCM at the configured sample rate; buffers are released
+     *              once read. Completing it ends the session after the last results.
+     * @return the partial and final results; cancelling it ends the session
+     */
+    Flux<TranscriptionResult> transcribe(Flux<DataBuffer> audio);
 }
@@ -0,0 +1,225 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.PollyConfig;
+import com.bentham.voiceagent.service.SpeechSynthesisService;
+import com.bentham.voiceagent.util.CompletableFutures;
+import com.bentham.voiceagent.util.SingleFlightCache;
+import com.bentham.voiceagent.util.VoiceTracing;
+import io.opentelemetry.api.trace.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.polly.PollyAsyncClient;
+import software.amazon.awssdk.services.polly.model.DescribeVoicesRequest;
+import software.amazon.awssdk.services.polly.model.OutputFormat;
+import software.amazon.awssdk.services.polly.model.SynthesizeSpeechRequest;
+import software.amazon.awssdk.services.polly.model.SynthesizeSpeechResponse;
+import software.amazon.awssdk.services.polly.model.TextType;
+import software.amazon.awssdk.services.polly.model.Voice;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implementation of the SpeechSynthesisService using Amazon Polly.
+ *
+ * <p>Synthesized audio is streamed: the returned future completes as soon as Polly starts
+ * sending audio, and the stream yields it as it arrives. Cancelling the future before then
+ * cancels the request; closing the stream afterwards aborts the download.</p>
+ *
+ * <p>SSML templates, which mark fixed phrases with {@code <static>...</static>}, are
+ * synthesized by an {@link SsmlTemplateStitcher}: the static phrases are synthesized once and
+ * cached, and only the text around them is sent to Polly for each request.</p>
+ *
+ * <p>Each request is traced as a client span below the current context, tagged with the voice,
+ * the format and the length of the text. A streamed request's span ends when the audio starts
+ * arriving; a segment's span records the size of its audio.</p>
+ *
+ * <p>The list of available voices, which every client asks for when it connects, is kept in a
+ * {@link SingleFlightCache}: it is described once per {@code aws.polly.voices.ttl-ms}, then
+ * refreshed in the background while the stale list is still served, and clients asking while
+ * it is being described share that call.</p>
+ */
+@Service
+public class AmazonPollyService implements SpeechSynthesisService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmazonPollyService.class);
+
+    // The key the voice list is cached under; every voice is described at once
+    static final String ALL_VOICES = "all";
+
+    private final PollyAsyncClient pollyClient;
+    private final PollyConfig pollyConfig;
+
+    // Created on first use of a template
+    private SsmlTemplateStitcher stitcher;
+
+    // Created on first use
+    private SingleFlightCache<String, String[]> voiceLookups;
+
+    @Autowired
+    public AmazonPollyService(PollyAsyncClient pollyClient, PollyConfig pollyConfig) {
+        this.pollyClient = pollyClient;
+        this.pollyConfig = pollyConfig;
+    }
+
+    @Override
+    public CompletableFuture<InputStream> synthesizeSpeech(String text) {
+        return synthesize(text, TextType.TEXT, pollyConfig.getVoiceId());
+    }
+
+    @Override
+    public CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId) {
+        return synthesize(text, TextType.TEXT, voiceId);
+    }
+
+    @Override
+    public CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId, String outputFormat) {
+        return synthesize(text, TextType.TEXT, voiceId, outputFormat);
+    }
+
+    @Override
+    public CompletableFuture<String[]> getAvailableVoices() {
+        // Copied, as every caller shares the cached array
+        return getVoiceLookups().get(ALL_VOICES).thenApply(String[]::clone);
+    }
+
+    /**
+     * Gets the cache of the voice list, with the requests and Polly calls it has seen.
+     *
+     * @return the voice lookup cache
+     */
+    public synchronized SingleFlightCache<String, String[]> getVoiceLookups() {
+        if (voiceLookups == null) {
+            // The call completes on the SDK's threads, so a refresh is started on the requesting thread
+            voiceLookups = new SingleFlightCache<>(key -> describeVoices(), pollyConfig.getVoicesTtlMs(),
+                    pollyConfig.getVoicesStaleMs(), 1, Runnable::run);
+        }
+        return voiceLookups;
+    }
+
+    private CompletableFuture<String[]> describeVoices() {
+        return pollyClient.describeVoices(DescribeVoicesRequest.builder().build())
+                .thenApply(response -> response.voices().stream()
+                        .map(Voice::idAsString)
+                        .toArray(String[]::new));
+    }
+
+    @Override
+    public CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml) {
+        return synthesizeSpeechFromSsml(ssml, pollyConfig.getVoiceId());
+    }
+
+    @Override
+    public CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml, String voiceId) {
+        if (!SsmlTemplateStitcher.isTemplate(ssml)) {
+            return synthesize(ssml, TextType.SSML, voiceId);
+        }
+        String outputFormat = pollyConfig.getOutputFormat();
+        if (!Boolean.TRUE.equals(pollyConfig.getStitchingEnabled()) || !SsmlTemplateStitcher.canStitch(outputFormat)) {
+            return synthesize(SsmlTemplateStitcher.flatten(ssml), TextType.SSML, voiceId);
+        }
+        return stitcher().synthesize(ssml, voiceId, outputFormat, this::synthesizeSegment);
+    }
+
+    /**
+     * Synthesizes the static phrases of an SSML template ahead of its first use, so that the
+     * first request for it only waits for the text around them.
+     *
+     * @param ssml the SSML template
+     * @param voiceId the ID of the voice the template will be spoken with
+     * @return a CompletableFuture that will be completed once the static phrases are cached
+     */
+    public CompletableFuture<Void> prerenderTemplate(String ssml, String voiceId) {
+        String outputFormat = pollyConfig.getOutputFormat();
+        if (!SsmlTemplateStitcher.isTemplate(ssml) || !Boolean.TRUE.equals(pollyConfig.getStitchingEnabled())
+                || !SsmlTemplateStitcher.canStitch(outputFormat)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return stitcher().prerender(ssml, voiceId, outputFormat, this::synthesizeSegment);
+    }
+
+    private synchronized SsmlTemplateStitcher stitcher() {
+        if (stitcher == null) {
+            stitcher = new SsmlTemplateStitcher(pollyConfig.getStitchingCacheSize());
+        }
+        return stitcher;
+    }
+
+    private CompletableFuture<byte[]> synthesizeSegment(String ssml, String voiceId) {
+        Span span = startSpan(ssml, voiceId, pollyConfig.getOutputFormat());
+        CompletableFuture<ResponseBytes<SynthesizeSpeechResponse>> call;
+        try {
+            call = pollyClient.synthesizeSpeech(request(ssml, TextType.SSML, voiceId, pollyConfig.getOutputFormat()),
+                    AsyncResponseTransformer.toBytes());
+        } catch (RuntimeException e) {
+            VoiceTracing.recordFailure(span, e);
+            span.end();
+            throw e;
+        }
+        VoiceTracing.endWhenComplete(span, call.thenAccept(bytes ->
+                span.setAttribute(VoiceTracing.AUDIO_BYTES, (long) bytes.asByteArrayUnsafe().length)));
+        CompletableFuture<byte[]> audio = call
+                .thenApply(ResponseBytes::asByteArray)
+                .whenComplete((bytes, error) -> {
+                    if (error != null && !call.isCancelled()) {
+                        logger.error("Error synthesizing speech segment with Polly", error);
+                    }
+                });
+        return CompletableFutures.propagateCancellation(audio, call);
+    }
+
+    private static Span startSpan(String text, String voiceId, String outputFormat) {
+        Span span = VoiceTracing.startAwsSpan("Polly", "SynthesizeSpeech");
+        span.setAttribute(VoiceTracing.VOICE_ID, voiceId);
+        span.setAttribute(VoiceTracing.OUTPUT_FORMAT, outputFormat);
+        span.setAttribute(VoiceTracing.TEXT_CHARS, (long) text.length());
+        return span;
+    }
+
+    private SynthesizeSpeechRequest request(String text, TextType textType, String voiceId, String outputFormat) {
+        return SynthesizeSpeechRequest.builder()
+                .text(text)
+                .textType(textType)
+                .voiceId(voiceId)
+                .outputFormat(OutputFormat.fromValue(outputFormat))
+                .build();
+    }
+
+    private CompletableFuture<InputStream> synthesize(String text, TextType textType, String voiceId) {
+        return synthesize(text, textType, voiceId, pollyConfig.getOutputFormat());
+    }
+
+    private CompletableFuture<InputStream> synthesize(String text, TextType textType, String voiceId,
+                                                      String outputFormat) {
+        Span span = startSpan(text, voiceId, outputFormat);
+        CompletableFuture<ResponseInputStream<SynthesizeSpeechResponse>> call;
+        try {
+            call = pollyClient.synthesizeSpeech(
+                    request(text, textType, voiceId, outputFormat), AsyncResponseTransformer.toBlockingInputStream());
+        } catch (RuntimeException e) {
+            VoiceTracing.recordFailure(span, e);
+            span.end();
+            throw e;
+        }
+        VoiceTracing.endWhenComplete(span, call);
+        CompletableFuture<InputStream> speech = call
+                .<InputStream>thenApply(stream -> stream)
+                .whenComplete((stream, error) -> {
+                    if (error != null && !call.isCancelled()) {
+                        logger.error("Error synthesizing speech with Polly", error);
+                    }
+                });
+        speech.whenComplete((stream, error) -> {
+            // Cancelled after Polly had started sending audio: nobody will read the stream
+            if (speech.isCancelled() && call.isDone() && !call.isCompletedExceptionally()) {
+                call.join().abort();
+            }
+        });
+        return CompletableFutures.propagateCancellation(speech, call);
+    }
+}
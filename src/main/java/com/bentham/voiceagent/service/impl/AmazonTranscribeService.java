@@ -2,11 +2,28 @@ package com.bentham.voiceagent.service.impl;
 
 import com.bentham.voiceagent.config.TranscribeConfig;
 import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.service.TranscriptionResultListener;
 import com.bentham.voiceagent.service.TranscriptionService;
+import com.bentham.voiceagent.util.SingleFlightCache;
+import com.bentham.voiceagent.util.VoiceEvents;
+import com.bentham.voiceagent.util.VoiceTracing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.regions.Region;
@@ -15,15 +32,40 @@ import software.amazon.awssdk.services.transcribe.model.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Implementation of the TranscriptionService using Amazon Transcribe.
  * This service provides speech-to-text functionality using AWS Transcribe.
+ * When {@code aws.transcribe.pool.enabled} is set, streaming sessions take a stream opened
+ * ahead of time from the {@link TranscribeStreamPool}; otherwise they are simulated locally.
+ * When {@code aws.transcribe.preprocessing.enabled} is set, each session's audio passes through
+ * its own {@link AudioPreprocessor} after being recorded and before being transcribed.
+ * Final results pass through the {@link VocabularyCorrector} before anything else sees them.
+ * Uploaded recordings are sniffed by the {@link AudioSniffer} for their format; when
+ * {@code aws.transcribe.split.enabled} is set, those it can decode to PCM are transcribed by the
+ * {@link ParallelBatchTranscriber} rather than as a single batch job.
+ * Results reach the {@link TranscriptionResultListener}s through a {@link ResultFanout}, so no
+ * listener holds up a session, unless {@code aws.transcribe.results.fanout.enabled} is off.
+ * Batch job states are looked up through a {@link SingleFlightCache}, so concurrent checks on a
+ * job share one call to Transcribe.
+ *
+ * <p>Session starts and stops, Transcribe calls and result delivery are recorded as
+ * {@link VoiceEvents} flight recorder events. Each session is also a {@code voice.session}
+ * span, and its results are delivered with that span current so the turns they start are
+ * traced below it; see {@link VoiceTracing}.</p>
  */
 @Service
 public class AmazonTranscribeService implements TranscriptionService {
@@ -33,135 +75,584 @@ public class AmazonTranscribeService implements TranscriptionService {
     private final TranscribeClient transcribeClient;
     private final TranscribeConfig transcribeConfig;
     private final AwsCredentialsProvider credentialsProvider;
+    private final MeterRegistry meterRegistry;
+    private final AudioRecordingService audioRecordingService;
+    private final List<TranscriptionResultListener> resultListeners;
+    private final TranscribeStreamingUpstream streamingUpstream;
+    private final TranscribeStreamPool streamPool;
+    private final VocabularyCorrector vocabularyCorrector;
+    private final ParallelBatchTranscriber parallelBatchTranscriber;
     
-    // Store for streaming sessions using StreamingTranscriptionHandler
-    private final Map<String, StreamingTranscriptionHandler> streamingSessions = new ConcurrentHashMap<>();
+    // Hands results to each listener on its own thread; null when listeners are called directly
+    private final ResultFanout resultFanout;
+    
+    // States of batch jobs, shared between those polling them; created on first use
+    private SingleFlightCache<String, TranscriptionJob> jobStatusLookups;
+    
+    // Store for streaming sessions, simulated or backed by a pooled Transcribe stream
+    private final Map<String, StreamingSession> streamingSessions = new ConcurrentHashMap<>();
+    
+    // Per-session noise suppression and gain control, ahead of the aggregators
+    private final Map<String, AudioPreprocessor> audioPreprocessors = new ConcurrentHashMap<>();
+    
+    // Per-session aggregators that re-chunk client frames before they reach the handler
+    private final Map<String, AudioFrameAggregator> audioAggregators = new ConcurrentHashMap<>();
+    
+    // Span of each streaming session, current while its results are delivered
+    private final Map<String, SessionTrace> sessionTraces = new ConcurrentHashMap<>();
+    
+    // Each streaming session holds a thread for its whole lifetime, so they get their own
+    // unbounded pool instead of competing for the common fork-join pool
+    private final ExecutorService streamingExecutor = Executors.newCachedThreadPool(new StreamingThreadFactory());
+    
+    // Runs the aggregators' max-delay timers; the work per timer is a single array copy
+    private final ScheduledExecutorService aggregationScheduler =
+            Executors.newSingleThreadScheduledExecutor(new StreamingThreadFactory());
     
     @Autowired
     public AmazonTranscribeService(TranscribeClient transcribeClient, 
                                   TranscribeConfig transcribeConfig,
-                                  AwsCredentialsProvider credentialsProvider) {
+                                  AwsCredentialsProvider credentialsProvider,
+                                  MeterRegistry meterRegistry,
+                                  AudioRecordingService audioRecordingService,
+                                  List<TranscriptionResultListener> resultListeners,
+                                  TranscribeStreamingUpstream streamingUpstream,
+                                  TranscribeStreamPool streamPool,
+                                  VocabularyCorrector vocabularyCorrector,
+                                  ParallelBatchTranscriber parallelBatchTranscriber) {
         this.transcribeClient = transcribeClient;
         this.transcribeConfig = transcribeConfig;
         this.credentialsProvider = credentialsProvider;
+        this.meterRegistry = meterRegistry;
+        this.audioRecordingService = audioRecordingService;
+        this.resultListeners = resultListeners;
+        this.streamingUpstream = streamingUpstream;
+        this.streamPool = streamPool;
+        this.vocabularyCorrector = vocabularyCorrector;
+        this.parallelBatchTranscriber = parallelBatchTranscriber;
+        this.resultFanout = Boolean.TRUE.equals(transcribeConfig.getResultFanoutEnabled())
+                ? new ResultFanout(resultListeners, transcribeConfig.getResultFanoutRingSize(), meterRegistry)
+                : null;
     }
 
     @Override
     public CompletableFuture<String> transcribeAudio(InputStream audioStream) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                // Create a unique job name
-                String jobName = "bentham-transcription-" + UUID.randomUUID().toString();
-                
-                // For a real implementation, we would upload the audio to S3 first
-                // Here we'll use a pre-signed URL approach for simplicity
-                
-                // Read the audio data
-                byte[] audioData = audioStream.readAllBytes();
-                
-                // Create a request to start a transcription job
-                StartTranscriptionJobRequest request = StartTranscriptionJobRequest.builder()
-                        .transcriptionJobName(jobName)
-                        .languageCode(LanguageCode.fromValue(transcribeConfig.getLanguageCode()))
-                        .mediaFormat(MediaFormat.WAV) // Adjust based on your audio format
-                        .media(Media.builder()
-                                .mediaFileUri("s3://example-bucket/example-audio.wav") // This would be a real S3 URI in production
-                                .build())
-                        .build();
-                
-                // Start the transcription job
-                StartTranscriptionJobResponse response = transcribeClient.startTranscriptionJob(request);
-                logger.info("Started transcription job: {}", response.transcriptionJob().transcriptionJobName());
-                
-                // Poll for job completion
-                GetTranscriptionJobRequest getRequest = GetTranscriptionJobRequest.builder()
-                        .transcriptionJobName(jobName)
-                        .build();
-                
-                TranscriptionJob job;
-                do {
-                    // Wait before polling again
-                    Thread.sleep(1000);
-                    
-                    // Get job status
-                    job = transcribeClient.getTranscriptionJob(getRequest).transcriptionJob();
-                    logger.debug("Job status: {}", job.transcriptionJobStatus());
-                    
-                } while (job.transcriptionJobStatus() == TranscriptionJobStatus.IN_PROGRESS);
-                
-                // Check if job completed successfully
-                if (job.transcriptionJobStatus() == TranscriptionJobStatus.COMPLETED) {
-                    // In a real implementation, you would download and parse the transcript
-                    // For simplicity, we'll return a placeholder
-                    return "Transcription completed. Result available at: " + job.transcript().transcriptFileUri();
-                } else {
-                    throw new RuntimeException("Transcription job failed with status: " + job.transcriptionJobStatus());
-                }
-                
-            } catch (Exception e) {
+                // Only the headers are read; the rest is left for the job or the split path
+                AudioSniffer.SniffedAudio audio = AudioSniffer.sniff(audioStream);
+                logger.info("Received {} audio for transcription", audio);
+                return audio;
+            } catch (IOException e) {
                 logger.error("Error during transcription", e);
                 throw new RuntimeException("Failed to transcribe audio", e);
             }
+        }).thenCompose(audio -> {
+            if (Boolean.TRUE.equals(transcribeConfig.getSplitEnabled())) {
+                if (audio.isDecodable()) {
+                    return parallelBatchTranscriber.transcribe(audio);
+                }
+                logger.info("Transcribing {} audio as a single job: only PCM, WAV and MP3 can be split", audio);
+            }
+            return CompletableFuture.completedFuture(transcribeJob(audio));
         });
     }
 
+    private String transcribeJob(AudioSniffer.SniffedAudio audio) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            // Create a unique job name
+            String jobName = "bentham-transcription-" + UUID.randomUUID().toString();
+            
+            // Batch jobs do not take raw PCM; a headerless upload was always sent as WAV
+            MediaFormat mediaFormat = audio.getContainer().getMediaFormat() != null
+                    ? audio.getContainer().getMediaFormat()
+                    : MediaFormat.WAV;
+            
+            // For a real implementation, we would stream audio.getStream() to S3 first,
+            // without reading it into memory
+            
+            // Create a request to start a transcription job
+            StartTranscriptionJobRequest request = StartTranscriptionJobRequest.builder()
+                    .transcriptionJobName(jobName)
+                    .languageCode(LanguageCode.fromValue(transcribeConfig.getLanguageCode()))
+                    .mediaFormat(mediaFormat)
+                    .mediaSampleRateHertz(audio.getSampleRate())
+                    .media(Media.builder()
+                            .mediaFileUri("s3://example-bucket/example-audio." + mediaFormat) // This would be a real S3 URI in production
+                            .build())
+                    .build();
+            
+            // Start the transcription job
+            StartTranscriptionJobResponse response = traceAwsCall("StartTranscriptionJob",
+                    () -> transcribeClient.startTranscriptionJob(request));
+            logger.info("Started transcription job: {}", response.transcriptionJob().transcriptionJobName());
+            
+            // Poll for job completion
+            TranscriptionJob job;
+            do {
+                // Wait before polling again
+                Thread.sleep(1000);
+                
+                // Get job status, along with anyone else asking for it
+                job = getTranscriptionJob(jobName).join();
+                logger.debug("Job status: {}", job.transcriptionJobStatus());
+                
+            } while (job.transcriptionJobStatus() == TranscriptionJobStatus.IN_PROGRESS);
+            
+            // Check if job completed successfully
+            if (job.transcriptionJobStatus() == TranscriptionJobStatus.COMPLETED) {
+                sample.stop(meterRegistry.timer("transcribe.batch.duration", "mode", "job"));
+                // In a real implementation, you would download and parse the transcript
+                // For simplicity, we'll return a placeholder
+                return "Transcription completed. Result available at: " + job.transcript().transcriptFileUri();
+            } else {
+                throw new RuntimeException("Transcription job failed with status: " + job.transcriptionJobStatus());
+            }
+            
+        } catch (Exception e) {
+            logger.error("Error during transcription", e);
+            throw new RuntimeException("Failed to transcribe audio", e);
+        }
+    }
+
+    /**
+     * Gets the state of a batch transcription job.
+     * Requests for a job made while its GetTranscriptionJob call is in flight share that call,
+     * and its state is reused for {@code aws.transcribe.job-status.ttl-ms}, so clients checking
+     * on a job as well as its own poller do not each call Transcribe.
+     *
+     * @param jobName the name of the job
+     * @return a CompletableFuture that will be completed with the job
+     */
+    public CompletableFuture<TranscriptionJob> getTranscriptionJob(String jobName) {
+        return getJobStatusLookups().get(jobName);
+    }
+    
+    /**
+     * Gets the cache of batch job states, with the requests and Transcribe calls it has seen.
+     *
+     * @return the job status lookup cache
+     */
+    public synchronized SingleFlightCache<String, TranscriptionJob> getJobStatusLookups() {
+        if (jobStatusLookups == null) {
+            jobStatusLookups = new SingleFlightCache<>(this::describeTranscriptionJob,
+                    transcribeConfig.getJobStatusTtlMs(), transcribeConfig.getJobStatusStaleMs(),
+                    transcribeConfig.getJobStatusMaxEntries(), streamingExecutor);
+        }
+        return jobStatusLookups;
+    }
+    
+    private CompletableFuture<TranscriptionJob> describeTranscriptionJob(String jobName) {
+        GetTranscriptionJobRequest request = GetTranscriptionJobRequest.builder()
+                .transcriptionJobName(jobName)
+                .build();
+        return CompletableFuture.completedFuture(traceAwsCall("GetTranscriptionJob",
+                () -> transcribeClient.getTranscriptionJob(request)).transcriptionJob());
+    }
+
     @Override
     public String startStreamingTranscription() {
+        return startStreamingTranscription(true);
+    }
+
+    @Override
+    public String startStreamingTranscription(boolean recorded) {
         String sessionId = UUID.randomUUID().toString();
+        String stream = streamPool.isEnabled() ? "pooled" : "simulated";
         
-        // Create a new streaming handler with a consumer for transcription results
-        StreamingTranscriptionHandler handler = new StreamingTranscriptionHandler(
-            sessionId, 
-            transcribeConfig,
-            result -> {
-                // Handle transcription results
-                logger.info("Received transcription result: {}", result);
-                // You might want to store this or notify clients
-            }
-        );
+        // Traced before the stream starts, which may deliver results straight away
+        Span span = VoiceTracing.startSpan("voice.session", SpanKind.INTERNAL);
+        span.setAttribute(VoiceTracing.SESSION_ID, sessionId);
+        span.setAttribute(VoiceTracing.SESSION_API, "stomp");
+        span.setAttribute(VoiceTracing.SESSION_STREAM, stream);
+        sessionTraces.put(sessionId, new SessionTrace(span));
+        openResults(sessionId);
         
-        // Start streaming
-        handler.startStreaming();
+        StreamingSession handler;
+        try {
+            if (streamPool.isEnabled()) {
+                // Audio sent before the stream is ready is buffered by the stream
+                handler = streamPool.claim(sessionId, this::onStreamingResult);
+            } else {
+                // Create a new streaming handler with a consumer for transcription results
+                StreamingTranscriptionHandler simulated = new StreamingTranscriptionHandler(
+                    sessionId, 
+                    transcribeConfig,
+                    this::onStreamingResult,
+                    streamingExecutor
+                );
+                
+                // Start streaming
+                simulated.startStreaming();
+                handler = simulated;
+            }
+        } catch (RuntimeException e) {
+            sessionTraces.remove(sessionId);
+            closeResults(sessionId);
+            VoiceTracing.recordFailure(span, e);
+            span.end();
+            throw e;
+        }
         
         // Store the handler
         streamingSessions.put(sessionId, handler);
         
+        if (Boolean.TRUE.equals(transcribeConfig.getPreprocessingEnabled())) {
+            audioPreprocessors.put(sessionId, newPreprocessor());
+        }
+        
+        if (Boolean.TRUE.equals(transcribeConfig.getAggregationEnabled())) {
+            audioAggregators.put(sessionId, new AudioFrameAggregator(
+                sessionId,
+                transcribeConfig.getSampleRate(),
+                transcribeConfig.getAggregationTargetChunkMs(),
+                transcribeConfig.getAggregationMaxDelayMs(),
+                handler::addAudioChunk,
+                aggregationScheduler,
+                meterRegistry
+            ));
+        }
+        
+        if (recorded) {
+            audioRecordingService.startRecording(sessionId, transcribeConfig.getSampleRate());
+        }
+        
+        VoiceEvents.SessionStart started = new VoiceEvents.SessionStart();
+        started.sessionId = sessionId;
+        started.api = "stomp";
+        started.stream = stream;
+        started.commit();
+        
         logger.info("Started streaming transcription session: {}", sessionId);
         return sessionId;
     }
 
     @Override
     public void sendAudioChunk(String sessionId, byte[] audioChunk) {
-        StreamingTranscriptionHandler handler = getHandler(sessionId);
-        handler.addAudioChunk(audioChunk);
+        StreamingSession handler = getHandler(sessionId);
+        SessionTrace trace = sessionTraces.get(sessionId);
+        if (trace != null && trace.audio != null) {
+            trace.audio.add(audioChunk.length);
+        }
+        // Record the frame exactly as the client sent it, before any processing or re-chunking
+        audioRecordingService.record(sessionId, audioChunk);
+        AudioPreprocessor preprocessor = audioPreprocessors.get(sessionId);
+        forwardAudio(sessionId, handler, preprocessor != null ? preprocessor.process(audioChunk) : audioChunk);
     }
 
     @Override
     public String getLatestTranscription(String sessionId) {
-        StreamingTranscriptionHandler handler = getHandler(sessionId);
+        StreamingSession handler = getHandler(sessionId);
         return handler.getLatestTranscription();
     }
 
     @Override
     public String stopStreamingTranscription(String sessionId) {
-        StreamingTranscriptionHandler handler = getHandler(sessionId);
-        String finalTranscription = handler.getLatestTranscription();
+        try {
+            return stopStreamingTranscriptionAsync(sessionId).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> stopStreamingTranscriptionAsync(String sessionId) {
+        StreamingSession handler = getHandler(sessionId);
+        VoiceEvents.SessionStop stopped = new VoiceEvents.SessionStop();
+        stopped.begin();
+        SessionTrace trace = sessionTraces.get(sessionId);
+        
+        // Current while the audio is ended and again while the session is finished, so turns
+        // they start stay in the session's trace
+        CompletableFuture<Void> streamEnded;
+        try (Scope scope = trace != null ? trace.context.makeCurrent() : Scope.noop()) {
+            streamEnded = endAudio(sessionId, handler);
+        } catch (RuntimeException e) {
+            streamEnded = CompletableFuture.failedFuture(e);
+        }
+        return streamEnded.handle((ignored, error) -> {
+            String finalTranscription = null;
+            try (Scope scope = trace != null ? trace.context.makeCurrent() : Scope.noop()) {
+                finalTranscription = finish(sessionId, handler);
+                
+                stopped.end();
+                if (stopped.shouldCommit()) {
+                    stopped.sessionId = sessionId;
+                    stopped.transcriptChars = finalTranscription != null ? finalTranscription.length() : 0;
+                    stopped.commit();
+                }
+            } finally {
+                sessionTraces.remove(sessionId);
+                if (trace != null) {
+                    trace.end(finalTranscription);
+                }
+            }
+            if (error != null) {
+                throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+            }
+            return finalTranscription;
+        });
+    }
+    
+    private CompletableFuture<Void> endAudio(String sessionId, StreamingSession handler) {
+        // Send any audio still held back by the preprocessor or the aggregator before the stream closes
+        AudioPreprocessor preprocessor = audioPreprocessors.remove(sessionId);
+        if (preprocessor != null) {
+            forwardAudio(sessionId, handler, preprocessor.flush());
+        }
+        AudioFrameAggregator aggregator = audioAggregators.remove(sessionId);
+        if (aggregator != null) {
+            aggregator.close();
+        }
         
-        // Stop streaming
-        handler.stopStreaming();
+        // Stop streaming; a Transcribe stream sends its last results as the audio ends
+        return handler.stopStreaming();
+    }
+    
+    private String finish(String sessionId, StreamingSession handler) {
+        String finalTranscription = vocabularyCorrector.correct(handler.getLatestTranscription());
+        audioRecordingService.stopRecording(sessionId);
+        closeResults(sessionId);
         
         // Remove the handler
         streamingSessions.remove(sessionId);
         logger.info("Stopped streaming transcription session: {}", sessionId);
-        
         return finalTranscription;
     }
     
-    private StreamingTranscriptionHandler getHandler(String sessionId) {
-        StreamingTranscriptionHandler handler = streamingSessions.get(sessionId);
+    @Override
+    public Flux<TranscriptionResult> transcribe(Flux<DataBuffer> audio) {
+        return Flux.defer(() -> {
+            String sessionId = UUID.randomUUID().toString();
+            audioRecordingService.startRecording(sessionId, transcribeConfig.getSampleRate());
+            logger.info("Started reactive transcription session: {}", sessionId);
+            
+            VoiceEvents.SessionStart started = new VoiceEvents.SessionStart();
+            started.sessionId = sessionId;
+            started.api = "reactive";
+            started.stream = "streaming";
+            started.commit();
+            
+            Span span = VoiceTracing.startSpan("voice.session", SpanKind.INTERNAL);
+            span.setAttribute(VoiceTracing.SESSION_ID, sessionId);
+            span.setAttribute(VoiceTracing.SESSION_API, "reactive");
+            span.setAttribute(VoiceTracing.SESSION_STREAM, "streaming");
+            SessionTrace trace = new SessionTrace(span);
+            openResults(sessionId);
+            
+            AudioPreprocessor preprocessor = Boolean.TRUE.equals(transcribeConfig.getPreprocessingEnabled())
+                    ? newPreprocessor() : null;
+            Flux<byte[]> frames = audio
+                    .map(buffer -> {
+                        try {
+                            byte[] frame = new byte[buffer.readableByteCount()];
+                            buffer.read(frame);
+                            // Record the frame exactly as the client sent it
+                            audioRecordingService.record(sessionId, frame);
+                            if (trace.audio != null) {
+                                trace.audio.add(frame.length);
+                            }
+                            return frame;
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+            if (preprocessor != null) {
+                frames = frames.map(preprocessor::process)
+                        .concatWith(Mono.fromCallable(preprocessor::flush))
+                        .filter(frame -> frame.length > 0);
+            }
+            
+            // The stream is one call, open from the first request until the results end
+            VoiceEvents.AwsCall streamCall = new VoiceEvents.AwsCall();
+            return streamingUpstream.transcribe(sessionId, frames)
+                    .doOnSubscribe(subscription -> streamCall.begin())
+                    .map(vocabularyCorrector::correct)
+                    .doOnNext(result -> {
+                        try (Scope scope = trace.context.makeCurrent()) {
+                            publishResult(result);
+                        }
+                    })
+                    .doFinally(signal -> {
+                        streamCall.end();
+                        if (streamCall.shouldCommit()) {
+                            streamCall.service = "transcribe";
+                            streamCall.operation = "StartStreamTranscription";
+                            streamCall.request = "primary";
+                            streamCall.sessionId = sessionId;
+                            streamCall.succeeded = signal == SignalType.ON_COMPLETE;
+                            streamCall.commit();
+                        }
+                        audioRecordingService.stopRecording(sessionId);
+                        closeResults(sessionId);
+                        if (signal == SignalType.ON_ERROR) {
+                            span.setStatus(StatusCode.ERROR);
+                        } else if (signal == SignalType.CANCEL) {
+                            span.setAttribute(VoiceTracing.CANCELLED, true);
+                        }
+                        trace.end(null);
+                        logger.info("Stopped reactive transcription session {}: {}", sessionId, signal);
+                    })
+                    // The upstream starts its Transcribe span below the session's
+                    .contextWrite(VoiceTracing.propagate(trace.context));
+        });
+    }
+    
+    /**
+     * Stops any sessions still open at shutdown and releases the streaming threads.
+     */
+    @PreDestroy
+    public void shutdown() {
+        streamingSessions.keySet().forEach(this::stopStreamingTranscription);
+        streamingExecutor.shutdownNow();
+        aggregationScheduler.shutdownNow();
+        if (resultFanout != null) {
+            resultFanout.shutdown();
+        }
+    }
+    
+    private AudioPreprocessor newPreprocessor() {
+        return new AudioPreprocessor(
+            transcribeConfig.getSampleRate(),
+            transcribeConfig.getPreprocessingNoiseSuppressionDb(),
+            transcribeConfig.getPreprocessingTargetLevelDbfs(),
+            transcribeConfig.getPreprocessingMaxGainDb(),
+            meterRegistry
+        );
+    }
+    
+    private void forwardAudio(String sessionId, StreamingSession handler, byte[] audio) {
+        if (audio.length == 0) {
+            // The preprocessor is holding the audio until it has a whole hop
+            return;
+        }
+        AudioFrameAggregator aggregator = audioAggregators.get(sessionId);
+        if (aggregator != null) {
+            aggregator.accept(audio);
+        } else {
+            handler.addAudioChunk(audio);
+        }
+    }
+    
+    private void onStreamingResult(TranscriptionResult result) {
+        // Delivered on the stream's thread, so the session's context is made current here
+        SessionTrace trace = sessionTraces.get(result.getSessionId());
+        try (Scope scope = trace != null ? trace.context.makeCurrent() : Scope.noop()) {
+            publishResult(vocabularyCorrector.correct(result));
+        }
+    }
+    
+    private void publishResult(TranscriptionResult result) {
+        logger.debug("Received transcription result: {}", result);
+        VoiceEvents.ResultEmit emitted = new VoiceEvents.ResultEmit();
+        emitted.begin();
+        if (resultFanout != null) {
+            resultFanout.publish(result);
+        } else {
+            for (TranscriptionResultListener listener : resultListeners) {
+                try {
+                    listener.onResult(result);
+                } catch (RuntimeException e) {
+                    logger.warn("Transcription result listener failed for session: {}", result.getSessionId(), e);
+                }
+            }
+        }
+        emitted.end();
+        if (emitted.shouldCommit()) {
+            emitted.sessionId = result.getSessionId();
+            emitted.partial = result.isPartial();
+            emitted.transcriptChars = result.getTranscript() != null ? result.getTranscript().length() : 0;
+            emitted.commit();
+        }
+    }
+    
+    private void openResults(String sessionId) {
+        if (resultFanout != null) {
+            resultFanout.open(sessionId);
+        }
+    }
+    
+    private void closeResults(String sessionId) {
+        if (resultFanout != null) {
+            resultFanout.close(sessionId);
+        } else {
+            resultListeners.forEach(listener -> listener.onSessionClosed(sessionId));
+        }
+    }
+    
+    /**
+     * Makes a blocking Transcribe call, recording it as a flight recorder event.
+     */
+    private static <T> T traceAwsCall(String operation, Supplier<T> call) {
+        VoiceEvents.AwsCall event = new VoiceEvents.AwsCall();
+        event.begin();
+        boolean succeeded = false;
+        try {
+            T response = call.get();
+            succeeded = true;
+            return response;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.service = "transcribe";
+                event.operation = operation;
+                event.request = "primary";
+                event.succeeded = succeeded;
+                event.commit();
+            }
+        }
+    }
+    
+    private StreamingSession getHandler(String sessionId) {
+        StreamingSession handler = streamingSessions.get(sessionId);
         if (handler == null) {
             throw new IllegalArgumentException("No active transcription session found with ID: " + sessionId);
         }
         return handler;
     }
+    
+    /**
+     * The span of a streaming session, the context holding it and, if it is sampled, the tally
+     * of the session's audio.
+     */
+    private static class SessionTrace {
+        
+        private final Span span;
+        private final Context context;
+        private final VoiceTracing.AudioTally audio;
+        
+        SessionTrace(Span span) {
+            this.span = span;
+            this.context = Context.current().with(span);
+            this.audio = VoiceTracing.tally(span);
+        }
+        
+        void end(String finalTranscription) {
+            if (audio != null) {
+                audio.recordOn(span);
+            }
+            if (finalTranscription != null) {
+                span.setAttribute(VoiceTracing.TRANSCRIPT_CHARS, finalTranscription.length());
+            }
+            span.end();
+        }
+    }
+    
+    /**
+     * Thread factory for streaming session threads. Threads are daemons so an abandoned
+     * session cannot keep the JVM alive.
+     */
+    private static class StreamingThreadFactory implements ThreadFactory {
+        
+        private final AtomicInteger counter = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "transcribe-stream-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -0,0 +1,209 @@
+package com.bentham.voiceagent.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Re-chunks the audio frames of one streaming session into chunks of a target duration.
+ *
+ * <p>Clients send frames of arbitrary size, from a few milliseconds up to 4096-sample
+ * ScriptProcessor buffers. Small frames are coalesced and large frames split so that every
+ * chunk handed upstream carries the target duration of audio. Audio never waits longer than
+ * the maximum delay: when the oldest buffered byte reaches it, whatever is buffered is sent
+ * as a short chunk.</p>
+ *
+ * <p>Audio is assumed to be 16-bit PCM; chunks always end on a sample boundary. Instances are
+ * thread-safe.</p>
+ */
+public class AudioFrameAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(AudioFrameAggregator.class);
+
+    private static final int BYTES_PER_SAMPLE = 2;
+
+    private final String sessionId;
+    private final int targetChunkBytes;
+    private final long maxDelayNanos;
+    private final Consumer<byte[]> upstream;
+    private final ScheduledExecutorService scheduler;
+
+    private final Counter framesIn;
+    private final Counter fullChunks;
+    private final Counter timerChunks;
+    private final Counter flushChunks;
+    private final DistributionSummary chunkBytes;
+    private final Timer addedLatency;
+
+    private byte[] buffer;
+    private int buffered;
+    private long oldestArrivalNanos;
+    private ScheduledFuture<?> maxDelayTimer;
+    private boolean closed;
+
+    /**
+     * Creates a new aggregator.
+     *
+     * @param sessionId the ID of the streaming session
+     * @param sampleRate the audio sample rate in Hz
+     * @param targetChunkMs the duration of audio in each upstream chunk
+     * @param maxDelayMs the longest time audio may wait before being sent upstream
+     * @param upstream receives each aggregated chunk; ownership of the array passes to it
+     * @param scheduler scheduler for max-delay timers
+     * @param meterRegistry registry for aggregation metrics
+     */
+    public AudioFrameAggregator(String sessionId, int sampleRate, int targetChunkMs, int maxDelayMs,
+                                Consumer<byte[]> upstream, ScheduledExecutorService scheduler,
+                                MeterRegistry meterRegistry) {
+        if (targetChunkMs <= 0 || maxDelayMs <= 0) {
+            throw new IllegalArgumentException("Target chunk and max delay must be positive");
+        }
+        this.sessionId = sessionId;
+        this.targetChunkBytes = Math.max(1, sampleRate * targetChunkMs / 1000) * BYTES_PER_SAMPLE;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.upstream = upstream;
+        this.scheduler = scheduler;
+        this.buffer = new byte[targetChunkBytes];
+
+        this.framesIn = meterRegistry.counter("transcribe.aggregator.frames.in");
+        this.fullChunks = meterRegistry.counter("transcribe.upstream.events", "trigger", "full");
+        this.timerChunks = meterRegistry.counter("transcribe.upstream.events", "trigger", "max-delay");
+        this.flushChunks = meterRegistry.counter("transcribe.upstream.events", "trigger", "flush");
+        this.chunkBytes = DistributionSummary.builder("transcribe.upstream.chunk.bytes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.addedLatency = Timer.builder("transcribe.aggregator.added.latency")
+                .description("Time audio waits in the aggregator before being sent upstream")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Accepts a frame from the client.
+     *
+     * @param frame the audio frame; it is not retained, except when it already is exactly one chunk
+     */
+    public synchronized void accept(byte[] frame) {
+        if (closed) {
+            throw new IllegalStateException("Aggregator is closed for session: " + sessionId);
+        }
+        framesIn.increment();
+        if (frame.length == 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+
+        // A frame that is already exactly one chunk needs no copying
+        if (buffered == 0 && frame.length == targetChunkBytes) {
+            emit(frame, fullChunks, now, now);
+            return;
+        }
+
+        int offset = 0;
+        while (offset < frame.length) {
+            if (buffered == 0) {
+                oldestArrivalNanos = now;
+            }
+            int length = Math.min(targetChunkBytes - buffered, frame.length - offset);
+            System.arraycopy(frame, offset, buffer, buffered, length);
+            buffered += length;
+            offset += length;
+
+            if (buffered == targetChunkBytes) {
+                byte[] chunk = buffer;
+                buffer = new byte[targetChunkBytes];
+                buffered = 0;
+                // The timer was set for audio that has just gone out
+                cancelTimer();
+                emit(chunk, fullChunks, oldestArrivalNanos, now);
+            }
+        }
+
+        if (buffered > 0 && maxDelayTimer == null) {
+            long delay = maxDelayNanos - (now - oldestArrivalNanos);
+            maxDelayTimer = scheduler.schedule(this::onMaxDelay, Math.max(0, delay), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Sends whatever audio is buffered upstream immediately.
+     */
+    public synchronized void flush() {
+        drain(flushChunks);
+    }
+
+    /**
+     * Flushes buffered audio and rejects any further frames.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        drain(flushChunks);
+        cancelTimer();
+        closed = true;
+    }
+
+    private synchronized void onMaxDelay() {
+        maxDelayTimer = null;
+        if (closed) {
+            return;
+        }
+        try {
+            drain(timerChunks);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to send delayed audio upstream for session: {}", sessionId, e);
+        }
+        // An odd trailing byte may still be buffered; it waits for the rest of its sample
+    }
+
+    private void drain(Counter trigger) {
+        int length = buffered - buffered % BYTES_PER_SAMPLE;
+        if (length == 0) {
+            return;
+        }
+        byte[] chunk = Arrays.copyOf(buffer, length);
+        int remainder = buffered - length;
+        if (remainder > 0) {
+            buffer[0] = buffer[length];
+        }
+        buffered = remainder;
+        if (buffered == 0) {
+            cancelTimer();
+        }
+        emit(chunk, trigger, oldestArrivalNanos, System.nanoTime());
+    }
+
+    private void emit(byte[] chunk, Counter trigger, long arrivalNanos, long now) {
+        trigger.increment();
+        chunkBytes.record(chunk.length);
+        addedLatency.record(now - arrivalNanos, TimeUnit.NANOSECONDS);
+        upstream.accept(chunk);
+    }
+
+    private void cancelTimer() {
+        if (maxDelayTimer != null) {
+            maxDelayTimer.cancel(false);
+            maxDelayTimer = null;
+        }
+    }
+
+    /**
+     * Gets the number of bytes in each full upstream chunk.
+     *
+     * @return the target chunk size in bytes
+     */
+    public int getTargetChunkBytes() {
+        return targetChunkBytes;
+    }
+}
@@ -0,0 +1,104 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.RecordingConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the raw audio of streaming sessions when recording is enabled.
+ * Recording failures are logged and end that session's recording; they never reach the
+ * audio path.
+ */
+@Service
+public class AudioRecordingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AudioRecordingService.class);
+
+    private final RecordingConfig recordingConfig;
+    private final Map<String, SessionAudioRecorder> recorders = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AudioRecordingService(RecordingConfig recordingConfig) {
+        this.recordingConfig = recordingConfig;
+    }
+
+    /**
+     * Starts recording a session if recording is enabled.
+     *
+     * @param sessionId the session ID
+     * @param sampleRate the sample rate of the session's audio in Hz
+     */
+    public void startRecording(String sessionId, int sampleRate) {
+        if (!Boolean.TRUE.equals(recordingConfig.getEnabled())) {
+            return;
+        }
+        try {
+            recorders.put(sessionId, new SessionAudioRecorder(
+                    getRecordingDirectory(sessionId), recordingConfig.getSegmentSizeBytes(), sampleRate));
+            logger.info("Recording audio for session {} to {}", sessionId, getRecordingDirectory(sessionId));
+        } catch (IOException e) {
+            logger.warn("Could not start recording for session: {}", sessionId, e);
+        }
+    }
+
+    /**
+     * Records an audio frame for a session. Does nothing if the session is not being recorded.
+     *
+     * @param sessionId the session ID
+     * @param audioChunk the audio frame as received from the client
+     */
+    public void record(String sessionId, byte[] audioChunk) {
+        SessionAudioRecorder recorder = recorders.get(sessionId);
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.append(audioChunk);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Recording failed for session {}, no further audio will be recorded", sessionId, e);
+            stopRecording(sessionId);
+        }
+    }
+
+    /**
+     * Stops recording a session and flushes its recording to disk.
+     *
+     * @param sessionId the session ID
+     */
+    public void stopRecording(String sessionId) {
+        SessionAudioRecorder recorder = recorders.remove(sessionId);
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.close();
+            logger.info("Recorded {} frames ({} bytes) for session {}",
+                    recorder.getFramesWritten(), recorder.getBytesWritten(), sessionId);
+        } catch (IOException e) {
+            logger.warn("Could not close recording for session: {}", sessionId, e);
+        }
+    }
+
+    /**
+     * Gets the directory a session's recording is written to.
+     *
+     * @param sessionId the session ID
+     * @return the recording directory
+     * @throws IllegalArgumentException if the session ID is not a plain name
+     */
+    public Path getRecordingDirectory(String sessionId) {
+        Path root = Path.of(recordingConfig.getDirectory()).toAbsolutePath().normalize();
+        Path directory = root.resolve(sessionId).normalize();
+        if (!directory.getParent().equals(root)) {
+            throw new IllegalArgumentException("Invalid session ID: " + sessionId);
+        }
+        return directory;
+    }
+}
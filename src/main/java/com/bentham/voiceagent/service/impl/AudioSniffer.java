@@ -0,0 +1,375 @@
+package com.bentham.voiceagent.service.impl;
+
+import software.amazon.awssdk.services.transcribe.model.MediaFormat;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Works out the container, codec and sample rate of an uploaded recording from its first bytes,
+ * without reading the rest of it.
+ *
+ * <p>WAV, FLAC, Ogg (Opus, Vorbis or FLAC), MP3, WebM, MP4 (or M4A) and AMR, the containers
+ * Transcribe batch jobs accept, are recognised; a recording in none of them is taken to be raw
+ * 16-bit PCM. At most {@link #MAX_HEADER_BYTES} are held while the headers are parsed, and
+ * the stream handed back replays them before the rest of the recording. The one exception is an
+ * ID3 tag too long to hold, which is skipped and left out of the stream; the audio is unchanged.</p>
+ */
+final class AudioSniffer {
+
+    /**
+     * The most bytes held while the headers are parsed.
+     */
+    static final int MAX_HEADER_BYTES = 64 * 1024;
+
+    // MPEG audio sample rates by version (2.5, reserved, 2, 1) and rate index
+    private static final int[][] MPEG_SAMPLE_RATES = {
+            {11025, 12000, 8000}, null, {22050, 24000, 16000}, {44100, 48000, 32000}};
+
+    // MPEG audio bitrates in kbit/s by rate index, for MPEG-1 layers I, II and III, then MPEG-2
+    // and 2.5 layer I, then layers II and III
+    private static final int[][] MPEG_BITRATES = {
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}};
+
+    // The EBML header of Matroska files, which WebM files are
+    private static final byte[] EBML_MAGIC = {0x1a, 0x45, (byte) 0xdf, (byte) 0xa3};
+
+    private AudioSniffer() {
+    }
+
+    /**
+     * The container a recording was found to be in.
+     */
+    enum Container {
+        WAV(MediaFormat.WAV),
+        FLAC(MediaFormat.FLAC),
+        OGG(MediaFormat.OGG),
+        MP3(MediaFormat.MP3),
+        WEBM(MediaFormat.WEBM),
+        MP4(MediaFormat.MP4),
+        M4A(MediaFormat.M4A),
+        AMR(MediaFormat.AMR),
+        RAW(null);
+
+        private final MediaFormat mediaFormat;
+
+        Container(MediaFormat mediaFormat) {
+            this.mediaFormat = mediaFormat;
+        }
+
+        /**
+         * Gets the format to give a Transcribe batch job.
+         *
+         * @return the media format, or null for raw PCM, which batch jobs do not accept
+         */
+        MediaFormat getMediaFormat() {
+            return mediaFormat;
+        }
+    }
+
+    /**
+     * Sniffs a recording.
+     *
+     * @param input the recording; read only as far as its headers
+     * @return what was found, with the stream to read the recording from
+     * @throws IOException if the recording cannot be read
+     */
+    static SniffedAudio sniff(InputStream input) throws IOException {
+        BufferedInputStream stream = new BufferedInputStream(input, 8192);
+        stream.mark(MAX_HEADER_BYTES);
+        byte[] header = stream.readNBytes(MAX_HEADER_BYTES);
+        stream.reset();
+
+        int offset = 0;
+        if (startsWith(header, 0, "ID3") && header.length >= 10) {
+            int tagBytes = 10 + synchsafe(header, 6) + ((header[5] & 0x10) != 0 ? 10 : 0);
+            if (tagBytes + 4 <= header.length) {
+                offset = tagBytes;
+            } else {
+                // Too long to hold: skip it and sniff what follows
+                stream.skipNBytes(tagBytes);
+                stream.mark(MAX_HEADER_BYTES);
+                header = stream.readNBytes(MAX_HEADER_BYTES);
+                stream.reset();
+            }
+        }
+
+        SniffedAudio audio;
+        if (startsWith(header, 0, "RIFF") && startsWith(header, 8, "WAVE")) {
+            audio = sniffWav(header);
+        } else if (startsWith(header, offset, "fLaC")) {
+            audio = sniffFlac(header, offset + 4, Container.FLAC);
+        } else if (startsWith(header, offset, "OggS")) {
+            audio = sniffOgg(header);
+        } else if (header.length >= 4 && Arrays.equals(header, 0, 4, EBML_MAGIC, 0, 4)) {
+            audio = new SniffedAudio(Container.WEBM, "unknown", null, 0, 0);
+        } else if (startsWith(header, 4, "ftyp")) {
+            audio = sniffMp4(header);
+        } else if (startsWith(header, 0, "#!AMR-WB\n")) {
+            audio = new SniffedAudio(Container.AMR, "amr_wb", 16000, 1, 0);
+        } else if (startsWith(header, 0, "#!AMR\n")) {
+            audio = new SniffedAudio(Container.AMR, "amr_nb", 8000, 1, 0);
+        } else {
+            audio = sniffMp3(header, offset, offset > 0);
+        }
+        if (audio == null) {
+            audio = new SniffedAudio(Container.RAW, "pcm_s16le", null, 1, 16);
+        }
+        audio.stream = stream;
+        return audio;
+    }
+
+    private static SniffedAudio sniffWav(byte[] header) {
+        int position = 12;
+        while (position + 8 <= header.length) {
+            long size = uint32le(header, position + 4);
+            if (startsWith(header, position, "fmt ") && size >= 16 && position + 8 + size <= header.length) {
+                int body = position + 8;
+                int formatCode = uint16le(header, body);
+                int channels = uint16le(header, body + 2);
+                int sampleRate = (int) uint32le(header, body + 4);
+                int bits = uint16le(header, body + 14);
+                if (formatCode == 0xFFFE && size >= 40) {
+                    formatCode = uint16le(header, body + 24);
+                }
+                String codec = switch (formatCode) {
+                    case 1 -> bits == 8 ? "pcm_u8" : "pcm_s" + bits + "le";
+                    case 3 -> "pcm_f" + bits + "le";
+                    case 6 -> "alaw";
+                    case 7 -> "mulaw";
+                    default -> String.format("wav_0x%04x", formatCode);
+                };
+                return new SniffedAudio(Container.WAV, codec, sampleRate, channels, bits);
+            }
+            position += 8 + (int) Math.min(size + (size & 1), Integer.MAX_VALUE - position);
+        }
+        return new SniffedAudio(Container.WAV, "unknown", null, 0, 0);
+    }
+
+    /**
+     * Reads a FLAC STREAMINFO block, whose metadata block header starts at an offset.
+     */
+    private static SniffedAudio sniffFlac(byte[] header, int offset, Container container) {
+        if (offset + 4 + 18 > header.length || (header[offset] & 0x7f) != 0) {
+            return new SniffedAudio(container, "flac", null, 0, 0);
+        }
+        int info = offset + 4;
+        int sampleRate = ((header[info + 10] & 0xff) << 12) | ((header[info + 11] & 0xff) << 4)
+                | ((header[info + 12] & 0xff) >> 4);
+        int channels = ((header[info + 12] >> 1) & 0x07) + 1;
+        int bits = (((header[info + 12] & 0x01) << 4) | ((header[info + 13] & 0xff) >> 4)) + 1;
+        return new SniffedAudio(container, "flac", sampleRate, channels, bits);
+    }
+
+    private static SniffedAudio sniffOgg(byte[] header) {
+        if (header.length < 27 || header.length < 27 + (header[26] & 0xff)) {
+            return new SniffedAudio(Container.OGG, "unknown", null, 0, 0);
+        }
+        // The first page holds the codec's identification packet
+        int packet = 27 + (header[26] & 0xff);
+        if (startsWith(header, packet, "OpusHead") && packet + 16 <= header.length) {
+            // Opus always decodes at 48 kHz; the input rate is informational
+            return new SniffedAudio(Container.OGG, "opus", 48000, header[packet + 9] & 0xff, 16);
+        }
+        if (header.length >= packet + 16 && header[packet] == 0x01 && startsWith(header, packet + 1, "vorbis")) {
+            return new SniffedAudio(Container.OGG, "vorbis", (int) uint32le(header, packet + 12),
+                    header[packet + 11] & 0xff, 16);
+        }
+        if (header.length > packet + 13 && header[packet] == 0x7f && startsWith(header, packet + 1, "FLAC")
+                && startsWith(header, packet + 9, "fLaC")) {
+            return sniffFlac(header, packet + 13, Container.OGG);
+        }
+        return new SniffedAudio(Container.OGG, "unknown", null, 0, 0);
+    }
+
+    /**
+     * Tells an M4A file from other MP4 files by the major brand of its {@code ftyp} box.
+     */
+    private static SniffedAudio sniffMp4(byte[] header) {
+        boolean m4a = startsWith(header, 8, "M4A ") || startsWith(header, 8, "M4B ");
+        return new SniffedAudio(m4a ? Container.M4A : Container.MP4, "unknown", null, 0, 0);
+    }
+
+    /**
+     * Reads an MPEG audio frame header at an offset. Without an ID3 tag to go by, the next frame
+     * must follow where the first says it ends, so raw PCM is not taken for MP3.
+     */
+    private static SniffedAudio sniffMp3(byte[] header, int offset, boolean tagged) {
+        int frameBytes = mpegFrameBytes(header, offset);
+        if (frameBytes <= 0 || (!tagged && mpegFrameBytes(header, offset + frameBytes) <= 0)) {
+            return null;
+        }
+        int version = (header[offset + 1] >> 3) & 0x03;
+        int layer = 4 - ((header[offset + 1] >> 1) & 0x03);
+        int sampleRate = MPEG_SAMPLE_RATES[version][(header[offset + 2] >> 2) & 0x03];
+        int channels = ((header[offset + 3] >> 6) & 0x03) == 3 ? 1 : 2;
+        return new SniffedAudio(Container.MP3, layer == 3 ? "mp3" : "mp" + layer, sampleRate, channels, 16);
+    }
+
+    /**
+     * Works out the length of the MPEG audio frame at an offset.
+     *
+     * @return the frame length in bytes, or 0 if there is no valid frame header there
+     */
+    private static int mpegFrameBytes(byte[] header, int offset) {
+        if (offset + 4 > header.length || (header[offset] & 0xff) != 0xff || (header[offset + 1] & 0xe0) != 0xe0) {
+            return 0;
+        }
+        int version = (header[offset + 1] >> 3) & 0x03;
+        int layerBits = (header[offset + 1] >> 1) & 0x03;
+        int bitrateIndex = (header[offset + 2] >> 4) & 0x0f;
+        int rateIndex = (header[offset + 2] >> 2) & 0x03;
+        if (version == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) {
+            return 0;
+        }
+        int layer = 4 - layerBits;
+        int table = version == 3 ? layer - 1 : (layer == 1 ? 3 : 4);
+        int bitrate = MPEG_BITRATES[table][bitrateIndex] * 1000;
+        int sampleRate = MPEG_SAMPLE_RATES[version][rateIndex];
+        int padding = (header[offset + 2] >> 1) & 0x01;
+        if (layer == 1) {
+            return (12 * bitrate / sampleRate + padding) * 4;
+        }
+        int samplesPerFrame = layer == 3 && version != 3 ? 576 : 1152;
+        return samplesPerFrame / 8 * bitrate / sampleRate + padding;
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, String magic) {
+        byte[] expected = magic.getBytes(StandardCharsets.ISO_8859_1);
+        return offset >= 0 && offset + expected.length <= bytes.length
+                && Arrays.equals(bytes, offset, offset + expected.length, expected, 0, expected.length);
+    }
+
+    private static int synchsafe(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0x7f) << 21) | ((bytes[offset + 1] & 0x7f) << 14)
+                | ((bytes[offset + 2] & 0x7f) << 7) | (bytes[offset + 3] & 0x7f);
+    }
+
+    static int uint16le(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8);
+    }
+
+    static long uint32le(byte[] bytes, int offset) {
+        return (uint16le(bytes, offset) | ((long) uint16le(bytes, offset + 2) << 16));
+    }
+
+    /**
+     * What a recording was found to be, and the stream to read it from.
+     */
+    static final class SniffedAudio {
+
+        private final Container container;
+        private final String codec;
+        private final Integer sampleRate;
+        private final int channels;
+        private final int bitsPerSample;
+        private InputStream stream;
+
+        SniffedAudio(Container container, String codec, Integer sampleRate, int channels, int bitsPerSample) {
+            this.container = container;
+            this.codec = codec;
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.bitsPerSample = bitsPerSample;
+        }
+
+        /**
+         * Gets the container.
+         *
+         * @return the container, {@link Container#RAW} if none was recognised
+         */
+        Container getContainer() {
+            return container;
+        }
+
+        /**
+         * Gets the codec, such as {@code pcm_s16le}, {@code flac}, {@code opus} or {@code mp3}.
+         *
+         * @return the codec name
+         */
+        String getCodec() {
+            return codec;
+        }
+
+        /**
+         * Gets the sample rate given by the headers.
+         *
+         * @return the sample rate in Hz, or null if the headers do not give one, as for raw PCM
+         */
+        Integer getSampleRate() {
+            return sampleRate;
+        }
+
+        /**
+         * Gets the number of channels.
+         *
+         * @return the channels, or 0 if unknown
+         */
+        int getChannels() {
+            return channels;
+        }
+
+        /**
+         * Gets the bits per sample of PCM codecs.
+         *
+         * @return the bits per sample, or 0 if unknown
+         */
+        int getBitsPerSample() {
+            return bitsPerSample;
+        }
+
+        /**
+         * Gets the recording, from its first byte.
+         *
+         * @return the stream
+         */
+        InputStream getStream() {
+            return stream;
+        }
+
+        /**
+         * Checks if the recording can be decoded to PCM as it is read. FLAC, Opus, Vorbis, AAC
+         * and AMR are not: there is no streaming decoder for them on the classpath.
+         *
+         * @return true for raw PCM, MP3 and integer PCM, float and G.711 WAV files
+         */
+        boolean isDecodable() {
+            return container == Container.RAW || container == Container.MP3
+                    || (container == Container.WAV && PcmDecoder.supports(codec, channels));
+        }
+
+        /**
+         * Opens the recording as 16-bit little-endian mono PCM at {@link #getSampleRate()},
+         * decoding as it is read.
+         *
+         * @return the PCM stream
+         * @throws IOException if the recording cannot be read
+         * @throws IllegalStateException if the recording cannot be decoded
+         */
+        InputStream openPcm() throws IOException {
+            if (container == Container.RAW) {
+                return stream;
+            }
+            if (!isDecodable()) {
+                throw new IllegalStateException("Cannot decode " + this + " to PCM");
+            }
+            if (container == Container.MP3) {
+                return Mp3Decoder.open(stream);
+            }
+            return PcmDecoder.openWav(stream, codec, channels, bitsPerSample);
+        }
+
+        @Override
+        public String toString() {
+            return container + "/" + codec + (sampleRate != null ? " " + sampleRate + " Hz" : "")
+                    + (channels > 0 ? " " + channels + "ch" : "");
+        }
+    }
+}
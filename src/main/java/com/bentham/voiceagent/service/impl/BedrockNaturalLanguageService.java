@@ -0,0 +1,152 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.service.NaturalLanguageService;
+import com.bentham.voiceagent.util.CompletableFutures;
+import com.bentham.voiceagent.util.VoiceTracing;
+import io.opentelemetry.api.trace.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.model.ContentBlock;
+import software.amazon.awssdk.services.bedrockruntime.model.ConversationRole;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.Message;
+import software.amazon.awssdk.services.bedrockruntime.model.TokenUsage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of the NaturalLanguageService using the Amazon Bedrock Converse API.
+ * Requests are asynchronous; cancelling a returned future cancels the Bedrock request.
+ * Requests are built, and their token usage accounted for, by the {@link BedrockRequestBuilder}.
+ * Each call is traced as a client span below the current context, tagged with the model and
+ * the tokens it used.
+ */
+@Service
+public class BedrockNaturalLanguageService implements NaturalLanguageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BedrockNaturalLanguageService.class);
+
+    private final BedrockRuntimeAsyncClient bedrockClient;
+    private final BedrockRequestBuilder requestBuilder;
+
+    // Message history per conversation, alternating user and assistant messages
+    private final Map<String, List<Message>> conversations = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BedrockNaturalLanguageService(BedrockRuntimeAsyncClient bedrockClient, BedrockRequestBuilder requestBuilder) {
+        this.bedrockClient = bedrockClient;
+        this.requestBuilder = requestBuilder;
+    }
+
+    @Override
+    public CompletableFuture<String> processMessage(String message) {
+        return converse(List.of(), userMessage(message), Map.of());
+    }
+
+    @Override
+    public CompletableFuture<String> processMessage(String message, String conversationId) {
+        return processMessageWithParams(message, conversationId, Map.of());
+    }
+
+    @Override
+    public CompletableFuture<String> processMessageWithParams(String message, String conversationId,
+                                                              Map<String, Object> parameters) {
+        List<Message> history = conversations.get(conversationId);
+        if (history == null) {
+            throw new IllegalArgumentException("No conversation found with ID: " + conversationId);
+        }
+
+        Message userMessage = userMessage(message);
+        List<Message> previous;
+        synchronized (history) {
+            previous = new ArrayList<>(history);
+        }
+
+        CompletableFuture<String> call = converse(previous, userMessage, parameters);
+        return CompletableFutures.propagateCancellation(call.thenApply(response -> {
+            // Only completed exchanges join the history, so a cancelled request leaves no trace
+            synchronized (history) {
+                history.add(userMessage);
+                history.add(assistantMessage(response));
+            }
+            return response;
+        }), call);
+    }
+
+    @Override
+    public CompletableFuture<String> processMessageWithParams(String message, Map<String, Object> parameters) {
+        return converse(List.of(), userMessage(message), parameters);
+    }
+
+    @Override
+    public String createConversation() {
+        String conversationId = UUID.randomUUID().toString();
+        conversations.put(conversationId, new ArrayList<>());
+        logger.info("Created conversation: {}", conversationId);
+        return conversationId;
+    }
+
+    @Override
+    public void endConversation(String conversationId) {
+        if (conversations.remove(conversationId) != null) {
+            logger.info("Ended conversation: {}", conversationId);
+        }
+    }
+
+    private CompletableFuture<String> converse(List<Message> history, Message message, Map<String, Object> parameters) {
+        BedrockRequestBuilder.PreparedRequest request = requestBuilder.build(history, message, parameters);
+        Span span = VoiceTracing.startAwsSpan("BedrockRuntime", "Converse");
+        span.setAttribute(VoiceTracing.MODEL_ID, request.getModelId());
+        long startNanos = System.nanoTime();
+        CompletableFuture<ConverseResponse> call;
+        try {
+            call = bedrockClient.converse(request.getRequest());
+        } catch (RuntimeException e) {
+            VoiceTracing.recordFailure(span, e);
+            span.end();
+            throw e;
+        }
+        VoiceTracing.endWhenComplete(span, call.thenAccept(converseResponse -> {
+            TokenUsage usage = converseResponse.usage();
+            if (usage != null && span.isRecording()) {
+                span.setAttribute(VoiceTracing.INPUT_TOKENS, usage.inputTokens() != null ? usage.inputTokens() : 0L);
+                span.setAttribute(VoiceTracing.OUTPUT_TOKENS, usage.outputTokens() != null ? usage.outputTokens() : 0L);
+            }
+        }));
+        CompletableFuture<String> response = call
+                .thenApply(converseResponse -> {
+                    requestBuilder.recordResponse(request, converseResponse, System.nanoTime() - startNanos);
+                    return responseText(converseResponse);
+                })
+                .whenComplete((text, error) -> {
+                    if (error != null && !call.isCancelled()) {
+                        logger.error("Error processing message with Bedrock", error);
+                    }
+                });
+        return CompletableFutures.propagateCancellation(response, call);
+    }
+
+    private static String responseText(ConverseResponse response) {
+        return response.output().message().content().stream()
+                .map(ContentBlock::text)
+                .filter(text -> text != null)
+                .collect(Collectors.joining());
+    }
+
+    private static Message userMessage(String text) {
+        return Message.builder().role(ConversationRole.USER).content(ContentBlock.fromText(text)).build();
+    }
+
+    private static Message assistantMessage(String text) {
+        return Message.builder().role(ConversationRole.ASSISTANT).content(ContentBlock.fromText(text)).build();
+    }
+}
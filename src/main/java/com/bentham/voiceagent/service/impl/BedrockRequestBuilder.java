@@ -0,0 +1,333 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.BedrockConfig;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.bedrockruntime.model.CachePointBlock;
+import software.amazon.awssdk.services.bedrockruntime.model.CachePointType;
+import software.amazon.awssdk.services.bedrockruntime.model.ContentBlock;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.InferenceConfiguration;
+import software.amazon.awssdk.services.bedrockruntime.model.Message;
+import software.amazon.awssdk.services.bedrockruntime.model.SystemContentBlock;
+import software.amazon.awssdk.services.bedrockruntime.model.TokenUsage;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds Converse requests for the configured model and accounts for their token usage.
+ *
+ * <p>The system prompt, any {@code system} and {@code context} parameters, and the earlier
+ * turns of a conversation are the same from one request to the next. With prompt caching
+ * enabled, a cache point is placed after the system blocks and another after the conversation
+ * history, each only if the prefix before it is long enough for Bedrock to cache. Bedrock then
+ * reads those prefixes from its cache instead of processing them again.</p>
+ *
+ * <p>A fingerprint of each marked prefix is kept locally with the time it stays warm, so each
+ * call can be labelled by whether its prefix was expected to be cached. Metrics:
+ * {@code voice.bedrock.tokens} records tokens per call by type (input, cache-read, cache-write,
+ * output); {@code voice.bedrock.latency} records call latency tagged with the prefix state
+ * (warm, cold, none); and {@code voice.bedrock.prompt.cache} counts calls by cache outcome
+ * (hit, write, evicted, uncached).</p>
+ */
+@Component
+public class BedrockRequestBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(BedrockRequestBuilder.class);
+
+    private static final CachePointBlock CACHE_POINT = CachePointBlock.builder().type(CachePointType.DEFAULT).build();
+
+    // Warm prefixes are pruned once the map grows past this many entries
+    private static final int MAX_TRACKED_PREFIXES = 1024;
+
+    private final BedrockConfig bedrockConfig;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Long> warmUntilNanos = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BedrockRequestBuilder(BedrockConfig bedrockConfig, MeterRegistry meterRegistry) {
+        this.bedrockConfig = bedrockConfig;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Builds a request. Supported parameters are {@code modelId}, {@code temperature},
+     * {@code maxTokens}, {@code system} and {@code context}; anything else is ignored.
+     *
+     * @param history the earlier messages of the conversation, alternating user and assistant
+     * @param message the new user message
+     * @param parameters parameters overriding the configured defaults
+     * @return the request, with what is needed to account for its response
+     */
+    public PreparedRequest build(List<Message> history, Message message, Map<String, Object> parameters) {
+        String modelId = String.valueOf(parameters.getOrDefault("modelId", bedrockConfig.getModelId()));
+        boolean caching = Boolean.TRUE.equals(bedrockConfig.getPromptCachingEnabled());
+        // With caching disabled no prefix is long enough to mark
+        int minPrefixChars = caching ? bedrockConfig.getPromptCacheMinPrefixChars() : Integer.MAX_VALUE;
+        PrefixFingerprint prefix = new PrefixFingerprint(modelId);
+        List<String> cachedPrefixes = new ArrayList<>();
+
+        List<SystemContentBlock> system = new ArrayList<>();
+        for (Object text : new Object[] {bedrockConfig.getSystemPrompt(), parameters.get("system"), parameters.get("context")}) {
+            if (text != null && !text.toString().isBlank()) {
+                system.add(SystemContentBlock.fromText(text.toString()));
+                prefix.add(text.toString());
+            }
+        }
+        if (prefix.length() >= minPrefixChars) {
+            system.add(SystemContentBlock.fromCachePoint(CACHE_POINT));
+            cachedPrefixes.add(prefix.fingerprint());
+        }
+
+        List<Message> messages = new ArrayList<>(history.size() + 1);
+        for (Message previous : history) {
+            messages.add(previous);
+            previous.content().forEach(block -> prefix.add(block.text()));
+        }
+        if (!history.isEmpty() && prefix.length() >= minPrefixChars) {
+            // The cache point goes at the end of the last earlier turn, so only the new message is processed afresh
+            Message last = messages.remove(messages.size() - 1);
+            List<ContentBlock> content = new ArrayList<>(last.content());
+            content.add(ContentBlock.fromCachePoint(CACHE_POINT));
+            messages.add(last.toBuilder().content(content).build());
+            cachedPrefixes.add(prefix.fingerprint());
+        }
+        messages.add(message);
+
+        ConverseRequest.Builder request = ConverseRequest.builder()
+                .modelId(modelId)
+                .messages(messages)
+                .inferenceConfig(InferenceConfiguration.builder()
+                        .temperature(number(parameters, "temperature", bedrockConfig.getTemperature()).floatValue())
+                        .maxTokens(number(parameters, "maxTokens", bedrockConfig.getMaxTokens()).intValue())
+                        .build());
+        if (!system.isEmpty()) {
+            request.system(system);
+        }
+        return new PreparedRequest(request.build(), modelId, cachedPrefixes, prefixState(cachedPrefixes));
+    }
+
+    /**
+     * Accounts for a successful call: records its token usage and latency and updates which
+     * prefixes are warm.
+     *
+     * @param request the request as built
+     * @param response the response from Bedrock
+     * @param latencyNanos the time from sending the request to the response
+     */
+    public void recordResponse(PreparedRequest request, ConverseResponse response, long latencyNanos) {
+        TokenUsage usage = response.usage();
+        int input = usage != null ? orZero(usage.inputTokens()) : 0;
+        int cacheRead = usage != null ? orZero(usage.cacheReadInputTokens()) : 0;
+        int cacheWrite = usage != null ? orZero(usage.cacheWriteInputTokens()) : 0;
+        int output = usage != null ? orZero(usage.outputTokens()) : 0;
+
+        String outcome;
+        if (request.cachedPrefixes.isEmpty()) {
+            outcome = "uncached";
+        } else if (cacheRead > 0 || cacheWrite > 0) {
+            outcome = cacheRead > 0 ? "hit" : request.prefixState.equals("warm") ? "evicted" : "write";
+            long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(bedrockConfig.getPromptCacheTtlSeconds());
+            request.cachedPrefixes.forEach(fingerprint -> warmUntilNanos.put(fingerprint, until));
+            pruneExpired();
+        } else {
+            // Marked but not cached, for example a prefix below the model's minimum
+            outcome = "uncached";
+            request.cachedPrefixes.forEach(warmUntilNanos::remove);
+        }
+
+        recordTokens(request.modelId, "input", input);
+        recordTokens(request.modelId, "cache-read", cacheRead);
+        recordTokens(request.modelId, "cache-write", cacheWrite);
+        recordTokens(request.modelId, "output", output);
+        meterRegistry.counter("voice.bedrock.prompt.cache", "model", request.modelId, "outcome", outcome).increment();
+        Timer.builder("voice.bedrock.latency")
+                .description("Latency of Bedrock Converse calls by prompt prefix state")
+                .tags("model", request.modelId, "prefix", request.prefixState)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+        logger.debug("Bedrock call to {}: {} input, {} cache-read, {} cache-write, {} output tokens in {} ms, prefix {}",
+                request.modelId, input, cacheRead, cacheWrite, output,
+                TimeUnit.NANOSECONDS.toMillis(latencyNanos), request.prefixState);
+    }
+
+    /**
+     * Checks if a prefix is expected to be in Bedrock's cache.
+     *
+     * @param fingerprint the prefix fingerprint
+     * @return true if the prefix was cached and has not expired
+     */
+    boolean isWarm(String fingerprint) {
+        Long until = warmUntilNanos.get(fingerprint);
+        if (until == null) {
+            return false;
+        }
+        if (until - System.nanoTime() > 0) {
+            return true;
+        }
+        // Expired entries go as soon as they are looked at, not only once the map is full
+        warmUntilNanos.remove(fingerprint, until);
+        return false;
+    }
+
+    /**
+     * Gets the number of prefixes whose cache expiry is kept.
+     *
+     * @return the prefix count
+     */
+    int getTrackedPrefixCount() {
+        return warmUntilNanos.size();
+    }
+
+    private String prefixState(List<String> cachedPrefixes) {
+        if (cachedPrefixes.isEmpty()) {
+            return "none";
+        }
+        return cachedPrefixes.stream().anyMatch(this::isWarm) ? "warm" : "cold";
+    }
+
+    private void pruneExpired() {
+        if (warmUntilNanos.size() > MAX_TRACKED_PREFIXES) {
+            long now = System.nanoTime();
+            warmUntilNanos.values().removeIf(until -> until - now <= 0);
+        }
+    }
+
+    private void recordTokens(String modelId, String type, int tokens) {
+        DistributionSummary.builder("voice.bedrock.tokens")
+                .description("Tokens per Bedrock Converse call")
+                .baseUnit("tokens")
+                .tags("model", modelId, "type", type)
+                .register(meterRegistry)
+                .record(tokens);
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static Number number(Map<String, Object> parameters, String name, Number defaultValue) {
+        Object value = parameters.get(name);
+        if (value instanceof Number number) {
+            return number;
+        }
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.valueOf(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " must be a number: " + value, e);
+        }
+    }
+
+    /**
+     * A built request and what is needed to account for its response.
+     */
+    public static final class PreparedRequest {
+
+        private final ConverseRequest request;
+        private final String modelId;
+        private final List<String> cachedPrefixes;
+        private final String prefixState;
+
+        PreparedRequest(ConverseRequest request, String modelId, List<String> cachedPrefixes, String prefixState) {
+            this.request = request;
+            this.modelId = modelId;
+            this.cachedPrefixes = cachedPrefixes;
+            this.prefixState = prefixState;
+        }
+
+        /**
+         * Gets the Converse request.
+         *
+         * @return the request
+         */
+        public ConverseRequest getRequest() {
+            return request;
+        }
+
+        /**
+         * Gets the model the request is sent to.
+         *
+         * @return the model ID
+         */
+        public String getModelId() {
+            return modelId;
+        }
+
+        /**
+         * Gets the fingerprints of the prefixes marked for caching, shortest first.
+         *
+         * @return the prefix fingerprints
+         */
+        public List<String> getCachedPrefixes() {
+            return cachedPrefixes;
+        }
+
+        /**
+         * Gets whether the marked prefixes were expected to be cached when the request was built.
+         *
+         * @return warm, cold, or none if nothing was marked
+         */
+        public String getPrefixState() {
+            return prefixState;
+        }
+    }
+
+    /**
+     * Running SHA-256 over the model and the prompt text so far.
+     */
+    private static class PrefixFingerprint {
+
+        private final MessageDigest digest;
+        private int length;
+
+        PrefixFingerprint(String modelId) {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+            add(modelId);
+            length = 0;
+        }
+
+        void add(String text) {
+            if (text == null) {
+                return;
+            }
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            // Separator, so that ["ab", "c"] and ["a", "bc"] differ
+            digest.update((byte) 0);
+            length += text.length();
+        }
+
+        int length() {
+            return length;
+        }
+
+        String fingerprint() {
+            try {
+                return HexFormat.of().formatHex(((MessageDigest) digest.clone()).digest());
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException("SHA-256 digest cannot be cloned", e);
+            }
+        }
+    }
+}
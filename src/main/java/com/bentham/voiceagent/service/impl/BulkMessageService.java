@@ -0,0 +1,378 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.BulkMessageConfig;
+import com.bentham.voiceagent.model.BulkMessageRequest;
+import com.bentham.voiceagent.model.BulkMessageResult;
+import com.bentham.voiceagent.service.NaturalLanguageService;
+import com.bentham.voiceagent.util.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs large batches of independent messages through the language model for offline jobs,
+ * such as post-call summaries.
+ *
+ * <p>Messages are sent concurrently, up to a limit shared by all jobs that adapts to Bedrock
+ * throttling: it grows while requests succeed and halves when one is throttled, within the
+ * configured bounds. Throttled messages are retried with exponential backoff. Results are
+ * reported as they complete, not in input order, carrying the message's correlation ID.
+ * They are handed to the consumer on the service's own threads, never on the SDK's, so a
+ * consumer that blocks on a slow client holds up only its own job.</p>
+ *
+ * <p>Messages go straight to Bedrock rather than through the hedging layer: duplicating
+ * requests would only spend more of the throughput quota the limit is tuned to.</p>
+ *
+ * <p>Metrics: {@code voice.bulk.messages} counts finished messages by outcome,
+ * {@code voice.bulk.throttles} counts throttled attempts, and {@code voice.bulk.concurrency.limit}
+ * and {@code voice.bulk.in.flight} gauge the current limit and the requests using it.</p>
+ */
+@Service
+public class BulkMessageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkMessageService.class);
+
+    private static final long MAX_RETRY_BACKOFF_MS = 30000;
+
+    private final NaturalLanguageService naturalLanguageService;
+    private final BulkMessageConfig bulkMessageConfig;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter throttles;
+
+    // Only waits out retry backoffs; the retried request is sent by the job's own thread
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "voice-bulk-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Hands each job's results to its consumer, which may block; one thread per job at a time
+    private final ExecutorService reportExecutor = Executors.newCachedThreadPool(new ReportThreadFactory());
+
+    @Autowired
+    public BulkMessageService(@Qualifier("bedrockNaturalLanguageService") NaturalLanguageService naturalLanguageService,
+                              BulkMessageConfig bulkMessageConfig, MeterRegistry meterRegistry) {
+        this.naturalLanguageService = naturalLanguageService;
+        this.bulkMessageConfig = bulkMessageConfig;
+        this.limiter = new AdaptiveConcurrencyLimiter(bulkMessageConfig.getInitialConcurrency(),
+                bulkMessageConfig.getMinConcurrency(), bulkMessageConfig.getMaxConcurrency());
+        this.successes = meterRegistry.counter("voice.bulk.messages", "outcome", "success");
+        this.failures = meterRegistry.counter("voice.bulk.messages", "outcome", "error");
+        this.throttles = meterRegistry.counter("voice.bulk.throttles");
+        Gauge.builder("voice.bulk.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Bulk messages allowed in flight at once")
+                .register(meterRegistry);
+        Gauge.builder("voice.bulk.in.flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Bulk messages in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Processes a stream of messages, returning when every message has a result.
+     * The requests are read on the calling thread as capacity allows, so a slow source is
+     * not read ahead of the limit. Results are reported one at a time, on a reporting thread;
+     * while {@code voice.bulk.max-concurrency} results are waiting to be reported, no more are
+     * read. If reporting a result throws, the job stops, its outstanding requests are cancelled
+     * and the exception is rethrown here.
+     *
+     * @param requests the messages to process
+     * @param results receives each result as it completes
+     * @throws InterruptedException if interrupted while waiting for capacity or results
+     */
+    public void process(Iterator<BulkMessageRequest> requests, Consumer<BulkMessageResult> results)
+            throws InterruptedException {
+        Job job = new Job(results, reportExecutor, bulkMessageConfig.getMaxConcurrency());
+        try {
+            // The next message is taken before waiting for capacity, so no permit is held while the source blocks
+            for (Attempt attempt = job.next(requests); attempt != null; attempt = job.next(requests)) {
+                send(job, attempt, limiter.acquire());
+            }
+        } finally {
+            job.cancelOutstanding();
+        }
+        job.rethrowFailure();
+    }
+
+    private void send(Job job, Attempt attempt, long permit) {
+        attempt.attempts++;
+        BulkMessageRequest request = attempt.request;
+        Map<String, Object> parameters = request.getParameters() != null ? request.getParameters() : Map.of();
+        CompletableFuture<String> call;
+        try {
+            call = naturalLanguageService.processMessageWithParams(request.getMessage(), parameters);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        job.inFlight.add(call);
+        CompletableFuture<String> sent = call;
+        call.whenComplete((response, error) -> {
+            job.inFlight.remove(sent);
+            if (error == null) {
+                limiter.release(permit, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+                successes.increment();
+                job.complete(BulkMessageResult.success(request.getId(), response,
+                        attempt.attempts, attempt.elapsedMs()));
+            } else if (isThrottling(error)) {
+                limiter.release(permit, AdaptiveConcurrencyLimiter.Outcome.THROTTLED);
+                throttles.increment();
+                retryOrFail(job, attempt, error);
+            } else {
+                limiter.release(permit, AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+                if (!sent.isCancelled()) {
+                    failures.increment();
+                    job.complete(BulkMessageResult.failure(request.getId(), describe(error),
+                            attempt.attempts, attempt.elapsedMs()));
+                }
+            }
+        });
+    }
+
+    private void retryOrFail(Job job, Attempt attempt, Throwable error) {
+        if (attempt.attempts >= bulkMessageConfig.getMaxAttempts()) {
+            failures.increment();
+            job.complete(BulkMessageResult.failure(attempt.request.getId(), describe(error),
+                    attempt.attempts, attempt.elapsedMs()));
+            return;
+        }
+        long backoffMs = Math.min(MAX_RETRY_BACKOFF_MS,
+                (long) bulkMessageConfig.getRetryBackoffMs() << (attempt.attempts - 1));
+        logger.debug("Message {} throttled, retrying in {} ms", attempt.request.getId(), backoffMs);
+        try {
+            retryScheduler.schedule(() -> job.retry(attempt), backoffMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down: the retry would never be sent, and the job would wait for it forever
+            failures.increment();
+            job.complete(BulkMessageResult.failure(attempt.request.getId(), describe(error),
+                    attempt.attempts, attempt.elapsedMs()));
+        }
+    }
+
+    /**
+     * Checks if a request failed because the service is throttling the account.
+     */
+    static boolean isThrottling(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SdkServiceException serviceException && serviceException.isThrottlingException()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null
+                && (cause instanceof CompletionException || cause.getMessage() == null)) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /**
+     * Stops retrying throttled messages and reporting results.
+     */
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        reportExecutor.shutdownNow();
+    }
+
+    /**
+     * One message and the attempts made to process it.
+     */
+    private static class Attempt {
+
+        private final BulkMessageRequest request;
+        private final long startNanos = System.nanoTime();
+        private int attempts;
+
+        Attempt(BulkMessageRequest request) {
+            this.request = request;
+        }
+
+        long elapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * State of one call to {@link #process}. Guarded by its own monitor.
+     */
+    private static class Job {
+
+        private final Consumer<BulkMessageResult> results;
+        private final Executor reportExecutor;
+        private final int maxBacklog;
+        private final Deque<Attempt> retries = new ArrayDeque<>();
+        // Results waiting to be reported, and whether a reporting thread is taking them
+        private final Deque<BulkMessageResult> backlog = new ArrayDeque<>();
+        private boolean reporting;
+        private final Set<CompletableFuture<String>> inFlight = ConcurrentHashMap.newKeySet();
+        private int sequence;
+        // Messages taken from the source that have no result yet
+        private int outstanding;
+        private boolean aborted;
+        private RuntimeException failure;
+
+        Job(Consumer<BulkMessageResult> results, Executor reportExecutor, int maxBacklog) {
+            this.results = results;
+            this.reportExecutor = reportExecutor;
+            this.maxBacklog = maxBacklog;
+        }
+
+        /**
+         * Gets the next message to send: a due retry, else the next message from the source.
+         * Once the source is exhausted, waits for retries until every message has a result.
+         * Waits first while the results waiting to be reported are at the limit.
+         *
+         * @return the next attempt, or null when the job is finished or aborted
+         */
+        Attempt next(Iterator<BulkMessageRequest> requests) throws InterruptedException {
+            synchronized (this) {
+                while (!aborted && backlog.size() >= maxBacklog) {
+                    wait();
+                }
+                if (aborted) {
+                    return null;
+                }
+                Attempt retry = retries.pollFirst();
+                if (retry != null) {
+                    return retry;
+                }
+            }
+            // Read outside the lock: the source may block, and completions must not wait for it
+            if (requests.hasNext()) {
+                BulkMessageRequest request = requests.next();
+                synchronized (this) {
+                    sequence++;
+                    if (request.getId() == null) {
+                        request.setId(String.valueOf(sequence));
+                    }
+                    outstanding++;
+                }
+                return new Attempt(request);
+            }
+            synchronized (this) {
+                while (!aborted && retries.isEmpty() && outstanding > 0) {
+                    wait();
+                }
+                return aborted ? null : retries.pollFirst();
+            }
+        }
+
+        synchronized void retry(Attempt attempt) {
+            retries.addLast(attempt);
+            notifyAll();
+        }
+
+        /**
+         * Queues a result to be reported, starting a reporting thread unless one is running.
+         */
+        void complete(BulkMessageResult result) {
+            synchronized (this) {
+                if (aborted) {
+                    return;
+                }
+                backlog.addLast(result);
+                if (reporting) {
+                    return;
+                }
+                reporting = true;
+            }
+            try {
+                reportExecutor.execute(this::report);
+            } catch (RejectedExecutionException e) {
+                report();
+            }
+        }
+
+        /**
+         * Hands the waiting results to the consumer one at a time, until none are left.
+         */
+        private void report() {
+            while (true) {
+                BulkMessageResult result;
+                synchronized (this) {
+                    result = aborted ? null : backlog.pollFirst();
+                    if (result == null) {
+                        reporting = false;
+                        return;
+                    }
+                }
+                try {
+                    results.accept(result);
+                } catch (RuntimeException e) {
+                    logger.warn("Stopping bulk job: could not report result for message {}", result.getId(), e);
+                    synchronized (this) {
+                        aborted = true;
+                        failure = e;
+                        reporting = false;
+                        notifyAll();
+                    }
+                    cancelOutstanding();
+                    return;
+                }
+                synchronized (this) {
+                    outstanding--;
+                    notifyAll();
+                }
+            }
+        }
+
+        synchronized void rethrowFailure() {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        void cancelOutstanding() {
+            synchronized (this) {
+                retries.clear();
+                backlog.clear();
+            }
+            inFlight.forEach(call -> call.cancel(true));
+        }
+    }
+
+    /**
+     * Thread factory for the threads reporting results.
+     */
+    private static class ReportThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "voice-bulk-report-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,549 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.BulkSpeechConfig;
+import com.bentham.voiceagent.config.PollyConfig;
+import com.bentham.voiceagent.model.BulkSpeechRequest;
+import com.bentham.voiceagent.model.BulkSpeechResult;
+import com.bentham.voiceagent.model.BulkSpeechSummary;
+import com.bentham.voiceagent.model.SpeechFormat;
+import com.bentham.voiceagent.service.SpeechSynthesisService;
+import com.bentham.voiceagent.util.AdaptiveConcurrencyLimiter;
+import com.bentham.voiceagent.util.CompletableFutures;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pre-renders large sets of clips with Polly, such as IVR menus and disclaimers after their
+ * prompts or voices change.
+ *
+ * <p>Clips are synthesized concurrently, up to a limit shared by all jobs that adapts to Polly
+ * throttling as {@link BulkMessageService} does for Bedrock: it grows while requests succeed and
+ * halves when one is throttled, within the configured bounds. Throttled clips are retried with
+ * exponential backoff. Each clip is reported with its audio once it has been received whole, in
+ * the order they complete.</p>
+ *
+ * <p>Clips already in the {@link SpeechStreamingService} cache are taken from it rather than
+ * synthesized again. A job can also keep the clips it renders in that service's pre-rendered
+ * clip store, to be served without Polly; a job that failed part way is then resumed by sending
+ * the same clips again, and only those that were not rendered go to Polly. A job keeps no more than the store holds, so none of its clips is
+ * dropped to make room for another of its own: once its clips fill the store, the rest fail and
+ * should be sent as another job. Jobs running at the same time share the store.</p>
+ *
+ * <p>A job whose clips are not kept is resumed instead with the results of the clips its
+ * previous run rendered: a clip with such a result is skipped, unless the result's clip ID shows
+ * its content, voice or format has changed since.</p>
+ *
+ * <p>Clips go straight to Polly rather than through the hedging layer: duplicating requests
+ * would only spend more of the rate quota the limit is tuned to.</p>
+ *
+ * <p>Metrics: {@code voice.bulk.speech.clips} counts finished clips by outcome
+ * ({@code synthesized}, {@code cached}, {@code skipped} or {@code error}), {@code voice.bulk.speech.throttles}
+ * counts throttled attempts, {@code voice.bulk.speech.concurrency.limit} and
+ * {@code voice.bulk.speech.in.flight} gauge the current limit and the requests using it, and
+ * {@code voice.bulk.speech.throughput} records the clips each job synthesized per second.</p>
+ */
+@Service
+public class BulkSpeechService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkSpeechService.class);
+
+    private static final long MAX_RETRY_BACKOFF_MS = 30000;
+
+    /**
+     * Receives each clip as it completes, one at a time.
+     */
+    public interface ClipSink {
+
+        /**
+         * Takes the result of a clip.
+         *
+         * @param result the result
+         * @param audio the whole clip, or null if it failed
+         */
+        void accept(BulkSpeechResult result, byte[] audio);
+    }
+
+    private final SpeechSynthesisService speechSynthesisService;
+    private final SpeechStreamingService speechStreamingService;
+    private final PollyConfig pollyConfig;
+    private final BulkSpeechConfig bulkSpeechConfig;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Counter synthesized;
+    private final Counter cached;
+    private final Counter skipped;
+    private final Counter failures;
+    private final Counter throttles;
+    private final DistributionSummary throughput;
+
+    // Only waits out retry backoffs; the retried request is sent by the job's own thread
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "voice-bulk-speech-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Reads the synthesized streams, which block, off the SDK's threads; at most the limit are busy at once
+    private final ExecutorService readExecutor = Executors.newCachedThreadPool(new ReadThreadFactory());
+
+    @Autowired
+    public BulkSpeechService(@Qualifier("amazonPollyService") SpeechSynthesisService speechSynthesisService,
+                             SpeechStreamingService speechStreamingService, PollyConfig pollyConfig,
+                             BulkSpeechConfig bulkSpeechConfig, MeterRegistry meterRegistry) {
+        this.speechSynthesisService = speechSynthesisService;
+        this.speechStreamingService = speechStreamingService;
+        this.pollyConfig = pollyConfig;
+        this.bulkSpeechConfig = bulkSpeechConfig;
+        this.limiter = new AdaptiveConcurrencyLimiter(bulkSpeechConfig.getInitialConcurrency(),
+                bulkSpeechConfig.getMinConcurrency(), bulkSpeechConfig.getMaxConcurrency());
+        this.synthesized = meterRegistry.counter("voice.bulk.speech.clips", "outcome", "synthesized");
+        this.cached = meterRegistry.counter("voice.bulk.speech.clips", "outcome", "cached");
+        this.skipped = meterRegistry.counter("voice.bulk.speech.clips", "outcome", "skipped");
+        this.failures = meterRegistry.counter("voice.bulk.speech.clips", "outcome", "error");
+        this.throttles = meterRegistry.counter("voice.bulk.speech.throttles");
+        this.throughput = DistributionSummary.builder("voice.bulk.speech.throughput")
+                .description("Clips a bulk speech job synthesized per second")
+                .baseUnit("clips/s")
+                .register(meterRegistry);
+        Gauge.builder("voice.bulk.speech.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Bulk speech clips allowed in flight at once")
+                .register(meterRegistry);
+        Gauge.builder("voice.bulk.speech.in.flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Bulk speech clips in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Renders a stream of clips, returning when every clip has a result.
+     * The requests are read on the calling thread as capacity allows, so a slow source is
+     * not read ahead of the limit. If the sink throws, the job stops, its outstanding requests
+     * are cancelled and the exception is rethrown here.
+     *
+     * @param requests the clips to render
+     * @param cache whether to keep clips in the pre-rendered clip store; a clip too large for
+     *                the cache, or beyond what the store holds for one job, then fails
+     * @param clips receives each clip as it completes
+     * @return the outcome of the job, with its throughput
+     * @throws InterruptedException if interrupted while waiting for capacity or results
+     */
+    public BulkSpeechSummary process(Iterator<BulkSpeechRequest> requests, boolean cache, ClipSink clips)
+            throws InterruptedException {
+        return process(requests, cache, Map.of(), clips);
+    }
+
+    /**
+     * Renders a stream of clips, skipping those a previous run of the job rendered.
+     * The previous results are looked up by clip ID as each clip is read from the source, on
+     * the calling thread, so the source may add to them as it is read.
+     *
+     * @param requests the clips to render
+     * @param cache whether to keep clips in the pre-rendered clip store
+     * @param rendered the successful results of a previous run, by the clip's correlation ID;
+     *                 a result without a clip ID skips the clip whatever its content
+     * @param clips receives each clip as it completes
+     * @return the outcome of the job, with its throughput
+     * @throws InterruptedException if interrupted while waiting for capacity or results
+     */
+    public BulkSpeechSummary process(Iterator<BulkSpeechRequest> requests, boolean cache,
+                                     Map<String, BulkSpeechResult> rendered, ClipSink clips)
+            throws InterruptedException {
+        Job job = new Job(clips, cache, rendered);
+        try {
+            for (Attempt attempt = job.next(requests); attempt != null; attempt = job.next(requests)) {
+                // A new clip that is invalid or already cached is answered without Polly
+                if (attempt.attempts == 0 && answer(job, attempt)) {
+                    continue;
+                }
+                send(job, attempt, limiter.acquire());
+            }
+        } finally {
+            job.cancelOutstanding();
+        }
+        job.rethrowFailure();
+        BulkSpeechSummary summary = job.summary();
+        if (summary.getSynthesized() > 0) {
+            throughput.record(summary.getClipsPerSecond());
+        }
+        logger.info("Bulk speech job rendered {} clips in {} ms: {} synthesized at {} clips/s, {} cached, {} skipped, {} failed",
+                summary.getClips(), summary.getElapsedMs(), summary.getSynthesized(),
+                String.format("%.1f", summary.getClipsPerSecond()), summary.getCached(), summary.getSkipped(),
+                summary.getFailed());
+        return summary;
+    }
+
+    /**
+     * Resolves a new clip's voice and format and answers it if it is invalid, already rendered
+     * by a previous run or already cached.
+     *
+     * @return true if the clip has its result
+     */
+    private boolean answer(Job job, Attempt attempt) {
+        String error = resolve(attempt);
+        if (error != null) {
+            failures.increment();
+            job.complete(attempt, BulkSpeechResult.failure(attempt.request.getId(), error, 0, 0), null);
+            return true;
+        }
+        BulkSpeechResult previous = job.rendered.get(attempt.request.getId());
+        // A result for other content, such as a clip whose text has changed since, does not count
+        if (previous != null && (previous.getClipId() == null || previous.getClipId().equals(attempt.clipId))) {
+            skipped.increment();
+            job.complete(attempt, BulkSpeechResult.skipped(attempt.request.getId(), attempt.clipId,
+                    attempt.format.getValue(), previous.getBytes()), null);
+            return true;
+        }
+        SpeechStreamingService.Clip clip = speechStreamingService.getCachedClip(attempt.clipId);
+        if (clip == null) {
+            return false;
+        }
+        // Kept again, as it may only be in the on-demand cache or about to be dropped from the store
+        String keepError = job.cache ? keep(job, attempt, clip.getAudio()) : null;
+        if (keepError != null) {
+            failures.increment();
+            job.complete(attempt, BulkSpeechResult.failure(attempt.request.getId(), keepError, 0, 0), null);
+            return true;
+        }
+        cached.increment();
+        job.complete(attempt, BulkSpeechResult.cached(attempt.request.getId(), clip.getId(),
+                clip.getFormat().getValue(), clip.getAudio().length),
+                clip.getAudio());
+        return true;
+    }
+
+    private String resolve(Attempt attempt) {
+        BulkSpeechRequest request = attempt.request;
+        if (request.getError() != null) {
+            return request.getError();
+        }
+        boolean hasText = request.getText() != null && !request.getText().isBlank();
+        boolean hasSsml = request.getSsml() != null && !request.getSsml().isBlank();
+        if (hasText == hasSsml) {
+            return "Exactly one of text and ssml must be given";
+        }
+        attempt.ssml = hasSsml;
+        attempt.voiceId = request.getVoiceId() != null && !request.getVoiceId().isBlank()
+                ? request.getVoiceId()
+                : pollyConfig.getVoiceId();
+        String format = request.getFormat() != null && !request.getFormat().isBlank()
+                ? request.getFormat()
+                : pollyConfig.getOutputFormat();
+        try {
+            attempt.format = SpeechFormat.fromValue(format);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        if (hasSsml && !attempt.format.getValue().equalsIgnoreCase(pollyConfig.getOutputFormat())) {
+            return "SSML is synthesized in the configured format, " + pollyConfig.getOutputFormat();
+        }
+        attempt.clipId = hasText
+                ? SpeechStreamingService.clipId(request.getText(), attempt.voiceId, attempt.format)
+                : SpeechStreamingService.ssmlClipId(request.getSsml(), attempt.voiceId, attempt.format);
+        return null;
+    }
+
+    private void send(Job job, Attempt attempt, long permit) {
+        attempt.attempts++;
+        BulkSpeechRequest request = attempt.request;
+        CompletableFuture<InputStream> call;
+        try {
+            call = attempt.ssml
+                    ? speechSynthesisService.synthesizeSpeechFromSsml(request.getSsml(), attempt.voiceId)
+                    : speechSynthesisService.synthesizeSpeech(request.getText(), attempt.voiceId,
+                            attempt.format.getValue());
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<byte[]> audio = CompletableFutures.propagateCancellation(
+                call.thenApplyAsync(BulkSpeechService::readAll, readExecutor), call);
+        job.inFlight.add(audio);
+        audio.whenComplete((bytes, error) -> {
+            job.inFlight.remove(audio);
+            if (error == null) {
+                limiter.release(permit, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+                String keepError = job.cache ? keep(job, attempt, bytes) : null;
+                if (keepError != null) {
+                    failures.increment();
+                    job.complete(attempt, BulkSpeechResult.failure(request.getId(), keepError, attempt.attempts,
+                            attempt.elapsedMs()), null);
+                    return;
+                }
+                synthesized.increment();
+                job.complete(attempt, BulkSpeechResult.synthesized(request.getId(), attempt.clipId,
+                        attempt.format.getValue(), bytes.length, attempt.attempts, attempt.elapsedMs()), bytes);
+            } else if (BulkMessageService.isThrottling(error)) {
+                limiter.release(permit, AdaptiveConcurrencyLimiter.Outcome.THROTTLED);
+                throttles.increment();
+                retryOrFail(job, attempt, error);
+            } else {
+                limiter.release(permit, AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+                if (!audio.isCancelled()) {
+                    failures.increment();
+                    job.complete(attempt, BulkSpeechResult.failure(request.getId(), describe(error),
+                            attempt.attempts, attempt.elapsedMs()), null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Keeps a clip in the pre-rendered clip store, within the share of it the job may use.
+     *
+     * @return null if the clip was kept, else why it was not
+     */
+    private String keep(Job job, Attempt attempt, byte[] audio) {
+        long storeBytes = speechStreamingService.getPrerenderedMaxBytes();
+        if (!job.reserve(audio.length, storeBytes)) {
+            return "The job's clips exceed the " + storeBytes + " bytes of the pre-rendered clip store;"
+                    + " send the rest as another job";
+        }
+        if (speechStreamingService.putPrerenderedClip(attempt.clipId, attempt.format, audio) == null) {
+            job.unreserve(audio.length);
+            return "Clip of " + audio.length + " bytes is too large to cache";
+        }
+        return null;
+    }
+
+    private void retryOrFail(Job job, Attempt attempt, Throwable error) {
+        if (attempt.attempts >= bulkSpeechConfig.getMaxAttempts()) {
+            failures.increment();
+            job.complete(attempt, BulkSpeechResult.failure(attempt.request.getId(), describe(error),
+                    attempt.attempts, attempt.elapsedMs()), null);
+            return;
+        }
+        long backoffMs = Math.min(MAX_RETRY_BACKOFF_MS,
+                (long) bulkSpeechConfig.getRetryBackoffMs() << (attempt.attempts - 1));
+        logger.debug("Clip {} throttled, retrying in {} ms", attempt.request.getId(), backoffMs);
+        retryScheduler.schedule(() -> job.retry(attempt), backoffMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static byte[] readAll(InputStream speech) {
+        try (InputStream stream = speech) {
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null
+                && (cause instanceof CompletionException || cause.getMessage() == null)) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /**
+     * Stops retrying throttled clips and reading synthesized ones.
+     */
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        readExecutor.shutdownNow();
+    }
+
+    /**
+     * One clip and the attempts made to synthesize it.
+     */
+    private static class Attempt {
+
+        private final BulkSpeechRequest request;
+        private final long startNanos = System.nanoTime();
+        private int attempts;
+        private boolean ssml;
+        private String voiceId;
+        private SpeechFormat format;
+        private String clipId;
+
+        Attempt(BulkSpeechRequest request) {
+            this.request = request;
+        }
+
+        long elapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * State of one call to {@link #process}. Guarded by its own monitor.
+     */
+    private static class Job {
+
+        private final ClipSink clips;
+        private final boolean cache;
+        private final Map<String, BulkSpeechResult> rendered;
+        private final long startNanos = System.nanoTime();
+        private final Deque<Attempt> retries = new ArrayDeque<>();
+        private final Set<CompletableFuture<byte[]>> inFlight = ConcurrentHashMap.newKeySet();
+        private int sequence;
+        // Clips taken from the source that have no result yet
+        private int outstanding;
+        private int synthesized;
+        private int cached;
+        private int skipped;
+        private int failed;
+        // Audio of the clips the job has kept in the pre-rendered clip store
+        private long keptBytes;
+        private boolean aborted;
+        private RuntimeException failure;
+
+        Job(ClipSink clips, boolean cache, Map<String, BulkSpeechResult> rendered) {
+            this.clips = clips;
+            this.cache = cache;
+            this.rendered = rendered;
+        }
+
+        /**
+         * Gets the next clip to send: a due retry, else the next clip from the source.
+         * Once the source is exhausted, waits for retries until every clip has a result.
+         *
+         * @return the next attempt, or null when the job is finished or aborted
+         */
+        Attempt next(Iterator<BulkSpeechRequest> requests) throws InterruptedException {
+            synchronized (this) {
+                if (aborted) {
+                    return null;
+                }
+                Attempt retry = retries.pollFirst();
+                if (retry != null) {
+                    return retry;
+                }
+            }
+            // Read outside the lock: the source may block, and completions must not wait for it
+            if (requests.hasNext()) {
+                BulkSpeechRequest request = requests.next();
+                synchronized (this) {
+                    sequence++;
+                    if (request.getId() == null) {
+                        request.setId(String.valueOf(sequence));
+                    }
+                    outstanding++;
+                }
+                return new Attempt(request);
+            }
+            synchronized (this) {
+                while (!aborted && retries.isEmpty() && outstanding > 0) {
+                    wait();
+                }
+                return aborted ? null : retries.pollFirst();
+            }
+        }
+
+        /**
+         * Claims room in the pre-rendered clip store for a clip, unless the job's clips would no
+         * longer fit in it together.
+         *
+         * @return true if the clip may be kept
+         */
+        synchronized boolean reserve(int bytes, long storeBytes) {
+            if (keptBytes + bytes > storeBytes) {
+                return false;
+            }
+            keptBytes += bytes;
+            return true;
+        }
+
+        synchronized void unreserve(int bytes) {
+            keptBytes -= bytes;
+        }
+
+        synchronized void retry(Attempt attempt) {
+            retries.addLast(attempt);
+            notifyAll();
+        }
+
+        void complete(Attempt attempt, BulkSpeechResult result, byte[] audio) {
+            // Clips are reported one at a time, and none once the job has stopped
+            synchronized (clips) {
+                synchronized (this) {
+                    if (aborted) {
+                        return;
+                    }
+                }
+                try {
+                    clips.accept(result, audio);
+                } catch (RuntimeException e) {
+                    logger.warn("Stopping bulk speech job: could not report clip {}", attempt.request.getId(), e);
+                    synchronized (this) {
+                        aborted = true;
+                        failure = e;
+                        notifyAll();
+                    }
+                    cancelOutstanding();
+                    return;
+                }
+            }
+            synchronized (this) {
+                if (result.getError() != null) {
+                    failed++;
+                } else if (result.isCached()) {
+                    cached++;
+                } else if (result.isSkipped()) {
+                    skipped++;
+                } else {
+                    synthesized++;
+                }
+                outstanding--;
+                notifyAll();
+            }
+        }
+
+        synchronized void rethrowFailure() {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        synchronized BulkSpeechSummary summary() {
+            return new BulkSpeechSummary(synthesized, cached, skipped, failed,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+
+        void cancelOutstanding() {
+            synchronized (this) {
+                retries.clear();
+            }
+            inFlight.forEach(call -> call.cancel(true));
+        }
+    }
+
+    /**
+     * Thread factory for the threads reading synthesized clips.
+     */
+    private static class ReadThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "voice-bulk-speech-read-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.bentham.voiceagent.service.impl;
+
+/**
+ * In-place radix-2 fast Fourier transform of a fixed power-of-two size. The twiddle factors
+ * and bit-reversal permutation are computed once, so a transform allocates nothing.
+ */
+final class Fft {
+
+    private final int size;
+    private final int[] reversed;
+    private final float[] cos;
+    private final float[] sin;
+
+    /**
+     * Creates a transform.
+     *
+     * @param size the number of points, a power of two
+     */
+    Fft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+        this.size = size;
+        this.reversed = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            reversed[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        this.cos = new float[size / 2];
+        this.sin = new float[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            double angle = -2 * Math.PI * i / size;
+            cos[i] = (float) Math.cos(angle);
+            sin[i] = (float) Math.sin(angle);
+        }
+    }
+
+    /**
+     * Gets the number of points.
+     *
+     * @return the transform size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Transforms a signal to its spectrum.
+     *
+     * @param re the real parts, replaced by those of the spectrum
+     * @param im the imaginary parts, replaced by those of the spectrum
+     */
+    void forward(float[] re, float[] im) {
+        transform(re, im);
+    }
+
+    /**
+     * Transforms a spectrum back to a signal, without the 1/N scaling, which callers fold
+     * into their synthesis window.
+     *
+     * @param re the real parts, replaced by those of the signal
+     * @param im the imaginary parts, replaced by those of the signal
+     */
+    void inverseUnscaled(float[] re, float[] im) {
+        // The inverse is the forward transform with real and imaginary parts swapped
+        transform(im, re);
+    }
+
+    private void transform(float[] re, float[] im) {
+        for (int i = 0; i < size; i++) {
+            int j = reversed[i];
+            if (j > i) {
+                float t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        for (int half = 1; half < size; half <<= 1) {
+            int stride = size / (half << 1);
+            for (int start = 0; start < size; start += half << 1) {
+                for (int k = 0; k < half; k++) {
+                    float wr = cos[k * stride];
+                    float wi = sin[k * stride];
+                    int a = start + k;
+                    int b = a + half;
+                    float tr = re[b] * wr - im[b] * wi;
+                    float ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.FlightRecorderConfig;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs one JDK Flight Recorder recording on demand, or from boot when
+ * {@code voice.flight-recorder.start-on-boot} is set, and dumps it to
+ * {@code voice.flight-recorder.directory} for analysis in JDK Mission Control or {@code jfr print}.
+ *
+ * <p>The recording uses the JDK's {@code default} settings unless configured otherwise, which
+ * are designed to cost under 1% CPU, and captures the voice pipeline's own events in
+ * {@link com.bentham.voiceagent.util.VoiceEvents}. It keeps a rolling window of
+ * {@code max-age-seconds} and {@code max-size-mb}, so it can be left running and dumped after
+ * a latency spike.</p>
+ */
+@Service
+public class FlightRecordingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecordingService.class);
+
+    private static final String RECORDING_NAME = "bentham-voice";
+    private static final DateTimeFormatter FILE_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+
+    private final FlightRecorderConfig config;
+
+    // Guarded by this
+    private Recording recording;
+    private Path lastDump;
+
+    @Autowired
+    public FlightRecordingService(FlightRecorderConfig config) {
+        this.config = config;
+        if (Boolean.TRUE.equals(config.getStartOnBoot())) {
+            try {
+                start();
+            } catch (IllegalStateException e) {
+                logger.warn("Could not start flight recording at boot", e);
+            }
+        }
+    }
+
+    /**
+     * Starts the recording, unless it is already running.
+     *
+     * @return the recording's status
+     * @throws IllegalStateException if the settings are unknown or the flight recorder is unavailable
+     */
+    public synchronized Status start() {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            return getStatus();
+        }
+        closeRecording();
+        Configuration settings;
+        try {
+            settings = Configuration.getConfiguration(config.getSettings());
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Unknown flight recorder settings: " + config.getSettings(), e);
+        }
+        Recording started = new Recording(settings);
+        started.setName(RECORDING_NAME);
+        started.setToDisk(true);
+        started.setMaxAge(Duration.ofSeconds(config.getMaxAgeSeconds()));
+        started.setMaxSize((long) config.getMaxSizeMb() * 1024 * 1024);
+        started.start();
+        recording = started;
+        logger.info("Started flight recording with {} settings", config.getSettings());
+        return getStatus();
+    }
+
+    /**
+     * Writes what the running or stopped recording holds to a new file.
+     *
+     * @return the file
+     * @throws IllegalStateException if there is no recording
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized Path dump() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("No flight recording has been started");
+        }
+        Path directory = Files.createDirectories(Path.of(config.getDirectory()).toAbsolutePath().normalize());
+        Path file = directory.resolve(RECORDING_NAME + "-" + FILE_TIME.format(Instant.now()) + ".jfr");
+        recording.dump(file);
+        lastDump = file;
+        logger.info("Dumped flight recording to {}", file);
+        return file;
+    }
+
+    /**
+     * Stops the recording and dumps it.
+     *
+     * @return the recording's status, with the dump file
+     * @throws IllegalStateException if no recording is running
+     * @throws IOException if the dump cannot be written
+     */
+    public synchronized Status stop() throws IOException {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("No flight recording is running");
+        }
+        recording.stop();
+        logger.info("Stopped flight recording");
+        dump();
+        return getStatus();
+    }
+
+    /**
+     * Gets the status of the recording.
+     *
+     * @return the status
+     */
+    public synchronized Status getStatus() {
+        if (recording == null) {
+            return new Status("NONE", null, null, config.getSettings(), lastDump);
+        }
+        return new Status(recording.getState().name(), recording.getStartTime(), recording.getStopTime(),
+                config.getSettings(), lastDump);
+    }
+
+    /**
+     * Discards the recording at shutdown; dump it first to keep it.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        closeRecording();
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    /**
+     * The state of the recording and where it was last dumped.
+     */
+    public static class Status {
+
+        private final String state;
+        private final Instant startTime;
+        private final Instant stopTime;
+        private final String settings;
+        private final Path lastDump;
+
+        Status(String state, Instant startTime, Instant stopTime, String settings, Path lastDump) {
+            this.state = state;
+            this.startTime = startTime;
+            this.stopTime = stopTime;
+            this.settings = settings;
+            this.lastDump = lastDump;
+        }
+
+        /**
+         * Gets the recording state: {@code NONE}, {@code RUNNING}, {@code STOPPED} or {@code CLOSED}.
+         *
+         * @return the state
+         */
+        public String getState() {
+            return state;
+        }
+
+        /**
+         * Gets when the recording started.
+         *
+         * @return the start time, or null if it has not started
+         */
+        public Instant getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * Gets when the recording stopped.
+         *
+         * @return the stop time, or null if it has not stopped
+         */
+        public Instant getStopTime() {
+            return stopTime;
+        }
+
+        /**
+         * Gets the JDK event settings the recording uses.
+         *
+         * @return the settings name
+         */
+        public String getSettings() {
+            return settings;
+        }
+
+        /**
+         * Gets the file the recording was last dumped to.
+         *
+         * @return the file path, or null if it has not been dumped
+         */
+        public String getLastDump() {
+            return lastDump != null ? lastDump.toString() : null;
+        }
+    }
+}
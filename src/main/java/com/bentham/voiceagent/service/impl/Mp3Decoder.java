@@ -0,0 +1,113 @@
+package com.bentham.voiceagent.service.impl;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.SampleBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes MPEG audio to 16-bit little-endian mono PCM as it is read, a frame at a time, so a
+ * recording never has to be held whole.
+ *
+ * <p>Frames are decoded with jlayer, which handles layers I to III and skips a leading ID3 tag;
+ * channels are averaged. The sample rate is left as it is, as for {@link PcmDecoder}.</p>
+ */
+final class Mp3Decoder extends InputStream {
+
+    // Samples per channel in the longest frame
+    private static final int MAX_FRAME_SAMPLES = 1152;
+
+    private final InputStream source;
+    private final Bitstream bitstream;
+    private final Decoder decoder = new Decoder();
+    private final byte[] out = new byte[MAX_FRAME_SAMPLES * 2];
+    private int outPosition;
+    private int outLength;
+
+    private Mp3Decoder(InputStream source) {
+        this.source = source;
+        this.bitstream = new Bitstream(source);
+    }
+
+    /**
+     * Opens an MPEG audio file.
+     *
+     * @param mp3 the file, from its first byte
+     * @return the audio as 16-bit little-endian mono PCM
+     */
+    static InputStream open(InputStream mp3) {
+        return new Mp3Decoder(mp3);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (outPosition == outLength) {
+            if (!decodeFrame()) {
+                return -1;
+            }
+        }
+        int copied = Math.min(length, outLength - outPosition);
+        System.arraycopy(out, outPosition, buffer, offset, copied);
+        outPosition += copied;
+        return copied;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            bitstream.close();
+        } catch (BitstreamException e) {
+            throw new IOException("Cannot close MP3 stream", e);
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Decodes the next frame.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean decodeFrame() throws IOException {
+        try {
+            Header header = bitstream.readFrame();
+            if (header == null) {
+                return false;
+            }
+            SampleBuffer samples = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+            bitstream.closeFrame();
+            short[] buffer = samples.getBuffer();
+            int channels = samples.getChannelCount();
+            // Interleaved, and never more than a frame's worth
+            int frames = Math.min(samples.getBufferLength() / channels, MAX_FRAME_SAMPLES);
+            for (int frame = 0; frame < frames; frame++) {
+                int sum = 0;
+                for (int channel = 0; channel < channels; channel++) {
+                    sum += buffer[frame * channels + channel];
+                }
+                short pcm = (short) (sum / channels);
+                out[2 * frame] = (byte) pcm;
+                out[2 * frame + 1] = (byte) (pcm >> 8);
+            }
+            outPosition = 0;
+            outLength = frames * 2;
+            return true;
+        } catch (JavaLayerException e) {
+            throw new IOException("Cannot decode MP3 frame", e);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.TranscribeConfig;
+import com.bentham.voiceagent.util.VoiceTracing;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transcribes long recordings by splitting them at pauses and streaming the segments to
+ * Amazon Transcribe in parallel, instead of waiting on a single batch job.
+ *
+ * <p>The recording is decoded to 16-bit PCM at its own sample rate and spooled to a temporary
+ * file as it is read, so it is never held in memory; the {@link SilenceSplitter} measures it on
+ * the way. It is then split into overlapping segments of about
+ * {@code aws.transcribe.split.target-segment-seconds}, which are streamed through at most
+ * {@code aws.transcribe.split.max-concurrency} streams at once; a stream that fails is retried
+ * twice. All recordings together hold no more than {@code aws.transcribe.split.max-streams}
+ * streams: a segment waits for one without holding a thread, and holds it only while it
+ * streams, not while it backs off to retry. The timed words of the segments are joined by the {@link TranscriptStitcher}, which
+ * keeps each word heard in an overlap once.</p>
+ *
+ * <p>Metrics: {@code transcribe.batch.duration} times whole recordings, tagged {@code mode}
+ * {@code split} here and {@code job} by the batch job path of {@link AmazonTranscribeService},
+ * so the two can be compared directly; {@code transcribe.split.speedup} records how many times
+ * faster a recording was transcribed than its segments would have been one after another, and
+ * {@code transcribe.batch.realtime.factor} how many seconds of audio were transcribed per second;
+ * {@code transcribe.split.segments} records the segments per recording;
+ * {@code transcribe.split.streams} and {@code transcribe.split.streams.waiting} gauge the
+ * segment streams open and those waiting for one.</p>
+ */
+@Service
+public class ParallelBatchTranscriber {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelBatchTranscriber.class);
+
+    // Audio is sent to each stream in chunks of this length
+    private static final int CHUNK_MS = 100;
+
+    // Bytes decoded and spooled at a time
+    private static final int SPOOL_BLOCK_BYTES = 64 * 1024;
+
+    private final TranscribeStreamingUpstream upstream;
+    private final TranscribeConfig transcribeConfig;
+    private final Timer duration;
+    private final DistributionSummary speedup;
+    private final DistributionSummary realtimeFactor;
+    private final DistributionSummary segmentCount;
+
+    // Guarded by this
+    private int openStreams;
+    // Segments waiting for a stream, in the order they asked
+    private final Deque<CompletableFuture<StreamSlot>> waitingStreams = new ArrayDeque<>();
+
+    @Autowired
+    public ParallelBatchTranscriber(TranscribeStreamingUpstream upstream, TranscribeConfig transcribeConfig,
+                                    MeterRegistry meterRegistry) {
+        this.upstream = upstream;
+        this.transcribeConfig = transcribeConfig;
+        this.duration = Timer.builder("transcribe.batch.duration")
+                .description("Time to transcribe a whole recording")
+                .tag("mode", "split")
+                .register(meterRegistry);
+        this.speedup = DistributionSummary.builder("transcribe.split.speedup")
+                .description("Time the segments of a recording streamed for, over the time the recording took")
+                .register(meterRegistry);
+        this.realtimeFactor = DistributionSummary.builder("transcribe.batch.realtime.factor")
+                .description("Seconds of audio transcribed per second")
+                .tag("mode", "split")
+                .register(meterRegistry);
+        this.segmentCount = DistributionSummary.builder("transcribe.split.segments")
+                .description("Segments a recording was split into")
+                .register(meterRegistry);
+        Gauge.builder("transcribe.split.streams", this, ParallelBatchTranscriber::getOpenStreams)
+                .description("Segment streams open across all recordings")
+                .register(meterRegistry);
+        Gauge.builder("transcribe.split.streams.waiting", this, ParallelBatchTranscriber::getWaitingStreams)
+                .description("Segments waiting for a stream")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Transcribes a recording.
+     *
+     * @param audio a WAV or MP3 file or raw 16-bit mono PCM at the configured sample rate; see
+     *              {@link AudioSniffer.SniffedAudio#isDecodable()}
+     * @return the transcript of the whole recording
+     */
+    CompletableFuture<String> transcribe(AudioSniffer.SniffedAudio audio) {
+        return Mono.using(() -> spool(audio), this::transcribe, Spool::close)
+                .subscribeOn(Schedulers.boundedElastic())
+                .toFuture();
+    }
+
+    /**
+     * Decodes a recording to a temporary file, measuring it for the splitter as it goes, so
+     * that no more than a block of it is held in memory.
+     */
+    private Spool spool(AudioSniffer.SniffedAudio audio) throws IOException {
+        int sampleRate = audio.getSampleRate() != null ? audio.getSampleRate() : transcribeConfig.getSampleRate();
+        SilenceSplitter splitter = new SilenceSplitter(sampleRate,
+                transcribeConfig.getSplitTargetSegmentSeconds() * 1000,
+                transcribeConfig.getSplitMaxSegmentSeconds() * 1000,
+                transcribeConfig.getSplitMinSilenceMs(),
+                transcribeConfig.getSplitSilenceMarginDb(),
+                transcribeConfig.getSplitOverlapMs());
+        SilenceSplitter.LevelMeter meter = splitter.meter();
+        Path file = Files.createTempFile("bentham-split-", ".pcm");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        try (InputStream pcm = audio.openPcm()) {
+            byte[] block = new byte[SPOOL_BLOCK_BYTES];
+            int read;
+            while ((read = pcm.read(block)) > 0) {
+                meter.write(block, 0, read);
+                ByteBuffer buffer = ByteBuffer.wrap(block, 0, read);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            return new Spool(channel, sampleRate, meter.getSamples(), splitter.split(meter));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private Mono<String> transcribe(Spool spool) {
+        List<SilenceSplitter.Segment> segments = spool.segments;
+        String recordingId = UUID.randomUUID().toString();
+
+        Span span = VoiceTracing.startSpan("voice.batch", SpanKind.INTERNAL);
+        span.setAttribute(VoiceTracing.SESSION_ID, recordingId);
+        span.setAttribute(VoiceTracing.AUDIO_BYTES, spool.samples * 2);
+        span.setAttribute(VoiceTracing.BATCH_SEGMENTS, (long) segments.size());
+
+        AtomicLong segmentNanos = new AtomicLong();
+        long startNanos = System.nanoTime();
+        return Flux.fromIterable(segments)
+                // Results come back in segment order however the streams finish
+                .flatMapSequential(segment -> transcribeSegment(recordingId, segment, spool, segmentNanos),
+                        Math.max(1, transcribeConfig.getSplitMaxConcurrency()))
+                .collectList()
+                .map(words -> TranscriptStitcher.stitch(segments, words, spool.sampleRate))
+                .doOnSuccess(transcript -> {
+                    long wallNanos = System.nanoTime() - startNanos;
+                    double audioSeconds = (double) spool.samples / spool.sampleRate;
+                    double factor = (double) segmentNanos.get() / Math.max(1, wallNanos);
+                    duration.record(wallNanos, TimeUnit.NANOSECONDS);
+                    speedup.record(factor);
+                    realtimeFactor.record(audioSeconds / (wallNanos / 1e9));
+                    segmentCount.record(segments.size());
+                    logger.info("Transcribed {} s of audio as {} segments in {} ms, {}x faster than one stream after another",
+                            String.format("%.1f", audioSeconds), segments.size(),
+                            TimeUnit.NANOSECONDS.toMillis(wallNanos), String.format("%.1f", factor));
+                })
+                .doOnError(error -> VoiceTracing.recordFailure(span, error))
+                .doFinally(signal -> span.end())
+                .contextWrite(VoiceTracing.propagate(Context.current().with(span)));
+    }
+
+    private Mono<List<TimedWord>> transcribeSegment(String recordingId, SilenceSplitter.Segment segment,
+                                                    Spool spool, AtomicLong segmentNanos) {
+        String sessionId = recordingId + "-" + segment.getIndex();
+        // Each attempt takes a stream of its own, so none is held through the retry backoff
+        return Mono.usingWhen(Mono.fromFuture(this::acquireStream), slot -> {
+                    long startNanos = System.nanoTime();
+                    return upstream.transcribeWords(sessionId, chunks(spool, segment), spool.sampleRate)
+                            .collectList()
+                            .doOnSuccess(words -> segmentNanos.addAndGet(System.nanoTime() - startNanos));
+                }, slot -> Mono.fromRunnable(slot::close))
+                .retryWhen(Retry.backoff(2, Duration.ofMillis(500))
+                        .doBeforeRetry(retry -> logger.warn("Retrying segment {} of recording {}: {}",
+                                segment.getIndex(), recordingId, retry.failure().toString())));
+    }
+
+    /**
+     * Takes one of the service's segment streams, or waits in line for one. Cancelling the
+     * future gives up the place in line.
+     */
+    private CompletableFuture<StreamSlot> acquireStream() {
+        CompletableFuture<StreamSlot> grant = new CompletableFuture<>();
+        synchronized (this) {
+            if (openStreams < Math.max(1, transcribeConfig.getSplitMaxStreams())) {
+                openStreams++;
+                grant.complete(new StreamSlot());
+                return grant;
+            }
+            waitingStreams.addLast(grant);
+        }
+        grant.whenComplete((slot, error) -> {
+            if (grant.isCancelled()) {
+                synchronized (this) {
+                    waitingStreams.remove(grant);
+                }
+            }
+        });
+        return grant;
+    }
+
+    private void releaseStream() {
+        while (true) {
+            CompletableFuture<StreamSlot> next;
+            synchronized (this) {
+                next = waitingStreams.pollFirst();
+                if (next == null) {
+                    openStreams--;
+                    return;
+                }
+            }
+            // The stream passes straight to the next segment, unless it has given up since
+            if (next.complete(new StreamSlot())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of segment streams open across all recordings.
+     *
+     * @return the open stream count
+     */
+    synchronized int getOpenStreams() {
+        return openStreams;
+    }
+
+    /**
+     * Gets the number of segments waiting for a stream.
+     *
+     * @return the waiting segment count
+     */
+    synchronized int getWaitingStreams() {
+        return waitingStreams.size();
+    }
+
+    /**
+     * Reads a segment's audio from the spool a chunk at a time, as the stream asks for it.
+     */
+    private static Flux<byte[]> chunks(Spool spool, SilenceSplitter.Segment segment) {
+        int chunkBytes = spool.sampleRate * 2 * CHUNK_MS / 1000;
+        long end = segment.getEndSample() * 2L;
+        return Flux.<byte[], Long>generate(() -> segment.getStartSample() * 2L, (position, sink) -> {
+                    if (position >= end) {
+                        sink.complete();
+                        return position;
+                    }
+                    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(chunkBytes, end - position));
+                    try {
+                        // Positional reads, so the segments can share the channel
+                        int read = 0;
+                        while (buffer.hasRemaining() && read >= 0) {
+                            read = spool.channel.read(buffer, position + buffer.position());
+                        }
+                    } catch (IOException e) {
+                        sink.error(e);
+                        return position;
+                    }
+                    sink.next(buffer.array());
+                    return position + buffer.capacity();
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * A held segment stream. Closing it passes the stream on; closing it again has no effect.
+     */
+    private final class StreamSlot {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void close() {
+            if (released.compareAndSet(false, true)) {
+                releaseStream();
+            }
+        }
+    }
+
+    /**
+     * A recording decoded to a temporary file, which is deleted when the spool is closed.
+     */
+    private static final class Spool {
+
+        private final FileChannel channel;
+        private final int sampleRate;
+        private final long samples;
+        private final List<SilenceSplitter.Segment> segments;
+
+        Spool(FileChannel channel, int sampleRate, long samples, List<SilenceSplitter.Segment> segments) {
+            this.channel = channel;
+            this.sampleRate = sampleRate;
+            this.samples = samples;
+            this.segments = segments;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to delete spooled recording", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.bentham.voiceagent.service.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Decodes the audio of a WAV file to 16-bit little-endian mono PCM as it is read, a block of
+ * frames at a time, so a recording never has to be held whole.
+ *
+ * <p>Integer PCM of 8 to 32 bits, 32 and 64-bit float and G.711 A-law and mu-law are decoded;
+ * channels are averaged. The sample rate is left as it is, since Transcribe streams take any
+ * rate from 8 to 48 kHz.</p>
+ */
+final class PcmDecoder extends InputStream {
+
+    private static final Set<String> CODECS = Set.of(
+            "pcm_u8", "pcm_s16le", "pcm_s24le", "pcm_s32le", "pcm_f32le", "pcm_f64le", "alaw", "mulaw");
+
+    // Frames decoded per read from the source
+    private static final int FRAMES_PER_BLOCK = 4096;
+
+    private final InputStream source;
+    private final String codec;
+    private final int channels;
+    private final int bytesPerSample;
+    private final int frameBytes;
+    private final byte[] in;
+    private final byte[] out;
+    private long remaining;
+    private int outPosition;
+    private int outLength;
+
+    private PcmDecoder(InputStream source, long dataBytes, String codec, int channels, int bitsPerSample) {
+        this.source = source;
+        this.remaining = dataBytes;
+        this.codec = codec;
+        this.channels = channels;
+        this.bytesPerSample = (bitsPerSample + 7) / 8;
+        this.frameBytes = channels * bytesPerSample;
+        this.in = new byte[FRAMES_PER_BLOCK * frameBytes];
+        this.out = new byte[FRAMES_PER_BLOCK * 2];
+    }
+
+    /**
+     * Checks if WAV audio in a codec can be decoded.
+     *
+     * @param codec the codec, as named by {@link AudioSniffer}
+     * @param channels the number of channels
+     * @return true if it can be decoded
+     */
+    static boolean supports(String codec, int channels) {
+        return CODECS.contains(codec) && channels > 0;
+    }
+
+    /**
+     * Opens the audio of a WAV file, skipping the chunks ahead of its {@code data} chunk.
+     *
+     * @param wav the WAV file, from its first byte
+     * @param codec the codec, as named by {@link AudioSniffer}
+     * @param channels the number of channels
+     * @param bitsPerSample the bits per sample
+     * @return the audio as 16-bit little-endian mono PCM
+     * @throws IOException if the file cannot be read or has no {@code data} chunk
+     */
+    static InputStream openWav(InputStream wav, String codec, int channels, int bitsPerSample) throws IOException {
+        wav.skipNBytes(12);
+        byte[] chunkHeader = new byte[8];
+        while (true) {
+            if (wav.readNBytes(chunkHeader, 0, 8) < 8) {
+                throw new EOFException("WAV file has no data chunk");
+            }
+            long size = AudioSniffer.uint32le(chunkHeader, 4);
+            if (new String(chunkHeader, 0, 4, StandardCharsets.ISO_8859_1).equals("data")) {
+                // Files written as they were recorded may leave the size at 0 or its maximum
+                long dataBytes = size == 0 || size == 0xFFFFFFFFL ? Long.MAX_VALUE : size;
+                return new PcmDecoder(wav, dataBytes, codec, channels, bitsPerSample);
+            }
+            wav.skipNBytes(size + (size & 1));
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (outPosition == outLength && !decodeBlock()) {
+            return -1;
+        }
+        int copied = Math.min(length, outLength - outPosition);
+        System.arraycopy(out, outPosition, buffer, offset, copied);
+        outPosition += copied;
+        return copied;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private boolean decodeBlock() throws IOException {
+        int wanted = (int) Math.min(in.length, remaining - remaining % frameBytes);
+        int read = source.readNBytes(in, 0, wanted);
+        int frames = read / frameBytes;
+        if (frames == 0) {
+            return false;
+        }
+        remaining -= read;
+        for (int frame = 0; frame < frames; frame++) {
+            double sum = 0;
+            int base = frame * frameBytes;
+            for (int channel = 0; channel < channels; channel++) {
+                sum += sample(base + channel * bytesPerSample);
+            }
+            long value = Math.round(sum / channels * 32768.0);
+            short pcm = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+            out[2 * frame] = (byte) pcm;
+            out[2 * frame + 1] = (byte) (pcm >> 8);
+        }
+        outPosition = 0;
+        outLength = frames * 2;
+        return true;
+    }
+
+    /**
+     * Reads one sample, scaled to [-1, 1).
+     */
+    private double sample(int at) {
+        return switch (codec) {
+            case "pcm_u8" -> ((in[at] & 0xff) - 128) / 128.0;
+            case "pcm_s16le" -> (short) ((in[at] & 0xff) | (in[at + 1] << 8)) / 32768.0;
+            case "pcm_s24le" -> ((in[at] & 0xff) | ((in[at + 1] & 0xff) << 8) | (in[at + 2] << 16)) / 8388608.0;
+            case "pcm_s32le" -> int32le(at) / 2147483648.0;
+            case "pcm_f32le" -> Float.intBitsToFloat(int32le(at));
+            case "pcm_f64le" -> Double.longBitsToDouble((int32le(at) & 0xffffffffL) | ((long) int32le(at + 4) << 32));
+            case "alaw" -> alaw(in[at]) / 32768.0;
+            case "mulaw" -> mulaw(in[at]) / 32768.0;
+            default -> throw new IllegalStateException("Unsupported codec " + codec);
+        };
+    }
+
+    private int int32le(int at) {
+        return (in[at] & 0xff) | ((in[at + 1] & 0xff) << 8) | ((in[at + 2] & 0xff) << 16) | (in[at + 3] << 24);
+    }
+
+    private static int alaw(byte encoded) {
+        int value = (encoded ^ 0x55) & 0xff;
+        int magnitude = (value & 0x0f) << 4;
+        int segment = (value & 0x70) >> 4;
+        if (segment == 0) {
+            magnitude += 8;
+        } else {
+            magnitude = (magnitude + 0x108) << (segment - 1);
+        }
+        return (value & 0x80) != 0 ? magnitude : -magnitude;
+    }
+
+    private static int mulaw(byte encoded) {
+        int value = ~encoded & 0xff;
+        int magnitude = (((value & 0x0f) << 3) + 0x84) << ((value & 0x70) >> 4);
+        return (value & 0x80) != 0 ? 0x84 - magnitude : magnitude - 0x84;
+    }
+}
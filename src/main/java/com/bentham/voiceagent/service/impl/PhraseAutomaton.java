@@ -0,0 +1,281 @@
+package com.bentham.voiceagent.service.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton that finds phrases in text and replaces them, in time linear in the
+ * length of the text whatever the number of phrases.
+ *
+ * <p>Matching ignores case and treats any run of whitespace as one space. A phrase only matches
+ * whole words, and where matches overlap the leftmost wins, then the longest. The automaton is
+ * stored in flat primitive arrays: each state's transitions are a slice of {@code edgeChars} and
+ * {@code edgeTargets}, sorted by character and found by binary search. Instances are immutable
+ * and thread-safe.</p>
+ */
+final class PhraseAutomaton {
+
+    /**
+     * An automaton with no phrases, which returns every text unchanged.
+     */
+    static final PhraseAutomaton EMPTY = compile(Map.of());
+
+    private static final int NONE = -1;
+
+    // Transitions of state s are edgeChars/edgeTargets[edgeStart[s] .. edgeStart[s + 1])
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    // Longest proper suffix of each state that is also a state
+    private final int[] failure;
+    // Phrase ending at each state, or NONE
+    private final int[] phrase;
+    // Nearest state on the failure chain at which a phrase ends, or NONE
+    private final int[] outputLink;
+    private final int[] phraseLengths;
+    private final String[] replacements;
+
+    private PhraseAutomaton(int[] edgeStart, char[] edgeChars, int[] edgeTargets, int[] failure, int[] phrase,
+                            int[] outputLink, int[] phraseLengths, String[] replacements) {
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.failure = failure;
+        this.phrase = phrase;
+        this.outputLink = outputLink;
+        this.phraseLengths = phraseLengths;
+        this.replacements = replacements;
+    }
+
+    /**
+     * Compiles an automaton.
+     *
+     * @param phrases the replacement for each phrase; phrases are normalized with {@link #normalize}
+     *                and empty ones are ignored
+     * @return the automaton
+     */
+    static PhraseAutomaton compile(Map<String, String> phrases) {
+        // Build the trie with a map per state, then flatten it
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        children.add(new HashMap<>());
+        List<Integer> terminal = new ArrayList<>();
+        terminal.add(NONE);
+        List<Integer> lengths = new ArrayList<>();
+        List<String> replacementList = new ArrayList<>();
+        for (Map.Entry<String, String> entry : phrases.entrySet()) {
+            String key = normalize(entry.getKey());
+            if (key.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < key.length(); i++) {
+                Integer next = children.get(state).get(key.charAt(i));
+                if (next == null) {
+                    next = children.size();
+                    children.add(new HashMap<>());
+                    terminal.add(NONE);
+                    children.get(state).put(key.charAt(i), next);
+                }
+                state = next;
+            }
+            if (terminal.get(state) == NONE) {
+                terminal.set(state, lengths.size());
+                lengths.add(key.length());
+                replacementList.add(entry.getValue());
+            }
+        }
+
+        int states = children.size();
+        int[] edgeStart = new int[states + 1];
+        for (int s = 0; s < states; s++) {
+            edgeStart[s + 1] = edgeStart[s] + children.get(s).size();
+        }
+        char[] edgeChars = new char[edgeStart[states]];
+        int[] edgeTargets = new int[edgeStart[states]];
+        for (int s = 0; s < states; s++) {
+            Character[] chars = children.get(s).keySet().toArray(new Character[0]);
+            Arrays.sort(chars);
+            for (int i = 0; i < chars.length; i++) {
+                edgeChars[edgeStart[s] + i] = chars[i];
+                edgeTargets[edgeStart[s] + i] = children.get(s).get(chars[i]);
+            }
+        }
+
+        int[] phrase = new int[states];
+        for (int s = 0; s < states; s++) {
+            phrase[s] = terminal.get(s);
+        }
+        int[] failure = new int[states];
+        int[] outputLink = new int[states];
+        outputLink[0] = NONE;
+        PhraseAutomaton automaton = new PhraseAutomaton(edgeStart, edgeChars, edgeTargets, failure, phrase,
+                outputLink, lengths.stream().mapToInt(Integer::intValue).toArray(),
+                replacementList.toArray(new String[0]));
+
+        // Breadth first, so a state's failure target is always finished before the state
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            failure[edgeTargets[e]] = 0;
+            outputLink[edgeTargets[e]] = NONE;
+            queue.add(edgeTargets[e]);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (int e = edgeStart[s]; e < edgeStart[s + 1]; e++) {
+                int child = edgeTargets[e];
+                int fallback = automaton.step(failure[s], edgeChars[e]);
+                failure[child] = fallback;
+                outputLink[child] = phrase[fallback] != NONE ? fallback : outputLink[fallback];
+                queue.add(child);
+            }
+        }
+        return automaton;
+    }
+
+    /**
+     * Normalizes a phrase as the text it is matched against is: lower case, with each run of
+     * whitespace replaced by one space and none at either end.
+     *
+     * @param text the text
+     * @return the normalized text
+     */
+    static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Gets the number of phrases.
+     *
+     * @return the phrase count
+     */
+    int getPhraseCount() {
+        return replacements.length;
+    }
+
+    /**
+     * Replaces the phrases found in a text.
+     *
+     * @param text the text
+     * @return the text with its phrases replaced, or the same instance if none were found
+     */
+    String replace(String text) {
+        if (replacements.length == 0 || text.isEmpty()) {
+            return text;
+        }
+
+        // Fold the text as phrases were normalized, remembering where each char came from
+        char[] folded = new char[text.length()];
+        int[] origin = new int[text.length()];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (length > 0 && folded[length - 1] != ' ') {
+                    folded[length] = ' ';
+                    origin[length++] = i;
+                }
+            } else {
+                folded[length] = Character.toLowerCase(c);
+                origin[length++] = i;
+            }
+        }
+
+        // The longest whole-word phrase starting at each position
+        int[] longest = null;
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            state = step(state, folded[i]);
+            int output = phrase[state] != NONE ? state : outputLink[state];
+            if (output == NONE || isWordChar(folded, i + 1, length)) {
+                continue;
+            }
+            for (; output != NONE; output = outputLink[output]) {
+                int p = phrase[output];
+                int start = i + 1 - phraseLengths[p];
+                if (isWordChar(folded, start - 1, length)) {
+                    continue;
+                }
+                if (longest == null) {
+                    longest = new int[length];
+                    Arrays.fill(longest, NONE);
+                }
+                if (longest[start] == NONE || phraseLengths[p] > phraseLengths[longest[start]]) {
+                    longest[start] = p;
+                }
+            }
+        }
+        if (longest == null) {
+            return text;
+        }
+
+        StringBuilder replaced = new StringBuilder(text.length() + 16);
+        int copied = 0;
+        for (int i = 0; i < length; i++) {
+            int p = longest[i];
+            if (p == NONE) {
+                continue;
+            }
+            int end = origin[i + phraseLengths[p] - 1] + 1;
+            replaced.append(text, copied, origin[i]).append(replacements[p]);
+            copied = end;
+            i += phraseLengths[p] - 1;
+        }
+        replaced.append(text, copied, text.length());
+        return replaced.toString();
+    }
+
+    /**
+     * Follows the transition for a char from a state, falling back along failure links.
+     */
+    private int step(int state, char c) {
+        while (true) {
+            int target = transition(state, c);
+            if (target != NONE) {
+                return target;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failure[state];
+        }
+    }
+
+    private int transition(int state, char c) {
+        int low = edgeStart[state];
+        int high = edgeStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = edgeChars[mid];
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return NONE;
+    }
+
+    private static boolean isWordChar(char[] text, int index, int length) {
+        return index >= 0 && index < length && Character.isLetterOrDigit(text[index]);
+    }
+}
@@ -0,0 +1,361 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.service.AdmissionRejectedException;
+import com.bentham.voiceagent.service.TranscriptionService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a session recording back through a {@link TranscriptionService}.
+ *
+ * <p>Each frame is sent when its recorded arrival offset, divided by the replay speed, has
+ * elapsed since the start of the replay, so a replay at speed 1 reproduces the original
+ * frame sizes and inter-arrival gaps. A speed of {@link Double#POSITIVE_INFINITY} sends
+ * frames back to back. The lateness of each send against its schedule is tracked so a replay
+ * that could not keep pace can be told apart from a genuine regression.</p>
+ *
+ * <p>A replay is a streaming session like any other: it waits for a slot from the
+ * {@link SessionAdmissionService}, charged to the {@value #REPLAY_TENANT} tenant, and holds it
+ * until its session has stopped. It runs on the driver's own threads, and its session is not
+ * recorded, so replaying a recording never writes over it or adds another.</p>
+ */
+@Component
+public class RecordingReplayDriver {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordingReplayDriver.class);
+
+    /**
+     * The tenant replays are admitted as.
+     */
+    public static final String REPLAY_TENANT = "replay";
+
+    // Replays kept for status lookups, running or finished
+    private static final int MAX_REPLAYS = 256;
+
+    private final TranscriptionService transcriptionService;
+    private final SessionAdmissionService admissionService;
+
+    // Paces the frames of admitted replays; admission bounds how many are busy at once
+    private final ExecutorService replayExecutor = Executors.newCachedThreadPool(new ReplayThreadFactory());
+
+    // Most recent replays by ID, oldest first. Guarded by itself
+    private final Map<String, Replay> replays = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Replay> eldest) {
+            return size() > MAX_REPLAYS;
+        }
+    };
+
+    @Autowired
+    public RecordingReplayDriver(TranscriptionService transcriptionService,
+                                 SessionAdmissionService admissionService) {
+        this.transcriptionService = transcriptionService;
+        this.admissionService = admissionService;
+    }
+
+    /**
+     * Starts replaying a recording and returns straight away. The replay can be followed with
+     * {@link #getReplay}.
+     *
+     * @param recordingSessionId the ID of the recorded session
+     * @param recordingDirectory the session's recording directory
+     * @param speed the replay speed; 1 for the original pace, higher to accelerate
+     * @return the replay, running or waiting for admission
+     * @throws IOException if the recording cannot be read
+     */
+    public Replay submit(String recordingSessionId, Path recordingDirectory, double speed) throws IOException {
+        Replay replay = new Replay(UUID.randomUUID().toString(), recordingSessionId, replay(recordingDirectory, speed));
+        synchronized (replays) {
+            replays.put(replay.getReplayId(), replay);
+        }
+        return replay;
+    }
+
+    /**
+     * Gets a replay started with {@link #submit}.
+     *
+     * @param replayId the replay ID
+     * @return the replay, or null if it is unknown or too old to be kept
+     */
+    public Replay getReplay(String replayId) {
+        synchronized (replays) {
+            return replays.get(replayId);
+        }
+    }
+
+    /**
+     * Replays a recording in a new streaming session once it is admitted.
+     *
+     * @param recordingDirectory the session's recording directory
+     * @param speed the replay speed; 1 for the original pace, higher to accelerate
+     * @return a future completed with the outcome once the recording has been sent and the
+     *         session stopped, or failed with an {@link AdmissionRejectedException} if the
+     *         replay was not admitted
+     * @throws IOException if the recording cannot be read
+     */
+    public CompletableFuture<ReplayResult> replay(Path recordingDirectory, double speed) throws IOException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Replay speed must be positive: " + speed);
+        }
+        SessionRecordingReader reader = new SessionRecordingReader(recordingDirectory);
+        return admissionService.admit(REPLAY_TENANT).thenCompose(permit -> {
+            try {
+                return CompletableFuture.supplyAsync(() -> {
+                    try (permit) {
+                        return run(reader, recordingDirectory, speed);
+                    }
+                }, replayExecutor);
+            } catch (RejectedExecutionException e) {
+                permit.close();
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    private ReplayResult run(SessionRecordingReader reader, Path recordingDirectory, double speed) {
+        String sessionId = transcriptionService.startStreamingTranscription(false);
+        logger.info("Replaying {} into session {} at {}x", recordingDirectory, sessionId, speed);
+
+        long frames = 0;
+        long bytes = 0;
+        long recordedNanos = 0;
+        long maxLatenessNanos = 0;
+        long startNanos = System.nanoTime();
+        try {
+            for (SessionRecordingReader.RecordedFrame frame : reader) {
+                recordedNanos = frame.getArrivalOffsetNanos();
+                if (speed != Double.POSITIVE_INFINITY) {
+                    long dueNanos = startNanos + (long) (frame.getArrivalOffsetNanos() / speed);
+                    long waitNanos;
+                    while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(waitNanos);
+                        if (Thread.interrupted()) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException("Replay interrupted: " + recordingDirectory);
+                        }
+                    }
+                    maxLatenessNanos = Math.max(maxLatenessNanos, -waitNanos);
+                }
+                transcriptionService.sendAudioChunk(sessionId, frame.getAudio());
+                frames++;
+                bytes += frame.getAudio().length;
+            }
+        } catch (RuntimeException e) {
+            transcriptionService.stopStreamingTranscription(sessionId);
+            throw e;
+        }
+        String transcript = transcriptionService.stopStreamingTranscription(sessionId);
+        long wallNanos = System.nanoTime() - startNanos;
+        logger.info("Replayed {} frames ({} bytes) into session {} in {} ms",
+                frames, bytes, sessionId, TimeUnit.NANOSECONDS.toMillis(wallNanos));
+        return new ReplayResult(sessionId, transcript, frames, bytes, recordedNanos, wallNanos, maxLatenessNanos);
+    }
+
+    /**
+     * Interrupts running replays and stops taking new ones.
+     */
+    @PreDestroy
+    public void shutdown() {
+        replayExecutor.shutdownNow();
+    }
+
+    /**
+     * A replay started with {@link #submit}, and its outcome once it has finished.
+     */
+    public static class Replay {
+
+        private final String replayId;
+        private final String recordingSessionId;
+        private final CompletableFuture<ReplayResult> outcome;
+
+        Replay(String replayId, String recordingSessionId, CompletableFuture<ReplayResult> outcome) {
+            this.replayId = replayId;
+            this.recordingSessionId = recordingSessionId;
+            this.outcome = outcome;
+        }
+
+        /**
+         * Gets the ID to look the replay up by.
+         *
+         * @return the replay ID
+         */
+        public String getReplayId() {
+            return replayId;
+        }
+
+        /**
+         * Gets the ID of the recorded session being replayed.
+         *
+         * @return the recorded session ID
+         */
+        public String getRecordingSessionId() {
+            return recordingSessionId;
+        }
+
+        /**
+         * Gets whether the replay is still running, including waiting for admission, or has
+         * completed or failed.
+         *
+         * @return {@code running}, {@code completed} or {@code failed}
+         */
+        public String getStatus() {
+            if (!outcome.isDone()) {
+                return "running";
+            }
+            return outcome.isCompletedExceptionally() ? "failed" : "completed";
+        }
+
+        /**
+         * Gets the outcome of a completed replay.
+         *
+         * @return the outcome, or null if the replay has not completed
+         */
+        public ReplayResult getResult() {
+            return outcome.isDone() && !outcome.isCompletedExceptionally() ? outcome.join() : null;
+        }
+
+        /**
+         * Gets why a failed replay failed.
+         *
+         * @return the error message, or null if the replay has not failed
+         */
+        public String getError() {
+            if (!outcome.isCompletedExceptionally()) {
+                return null;
+            }
+            try {
+                outcome.join();
+                return null;
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                return String.valueOf(cause.getMessage());
+            }
+        }
+
+        CompletableFuture<ReplayResult> getOutcome() {
+            return outcome;
+        }
+    }
+
+    /**
+     * The outcome of a replay.
+     */
+    public static class ReplayResult {
+
+        private final String sessionId;
+        private final String transcript;
+        private final long frames;
+        private final long bytes;
+        private final long recordedDurationNanos;
+        private final long wallDurationNanos;
+        private final long maxLatenessNanos;
+
+        ReplayResult(String sessionId, String transcript, long frames, long bytes,
+                     long recordedDurationNanos, long wallDurationNanos, long maxLatenessNanos) {
+            this.sessionId = sessionId;
+            this.transcript = transcript;
+            this.frames = frames;
+            this.bytes = bytes;
+            this.recordedDurationNanos = recordedDurationNanos;
+            this.wallDurationNanos = wallDurationNanos;
+            this.maxLatenessNanos = maxLatenessNanos;
+        }
+
+        /**
+         * Gets the ID of the session the recording was replayed into.
+         *
+         * @return the session ID
+         */
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        /**
+         * Gets the final transcription of the replayed session.
+         *
+         * @return the final transcription
+         */
+        public String getTranscript() {
+            return transcript;
+        }
+
+        /**
+         * Gets the number of frames sent.
+         *
+         * @return the frame count
+         */
+        public long getFrames() {
+            return frames;
+        }
+
+        /**
+         * Gets the number of audio bytes sent.
+         *
+         * @return the byte count
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Gets the arrival offset of the last recorded frame.
+         *
+         * @return the recorded duration in milliseconds
+         */
+        public long getRecordedDurationMs() {
+            return TimeUnit.NANOSECONDS.toMillis(recordedDurationNanos);
+        }
+
+        /**
+         * Gets the time the replay took, including stopping the session.
+         *
+         * @return the wall-clock duration in milliseconds
+         */
+        public long getWallDurationMs() {
+            return TimeUnit.NANOSECONDS.toMillis(wallDurationNanos);
+        }
+
+        /**
+         * Gets the furthest any frame was sent behind its schedule.
+         * Always zero for an unpaced replay.
+         *
+         * @return the maximum lateness in milliseconds
+         */
+        public long getMaxLatenessMs() {
+            return TimeUnit.NANOSECONDS.toMillis(maxLatenessNanos);
+        }
+    }
+
+    /**
+     * Thread factory for the threads running replays.
+     */
+    private static class ReplayThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "voice-replay-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
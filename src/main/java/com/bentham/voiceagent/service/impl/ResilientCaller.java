@@ -0,0 +1,358 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.ResilienceConfig;
+import com.bentham.voiceagent.util.CircuitBreaker;
+import com.bentham.voiceagent.util.LatencyWindow;
+import com.bentham.voiceagent.util.VoiceEvents;
+import com.bentham.voiceagent.util.VoiceTracing;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Hedging and circuit breaking for the asynchronous calls of one downstream service.
+ *
+ * <p>Each named operation keeps a window of its recent latencies and its own circuit. A call
+ * sends the primary request and, once the operation has enough samples, schedules a hedged
+ * duplicate for when the primary has taken longer than the configured percentile. The first
+ * request to succeed wins; the other is cancelled, or discarded if it has already produced a
+ * result. While the circuit is open, calls go straight to the fallback.</p>
+ *
+ * <p>Metrics, all tagged with the service and operation: {@code voice.resilience.latency}
+ * records call latency; {@code voice.resilience.hedges} counts hedged calls by which request
+ * won; {@code voice.resilience.fallbacks} counts calls sent to the fallback; and
+ * {@code voice.resilience.circuit.open} is 1 while the circuit is not closed. Each request is
+ * also recorded as a {@link VoiceEvents.AwsCall} flight recorder event and traced as a span
+ * named after the service and operation, tagged {@code voice.request} with primary, hedge or
+ * fallback. A hedge is sent from the scheduler thread in the caller's context, so both
+ * requests appear below the same parent.</p>
+ */
+class ResilientCaller {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientCaller.class);
+
+    private final String service;
+    private final ResilienceConfig resilienceConfig;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+    // Only sends hedged requests, which are themselves asynchronous
+    private final ScheduledExecutorService scheduler;
+
+    ResilientCaller(String service, ResilienceConfig resilienceConfig, MeterRegistry meterRegistry) {
+        this.service = service;
+        this.resilienceConfig = resilienceConfig;
+        this.meterRegistry = meterRegistry;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "voice-resilience-" + service);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Makes a call through the operation's circuit, hedging it if it is slow.
+     *
+     * @param operation the operation name, used for latency tracking, the circuit and metrics
+     * @param primary starts the primary request
+     * @param hedge starts a duplicate request, or null if the operation may not be hedged
+     * @param fallback starts the request made instead while the circuit is open
+     * @param discard releases a result that lost the race, such as an unread stream
+     * @param <T> the result type
+     * @return the result of the first request to succeed; cancelling it cancels every request
+     */
+    <T> CompletableFuture<T> call(String operation, Supplier<CompletableFuture<T>> primary,
+                                  Supplier<CompletableFuture<T>> hedge, Supplier<CompletableFuture<T>> fallback,
+                                  Consumer<T> discard) {
+        Operation state = operations.computeIfAbsent(operation, this::newOperation);
+        if (!state.circuit.tryAcquire()) {
+            meterRegistry.counter("voice.resilience.fallbacks", "service", service, "operation", operation).increment();
+            return traced(operation, "fallback", fallback).get();
+        }
+
+        HedgedCall<T> call = new HedgedCall<>(state, discard);
+        call.start(traced(operation, "primary", primary));
+        long hedgeDelayNanos = hedgeDelayNanos(state);
+        if (hedge != null && hedgeDelayNanos > 0) {
+            call.scheduleHedge(traced(operation, "hedge", hedge), hedgeDelayNanos);
+        }
+        return call.result;
+    }
+
+    /**
+     * Wraps a request so that it is traced, and recorded as a flight recorder event when one is wanted.
+     */
+    private <T> Supplier<CompletableFuture<T>> traced(String operation, String request,
+                                                      Supplier<CompletableFuture<T>> supplier) {
+        return () -> {
+            Span span = VoiceTracing.startSpan(service + " " + operation, SpanKind.INTERNAL);
+            span.setAttribute(VoiceTracing.REQUEST, request);
+            VoiceEvents.AwsCall event = new VoiceEvents.AwsCall();
+            boolean recorded = event.isEnabled();
+            if (recorded) {
+                event.begin();
+            }
+            CompletableFuture<T> future;
+            // The client's own span starts below this one
+            try (Scope scope = span.makeCurrent()) {
+                future = supplier.get();
+            } catch (RuntimeException e) {
+                VoiceTracing.recordFailure(span, e);
+                span.end();
+                throw e;
+            }
+            future.whenComplete((value, error) -> {
+                if (error != null) {
+                    VoiceTracing.recordFailure(span, error);
+                }
+                span.end();
+                if (!recorded) {
+                    return;
+                }
+                event.end();
+                if (event.shouldCommit()) {
+                    event.service = service;
+                    event.operation = operation;
+                    event.request = request;
+                    event.succeeded = error == null;
+                    event.commit();
+                }
+            });
+            return future;
+        };
+    }
+
+    /**
+     * Gets the delay before a call to the operation is hedged.
+     *
+     * @return the delay in nanoseconds, or 0 if calls are not hedged yet
+     */
+    private long hedgeDelayNanos(Operation state) {
+        if (!Boolean.TRUE.equals(resilienceConfig.getHedgingEnabled())
+                || state.latencies.size() < resilienceConfig.getHedgingMinSamples()) {
+            return 0;
+        }
+        return Math.max(TimeUnit.MILLISECONDS.toNanos(resilienceConfig.getHedgingMinDelayMs()),
+                state.latencies.percentile(resilienceConfig.getHedgingPercentile()));
+    }
+
+    /**
+     * Gets the state of an operation's circuit.
+     *
+     * @param operation the operation name
+     * @return the circuit state; closed if the operation has not been called
+     */
+    CircuitBreaker.State getCircuitState(String operation) {
+        Operation state = operations.get(operation);
+        return state != null ? state.circuit.getState() : CircuitBreaker.State.CLOSED;
+    }
+
+    /**
+     * Stops sending hedged requests. Calls already in flight still complete.
+     */
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private Operation newOperation(String operation) {
+        Operation state = new Operation(operation,
+                new LatencyWindow(resilienceConfig.getLatencyWindowSize()),
+                new CircuitBreaker(resilienceConfig.getCircuitWindowSize(), resilienceConfig.getCircuitMinimumCalls(),
+                        resilienceConfig.getCircuitFailureRateThreshold(), resilienceConfig.getCircuitOpenDurationMs()));
+        Gauge.builder("voice.resilience.circuit.open", state.circuit,
+                        circuit -> circuit.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("Whether the circuit is open and calls go to the fallback")
+                .tags("service", service, "operation", operation)
+                .register(meterRegistry);
+        return state;
+    }
+
+    private static class Operation {
+
+        private final String name;
+        private final LatencyWindow latencies;
+        private final CircuitBreaker circuit;
+
+        Operation(String name, LatencyWindow latencies, CircuitBreaker circuit) {
+            this.name = name;
+            this.latencies = latencies;
+            this.circuit = circuit;
+        }
+    }
+
+    /**
+     * One logical call: the primary request and, if it is slow, a hedged duplicate.
+     * Guarded by its own monitor.
+     */
+    private class HedgedCall<T> {
+
+        private final Operation operation;
+        private final Consumer<T> discard;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final long startNanos = System.nanoTime();
+        private final List<CompletableFuture<T>> requests = new ArrayList<>();
+        private CompletableFuture<T> primary;
+        private ScheduledFuture<?> hedgeTimer;
+        private boolean hedged;
+        private int pending;
+        // Set once the outcome is decided, so the circuit records each call exactly once
+        private boolean settled;
+
+        HedgedCall(Operation operation, Consumer<T> discard) {
+            this.operation = operation;
+            this.discard = discard;
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled() && settle()) {
+                    cancelOutstanding();
+                    operation.circuit.recordIgnored();
+                }
+            });
+        }
+
+        void start(Supplier<CompletableFuture<T>> request) {
+            CompletableFuture<T> future;
+            try {
+                future = request.get();
+            } catch (RuntimeException e) {
+                // Rejected before any request was sent, such as an unknown conversation: not a service failure
+                operation.circuit.recordIgnored();
+                throw e;
+            }
+            synchronized (this) {
+                primary = future;
+                requests.add(future);
+                pending++;
+            }
+            future.whenComplete((value, error) -> onComplete(future, value, error));
+        }
+
+        void scheduleHedge(Supplier<CompletableFuture<T>> hedge, long delayNanos) {
+            synchronized (this) {
+                if (!settled) {
+                    hedgeTimer = scheduler.schedule(Context.current().wrap(() -> sendHedge(hedge)),
+                            delayNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+
+        private void sendHedge(Supplier<CompletableFuture<T>> hedge) {
+            synchronized (this) {
+                if (settled) {
+                    return;
+                }
+                hedged = true;
+                pending++;
+            }
+            logger.debug("Hedging slow {} {} call", service, operation.name);
+            CompletableFuture<T> future = request(hedge);
+            boolean late;
+            synchronized (this) {
+                requests.add(future);
+                late = settled;
+            }
+            if (late) {
+                future.cancel(true);
+            }
+            future.whenComplete((value, error) -> onComplete(future, value, error));
+        }
+
+        private CompletableFuture<T> request(Supplier<CompletableFuture<T>> request) {
+            try {
+                return request.get();
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        private synchronized boolean settle() {
+            if (settled) {
+                return false;
+            }
+            settled = true;
+            return true;
+        }
+
+        private void onComplete(CompletableFuture<T> request, T value, Throwable error) {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            if (error == null) {
+                if (settle()) {
+                    succeeded(request, value, elapsedNanos);
+                } else if (discard != null) {
+                    discard.accept(value);
+                }
+                return;
+            }
+            boolean last;
+            synchronized (this) {
+                last = --pending == 0 && !settled;
+            }
+            // A failed primary is not retried: hedging only covers slow requests
+            if (last && settle()) {
+                cancelOutstanding();
+                operation.circuit.recordFailure();
+                recordLatency(elapsedNanos, "error");
+                result.completeExceptionally(error);
+            }
+        }
+
+        private void succeeded(CompletableFuture<T> winner, T value, long elapsedNanos) {
+            boolean primaryWon;
+            boolean wasHedged;
+            synchronized (this) {
+                primaryWon = winner == primary;
+                wasHedged = hedged;
+            }
+            // Losers are stopped and metrics recorded before the caller sees the result
+            cancelOutstanding();
+            operation.circuit.recordSuccess();
+            // The window tracks how long the primary takes; when the hedge won, the primary took at least this long
+            operation.latencies.record(elapsedNanos);
+            recordLatency(elapsedNanos, "success");
+            if (wasHedged) {
+                meterRegistry.counter("voice.resilience.hedges", "service", service, "operation", operation.name,
+                        "winner", primaryWon ? "primary" : "hedge").increment();
+            }
+            if (!result.complete(value) && discard != null) {
+                discard.accept(value);
+            }
+        }
+
+        private void cancelOutstanding() {
+            List<CompletableFuture<T>> outstanding;
+            synchronized (this) {
+                if (hedgeTimer != null) {
+                    hedgeTimer.cancel(false);
+                }
+                outstanding = new ArrayList<>(requests);
+            }
+            outstanding.forEach(request -> request.cancel(true));
+        }
+
+        private void recordLatency(long elapsedNanos, String outcome) {
+            Timer.builder("voice.resilience.latency")
+                    .description("Latency of calls through the resilience layer")
+                    .tags("service", service, "operation", operation.name, "outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry)
+                    .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.BedrockConfig;
+import com.bentham.voiceagent.config.ResilienceConfig;
+import com.bentham.voiceagent.service.NaturalLanguageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.utils.SdkAutoCloseable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * NaturalLanguageService that hedges slow Bedrock requests and falls back to another model
+ * while Bedrock keeps failing. See {@link ResilientCaller} for how calls are hedged and when
+ * the circuit opens.
+ *
+ * <p>Hedged requests go to the region in {@code aws.bedrock.hedge-region}, or to the primary
+ * region if none is set. While the circuit is open, messages are sent to
+ * {@code aws.bedrock.fallback-model-id}. Messages in a conversation are not hedged, since the
+ * exchange would be recorded in the history twice, but they do fall back.</p>
+ */
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "voice.resilience", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ResilientNaturalLanguageService implements NaturalLanguageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientNaturalLanguageService.class);
+
+    static final String CONVERSE = "converse";
+
+    private final NaturalLanguageService primary;
+    private final NaturalLanguageService hedge;
+    private final SdkAutoCloseable hedgeClient;
+    private final BedrockConfig bedrockConfig;
+    private final ResilientCaller caller;
+
+    @Autowired
+    public ResilientNaturalLanguageService(BedrockNaturalLanguageService bedrockService, BedrockConfig bedrockConfig,
+                                           ResilienceConfig resilienceConfig, AwsCredentialsProvider credentialsProvider,
+                                           MeterRegistry meterRegistry) {
+        this(bedrockService, hedgeRegionClient(bedrockConfig, credentialsProvider), bedrockConfig, resilienceConfig,
+                meterRegistry);
+    }
+
+    private ResilientNaturalLanguageService(BedrockNaturalLanguageService bedrockService,
+                                            BedrockRuntimeAsyncClient hedgeClient, BedrockConfig bedrockConfig,
+                                            ResilienceConfig resilienceConfig, MeterRegistry meterRegistry) {
+        this(bedrockService,
+                // Prompt caches are regional, so the hedge region tracks its warm prefixes separately
+                hedgeClient != null
+                        ? new BedrockNaturalLanguageService(hedgeClient, new BedrockRequestBuilder(bedrockConfig, meterRegistry))
+                        : bedrockService,
+                hedgeClient, bedrockConfig, resilienceConfig, meterRegistry);
+    }
+
+    ResilientNaturalLanguageService(NaturalLanguageService primary, NaturalLanguageService hedge,
+                                    SdkAutoCloseable hedgeClient, BedrockConfig bedrockConfig,
+                                    ResilienceConfig resilienceConfig, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.hedge = hedge;
+        this.hedgeClient = hedgeClient;
+        this.bedrockConfig = bedrockConfig;
+        this.caller = new ResilientCaller("bedrock", resilienceConfig, meterRegistry);
+    }
+
+    private static BedrockRuntimeAsyncClient hedgeRegionClient(BedrockConfig bedrockConfig,
+                                                               AwsCredentialsProvider credentialsProvider) {
+        String region = bedrockConfig.getHedgeRegion();
+        if (region == null || region.isBlank()) {
+            return null;
+        }
+        logger.info("Hedging Bedrock requests to region {}", region);
+        return BedrockRuntimeAsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentialsProvider)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<String> processMessage(String message) {
+        return processMessageWithParams(message, Map.of());
+    }
+
+    @Override
+    public CompletableFuture<String> processMessage(String message, String conversationId) {
+        return processMessageWithParams(message, conversationId, Map.of());
+    }
+
+    @Override
+    public CompletableFuture<String> processMessageWithParams(String message, Map<String, Object> parameters) {
+        return caller.call(CONVERSE,
+                () -> primary.processMessageWithParams(message, parameters),
+                () -> hedge.processMessageWithParams(message, parameters),
+                () -> primary.processMessageWithParams(message, withFallbackModel(parameters)),
+                null);
+    }
+
+    @Override
+    public CompletableFuture<String> processMessageWithParams(String message, String conversationId,
+                                                              Map<String, Object> parameters) {
+        return caller.call(CONVERSE,
+                () -> primary.processMessageWithParams(message, conversationId, parameters),
+                null,
+                () -> primary.processMessageWithParams(message, conversationId, withFallbackModel(parameters)),
+                null);
+    }
+
+    @Override
+    public String createConversation() {
+        return primary.createConversation();
+    }
+
+    @Override
+    public void endConversation(String conversationId) {
+        primary.endConversation(conversationId);
+    }
+
+    /**
+     * Stops hedging and closes the hedge region client.
+     */
+    @PreDestroy
+    public void shutdown() {
+        caller.shutdown();
+        if (hedgeClient != null) {
+            hedgeClient.close();
+        }
+    }
+
+    private Map<String, Object> withFallbackModel(Map<String, Object> parameters) {
+        Map<String, Object> fallback = new HashMap<>(parameters);
+        fallback.put("modelId", bedrockConfig.getFallbackModelId());
+        return fallback;
+    }
+}
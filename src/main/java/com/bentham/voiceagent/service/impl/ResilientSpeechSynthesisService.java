@@ -0,0 +1,144 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.PollyConfig;
+import com.bentham.voiceagent.config.ResilienceConfig;
+import com.bentham.voiceagent.service.SpeechSynthesisService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.polly.PollyAsyncClient;
+import software.amazon.awssdk.utils.SdkAutoCloseable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * SpeechSynthesisService that hedges slow Polly requests and falls back to another voice
+ * while Polly keeps failing. See {@link ResilientCaller} for how calls are hedged and when
+ * the circuit opens.
+ *
+ * <p>Hedged requests go to the region in {@code aws.polly.hedge-region}, or to the primary
+ * region if none is set. While the circuit is open, speech is synthesized with
+ * {@code aws.polly.fallback-voice-id}. Listing voices is passed straight through.</p>
+ */
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "voice.resilience", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ResilientSpeechSynthesisService implements SpeechSynthesisService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientSpeechSynthesisService.class);
+
+    static final String SYNTHESIZE = "synthesize";
+
+    private final SpeechSynthesisService primary;
+    private final SpeechSynthesisService hedge;
+    private final SdkAutoCloseable hedgeClient;
+    private final PollyConfig pollyConfig;
+    private final ResilientCaller caller;
+
+    @Autowired
+    public ResilientSpeechSynthesisService(AmazonPollyService pollyService, PollyConfig pollyConfig,
+                                           ResilienceConfig resilienceConfig, AwsCredentialsProvider credentialsProvider,
+                                           MeterRegistry meterRegistry) {
+        this(pollyService, hedgeRegionClient(pollyConfig, credentialsProvider), pollyConfig, resilienceConfig, meterRegistry);
+    }
+
+    private ResilientSpeechSynthesisService(AmazonPollyService pollyService, PollyAsyncClient hedgeClient,
+                                            PollyConfig pollyConfig, ResilienceConfig resilienceConfig,
+                                            MeterRegistry meterRegistry) {
+        this(pollyService, hedgeClient != null ? new AmazonPollyService(hedgeClient, pollyConfig) : pollyService,
+                hedgeClient, pollyConfig, resilienceConfig, meterRegistry);
+    }
+
+    ResilientSpeechSynthesisService(SpeechSynthesisService primary, SpeechSynthesisService hedge,
+                                    SdkAutoCloseable hedgeClient, PollyConfig pollyConfig,
+                                    ResilienceConfig resilienceConfig, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.hedge = hedge;
+        this.hedgeClient = hedgeClient;
+        this.pollyConfig = pollyConfig;
+        this.caller = new ResilientCaller("polly", resilienceConfig, meterRegistry);
+    }
+
+    private static PollyAsyncClient hedgeRegionClient(PollyConfig pollyConfig,
+                                                      AwsCredentialsProvider credentialsProvider) {
+        String region = pollyConfig.getHedgeRegion();
+        if (region == null || region.isBlank()) {
+            return null;
+        }
+        logger.info("Hedging Polly requests to region {}", region);
+        return PollyAsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentialsProvider)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<InputStream> synthesizeSpeech(String text) {
+        return synthesizeSpeech(text, pollyConfig.getVoiceId());
+    }
+
+    @Override
+    public CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId) {
+        return caller.call(SYNTHESIZE,
+                () -> primary.synthesizeSpeech(text, voiceId),
+                () -> hedge.synthesizeSpeech(text, voiceId),
+                () -> primary.synthesizeSpeech(text, pollyConfig.getFallbackVoiceId()),
+                ResilientSpeechSynthesisService::closeQuietly);
+    }
+
+    @Override
+    public CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId, String outputFormat) {
+        return caller.call(SYNTHESIZE,
+                () -> primary.synthesizeSpeech(text, voiceId, outputFormat),
+                () -> hedge.synthesizeSpeech(text, voiceId, outputFormat),
+                () -> primary.synthesizeSpeech(text, pollyConfig.getFallbackVoiceId(), outputFormat),
+                ResilientSpeechSynthesisService::closeQuietly);
+    }
+
+    @Override
+    public CompletableFuture<String[]> getAvailableVoices() {
+        return primary.getAvailableVoices();
+    }
+
+    @Override
+    public CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml) {
+        return synthesizeSpeechFromSsml(ssml, pollyConfig.getVoiceId());
+    }
+
+    @Override
+    public CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml, String voiceId) {
+        return caller.call(SYNTHESIZE,
+                () -> primary.synthesizeSpeechFromSsml(ssml, voiceId),
+                () -> hedge.synthesizeSpeechFromSsml(ssml, voiceId),
+                () -> primary.synthesizeSpeechFromSsml(ssml, pollyConfig.getFallbackVoiceId()),
+                ResilientSpeechSynthesisService::closeQuietly);
+    }
+
+    /**
+     * Stops hedging and closes the hedge region client.
+     */
+    @PreDestroy
+    public void shutdown() {
+        caller.shutdown();
+        if (hedgeClient != null) {
+            hedgeClient.close();
+        }
+    }
+
+    private static void closeQuietly(InputStream speech) {
+        try {
+            speech.close();
+        } catch (IOException e) {
+            logger.debug("Error closing discarded speech stream", e);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.service.TranscriptionResultListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands the results of streaming sessions to every {@link TranscriptionResultListener}
+ * without the session's streaming thread waiting on any of them.
+ *
+ * <p>Each session publishes into a ring buffer of its own, in the manner of the LMAX Disruptor:
+ * the session is the single producer, writing each result into the next slot and then advancing
+ * the ring's sequence, and each listener reads the ring at its own cursor on a thread of its own.
+ * Nothing is locked or copied per listener, and a slow listener delays only itself. The producer
+ * never waits: a listener that falls a whole ring behind finds its next results overwritten, and
+ * its {@link TranscriptionResultListener.Overflow} policy decides where it carries on. Within a
+ * session, results reach a listener in order and with the OpenTelemetry context they were
+ * published under, followed by {@link TranscriptionResultListener#onSessionClosed}.</p>
+ *
+ * <p>Metrics, tagged with the listener: {@code transcribe.results.lag} gauges how many results
+ * the listener has yet to read in its furthest-behind session; {@code transcribe.results.delivery.lag}
+ * records the time from a result being published to the listener being called with it;
+ * {@code transcribe.results.dropped} counts results overwritten before the listener read them,
+ * tagged with its policy.</p>
+ */
+final class ResultFanout {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultFanout.class);
+
+    // Results delivered from one session before a listener moves on to its next session
+    private static final int BATCH = 64;
+
+    // How long an idle listener thread sleeps when nothing wakes it
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int ringSize;
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    /**
+     * Starts a thread for each listener.
+     *
+     * @param listeners the listeners to deliver results to
+     * @param ringSize the results each session's ring holds, rounded up to a power of two
+     * @param meterRegistry the registry for the lag metrics
+     */
+    ResultFanout(List<TranscriptionResultListener> listeners, int ringSize, MeterRegistry meterRegistry) {
+        int size = 2;
+        while (size < ringSize) {
+            size <<= 1;
+        }
+        this.ringSize = size;
+        for (TranscriptionResultListener listener : listeners) {
+            subscribers.add(new Subscriber(listener, meterRegistry));
+        }
+        subscribers.forEach(subscriber -> subscriber.thread.start());
+    }
+
+    /**
+     * Opens a session's ring; results are only accepted for open sessions.
+     *
+     * @param sessionId the session ID
+     */
+    void open(String sessionId) {
+        Ring ring = new Ring(sessionId, ringSize);
+        if (rings.putIfAbsent(sessionId, ring) == null) {
+            subscribers.forEach(subscriber -> subscriber.cursors.add(new Cursor(ring)));
+        }
+    }
+
+    /**
+     * Publishes a result to every listener. Only the session's own thread may publish its results.
+     *
+     * @param result the result
+     */
+    void publish(TranscriptionResult result) {
+        Ring ring = rings.get(result.getSessionId());
+        if (ring == null) {
+            // Listeners have already been told the session closed
+            logger.debug("Dropping result for closed session: {}", result.getSessionId());
+            return;
+        }
+        ring.publish(result);
+        subscribers.forEach(Subscriber::signal);
+    }
+
+    /**
+     * Closes a session: each listener is told so once it has read the session's last result.
+     *
+     * @param sessionId the session ID
+     */
+    void close(String sessionId) {
+        Ring ring = rings.remove(sessionId);
+        if (ring != null) {
+            // A flag rather than an entry, so the closing thread never publishes alongside the session's
+            ring.closed = true;
+            subscribers.forEach(Subscriber::signal);
+        }
+    }
+
+    /**
+     * Stops the listener threads once they have delivered what has been published.
+     */
+    void shutdown() {
+        rings.keySet().forEach(this::close);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.running = false;
+            LockSupport.unpark(subscriber.thread);
+        }
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.thread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * A published result.
+     */
+    private static final class Entry {
+
+        private final long sequence;
+        private final TranscriptionResult result;
+        private final Context context;
+        private final long publishedNanos;
+
+        Entry(long sequence, TranscriptionResult result) {
+            this.sequence = sequence;
+            this.result = result;
+            this.context = Context.current();
+            this.publishedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * The results of one session. Slots are written before the sequence is advanced past them,
+     * so a reader that sees the sequence sees the entry; an entry with a later sequence than the
+     * reader expected means the slot has been reused.
+     */
+    private static final class Ring {
+
+        private final String sessionId;
+        private final AtomicReferenceArray<Entry> slots;
+        private final int mask;
+        // The last sequence published
+        private final AtomicLong sequence = new AtomicLong(-1);
+        private volatile boolean closed;
+
+        Ring(String sessionId, int size) {
+            this.sessionId = sessionId;
+            this.slots = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+        }
+
+        void publish(TranscriptionResult result) {
+            long next = sequence.get() + 1;
+            slots.lazySet((int) next & mask, new Entry(next, result));
+            sequence.set(next);
+        }
+
+        Entry get(long at) {
+            return slots.get((int) at & mask);
+        }
+    }
+
+    /**
+     * A listener's position in a session's ring.
+     */
+    private static final class Cursor {
+
+        private final Ring ring;
+        // The next sequence to deliver
+        private volatile long next;
+        private boolean closed;
+
+        Cursor(Ring ring) {
+            this.ring = ring;
+        }
+
+        long lag() {
+            return Math.max(0, ring.sequence.get() - next + 1);
+        }
+    }
+
+    /**
+     * A listener with its thread and its cursor in each open session.
+     */
+    private final class Subscriber implements Runnable {
+
+        private final TranscriptionResultListener listener;
+        private final TranscriptionResultListener.Overflow overflow;
+        private final Queue<Cursor> cursors = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean signalled = new AtomicBoolean();
+        private final Thread thread;
+        private final Timer deliveryLag;
+        private final Counter dropped;
+        private volatile boolean running = true;
+
+        Subscriber(TranscriptionResultListener listener, MeterRegistry meterRegistry) {
+            this.listener = listener;
+            this.overflow = listener.getOverflowPolicy();
+            String name = ClassUtils.getUserClass(listener).getSimpleName();
+            if (name.isEmpty()) {
+                name = ClassUtils.getUserClass(listener).getName();
+            }
+            this.thread = new Thread(this, "voice-results-" + name);
+            this.thread.setDaemon(true);
+            this.deliveryLag = Timer.builder("transcribe.results.delivery.lag")
+                    .description("Time from a result being published to a listener receiving it")
+                    .tag("listener", name)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            this.dropped = Counter.builder("transcribe.results.dropped")
+                    .description("Results overwritten before a listener read them")
+                    .tag("listener", name)
+                    .tag("policy", overflow.name())
+                    .register(meterRegistry);
+            Gauge.builder("transcribe.results.lag", this, Subscriber::lag)
+                    .description("Results a listener has yet to read in its furthest-behind session")
+                    .tag("listener", name)
+                    .register(meterRegistry);
+        }
+
+        void signal() {
+            // Only the first signal after the thread last looked needs to wake it
+            if (!signalled.get() && !signalled.getAndSet(true)) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        double lag() {
+            long lag = 0;
+            for (Cursor cursor : cursors) {
+                lag = Math.max(lag, cursor.lag());
+            }
+            return lag;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                signalled.set(false);
+                boolean delivered = false;
+                for (Iterator<Cursor> it = cursors.iterator(); it.hasNext(); ) {
+                    Cursor cursor = it.next();
+                    delivered |= drain(cursor);
+                    if (cursor.closed) {
+                        it.remove();
+                    }
+                }
+                if (!delivered) {
+                    if (!running) {
+                        return;
+                    }
+                    if (!signalled.get()) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                }
+            }
+        }
+
+        private boolean drain(Cursor cursor) {
+            Ring ring = cursor.ring;
+            int delivered = 0;
+            while (delivered < BATCH && !cursor.closed) {
+                // Read before the sequence, so no result published ahead of the close is missed
+                boolean closing = ring.closed;
+                long published = ring.sequence.get();
+                long next = cursor.next;
+                if (next > published) {
+                    if (closing) {
+                        closeSession(cursor);
+                        delivered++;
+                    }
+                    break;
+                }
+                Entry entry = ring.get(next);
+                if (published - next >= ringSize || entry.sequence != next) {
+                    // Overwritten, before or while it was read
+                    overflow(cursor, ring.sequence.get());
+                    continue;
+                }
+                cursor.next = next + 1;
+                deliver(cursor, entry);
+                delivered++;
+            }
+            return delivered > 0;
+        }
+
+        private void overflow(Cursor cursor, long published) {
+            long resume = overflow == TranscriptionResultListener.Overflow.SKIP_TO_LATEST
+                    ? published
+                    : published - ringSize + 1;
+            dropped.increment(resume - cursor.next);
+            cursor.next = resume;
+        }
+
+        private void closeSession(Cursor cursor) {
+            cursor.closed = true;
+            try {
+                listener.onSessionClosed(cursor.ring.sessionId);
+            } catch (RuntimeException e) {
+                logger.warn("Transcription result listener failed closing session: {}", cursor.ring.sessionId, e);
+            }
+        }
+
+        private void deliver(Cursor cursor, Entry entry) {
+            deliveryLag.record(System.nanoTime() - entry.publishedNanos, TimeUnit.NANOSECONDS);
+            try (Scope scope = entry.context.makeCurrent()) {
+                listener.onResult(entry.result);
+            } catch (RuntimeException e) {
+                logger.warn("Transcription result listener failed for session: {}", cursor.ring.sessionId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.bentham.voiceagent.service.impl;
+
+/**
+ * Plain loop implementation of the spectral kernels, used where the Vector API is unavailable.
+ */
+final class ScalarSpectralKernels implements SpectralKernels {
+
+    @Override
+    public void multiply(float[] a, float[] b, float[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            out[i] = a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void multiplyAdd(float[] a, float[] b, float[] acc, int n) {
+        for (int i = 0; i < n; i++) {
+            acc[i] += a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void power(float[] re, float[] im, float[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            out[i] = re[i] * re[i] + im[i] * im[i];
+        }
+    }
+
+    @Override
+    public void trackNoise(float[] power, float[] noise, float rise, float fall, int n) {
+        for (int i = 0; i < n; i++) {
+            float rate = power[i] < noise[i] ? fall : rise;
+            noise[i] += (power[i] - noise[i]) * rate;
+        }
+    }
+
+    @Override
+    public void suppressionGain(float[] power, float[] noise, float[] gain, float overSubtraction, float floor,
+                                float release, int n) {
+        for (int i = 0; i < n; i++) {
+            float g = Math.max(floor, 1f - overSubtraction * noise[i] / (power[i] + AudioPreprocessor.EPSILON));
+            gain[i] = Math.max(g, gain[i] * release);
+        }
+    }
+
+    @Override
+    public void applyGain(float[] re, float[] im, float[] gain, int n) {
+        for (int i = 0; i < n; i++) {
+            re[i] *= gain[i];
+            im[i] *= gain[i];
+        }
+    }
+
+    @Override
+    public float sumOfSquares(float[] x, int n) {
+        float sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += x[i] * x[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void ramp(float[] x, float start, float step, float limit, int n) {
+        for (int i = 0; i < n; i++) {
+            x[i] = Math.max(-limit, Math.min(limit, x[i] * (start + step * i)));
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.bentham.voiceagent.service.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only index of a full segment, memory-mapped from the file written by
+ * {@link TranscriptIndexBuilder}. Only the term dictionary is held on the heap. Postings are
+ * decoded from the mapping a block at a time as a search reads them, and positions only for the
+ * blocks a phrase is checked in, so the page cache rather than the heap holds the bulk of the
+ * index and a search touches only the blocks it needs.
+ */
+class SealedTranscriptIndex implements TranscriptIndex {
+
+    private static final int BLOCK_SIZE = TranscriptIndexBuilder.BLOCK_SIZE;
+    private static final int SKIP_ENTRY_BYTES = TranscriptIndexBuilder.SKIP_ENTRY_BYTES;
+
+    private final MappedByteBuffer buffer;
+    private final int docCount;
+    private final int docTableOffset;
+    private final String[] terms;
+    private final int[] docFrequencies;
+    private final int[] postingsOffsets;
+
+    private SealedTranscriptIndex(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < TranscriptIndexBuilder.HEADER_BYTES
+                || buffer.getInt(0) != TranscriptIndexBuilder.MAGIC) {
+            throw new IOException("Not a transcript index");
+        }
+        if (buffer.getInt(4) != TranscriptIndexBuilder.VERSION) {
+            throw new IOException("Unsupported transcript index version: " + buffer.getInt(4));
+        }
+        this.docCount = buffer.getInt(8);
+        int termCount = buffer.getInt(12);
+        // Offsets are stored as longs but fit in an int, as the file is mapped as one buffer
+        this.docTableOffset = Math.toIntExact(buffer.getLong(16));
+        int termTableOffset = Math.toIntExact(buffer.getLong(32));
+
+        this.terms = new String[termCount];
+        this.docFrequencies = new int[termCount];
+        this.postingsOffsets = new int[termCount];
+        ByteBuffer termTable = buffer.duplicate().position(termTableOffset);
+        for (int i = 0; i < termCount; i++) {
+            byte[] bytes = new byte[termTable.getShort() & 0xFFFF];
+            termTable.get(bytes);
+            terms[i] = new String(bytes, StandardCharsets.UTF_8);
+            docFrequencies[i] = termTable.getInt();
+            postingsOffsets[i] = Math.toIntExact(termTable.getLong());
+        }
+    }
+
+    /**
+     * Opens an index file.
+     *
+     * @param file the index file
+     * @return the index
+     * @throws IOException if the file cannot be read or is not a transcript index
+     */
+    static SealedTranscriptIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Transcript index too large to map: " + file);
+            }
+            return new SealedTranscriptIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt transcript index: " + file, e);
+        }
+    }
+
+    /**
+     * Checks if an index file is in the current format, so it can be opened rather than
+     * rebuilt from its log.
+     *
+     * @param file the index file
+     * @return true if the file has the current version
+     * @throws IOException if the file cannot be read
+     */
+    static boolean isCurrentVersion(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The magic number and version
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    return false;
+                }
+            }
+            return header.getInt(0) == TranscriptIndexBuilder.MAGIC && header.getInt(4) == TranscriptIndexBuilder.VERSION;
+        }
+    }
+
+    @Override
+    public int getDocCount() {
+        return docCount;
+    }
+
+    @Override
+    public long getLogOffset(int doc) {
+        return buffer.getLong(docTableOffset + doc * Long.BYTES);
+    }
+
+    @Override
+    public PostingList getPostings(String term) {
+        int termIndex = Arrays.binarySearch(terms, term);
+        if (termIndex < 0) {
+            return PostingList.EMPTY;
+        }
+        return new BlockPostingList(postingsOffsets[termIndex], docFrequencies[termIndex]);
+    }
+
+    private static int readVarInt(ByteBuffer input) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = input.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * The postings of one term, read straight from the mapping. The skip table finds the block
+     * holding a document without decoding any other; the block's documents are decoded when
+     * first read, and its positions only when a phrase asks for them.
+     */
+    private final class BlockPostingList implements PostingList {
+
+        private final int size;
+        private final int skipOffset;
+        private final int blockCount;
+        private final int dataOffset;
+        private final ByteBuffer input = buffer.duplicate();
+
+        // Block whose documents are decoded, or -1
+        private int docBlock = -1;
+        private final int[] docs = new int[BLOCK_SIZE];
+        private final int[] frequencies = new int[BLOCK_SIZE];
+
+        // Block whose positions are decoded, or -1
+        private int positionBlock = -1;
+        private final int[] positionStarts = new int[BLOCK_SIZE + 1];
+        private int[] positions = new int[BLOCK_SIZE];
+
+        BlockPostingList(int skipOffset, int size) {
+            this.size = size;
+            this.skipOffset = skipOffset;
+            this.blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            this.dataOffset = skipOffset + blockCount * SKIP_ENTRY_BYTES;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int doc(int index) {
+            loadDocs(index / BLOCK_SIZE);
+            return docs[index % BLOCK_SIZE];
+        }
+
+        @Override
+        public int indexOf(int doc) {
+            // The first block whose last document is not before the one sought
+            int low = 0;
+            int high = blockCount - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (lastDoc(middle) < doc) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            if (blockCount == 0 || lastDoc(low) < doc) {
+                return -1;
+            }
+            loadDocs(low);
+            int found = Arrays.binarySearch(docs, 0, blockLength(low), doc);
+            return found >= 0 ? low * BLOCK_SIZE + found : -1;
+        }
+
+        @Override
+        public boolean hasPosition(int index, int position) {
+            int offset = index % BLOCK_SIZE;
+            loadPositions(index / BLOCK_SIZE);
+            return Arrays.binarySearch(positions, positionStarts[offset], positionStarts[offset + 1], position) >= 0;
+        }
+
+        @Override
+        public int positionCount(int index) {
+            loadDocs(index / BLOCK_SIZE);
+            return frequencies[index % BLOCK_SIZE];
+        }
+
+        @Override
+        public int position(int index, int occurrence) {
+            loadPositions(index / BLOCK_SIZE);
+            return positions[positionStarts[index % BLOCK_SIZE] + occurrence];
+        }
+
+        private int lastDoc(int block) {
+            return buffer.getInt(skipOffset + block * SKIP_ENTRY_BYTES);
+        }
+
+        private int blockLength(int block) {
+            return Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+        }
+
+        private void loadDocs(int block) {
+            if (block == docBlock) {
+                return;
+            }
+            input.position(dataOffset + buffer.getInt(skipOffset + block * SKIP_ENTRY_BYTES + Integer.BYTES));
+            int doc = block == 0 ? 0 : lastDoc(block - 1);
+            for (int i = 0; i < blockLength(block); i++) {
+                doc += readVarInt(input);
+                docs[i] = doc;
+                frequencies[i] = readVarInt(input);
+            }
+            docBlock = block;
+        }
+
+        private void loadPositions(int block) {
+            if (block == positionBlock) {
+                return;
+            }
+            loadDocs(block);
+            int length = blockLength(block);
+            int total = 0;
+            for (int i = 0; i < length; i++) {
+                positionStarts[i] = total;
+                total += frequencies[i];
+            }
+            positionStarts[length] = total;
+            if (total > positions.length) {
+                positions = new int[Math.max(total, positions.length * 2)];
+            }
+            input.position(dataOffset + buffer.getInt(skipOffset + block * SKIP_ENTRY_BYTES + 2 * Integer.BYTES));
+            for (int i = 0; i < length; i++) {
+                int position = 0;
+                for (int p = positionStarts[i]; p < positionStarts[i + 1]; p++) {
+                    position += readVarInt(input);
+                    positions[p] = position;
+                }
+            }
+            positionBlock = block;
+        }
+    }
+}
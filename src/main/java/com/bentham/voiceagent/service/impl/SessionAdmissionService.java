@@ -0,0 +1,361 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.AdmissionConfig;
+import com.bentham.voiceagent.service.AdmissionRejectedException;
+import com.bentham.voiceagent.util.TokenBucket;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for streaming sessions.
+ *
+ * <p>Session starts are checked against the tenant's session token bucket, then take one of
+ * a fixed number of global slots. When no slot is free the start waits in a queue, up to the
+ * configured time. Waiting starts are queued per tenant and freed slots are handed out to
+ * tenants in rotation, so one tenant opening many sessions cannot hold back the others.
+ * Admission is asynchronous: a waiting start holds no thread, and is granted or rejected on
+ * the service's own threads, so callers on inbound or servlet threads are never blocked.
+ * Audio frames are checked against the tenant's audio byte token bucket. A tenant's buckets
+ * are dropped once it has been idle long enough for both to have refilled, since new full
+ * buckets then allow exactly the same, so only recently active tenants are kept.</p>
+ *
+ * <p>Metrics: {@code voice.admission.latency} records how long session starts took to be
+ * admitted or rejected, tagged with the outcome; {@code voice.admission.rejections} counts
+ * rejections by reason; {@code voice.admission.active} and {@code voice.admission.queued}
+ * gauge the slots in use and the starts waiting, and {@code voice.admission.tenants} the
+ * tenants whose buckets are kept.</p>
+ */
+@Service
+public class SessionAdmissionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionAdmissionService.class);
+
+    /**
+     * A held session slot. Closing it frees the slot; closing it again has no effect.
+     */
+    public interface Permit extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    private static final Permit UNLIMITED = () -> { };
+
+    // Threads that grant queued starts and time them out
+    private static final int GRANT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+    private final AdmissionConfig admissionConfig;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TenantQuota> tenants = new ConcurrentHashMap<>();
+    // When idle tenants were last dropped
+    private final AtomicLong lastEvictionNanos = new AtomicLong(System.nanoTime());
+    private final ScheduledThreadPoolExecutor grantExecutor;
+
+    // Guarded by this
+    private int activeSessions;
+    private int queuedSessions;
+    // Tenants with waiting starts, in the order they are next served
+    private final LinkedHashMap<String, Deque<CompletableFuture<Permit>>> waiting = new LinkedHashMap<>();
+
+    @Autowired
+    public SessionAdmissionService(AdmissionConfig admissionConfig, MeterRegistry meterRegistry) {
+        this.admissionConfig = admissionConfig;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("voice.admission.active", this, SessionAdmissionService::getActiveSessions)
+                .description("Streaming sessions holding an admission slot")
+                .register(meterRegistry);
+        Gauge.builder("voice.admission.queued", this, SessionAdmissionService::getQueuedSessions)
+                .description("Session starts waiting for an admission slot")
+                .register(meterRegistry);
+        Gauge.builder("voice.admission.tenants", tenants, Map::size)
+                .description("Tenants whose rate limit buckets are kept")
+                .register(meterRegistry);
+        AtomicInteger counter = new AtomicInteger();
+        this.grantExecutor = new ScheduledThreadPoolExecutor(GRANT_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "voice-admission-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Starts granted in time leave no timeout behind
+        grantExecutor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Admits a new session for a tenant. If no slot is free the start waits in the queue without
+     * holding the calling thread, and the returned future is completed on one of the service's
+     * threads once a slot is granted or the wait is over. Cancelling the future withdraws a
+     * waiting start.
+     *
+     * @param tenantId the tenant starting the session
+     * @return a future completed with the permit to close when the session ends, or failed with
+     *         an {@link AdmissionRejectedException} if the tenant is over its rate or no slot
+     *         became free in time
+     */
+    public CompletableFuture<Permit> admit(String tenantId) {
+        if (!Boolean.TRUE.equals(admissionConfig.getEnabled())) {
+            return CompletableFuture.completedFuture(UNLIMITED);
+        }
+        long startNanos = System.nanoTime();
+        CompletableFuture<Permit> admission;
+        try {
+            admission = acquire(tenantId);
+        } catch (AdmissionRejectedException e) {
+            admission = CompletableFuture.failedFuture(e);
+        }
+        admission.whenComplete((permit, error) -> {
+            if (error == null) {
+                recordLatency(startNanos, "admitted");
+            } else if (error instanceof AdmissionRejectedException rejection) {
+                recordLatency(startNanos, "rejected");
+                meterRegistry.counter("voice.admission.rejections", "reason", rejection.getReason()).increment();
+                logger.info("Rejected session start for tenant {}: {}", tenantId, rejection.getMessage());
+            }
+        });
+        return admission;
+    }
+
+    private CompletableFuture<Permit> acquire(String tenantId) {
+        if (!quota(tenantId).sessions.tryConsume(1)) {
+            throw new AdmissionRejectedException("tenant-session-rate",
+                    "Too many sessions started for tenant " + tenantId + "; try again shortly");
+        }
+
+        CompletableFuture<Permit> grant = new CompletableFuture<>();
+        synchronized (this) {
+            if (activeSessions < admissionConfig.getMaxConcurrentSessions()) {
+                activeSessions++;
+                grant.complete(new SlotPermit());
+                return grant;
+            }
+            if (queuedSessions >= admissionConfig.getMaxQueuedSessions()) {
+                throw new AdmissionRejectedException("queue-full",
+                        "The service is at capacity; try again later");
+            }
+            waiting.computeIfAbsent(tenantId, id -> new ArrayDeque<>()).addLast(grant);
+            queuedSessions++;
+        }
+
+        try {
+            ScheduledFuture<?> timeout = grantExecutor.schedule(() -> expire(tenantId, grant),
+                    admissionConfig.getMaxQueueWaitMs(), TimeUnit.MILLISECONDS);
+            grant.whenComplete((permit, error) -> timeout.cancel(false));
+        } catch (RejectedExecutionException e) {
+            expire(tenantId, grant);
+        }
+        // A caller that gives up frees its place in the queue
+        grant.whenComplete((permit, error) -> {
+            if (grant.isCancelled()) {
+                withdraw(tenantId, grant);
+            }
+        });
+        return grant;
+    }
+
+    /**
+     * Rejects a start that is still waiting once its time is up.
+     */
+    private void expire(String tenantId, CompletableFuture<Permit> grant) {
+        if (withdraw(tenantId, grant)) {
+            grant.completeExceptionally(new AdmissionRejectedException("queue-timeout",
+                    "No capacity became available within " + admissionConfig.getMaxQueueWaitMs() + " ms"));
+        }
+    }
+
+    /**
+     * Takes a start out of the queue.
+     *
+     * @return false if it was no longer waiting, having been granted a slot or withdrawn already
+     */
+    private synchronized boolean withdraw(String tenantId, CompletableFuture<Permit> grant) {
+        Deque<CompletableFuture<Permit>> queue = waiting.get(tenantId);
+        if (queue == null || !queue.remove(grant)) {
+            return false;
+        }
+        queuedSessions--;
+        if (queue.isEmpty()) {
+            waiting.remove(tenantId);
+        }
+        return true;
+    }
+
+    private void release() {
+        CompletableFuture<Permit> grant = next();
+        if (grant == null) {
+            return;
+        }
+        // The waiter carries on with its start on a service thread, not the one that freed the slot
+        SlotPermit permit = new SlotPermit();
+        try {
+            grantExecutor.execute(() -> hand(grant, permit));
+        } catch (RejectedExecutionException e) {
+            hand(grant, permit);
+        }
+    }
+
+    private static void hand(CompletableFuture<Permit> grant, SlotPermit permit) {
+        if (!grant.complete(permit)) {
+            // Cancelled after it was taken from the queue; the slot goes to the next waiter
+            permit.close();
+        }
+    }
+
+    /**
+     * Takes the next waiting start, or frees the slot if there is none.
+     */
+    private synchronized CompletableFuture<Permit> next() {
+        Iterator<Map.Entry<String, Deque<CompletableFuture<Permit>>>> tenantsWaiting = waiting.entrySet().iterator();
+        if (!tenantsWaiting.hasNext()) {
+            activeSessions--;
+            return null;
+        }
+        // Serve the tenant at the head of the rotation, then move it to the back
+        Map.Entry<String, Deque<CompletableFuture<Permit>>> next = tenantsWaiting.next();
+        String tenantId = next.getKey();
+        Deque<CompletableFuture<Permit>> queue = next.getValue();
+        CompletableFuture<Permit> grant = queue.removeFirst();
+        tenantsWaiting.remove();
+        if (!queue.isEmpty()) {
+            waiting.put(tenantId, queue);
+        }
+        queuedSessions--;
+        // The slot passes straight to the waiter, so activeSessions is unchanged
+        return grant;
+    }
+
+    /**
+     * Checks an audio frame against the tenant's audio rate.
+     *
+     * @param tenantId the tenant sending the audio
+     * @param bytes the size of the frame
+     * @throws AdmissionRejectedException if the tenant is over its audio rate
+     */
+    public void checkAudio(String tenantId, int bytes) {
+        if (!Boolean.TRUE.equals(admissionConfig.getEnabled())) {
+            return;
+        }
+        if (!quota(tenantId).audioBytes.tryConsume(bytes)) {
+            meterRegistry.counter("voice.admission.rejections", "reason", "tenant-audio-rate").increment();
+            throw new AdmissionRejectedException("tenant-audio-rate",
+                    "Audio rate limit exceeded for tenant " + tenantId + "; frame dropped");
+        }
+    }
+
+    private TenantQuota quota(String tenantId) {
+        long now = System.nanoTime();
+        evictIdleTenants(now);
+        TenantQuota quota = tenants.computeIfAbsent(tenantId, id -> new TenantQuota(
+                new TokenBucket(admissionConfig.getTenantSessionBurst(), admissionConfig.getTenantSessionsPerSecond()),
+                new TokenBucket(admissionConfig.getTenantAudioBurstBytes(), admissionConfig.getTenantAudioBytesPerSecond())));
+        quota.lastUsedNanos = now;
+        return quota;
+    }
+
+    /**
+     * Drops the buckets of tenants idle for longer than the buckets take to refill from empty,
+     * checking at most once in that time.
+     */
+    private void evictIdleTenants(long now) {
+        long refillNanos = refillNanos();
+        long last = lastEvictionNanos.get();
+        if (now - last < refillNanos || !lastEvictionNanos.compareAndSet(last, now)) {
+            return;
+        }
+        tenants.values().removeIf(quota -> now - quota.lastUsedNanos >= refillNanos);
+    }
+
+    private long refillNanos() {
+        double sessionSeconds = admissionConfig.getTenantSessionBurst() / admissionConfig.getTenantSessionsPerSecond();
+        double audioSeconds = (double) admissionConfig.getTenantAudioBurstBytes()
+                / admissionConfig.getTenantAudioBytesPerSecond();
+        return (long) (Math.max(sessionSeconds, audioSeconds) * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Gets the number of tenants whose buckets are kept.
+     *
+     * @return the tenant count
+     */
+    int getTenantCount() {
+        return tenants.size();
+    }
+
+    private void recordLatency(long startNanos, String outcome) {
+        Timer.builder("voice.admission.latency")
+                .description("Time to admit or reject a session start")
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the number of session slots in use.
+     *
+     * @return the active session count
+     */
+    public synchronized int getActiveSessions() {
+        return activeSessions;
+    }
+
+    /**
+     * Gets the number of session starts waiting for a slot.
+     *
+     * @return the queued session count
+     */
+    public synchronized int getQueuedSessions() {
+        return queuedSessions;
+    }
+
+    /**
+     * Stops the threads that grant and time out queued starts.
+     */
+    @PreDestroy
+    public void shutdown() {
+        grantExecutor.shutdownNow();
+    }
+
+    private class SlotPermit implements Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release();
+            }
+        }
+    }
+
+    private static class TenantQuota {
+
+        private final TokenBucket sessions;
+        private final TokenBucket audioBytes;
+        private volatile long lastUsedNanos;
+
+        TenantQuota(TokenBucket sessions, TokenBucket audioBytes) {
+            this.sessions = sessions;
+            this.audioBytes = audioBytes;
+        }
+    }
+}
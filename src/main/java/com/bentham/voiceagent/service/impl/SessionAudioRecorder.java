@@ -0,0 +1,164 @@
+package com.bentham.voiceagent.service.impl;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only recorder for the audio received by one streaming session.
+ *
+ * <p>Frames are written into fixed-size segment files mapped into memory through
+ * {@link FileChannel}. Appending a frame writes its header and bytes straight into the
+ * mapping, with no intermediate buffer, so the only copy on the audio path is the one into
+ * the page cache; the operating system writes pages back in the background.</p>
+ *
+ * <p>Segment layout, all integers big-endian:</p>
+ * <pre>
+ * header: int magic, int version, int sampleRate, int reserved
+ * frame:  int length, long arrivalOffsetNanos, long arrivalEpochMicros, byte[length] audio
+ * </pre>
+ * <p>A frame length of zero marks the end of the written data; the unused tail of a segment
+ * is zero-filled because new mappings are. {@code arrivalOffsetNanos} is measured on the
+ * monotonic clock from the start of the recording and drives replay pacing;
+ * {@code arrivalEpochMicros} correlates frames with logs.</p>
+ */
+public class SessionAudioRecorder implements AutoCloseable {
+
+    static final int MAGIC = 0x42565243; // "BVRC"
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_BYTES = 16;
+    static final int FRAME_HEADER_BYTES = 20;
+
+    private final Path directory;
+    private final int segmentSizeBytes;
+    private final int sampleRate;
+    private final long startNanos;
+    private final long startEpochMicros;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentIndex = -1;
+    private long framesWritten;
+    private long bytesWritten;
+    private boolean closed;
+
+    /**
+     * Creates a recorder writing into the given directory, which is created if needed.
+     *
+     * @param directory the session's recording directory
+     * @param segmentSizeBytes the size of each segment file
+     * @param sampleRate the sample rate of the recorded audio in Hz
+     * @throws IOException if the directory or first segment cannot be created
+     */
+    public SessionAudioRecorder(Path directory, int segmentSizeBytes, int sampleRate) throws IOException {
+        if (segmentSizeBytes <= SEGMENT_HEADER_BYTES + FRAME_HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSizeBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSizeBytes = segmentSizeBytes;
+        this.sampleRate = sampleRate;
+        this.startNanos = System.nanoTime();
+        this.startEpochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        openSegment(segmentSizeBytes);
+    }
+
+    /**
+     * Appends a frame stamped with the current time.
+     *
+     * @param audio the audio frame
+     * @throws IOException if a new segment is needed and cannot be created
+     */
+    public synchronized void append(byte[] audio) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Recorder is closed: " + directory);
+        }
+        if (audio.length == 0) {
+            // A zero length would read back as the end-of-data marker
+            return;
+        }
+        long offsetNanos = System.nanoTime() - startNanos;
+        int needed = FRAME_HEADER_BYTES + audio.length;
+        // Keep room for the terminating zero length after this frame
+        if (segment.remaining() < needed + Integer.BYTES) {
+            openSegment(Math.max(segmentSizeBytes, SEGMENT_HEADER_BYTES + needed + Integer.BYTES));
+        }
+        segment.putInt(audio.length)
+                .putLong(offsetNanos)
+                .putLong(startEpochMicros + TimeUnit.NANOSECONDS.toMicros(offsetNanos))
+                .put(audio);
+        framesWritten++;
+        bytesWritten += audio.length;
+    }
+
+    private void openSegment(int size) throws IOException {
+        closeSegment();
+        segmentIndex++;
+        Path file = directory.resolve(segmentFileName(segmentIndex));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segment.putInt(MAGIC).putInt(VERSION).putInt(sampleRate).putInt(0);
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel != null) {
+            segment.force();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Gets the file name of a segment. Names sort in recording order.
+     *
+     * @param index the zero-based segment index
+     * @return the file name
+     */
+    static String segmentFileName(int index) {
+        return String.format("segment-%06d.rec", index);
+    }
+
+    /**
+     * Gets the number of frames recorded so far.
+     *
+     * @return the frame count
+     */
+    public synchronized long getFramesWritten() {
+        return framesWritten;
+    }
+
+    /**
+     * Gets the number of audio bytes recorded so far, excluding headers.
+     *
+     * @return the audio byte count
+     */
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Gets the directory this recorder writes to.
+     *
+     * @return the recording directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Flushes the current segment to disk and releases its file handle.
+     *
+     * @throws IOException if the segment cannot be flushed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        closeSegment();
+    }
+}
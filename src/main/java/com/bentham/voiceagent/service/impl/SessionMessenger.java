@@ -0,0 +1,109 @@
+package com.bentham.voiceagent.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends messages to the WebSocket connection that owns a transcription session, so a session's
+ * transcripts, replies and audio reach its own client and no other.
+ *
+ * <p>Messages go to user destinations addressed by WebSocket session ID, which the broker
+ * delivers to that connection alone whether or not it is authenticated; the client subscribes
+ * to the destination with a {@code /user} prefix, e.g. {@code /user/queue/response}. The
+ * transcription controller binds each transcription session to its connection when it starts
+ * or resumes, and unbinds it when it stops or its connection drops. Messages for a session
+ * without a connection, such as one waiting to be resumed, are dropped.</p>
+ */
+@Service
+public class SessionMessenger {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionMessenger.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    // WebSocket session owning each transcription session
+    private final Map<String, String> owners = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SessionMessenger(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    /**
+     * Routes a transcription session's messages to a WebSocket connection, replacing any
+     * connection it was bound to before.
+     */
+    public void bind(String transcriptionSessionId, String webSocketSessionId) {
+        owners.put(transcriptionSessionId, webSocketSessionId);
+    }
+
+    /**
+     * Stops routing a transcription session's messages to a connection, unless the session has
+     * been bound to another connection since.
+     */
+    public void unbind(String transcriptionSessionId, String webSocketSessionId) {
+        owners.remove(transcriptionSessionId, webSocketSessionId);
+    }
+
+    /**
+     * Sends a message to the connection owning a transcription session.
+     *
+     * @param transcriptionSessionId the transcription session
+     * @param destination the user destination, without the {@code /user} prefix
+     * @param payload the payload
+     * @return false if the session has no connection and the message was dropped
+     */
+    public boolean send(String transcriptionSessionId, String destination, Object payload) {
+        return send(transcriptionSessionId, destination, payload, Map.of());
+    }
+
+    /**
+     * Sends a message with STOMP headers to the connection owning a transcription session.
+     *
+     * @param transcriptionSessionId the transcription session
+     * @param destination the user destination, without the {@code /user} prefix
+     * @param payload the payload
+     * @param nativeHeaders the STOMP headers to send with it
+     * @return false if the session has no connection and the message was dropped
+     */
+    public boolean send(String transcriptionSessionId, String destination, Object payload,
+                        Map<String, String> nativeHeaders) {
+        String webSocketSessionId = owners.get(transcriptionSessionId);
+        if (webSocketSessionId == null) {
+            logger.debug("Dropping message to {} for transcription session {} without a connection",
+                    destination, transcriptionSessionId);
+            return false;
+        }
+        sendToConnection(webSocketSessionId, destination, payload, nativeHeaders);
+        return true;
+    }
+
+    /**
+     * Sends a message to a WebSocket connection, whatever transcription session it has.
+     *
+     * @param webSocketSessionId the connection's WebSocket session
+     * @param destination the user destination, without the {@code /user} prefix
+     * @param payload the payload
+     */
+    public void sendToConnection(String webSocketSessionId, String destination, Object payload) {
+        sendToConnection(webSocketSessionId, destination, payload, Map.of());
+    }
+
+    private void sendToConnection(String webSocketSessionId, String destination, Object payload,
+                                  Map<String, String> nativeHeaders) {
+        // With the session ID header equal to the user, the broker targets that one connection
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(webSocketSessionId);
+        nativeHeaders.forEach(headers::setNativeHeader);
+        headers.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(webSocketSessionId, destination, payload, headers.getMessageHeaders());
+    }
+}
@@ -0,0 +1,167 @@
+package com.bentham.voiceagent.service.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * Reads back a session recording written by {@link SessionAudioRecorder}.
+ * Segments are memory-mapped read-only and visited in order; frames are returned one at a
+ * time so recordings of any length can be replayed in constant memory.
+ */
+public class SessionRecordingReader implements Iterable<SessionRecordingReader.RecordedFrame> {
+
+    private final List<Path> segments;
+    private final int sampleRate;
+
+    /**
+     * Opens a recording.
+     *
+     * @param directory the session's recording directory
+     * @throws IOException if the directory holds no valid segments
+     */
+    public SessionRecordingReader(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            this.segments = files
+                    .filter(path -> path.getFileName().toString().endsWith(".rec"))
+                    .sorted()
+                    .toList();
+        }
+        if (segments.isEmpty()) {
+            throw new IOException("No recording segments found in " + directory);
+        }
+        this.sampleRate = map(segments.get(0)).getInt(8);
+    }
+
+    private static MappedByteBuffer map(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < SessionAudioRecorder.SEGMENT_HEADER_BYTES
+                    || buffer.getInt(0) != SessionAudioRecorder.MAGIC) {
+                throw new IOException("Not a recording segment: " + segment);
+            }
+            if (buffer.getInt(4) != SessionAudioRecorder.VERSION) {
+                throw new IOException("Unsupported recording version " + buffer.getInt(4) + " in " + segment);
+            }
+            buffer.position(SessionAudioRecorder.SEGMENT_HEADER_BYTES);
+            return buffer;
+        }
+    }
+
+    /**
+     * Gets the sample rate the audio was recorded at.
+     *
+     * @return the sample rate in Hz
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public Iterator<RecordedFrame> iterator() {
+        return new FrameIterator();
+    }
+
+    /**
+     * Iterates frames across segments, mapping each segment only when it is reached.
+     */
+    private class FrameIterator implements Iterator<RecordedFrame> {
+
+        private int segmentIndex = -1;
+        private MappedByteBuffer current;
+        private RecordedFrame next;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public RecordedFrame next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            RecordedFrame frame = next;
+            next = null;
+            return frame;
+        }
+
+        private RecordedFrame advance() {
+            while (true) {
+                if (current != null && current.remaining() >= SessionAudioRecorder.FRAME_HEADER_BYTES) {
+                    int length = current.getInt();
+                    if (length > 0 && length <= current.remaining() - 2 * Long.BYTES) {
+                        long offsetNanos = current.getLong();
+                        long epochMicros = current.getLong();
+                        byte[] audio = new byte[length];
+                        current.get(audio);
+                        return new RecordedFrame(offsetNanos, epochMicros, audio);
+                    }
+                }
+                if (++segmentIndex >= segments.size()) {
+                    current = null;
+                    return null;
+                }
+                try {
+                    current = map(segments.get(segmentIndex));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A recorded audio frame and its arrival time.
+     */
+    public static class RecordedFrame {
+
+        private final long arrivalOffsetNanos;
+        private final long arrivalEpochMicros;
+        private final byte[] audio;
+
+        RecordedFrame(long arrivalOffsetNanos, long arrivalEpochMicros, byte[] audio) {
+            this.arrivalOffsetNanos = arrivalOffsetNanos;
+            this.arrivalEpochMicros = arrivalEpochMicros;
+            this.audio = audio;
+        }
+
+        /**
+         * Gets the arrival time relative to the start of the recording.
+         *
+         * @return the arrival offset in nanoseconds
+         */
+        public long getArrivalOffsetNanos() {
+            return arrivalOffsetNanos;
+        }
+
+        /**
+         * Gets the wall-clock arrival time.
+         *
+         * @return the arrival time in microseconds since the epoch
+         */
+        public long getArrivalEpochMicros() {
+            return arrivalEpochMicros;
+        }
+
+        /**
+         * Gets the audio bytes of the frame.
+         *
+         * @return the audio
+         */
+        public byte[] getAudio() {
+            return audio;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.bentham.voiceagent.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits long 16-bit PCM recordings into overlapping segments at pauses, so the segments can
+ * be transcribed separately and their transcripts stitched back together.
+ *
+ * <p>The audio is measured in 20 ms frames. A frame is silent when it is within the margin of
+ * the recording's noise floor, taken as its 10th percentile frame level, so the split adapts
+ * to the recording's gain and background noise; it must also be the margin below the 90th
+ * percentile, the level of speech, so speech without pauses has no silent frames at all. A
+ * pause is a run of silent frames at least the minimum silence long. Each cut is made in the
+ * middle of the longest pause between half the target segment length and the maximum,
+ * preferring the one nearest the target; where there is no pause, the audio is cut at the
+ * target length and the overlap covers the word that was cut.</p>
+ *
+ * <p>Every segment owns the audio between its two cuts and extends by the overlap on either
+ * side, so a word near a cut is heard whole by at least one segment.</p>
+ */
+final class SilenceSplitter {
+
+    private static final int FRAME_MS = 20;
+    private static final double SILENCE_FLOOR_DB = -100.0;
+
+    private final int sampleRate;
+    private final int frameSamples;
+    private final int targetFrames;
+    private final int maxFrames;
+    private final int minSilenceFrames;
+    private final double silenceMarginDb;
+    private final int overlapSamples;
+
+    /**
+     * Creates a new splitter.
+     *
+     * @param sampleRate the audio sample rate in Hz
+     * @param targetSegmentMs the segment length to aim for
+     * @param maxSegmentMs the longest a segment may be, overlap aside
+     * @param minSilenceMs the shortest pause a cut may be made in
+     * @param silenceMarginDb how far above the noise floor a frame still counts as silent
+     * @param overlapMs how far each segment extends past its cuts
+     */
+    SilenceSplitter(int sampleRate, int targetSegmentMs, int maxSegmentMs, int minSilenceMs,
+                    double silenceMarginDb, int overlapMs) {
+        if (targetSegmentMs < 2 * FRAME_MS || maxSegmentMs < targetSegmentMs) {
+            throw new IllegalArgumentException("Maximum segment length must be at least the target length");
+        }
+        this.sampleRate = sampleRate;
+        this.frameSamples = sampleRate * FRAME_MS / 1000;
+        this.targetFrames = targetSegmentMs / FRAME_MS;
+        this.maxFrames = maxSegmentMs / FRAME_MS;
+        this.minSilenceFrames = Math.max(1, minSilenceMs / FRAME_MS);
+        this.silenceMarginDb = silenceMarginDb;
+        this.overlapSamples = (int) ((long) sampleRate * overlapMs / 1000);
+    }
+
+    /**
+     * Splits a recording held in memory.
+     *
+     * @param pcm the audio, as 16-bit little-endian mono PCM
+     * @return the segments in order; a single segment if the audio is no longer than the maximum
+     */
+    List<Segment> split(byte[] pcm) {
+        LevelMeter meter = meter();
+        meter.write(pcm, 0, pcm.length);
+        return split(meter);
+    }
+
+    /**
+     * Creates a meter to measure a recording with as it is read, so it need not be held.
+     *
+     * @return the meter
+     */
+    LevelMeter meter() {
+        return new LevelMeter(frameSamples);
+    }
+
+    /**
+     * Splits a recording that has been measured.
+     *
+     * @param meter the meter the whole recording was written to
+     * @return the segments in order; a single segment if the audio is no longer than the maximum
+     */
+    List<Segment> split(LevelMeter meter) {
+        double[] levels = meter.levels();
+        long totalSamples = meter.getSamples();
+        if (totalSamples > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Recording is too long to split: " + totalSamples + " samples");
+        }
+        boolean[] silent = silentFrames(levels);
+
+        List<Integer> cuts = new ArrayList<>();
+        cuts.add(0);
+        int position = 0;
+        while (levels.length - position > maxFrames) {
+            int cut = chooseCut(silent, position);
+            cuts.add(cut);
+            position = cut;
+        }
+
+        List<Segment> segments = new ArrayList<>(cuts.size());
+        for (int i = 0; i < cuts.size(); i++) {
+            int ownedStart = cuts.get(i) * frameSamples;
+            int ownedEnd = i + 1 < cuts.size() ? cuts.get(i + 1) * frameSamples : (int) totalSamples;
+            segments.add(new Segment(i, Math.max(0, ownedStart - overlapSamples),
+                    (int) Math.min(totalSamples, ownedEnd + overlapSamples), ownedStart, ownedEnd));
+        }
+        return segments;
+    }
+
+    /**
+     * Gets the sample rate the splitter measures segments in.
+     *
+     * @return the sample rate in Hz
+     */
+    int getSampleRate() {
+        return sampleRate;
+    }
+
+    private boolean[] silentFrames(double[] levels) {
+        boolean[] silent = new boolean[levels.length];
+        if (levels.length == 0) {
+            return silent;
+        }
+        double[] sorted = levels.clone();
+        Arrays.sort(sorted);
+        double threshold = Math.min(sorted[sorted.length / 10] + silenceMarginDb,
+                sorted[sorted.length * 9 / 10] - silenceMarginDb);
+        for (int i = 0; i < levels.length; i++) {
+            silent[i] = levels[i] <= threshold;
+        }
+        return silent;
+    }
+
+    /**
+     * Chooses where to end the segment starting at a frame.
+     *
+     * @return the frame the next segment starts at
+     */
+    private int chooseCut(boolean[] silent, int position) {
+        int windowStart = position + Math.max(1, targetFrames / 2);
+        int windowEnd = position + maxFrames;
+        int target = position + targetFrames;
+
+        int bestCut = target;
+        int bestLength = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        int run = windowStart;
+        while (run < windowEnd) {
+            if (!silent[run]) {
+                run++;
+                continue;
+            }
+            int runEnd = run;
+            while (runEnd < windowEnd && silent[runEnd]) {
+                runEnd++;
+            }
+            int length = runEnd - run;
+            int cut = (run + runEnd) / 2;
+            int distance = Math.abs(cut - target);
+            if (length >= minSilenceFrames
+                    && (length > bestLength || (length == bestLength && distance < bestDistance))) {
+                bestCut = cut;
+                bestLength = length;
+                bestDistance = distance;
+            }
+            run = runEnd;
+        }
+        return bestCut;
+    }
+
+    /**
+     * Measures the level of each frame of a recording written to it in pieces of any size.
+     */
+    static final class LevelMeter {
+
+        private final int frameSamples;
+        private double[] levels = new double[1024];
+        private int frames;
+        private long samples;
+        private double sumSquares;
+        private int frameFill;
+        private int pendingByte = -1;
+
+        private LevelMeter(int frameSamples) {
+            this.frameSamples = frameSamples;
+        }
+
+        /**
+         * Measures the next piece of the recording.
+         *
+         * @param pcm 16-bit little-endian PCM; a piece may end halfway through a sample
+         * @param offset the first byte to measure
+         * @param length the number of bytes to measure
+         */
+        void write(byte[] pcm, int offset, int length) {
+            int position = offset;
+            int end = offset + length;
+            if (pendingByte >= 0 && position < end) {
+                add((short) (pendingByte | (pcm[position++] << 8)));
+                pendingByte = -1;
+            }
+            for (; position + 1 < end; position += 2) {
+                add((short) ((pcm[position] & 0xff) | (pcm[position + 1] << 8)));
+            }
+            if (position < end) {
+                pendingByte = pcm[position] & 0xff;
+            }
+        }
+
+        /**
+         * Gets the number of samples measured.
+         *
+         * @return the samples
+         */
+        long getSamples() {
+            return samples;
+        }
+
+        private void add(short sample) {
+            double value = sample / 32768.0;
+            sumSquares += value * value;
+            samples++;
+            if (++frameFill == frameSamples) {
+                endFrame();
+            }
+        }
+
+        private void endFrame() {
+            double meanSquare = sumSquares / frameFill;
+            if (frames == levels.length) {
+                levels = Arrays.copyOf(levels, frames * 2);
+            }
+            levels[frames++] = meanSquare > 0 ? Math.max(SILENCE_FLOOR_DB, 10 * Math.log10(meanSquare)) : SILENCE_FLOOR_DB;
+            sumSquares = 0;
+            frameFill = 0;
+        }
+
+        private double[] levels() {
+            if (frameFill > 0) {
+                endFrame();
+            }
+            return Arrays.copyOf(levels, frames);
+        }
+    }
+
+    /**
+     * A stretch of the recording to transcribe on its own, in samples.
+     */
+    static final class Segment {
+
+        private final int index;
+        private final int startSample;
+        private final int endSample;
+        private final int ownedStartSample;
+        private final int ownedEndSample;
+
+        Segment(int index, int startSample, int endSample, int ownedStartSample, int ownedEndSample) {
+            this.index = index;
+            this.startSample = startSample;
+            this.endSample = endSample;
+            this.ownedStartSample = ownedStartSample;
+            this.ownedEndSample = ownedEndSample;
+        }
+
+        /**
+         * Gets the segment's position in the recording.
+         *
+         * @return the index, from 0
+         */
+        int getIndex() {
+            return index;
+        }
+
+        /**
+         * Gets the first sample sent for the segment, overlap included.
+         *
+         * @return the start sample
+         */
+        int getStartSample() {
+            return startSample;
+        }
+
+        /**
+         * Gets the sample after the last one sent for the segment, overlap included.
+         *
+         * @return the end sample
+         */
+        int getEndSample() {
+            return endSample;
+        }
+
+        /**
+         * Gets the cut the segment's own audio starts at.
+         *
+         * @return the owned start sample
+         */
+        int getOwnedStartSample() {
+            return ownedStartSample;
+        }
+
+        /**
+         * Gets the cut the segment's own audio ends at.
+         *
+         * @return the owned end sample
+         */
+        int getOwnedEndSample() {
+            return ownedEndSample;
+        }
+
+        /**
+         * Copies the segment's audio, overlap included, out of the recording.
+         *
+         * @param pcm the recording as 16-bit PCM
+         * @return the segment's audio
+         */
+        byte[] audio(byte[] pcm) {
+            return Arrays.copyOfRange(pcm, startSample * 2, endSample * 2);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.bentham.voiceagent.service.impl;
+
+/**
+ * The per-sample and per-bin loops of {@link AudioPreprocessor}. Implementations are stateless
+ * and thread-safe; each loop covers indexes {@code 0} to {@code n - 1} unless a start is given.
+ */
+interface SpectralKernels {
+
+    /**
+     * Computes {@code out[i] = a[i] * b[i]}.
+     */
+    void multiply(float[] a, float[] b, float[] out, int n);
+
+    /**
+     * Computes {@code acc[i] += a[i] * b[i]}.
+     */
+    void multiplyAdd(float[] a, float[] b, float[] acc, int n);
+
+    /**
+     * Computes the power of each bin, {@code out[i] = re[i] * re[i] + im[i] * im[i]}.
+     */
+    void power(float[] re, float[] im, float[] out, int n);
+
+    /**
+     * Moves each noise estimate towards the power of its bin: by the fraction {@code rise} when
+     * the power is above it and {@code fall} when below.
+     */
+    void trackNoise(float[] power, float[] noise, float rise, float fall, int n);
+
+    /**
+     * Computes the spectral subtraction gain of each bin, {@code 1 - overSubtraction * noise / power}
+     * limited to {@code floor}, and lets a gain fall by at most the factor {@code release} per call
+     * so suppression does not flutter between frames.
+     */
+    void suppressionGain(float[] power, float[] noise, float[] gain, float overSubtraction, float floor,
+                         float release, int n);
+
+    /**
+     * Scales each bin by its gain.
+     */
+    void applyGain(float[] re, float[] im, float[] gain, int n);
+
+    /**
+     * Computes the sum of {@code x[i] * x[i]}.
+     */
+    float sumOfSquares(float[] x, int n);
+
+    /**
+     * Scales {@code x[i]} by a gain moving linearly from {@code start} by {@code step} per
+     * sample, and clips the result to between {@code -limit} and {@code limit}.
+     */
+    void ramp(float[] x, float start, float step, float limit, int n);
+}
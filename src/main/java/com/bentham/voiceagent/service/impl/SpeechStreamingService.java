@@ -0,0 +1,459 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.SpeechStreamingConfig;
+import com.bentham.voiceagent.model.SpeechFormat;
+import com.bentham.voiceagent.service.SpeechSynthesisService;
+import com.bentham.voiceagent.util.CompletableFutures;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers synthesized speech to clients chunk by chunk as Polly produces it.
+ *
+ * <p>Each delivery reads the synthesized stream on its own thread and hands every chunk to a
+ * {@link ChunkSink} as soon as it is read, so the client starts playing before the clip is
+ * complete. Clips up to {@code voice.speech-streaming.max-cached-clip-bytes} are kept once
+ * fully delivered, keyed by a clip ID derived from the text, voice and format, so repeats are
+ * served without Polly and byte ranges of them can be requested. Clips pre-rendered by bulk jobs
+ * are kept in a store of their own, bounded by {@code voice.speech-streaming.prerendered-max-bytes},
+ * so a large job is not evicted by the clips delivered on demand; both are served alike.</p>
+ *
+ * <p>Metrics: {@code voice.speech.first.chunk} records the time from request to first chunk
+ * sent, tagged with the format and whether the clip came from the cache;
+ * {@code voice.speech.deliveries} counts deliveries by outcome;
+ * {@code voice.speech.prerendered.bytes} gauges the size of the pre-rendered clips kept.</p>
+ */
+@Service
+public class SpeechStreamingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpeechStreamingService.class);
+
+    /**
+     * Receives audio chunks in order. A chunk is not reused after it is sent.
+     */
+    public interface ChunkSink {
+
+        void send(byte[] chunk) throws IOException;
+    }
+
+    /**
+     * A fully delivered clip.
+     */
+    public static final class Clip {
+
+        private final String id;
+        private final SpeechFormat format;
+        private final byte[] audio;
+
+        Clip(String id, SpeechFormat format, byte[] audio) {
+            this.id = id;
+            this.format = format;
+            this.audio = audio;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public SpeechFormat getFormat() {
+            return format;
+        }
+
+        public byte[] getAudio() {
+            return audio;
+        }
+    }
+
+    /**
+     * The outcome of a completed delivery.
+     */
+    public static final class Delivery {
+
+        private final String clipId;
+        private final long bytes;
+        private final boolean cached;
+
+        Delivery(String clipId, long bytes, boolean cached) {
+            this.clipId = clipId;
+            this.bytes = bytes;
+            this.cached = cached;
+        }
+
+        public String getClipId() {
+            return clipId;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Checks if the clip was served from the cache rather than synthesized.
+         *
+         * @return true for a cached clip
+         */
+        public boolean isCached() {
+            return cached;
+        }
+    }
+
+    private final SpeechSynthesisService speechSynthesisService;
+    private final SpeechStreamingConfig config;
+    private final MeterRegistry meterRegistry;
+
+    // Guarded by itself; least recently used first
+    private final LinkedHashMap<String, Clip> clips;
+
+    // Guarded by itself; least recently put first
+    private final LinkedHashMap<String, Clip> prerenderedClips = new LinkedHashMap<>();
+    // Guarded by prerenderedClips
+    private long prerenderedBytes;
+
+    private final ExecutorService deliveryExecutor = Executors.newCachedThreadPool(new DeliveryThreadFactory());
+
+    @Autowired
+    public SpeechStreamingService(SpeechSynthesisService speechSynthesisService, SpeechStreamingConfig config,
+                                  MeterRegistry meterRegistry) {
+        this.speechSynthesisService = speechSynthesisService;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        int cacheSize = config.getClipCacheSize();
+        this.clips = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Clip> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        Gauge.builder("voice.speech.prerendered.bytes", this, SpeechStreamingService::getPrerenderedBytes)
+                .description("Size of the clips pre-rendered by bulk jobs that are kept")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Gets the ID a clip is cached under.
+     *
+     * @param text the text spoken
+     * @param voiceId the voice it is spoken with
+     * @param format the audio format
+     * @return the clip ID
+     */
+    public static String clipId(String text, String voiceId, SpeechFormat format) {
+        return digest(voiceId + '\n' + format.getValue() + '\n' + text);
+    }
+
+    /**
+     * Gets the ID an SSML clip is kept under. SSML clips are only pre-rendered by bulk
+     * jobs, never streamed, and their IDs are kept apart from those of text clips.
+     *
+     * @param ssml the SSML spoken
+     * @param voiceId the voice it is spoken with
+     * @param format the audio format
+     * @return the clip ID
+     */
+    public static String ssmlClipId(String ssml, String voiceId, SpeechFormat format) {
+        return digest("ssml\n" + voiceId + '\n' + format.getValue() + '\n' + ssml);
+    }
+
+    private static String digest(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Gets a cached clip.
+     *
+     * @param clipId the clip ID
+     * @return the clip, or null if it is not cached
+     */
+    public Clip getCachedClip(String clipId) {
+        synchronized (prerenderedClips) {
+            Clip clip = prerenderedClips.get(clipId);
+            if (clip != null) {
+                return clip;
+            }
+        }
+        synchronized (clips) {
+            return clips.get(clipId);
+        }
+    }
+
+    /**
+     * Keeps a clip pre-rendered by a bulk job so it is served without Polly. The clip becomes
+     * the most recently put; once the store is over its size, the least recently put clips are
+     * dropped.
+     *
+     * @param text the text spoken
+     * @param voiceId the voice it is spoken with
+     * @param format the audio format
+     * @param audio the whole clip
+     * @return the kept clip, or null if it is larger than
+     *         {@code voice.speech-streaming.max-cached-clip-bytes}
+     */
+    public Clip putPrerenderedClip(String text, String voiceId, SpeechFormat format, byte[] audio) {
+        return putPrerenderedClip(clipId(text, voiceId, format), format, audio);
+    }
+
+    /**
+     * Keeps a clip pre-rendered by a bulk job under the given ID, such as one from
+     * {@link #ssmlClipId}, bounding the store as the text version does.
+     *
+     * @param clipId the clip ID
+     * @param format the audio format
+     * @param audio the whole clip
+     * @return the kept clip, or null if it is larger than
+     *         {@code voice.speech-streaming.max-cached-clip-bytes}
+     */
+    public Clip putPrerenderedClip(String clipId, SpeechFormat format, byte[] audio) {
+        if (audio.length > config.getMaxCachedClipBytes() || audio.length > config.getPrerenderedMaxBytes()) {
+            return null;
+        }
+        Clip clip = new Clip(clipId, format, audio);
+        synchronized (prerenderedClips) {
+            Clip replaced = prerenderedClips.remove(clip.getId());
+            if (replaced != null) {
+                prerenderedBytes -= replaced.getAudio().length;
+            }
+            prerenderedClips.put(clip.getId(), clip);
+            prerenderedBytes += audio.length;
+            Iterator<Clip> eldest = prerenderedClips.values().iterator();
+            while (prerenderedBytes > config.getPrerenderedMaxBytes()) {
+                prerenderedBytes -= eldest.next().getAudio().length;
+                eldest.remove();
+            }
+        }
+        return clip;
+    }
+
+    /**
+     * Gets the most pre-rendered clip audio kept at once.
+     *
+     * @return the pre-rendered clip store size in bytes
+     */
+    public long getPrerenderedMaxBytes() {
+        return config.getPrerenderedMaxBytes();
+    }
+
+    /**
+     * Gets the size of the pre-rendered clips kept.
+     *
+     * @return the size in bytes
+     */
+    public long getPrerenderedBytes() {
+        synchronized (prerenderedClips) {
+            return prerenderedBytes;
+        }
+    }
+
+    /**
+     * Synthesizes text, or takes it from the cache, and sends it to a sink as it arrives.
+     * Cancelling the returned future stops the delivery and cancels the Polly request.
+     *
+     * @param text the text to speak
+     * @param voiceId the voice to speak it with
+     * @param format the audio format
+     * @param sink receives the audio chunks in order
+     * @return a future completed once the whole clip has been sent; it fails if synthesis fails
+     *         or the sink throws
+     */
+    public CompletableFuture<Delivery> stream(String text, String voiceId, SpeechFormat format, ChunkSink sink) {
+        long startNanos = System.nanoTime();
+        String clipId = clipId(text, voiceId, format);
+        Clip cached = getCachedClip(clipId);
+        DeliveryTask task = new DeliveryTask(clipId, format, sink, startNanos);
+        CompletableFuture<Delivery> delivery;
+        if (cached != null) {
+            delivery = task.run(() -> task.sendCached(cached));
+        } else {
+            CompletableFuture<InputStream> speech = speechSynthesisService.synthesizeSpeech(text, voiceId, format.getValue());
+            delivery = CompletableFutures.propagateCancellation(
+                    speech.thenCompose(audio -> task.run(() -> task.sendStreamed(audio))), speech);
+        }
+        delivery.whenComplete((result, error) -> {
+            if (delivery.isCancelled()) {
+                task.cancel();
+            }
+            String outcome = error == null ? "completed" : delivery.isCancelled() ? "cancelled" : "failed";
+            meterRegistry.counter("voice.speech.deliveries", "outcome", outcome).increment();
+        });
+        return delivery;
+    }
+
+    /**
+     * Stops delivery threads.
+     */
+    @PreDestroy
+    public void shutdown() {
+        deliveryExecutor.shutdownNow();
+    }
+
+    private interface DeliveryStep {
+
+        Delivery run() throws IOException;
+    }
+
+    /**
+     * Sends one clip. Cancelling closes the Polly stream, which is how a blocked read is interrupted.
+     */
+    private class DeliveryTask {
+
+        private final String clipId;
+        private final SpeechFormat format;
+        private final ChunkSink sink;
+        private final long startNanos;
+        private volatile boolean cancelled;
+        private volatile InputStream audio;
+        private boolean firstChunkSent;
+
+        DeliveryTask(String clipId, SpeechFormat format, ChunkSink sink, long startNanos) {
+            this.clipId = clipId;
+            this.format = format;
+            this.sink = sink;
+            this.startNanos = startNanos;
+        }
+
+        CompletableFuture<Delivery> run(DeliveryStep step) {
+            CompletableFuture<Delivery> result = new CompletableFuture<>();
+            try {
+                deliveryExecutor.execute(() -> {
+                    try {
+                        result.complete(step.run());
+                    } catch (IOException | RuntimeException e) {
+                        result.completeExceptionally(e);
+                    } finally {
+                        closeAudio();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                closeAudio();
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+
+        Delivery sendCached(Clip clip) throws IOException {
+            byte[] audio = clip.getAudio();
+            int chunkBytes = config.getChunkBytes();
+            for (int offset = 0; offset < audio.length && !cancelled; offset += chunkBytes) {
+                send(Arrays.copyOfRange(audio, offset, Math.min(audio.length, offset + chunkBytes)), true);
+            }
+            return new Delivery(clipId, audio.length, true);
+        }
+
+        Delivery sendStreamed(InputStream stream) throws IOException {
+            audio = stream;
+            if (cancelled) {
+                closeAudio();
+            }
+            int maxCachedBytes = config.getMaxCachedClipBytes();
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            byte[] buffer = new byte[config.getChunkBytes()];
+            long total = 0;
+            int read;
+            try {
+                // read rather than readNBytes, so each chunk goes out as soon as Polly sends it
+                while ((read = stream.read(buffer)) != -1) {
+                    if (read == 0) {
+                        continue;
+                    }
+                    byte[] chunk = Arrays.copyOf(buffer, read);
+                    send(chunk, false);
+                    total += read;
+                    if (copy != null) {
+                        if (total <= maxCachedBytes) {
+                            copy.writeBytes(chunk);
+                        } else {
+                            copy = null;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (cancelled) {
+                    return new Delivery(clipId, total, false);
+                }
+                throw e;
+            }
+            if (copy != null && !cancelled) {
+                synchronized (clips) {
+                    clips.put(clipId, new Clip(clipId, format, copy.toByteArray()));
+                }
+            }
+            return new Delivery(clipId, total, false);
+        }
+
+        private void send(byte[] chunk, boolean fromCache) throws IOException {
+            sink.send(chunk);
+            if (!firstChunkSent) {
+                firstChunkSent = true;
+                Timer.builder("voice.speech.first.chunk")
+                        .description("Time from a speech request to its first audio chunk being sent")
+                        .tag("format", format.getValue())
+                        .tag("source", fromCache ? "cache" : "polly")
+                        .publishPercentiles(0.5, 0.99)
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            closeAudio();
+        }
+
+        private void closeAudio() {
+            InputStream stream = audio;
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    logger.debug("Error closing speech stream", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Thread factory for delivery threads.
+     */
+    private static class DeliveryThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "voice-speech-delivery-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
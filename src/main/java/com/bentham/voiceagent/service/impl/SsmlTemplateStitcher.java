@@ -0,0 +1,334 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.util.Mp3Frames;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Synthesizes SSML templates by joining separately synthesized segments.
+ *
+ * <p>A template is SSML whose {@code <speak>} element contains one or more
+ * {@code <static>...</static>} elements. Static segments are synthesized once per voice and
+ * format and kept in a least-recently-used cache; only the text between them is synthesized
+ * for each request. MP3 segments are joined at frame boundaries and PCM segments are
+ * concatenated, so audio is never decoded or re-encoded. Formats that cannot be joined this
+ * way are synthesized whole.</p>
+ *
+ * <p>The returned stream is available as soon as the first segment is, and reading blocks on
+ * later segments until they arrive.</p>
+ */
+class SsmlTemplateStitcher {
+
+    /**
+     * Synthesizes one SSML document to encoded audio.
+     */
+    interface SegmentSynthesizer {
+
+        CompletableFuture<byte[]> synthesize(String ssml, String voiceId);
+    }
+
+    private static final Pattern SPEAK = Pattern.compile("^\\s*(<speak\\b[^>]*>)(.*)</speak>\\s*$", Pattern.DOTALL);
+    private static final Pattern STATIC = Pattern.compile("<static>(.*?)</static>", Pattern.DOTALL);
+
+    private final int cacheSize;
+
+    // Guarded by itself; rendered static segments by voice, format and SSML
+    private final LinkedHashMap<String, CompletableFuture<Rendered>> cache;
+
+    SsmlTemplateStitcher(int cacheSize) {
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Rendered>> eldest) {
+                return size() > SsmlTemplateStitcher.this.cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Checks if SSML is a template with static segments.
+     *
+     * @param ssml the SSML to check
+     * @return true if the SSML contains a {@code <static>} element inside {@code <speak>}
+     */
+    static boolean isTemplate(String ssml) {
+        Matcher speak = SPEAK.matcher(ssml);
+        return speak.matches() && STATIC.matcher(speak.group(2)).find();
+    }
+
+    /**
+     * Removes the {@code <static>} markers from a template, leaving plain SSML.
+     *
+     * @param ssml the template
+     * @return the SSML without static markers
+     */
+    static String flatten(String ssml) {
+        return STATIC.matcher(ssml).replaceAll(match -> Matcher.quoteReplacement(match.group(1)));
+    }
+
+    /**
+     * Checks if audio in a format can be joined without re-encoding.
+     *
+     * @param outputFormat the Polly output format
+     * @return true for MP3 and PCM
+     */
+    static boolean canStitch(String outputFormat) {
+        return "mp3".equals(outputFormat) || "pcm".equals(outputFormat);
+    }
+
+    /**
+     * Synthesizes a template, reusing cached static segments.
+     *
+     * @param ssml the template
+     * @param voiceId the voice to synthesize with
+     * @param outputFormat the Polly output format, which must be one {@link #canStitch} accepts
+     * @param synthesizer synthesizes each segment
+     * @return a future completed with the joined audio once its first segment is ready
+     */
+    CompletableFuture<InputStream> synthesize(String ssml, String voiceId, String outputFormat,
+                                              SegmentSynthesizer synthesizer) {
+        List<CompletableFuture<Rendered>> parts = new ArrayList<>();
+        List<CompletableFuture<Rendered>> dynamicParts = new ArrayList<>();
+        for (Segment segment : split(ssml)) {
+            if (segment.isStatic) {
+                parts.add(staticSegment(segment.ssml, voiceId, outputFormat, synthesizer));
+            } else {
+                CompletableFuture<Rendered> part = render(synthesizer.synthesize(segment.ssml, voiceId), outputFormat);
+                parts.add(part);
+                dynamicParts.add(part);
+            }
+        }
+        if (parts.isEmpty()) {
+            return CompletableFuture.completedFuture(InputStream.nullInputStream());
+        }
+
+        SegmentedInputStream stream = new SegmentedInputStream(parts, dynamicParts);
+        CompletableFuture<InputStream> speech = parts.get(0).thenApply(first -> stream);
+        speech.whenComplete((result, error) -> {
+            // Nobody will read the stream, so stop synthesizing the rest of it
+            if (error != null) {
+                stream.cancelRemaining();
+            }
+        });
+        return speech;
+    }
+
+    /**
+     * Synthesizes the static segments of a template into the cache ahead of use.
+     *
+     * @param ssml the template
+     * @param voiceId the voice to synthesize with
+     * @param outputFormat the Polly output format
+     * @param synthesizer synthesizes each segment
+     * @return a future completed once every static segment is cached
+     */
+    CompletableFuture<Void> prerender(String ssml, String voiceId, String outputFormat,
+                                      SegmentSynthesizer synthesizer) {
+        return CompletableFuture.allOf(split(ssml).stream()
+                .filter(segment -> segment.isStatic)
+                .map(segment -> staticSegment(segment.ssml, voiceId, outputFormat, synthesizer))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Gets the number of cached static segments.
+     *
+     * @return the cache size
+     */
+    int getCachedSegmentCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private CompletableFuture<Rendered> staticSegment(String ssml, String voiceId, String outputFormat,
+                                                      SegmentSynthesizer synthesizer) {
+        String key = voiceId + '\n' + outputFormat + '\n' + ssml;
+        CompletableFuture<Rendered> rendered;
+        synchronized (cache) {
+            rendered = cache.get(key);
+            if (rendered != null) {
+                return rendered;
+            }
+            // Cached before it completes, so concurrent requests share one synthesis
+            rendered = new CompletableFuture<>();
+            cache.put(key, rendered);
+        }
+
+        CompletableFuture<Rendered> segment = rendered;
+        render(synthesizer.synthesize(ssml, voiceId), outputFormat).whenComplete((result, error) -> {
+            if (error != null) {
+                synchronized (cache) {
+                    cache.remove(key, segment);
+                }
+                segment.completeExceptionally(error);
+            } else {
+                segment.complete(result);
+            }
+        });
+        return segment;
+    }
+
+    private static CompletableFuture<Rendered> render(CompletableFuture<byte[]> audio, String outputFormat) {
+        CompletableFuture<Rendered> rendered = audio.thenApply(bytes -> {
+            if (!"mp3".equals(outputFormat)) {
+                return new Rendered(bytes, null);
+            }
+            try {
+                Mp3Frames.Clip clip = Mp3Frames.parse(bytes);
+                return new Rendered(clip.getFrames(), clip);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+        rendered.whenComplete((result, error) -> {
+            if (rendered.isCancelled()) {
+                audio.cancel(true);
+            }
+        });
+        return rendered;
+    }
+
+    private static List<Segment> split(String ssml) {
+        Matcher speak = SPEAK.matcher(ssml);
+        if (!speak.matches()) {
+            throw new IllegalArgumentException("SSML template must be a single <speak> element");
+        }
+        String open = speak.group(1);
+        String body = speak.group(2);
+
+        List<Segment> segments = new ArrayList<>();
+        Matcher matcher = STATIC.matcher(body);
+        int position = 0;
+        while (matcher.find()) {
+            addSegment(segments, open, body.substring(position, matcher.start()), false);
+            addSegment(segments, open, matcher.group(1), true);
+            position = matcher.end();
+        }
+        addSegment(segments, open, body.substring(position), false);
+        return segments;
+    }
+
+    private static void addSegment(List<Segment> segments, String open, String body, boolean isStatic) {
+        if (!body.isBlank()) {
+            segments.add(new Segment(open + body + "</speak>", isStatic));
+        }
+    }
+
+    private static final class Segment {
+
+        private final String ssml;
+        private final boolean isStatic;
+
+        Segment(String ssml, boolean isStatic) {
+            this.ssml = ssml;
+            this.isStatic = isStatic;
+        }
+    }
+
+    private static final class Rendered {
+
+        private final byte[] audio;
+        // The frame format of MP3 audio; null for PCM
+        private final Mp3Frames.Clip clip;
+
+        Rendered(byte[] audio, Mp3Frames.Clip clip) {
+            this.audio = audio;
+            this.clip = clip;
+        }
+    }
+
+    /**
+     * Reads the segments in order, waiting for each to be synthesized. Only dynamic segments are
+     * cancelled when the stream is closed; static ones are shared through the cache.
+     */
+    private static final class SegmentedInputStream extends InputStream {
+
+        private final List<CompletableFuture<Rendered>> parts;
+        private final List<CompletableFuture<Rendered>> dynamicParts;
+        private Mp3Frames.Clip format;
+        private int partIndex = -1;
+        private byte[] current = new byte[0];
+        private int position;
+        private boolean closed;
+
+        SegmentedInputStream(List<CompletableFuture<Rendered>> parts, List<CompletableFuture<Rendered>> dynamicParts) {
+            this.parts = parts;
+            this.dynamicParts = dynamicParts;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (length == 0) {
+                return 0;
+            }
+            while (position == current.length) {
+                if (partIndex + 1 == parts.size()) {
+                    return -1;
+                }
+                partIndex++;
+                current = next(parts.get(partIndex)).audio;
+                position = 0;
+            }
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return closed ? 0 : current.length - position;
+        }
+
+        private Rendered next(CompletableFuture<Rendered> part) throws IOException {
+            Rendered rendered;
+            try {
+                rendered = part.join();
+            } catch (CancellationException e) {
+                throw new IOException("Speech segment was cancelled", e);
+            } catch (CompletionException e) {
+                cancelRemaining();
+                throw new IOException("Could not synthesize speech segment", e.getCause());
+            }
+            if (rendered.clip != null && rendered.clip.getFrameCount() > 0) {
+                if (format == null) {
+                    format = rendered.clip;
+                } else if (!format.isCompatibleWith(rendered.clip)) {
+                    cancelRemaining();
+                    throw new IOException("Speech segments have different MP3 formats and cannot be joined");
+                }
+            }
+            return rendered;
+        }
+
+        void cancelRemaining() {
+            dynamicParts.forEach(part -> part.cancel(true));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            cancelRemaining();
+        }
+    }
+}
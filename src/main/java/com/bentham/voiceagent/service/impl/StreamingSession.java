@@ -0,0 +1,30 @@
+package com.bentham.voiceagent.service.impl;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The transcription behind one session of {@link AmazonTranscribeService#startStreamingTranscription()}.
+ */
+interface StreamingSession {
+
+    /**
+     * Sends an audio chunk to be transcribed.
+     *
+     * @param audioChunk the audio data
+     */
+    void addAudioChunk(byte[] audioChunk);
+
+    /**
+     * Gets the latest transcription result.
+     *
+     * @return the latest transcription
+     */
+    String getLatestTranscription();
+
+    /**
+     * Ends the audio without waiting for the transcription to finish.
+     *
+     * @return a future completed once the last results have arrived
+     */
+    CompletableFuture<Void> stopStreaming();
+}
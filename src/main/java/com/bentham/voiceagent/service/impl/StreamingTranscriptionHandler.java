@@ -2,12 +2,15 @@ package com.bentham.voiceagent.service.impl;
 
 import com.bentham.voiceagent.config.TranscribeConfig;
 import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.util.VoiceEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
@@ -16,15 +19,22 @@ import java.util.function.Consumer;
  * 
  * Note: In a production environment, this would integrate with AWS Transcribe Streaming API.
  * For now, we'll use a simplified implementation for demonstration purposes.
+ *
+ * <p>Queueing and dequeueing each chunk are recorded as {@link VoiceEvents.ChunkEnqueue} and
+ * {@link VoiceEvents.ChunkDequeue} flight recorder events, the latter with the time the chunk waited.</p>
  */
-public class StreamingTranscriptionHandler {
+public class StreamingTranscriptionHandler implements StreamingSession {
 
     private static final Logger logger = LoggerFactory.getLogger(StreamingTranscriptionHandler.class);
     
+    // How long the streaming loop waits for audio before re-checking whether it should stop
+    private static final long POLL_TIMEOUT_MS = 100;
+    
     private final String sessionId;
     private final TranscribeConfig config;
     private final Consumer<TranscriptionResult> transcriptionConsumer;
-    private final BlockingQueue<byte[]> audioQueue = new LinkedBlockingQueue<>();
+    private final Executor executor;
+    private final BlockingQueue<QueuedChunk> audioQueue = new LinkedBlockingQueue<>();
     
     private CompletableFuture<Void> streamingFuture;
     private volatile boolean isRunning = false;
@@ -37,11 +47,15 @@ public class StreamingTranscriptionHandler {
      * @param sessionId unique identifier for this streaming session
      * @param config transcribe configuration
      * @param transcriptionConsumer consumer for transcription results
+     * @param executor executor that runs the streaming loop; the loop occupies one thread for the
+     *                 lifetime of the session, so this must not be a small shared pool
      */
-    public StreamingTranscriptionHandler(String sessionId, TranscribeConfig config, Consumer<TranscriptionResult> transcriptionConsumer) {
+    public StreamingTranscriptionHandler(String sessionId, TranscribeConfig config,
+                                         Consumer<TranscriptionResult> transcriptionConsumer, Executor executor) {
         this.sessionId = sessionId;
         this.config = config;
         this.transcriptionConsumer = transcriptionConsumer;
+        this.executor = executor;
     }
     
     /**
@@ -63,11 +77,22 @@ public class StreamingTranscriptionHandler {
                 logger.info("Started streaming transcription for session: {}", sessionId);
                 
                 while (isRunning) {
-                    // Take audio chunk from queue (blocks if queue is empty)
-                    byte[] audioChunk = audioQueue.take();
+                    // Wait for the next audio chunk, waking up periodically so a stop request is noticed
+                    QueuedChunk queued = audioQueue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    if (queued == null) {
+                        continue;
+                    }
+                    
+                    VoiceEvents.ChunkDequeue dequeued = new VoiceEvents.ChunkDequeue();
+                    if (dequeued.isEnabled()) {
+                        dequeued.sessionId = sessionId;
+                        dequeued.bytes = queued.audio.length;
+                        dequeued.queueWait = System.nanoTime() - queued.enqueuedNanos;
+                        dequeued.commit();
+                    }
                     
                     // Process the audio chunk
-                    processAudioChunk(audioChunk);
+                    processAudioChunk(queued.audio);
                     
                     // Simulate some processing time
                     Thread.sleep(100);
@@ -83,7 +108,7 @@ public class StreamingTranscriptionHandler {
                 isRunning = false;
                 logger.info("Stopped streaming transcription for session: {}", sessionId);
             }
-        });
+        }, executor);
         
         return streamingFuture;
     }
@@ -131,13 +156,21 @@ public class StreamingTranscriptionHandler {
      *
      * @param audioChunk the audio data to process
      */
+    @Override
     public void addAudioChunk(byte[] audioChunk) {
         if (!isRunning) {
             throw new IllegalStateException("Streaming is not active for session: " + sessionId);
         }
         
         try {
-            audioQueue.put(audioChunk);
+            audioQueue.put(new QueuedChunk(audioChunk, System.nanoTime()));
+            VoiceEvents.ChunkEnqueue enqueued = new VoiceEvents.ChunkEnqueue();
+            if (enqueued.isEnabled()) {
+                enqueued.sessionId = sessionId;
+                enqueued.bytes = audioChunk.length;
+                enqueued.queueDepth = audioQueue.size();
+                enqueued.commit();
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             logger.warn("Interrupted while adding audio chunk for session: {}", sessionId);
@@ -149,22 +182,37 @@ public class StreamingTranscriptionHandler {
      *
      * @return the latest transcription
      */
+    @Override
     public String getLatestTranscription() {
         return latestTranscription;
     }
     
     /**
      * Stops the streaming transcription.
+     *
+     * @return a future completed when streaming has ended
      */
-    public void stopStreaming() {
+    @Override
+    public CompletableFuture<Void> stopStreaming() {
         isRunning = false;
         
         // Clear the queue to unblock any waiting threads
         audioQueue.clear();
         
-        // Wait for the streaming to complete
-        if (streamingFuture != null) {
-            streamingFuture.join();
+        return streamingFuture != null ? streamingFuture : CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * An audio chunk and when it was queued.
+     */
+    private static class QueuedChunk {
+        
+        private final byte[] audio;
+        private final long enqueuedNanos;
+        
+        QueuedChunk(byte[] audio, long enqueuedNanos) {
+            this.audio = audio;
+            this.enqueuedNanos = enqueuedNanos;
         }
     }
 }
@@ -0,0 +1,60 @@
+package com.bentham.voiceagent.service.impl;
+
+/**
+ * A word or punctuation mark of a final Transcribe result, with its time in the stream.
+ */
+final class TimedWord {
+
+    private final String content;
+    private final boolean punctuation;
+    private final double startSeconds;
+    private final double endSeconds;
+
+    TimedWord(String content, boolean punctuation, double startSeconds, double endSeconds) {
+        this.content = content;
+        this.punctuation = punctuation;
+        this.startSeconds = startSeconds;
+        this.endSeconds = endSeconds;
+    }
+
+    /**
+     * Gets the text of the word or punctuation mark.
+     *
+     * @return the content
+     */
+    String getContent() {
+        return content;
+    }
+
+    /**
+     * Checks if this is a punctuation mark, which follows the preceding word without a space.
+     *
+     * @return true for punctuation, false for a word
+     */
+    boolean isPunctuation() {
+        return punctuation;
+    }
+
+    /**
+     * Gets when the word starts, from the start of the stream.
+     *
+     * @return the start time in seconds
+     */
+    double getStartSeconds() {
+        return startSeconds;
+    }
+
+    /**
+     * Gets when the word ends, from the start of the stream.
+     *
+     * @return the end time in seconds
+     */
+    double getEndSeconds() {
+        return endSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return content + "@" + startSeconds + "-" + endSeconds;
+    }
+}
@@ -0,0 +1,357 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.TranscribeConfig;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Opens Amazon Transcribe streams ahead of demand, so a streaming session can send its first
+ * audio without waiting for the TLS handshake, the HTTP/2 connection and the stream setup.
+ *
+ * <p>A stream is warm once the SDK starts reading its audio. Transcribe ends a stream that
+ * receives no audio for 15 seconds, so streams older than {@code aws.transcribe.pool.max-idle-age-ms}
+ * are cancelled and replaced; a stream that never received audio is not billed. The number kept
+ * open follows the rate at which sessions arrive: enough for the sessions expected while a
+ * replacement is being opened, between {@code min-idle} and {@code max-idle}.</p>
+ *
+ * <p>A session that finds no warm stream takes one that is still opening, or opens its own.
+ * Either way, audio sent before the stream is ready is buffered and sent in order once the SDK
+ * reads it, so the start of the first sentence is not lost.</p>
+ *
+ * <p>Metrics: {@code transcribe.session.first.byte} records the time from a session starting
+ * to its first audio frame being read by the stream, and {@code transcribe.pool.claims} counts
+ * sessions, both tagged {@code stream} with {@code warm}, {@code opening} or {@code cold};
+ * {@code transcribe.pool.expired} counts streams replaced unused; {@code transcribe.pool.idle}
+ * and {@code transcribe.pool.target} gauge the unclaimed streams and the number wanted.</p>
+ */
+@Service
+public class TranscribeStreamPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranscribeStreamPool.class);
+
+    // Weight of the latest sample in the arrival rate and setup time averages
+    private static final double SMOOTHING = 0.2;
+
+    // Results only arrive after a session has claimed the stream and sent audio
+    private static final String UNCLAIMED_SESSION = "unclaimed";
+
+    private final TranscribeStreamingUpstream upstream;
+    private final TranscribeConfig config;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService refiller;
+
+    // Unclaimed streams, oldest first; guarded by this
+    private final Deque<PooledStream> idle = new ArrayDeque<>();
+    private final AtomicInteger arrivals = new AtomicInteger();
+    private volatile double arrivalsPerSecond;
+    private volatile double setupSeconds = 0.5;
+    private volatile int targetSize;
+    private volatile boolean running;
+
+    private final Counter expired;
+
+    @Autowired
+    public TranscribeStreamPool(TranscribeStreamingUpstream upstream, TranscribeConfig config,
+                                MeterRegistry meterRegistry) {
+        this.upstream = upstream;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.expired = meterRegistry.counter("transcribe.pool.expired");
+        Gauge.builder("transcribe.pool.idle", this, TranscribeStreamPool::getIdleCount)
+                .description("Transcribe streams open and waiting for a session")
+                .register(meterRegistry);
+        Gauge.builder("transcribe.pool.target", this, TranscribeStreamPool::getTargetSize)
+                .description("Transcribe streams the pool is keeping open")
+                .register(meterRegistry);
+
+        if (isEnabled()) {
+            running = true;
+            targetSize = Math.max(0, config.getPoolMinIdle());
+            refiller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "voice-transcribe-pool");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refiller.scheduleWithFixedDelay(this::refill, config.getPoolRefillIntervalMs(),
+                    config.getPoolRefillIntervalMs(), TimeUnit.MILLISECONDS);
+        } else {
+            refiller = null;
+        }
+    }
+
+    /**
+     * Checks if sessions should take their streams from the pool.
+     *
+     * @return true if the pool is enabled
+     */
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(config.getPoolEnabled());
+    }
+
+    /**
+     * Gives a session a stream: a warm one if there is one, then one still opening, otherwise a
+     * new one.
+     *
+     * @param sessionId the session the results are attributed to
+     * @param resultConsumer receives the session's results
+     * @return the session's stream
+     */
+    StreamingSession claim(String sessionId, Consumer<TranscriptionResult> resultConsumer) {
+        arrivals.incrementAndGet();
+        PooledStream stream = null;
+        String kind = "cold";
+        synchronized (this) {
+            idle.removeIf(candidate -> candidate.finished.isDone());
+            for (PooledStream candidate : idle) {
+                if (candidate.ready) {
+                    stream = candidate;
+                    kind = "warm";
+                    break;
+                }
+            }
+            if (stream == null && !idle.isEmpty()) {
+                stream = idle.peekFirst();
+                kind = "opening";
+            }
+            if (stream != null) {
+                idle.remove(stream);
+            }
+        }
+        if (stream == null) {
+            stream = new PooledStream();
+            stream.claim(sessionId, resultConsumer, kind);
+            stream.open();
+        } else {
+            stream.claim(sessionId, resultConsumer, kind);
+        }
+        meterRegistry.counter("transcribe.pool.claims", "stream", kind).increment();
+        logger.debug("Session {} claimed a {} Transcribe stream", sessionId, kind);
+        return stream;
+    }
+
+    /**
+     * Gets the number of streams open and waiting for a session.
+     *
+     * @return the idle stream count
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Gets the number of streams the pool is keeping open.
+     *
+     * @return the target idle stream count
+     */
+    public int getTargetSize() {
+        return targetSize;
+    }
+
+    /**
+     * Stops refilling the pool and cancels the streams no session has claimed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (refiller == null) {
+            return;
+        }
+        running = false;
+        refiller.shutdownNow();
+        List<PooledStream> unclaimed;
+        synchronized (this) {
+            unclaimed = new ArrayList<>(idle);
+            idle.clear();
+        }
+        unclaimed.forEach(PooledStream::cancel);
+    }
+
+    /**
+     * Replaces expired streams, resizes the pool to the recent arrival rate and opens streams
+     * up to the new size.
+     */
+    void refill() {
+        try {
+            double intervalSeconds = config.getPoolRefillIntervalMs() / 1000.0;
+            double rate = arrivals.getAndSet(0) / intervalSeconds;
+            arrivalsPerSecond = SMOOTHING * rate + (1 - SMOOTHING) * arrivalsPerSecond;
+            // Sessions expected to arrive before a stream opened now is ready
+            double wanted = Math.ceil(arrivalsPerSecond * (setupSeconds + intervalSeconds));
+            int target = (int) Math.max(config.getPoolMinIdle(), Math.min(config.getPoolMaxIdle(), wanted));
+            targetSize = target;
+
+            long maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(config.getPoolMaxIdleAgeMs());
+            long now = System.nanoTime();
+            List<PooledStream> stale = new ArrayList<>();
+            int missing;
+            synchronized (this) {
+                Iterator<PooledStream> streams = idle.iterator();
+                while (streams.hasNext()) {
+                    PooledStream stream = streams.next();
+                    // Oldest first, so streams beyond the target are the ones nearest to expiring
+                    if (now - stream.openedNanos >= maxAgeNanos || idle.size() > target) {
+                        streams.remove();
+                        stale.add(stream);
+                    }
+                }
+                missing = running ? target - idle.size() : 0;
+            }
+            for (PooledStream stream : stale) {
+                expired.increment();
+                stream.cancel();
+            }
+            for (int i = 0; i < missing; i++) {
+                PooledStream stream = new PooledStream();
+                synchronized (this) {
+                    idle.addLast(stream);
+                }
+                stream.open();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not refill the Transcribe stream pool", e);
+        }
+    }
+
+    private synchronized void discard(PooledStream stream) {
+        idle.remove(stream);
+    }
+
+    /**
+     * One Transcribe stream. Audio is buffered until the SDK reads it, and results are passed
+     * to the session once one has claimed the stream.
+     */
+    private class PooledStream implements StreamingSession {
+
+        private final Sinks.Many<byte[]> audio = Sinks.many().unicast().onBackpressureBuffer();
+        private final CompletableFuture<Void> finished = new CompletableFuture<>();
+        private final AtomicBoolean firstFrameRead = new AtomicBoolean();
+        private final long openedNanos = System.nanoTime();
+
+        private volatile boolean ready;
+        private volatile String sessionId;
+        private volatile Consumer<TranscriptionResult> resultConsumer;
+        private volatile long claimedNanos;
+        private volatile Timer firstByteTimer;
+        private volatile String latestTranscription = "";
+        private volatile Disposable call;
+
+        void open() {
+            Flux<byte[]> frames = audio.asFlux()
+                    .doOnRequest(requested -> onReady())
+                    .doOnNext(frame -> onFrameRead());
+            call = upstream.transcribe(UNCLAIMED_SESSION, frames)
+                    .subscribe(this::onResult, this::onError, () -> finished.complete(null));
+        }
+
+        void claim(String sessionId, Consumer<TranscriptionResult> resultConsumer, String kind) {
+            this.sessionId = sessionId;
+            this.resultConsumer = resultConsumer;
+            this.firstByteTimer = Timer.builder("transcribe.session.first.byte")
+                    .description("Time from a streaming session starting to its first audio reaching Transcribe")
+                    .tag("stream", kind)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            this.claimedNanos = System.nanoTime();
+        }
+
+        @Override
+        public synchronized void addAudioChunk(byte[] audioChunk) {
+            if (audioChunk.length == 0) {
+                return;
+            }
+            if (audio.tryEmitNext(audioChunk).isFailure() && !finished.isDone()) {
+                logger.warn("Dropped audio chunk for session {}: Transcribe stream not accepting audio", sessionId);
+            }
+        }
+
+        @Override
+        public String getLatestTranscription() {
+            return latestTranscription;
+        }
+
+        @Override
+        public CompletableFuture<Void> stopStreaming() {
+            synchronized (this) {
+                audio.tryEmitComplete();
+            }
+            // A copy, so the timeout does not complete the stream's own future
+            return finished.copy()
+                    .orTimeout(config.getPoolStopTimeoutMs(), TimeUnit.MILLISECONDS)
+                    .handle((ignored, error) -> {
+                        if (error instanceof TimeoutException) {
+                            logger.warn("Transcribe stream for session {} did not finish within {} ms",
+                                    sessionId, config.getPoolStopTimeoutMs());
+                            cancel();
+                        } else if (error != null) {
+                            logger.debug("Transcribe stream for session {} failed", sessionId, error);
+                        }
+                        return null;
+                    });
+        }
+
+        void cancel() {
+            Disposable subscription = call;
+            if (subscription != null) {
+                subscription.dispose();
+            }
+            finished.complete(null);
+        }
+
+        private void onReady() {
+            if (!ready) {
+                ready = true;
+                double seconds = (System.nanoTime() - openedNanos) / 1e9;
+                setupSeconds = SMOOTHING * seconds + (1 - SMOOTHING) * setupSeconds;
+            }
+        }
+
+        private void onFrameRead() {
+            if (firstFrameRead.compareAndSet(false, true)) {
+                firstByteTimer.record(System.nanoTime() - claimedNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void onResult(TranscriptionResult result) {
+            latestTranscription = result.getTranscript();
+            Consumer<TranscriptionResult> consumer = resultConsumer;
+            if (consumer != null) {
+                consumer.accept(new TranscriptionResult(sessionId, result.getTranscript(), result.isPartial(),
+                        result.getConfidence()));
+            }
+        }
+
+        private void onError(Throwable throwable) {
+            if (sessionId == null) {
+                discard(this);
+                logger.debug("Unclaimed Transcribe stream failed", throwable);
+            } else {
+                logger.warn("Transcribe stream failed for session: {}", sessionId, throwable);
+            }
+            finished.completeExceptionally(throwable);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.TranscribeConfig;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.util.VoiceTracing;
+import io.opentelemetry.api.trace.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.transcribestreaming.TranscribeStreamingAsyncClient;
+import software.amazon.awssdk.services.transcribestreaming.model.Alternative;
+import software.amazon.awssdk.services.transcribestreaming.model.AudioEvent;
+import software.amazon.awssdk.services.transcribestreaming.model.AudioStream;
+import software.amazon.awssdk.services.transcribestreaming.model.Item;
+import software.amazon.awssdk.services.transcribestreaming.model.ItemType;
+import software.amazon.awssdk.services.transcribestreaming.model.LanguageCode;
+import software.amazon.awssdk.services.transcribestreaming.model.MediaEncoding;
+import software.amazon.awssdk.services.transcribestreaming.model.Result;
+import software.amazon.awssdk.services.transcribestreaming.model.StartStreamTranscriptionRequest;
+import software.amazon.awssdk.services.transcribestreaming.model.StartStreamTranscriptionResponse;
+import software.amazon.awssdk.services.transcribestreaming.model.StartStreamTranscriptionResponseHandler;
+import software.amazon.awssdk.services.transcribestreaming.model.TranscriptEvent;
+import software.amazon.awssdk.services.transcribestreaming.model.TranscriptResultStream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Streams audio to Amazon Transcribe and its results back as reactive streams.
+ *
+ * <p>The audio publisher is handed to the SDK, which requests frames only as fast as the HTTP/2
+ * stream can send them, and the SDK's result publisher is requested one event at a time as
+ * results are consumed. Demand therefore flows from the consumer of the results to Transcribe
+ * and from Transcribe to the source of the audio; no thread waits on the session.</p>
+ *
+ * <p>Each stream is a client span below the OpenTelemetry context the subscriber put in the
+ * Reactor context with {@link VoiceTracing#propagate}, tallying the audio it sent.</p>
+ */
+@Service
+public class TranscribeStreamingUpstream {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranscribeStreamingUpstream.class);
+
+    private final TranscribeStreamingAsyncClient client;
+    private final TranscribeConfig transcribeConfig;
+
+    @Autowired
+    public TranscribeStreamingUpstream(TranscribeStreamingAsyncClient client, TranscribeConfig transcribeConfig) {
+        this.client = client;
+        this.transcribeConfig = transcribeConfig;
+    }
+
+    /**
+     * Transcribes a stream of 16-bit PCM audio. The call starts on subscription; completing the
+     * audio ends the stream once Transcribe has returned its last results, and cancelling the
+     * results aborts the call.
+     *
+     * @param sessionId the session the results are attributed to
+     * @param audio the audio frames; empty frames are skipped, since Transcribe reads them as
+     *              the end of the audio
+     * @return the partial and final results in the order Transcribe sends them
+     */
+    public Flux<TranscriptionResult> transcribe(String sessionId, Flux<byte[]> audio) {
+        return stream(sessionId, audio, transcribeConfig.getSampleRate(), event -> toResults(sessionId, event));
+    }
+
+    /**
+     * Transcribes a stream of 16-bit PCM audio into the timed words of its final results, for
+     * stitching transcripts of segments of a recording together.
+     *
+     * @param sessionId the session the stream is attributed to
+     * @param audio the audio frames
+     * @param sampleRate the sample rate of the audio, which need not be the configured rate
+     * @return the words and punctuation of the final results, timed from the start of the audio
+     */
+    Flux<TimedWord> transcribeWords(String sessionId, Flux<byte[]> audio, int sampleRate) {
+        return stream(sessionId, audio, sampleRate, TranscribeStreamingUpstream::toWords);
+    }
+
+    private <T> Flux<T> stream(String sessionId, Flux<byte[]> audio, int sampleRate,
+                               Function<TranscriptResultStream, List<T>> mapper) {
+        return Flux.deferContextual(reactorContext -> {
+            Span span = VoiceTracing.startAwsSpan("TranscribeStreaming", "StartStreamTranscription",
+                    VoiceTracing.fromReactorContext(reactorContext));
+            span.setAttribute(VoiceTracing.SESSION_ID, sessionId);
+            VoiceTracing.AudioTally tally = VoiceTracing.tally(span);
+
+            StartStreamTranscriptionRequest request = StartStreamTranscriptionRequest.builder()
+                    .languageCode(LanguageCode.fromValue(transcribeConfig.getLanguageCode()))
+                    .mediaEncoding(MediaEncoding.PCM)
+                    .mediaSampleRateHertz(sampleRate)
+                    .build();
+            Flux<AudioStream> audioEvents = audio
+                    .filter(frame -> frame.length > 0)
+                    .<AudioStream>map(frame -> {
+                        if (tally != null) {
+                            tally.add(frame.length);
+                        }
+                        return AudioEvent.builder()
+                                .audioChunk(SdkBytes.fromByteArrayUnsafe(frame))
+                                .build();
+                    });
+
+            ResultStreamHandler handler = new ResultStreamHandler(sessionId);
+            Mono<Void> call = Mono.fromFuture(() -> client.startStreamTranscription(request, audioEvents, handler));
+            Flux<T> results = handler.events.asMono()
+                    .flatMapMany(publisher -> publisher)
+                    // One event at a time, so the SDK only reads as many events as are consumed
+                    .concatMapIterable(mapper, 1);
+            return results.mergeWith(call.then(Mono.<T>empty()))
+                    .doOnError(error -> VoiceTracing.recordFailure(span, error))
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            span.setAttribute(VoiceTracing.CANCELLED, true);
+                        }
+                        if (tally != null) {
+                            tally.recordOn(span);
+                        }
+                        span.end();
+                    });
+        });
+    }
+
+    private List<TranscriptionResult> toResults(String sessionId, TranscriptResultStream event) {
+        if (!(event instanceof TranscriptEvent transcriptEvent) || transcriptEvent.transcript() == null) {
+            return List.of();
+        }
+        boolean partialsWanted = Boolean.TRUE.equals(transcribeConfig.getEnablePartialResults());
+        List<TranscriptionResult> results = new ArrayList<>();
+        for (Result result : transcriptEvent.transcript().results()) {
+            boolean partial = Boolean.TRUE.equals(result.isPartial());
+            if (result.alternatives().isEmpty() || (partial && !partialsWanted)) {
+                continue;
+            }
+            Alternative best = result.alternatives().get(0);
+            results.add(new TranscriptionResult(sessionId, best.transcript(), partial,
+                    partial ? 0.0 : confidence(best)));
+        }
+        return results;
+    }
+
+    private static List<TimedWord> toWords(TranscriptResultStream event) {
+        if (!(event instanceof TranscriptEvent transcriptEvent) || transcriptEvent.transcript() == null) {
+            return List.of();
+        }
+        List<TimedWord> words = new ArrayList<>();
+        for (Result result : transcriptEvent.transcript().results()) {
+            if (Boolean.TRUE.equals(result.isPartial()) || result.alternatives().isEmpty()) {
+                continue;
+            }
+            for (Item item : result.alternatives().get(0).items()) {
+                double start = item.startTime() != null ? item.startTime() : 0.0;
+                double end = item.endTime() != null ? item.endTime() : start;
+                words.add(new TimedWord(item.content(), item.type() == ItemType.PUNCTUATION, start, end));
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Averages the confidence of the words of a final alternative.
+     */
+    private static double confidence(Alternative alternative) {
+        double sum = 0;
+        int words = 0;
+        for (Item item : alternative.items()) {
+            if (item.confidence() != null) {
+                sum += item.confidence();
+                words++;
+            }
+        }
+        return words > 0 ? sum / words : 0.0;
+    }
+
+    /**
+     * Hands the SDK's result publisher to the subscriber of the results.
+     */
+    private static class ResultStreamHandler implements StartStreamTranscriptionResponseHandler {
+
+        private final String sessionId;
+        private final Sinks.One<SdkPublisher<TranscriptResultStream>> events = Sinks.one();
+
+        ResultStreamHandler(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public void responseReceived(StartStreamTranscriptionResponse response) {
+            logger.debug("Transcribe stream {} opened for session {}", response.sessionId(), sessionId);
+        }
+
+        @Override
+        public void onEventStream(SdkPublisher<TranscriptResultStream> publisher) {
+            events.tryEmitValue(publisher);
+        }
+
+        @Override
+        public void exceptionOccurred(Throwable throwable) {
+            events.tryEmitError(throwable);
+        }
+
+        @Override
+        public void complete() {
+            events.tryEmitEmpty();
+        }
+    }
+}
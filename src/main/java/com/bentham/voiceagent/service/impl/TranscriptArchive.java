@@ -0,0 +1,370 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.model.TranscriptHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Durable, searchable archive of final transcripts.
+ *
+ * <p>Utterances are appended to the log of the active segment and indexed in memory. Once the
+ * log reaches the segment size the segment is sealed: its index is written next to the log as
+ * {@code segment-NNNNNN.idx} and memory-mapped, and a new segment is started. Sealed segments
+ * are never modified, so searching them takes no locks. When the archive is reopened, sealed
+ * segments are mapped as they are and the active segment's index is rebuilt from its log;
+ * a segment whose index was not written before a crash, or was written in an older format, is
+ * rebuilt and sealed. Segments are limited to {@link #MAX_SEGMENT_BYTES} so that their index,
+ * mapped as one buffer, stays well within the 2 GB a mapping can hold.</p>
+ *
+ * <p>A search walks the segments newest first and stops as soon as it has found more matches
+ * than it returns, so its cost depends on the hits asked for rather than on how common the
+ * terms are. The total it reports is exact only if it found no more than that.</p>
+ *
+ * <p>Only one thread may append; any number may search.</p>
+ */
+class TranscriptArchive implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranscriptArchive.class);
+
+    private static final Pattern LOG_FILE = Pattern.compile("segment-(\\d{6})\\.log");
+
+    static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    /**
+     * The matches of a search.
+     */
+    static final class Matches {
+
+        private final long total;
+        private final boolean exact;
+        private final List<TranscriptHit> hits;
+
+        Matches(long total, boolean exact, List<TranscriptHit> hits) {
+            this.total = total;
+            this.exact = exact;
+            this.hits = hits;
+        }
+
+        /**
+         * Gets the number of matches, which is the limit if more matched and counting stopped.
+         */
+        long getTotal() {
+            return total;
+        }
+
+        /**
+         * Checks if every match was counted, rather than counting having stopped at the limit.
+         */
+        boolean isExact() {
+            return exact;
+        }
+
+        List<TranscriptHit> getHits() {
+            return hits;
+        }
+    }
+
+    private final Path directory;
+    private final long segmentSizeBytes;
+
+    // Oldest first; replaced, never modified, so searches iterate a stable snapshot
+    private volatile List<Segment> segments;
+    // Guarded by this
+    private Segment active;
+
+    private TranscriptArchive(Path directory, long segmentSizeBytes, List<Segment> segments, Segment active) {
+        this.directory = directory;
+        this.segmentSizeBytes = segmentSizeBytes;
+        this.segments = segments;
+        this.active = active;
+    }
+
+    /**
+     * Opens the archive in a directory, creating it if needed and recovering any segments in it.
+     *
+     * @param directory the archive directory
+     * @param segmentSizeBytes the log size at which a segment is sealed
+     * @return the archive
+     * @throws IOException if the directory or a segment cannot be read
+     */
+    static TranscriptArchive open(Path directory, long segmentSizeBytes) throws IOException {
+        if (segmentSizeBytes <= TranscriptLog.HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSizeBytes);
+        }
+        if (segmentSizeBytes > MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Segment size larger than " + MAX_SEGMENT_BYTES + ": " + segmentSizeBytes);
+        }
+        Files.createDirectories(directory);
+        TreeMap<Integer, Path> logs = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = LOG_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    logs.put(Integer.parseInt(matcher.group(1)), file);
+                }
+            });
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        try {
+            Segment active = null;
+            for (Map.Entry<Integer, Path> entry : logs.entrySet()) {
+                int number = entry.getKey();
+                Path indexFile = indexFile(directory, number);
+                boolean indexed = Files.exists(indexFile);
+                if (indexed && SealedTranscriptIndex.isCurrentVersion(indexFile)) {
+                    segments.add(new Segment(number, TranscriptLog.openSealed(entry.getValue()),
+                            SealedTranscriptIndex.open(indexFile), null));
+                } else {
+                    Segment recovered = recover(number, entry.getValue());
+                    if (!indexed && number == logs.lastKey()) {
+                        active = recovered;
+                    } else {
+                        logger.info(indexed ? "Reindexing transcript segment {} in the current format"
+                                : "Sealing transcript segment {} left unsealed", number);
+                        recovered = seal(directory, recovered);
+                    }
+                    segments.add(recovered);
+                }
+            }
+            if (active == null) {
+                int number = logs.isEmpty() ? 0 : logs.lastKey() + 1;
+                active = newSegment(directory, number);
+                segments.add(active);
+            }
+            return new TranscriptArchive(directory, segmentSizeBytes, List.copyOf(segments), active);
+        } catch (IOException | RuntimeException e) {
+            for (Segment segment : segments) {
+                closeQuietly(segment);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Appends an utterance and seals the active segment if it is full.
+     *
+     * @param sessionId the session ID
+     * @param transcript the transcribed text
+     * @param confidence the confidence score
+     * @param timestamp when the utterance was transcribed
+     * @throws IOException if the utterance or a sealed index cannot be written
+     */
+    synchronized void append(String sessionId, String transcript, double confidence, Instant timestamp)
+            throws IOException {
+        long offset = active.log.append(sessionId, transcript, confidence, timestamp);
+        active.builder.add(offset, TranscriptIndex.tokenize(transcript));
+        if (active.log.size() >= segmentSizeBytes) {
+            roll();
+        }
+    }
+
+    /**
+     * Forces appended utterances to disk.
+     *
+     * @throws IOException if the utterances cannot be written
+     */
+    synchronized void force() throws IOException {
+        active.log.force();
+    }
+
+    /**
+     * Finds the utterances matching a query.
+     *
+     * @param query the query
+     * @param limit the maximum number of hits to return
+     * @return the number of matches, counted up to the limit, and the newest matches, newest first
+     * @throws IOException if a matching utterance cannot be read
+     */
+    Matches search(TranscriptQuery query, int limit) throws IOException {
+        List<Segment> snapshot = segments;
+        List<TranscriptHit> hits = new ArrayList<>(Math.min(limit, 256));
+        // One match past the limit shows there are more, without counting them all
+        long total = 0;
+        for (int s = snapshot.size() - 1; s >= 0 && total <= limit; s--) {
+            total += snapshot.get(s).search(query.getClauses(), limit + 1 - total, limit, hits);
+        }
+        return total > limit ? new Matches(limit, false, hits) : new Matches(total, true, hits);
+    }
+
+    /**
+     * Gets the number of utterances archived.
+     *
+     * @return the utterance count
+     */
+    long getUtteranceCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.index.getDocCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of segments, including the active one.
+     *
+     * @return the segment count
+     */
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        IOException failure = null;
+        for (Segment segment : segments) {
+            try {
+                segment.log.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void roll() throws IOException {
+        Segment sealed = seal(directory, active);
+        Segment next = newSegment(directory, active.number + 1);
+        List<Segment> updated = new ArrayList<>(segments);
+        updated.set(updated.size() - 1, sealed);
+        updated.add(next);
+        segments = List.copyOf(updated);
+        active = next;
+        logger.info("Sealed transcript segment {} with {} utterances", sealed.number, sealed.index.getDocCount());
+    }
+
+    private static Segment recover(int number, Path logFile) throws IOException {
+        TranscriptIndexBuilder builder = new TranscriptIndexBuilder();
+        TranscriptLog log = TranscriptLog.recover(logFile,
+                (offset, utterance) -> builder.add(offset, TranscriptIndex.tokenize(utterance.getTranscript())));
+        return new Segment(number, log, builder, builder);
+    }
+
+    private static Segment seal(Path directory, Segment segment) throws IOException {
+        segment.log.force();
+        Path indexFile = indexFile(directory, segment.number);
+        segment.builder.writeTo(indexFile);
+        return new Segment(segment.number, segment.log, SealedTranscriptIndex.open(indexFile), null);
+    }
+
+    private static Segment newSegment(Path directory, int number) throws IOException {
+        TranscriptIndexBuilder builder = new TranscriptIndexBuilder();
+        TranscriptLog log = TranscriptLog.create(directory.resolve(String.format("segment-%06d.log", number)));
+        return new Segment(number, log, builder, builder);
+    }
+
+    private static Path indexFile(Path directory, int number) {
+        return directory.resolve(String.format("segment-%06d.idx", number));
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.log.close();
+        } catch (IOException e) {
+            logger.debug("Error closing transcript segment {}", segment.number, e);
+        }
+    }
+
+    /**
+     * A segment's log and index. The builder is set only while the segment is active.
+     */
+    private static final class Segment {
+
+        private final int number;
+        private final TranscriptLog log;
+        private final TranscriptIndex index;
+        private final TranscriptIndexBuilder builder;
+
+        Segment(int number, TranscriptLog log, TranscriptIndex index, TranscriptIndexBuilder builder) {
+            this.number = number;
+            this.log = log;
+            this.index = index;
+            this.builder = builder;
+        }
+
+        /**
+         * Counts the matching utterances, newest first, up to {@code maxCount}, adding them to the
+         * hits until there are {@code limit}.
+         */
+        long search(List<List<String>> clauses, long maxCount, int limit, List<TranscriptHit> hits)
+                throws IOException {
+            TranscriptIndex.PostingList[][] postings = new TranscriptIndex.PostingList[clauses.size()][];
+            // Candidates come from the rarest term, since every clause must match
+            TranscriptIndex.PostingList rarest = null;
+            for (int c = 0; c < clauses.size(); c++) {
+                List<String> terms = clauses.get(c);
+                postings[c] = new TranscriptIndex.PostingList[terms.size()];
+                for (int t = 0; t < terms.size(); t++) {
+                    TranscriptIndex.PostingList list = index.getPostings(terms.get(t));
+                    if (list.size() == 0) {
+                        return 0;
+                    }
+                    postings[c][t] = list;
+                    if (rarest == null || list.size() < rarest.size()) {
+                        rarest = list;
+                    }
+                }
+            }
+
+            long total = 0;
+            for (int i = rarest.size() - 1; i >= 0 && total < maxCount; i--) {
+                int doc = rarest.doc(i);
+                if (matchesAll(postings, doc)) {
+                    total++;
+                    if (hits.size() < limit) {
+                        hits.add(log.read(index.getLogOffset(doc)));
+                    }
+                }
+            }
+            return total;
+        }
+
+        private static boolean matchesAll(TranscriptIndex.PostingList[][] postings, int doc) {
+            for (TranscriptIndex.PostingList[] phrase : postings) {
+                if (!matchesPhrase(phrase, doc)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean matchesPhrase(TranscriptIndex.PostingList[] phrase, int doc) {
+            int[] indexes = new int[phrase.length];
+            for (int t = 0; t < phrase.length; t++) {
+                indexes[t] = phrase[t].indexOf(doc);
+                if (indexes[t] < 0) {
+                    return false;
+                }
+            }
+            if (phrase.length == 1) {
+                return true;
+            }
+            TranscriptIndex.PostingList first = phrase[0];
+            for (int o = 0; o < first.positionCount(indexes[0]); o++) {
+                int start = first.position(indexes[0], o);
+                boolean matched = true;
+                for (int t = 1; t < phrase.length && matched; t++) {
+                    matched = phrase[t].hasPosition(indexes[t], start + t);
+                }
+                if (matched) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
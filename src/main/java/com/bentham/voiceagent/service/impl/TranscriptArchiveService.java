@@ -0,0 +1,246 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.TranscriptArchiveConfig;
+import com.bentham.voiceagent.model.TranscriptSearchResult;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.service.TranscriptionResultListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archives final transcripts and searches them.
+ *
+ * <p>Finals are queued by the streaming thread and written by a single background writer, so
+ * archiving never blocks the audio path: when the queue is full new finals are dropped and
+ * counted rather than waited for. The writer appends whatever has queued up in one batch and
+ * forces the log to disk at most every {@code voice.archive.flush-interval-ms}. Partial results
+ * are not archived.</p>
+ *
+ * <p>Metrics: {@code voice.archive.ingested} counts archived utterances and
+ * {@code voice.archive.dropped} those lost, tagged with the reason;
+ * {@code voice.archive.ingest.lag} records the time from transcription to the utterance being
+ * searchable; {@code voice.archive.query.latency} records search time;
+ * {@code voice.archive.queue.depth} and {@code voice.archive.utterances} gauge the backlog and
+ * archive size.</p>
+ */
+@Service
+public class TranscriptArchiveService implements TranscriptionResultListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranscriptArchiveService.class);
+
+    static final int MAX_SEARCH_LIMIT = 1000;
+    private static final int MAX_BATCH_SIZE = 512;
+
+    private final TranscriptArchiveConfig config;
+    private final TranscriptArchive archive;
+    private final BlockingQueue<TranscriptionResult> queue;
+    private final ExecutorService writer;
+    private volatile boolean running;
+
+    private final Counter ingested;
+    private final Counter droppedQueueFull;
+    private final Counter droppedWriteFailed;
+    private final Timer ingestLag;
+    private final Timer queryLatency;
+
+    @Autowired
+    public TranscriptArchiveService(TranscriptArchiveConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+        this.archive = Boolean.TRUE.equals(config.getEnabled()) ? openArchive() : null;
+
+        this.ingested = meterRegistry.counter("voice.archive.ingested");
+        this.droppedQueueFull = meterRegistry.counter("voice.archive.dropped", "reason", "queue-full");
+        this.droppedWriteFailed = meterRegistry.counter("voice.archive.dropped", "reason", "write-failed");
+        this.ingestLag = Timer.builder("voice.archive.ingest.lag")
+                .description("Time from a final transcript to it being searchable")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.queryLatency = Timer.builder("voice.archive.query.latency")
+                .description("Time taken by transcript searches")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("voice.archive.queue.depth", queue, BlockingQueue::size)
+                .description("Final transcripts waiting to be archived")
+                .register(meterRegistry);
+
+        if (archive != null) {
+            Gauge.builder("voice.archive.utterances", archive, TranscriptArchive::getUtteranceCount)
+                    .description("Utterances in the transcript archive")
+                    .register(meterRegistry);
+            running = true;
+            writer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "voice-archive-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writer.execute(this::writeLoop);
+        } else {
+            writer = null;
+        }
+    }
+
+    /**
+     * Checks if the archive is available.
+     *
+     * @return true if transcripts are being archived
+     */
+    public boolean isEnabled() {
+        return archive != null;
+    }
+
+    /**
+     * Queues a final result for archiving. Partial and empty results are ignored.
+     *
+     * @param result the transcription result
+     */
+    @Override
+    public void onResult(TranscriptionResult result) {
+        if (archive == null || result.isPartial() || result.getTranscript() == null
+                || result.getTranscript().isBlank()) {
+            return;
+        }
+        if (!queue.offer(result)) {
+            droppedQueueFull.increment();
+        }
+    }
+
+    /**
+     * Searches the archive. Words in double quotes are matched as a phrase; an utterance must
+     * contain every word and phrase to match.
+     *
+     * @param query the query, such as {@code refund "account number"}
+     * @param limit the maximum number of hits to return
+     * @return the number of matches, counted up to the limit, and the newest matching utterances
+     * @throws IllegalArgumentException if the query has no searchable words or the limit is out of range
+     * @throws IllegalStateException if the archive is disabled
+     * @throws IOException if a matching utterance cannot be read
+     */
+    public TranscriptSearchResult search(String query, int limit) throws IOException {
+        if (archive == null) {
+            throw new IllegalStateException("Transcript archive is disabled");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_SEARCH_LIMIT + ": " + limit);
+        }
+        TranscriptQuery parsed = TranscriptQuery.parse(query);
+        long startNanos = System.nanoTime();
+        TranscriptArchive.Matches matches = archive.search(parsed, limit);
+        long tookNanos = System.nanoTime() - startNanos;
+        queryLatency.record(tookNanos, TimeUnit.NANOSECONDS);
+        return new TranscriptSearchResult(query, matches.getTotal(), matches.isExact(), matches.getHits(),
+                TimeUnit.NANOSECONDS.toMicros(tookNanos));
+    }
+
+    /**
+     * Stops the writer once the queued transcripts are archived, and closes the archive.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (archive == null) {
+            return;
+        }
+        running = false;
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Transcript archive writer did not finish, {} transcripts not archived", queue.size());
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            archive.close();
+        } catch (IOException e) {
+            logger.warn("Could not close transcript archive", e);
+        }
+    }
+
+    private TranscriptArchive openArchive() {
+        Path directory = Path.of(config.getDirectory()).toAbsolutePath().normalize();
+        try {
+            TranscriptArchive opened = TranscriptArchive.open(directory, config.getSegmentSizeBytes());
+            logger.info("Opened transcript archive in {} with {} utterances in {} segments",
+                    directory, opened.getUtteranceCount(), opened.getSegmentCount());
+            return opened;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not open transcript archive in {}, transcripts will not be archived", directory, e);
+            return null;
+        }
+    }
+
+    private void writeLoop() {
+        List<TranscriptionResult> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getFlushIntervalMs());
+        long lastForceNanos = System.nanoTime();
+        boolean unforced = false;
+        while (running || !queue.isEmpty()) {
+            try {
+                TranscriptionResult first = queue.poll(config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    unforced |= append(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (unforced && System.nanoTime() - lastForceNanos >= flushIntervalNanos) {
+                unforced = !force();
+                lastForceNanos = System.nanoTime();
+            }
+        }
+        if (unforced) {
+            force();
+        }
+    }
+
+    private boolean append(List<TranscriptionResult> batch) {
+        boolean appended = false;
+        for (TranscriptionResult result : batch) {
+            try {
+                archive.append(result.getSessionId(), result.getTranscript(), result.getConfidence(),
+                        result.getTimestamp());
+                appended = true;
+                ingested.increment();
+                ingestLag.record(Duration.between(result.getTimestamp(), Instant.now()));
+            } catch (IOException | RuntimeException e) {
+                droppedWriteFailed.increment();
+                logger.warn("Could not archive transcript for session: {}", result.getSessionId(), e);
+            }
+        }
+        return appended;
+    }
+
+    private boolean force() {
+        try {
+            archive.force();
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not force transcript archive to disk", e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.bentham.voiceagent.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Inverted index of the utterances in one transcript archive segment. Utterances are numbered
+ * in the order they were appended; each term maps to the utterances containing it and the
+ * word positions it occurs at.
+ */
+interface TranscriptIndex {
+
+    /**
+     * Gets the number of utterances indexed.
+     *
+     * @return the utterance count
+     */
+    int getDocCount();
+
+    /**
+     * Gets where an utterance is stored in the segment log.
+     *
+     * @param doc the utterance number
+     * @return the byte offset of its record
+     */
+    long getLogOffset(int doc);
+
+    /**
+     * Gets the postings of a term.
+     *
+     * @param term a term as produced by {@link #tokenize}
+     * @return the postings, empty if the term does not occur
+     */
+    PostingList getPostings(String term);
+
+    /**
+     * Splits text into lower-case terms. Letters, digits and apostrophes inside words form
+     * terms; everything else separates them.
+     *
+     * @param text the text to split
+     * @return the terms in order
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            boolean wordChar = Character.isLetterOrDigit(c) || (c == '\'' && start >= 0);
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                addTerm(terms, text.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static void addTerm(List<String> terms, String word) {
+        int end = word.length();
+        while (end > 0 && word.charAt(end - 1) == '\'') {
+            end--;
+        }
+        if (end > 0) {
+            terms.add(word.substring(0, end).toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * The utterances a term occurs in, in ascending order, with its positions in each. A list
+     * may decode its postings as they are read, so it belongs to one search and is not
+     * thread-safe.
+     */
+    interface PostingList {
+
+        PostingList EMPTY = new ArrayPostingList(new int[0], new int[] {0}, new int[0]);
+
+        int size();
+
+        int doc(int index);
+
+        /**
+         * Finds a document in the list.
+         *
+         * @param doc the utterance number
+         * @return its index, or a negative value if the term does not occur in it
+         */
+        int indexOf(int doc);
+
+        /**
+         * Checks if the term occurs at a position in a document.
+         *
+         * @param index the document's index in this list
+         * @param position the word position
+         * @return true if the term is at that position
+         */
+        boolean hasPosition(int index, int position);
+
+        int positionCount(int index);
+
+        int position(int index, int occurrence);
+    }
+
+    /**
+     * Postings held in arrays, as the index of the active segment hands them out.
+     */
+    final class ArrayPostingList implements PostingList {
+
+        private final int[] docs;
+        // Positions of docs[i] are positions[positionStarts[i]] up to positions[positionStarts[i + 1]]
+        private final int[] positionStarts;
+        private final int[] positions;
+
+        ArrayPostingList(int[] docs, int[] positionStarts, int[] positions) {
+            this.docs = docs;
+            this.positionStarts = positionStarts;
+            this.positions = positions;
+        }
+
+        @Override
+        public int size() {
+            return docs.length;
+        }
+
+        @Override
+        public int doc(int index) {
+            return docs[index];
+        }
+
+        @Override
+        public int indexOf(int doc) {
+            return Arrays.binarySearch(docs, doc);
+        }
+
+        @Override
+        public boolean hasPosition(int index, int position) {
+            return Arrays.binarySearch(positions, positionStarts[index], positionStarts[index + 1], position) >= 0;
+        }
+
+        @Override
+        public int positionCount(int index) {
+            return positionStarts[index + 1] - positionStarts[index];
+        }
+
+        @Override
+        public int position(int index, int occurrence) {
+            return positions[positionStarts[index] + occurrence];
+        }
+    }
+}
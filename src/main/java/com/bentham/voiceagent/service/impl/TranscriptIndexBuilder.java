@@ -0,0 +1,228 @@
+package com.bentham.voiceagent.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of the segment being appended to. Once the segment is full the index is
+ * written out in the layout {@link SealedTranscriptIndex} reads.
+ *
+ * <p>Index file layout, all integers big-endian:</p>
+ * <pre>
+ * header:   int magic, int version, int docCount, int termCount,
+ *           long docTableOffset, long postingsOffset, long termTableOffset
+ * docs:     long logOffset per utterance
+ * postings: per term, the utterances containing it in blocks of BLOCK_SIZE:
+ *           skip:      per block: int lastDoc, int docsOffset, int positionsOffset
+ *           docs:      per block, per utterance: varint docDelta, varint frequency
+ *           positions: per block, per utterance: frequency * varint positionDelta
+ * terms:    in sorted order: short length, byte[length] UTF-8 term, int docFrequency, long postingsOffset
+ * </pre>
+ * <p>Postings are delta-encoded variable-length integers, so common terms in short utterances
+ * take a few bytes per occurrence. Block offsets are relative to the end of the term's skip
+ * table, and each block's first doc delta is taken from the previous block's last doc, so a
+ * reader can decode any block on its own and skip the positions unless it needs them. The
+ * whole file is mapped as one buffer, so it may not exceed 2 GB.</p>
+ */
+class TranscriptIndexBuilder implements TranscriptIndex {
+
+    static final int MAGIC = 0x42565449; // "BVTI"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 40;
+    static final int BLOCK_SIZE = 128;
+    static final int SKIP_ENTRY_BYTES = 3 * Integer.BYTES;
+
+    // Guarded by this
+    private final Map<String, TermPostings> terms = new HashMap<>();
+    private long[] logOffsets = new long[64];
+    private int docCount;
+
+    /**
+     * Adds the next utterance.
+     *
+     * @param logOffset where the utterance is stored in the segment log
+     * @param terms the utterance's terms in order
+     */
+    synchronized void add(long logOffset, List<String> terms) {
+        int doc = docCount;
+        if (doc == logOffsets.length) {
+            logOffsets = Arrays.copyOf(logOffsets, doc * 2);
+        }
+        logOffsets[doc] = logOffset;
+        docCount++;
+        for (int position = 0; position < terms.size(); position++) {
+            this.terms.computeIfAbsent(terms.get(position), term -> new TermPostings()).add(doc, position);
+        }
+    }
+
+    @Override
+    public synchronized int getDocCount() {
+        return docCount;
+    }
+
+    @Override
+    public synchronized long getLogOffset(int doc) {
+        return logOffsets[doc];
+    }
+
+    @Override
+    public synchronized PostingList getPostings(String term) {
+        TermPostings postings = terms.get(term);
+        return postings != null ? postings.snapshot() : PostingList.EMPTY;
+    }
+
+    /**
+     * Writes the index to a file, replacing it atomically once complete.
+     *
+     * @param file the index file
+     * @throws IOException if the file cannot be written
+     */
+    synchronized void writeTo(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        String[] sortedTerms = terms.keySet().toArray(new String[0]);
+        Arrays.sort(sortedTerms);
+        long[] postingsOffsets = new long[sortedTerms.length];
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CountingOutput output = new CountingOutput(channel);
+            output.data.write(new byte[HEADER_BYTES]);
+            long docTableOffset = output.position();
+            for (int doc = 0; doc < docCount; doc++) {
+                output.data.writeLong(logOffsets[doc]);
+            }
+            long postingsOffset = output.position();
+            for (int i = 0; i < sortedTerms.length; i++) {
+                postingsOffsets[i] = output.position();
+                terms.get(sortedTerms[i]).writeTo(output);
+            }
+            long termTableOffset = output.position();
+            for (int i = 0; i < sortedTerms.length; i++) {
+                byte[] bytes = sortedTerms[i].getBytes(StandardCharsets.UTF_8);
+                output.data.writeShort(bytes.length);
+                output.data.write(bytes);
+                output.data.writeInt(terms.get(sortedTerms[i]).docCount);
+                output.data.writeLong(postingsOffsets[i]);
+            }
+            output.data.flush();
+            if (output.position() >= Integer.MAX_VALUE) {
+                throw new IOException("Transcript index too large to map: " + file);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putInt(VERSION).putInt(docCount).putInt(sortedTerms.length)
+                    .putLong(docTableOffset).putLong(postingsOffset).putLong(termTableOffset)
+                    .flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Output stream over a channel that tracks how many bytes have been written.
+     */
+    static class CountingOutput {
+
+        private final DataOutputStream data;
+
+        CountingOutput(FileChannel channel) {
+            this.data = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        }
+
+        /**
+         * Gets the bytes written, which stops counting at {@link Integer#MAX_VALUE}.
+         */
+        long position() {
+            return data.size();
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    /**
+     * Growable postings of one term.
+     */
+    private static class TermPostings {
+
+        private int[] docs = new int[4];
+        private int[] positionStarts = new int[5];
+        private int[] positions = new int[4];
+        private int docCount;
+        private int positionCount;
+
+        void add(int doc, int position) {
+            if (docCount == 0 || docs[docCount - 1] != doc) {
+                if (docCount == docs.length) {
+                    docs = Arrays.copyOf(docs, docCount * 2);
+                    positionStarts = Arrays.copyOf(positionStarts, docCount * 2 + 1);
+                }
+                docs[docCount] = doc;
+                positionStarts[docCount] = positionCount;
+                docCount++;
+            }
+            if (positionCount == positions.length) {
+                positions = Arrays.copyOf(positions, positionCount * 2);
+            }
+            positions[positionCount++] = position;
+            positionStarts[docCount] = positionCount;
+        }
+
+        PostingList snapshot() {
+            return new ArrayPostingList(Arrays.copyOf(docs, docCount), Arrays.copyOf(positionStarts, docCount + 1),
+                    Arrays.copyOf(positions, positionCount));
+        }
+
+        void writeTo(CountingOutput output) throws IOException {
+            int blockCount = (docCount + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            int[] docsOffsets = new int[blockCount];
+            int[] positionsOffsets = new int[blockCount];
+            ByteArrayOutputStream docBytes = new ByteArrayOutputStream();
+            ByteArrayOutputStream positionBytes = new ByteArrayOutputStream();
+            int previousDoc = 0;
+            for (int i = 0; i < docCount; i++) {
+                if (i % BLOCK_SIZE == 0) {
+                    docsOffsets[i / BLOCK_SIZE] = docBytes.size();
+                    positionsOffsets[i / BLOCK_SIZE] = positionBytes.size();
+                }
+                writeVarInt(docBytes, docs[i] - previousDoc);
+                previousDoc = docs[i];
+                int start = positionStarts[i];
+                int end = positionStarts[i + 1];
+                writeVarInt(docBytes, end - start);
+                int previousPosition = 0;
+                for (int p = start; p < end; p++) {
+                    writeVarInt(positionBytes, positions[p] - previousPosition);
+                    previousPosition = positions[p];
+                }
+            }
+            for (int b = 0; b < blockCount; b++) {
+                output.data.writeInt(docs[Math.min(docCount, (b + 1) * BLOCK_SIZE) - 1]);
+                output.data.writeInt(docsOffsets[b]);
+                output.data.writeInt(docBytes.size() + positionsOffsets[b]);
+            }
+            docBytes.writeTo(output.data);
+            positionBytes.writeTo(output.data);
+        }
+    }
+}
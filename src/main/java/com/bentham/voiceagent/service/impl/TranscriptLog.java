@@ -0,0 +1,270 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.model.TranscriptHit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the utterances in one transcript archive segment.
+ *
+ * <p>Log layout, all integers big-endian:</p>
+ * <pre>
+ * header: int magic, int version
+ * record: int length, int crc32, byte[length] payload
+ * payload: long epochMillis, float confidence, short sessionIdLength, byte[] sessionId,
+ *          int transcriptLength, byte[] transcript
+ * </pre>
+ * <p>Strings are UTF-8. The checksum covers the payload, so a record torn by a crash is
+ * detected when the log is reopened and cut off along with anything after it.</p>
+ */
+class TranscriptLog implements AutoCloseable {
+
+    static final int MAGIC = 0x4256544C; // "BVTL"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int RECORD_HEADER_BYTES = 8;
+    private static final int MIN_PAYLOAD_BYTES = Long.BYTES + Float.BYTES + Short.BYTES + Integer.BYTES;
+
+    /**
+     * Receives the records found when a log is reopened.
+     */
+    interface Replay {
+
+        void record(long offset, TranscriptHit utterance);
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    // Guarded by this; only the writer appends
+    private long size;
+
+    private TranscriptLog(Path file, FileChannel channel, long size) {
+        this.file = file;
+        this.channel = channel;
+        this.size = size;
+    }
+
+    /**
+     * Creates an empty log for appending.
+     *
+     * @param file the log file, which must not exist
+     * @return the log
+     * @throws IOException if the file cannot be created
+     */
+    static TranscriptLog create(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            writeFully(channel, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip(), 0);
+            return new TranscriptLog(file, channel, HEADER_BYTES);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a log for reading only, as when its segment is sealed.
+     *
+     * @param file the log file
+     * @return the log
+     * @throws IOException if the file cannot be opened or is not a transcript log
+     */
+    static TranscriptLog openSealed(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            checkHeader(file, channel);
+            return new TranscriptLog(file, channel, channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reopens a log for appending, replaying its records and cutting off a torn tail.
+     *
+     * @param file the log file
+     * @param replay receives each intact record in order
+     * @return the log, positioned after the last intact record
+     * @throws IOException if the file cannot be read or is not a transcript log
+     */
+    static TranscriptLog recover(Path file, Replay replay) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            checkHeader(file, channel);
+            TranscriptLog log = new TranscriptLog(file, channel, channel.size());
+            long offset = HEADER_BYTES;
+            Record record;
+            while ((record = log.readIfIntact(offset)) != null) {
+                replay.record(offset, record.utterance);
+                offset += RECORD_HEADER_BYTES + record.length;
+            }
+            if (offset < log.size) {
+                channel.truncate(offset);
+                channel.force(true);
+            }
+            log.size = offset;
+            return log;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends an utterance. The record reaches the page cache but is only durable once
+     * {@link #force()} returns.
+     *
+     * @param sessionId the session ID
+     * @param transcript the transcribed text
+     * @param confidence the confidence score
+     * @param timestamp when the utterance was transcribed
+     * @return the offset of the record
+     * @throws IOException if the record cannot be written
+     */
+    synchronized long append(String sessionId, String transcript, double confidence, Instant timestamp)
+            throws IOException {
+        byte[] sessionBytes = sessionId.getBytes(StandardCharsets.UTF_8);
+        byte[] transcriptBytes = transcript.getBytes(StandardCharsets.UTF_8);
+        if (sessionBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Session ID too long: " + sessionBytes.length + " bytes");
+        }
+        int payloadLength = MIN_PAYLOAD_BYTES + sessionBytes.length + transcriptBytes.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payloadLength);
+        record.position(RECORD_HEADER_BYTES);
+        record.putLong(timestamp.toEpochMilli())
+                .putFloat((float) confidence)
+                .putShort((short) sessionBytes.length).put(sessionBytes)
+                .putInt(transcriptBytes.length).put(transcriptBytes);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_BYTES, payloadLength);
+        record.putInt(0, payloadLength).putInt(4, (int) crc.getValue());
+        record.flip();
+
+        long offset = size;
+        writeFully(channel, record, offset);
+        size += record.limit();
+        return offset;
+    }
+
+    /**
+     * Reads the utterance at an offset returned by {@link #append} or replay.
+     *
+     * @param offset the offset of the record
+     * @return the utterance
+     * @throws IOException if the record cannot be read or is damaged
+     */
+    TranscriptHit read(long offset) throws IOException {
+        Record record = readIfIntact(offset);
+        if (record == null) {
+            throw new IOException("Damaged transcript record at " + offset + " in " + file);
+        }
+        return record.utterance;
+    }
+
+    /**
+     * Gets the number of bytes in the log.
+     *
+     * @return the log size in bytes
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Forces appended records to disk.
+     *
+     * @throws IOException if the records cannot be written
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private Record readIfIntact(long offset) throws IOException {
+        long available = channel.size() - offset;
+        if (available < RECORD_HEADER_BYTES + MIN_PAYLOAD_BYTES) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        readFully(header, offset);
+        int length = header.getInt(0);
+        if (length < MIN_PAYLOAD_BYTES || length > available - RECORD_HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, offset + RECORD_HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, length);
+        if ((int) crc.getValue() != header.getInt(4)) {
+            return null;
+        }
+
+        payload.flip();
+        long epochMillis = payload.getLong();
+        float confidence = payload.getFloat();
+        byte[] sessionBytes = new byte[payload.getShort() & 0xFFFF];
+        payload.get(sessionBytes);
+        byte[] transcriptBytes = new byte[payload.getInt()];
+        payload.get(transcriptBytes);
+        return new Record(new TranscriptHit(new String(sessionBytes, StandardCharsets.UTF_8),
+                new String(transcriptBytes, StandardCharsets.UTF_8), confidence, Instant.ofEpochMilli(epochMillis)),
+                length);
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + file);
+            }
+        }
+    }
+
+    private static void checkHeader(Path file, FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Not a transcript log: " + file);
+            }
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a transcript log: " + file);
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported transcript log version " + header.getInt(4) + ": " + file);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * An intact record and its payload length.
+     */
+    private static class Record {
+
+        private final TranscriptHit utterance;
+        private final int length;
+
+        Record(TranscriptHit utterance, int length) {
+            this.utterance = utterance;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.bentham.voiceagent.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parsed transcript search. Words in double quotes form a phrase that must occur in that
+ * order; every other word is a clause of its own. An utterance matches when it satisfies every
+ * clause.
+ */
+final class TranscriptQuery {
+
+    private final List<List<String>> clauses;
+
+    private TranscriptQuery(List<List<String>> clauses) {
+        this.clauses = clauses;
+    }
+
+    /**
+     * Parses a query such as {@code refund "account number"}.
+     *
+     * @param query the query text
+     * @return the query
+     * @throws IllegalArgumentException if the query has no searchable words
+     */
+    static TranscriptQuery parse(String query) {
+        List<List<String>> clauses = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i <= query.length(); i++) {
+            if (i == query.length() || query.charAt(i) == '"') {
+                List<String> terms = TranscriptIndex.tokenize(query.substring(start, i));
+                if (quoted) {
+                    if (!terms.isEmpty()) {
+                        clauses.add(List.copyOf(terms));
+                    }
+                } else {
+                    terms.forEach(term -> clauses.add(List.of(term)));
+                }
+                quoted = !quoted;
+                start = i + 1;
+            }
+        }
+        if (clauses.isEmpty()) {
+            throw new IllegalArgumentException("Query has no searchable words: " + query);
+        }
+        return new TranscriptQuery(clauses);
+    }
+
+    /**
+     * Gets the clauses, each a term or a phrase of consecutive terms.
+     *
+     * @return the clauses
+     */
+    List<List<String>> getClauses() {
+        return clauses;
+    }
+}
@@ -0,0 +1,69 @@
+package com.bentham.voiceagent.service.impl;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Joins the transcripts of overlapping segments into one transcript.
+ *
+ * <p>Word times are moved from each segment's stream onto the recording's timeline. A word
+ * is kept by the segment that owns the audio at its midpoint, so a word heard by two segments
+ * in their overlap is kept once, and a word cut off at a segment's edge is dropped in favour
+ * of the neighbour that heard it whole. Punctuation goes with the word before it. As the two
+ * segments may place a word at the cut slightly differently, a word that repeats the last
+ * kept word and overlaps it in time is also dropped.</p>
+ */
+final class TranscriptStitcher {
+
+    private TranscriptStitcher() {
+    }
+
+    /**
+     * Stitches segment transcripts.
+     *
+     * @param segments the segments, in order
+     * @param words each segment's words, with times from the start of the segment's audio
+     * @param sampleRate the sample rate the segments are measured in
+     * @return the transcript of the whole recording
+     */
+    static String stitch(List<SilenceSplitter.Segment> segments, List<List<TimedWord>> words, int sampleRate) {
+        StringBuilder transcript = new StringBuilder();
+        TimedWord last = null;
+        for (int i = 0; i < segments.size(); i++) {
+            SilenceSplitter.Segment segment = segments.get(i);
+            double offset = (double) segment.getStartSample() / sampleRate;
+            double ownedStart = (double) segment.getOwnedStartSample() / sampleRate;
+            double ownedEnd = (double) segment.getOwnedEndSample() / sampleRate;
+            boolean keeping = false;
+            for (TimedWord word : words.get(i)) {
+                if (word.isPunctuation()) {
+                    if (keeping && transcript.length() > 0) {
+                        transcript.append(word.getContent());
+                    }
+                    continue;
+                }
+                double start = offset + word.getStartSeconds();
+                double end = offset + word.getEndSeconds();
+                double midpoint = (start + end) / 2;
+                keeping = midpoint >= ownedStart && midpoint < ownedEnd;
+                if (keeping && last != null && start < last.getEndSeconds()
+                        && normalize(word.getContent()).equals(normalize(last.getContent()))) {
+                    keeping = false;
+                }
+                if (!keeping) {
+                    continue;
+                }
+                if (transcript.length() > 0) {
+                    transcript.append(' ');
+                }
+                transcript.append(word.getContent());
+                last = new TimedWord(word.getContent(), false, start, end);
+            }
+        }
+        return transcript.toString();
+    }
+
+    private static String normalize(String word) {
+        return word.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,235 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.TranscribeConfig;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaces known misrecognitions of domain phrases, such as legal terms and case names, in final
+ * transcripts, so downstream language understanding does not spend a turn asking what was meant.
+ *
+ * <p>The dictionary at {@code aws.transcribe.vocabulary.dictionary} has one phrase per line,
+ * optionally followed by {@code =>} and the ways it is commonly misheard, separated by {@code |}:</p>
+ * <pre>
+ * habeas corpus =&gt; happy us corpus | habeas corpse
+ * </pre>
+ * <p>Lines starting with {@code #} are comments. The phrase itself is matched too, so its
+ * spelling and capitalization are made consistent. All phrases are compiled into one
+ * {@link PhraseAutomaton}, so the cost per transcript depends on its length and not on the size
+ * of the dictionary. A dictionary file is checked for changes every
+ * {@code aws.transcribe.vocabulary.reload-interval-ms} and swapped in once it compiles; a
+ * dictionary that fails to load leaves the previous one in place. Partial results are never
+ * changed, since the client replaces them moments later.</p>
+ *
+ * <p>Metrics: {@code transcribe.vocabulary.corrections} counts corrected final transcripts,
+ * {@code transcribe.vocabulary.reloads} counts dictionary loads tagged {@code outcome} with
+ * {@code success} or {@code failure}, and {@code transcribe.vocabulary.phrases} gauges the
+ * phrases in the current dictionary.</p>
+ */
+@Service
+public class VocabularyCorrector {
+
+    private static final Logger logger = LoggerFactory.getLogger(VocabularyCorrector.class);
+
+    private static final String CLASSPATH_PREFIX = "classpath:";
+    private static final String VARIANTS_SEPARATOR = "=>";
+
+    private final TranscribeConfig config;
+    private final MeterRegistry meterRegistry;
+    private final Counter corrections;
+    private final ScheduledExecutorService reloader;
+
+    private volatile PhraseAutomaton automaton = PhraseAutomaton.EMPTY;
+    // Modification time of the loaded dictionary file; only touched by the loading thread
+    private FileTime loadedModifiedTime;
+
+    @Autowired
+    public VocabularyCorrector(TranscribeConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.corrections = meterRegistry.counter("transcribe.vocabulary.corrections");
+        Gauge.builder("transcribe.vocabulary.phrases", this, corrector -> corrector.automaton.getPhraseCount())
+                .description("Phrases in the vocabulary correction dictionary")
+                .register(meterRegistry);
+
+        if (!isEnabled()) {
+            reloader = null;
+            return;
+        }
+        String dictionary = config.getVocabularyDictionary();
+        if (dictionary.startsWith(CLASSPATH_PREFIX)) {
+            loadResource(dictionary.substring(CLASSPATH_PREFIX.length()));
+            reloader = null;
+            return;
+        }
+        Path file = Path.of(dictionary);
+        reloadIfChanged(file);
+        int interval = config.getVocabularyReloadIntervalMs();
+        if (interval > 0) {
+            reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "voice-vocabulary-reload");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reloader.scheduleWithFixedDelay(() -> reloadIfChanged(file), interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            reloader = null;
+        }
+    }
+
+    /**
+     * Checks if final transcripts are corrected.
+     *
+     * @return true if vocabulary correction is enabled
+     */
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(config.getVocabularyEnabled());
+    }
+
+    /**
+     * Corrects the transcript of a final result.
+     *
+     * @param result the result
+     * @return a result with the corrected transcript, or the same result if it is partial or
+     *         needed no correction
+     */
+    public TranscriptionResult correct(TranscriptionResult result) {
+        if (result.isPartial() || result.getTranscript() == null) {
+            return result;
+        }
+        String transcript = correct(result.getTranscript());
+        if (transcript.equals(result.getTranscript())) {
+            return result;
+        }
+        return TranscriptionResult.final_(result.getSessionId(), transcript, result.getConfidence());
+    }
+
+    /**
+     * Corrects a final transcript.
+     *
+     * @param transcript the transcript, which may be null
+     * @return the corrected transcript, or the same instance if it needed no correction
+     */
+    public String correct(String transcript) {
+        if (transcript == null || !isEnabled()) {
+            return transcript;
+        }
+        String corrected = automaton.replace(transcript);
+        if (!corrected.equals(transcript)) {
+            corrections.increment();
+        }
+        return corrected;
+    }
+
+    /**
+     * Gets the number of phrases in the current dictionary.
+     *
+     * @return the phrase count
+     */
+    public int getPhraseCount() {
+        return automaton.getPhraseCount();
+    }
+
+    /**
+     * Stops checking the dictionary for changes.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses a dictionary into the replacement for each phrase. The first mapping of a phrase wins.
+     *
+     * @param reader the dictionary
+     * @return the replacements
+     * @throws IOException if the dictionary cannot be read
+     */
+    static Map<String, String> parse(Reader reader) throws IOException {
+        Map<String, String> replacements = new LinkedHashMap<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int separator = line.indexOf(VARIANTS_SEPARATOR);
+            String phrase = (separator < 0 ? line : line.substring(0, separator)).trim();
+            if (phrase.isEmpty()) {
+                continue;
+            }
+            replacements.putIfAbsent(PhraseAutomaton.normalize(phrase), phrase);
+            if (separator >= 0) {
+                for (String variant : line.substring(separator + VARIANTS_SEPARATOR.length()).split("\\|")) {
+                    String key = PhraseAutomaton.normalize(variant);
+                    if (!key.isEmpty()) {
+                        replacements.putIfAbsent(key, phrase);
+                    }
+                }
+            }
+        }
+        return replacements;
+    }
+
+    private void reloadIfChanged(Path file) {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (modified.equals(loadedModifiedTime)) {
+                return;
+            }
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                install(parse(reader), file.toString());
+            }
+            loadedModifiedTime = modified;
+        } catch (IOException | RuntimeException e) {
+            meterRegistry.counter("transcribe.vocabulary.reloads", "outcome", "failure").increment();
+            logger.warn("Failed to load vocabulary dictionary {}; keeping {} phrases", file,
+                    automaton.getPhraseCount(), e);
+        }
+    }
+
+    private void loadResource(String name) {
+        try (InputStream stream = VocabularyCorrector.class.getClassLoader().getResourceAsStream(name)) {
+            if (stream == null) {
+                throw new IOException("Resource not found");
+            }
+            install(parse(new InputStreamReader(stream, StandardCharsets.UTF_8)), CLASSPATH_PREFIX + name);
+        } catch (IOException | RuntimeException e) {
+            meterRegistry.counter("transcribe.vocabulary.reloads", "outcome", "failure").increment();
+            logger.warn("Failed to load vocabulary dictionary {}{}", CLASSPATH_PREFIX, name, e);
+        }
+    }
+
+    private void install(Map<String, String> replacements, String source) {
+        long startNanos = System.nanoTime();
+        automaton = PhraseAutomaton.compile(replacements);
+        meterRegistry.counter("transcribe.vocabulary.reloads", "outcome", "success").increment();
+        logger.info("Loaded {} vocabulary phrases from {} in {} ms", automaton.getPhraseCount(), source,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+}
@@ -0,0 +1,527 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.VoiceTurnConfig;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.service.NaturalLanguageService;
+import com.bentham.voiceagent.service.SpeechSynthesisService;
+import com.bentham.voiceagent.service.TranscriptionResultListener;
+import com.bentham.voiceagent.util.VoiceTracing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Turns the final transcripts of streaming sessions into responses and sends them to the
+ * connection that owns the session on {@code /user/queue/response}, followed by the synthesized
+ * speech as binary chunks on {@code /user/queue/audio} with a {@code sessionId} header. Nothing
+ * is broadcast, so one client never receives another's transcripts or replies.
+ *
+ * <p>Without speculation a turn runs strictly in sequence: the final transcript arrives, then
+ * the language model is called. With speculation, a partial transcript that stays unchanged
+ * for the stability window is sent to the {@link NaturalLanguageService} straight away. If the
+ * final transcript matches it, ignoring case, punctuation and spacing, the response is already
+ * in flight and the turn waits only for the remainder. Otherwise the speculative request is
+ * cancelled and the final transcript is processed as usual. A speculative request is also
+ * cancelled as soon as the partial transcript changes.</p>
+ *
+ * <p>Barge-in: any speech on the session while a turn is still generating, synthesizing or
+ * streaming its response cancels the turn. The pending language model and synthesis futures
+ * are cancelled, which cancels the underlying AWS requests, the synthesized audio stream is
+ * closed so no further chunks go out, and a {@code cancelled} event is sent on
+ * {@code /user/queue/turn} so the client can stop playback.</p>
+ *
+ * <p>Metrics: {@code voice.speculation.outcomes} counts speculative requests by outcome
+ * (hit, miss, discarded), {@code voice.speculation.hit.ratio} is hits over hits and misses,
+ * {@code voice.speculation.saved} records the head start each hit gave the turn, and
+ * {@code voice.turn.latency} records the time from final transcript to response, tagged with
+ * the speculation outcome. {@code voice.turn.barge.in} counts cancelled turns and
+ * {@code voice.turn.cancel.latency} records the time from detecting new speech until the
+ * cancelled turn has stopped all outbound work.</p>
+ *
+ * <p>Tracing: each turn is a {@code voice.turn} span below the span current when its final
+ * transcript arrives, normally its session's. The turn's context follows the response and
+ * speech futures onto the threads that complete them, so the Bedrock and Polly calls are its
+ * children, and the span ends once the turn has sent its last audio chunk, tagged with the
+ * audio it sent. Speculative requests are started in the context of the partial transcript.</p>
+ */
+@Service
+@ConditionalOnProperty(prefix = "voice.turn", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class VoiceTurnCoordinator implements TranscriptionResultListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoiceTurnCoordinator.class);
+
+    // User destinations, delivered to the connection owning the session
+    static final String RESPONSE_DESTINATION = "/queue/response";
+    static final String AUDIO_DESTINATION = "/queue/audio";
+    static final String TURN_DESTINATION = "/queue/turn";
+
+    private static final int AUDIO_CHUNK_BYTES = 8192;
+
+    private static final Pattern PUNCTUATION = Pattern.compile("[^\\p{L}\\p{Nd}\\s']");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final NaturalLanguageService naturalLanguageService;
+    private final SpeechSynthesisService speechSynthesisService;
+    private final VoiceTurnConfig voiceTurnConfig;
+    private final SessionMessenger sessionMessenger;
+    private final Map<String, SessionTurnState> sessions = new ConcurrentHashMap<>();
+
+    // Runs the stability timers; each timer only starts an asynchronous request
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "voice-turn-speculation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Each turn streams its synthesized audio on its own thread for the length of the reply
+    private final ExecutorService audioExecutor = Executors.newCachedThreadPool(new AudioThreadFactory());
+
+    private final Counter speculationHits;
+    private final Counter speculationMisses;
+    private final Counter speculationDiscards;
+    private final Timer speculationSaved;
+    private final Counter bargeIns;
+    private final Timer cancelLatency;
+    // Turn latency by speculation outcome
+    private final Map<String, Timer> turnLatency;
+
+    @Autowired
+    public VoiceTurnCoordinator(NaturalLanguageService naturalLanguageService,
+                                SpeechSynthesisService speechSynthesisService,
+                                VoiceTurnConfig voiceTurnConfig,
+                                SessionMessenger sessionMessenger,
+                                MeterRegistry meterRegistry) {
+        this.naturalLanguageService = naturalLanguageService;
+        this.speechSynthesisService = speechSynthesisService;
+        this.voiceTurnConfig = voiceTurnConfig;
+        this.sessionMessenger = sessionMessenger;
+
+        this.speculationHits = meterRegistry.counter("voice.speculation.outcomes", "outcome", "hit");
+        this.speculationMisses = meterRegistry.counter("voice.speculation.outcomes", "outcome", "miss");
+        this.speculationDiscards = meterRegistry.counter("voice.speculation.outcomes", "outcome", "discarded");
+        this.speculationSaved = Timer.builder("voice.speculation.saved")
+                .description("Head start a speculation hit gave the turn")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.bargeIns = meterRegistry.counter("voice.turn.barge.in");
+        this.cancelLatency = Timer.builder("voice.turn.cancel.latency")
+                .description("Time from detecting new speech until the cancelled turn stopped all outbound work")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.turnLatency = Map.of(
+                "hit", turnLatencyTimer(meterRegistry, "hit"),
+                "miss", turnLatencyTimer(meterRegistry, "miss"),
+                "none", turnLatencyTimer(meterRegistry, "none"));
+        Gauge.builder("voice.speculation.hit.ratio", this, VoiceTurnCoordinator::hitRatio)
+                .description("Fraction of speculative requests whose transcript matched the final transcript")
+                .register(meterRegistry);
+    }
+
+    private static Timer turnLatencyTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("voice.turn.latency")
+                .description("Time from final transcript to response")
+                .tag("speculation", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onResult(TranscriptionResult result) {
+        if (result.getSessionId() == null || result.getTranscript() == null || result.getTranscript().isBlank()) {
+            return;
+        }
+        SessionTurnState state = sessions.computeIfAbsent(result.getSessionId(), SessionTurnState::new);
+        if (result.isPartial()) {
+            onPartial(state, result.getTranscript());
+        } else {
+            onFinal(state, result.getTranscript());
+        }
+    }
+
+    @Override
+    public void onSessionClosed(String sessionId) {
+        SessionTurnState state = sessions.remove(sessionId);
+        if (state == null) {
+            return;
+        }
+        // A turn in progress is left to finish: stopping transcription is how the user hands over
+        synchronized (state) {
+            state.closed = true;
+            cancelStabilityCheck(state);
+            discardSpeculation(state);
+        }
+    }
+
+    private void onPartial(SessionTurnState state, String transcript) {
+        String key = normalize(transcript);
+        synchronized (state) {
+            if (state.closed || key.equals(state.partialKey)) {
+                return;
+            }
+            if (Boolean.TRUE.equals(voiceTurnConfig.getBargeInEnabled())) {
+                bargeIn(state);
+            }
+            state.partialKey = key;
+            cancelStabilityCheck(state);
+            if (state.speculation != null && !state.speculation.key.equals(key)) {
+                discardSpeculation(state);
+            }
+            if (!Boolean.TRUE.equals(voiceTurnConfig.getSpeculationEnabled())
+                    || wordCount(key) < voiceTurnConfig.getMinWords()) {
+                return;
+            }
+            // Keeps the speculative request in the session's trace
+            Runnable check = Context.current().wrap(() -> onStable(state, key, transcript));
+            state.stabilityCheck = scheduler.schedule(check, voiceTurnConfig.getStabilityWindowMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void onStable(SessionTurnState state, String key, String transcript) {
+        synchronized (state) {
+            state.stabilityCheck = null;
+            if (state.closed || !key.equals(state.partialKey) || state.speculation != null) {
+                return;
+            }
+            logger.debug("Speculatively processing stable partial transcript for session {}", state.sessionId);
+            try {
+                state.speculation = new Speculation(key, naturalLanguageService.processMessage(transcript));
+            } catch (RuntimeException e) {
+                logger.warn("Could not start speculative request for session: {}", state.sessionId, e);
+            }
+        }
+    }
+
+    private void onFinal(SessionTurnState state, String transcript) {
+        long finalNanos = System.nanoTime();
+        String key = normalize(transcript);
+        Span span = VoiceTracing.startSpan("voice.turn", SpanKind.INTERNAL);
+        span.setAttribute(VoiceTracing.SESSION_ID, state.sessionId);
+        span.setAttribute(VoiceTracing.TRANSCRIPT_CHARS, (long) transcript.length());
+        Context context = Context.current().with(span);
+        Speculation speculation;
+        CompletableFuture<String> response;
+        String outcome;
+        synchronized (state) {
+            cancelStabilityCheck(state);
+            speculation = state.speculation;
+            state.speculation = null;
+            state.partialKey = null;
+
+            if (speculation != null && speculation.key.equals(key)) {
+                speculationHits.increment();
+                response = speculation.response;
+                outcome = "hit";
+            } else {
+                if (speculation != null) {
+                    speculation.response.cancel(true);
+                    speculationMisses.increment();
+                    speculation = null;
+                    outcome = "miss";
+                } else {
+                    outcome = "none";
+                }
+                try (Scope scope = context.makeCurrent()) {
+                    response = naturalLanguageService.processMessage(transcript);
+                } catch (RuntimeException e) {
+                    VoiceTracing.recordFailure(span, e);
+                    span.end();
+                    throw e;
+                }
+            }
+        }
+        span.setAttribute(VoiceTracing.SPECULATION, outcome);
+
+        Turn turn = new Turn(state.sessionId, response, span, context);
+        synchronized (state) {
+            // The user has spoken again, so a turn still answering the previous transcript is stale
+            if (Boolean.TRUE.equals(voiceTurnConfig.getBargeInEnabled())) {
+                bargeIn(state);
+            }
+            state.turn = turn;
+        }
+
+        Speculation hit = speculation;
+        response.whenComplete(context.wrapConsumer((reply, error) -> {
+            long completedNanos = System.nanoTime();
+            if (error != null) {
+                if (!turn.cancelled) {
+                    logger.warn("Failed to process turn for session: {}", state.sessionId, error);
+                    VoiceTracing.recordFailure(span, error);
+                }
+                turn.finished.complete(null);
+                return;
+            }
+            span.setAttribute(VoiceTracing.RESPONSE_CHARS, (long) reply.length());
+            turnLatency.get(outcome).record(completedNanos - finalNanos, TimeUnit.NANOSECONDS);
+            if (hit != null) {
+                long hitCompletedNanos = hit.completedNanos != 0 ? hit.completedNanos : completedNanos;
+                speculationSaved.record(Math.min(finalNanos, hitCompletedNanos) - hit.startNanos, TimeUnit.NANOSECONDS);
+            }
+            sessionMessenger.send(state.sessionId, RESPONSE_DESTINATION, Map.of(
+                    "sessionId", state.sessionId,
+                    "transcript", transcript,
+                    "response", reply));
+            speak(turn, reply);
+        }));
+    }
+
+    private void speak(Turn turn, String reply) {
+        if (turn.cancelled || !Boolean.TRUE.equals(voiceTurnConfig.getSpeechEnabled())) {
+            turn.finished.complete(null);
+            return;
+        }
+        CompletableFuture<InputStream> speech;
+        try {
+            speech = speechSynthesisService.synthesizeSpeech(reply);
+        } catch (RuntimeException e) {
+            logger.warn("Could not start speech synthesis for session: {}", turn.sessionId, e);
+            turn.finished.complete(null);
+            return;
+        }
+        turn.speech = speech;
+        if (turn.cancelled) {
+            // Cancelled while the request was being made
+            speech.cancel(true);
+        }
+        speech.whenComplete(turn.context.wrapConsumer((audio, error) -> {
+            if (error != null) {
+                if (!turn.cancelled) {
+                    logger.warn("Speech synthesis failed for session: {}", turn.sessionId, error);
+                    VoiceTracing.recordFailure(turn.span, error);
+                }
+                turn.finished.complete(null);
+                return;
+            }
+            try {
+                audioExecutor.execute(Context.current().wrap(() -> streamAudio(turn, audio)));
+            } catch (RuntimeException e) {
+                closeQuietly(audio);
+                turn.finished.complete(null);
+            }
+        }));
+    }
+
+    private void streamAudio(Turn turn, InputStream audio) {
+        turn.audio = audio;
+        try {
+            byte[] buffer = new byte[AUDIO_CHUNK_BYTES];
+            int read;
+            while (!turn.cancelled && (read = audio.readNBytes(buffer, 0, buffer.length)) > 0) {
+                if (!sessionMessenger.send(turn.sessionId, AUDIO_DESTINATION, Arrays.copyOf(buffer, read),
+                        Map.of("sessionId", turn.sessionId))) {
+                    // The connection has gone, so no one is left to hear the rest
+                    break;
+                }
+                if (turn.sentAudio != null) {
+                    turn.sentAudio.add(read);
+                }
+            }
+        } catch (IOException e) {
+            // Closing the stream is how a cancelled turn interrupts a blocked read
+            if (!turn.cancelled) {
+                logger.warn("Failed to stream audio for session: {}", turn.sessionId, e);
+            }
+        } finally {
+            closeQuietly(audio);
+            turn.finished.complete(null);
+        }
+    }
+
+    /**
+     * Cancels the session's turn if it is still working on a response. Must hold the state's lock.
+     */
+    private void bargeIn(SessionTurnState state) {
+        Turn turn = state.turn;
+        state.turn = null;
+        if (turn == null || turn.finished.isDone()) {
+            return;
+        }
+        long detectedNanos = System.nanoTime();
+        turn.cancel();
+        bargeIns.increment();
+        turn.finished.whenComplete((ignored, error) ->
+                cancelLatency.record(System.nanoTime() - detectedNanos, TimeUnit.NANOSECONDS));
+        sessionMessenger.send(state.sessionId, TURN_DESTINATION, Map.of(
+                "sessionId", state.sessionId,
+                "event", "cancelled"));
+        logger.debug("Barge-in cancelled the turn in progress for session {}", state.sessionId);
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close audio stream", e);
+            }
+        }
+    }
+
+    private void discardSpeculation(SessionTurnState state) {
+        if (state.speculation != null) {
+            state.speculation.response.cancel(true);
+            state.speculation = null;
+            speculationDiscards.increment();
+        }
+    }
+
+    private void cancelStabilityCheck(SessionTurnState state) {
+        if (state.stabilityCheck != null) {
+            state.stabilityCheck.cancel(false);
+            state.stabilityCheck = null;
+        }
+    }
+
+    private double hitRatio() {
+        double decided = speculationHits.count() + speculationMisses.count();
+        return decided == 0 ? 0.0 : speculationHits.count() / decided;
+    }
+
+    /**
+     * Normalizes a transcript for comparison, so that partial and final transcripts differing
+     * only in case, punctuation or spacing match.
+     *
+     * @param transcript the transcript
+     * @return the normalized transcript
+     */
+    static String normalize(String transcript) {
+        String text = PUNCTUATION.matcher(transcript.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return WHITESPACE.matcher(text).replaceAll(" ").trim();
+    }
+
+    private static int wordCount(String normalized) {
+        return normalized.isEmpty() ? 0 : normalized.split(" ").length;
+    }
+
+    /**
+     * Cancels outstanding speculative requests and stops the stability timers and audio streams.
+     */
+    @PreDestroy
+    public void shutdown() {
+        sessions.keySet().forEach(this::onSessionClosed);
+        scheduler.shutdownNow();
+        audioExecutor.shutdownNow();
+    }
+
+    /**
+     * Turn state of one streaming session. Guarded by its own monitor.
+     */
+    private static class SessionTurnState {
+
+        private final String sessionId;
+        private String partialKey;
+        private ScheduledFuture<?> stabilityCheck;
+        private Speculation speculation;
+        private Turn turn;
+        private boolean closed;
+
+        SessionTurnState(String sessionId) {
+            this.sessionId = sessionId;
+        }
+    }
+
+    /**
+     * A speculative request for a stable partial transcript.
+     */
+    private static class Speculation {
+
+        private final String key;
+        private final CompletableFuture<String> response;
+        private final long startNanos = System.nanoTime();
+        private volatile long completedNanos;
+
+        Speculation(String key, CompletableFuture<String> response) {
+            this.key = key;
+            this.response = response;
+            response.whenComplete((reply, error) -> completedNanos = System.nanoTime());
+        }
+    }
+
+    /**
+     * A response being generated, synthesized or streamed for one final transcript.
+     */
+    private static class Turn {
+
+        private final String sessionId;
+        private final CompletableFuture<String> response;
+        private final Span span;
+        private final Context context;
+        // Null unless the turn is sampled
+        private final VoiceTracing.AudioTally sentAudio;
+        // Completes once the turn will send nothing more, whether it finished or was cancelled
+        private final CompletableFuture<Void> finished = new CompletableFuture<>();
+        private volatile CompletableFuture<InputStream> speech;
+        private volatile InputStream audio;
+        private volatile boolean cancelled;
+
+        Turn(String sessionId, CompletableFuture<String> response, Span span, Context context) {
+            this.sessionId = sessionId;
+            this.response = response;
+            this.span = span;
+            this.context = context;
+            this.sentAudio = VoiceTracing.tally(span);
+            finished.whenComplete((ignored, error) -> {
+                if (cancelled) {
+                    span.setAttribute(VoiceTracing.CANCELLED, true);
+                }
+                if (sentAudio != null) {
+                    sentAudio.recordOn(span);
+                }
+                span.end();
+            });
+        }
+
+        void cancel() {
+            // Set first: each stage checks the flag after publishing its handle, so no stage is missed
+            cancelled = true;
+            response.cancel(true);
+            CompletableFuture<InputStream> pendingSpeech = speech;
+            if (pendingSpeech != null) {
+                pendingSpeech.cancel(true);
+            }
+            closeQuietly(audio);
+        }
+    }
+
+    /**
+     * Thread factory for audio streaming threads.
+     */
+    private static class AudioThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "voice-turn-audio-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
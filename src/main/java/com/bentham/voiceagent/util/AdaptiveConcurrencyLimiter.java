@@ -0,0 +1,99 @@
+package com.bentham.voiceagent.util;
+
+/**
+ * Concurrency limit that adapts to throttling, additive increase and multiplicative decrease.
+ *
+ * <p>Each call holds a permit while in flight. After a full limit's worth of calls succeed the
+ * limit grows by one; a throttled call halves it. Only calls started since the last decrease
+ * can decrease it again, so a burst of throttles from the same batch of calls counts once.
+ * Instances are thread-safe.</p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * How a call that held a permit ended.
+     */
+    public enum Outcome {
+        /** The call succeeded; counts towards raising the limit. */
+        SUCCESS,
+        /** The call was throttled; lowers the limit. */
+        THROTTLED,
+        /** The call ended without saying anything about capacity, such as a client error. */
+        IGNORED
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private int limit;
+    private int inFlight;
+    private int successesSinceChange;
+    // Increments on every decrease; a permit records the epoch it was taken in
+    private long epoch;
+
+    /**
+     * Creates a limiter.
+     *
+     * @param initialLimit the starting limit
+     * @param minLimit the lowest the limit may fall to
+     * @param maxLimit the highest the limit may rise to
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Waits for a permit.
+     *
+     * @return the permit, to hand back to {@link #release(long, Outcome)}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized long acquire() throws InterruptedException {
+        while (inFlight >= limit) {
+            wait();
+        }
+        inFlight++;
+        return epoch;
+    }
+
+    /**
+     * Returns a permit and adjusts the limit to the call's outcome.
+     *
+     * @param permit the permit from {@link #acquire()}
+     * @param outcome how the call ended
+     */
+    public synchronized void release(long permit, Outcome outcome) {
+        inFlight--;
+        if (outcome == Outcome.SUCCESS && ++successesSinceChange >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+            successesSinceChange = 0;
+        } else if (outcome == Outcome.THROTTLED && permit == epoch) {
+            limit = Math.max(minLimit, limit / 2);
+            successesSinceChange = 0;
+            epoch++;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return the number of calls allowed in flight
+     */
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Gets the number of calls holding a permit.
+     *
+     * @return the in-flight count
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
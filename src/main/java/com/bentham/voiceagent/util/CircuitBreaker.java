@@ -0,0 +1,148 @@
+package com.bentham.voiceagent.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Count-based circuit breaker.
+ *
+ * <p>While closed, the outcomes of the most recent calls are kept; once enough calls have been
+ * seen and the failure rate reaches the threshold, the circuit opens and calls are refused for
+ * the open duration. It then lets a single trial call through: success closes the circuit,
+ * failure opens it again. Instances are thread-safe.</p>
+ */
+public class CircuitBreaker {
+
+    /**
+     * The state of a circuit.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final boolean[] failures;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+
+    private State state = State.CLOSED;
+    private int calls;
+    private int next;
+    private int failureCount;
+    private long openedAtNanos;
+    private boolean trialInFlight;
+
+    /**
+     * Creates a closed circuit breaker.
+     *
+     * @param windowSize the number of most recent calls the failure rate is computed over
+     * @param minimumCalls the fewest calls in the window before the circuit may open
+     * @param failureRateThreshold the failure rate, between 0 and 1, at which the circuit opens
+     * @param openDurationMs how long the circuit stays open before a trial call
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openDurationMs) {
+        if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Minimum calls must be between 1 and the window size");
+        }
+        this.failures = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+    }
+
+    /**
+     * Asks to make a call. Every permitted call must be followed by exactly one of
+     * {@link #recordSuccess()}, {@link #recordFailure()} or {@link #recordIgnored()}.
+     *
+     * @return true if the call may go ahead, false if the circuit is open
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAtNanos < openDurationNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * Records that a permitted call succeeded.
+     */
+    public synchronized void recordSuccess() {
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            trialInFlight = false;
+            reset();
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * Records that a permitted call failed.
+     */
+    public synchronized void recordFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && calls >= minimumCalls
+                && (double) failureCount / calls >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * Records that a permitted call ended without an outcome, for example because it was cancelled.
+     */
+    public synchronized void recordIgnored() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * Gets the current state.
+     *
+     * @return the state
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (calls == failures.length && failures[next]) {
+            failureCount--;
+        }
+        failures[next] = failure;
+        if (failure) {
+            failureCount++;
+        }
+        next = (next + 1) % failures.length;
+        calls = Math.min(calls + 1, failures.length);
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtNanos = System.nanoTime();
+        trialInFlight = false;
+        reset();
+    }
+
+    private void reset() {
+        calls = 0;
+        next = 0;
+        failureCount = 0;
+    }
+}
@@ -0,0 +1,32 @@
+package com.bentham.voiceagent.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Helpers for working with CompletableFuture.
+ */
+public final class CompletableFutures {
+
+    private CompletableFutures() {
+    }
+
+    /**
+     * Makes cancelling a derived future cancel the future it was derived from.
+     * CompletableFuture does not do this itself: cancelling the result of {@code thenApply}
+     * leaves the underlying operation, such as an SDK request, running.
+     *
+     * @param dependent the derived future handed to callers
+     * @param source the future of the underlying operation
+     * @param <T> the result type of the derived future
+     * @return the dependent future
+     */
+    public static <T> CompletableFuture<T> propagateCancellation(CompletableFuture<T> dependent, Future<?> source) {
+        dependent.whenComplete((result, error) -> {
+            if (dependent.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return dependent;
+    }
+}
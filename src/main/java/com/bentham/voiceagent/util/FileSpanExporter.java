@@ -0,0 +1,203 @@
+package com.bentham.voiceagent.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Span exporter that appends each batch of spans to a file as one line of OTLP JSON, the
+ * encoding of an OTLP {@code ExportTraceServiceRequest}. The file can be read by the
+ * OpenTelemetry Collector's {@code otlpjsonfile} receiver and forwarded to any tracing backend,
+ * so traces captured offline or in a test can be examined later.
+ */
+public class FileSpanExporter implements SpanExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSpanExporter.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path file;
+
+    // Guarded by this
+    private BufferedWriter writer;
+    private boolean shutdown;
+
+    public FileSpanExporter(Path file) {
+        this.file = file.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        if (shutdown) {
+            return CompletableResultCode.ofFailure();
+        }
+        try {
+            if (writer == null) {
+                Files.createDirectories(file.getParent());
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                logger.info("Exporting spans to {}", file);
+            }
+            writer.write(MAPPER.writeValueAsString(toOtlpJson(spans)));
+            writer.newLine();
+            writer.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            logger.warn("Could not export {} spans to {}", spans.size(), file, e);
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        // Every batch is flushed as it is written
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        shutdown = true;
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("Could not close span file {}", file, e);
+                return CompletableResultCode.ofFailure();
+            } finally {
+                writer = null;
+            }
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * Encodes spans as an OTLP JSON trace export request, grouped by resource and scope.
+     *
+     * @param spans the spans
+     * @return the request
+     */
+    static ObjectNode toOtlpJson(Collection<SpanData> spans) {
+        Map<Resource, Map<InstrumentationScopeInfo, List<SpanData>>> grouped = new LinkedHashMap<>();
+        for (SpanData span : spans) {
+            grouped.computeIfAbsent(span.getResource(), resource -> new LinkedHashMap<>())
+                    .computeIfAbsent(span.getInstrumentationScopeInfo(), scope -> new ArrayList<>())
+                    .add(span);
+        }
+
+        ObjectNode request = MAPPER.createObjectNode();
+        ArrayNode resourceSpans = request.putArray("resourceSpans");
+        for (Map.Entry<Resource, Map<InstrumentationScopeInfo, List<SpanData>>> byResource : grouped.entrySet()) {
+            ObjectNode resourceNode = resourceSpans.addObject();
+            putAttributes(resourceNode.putObject("resource"), byResource.getKey().getAttributes());
+            ArrayNode scopeSpans = resourceNode.putArray("scopeSpans");
+            for (Map.Entry<InstrumentationScopeInfo, List<SpanData>> byScope : byResource.getValue().entrySet()) {
+                ObjectNode scopeNode = scopeSpans.addObject();
+                ObjectNode scope = scopeNode.putObject("scope");
+                scope.put("name", byScope.getKey().getName());
+                if (byScope.getKey().getVersion() != null) {
+                    scope.put("version", byScope.getKey().getVersion());
+                }
+                ArrayNode spanNodes = scopeNode.putArray("spans");
+                byScope.getValue().forEach(span -> putSpan(spanNodes.addObject(), span));
+            }
+        }
+        return request;
+    }
+
+    private static void putSpan(ObjectNode node, SpanData span) {
+        node.put("traceId", span.getTraceId());
+        node.put("spanId", span.getSpanId());
+        if (span.getParentSpanContext().isValid()) {
+            node.put("parentSpanId", span.getParentSpanId());
+        }
+        node.put("name", span.getName());
+        node.put("kind", kind(span.getKind()));
+        // 64-bit integers are strings in OTLP JSON
+        node.put("startTimeUnixNano", Long.toString(span.getStartEpochNanos()));
+        node.put("endTimeUnixNano", Long.toString(span.getEndEpochNanos()));
+        putAttributes(node, span.getAttributes());
+        if (!span.getEvents().isEmpty()) {
+            ArrayNode events = node.putArray("events");
+            for (EventData event : span.getEvents()) {
+                ObjectNode eventNode = events.addObject();
+                eventNode.put("timeUnixNano", Long.toString(event.getEpochNanos()));
+                eventNode.put("name", event.getName());
+                putAttributes(eventNode, event.getAttributes());
+            }
+        }
+        StatusData status = span.getStatus();
+        ObjectNode statusNode = node.putObject("status");
+        statusNode.put("code", switch (status.getStatusCode()) {
+            case UNSET -> 0;
+            case OK -> 1;
+            case ERROR -> 2;
+        });
+        if (!status.getDescription().isEmpty()) {
+            statusNode.put("message", status.getDescription());
+        }
+    }
+
+    private static int kind(SpanKind kind) {
+        return switch (kind) {
+            case INTERNAL -> 1;
+            case SERVER -> 2;
+            case CLIENT -> 3;
+            case PRODUCER -> 4;
+            case CONSUMER -> 5;
+        };
+    }
+
+    private static void putAttributes(ObjectNode node, Attributes attributes) {
+        ArrayNode array = node.putArray("attributes");
+        attributes.forEach((key, value) -> {
+            ObjectNode attribute = array.addObject();
+            attribute.put("key", key.getKey());
+            putValue(attribute.putObject("value"), key, value);
+        });
+    }
+
+    private static void putValue(ObjectNode node, AttributeKey<?> key, Object value) {
+        switch (key.getType()) {
+            case BOOLEAN -> node.put("boolValue", (Boolean) value);
+            case LONG -> node.put("intValue", value.toString());
+            case DOUBLE -> node.put("doubleValue", (Double) value);
+            case STRING_ARRAY, BOOLEAN_ARRAY, LONG_ARRAY, DOUBLE_ARRAY -> {
+                ArrayNode values = node.putObject("arrayValue").putArray("values");
+                for (Object element : (List<?>) value) {
+                    ObjectNode elementNode = values.addObject();
+                    switch (key.getType()) {
+                        case BOOLEAN_ARRAY -> elementNode.put("boolValue", (Boolean) element);
+                        case LONG_ARRAY -> elementNode.put("intValue", element.toString());
+                        case DOUBLE_ARRAY -> elementNode.put("doubleValue", (Double) element);
+                        default -> elementNode.put("stringValue", String.valueOf(element));
+                    }
+                }
+            }
+            default -> node.put("stringValue", String.valueOf(value));
+        }
+    }
+}
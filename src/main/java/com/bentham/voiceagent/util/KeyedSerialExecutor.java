@@ -0,0 +1,147 @@
+package com.bentham.voiceagent.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks one at a time and in submission order for each key, while tasks for different keys
+ * run in parallel on a shared pool.
+ *
+ * <p>Each key with work waiting has a lane, which takes a pool thread, runs its tasks in order
+ * and gives the thread back when it is empty or has run a turn's worth, so one busy key cannot
+ * hold a thread while others wait. Unlike a fixed set of single-threaded stripes, a key whose
+ * task blocks delays only its own later tasks, never those of keys that would have shared its
+ * stripe. Instances are thread-safe.</p>
+ */
+public class KeyedSerialExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+
+    // Tasks a lane runs before giving its thread to the next lane
+    private static final int TASKS_PER_TURN = 32;
+
+    private final Executor pool;
+    // A lane's tasks and scheduling are only touched inside compute calls on its key
+    private final Map<Object, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Creates an executor.
+     *
+     * @param pool the pool the lanes run on
+     */
+    public KeyedSerialExecutor(Executor pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Submits a task to run after every task already submitted for its key.
+     *
+     * @param key the key, such as a session ID
+     * @param task the task
+     * @throws RejectedExecutionException if the pool no longer accepts work
+     */
+    public void execute(Object key, Runnable task) {
+        pending.incrementAndGet();
+        boolean[] schedule = new boolean[1];
+        Lane lane = lanes.compute(key, (k, existing) -> {
+            Lane target = existing != null ? existing : new Lane(k);
+            target.tasks.add(task);
+            if (!target.scheduled) {
+                target.scheduled = true;
+                schedule[0] = true;
+            }
+            return target;
+        });
+        if (schedule[0]) {
+            schedule(lane);
+        }
+    }
+
+    /**
+     * Gets the number of tasks submitted but not yet finished.
+     *
+     * @return the pending task count
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Gets the number of keys with tasks waiting or running.
+     *
+     * @return the active key count
+     */
+    public int getActiveKeyCount() {
+        return lanes.size();
+    }
+
+    private void schedule(Lane lane) {
+        try {
+            pool.execute(lane);
+        } catch (RejectedExecutionException e) {
+            Lane dropped = lanes.remove(lane.key);
+            if (dropped != null) {
+                pending.addAndGet(-dropped.tasks.size());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The tasks waiting for one key.
+     */
+    private final class Lane implements Runnable {
+
+        private final Object key;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+
+        Lane(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < TASKS_PER_TURN; i++) {
+                Runnable task = next();
+                if (task == null) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Task for key {} failed", key, e);
+                } finally {
+                    pending.decrementAndGet();
+                }
+            }
+            try {
+                schedule(this);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Executor shut down with tasks waiting for key {}", key);
+            }
+        }
+
+        /**
+         * Takes the next task, removing the lane once it is empty so the next submission for
+         * the key schedules a new one.
+         */
+        private Runnable next() {
+            Runnable[] next = new Runnable[1];
+            lanes.computeIfPresent(key, (k, lane) -> {
+                next[0] = lane.tasks.poll();
+                return next[0] != null ? lane : null;
+            });
+            return next[0];
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.bentham.voiceagent.util;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window over the most recent latency samples, for percentiles that follow the
+ * current behaviour of a dependency rather than its whole history. Instances are thread-safe.
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private int count;
+    private int next;
+    private long[] sorted;
+
+    /**
+     * Creates an empty window.
+     *
+     * @param capacity the number of most recent samples kept
+     */
+    public LatencyWindow(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * Records a sample, replacing the oldest once the window is full.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        sorted = null;
+    }
+
+    /**
+     * Gets a percentile of the samples in the window.
+     *
+     * @param percentile the percentile, between 0 and 1
+     * @return the latency in nanoseconds, or 0 if the window is empty
+     */
+    public synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        if (sorted == null) {
+            // Sorted lazily: a window of a few hundred samples sorts in microseconds
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+        }
+        int index = (int) Math.ceil(percentile * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Gets the number of samples in the window.
+     *
+     * @return the sample count
+     */
+    public synchronized int size() {
+        return count;
+    }
+}
@@ -0,0 +1,172 @@
+package com.bentham.voiceagent.util;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
+import javazoom.jl.decoder.Header;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits MP3 data into whole frames without decoding it.
+ *
+ * <p>Frame headers are parsed with jlayer. The audio frames of a clip are returned with any
+ * ID3 tags, Xing or Info header frame and trailing partial frame removed, so that clips in the
+ * same format can be joined by concatenating their frames. This is safe for clips encoded
+ * separately: the first frame of an encoded clip never borrows bits from earlier frames.</p>
+ */
+public final class Mp3Frames {
+
+    private static final int ID3V1_LENGTH = 128;
+
+    private Mp3Frames() {
+    }
+
+    /**
+     * The whole audio frames of a clip and the format they share.
+     */
+    public static final class Clip {
+
+        private final byte[] frames;
+        private final int frameCount;
+        private final int sampleFrequency;
+        private final int channelMode;
+        private final int version;
+
+        Clip(byte[] frames, int frameCount, int sampleFrequency, int channelMode, int version) {
+            this.frames = frames;
+            this.frameCount = frameCount;
+            this.sampleFrequency = sampleFrequency;
+            this.channelMode = channelMode;
+            this.version = version;
+        }
+
+        /**
+         * Gets the frame data.
+         *
+         * @return the concatenated audio frames
+         */
+        public byte[] getFrames() {
+            return frames;
+        }
+
+        /**
+         * Gets the number of audio frames.
+         *
+         * @return the frame count
+         */
+        public int getFrameCount() {
+            return frameCount;
+        }
+
+        /**
+         * Gets the sample rate of the frames.
+         *
+         * @return the sample rate in Hz
+         */
+        public int getSampleFrequency() {
+            return sampleFrequency;
+        }
+
+        /**
+         * Checks if another clip's frames can follow this clip's frames in one stream.
+         *
+         * @param other the other clip
+         * @return true if both clips have the same MPEG version, sample rate and channel mode
+         */
+        public boolean isCompatibleWith(Clip other) {
+            return frameCount == 0 || other.frameCount == 0
+                    || (version == other.version && sampleFrequency == other.sampleFrequency
+                    && channelMode == other.channelMode);
+        }
+    }
+
+    /**
+     * Extracts the audio frames of an MP3 clip.
+     *
+     * @param mp3 the encoded clip
+     * @return the clip's whole audio frames
+     * @throws IOException if the data is not a sequence of MP3 frames
+     */
+    public static Clip parse(byte[] mp3) throws IOException {
+        int end = mp3.length;
+        if (end >= ID3V1_LENGTH && startsWith(mp3, end - ID3V1_LENGTH, "TAG")) {
+            end -= ID3V1_LENGTH;
+        }
+
+        Bitstream bitstream = new Bitstream(new ByteArrayInputStream(mp3, 0, end));
+        try {
+            // Frames follow any ID3v2 tag back to back; each one's length comes from its header
+            int offset = bitstream.header_pos();
+            int start = -1;
+            int frameCount = 0;
+            int sampleFrequency = 0;
+            int channelMode = 0;
+            int version = 0;
+            Header header;
+            while ((header = bitstream.readFrame()) != null) {
+                if (!isFrameSync(mp3, offset, end)) {
+                    throw new IOException("MP3 data is not frame aligned at byte " + offset);
+                }
+                int frameLength = header.framesize + 4;
+                if (start < 0 && isInfoFrame(mp3, offset, frameLength)) {
+                    // Xing/Info metadata describes this clip alone, so it cannot appear mid-stream
+                    offset += frameLength;
+                    bitstream.closeFrame();
+                    continue;
+                }
+                if (start < 0) {
+                    start = offset;
+                    sampleFrequency = header.frequency();
+                    channelMode = header.mode();
+                    version = header.version();
+                }
+                offset += frameLength;
+                frameCount++;
+                bitstream.closeFrame();
+            }
+            if (start < 0) {
+                return new Clip(new byte[0], 0, 0, 0, 0);
+            }
+            return new Clip(Arrays.copyOfRange(mp3, start, offset), frameCount, sampleFrequency, channelMode, version);
+        } catch (BitstreamException e) {
+            throw new IOException("Could not parse MP3 frames", e);
+        } finally {
+            try {
+                bitstream.close();
+            } catch (BitstreamException e) {
+                // Reading from memory; nothing to release
+            }
+        }
+    }
+
+    private static boolean isFrameSync(byte[] data, int offset, int end) {
+        return offset + 1 < end && (data[offset] & 0xFF) == 0xFF && (data[offset + 1] & 0xE0) == 0xE0;
+    }
+
+    private static boolean isInfoFrame(byte[] data, int offset, int frameLength) {
+        // The tag follows the side information, which is at most 32 bytes after the 4-byte header
+        int limit = Math.min(offset + Math.min(frameLength, 4 + 32 + 4), data.length - 4);
+        for (int i = offset + 4; i <= limit; i++) {
+            if (startsWith(data, i, "Xing") || startsWith(data, i, "Info")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, String tag) {
+        byte[] bytes = tag.getBytes(StandardCharsets.US_ASCII);
+        if (offset < 0 || offset + bytes.length > data.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (data[offset + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
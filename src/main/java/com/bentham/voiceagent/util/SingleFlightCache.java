@@ -0,0 +1,264 @@
+package com.bentham.voiceagent.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache for idempotent lookups that merges concurrent requests for a key into one upstream call.
+ *
+ * <p>A value is fresh for the TTL after it was loaded. For the stale window after that it is
+ * still served, while a single call refreshes it in the background; once that has passed too,
+ * the next request waits for a new call. Requests for a key whose call is in flight share that
+ * call rather than making their own. Failures are not cached: a failed refresh leaves the stale
+ * value in place, and a failed load fails every request that shared it. Instances are
+ * thread-safe.</p>
+ *
+ * <p>Requests and upstream calls are counted per key, so the calls each key was spared can be
+ * seen; see {@link #getStats()}. The counts of a key go with it when it is evicted.</p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class SingleFlightCache<K, V> {
+
+    private final Function<K, CompletableFuture<V>> loader;
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final int maxEntries;
+    private final Executor refreshExecutor;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong upstreamCalls = new AtomicLong();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param loader makes the upstream call for a key; it may complete on any thread, and is
+     *               called on the requesting thread for a load and on the refresh executor for
+     *               a refresh
+     * @param ttlMs how long a loaded value is served without a call
+     * @param staleMs how long after the TTL a value is still served while it is refreshed
+     * @param maxEntries the most keys kept; expired keys, then the least recently loaded, are
+     *                   evicted to make room for a new one
+     * @param refreshExecutor runs background refreshes
+     */
+    public SingleFlightCache(Function<K, CompletableFuture<V>> loader, long ttlMs, long staleMs, int maxEntries,
+                             Executor refreshExecutor) {
+        if (ttlMs < 0 || staleMs < 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("TTL and stale window must not be negative, and max entries must be positive");
+        }
+        this.loader = loader;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.staleNanos = TimeUnit.MILLISECONDS.toNanos(staleMs);
+        this.maxEntries = maxEntries;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Gets the value for a key: from the cache while it is fresh or stale, else from the call
+     * in flight for it, else from a new call.
+     *
+     * @param key the key
+     * @return a CompletableFuture that will be completed with the value; cancelling it does not
+     *         cancel a call that other requests share
+     */
+    public CompletableFuture<V> get(K key) {
+        requests.incrementAndGet();
+        Entry<V> existing = entries.get(key);
+        if (existing == null) {
+            if (entries.size() >= maxEntries) {
+                evict();
+            }
+            existing = entries.computeIfAbsent(key, k -> new Entry<>());
+        }
+        Entry<V> entry = existing;
+        entry.requests.incrementAndGet();
+
+        CompletableFuture<V> flight;
+        boolean refresh;
+        V stale;
+        synchronized (entry) {
+            long age = System.nanoTime() - entry.loadedNanos;
+            if (entry.loaded && age < ttlNanos) {
+                return CompletableFuture.completedFuture(entry.value);
+            }
+            boolean servable = entry.loaded && age < ttlNanos + staleNanos;
+            if (entry.inFlight != null) {
+                // A copy, as the call is shared and not the caller's to cancel or complete
+                return servable ? CompletableFuture.completedFuture(entry.value) : entry.inFlight.copy();
+            }
+            flight = new CompletableFuture<>();
+            entry.inFlight = flight;
+            refresh = servable;
+            stale = entry.value;
+        }
+        if (refresh) {
+            try {
+                refreshExecutor.execute(() -> call(key, entry, flight));
+            } catch (RejectedExecutionException e) {
+                call(key, entry, flight);
+            }
+            return CompletableFuture.completedFuture(stale);
+        }
+        call(key, entry, flight);
+        return flight.copy();
+    }
+
+    /**
+     * Drops a key's value, so that its next request makes a call. A call in flight for it is
+     * still shared.
+     *
+     * @param key the key
+     */
+    public void invalidate(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.loaded = false;
+                entry.value = null;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of requests made of the cache.
+     *
+     * @return the requests
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of upstream calls made for those requests, loads and refreshes alike.
+     *
+     * @return the upstream calls
+     */
+    public long getUpstreamCalls() {
+        return upstreamCalls.get();
+    }
+
+    /**
+     * Gets the requests and upstream calls of each cached key.
+     *
+     * @return a snapshot of the counts by key
+     */
+    public Map<K, Stats> getStats() {
+        Map<K, Stats> stats = new HashMap<>();
+        entries.forEach((key, entry) -> stats.put(key, new Stats(entry.requests.get(), entry.upstreamCalls.get())));
+        return stats;
+    }
+
+    private void call(K key, Entry<V> entry, CompletableFuture<V> flight) {
+        upstreamCalls.incrementAndGet();
+        entry.upstreamCalls.incrementAndGet();
+        CompletableFuture<V> call;
+        try {
+            call = loader.apply(key);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((value, error) -> {
+            synchronized (entry) {
+                entry.inFlight = null;
+                if (error == null) {
+                    entry.value = value;
+                    entry.loaded = true;
+                    entry.loadedNanos = System.nanoTime();
+                }
+            }
+            if (error == null) {
+                flight.complete(value);
+            } else {
+                flight.completeExceptionally(error);
+            }
+        });
+    }
+
+    /**
+     * Makes room for a new key. Scans every entry, so is only done when the cache is full.
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        K oldest = null;
+        long oldestLoadedNanos = Long.MAX_VALUE;
+        for (Map.Entry<K, Entry<V>> candidate : entries.entrySet()) {
+            Entry<V> entry = candidate.getValue();
+            synchronized (entry) {
+                if (entry.inFlight != null) {
+                    continue;
+                }
+                if (!entry.loaded || now - entry.loadedNanos >= ttlNanos + staleNanos) {
+                    entries.remove(candidate.getKey(), entry);
+                } else if (entry.loadedNanos < oldestLoadedNanos) {
+                    oldest = candidate.getKey();
+                    oldestLoadedNanos = entry.loadedNanos;
+                }
+            }
+        }
+        if (entries.size() >= maxEntries && oldest != null) {
+            entries.remove(oldest);
+        }
+    }
+
+    /**
+     * The requests and upstream calls of a key.
+     */
+    public static final class Stats {
+
+        private final long requests;
+        private final long upstreamCalls;
+
+        Stats(long requests, long upstreamCalls) {
+            this.requests = requests;
+            this.upstreamCalls = upstreamCalls;
+        }
+
+        /**
+         * Gets the requests made for the key.
+         *
+         * @return the requests
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Gets the upstream calls made for the key.
+         *
+         * @return the upstream calls
+         */
+        public long getUpstreamCalls() {
+            return upstreamCalls;
+        }
+
+        /**
+         * Gets the requests answered without a call of their own.
+         *
+         * @return the calls saved
+         */
+        public long getCallsSaved() {
+            return requests - upstreamCalls;
+        }
+    }
+
+    /**
+     * A key's value and the call in flight for it. Guarded by its own monitor.
+     */
+    private static final class Entry<V> {
+
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong upstreamCalls = new AtomicLong();
+        private V value;
+        private boolean loaded;
+        private long loadedNanos;
+        private CompletableFuture<V> inFlight;
+    }
+}
@@ -0,0 +1,63 @@
+package com.bentham.voiceagent.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter.
+ * The bucket holds up to its capacity in tokens and refills continuously at a fixed rate;
+ * a request is allowed if enough tokens are available to take. Instances are thread-safe.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * Creates a full token bucket.
+     *
+     * @param capacity the most tokens the bucket holds, which is the largest burst allowed
+     * @param tokensPerSecond the rate at which tokens are added
+     */
+    public TokenBucket(double capacity, double tokensPerSecond) {
+        if (capacity <= 0 || tokensPerSecond <= 0) {
+            throw new IllegalArgumentException("Capacity and rate must be positive");
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes tokens if enough are available.
+     *
+     * @param amount the number of tokens to take
+     * @return true if the tokens were taken, false if the request exceeds the rate
+     */
+    public synchronized boolean tryConsume(double amount) {
+        refill();
+        if (tokens < amount) {
+            return false;
+        }
+        tokens -= amount;
+        return true;
+    }
+
+    /**
+     * Gets the number of tokens currently available.
+     *
+     * @return the available tokens
+     */
+    public synchronized double getAvailableTokens() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+}
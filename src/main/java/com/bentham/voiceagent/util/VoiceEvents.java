@@ -0,0 +1,182 @@
+package com.bentham.voiceagent.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events for the voice pipeline.
+ *
+ * <p>An event costs next to nothing unless a recording with it enabled is running, and the
+ * events here skip stack traces, which are the expensive part of recording one. Callers that
+ * would do extra work to fill in an event check {@link Event#isEnabled()} or
+ * {@link Event#shouldCommit()} first. The events are enabled by default, so any recording
+ * captures them; see {@code FlightRecordingService} for starting one on demand.</p>
+ */
+public final class VoiceEvents {
+
+    private static final String CATEGORY = "Bentham Voice";
+
+    private VoiceEvents() {
+    }
+
+    /**
+     * A transcription session has started.
+     */
+    @Name("com.bentham.voice.SessionStart")
+    @Label("Session Start")
+    @Category({CATEGORY, "Sessions"})
+    @Description("A transcription session has started")
+    @StackTrace(false)
+    public static class SessionStart extends Event {
+
+        @Label("Session ID")
+        public String sessionId;
+
+        @Label("API")
+        @Description("stomp or reactive")
+        public String api;
+
+        @Label("Stream")
+        @Description("What carries the audio: simulated, pooled or streaming")
+        public String stream;
+    }
+
+    /**
+     * A transcription session stopping, which lasts until its last results are in.
+     */
+    @Name("com.bentham.voice.SessionStop")
+    @Label("Session Stop")
+    @Category({CATEGORY, "Sessions"})
+    @Description("A transcription session stopping, until its last results are in")
+    @StackTrace(false)
+    public static class SessionStop extends Event {
+
+        @Label("Session ID")
+        public String sessionId;
+
+        @Label("Final Transcript Length")
+        public int transcriptChars;
+    }
+
+    /**
+     * An audio chunk has been queued for a streaming session.
+     */
+    @Name("com.bentham.voice.ChunkEnqueue")
+    @Label("Audio Chunk Enqueue")
+    @Category({CATEGORY, "Audio"})
+    @Description("An audio chunk has been queued for a streaming session")
+    @StackTrace(false)
+    public static class ChunkEnqueue extends Event {
+
+        @Label("Session ID")
+        public String sessionId;
+
+        @Label("Size")
+        @DataAmount
+        public int bytes;
+
+        @Label("Queue Depth")
+        @Description("Chunks waiting, including this one")
+        public int queueDepth;
+    }
+
+    /**
+     * An audio chunk has been taken off a streaming session's queue.
+     */
+    @Name("com.bentham.voice.ChunkDequeue")
+    @Label("Audio Chunk Dequeue")
+    @Category({CATEGORY, "Audio"})
+    @Description("An audio chunk has been taken off a streaming session's queue")
+    @StackTrace(false)
+    public static class ChunkDequeue extends Event {
+
+        @Label("Session ID")
+        public String sessionId;
+
+        @Label("Size")
+        @DataAmount
+        public int bytes;
+
+        @Label("Queue Wait")
+        @Timespan(Timespan.NANOSECONDS)
+        public long queueWait;
+    }
+
+    /**
+     * A call to an AWS service, from the request being sent to its outcome.
+     */
+    @Name("com.bentham.voice.AwsCall")
+    @Label("AWS Call")
+    @Category({CATEGORY, "AWS"})
+    @Description("A call to an AWS service, from the request being sent to its outcome")
+    @StackTrace(false)
+    public static class AwsCall extends Event {
+
+        @Label("Service")
+        public String service;
+
+        @Label("Operation")
+        public String operation;
+
+        @Label("Request")
+        @Description("primary, hedge or fallback for resilient calls; otherwise primary")
+        public String request;
+
+        @Label("Session ID")
+        public String sessionId;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    /**
+     * A transcription result being handed to the result listeners, until they have all returned.
+     */
+    @Name("com.bentham.voice.ResultEmit")
+    @Label("Result Emit")
+    @Category({CATEGORY, "Results"})
+    @Description("A transcription result being handed to the result listeners, until they have all returned or, with fan-out, until it is published")
+    @StackTrace(false)
+    public static class ResultEmit extends Event {
+
+        @Label("Session ID")
+        public String sessionId;
+
+        @Label("Partial")
+        public boolean partial;
+
+        @Label("Transcript Length")
+        public int transcriptChars;
+    }
+
+    /**
+     * A STOMP transcription message being handled, from arrival at the controller to its reply.
+     */
+    @Name("com.bentham.voice.StompMessage")
+    @Label("STOMP Message")
+    @Category({CATEGORY, "WebSocket"})
+    @Description("A STOMP transcription message being handled by the controller")
+    @StackTrace(false)
+    public static class StompMessage extends Event {
+
+        @Label("Destination")
+        @Description("start, audio or stop")
+        public String destination;
+
+        @Label("WebSocket Session ID")
+        public String webSocketSessionId;
+
+        @Label("Session ID")
+        public String sessionId;
+
+        @Label("Size")
+        @DataAmount
+        public int bytes;
+    }
+}
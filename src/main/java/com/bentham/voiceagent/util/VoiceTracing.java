@@ -0,0 +1,239 @@
+package com.bentham.voiceagent.util;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * OpenTelemetry tracing for the voice pipeline.
+ *
+ * <p>A streaming session is one span, started when the session starts and ended when it stops.
+ * Results are delivered with the session's context current, so each turn, and the Bedrock and
+ * Polly calls it makes, are spans below the session wherever their futures complete. Context
+ * crosses thread hops explicitly: callbacks and tasks are wrapped with {@link Context#wrap},
+ * and reactive pipelines carry it in the Reactor context under {@link #propagate(Context)}.</p>
+ *
+ * <p>Audio chunks get no spans of their own. A sampled session counts them in an
+ * {@link AudioTally} that is written to its span when it ends, and an unsampled one skips even
+ * that, so the per-chunk cost is a null check. Sampling is decided once per session and
+ * followed by everything below it.</p>
+ *
+ * <p>Until {@link #install(OpenTelemetry)} is called, spans are no-ops.</p>
+ */
+public final class VoiceTracing {
+
+    /**
+     * The instrumentation scope of the pipeline's spans.
+     */
+    public static final String INSTRUMENTATION_NAME = "com.bentham.voiceagent";
+
+    public static final AttributeKey<String> SESSION_ID = AttributeKey.stringKey("voice.session.id");
+    public static final AttributeKey<String> SESSION_API = AttributeKey.stringKey("voice.session.api");
+    public static final AttributeKey<String> SESSION_STREAM = AttributeKey.stringKey("voice.session.stream");
+    public static final AttributeKey<String> WEBSOCKET_SESSION_ID = AttributeKey.stringKey("voice.websocket.session.id");
+    public static final AttributeKey<Long> AUDIO_CHUNKS = AttributeKey.longKey("voice.audio.chunks");
+    public static final AttributeKey<Long> AUDIO_BYTES = AttributeKey.longKey("voice.audio.bytes");
+    public static final AttributeKey<Long> TRANSCRIPT_CHARS = AttributeKey.longKey("voice.transcript.chars");
+    public static final AttributeKey<Long> RESPONSE_CHARS = AttributeKey.longKey("voice.response.chars");
+    public static final AttributeKey<String> SPECULATION = AttributeKey.stringKey("voice.speculation");
+    public static final AttributeKey<String> REQUEST = AttributeKey.stringKey("voice.request");
+    public static final AttributeKey<Boolean> CANCELLED = AttributeKey.booleanKey("voice.cancelled");
+    public static final AttributeKey<String> MODEL_ID = AttributeKey.stringKey("gen_ai.request.model");
+    public static final AttributeKey<Long> INPUT_TOKENS = AttributeKey.longKey("gen_ai.usage.input_tokens");
+    public static final AttributeKey<Long> OUTPUT_TOKENS = AttributeKey.longKey("gen_ai.usage.output_tokens");
+    public static final AttributeKey<String> VOICE_ID = AttributeKey.stringKey("voice.polly.voice_id");
+    public static final AttributeKey<String> OUTPUT_FORMAT = AttributeKey.stringKey("voice.polly.output_format");
+    public static final AttributeKey<Long> TEXT_CHARS = AttributeKey.longKey("voice.polly.text_chars");
+    public static final AttributeKey<Long> BATCH_SEGMENTS = AttributeKey.longKey("voice.batch.segments");
+
+    private static final AttributeKey<String> RPC_SYSTEM = AttributeKey.stringKey("rpc.system");
+    private static final AttributeKey<String> RPC_SERVICE = AttributeKey.stringKey("rpc.service");
+    private static final AttributeKey<String> RPC_METHOD = AttributeKey.stringKey("rpc.method");
+
+    // Key of the OpenTelemetry context in a Reactor context
+    private static final Class<Context> REACTOR_KEY = Context.class;
+
+    private static volatile Tracer tracer = OpenTelemetry.noop().getTracer(INSTRUMENTATION_NAME);
+
+    private VoiceTracing() {
+    }
+
+    /**
+     * Sends the pipeline's spans to an OpenTelemetry instance from now on.
+     *
+     * @param openTelemetry the instance, whose sampler and exporters apply
+     */
+    public static void install(OpenTelemetry openTelemetry) {
+        tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+    }
+
+    /**
+     * Gets the tracer the pipeline's spans are started with.
+     *
+     * @return the tracer
+     */
+    public static Tracer tracer() {
+        return tracer;
+    }
+
+    /**
+     * Starts a span below the current context.
+     *
+     * @param name the span name
+     * @param kind the span kind
+     * @return the started span
+     */
+    public static Span startSpan(String name, SpanKind kind) {
+        return startSpan(name, kind, Context.current());
+    }
+
+    /**
+     * Starts a span below a given context.
+     *
+     * @param name the span name
+     * @param kind the span kind
+     * @param parent the context holding the parent span
+     * @return the started span
+     */
+    public static Span startSpan(String name, SpanKind kind, Context parent) {
+        return tracer.spanBuilder(name).setSpanKind(kind).setParent(parent).startSpan();
+    }
+
+    /**
+     * Starts a client span for an AWS call below the current context, named and tagged the way
+     * the OpenTelemetry AWS SDK instrumentation names its spans.
+     *
+     * @param service the AWS service, such as {@code Polly}
+     * @param operation the operation, such as {@code SynthesizeSpeech}
+     * @return the started span
+     */
+    public static Span startAwsSpan(String service, String operation) {
+        return startAwsSpan(service, operation, Context.current());
+    }
+
+    /**
+     * Starts a client span for an AWS call below a given context.
+     *
+     * @param service the AWS service, such as {@code Polly}
+     * @param operation the operation, such as {@code SynthesizeSpeech}
+     * @param parent the context holding the parent span
+     * @return the started span
+     */
+    public static Span startAwsSpan(String service, String operation, Context parent) {
+        return tracer.spanBuilder(service + "." + operation)
+                .setSpanKind(SpanKind.CLIENT)
+                .setParent(parent)
+                .setAttribute(RPC_SYSTEM, "aws-api")
+                .setAttribute(RPC_SERVICE, service)
+                .setAttribute(RPC_METHOD, operation)
+                .startSpan();
+    }
+
+    /**
+     * Ends a span when a future completes, marking it cancelled or failed as the future was.
+     *
+     * @param span the span
+     * @param future the future
+     * @param <T> the result type
+     * @return the future
+     */
+    public static <T> CompletableFuture<T> endWhenComplete(Span span, CompletableFuture<T> future) {
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                recordFailure(span, error);
+            }
+            span.end();
+        });
+        return future;
+    }
+
+    /**
+     * Marks a span as failed, or as cancelled if the error is a cancellation.
+     *
+     * @param span the span
+     * @param error the error, possibly wrapped in a CompletionException
+     */
+    public static void recordFailure(Span span, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof CancellationException) {
+            span.setAttribute(CANCELLED, true);
+            return;
+        }
+        span.recordException(cause);
+        span.setStatus(StatusCode.ERROR, String.valueOf(cause.getMessage()));
+    }
+
+    /**
+     * Creates a tally of the audio passing through a span, if the span is sampled.
+     *
+     * @param span the span
+     * @return a new tally, or null if the span is not recording
+     */
+    public static AudioTally tally(Span span) {
+        return span.isRecording() ? new AudioTally() : null;
+    }
+
+    /**
+     * Puts an OpenTelemetry context into the Reactor context of a pipeline, for operators
+     * upstream to start their spans below it. Use with {@code contextWrite}.
+     *
+     * @param context the OpenTelemetry context
+     * @return a function adding the context to a Reactor context
+     */
+    public static Function<reactor.util.context.Context, reactor.util.context.Context> propagate(Context context) {
+        return reactorContext -> reactorContext.put(REACTOR_KEY, context);
+    }
+
+    /**
+     * Gets the OpenTelemetry context carried in a Reactor context.
+     *
+     * @param reactorContext the Reactor context, as seen by {@code deferContextual}
+     * @return the carried context, or the current context if there is none
+     */
+    public static Context fromReactorContext(ContextView reactorContext) {
+        return reactorContext.getOrDefault(REACTOR_KEY, Context.current());
+    }
+
+    /**
+     * Counts the audio chunks and bytes passing through a sampled span.
+     */
+    public static final class AudioTally {
+
+        private final AtomicLong chunks = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+
+        AudioTally() {
+        }
+
+        /**
+         * Counts one chunk.
+         *
+         * @param size the chunk's size in bytes
+         */
+        public void add(int size) {
+            chunks.incrementAndGet();
+            bytes.addAndGet(size);
+        }
+
+        /**
+         * Writes the counts to a span as {@code voice.audio.chunks} and {@code voice.audio.bytes}.
+         *
+         * @param span the span
+         */
+        public void recordOn(Span span) {
+            span.setAttribute(AUDIO_CHUNKS, chunks.get());
+            span.setAttribute(AUDIO_BYTES, bytes.get());
+        }
+    }
+}
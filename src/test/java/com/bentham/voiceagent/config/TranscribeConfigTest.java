@@ -16,7 +16,10 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 @TestPropertySource(properties = {
         "aws.transcribe.language-code=en-US",
         "aws.transcribe.sample-rate=16000",
-        "aws.transcribe.enable-partial-results=true"
+        "aws.transcribe.enable-partial-results=true",
+        "aws.transcribe.aggregation.enabled=true",
+        "aws.transcribe.aggregation.target-chunk-ms=100",
+        "aws.transcribe.aggregation.max-delay-ms=120"
 })
 class TranscribeConfigTest {
 
@@ -40,4 +43,11 @@ class TranscribeConfigTest {
         assertNotNull(transcribeConfig.getEnablePartialResults(), "Enable partial results flag should not be null");
         assertTrue(transcribeConfig.getEnablePartialResults(), "Enable partial results should be true");
     }
+
+    @Test
+    void configShouldLoadAggregationSettings() {
+        assertTrue(transcribeConfig.getAggregationEnabled(), "Aggregation should be enabled");
+        assertEquals(100, transcribeConfig.getAggregationTargetChunkMs(), "Target chunk should match configuration");
+        assertEquals(120, transcribeConfig.getAggregationMaxDelayMs(), "Max delay should match configuration");
+    }
 }
@@ -0,0 +1,107 @@
+package com.bentham.voiceagent.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the AudioReorderBuffer class.
+ */
+class AudioReorderBufferTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Counter reordered = meterRegistry.counter("reordered");
+    private final Counter skipped = meterRegistry.counter("skipped");
+    private final Counter duplicates = meterRegistry.counter("duplicates");
+
+    private static byte[] frame(int value) {
+        return new byte[] {(byte) value};
+    }
+
+    private static int[] values(List<byte[]> frames) {
+        return frames.stream().mapToInt(frame -> frame[0]).toArray();
+    }
+
+    @Test
+    void framesInOrderShouldPassStraightThrough() {
+        // Arrange
+        AudioReorderBuffer buffer = new AudioReorderBuffer(4, reordered, skipped, duplicates);
+
+        // Act & Assert
+        assertArrayEquals(new int[] {0}, values(buffer.accept(0, frame(0))));
+        assertArrayEquals(new int[] {1}, values(buffer.accept(1, frame(1))));
+        assertEquals(0, reordered.count());
+    }
+
+    @Test
+    void earlyFramesShouldWaitForTheMissingOne() {
+        // Arrange
+        AudioReorderBuffer buffer = new AudioReorderBuffer(4, reordered, skipped, duplicates);
+
+        // Act
+        List<byte[]> afterTwo = buffer.accept(2, frame(2));
+        List<byte[]> afterOne = buffer.accept(1, frame(1));
+        List<byte[]> afterZero = buffer.accept(0, frame(0));
+
+        // Assert
+        assertTrue(afterTwo.isEmpty());
+        assertTrue(afterOne.isEmpty());
+        assertArrayEquals(new int[] {0, 1, 2}, values(afterZero));
+        assertEquals(2, reordered.count());
+    }
+
+    @Test
+    void missingFrameShouldBeSkippedOnceTheWindowIsFull() {
+        // Arrange
+        AudioReorderBuffer buffer = new AudioReorderBuffer(2, reordered, skipped, duplicates);
+        buffer.accept(0, frame(0));
+        buffer.accept(2, frame(2));
+        buffer.accept(3, frame(3));
+
+        // Act
+        List<byte[]> released = buffer.accept(4, frame(4));
+
+        // Assert
+        assertArrayEquals(new int[] {2, 3, 4}, values(released));
+        assertEquals(1, skipped.count());
+        assertTrue(buffer.accept(1, frame(1)).isEmpty());
+        assertEquals(1, duplicates.count());
+    }
+
+    @Test
+    void repeatedFramesShouldBeDropped() {
+        // Arrange
+        AudioReorderBuffer buffer = new AudioReorderBuffer(4, reordered, skipped, duplicates);
+        buffer.accept(0, frame(0));
+        buffer.accept(2, frame(2));
+
+        // Act
+        List<byte[]> repeatDelivered = buffer.accept(0, frame(0));
+        List<byte[]> repeatWaiting = buffer.accept(2, frame(2));
+
+        // Assert
+        assertTrue(repeatDelivered.isEmpty());
+        assertTrue(repeatWaiting.isEmpty());
+        assertEquals(2, duplicates.count());
+    }
+
+    @Test
+    void drainShouldReturnWaitingFramesInOrder() {
+        // Arrange
+        AudioReorderBuffer buffer = new AudioReorderBuffer(8, reordered, skipped, duplicates);
+        buffer.accept(5, frame(5));
+        buffer.accept(2, frame(2));
+
+        // Act
+        List<byte[]> drained = buffer.drain();
+
+        // Assert
+        assertArrayEquals(new int[] {2, 5}, values(drained));
+        assertEquals(4, skipped.count());
+        assertTrue(buffer.drain().isEmpty());
+    }
+}
@@ -0,0 +1,167 @@
+package com.bentham.voiceagent.controller;
+
+import com.bentham.voiceagent.config.PollyConfig;
+import com.bentham.voiceagent.config.SpeechStreamingConfig;
+import com.bentham.voiceagent.model.SpeechFormat;
+import com.bentham.voiceagent.service.SpeechSynthesisService;
+import com.bentham.voiceagent.service.impl.SpeechStreamingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the SpeechStreamingController class.
+ */
+class SpeechStreamingControllerTest {
+
+    private static final String TEXT = "Thanks for calling";
+
+    private SpeechSynthesisService synthesis;
+    private SpeechStreamingService streamingService;
+    private SpeechStreamingController controller;
+
+    @BeforeEach
+    void setUp() {
+        synthesis = mock(SpeechSynthesisService.class);
+        when(synthesis.synthesizeSpeech(anyString(), anyString(), anyString())).thenAnswer(invocation ->
+                CompletableFuture.<InputStream>completedFuture(
+                        new ByteArrayInputStream(TEXT.getBytes(StandardCharsets.US_ASCII))));
+        SpeechStreamingConfig streamingConfig = new SpeechStreamingConfig() {
+            @Override
+            public Integer getChunkBytes() {
+                return 8;
+            }
+
+            @Override
+            public Integer getClipCacheSize() {
+                return 4;
+            }
+
+            @Override
+            public Integer getMaxCachedClipBytes() {
+                return 1024;
+            }
+        };
+        PollyConfig pollyConfig = new PollyConfig() {
+            @Override
+            public String getVoiceId() {
+                return "Joanna";
+            }
+
+            @Override
+            public String getOutputFormat() {
+                return "mp3";
+            }
+        };
+        streamingService = new SpeechStreamingService(synthesis, streamingConfig, new SimpleMeterRegistry());
+        controller = new SpeechStreamingController(streamingService, pollyConfig);
+    }
+
+    @AfterEach
+    void tearDown() {
+        streamingService.shutdown();
+    }
+
+    @Test
+    void firstRequestShouldBeStreamedWithoutRanges() throws Exception {
+        // Arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        controller.speak(TEXT, null, null, null, "bytes=0-3", response);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        assertEquals("audio/mpeg", response.getContentType());
+        assertEquals("none", response.getHeader("Accept-Ranges"));
+        assertEquals(TEXT, response.getContentAsString());
+    }
+
+    @Test
+    void formatShouldBeNegotiatedFromAcceptHeader() throws Exception {
+        // Arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        controller.speak(TEXT, null, null, "audio/ogg", null, response);
+
+        // Assert
+        assertEquals("audio/ogg", response.getContentType());
+        verify(synthesis).synthesizeSpeech(TEXT, "Joanna", "ogg_vorbis");
+    }
+
+    @Test
+    void cachedClipShouldServeRequestedRange() throws Exception {
+        // Arrange
+        controller.speak(TEXT, null, "pcm", null, null, new MockHttpServletResponse());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        controller.speak(TEXT, null, "pcm", null, "bytes=4-9", response);
+
+        // Assert
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 4-9/" + TEXT.length(), response.getHeader("Content-Range"));
+        assertEquals("ks for", response.getContentAsString());
+        verify(synthesis, times(1)).synthesizeSpeech(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void cachedClipShouldRejectUnsatisfiableRange() throws Exception {
+        // Arrange
+        controller.speak(TEXT, null, null, null, null, new MockHttpServletResponse());
+        String clipId = SpeechStreamingService.clipId(TEXT, "Joanna", SpeechFormat.MP3);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        controller.clip(clipId, "bytes=500-", response);
+
+        // Assert
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + TEXT.length(), response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void cachedClipShouldBeServedWholeWithoutRange() throws Exception {
+        // Arrange
+        controller.speak(TEXT, null, null, null, null, new MockHttpServletResponse());
+        String clipId = SpeechStreamingService.clipId(TEXT, "Joanna", SpeechFormat.MP3);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        controller.clip(clipId, null, response);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals(TEXT.length(), response.getContentLength());
+        assertEquals(TEXT, response.getContentAsString());
+    }
+
+    @Test
+    void unknownClipShouldBeNotFound() {
+        ResponseStatusException error = assertThrows(ResponseStatusException.class,
+                () -> controller.clip("missing", null, new MockHttpServletResponse()));
+        assertEquals(HttpStatus.NOT_FOUND, error.getStatusCode());
+    }
+
+    @Test
+    void unsupportedFormatShouldBeBadRequest() {
+        ResponseStatusException error = assertThrows(ResponseStatusException.class,
+                () -> controller.speak(TEXT, null, "wav", null, null, new MockHttpServletResponse()));
+        assertEquals(HttpStatus.BAD_REQUEST, error.getStatusCode());
+    }
+}
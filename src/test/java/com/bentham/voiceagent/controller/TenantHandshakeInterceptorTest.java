@@ -0,0 +1,88 @@
+package com.bentham.voiceagent.controller;
+
+import com.bentham.voiceagent.config.AdmissionConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TenantHandshakeInterceptor class.
+ */
+class TenantHandshakeInterceptorTest {
+
+    private static TenantHandshakeInterceptor interceptor(String apiKeys) {
+        return new TenantHandshakeInterceptor(new AdmissionConfig() {
+            @Override
+            public String getTenantApiKeys() {
+                return apiKeys;
+            }
+        });
+    }
+
+    @Test
+    void clientAddressShouldBeTheTenantWithoutApiKeys() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/ws");
+        request.setRemoteAddr("203.0.113.7");
+        Map<String, Object> attributes = new HashMap<>();
+
+        // Act
+        boolean accepted = interceptor("").beforeHandshake(new ServletServerHttpRequest(request),
+                new ServletServerHttpResponse(new MockHttpServletResponse()), null, attributes);
+
+        // Assert
+        assertTrue(accepted);
+        assertEquals("203.0.113.7", attributes.get(TranscriptionWebSocketController.TENANT_ATTRIBUTE));
+    }
+
+    @Test
+    void apiKeyShouldSelectItsTenant() {
+        // Arrange
+        TenantHandshakeInterceptor interceptor = interceptor("k1=firm-a, k2=firm-b");
+        MockHttpServletRequest header = new MockHttpServletRequest("GET", "/api/ws");
+        header.addHeader(TenantHandshakeInterceptor.API_KEY_HEADER, "k1");
+        MockHttpServletRequest parameter = new MockHttpServletRequest("GET", "/api/ws");
+        parameter.setQueryString("api-key=k2");
+        Map<String, Object> headerAttributes = new HashMap<>();
+        Map<String, Object> parameterAttributes = new HashMap<>();
+
+        // Act
+        interceptor.beforeHandshake(new ServletServerHttpRequest(header),
+                new ServletServerHttpResponse(new MockHttpServletResponse()), null, headerAttributes);
+        interceptor.beforeHandshake(new ServletServerHttpRequest(parameter),
+                new ServletServerHttpResponse(new MockHttpServletResponse()), null, parameterAttributes);
+
+        // Assert
+        assertEquals("firm-a", headerAttributes.get(TranscriptionWebSocketController.TENANT_ATTRIBUTE));
+        assertEquals("firm-b", parameterAttributes.get(TranscriptionWebSocketController.TENANT_ATTRIBUTE));
+    }
+
+    @Test
+    void unknownApiKeyShouldBeRefused() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/ws");
+        request.addHeader(TenantHandshakeInterceptor.API_KEY_HEADER, "guess");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Map<String, Object> attributes = new HashMap<>();
+
+        // Act
+        boolean accepted = interceptor("k1=firm-a").beforeHandshake(new ServletServerHttpRequest(request),
+                new ServletServerHttpResponse(response), null, attributes);
+
+        // Assert
+        assertFalse(accepted);
+        assertTrue(attributes.isEmpty());
+    }
+
+    @Test
+    void malformedApiKeysShouldFailAtStartup() {
+        assertThrows(IllegalArgumentException.class, () -> interceptor("k1"));
+    }
+}
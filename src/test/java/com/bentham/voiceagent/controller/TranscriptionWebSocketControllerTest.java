@@ -1,22 +1,37 @@
 package com.bentham.voiceagent.controller;
 
+import com.bentham.voiceagent.config.AdmissionConfig;
+import com.bentham.voiceagent.config.InboundDispatchConfig;
 import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.service.AdmissionRejectedException;
 import com.bentham.voiceagent.service.TranscriptionService;
+import com.bentham.voiceagent.service.impl.SessionAdmissionService;
+import com.bentham.voiceagent.service.impl.SessionMessenger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -37,10 +52,86 @@ class TranscriptionWebSocketControllerTest {
     
     private TranscriptionWebSocketController controller;
     
+    private SessionAdmissionService admissionService;
+    
+    private int resumeGraceMs = 10000;
+    
+    private int maxQueuedSessions = 0;
+    
+    private int maxQueueWaitMs = 0;
+    
     @BeforeEach
     void setUp() {
-        controller = new TranscriptionWebSocketController(transcriptionService, messagingTemplate);
+        // One session at a time and, unless a test sets one, no queue, so a second start is
+        // rejected straight away
+        AdmissionConfig admissionConfig = new AdmissionConfig() {
+            @Override
+            public Boolean getEnabled() {
+                return true;
+            }
+            
+            @Override
+            public Integer getMaxConcurrentSessions() {
+                return 1;
+            }
+            
+            @Override
+            public Integer getMaxQueuedSessions() {
+                return maxQueuedSessions;
+            }
+            
+            @Override
+            public Integer getMaxQueueWaitMs() {
+                return maxQueueWaitMs;
+            }
+            
+            @Override
+            public Double getTenantSessionsPerSecond() {
+                return 100.0;
+            }
+            
+            @Override
+            public Integer getTenantSessionBurst() {
+                return 100;
+            }
+            
+            @Override
+            public Integer getTenantAudioBytesPerSecond() {
+                return 1_000_000;
+            }
+            
+            @Override
+            public Integer getTenantAudioBurstBytes() {
+                return 1_000_000;
+            }
+        };
+        admissionService = new SessionAdmissionService(admissionConfig, new SimpleMeterRegistry());
+        InboundDispatchConfig inboundDispatchConfig = new InboundDispatchConfig() {
+            @Override
+            public Integer getReorderWindow() {
+                return 2;
+            }
+            
+            @Override
+            public Integer getResumeGraceMs() {
+                return resumeGraceMs;
+            }
+        };
+        controller = new TranscriptionWebSocketController(transcriptionService, admissionService,
+                new SessionMessenger(messagingTemplate), inboundDispatchConfig, new SimpleMeterRegistry());
         when(headerAccessor.getSessionId()).thenReturn("test-websocket-session");
+        lenient().when(transcriptionService.stopStreamingTranscriptionAsync(anyString()))
+            .thenReturn(CompletableFuture.completedFuture(""));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        admissionService.shutdown();
+    }
+    
+    private static AdmissionRejectedException rejection(CompletableFuture<Map<String, String>> start) {
+        CompletionException thrown = assertThrows(CompletionException.class, start::join);
+        return assertInstanceOf(AdmissionRejectedException.class, thrown.getCause());
     }
     
     @Test
@@ -49,12 +140,24 @@ class TranscriptionWebSocketControllerTest {
         when(transcriptionService.startStreamingTranscription()).thenReturn("test-transcription-session");
         
         // Act
-        Map<String, String> response = controller.startTranscription(headerAccessor);
+        Map<String, String> response = controller.startTranscription(headerAccessor).join();
         
         // Assert
         assertEquals("test-transcription-session", response.get("sessionId"));
     }
     
+    @Test
+    void tenantShouldComeFromThePrincipalOrTheHandshakeAttribute() {
+        // Arrange
+        Map<String, Object> attributes = Map.of(TranscriptionWebSocketController.TENANT_ATTRIBUTE, "acme");
+        
+        // Act & Assert
+        assertEquals("alice", TranscriptionWebSocketController.getTenantId(() -> "alice", attributes));
+        assertEquals("acme", TranscriptionWebSocketController.getTenantId(null, attributes));
+        assertEquals(TranscriptionWebSocketController.DEFAULT_TENANT,
+                TranscriptionWebSocketController.getTenantId(null, null));
+    }
+    
     @Test
     void processAudioShouldSendTranscriptionResult() {
         // Arrange
@@ -75,7 +178,8 @@ class TranscriptionWebSocketControllerTest {
         verify(transcriptionService).sendAudioChunk("test-transcription-session", audioData);
         
         ArgumentCaptor<TranscriptionResult> resultCaptor = ArgumentCaptor.forClass(TranscriptionResult.class);
-        verify(messagingTemplate).convertAndSend(eq("/topic/transcription"), resultCaptor.capture());
+        verify(messagingTemplate).convertAndSendToUser(eq("test-websocket-session"), eq("/queue/transcription"),
+                resultCaptor.capture(), anyMap());
         
         TranscriptionResult capturedResult = resultCaptor.getValue();
         assertEquals("test-transcription-session", capturedResult.getSessionId());
@@ -101,7 +205,34 @@ class TranscriptionWebSocketControllerTest {
         
         // Assert
         verify(transcriptionService).sendAudioChunk("test-transcription-session", audioData);
-        verify(messagingTemplate, never()).convertAndSend(eq("/topic/transcription"), any(TranscriptionResult.class));
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), eq("/queue/transcription"),
+                any(TranscriptionResult.class), anyMap());
+    }
+    
+    @Test
+    void processAudioShouldSendNumberedFramesInSequenceOrder() {
+        // Arrange
+        byte[] first = new byte[] {0};
+        byte[] second = new byte[] {1};
+        byte[] third = new byte[] {2};
+        
+        Map<String, String> sessionMap = new ConcurrentHashMap<>();
+        sessionMap.put("test-websocket-session", "test-transcription-session");
+        ReflectionTestUtils.setField(controller, "sessionMap", sessionMap);
+        
+        when(headerAccessor.getFirstNativeHeader(TranscriptionWebSocketController.SEQUENCE_HEADER))
+            .thenReturn("1", "2", "0");
+        
+        // Act
+        controller.processAudio(second, headerAccessor);
+        controller.processAudio(third, headerAccessor);
+        controller.processAudio(first, headerAccessor);
+        
+        // Assert
+        InOrder inOrder = inOrder(transcriptionService);
+        inOrder.verify(transcriptionService).sendAudioChunk("test-transcription-session", first);
+        inOrder.verify(transcriptionService).sendAudioChunk("test-transcription-session", second);
+        inOrder.verify(transcriptionService).sendAudioChunk("test-transcription-session", third);
     }
     
     @Test
@@ -114,7 +245,8 @@ class TranscriptionWebSocketControllerTest {
         
         // Assert
         verify(transcriptionService, never()).sendAudioChunk(any(), any());
-        verify(messagingTemplate, never()).convertAndSend(eq("/topic/transcription"), any(TranscriptionResult.class));
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), eq("/queue/transcription"),
+                any(TranscriptionResult.class), anyMap());
     }
     
     @Test
@@ -124,11 +256,11 @@ class TranscriptionWebSocketControllerTest {
         sessionMap.put("test-websocket-session", "test-transcription-session");
         ReflectionTestUtils.setField(controller, "sessionMap", sessionMap);
         
-        when(transcriptionService.stopStreamingTranscription("test-transcription-session"))
-            .thenReturn("Final transcription");
+        when(transcriptionService.stopStreamingTranscriptionAsync("test-transcription-session"))
+            .thenReturn(CompletableFuture.completedFuture("Final transcription"));
         
         // Act
-        TranscriptionResult result = controller.stopTranscription(headerAccessor);
+        TranscriptionResult result = controller.stopTranscription(headerAccessor).join();
         
         // Assert
         assertEquals("test-transcription-session", result.getSessionId());
@@ -141,7 +273,7 @@ class TranscriptionWebSocketControllerTest {
     @Test
     void stopTranscriptionShouldHandleMissingSession() {
         // Act
-        TranscriptionResult result = controller.stopTranscription(headerAccessor);
+        TranscriptionResult result = controller.stopTranscription(headerAccessor).join();
         
         // Assert
         assertNull(result.getSessionId());
@@ -149,4 +281,254 @@ class TranscriptionWebSocketControllerTest {
         assertFalse(result.isPartial());
         assertEquals(0.0, result.getConfidence());
     }
+    
+    @Test
+    void startTranscriptionShouldBeRejectedWhenAtCapacity() {
+        // Arrange
+        when(transcriptionService.startStreamingTranscription()).thenReturn("test-transcription-session");
+        controller.startTranscription(headerAccessor).join();
+        SimpMessageHeaderAccessor otherHeaderAccessor = mock(SimpMessageHeaderAccessor.class);
+        when(otherHeaderAccessor.getSessionId()).thenReturn("other-websocket-session");
+        
+        // Act
+        AdmissionRejectedException exception = rejection(controller.startTranscription(otherHeaderAccessor));
+        Map<String, String> error = controller.handleAdmissionRejected(exception);
+        
+        // Assert
+        verify(transcriptionService, times(1)).startStreamingTranscription();
+        assertEquals("admission-rejected", error.get("error"));
+        assertEquals("queue-full", error.get("reason"));
+        assertNotNull(error.get("message"));
+    }
+    
+    @Test
+    void queuedStartShouldHoldTheSessionsAudioUntilAdmitted() {
+        // Arrange: the one slot is taken by another connection
+        maxQueuedSessions = 1;
+        maxQueueWaitMs = 5000;
+        SimpMessageHeaderAccessor otherAccessor = mock(SimpMessageHeaderAccessor.class);
+        when(otherAccessor.getSessionId()).thenReturn("other-websocket-session");
+        when(transcriptionService.startStreamingTranscription())
+            .thenReturn("other-transcription-session", "test-transcription-session");
+        controller.startTranscription(otherAccessor).join();
+        
+        // Act: the start waits without holding the thread, and audio sent after it is held
+        CompletableFuture<Map<String, String>> started = controller.startTranscription(headerAccessor);
+        controller.processAudio(new byte[] {0}, headerAccessor);
+        assertFalse(started.isDone());
+        verify(transcriptionService, never()).sendAudioChunk(anyString(), any());
+        controller.stopTranscription(otherAccessor).join();
+        
+        // Assert
+        assertEquals("test-transcription-session", started.join().get("sessionId"));
+        verify(transcriptionService, timeout(2000)).sendAudioChunk("test-transcription-session", new byte[] {0});
+    }
+    
+    @Test
+    void stopTranscriptionShouldReleaseAdmission() {
+        // Arrange
+        when(transcriptionService.startStreamingTranscription()).thenReturn("test-transcription-session");
+        when(transcriptionService.stopStreamingTranscriptionAsync("test-transcription-session"))
+            .thenReturn(CompletableFuture.completedFuture("Final transcription"));
+        controller.startTranscription(headerAccessor).join();
+        
+        // Act
+        controller.stopTranscription(headerAccessor).join();
+        
+        // Assert
+        assertEquals(0, admissionService.getActiveSessions());
+    }
+    
+    @Test
+    void stopShouldNotWaitForTheLastResults() {
+        // Arrange
+        CompletableFuture<String> finalTranscription = new CompletableFuture<>();
+        when(transcriptionService.startStreamingTranscription()).thenReturn("test-transcription-session");
+        when(transcriptionService.stopStreamingTranscriptionAsync("test-transcription-session"))
+            .thenReturn(finalTranscription);
+        controller.startTranscription(headerAccessor).join();
+        
+        // Act
+        CompletableFuture<TranscriptionResult> stopped = controller.stopTranscription(headerAccessor);
+        
+        // Assert: the slot is held until the last results are in
+        assertFalse(stopped.isDone());
+        assertEquals(1, admissionService.getActiveSessions());
+        finalTranscription.complete("Final transcription");
+        assertEquals("Final transcription", stopped.join().getTranscript());
+        assertEquals(0, admissionService.getActiveSessions());
+    }
+    
+    @Test
+    void disconnectShouldStopAbandonedSession() {
+        // Arrange: without a grace period the session cannot be resumed
+        resumeGraceMs = 0;
+        when(transcriptionService.startStreamingTranscription()).thenReturn("test-transcription-session");
+        controller.startTranscription(headerAccessor).join();
+        SessionDisconnectEvent event = new SessionDisconnectEvent(this,
+                MessageBuilder.withPayload(new byte[0]).build(), "test-websocket-session", CloseStatus.NORMAL);
+        
+        // Act
+        controller.handleDisconnect(event);
+        
+        // Assert
+        verify(transcriptionService).stopStreamingTranscriptionAsync("test-transcription-session");
+        assertEquals(0, admissionService.getActiveSessions());
+    }
+    
+    @Test
+    void reconnectingClientShouldResumeItsSessionWithItsToken() {
+        // Arrange
+        when(headerAccessor.getFirstNativeHeader(anyString())).thenReturn(null);
+        when(headerAccessor.getFirstNativeHeader(TranscriptionWebSocketController.SEQUENCED_HEADER)).thenReturn("true");
+        when(transcriptionService.startStreamingTranscription()).thenReturn("test-transcription-session");
+        Map<String, String> started = controller.startTranscription(headerAccessor).join();
+        when(headerAccessor.getFirstNativeHeader(TranscriptionWebSocketController.SEQUENCE_HEADER))
+            .thenReturn("0", "1");
+        controller.processAudio(new byte[] {0}, headerAccessor);
+        controller.processAudio(new byte[] {1}, headerAccessor);
+        controller.handleDisconnect(new SessionDisconnectEvent(this,
+                MessageBuilder.withPayload(new byte[0]).build(), "test-websocket-session", CloseStatus.SESSION_NOT_RELIABLE));
+        
+        SimpMessageHeaderAccessor reconnectedAccessor = mock(SimpMessageHeaderAccessor.class);
+        when(reconnectedAccessor.getSessionId()).thenReturn("reconnected-websocket-session");
+        when(reconnectedAccessor.getFirstNativeHeader(TranscriptionWebSocketController.RESUME_TOKEN_HEADER))
+            .thenReturn(started.get("resumeToken"));
+        
+        // Act
+        Map<String, String> resumed = controller.startTranscription(reconnectedAccessor).join();
+        
+        // Assert
+        assertNotNull(started.get("resumeToken"));
+        assertEquals("true", resumed.get("resumed"));
+        assertEquals("test-transcription-session", resumed.get("sessionId"));
+        assertEquals("2", resumed.get("nextSequence"));
+        verify(transcriptionService, times(1)).startStreamingTranscription();
+        verify(transcriptionService, never()).stopStreamingTranscriptionAsync(any());
+        assertEquals(1, admissionService.getActiveSessions());
+    }
+    
+    @Test
+    void clientShouldResumeBeforeItsOldConnectionIsSeenToClose() {
+        // Arrange
+        when(headerAccessor.getFirstNativeHeader(anyString())).thenReturn(null);
+        when(headerAccessor.getFirstNativeHeader(TranscriptionWebSocketController.SEQUENCED_HEADER)).thenReturn("true");
+        when(transcriptionService.startStreamingTranscription()).thenReturn("test-transcription-session");
+        String token = controller.startTranscription(headerAccessor).join().get("resumeToken");
+        
+        SimpMessageHeaderAccessor reconnectedAccessor = mock(SimpMessageHeaderAccessor.class);
+        when(reconnectedAccessor.getSessionId()).thenReturn("reconnected-websocket-session");
+        when(reconnectedAccessor.getFirstNativeHeader(TranscriptionWebSocketController.RESUME_TOKEN_HEADER))
+            .thenReturn(token);
+        
+        // Act
+        Map<String, String> resumed = controller.startTranscription(reconnectedAccessor).join();
+        controller.handleDisconnect(new SessionDisconnectEvent(this,
+                MessageBuilder.withPayload(new byte[0]).build(), "test-websocket-session", CloseStatus.SESSION_NOT_RELIABLE));
+        
+        // Assert: the old connection's late close leaves the resumed session alone
+        assertEquals("true", resumed.get("resumed"));
+        assertEquals("test-transcription-session", resumed.get("sessionId"));
+        verify(transcriptionService, never()).stopStreamingTranscriptionAsync(any());
+        assertEquals(1, admissionService.getActiveSessions());
+    }
+    
+    @Test
+    void anotherTenantShouldNotResumeASessionWithItsToken() {
+        // Arrange
+        when(headerAccessor.getUser()).thenReturn(() -> "alice");
+        when(headerAccessor.getFirstNativeHeader(anyString())).thenReturn(null);
+        when(headerAccessor.getFirstNativeHeader(TranscriptionWebSocketController.SEQUENCED_HEADER)).thenReturn("true");
+        when(transcriptionService.startStreamingTranscription()).thenReturn("test-transcription-session");
+        String token = controller.startTranscription(headerAccessor).join().get("resumeToken");
+        
+        SimpMessageHeaderAccessor otherAccessor = mock(SimpMessageHeaderAccessor.class);
+        when(otherAccessor.getSessionId()).thenReturn("other-websocket-session");
+        when(otherAccessor.getUser()).thenReturn(() -> "mallory");
+        when(otherAccessor.getFirstNativeHeader(anyString())).thenReturn(null);
+        when(otherAccessor.getFirstNativeHeader(TranscriptionWebSocketController.RESUME_TOKEN_HEADER))
+            .thenReturn(token);
+        
+        // Act & Assert: the token is ignored while the owner is connected, so the start is a new
+        // one and finds no capacity left
+        rejection(controller.startTranscription(otherAccessor));
+        when(headerAccessor.getFirstNativeHeader(TranscriptionWebSocketController.SEQUENCE_HEADER)).thenReturn("0");
+        controller.processAudio(new byte[] {0}, headerAccessor);
+        verify(transcriptionService).sendAudioChunk("test-transcription-session", new byte[] {0});
+        
+        // Act & Assert: and once the owner has dropped
+        controller.handleDisconnect(new SessionDisconnectEvent(this,
+                MessageBuilder.withPayload(new byte[0]).build(), "test-websocket-session", CloseStatus.SESSION_NOT_RELIABLE));
+        rejection(controller.startTranscription(otherAccessor));
+        
+        // Assert: the owner can still resume
+        SimpMessageHeaderAccessor reconnectedAccessor = mock(SimpMessageHeaderAccessor.class);
+        when(reconnectedAccessor.getSessionId()).thenReturn("reconnected-websocket-session");
+        when(reconnectedAccessor.getUser()).thenReturn(() -> "alice");
+        when(reconnectedAccessor.getFirstNativeHeader(TranscriptionWebSocketController.RESUME_TOKEN_HEADER))
+            .thenReturn(token);
+        assertEquals("true", controller.startTranscription(reconnectedAccessor).join().get("resumed"));
+        verify(transcriptionService, times(1)).startStreamingTranscription();
+        verify(transcriptionService, never()).stopStreamingTranscriptionAsync(any());
+    }
+    
+    @Test
+    void unsequencedSessionShouldNotBeGivenAResumeToken() {
+        // Arrange
+        when(transcriptionService.startStreamingTranscription()).thenReturn("test-transcription-session");
+        
+        // Act
+        Map<String, String> started = controller.startTranscription(headerAccessor).join();
+        controller.handleDisconnect(new SessionDisconnectEvent(this,
+                MessageBuilder.withPayload(new byte[0]).build(), "test-websocket-session", CloseStatus.SESSION_NOT_RELIABLE));
+        
+        // Assert
+        assertNull(started.get("resumeToken"));
+        verify(transcriptionService).stopStreamingTranscriptionAsync("test-transcription-session");
+    }
+    
+    @Test
+    void sequencedSessionShouldRejectUnnumberedAudio() {
+        // Arrange
+        when(headerAccessor.getFirstNativeHeader(anyString())).thenReturn(null);
+        when(headerAccessor.getFirstNativeHeader(TranscriptionWebSocketController.SEQUENCED_HEADER)).thenReturn("true");
+        when(transcriptionService.startStreamingTranscription()).thenReturn("test-transcription-session");
+        controller.startTranscription(headerAccessor).join();
+        
+        // Act & Assert
+        TranscriptionWebSocketController.UnnumberedAudioException exception = assertThrows(
+                TranscriptionWebSocketController.UnnumberedAudioException.class,
+                () -> controller.processAudio(new byte[] {0}, headerAccessor));
+        assertEquals("unnumbered-audio", controller.handleUnnumberedAudio(exception).get("error"));
+        verify(transcriptionService, never()).sendAudioChunk(anyString(), any());
+    }
+    
+    @Test
+    void detachedSessionShouldBeStoppedOnceTheGracePeriodIsOver() throws InterruptedException {
+        // Arrange
+        resumeGraceMs = 50;
+        when(headerAccessor.getFirstNativeHeader(anyString())).thenReturn(null);
+        when(headerAccessor.getFirstNativeHeader(TranscriptionWebSocketController.SEQUENCED_HEADER)).thenReturn("true");
+        when(transcriptionService.startStreamingTranscription()).thenReturn("test-transcription-session");
+        Map<String, String> started = controller.startTranscription(headerAccessor).join();
+        
+        // Act
+        controller.handleDisconnect(new SessionDisconnectEvent(this,
+                MessageBuilder.withPayload(new byte[0]).build(), "test-websocket-session", CloseStatus.SESSION_NOT_RELIABLE));
+        
+        // Assert
+        verify(transcriptionService, timeout(2000)).stopStreamingTranscriptionAsync("test-transcription-session");
+        for (int i = 0; i < 100 && admissionService.getActiveSessions() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, admissionService.getActiveSessions());
+        
+        SimpMessageHeaderAccessor reconnectedAccessor = mock(SimpMessageHeaderAccessor.class);
+        when(reconnectedAccessor.getSessionId()).thenReturn("reconnected-websocket-session");
+        when(reconnectedAccessor.getFirstNativeHeader(anyString())).thenReturn(null);
+        when(reconnectedAccessor.getFirstNativeHeader(TranscriptionWebSocketController.RESUME_TOKEN_HEADER))
+            .thenReturn(started.get("resumeToken"));
+        when(transcriptionService.startStreamingTranscription()).thenReturn("new-transcription-session");
+        assertEquals("false", controller.startTranscription(reconnectedAccessor).join().get("resumed"));
+    }
 }
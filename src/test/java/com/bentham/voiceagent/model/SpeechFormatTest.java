@@ -0,0 +1,28 @@
+package com.bentham.voiceagent.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the SpeechFormat enum.
+ */
+class SpeechFormatTest {
+
+    @Test
+    void fromValueShouldMatchPollyFormatNames() {
+        assertEquals(SpeechFormat.OGG_VORBIS, SpeechFormat.fromValue("ogg_vorbis"));
+        assertEquals(SpeechFormat.PCM, SpeechFormat.fromValue("PCM"));
+        assertThrows(IllegalArgumentException.class, () -> SpeechFormat.fromValue("wav"));
+    }
+
+    @Test
+    void fromAcceptShouldTakeFirstSupportedType() {
+        assertEquals(SpeechFormat.PCM, SpeechFormat.fromAccept("audio/pcm;rate=16000, audio/mpeg"));
+        assertEquals(SpeechFormat.OGG_VORBIS, SpeechFormat.fromAccept("audio/webm, audio/ogg;codecs=vorbis"));
+        assertNull(SpeechFormat.fromAccept("*/*"));
+        // Polly's PCM is little-endian, so it cannot be served as big-endian L16
+        assertNull(SpeechFormat.fromAccept("audio/L16;rate=16000"));
+        assertNull(SpeechFormat.fromAccept(null));
+    }
+}
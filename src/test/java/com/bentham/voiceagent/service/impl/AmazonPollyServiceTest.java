@@ -0,0 +1,105 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.PollyConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.polly.PollyAsyncClient;
+import software.amazon.awssdk.services.polly.model.SynthesizeSpeechRequest;
+import software.amazon.awssdk.services.polly.model.SynthesizeSpeechResponse;
+import software.amazon.awssdk.services.polly.model.TextType;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the AmazonPollyService class.
+ */
+@ExtendWith(MockitoExtension.class)
+class AmazonPollyServiceTest {
+
+    @Mock
+    private PollyAsyncClient pollyClient;
+
+    private AmazonPollyService pollyService;
+
+    private CompletableFuture<ResponseInputStream<SynthesizeSpeechResponse>> call;
+
+    @BeforeEach
+    void setUp() {
+        PollyConfig pollyConfig = new PollyConfig() {
+            @Override
+            public String getVoiceId() {
+                return "Joanna";
+            }
+
+            @Override
+            public String getOutputFormat() {
+                return "mp3";
+            }
+        };
+        pollyService = new AmazonPollyService(pollyClient, pollyConfig);
+        call = new CompletableFuture<>();
+        when(pollyClient.synthesizeSpeech(any(SynthesizeSpeechRequest.class),
+                ArgumentMatchers.<AsyncResponseTransformer<SynthesizeSpeechResponse,
+                        ResponseInputStream<SynthesizeSpeechResponse>>>any()))
+                .thenReturn(call);
+    }
+
+    private SynthesizeSpeechRequest capturedRequest() {
+        ArgumentCaptor<SynthesizeSpeechRequest> request = ArgumentCaptor.forClass(SynthesizeSpeechRequest.class);
+        verify(pollyClient).synthesizeSpeech(request.capture(),
+                ArgumentMatchers.<AsyncResponseTransformer<SynthesizeSpeechResponse,
+                        ResponseInputStream<SynthesizeSpeechResponse>>>any());
+        return request.getValue();
+    }
+
+    @Test
+    void synthesizeSpeechShouldUseConfiguredVoiceAndFormat() {
+        // Act
+        pollyService.synthesizeSpeech("Hello");
+
+        // Assert
+        SynthesizeSpeechRequest request = capturedRequest();
+        assertEquals("Hello", request.text());
+        assertEquals("Joanna", request.voiceIdAsString());
+        assertEquals("mp3", request.outputFormatAsString());
+        assertEquals(TextType.TEXT, request.textType());
+    }
+
+    @Test
+    void synthesizeSpeechFromSsmlShouldRequestSsml() {
+        // Act
+        pollyService.synthesizeSpeechFromSsml("<speak>Hello</speak>");
+
+        // Assert
+        assertEquals(TextType.SSML, capturedRequest().textType());
+    }
+
+    @Test
+    void templateShouldBeSynthesizedWholeWhenStitchingIsDisabled() {
+        // Act
+        pollyService.synthesizeSpeechFromSsml("<speak><static>Your balance is</static> ten pounds</speak>");
+
+        // Assert
+        assertEquals("<speak>Your balance is ten pounds</speak>", capturedRequest().text());
+    }
+
+    @Test
+    void cancellingSpeechShouldCancelPollyRequest() {
+        // Act
+        pollyService.synthesizeSpeech("Hello").cancel(true);
+
+        // Assert
+        assertTrue(call.isCancelled());
+    }
+}
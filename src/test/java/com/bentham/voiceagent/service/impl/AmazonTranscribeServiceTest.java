@@ -1,16 +1,26 @@
 package com.bentham.voiceagent.service.impl;
 
+import com.bentham.voiceagent.config.RecordingConfig;
 import com.bentham.voiceagent.config.TranscribeConfig;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.service.TranscriptionResultListener;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.services.transcribe.TranscribeClient;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -28,6 +38,8 @@ class AmazonTranscribeServiceTest {
     private TranscribeConfig transcribeConfig;
     private AwsCredentialsProvider credentialsProvider;
     private AmazonTranscribeService transcribeService;
+    private final List<TranscriptionResult> publishedResults = new ArrayList<>();
+    private final List<String> closedSessions = new ArrayList<>();
     
     @BeforeEach
     void setUp() {
@@ -50,12 +62,61 @@ class AmazonTranscribeServiceTest {
             public Boolean getEnablePartialResults() {
                 return true;
             }
+            
+            @Override
+            public Boolean getAggregationEnabled() {
+                return true;
+            }
+            
+            @Override
+            public Integer getAggregationTargetChunkMs() {
+                return 100;
+            }
+            
+            @Override
+            public Integer getAggregationMaxDelayMs() {
+                return 120;
+            }
         };
         
         // Create a test implementation of AwsCredentialsProvider
         credentialsProvider = () -> null;
         
-        transcribeService = new AmazonTranscribeService(transcribeClient, transcribeConfig, credentialsProvider);
+        // Recording stays disabled so tests leave nothing on disk
+        RecordingConfig recordingConfig = new RecordingConfig() {
+            @Override
+            public Boolean getEnabled() {
+                return false;
+            }
+        };
+        
+        TranscriptionResultListener listener = new TranscriptionResultListener() {
+            @Override
+            public void onResult(TranscriptionResult result) {
+                publishedResults.add(result);
+            }
+            
+            @Override
+            public void onSessionClosed(String sessionId) {
+                closedSessions.add(sessionId);
+            }
+        };
+        
+        // Answers each frame with a final result naming its size, in place of Transcribe
+        TranscribeStreamingUpstream upstream = new TranscribeStreamingUpstream(null, transcribeConfig) {
+            @Override
+            public Flux<TranscriptionResult> transcribe(String sessionId, Flux<byte[]> audio) {
+                return audio.map(frame -> TranscriptionResult.final_(sessionId, frame.length + " bytes", 0.9));
+            }
+        };
+        
+        // The pool is disabled, so streaming sessions are simulated
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        transcribeService = new AmazonTranscribeService(transcribeClient, transcribeConfig, credentialsProvider,
+                meterRegistry, new AudioRecordingService(recordingConfig), List.of(listener), upstream,
+                new TranscribeStreamPool(upstream, transcribeConfig, meterRegistry),
+                new VocabularyCorrector(transcribeConfig, meterRegistry),
+                new ParallelBatchTranscriber(upstream, transcribeConfig, meterRegistry));
     }
     
     @Test
@@ -102,8 +163,8 @@ class AmazonTranscribeServiceTest {
         assertNotNull(finalTranscription);
         
         // Verify the session was removed
-        Map<String, StreamingTranscriptionHandler> sessions = 
-            (Map<String, StreamingTranscriptionHandler>) ReflectionTestUtils.getField(
+        Map<String, StreamingSession> sessions = 
+            (Map<String, StreamingSession>) ReflectionTestUtils.getField(
                 transcribeService, "streamingSessions");
         assertFalse(sessions.containsKey(sessionId));
     }
@@ -129,4 +190,23 @@ class AmazonTranscribeServiceTest {
         // Verify the result
         assertNotNull(future, "CompletableFuture should not be null");
     }
+    
+    @Test
+    void transcribeShouldPublishResultsAndCloseTheSessionWhenAudioEnds() {
+        // Arrange
+        Flux<DataBuffer> audio = Flux.just(new byte[320], new byte[640])
+                .map(DefaultDataBufferFactory.sharedInstance::wrap);
+        
+        // Act
+        List<TranscriptionResult> results = transcribeService.transcribe(audio)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        
+        // Assert
+        assertNotNull(results);
+        assertEquals(List.of("320 bytes", "640 bytes"),
+                results.stream().map(TranscriptionResult::getTranscript).toList());
+        assertEquals(results, publishedResults);
+        assertEquals(List.of(results.get(0).getSessionId()), closedSessions);
+    }
 }
@@ -0,0 +1,158 @@
+package com.bentham.voiceagent.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the AudioFrameAggregator class.
+ */
+class AudioFrameAggregatorTest {
+
+    // 10 ms of 16 kHz 16-bit mono audio
+    private static final int CHUNK_BYTES = 320;
+
+    private ScheduledExecutorService scheduler;
+    private SimpleMeterRegistry meterRegistry;
+    private List<byte[]> chunks;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        meterRegistry = new SimpleMeterRegistry();
+        chunks = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private AudioFrameAggregator aggregator(int maxDelayMs) {
+        return new AudioFrameAggregator("test-session", 16000, 10, maxDelayMs, chunks::add, scheduler, meterRegistry);
+    }
+
+    @Test
+    void smallFramesShouldBeCoalescedIntoTargetChunks() {
+        // Arrange
+        AudioFrameAggregator aggregator = aggregator(1000);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            aggregator.accept(frame(80, (byte) i));
+        }
+
+        // Assert
+        assertEquals(1, chunks.size());
+        assertEquals(CHUNK_BYTES, chunks.get(0).length);
+        assertEquals(0, chunks.get(0)[0]);
+        assertEquals(3, chunks.get(0)[CHUNK_BYTES - 1]);
+    }
+
+    @Test
+    void largeFramesShouldBeSplitIntoTargetChunks() {
+        // Arrange
+        AudioFrameAggregator aggregator = aggregator(1000);
+
+        // Act
+        aggregator.accept(frame(1000, (byte) 7));
+
+        // Assert
+        assertEquals(3, chunks.size());
+        chunks.forEach(chunk -> assertEquals(CHUNK_BYTES, chunk.length));
+
+        aggregator.flush();
+        assertEquals(4, chunks.size());
+        assertEquals(40, chunks.get(3).length);
+    }
+
+    @Test
+    void exactChunkShouldBePassedThroughWithoutCopying() {
+        AudioFrameAggregator aggregator = aggregator(1000);
+        byte[] frame = frame(CHUNK_BYTES, (byte) 1);
+
+        aggregator.accept(frame);
+
+        assertSame(frame, chunks.get(0));
+    }
+
+    @Test
+    void maxDelayShouldSendPartialChunk() throws InterruptedException {
+        // Arrange
+        AudioFrameAggregator aggregator = aggregator(20);
+
+        // Act
+        aggregator.accept(frame(100, (byte) 1));
+
+        // Assert
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (chunks.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, chunks.size());
+        assertEquals(100, chunks.get(0).length);
+        assertEquals(1.0, meterRegistry.counter("transcribe.upstream.events", "trigger", "max-delay").count());
+    }
+
+    @Test
+    void chunksShouldEndOnSampleBoundaries() {
+        // Arrange
+        AudioFrameAggregator aggregator = aggregator(1000);
+
+        // Act
+        aggregator.accept(frame(101, (byte) 1));
+        aggregator.flush();
+        aggregator.accept(frame(1, (byte) 2));
+        aggregator.flush();
+
+        // Assert
+        assertEquals(2, chunks.size());
+        assertEquals(100, chunks.get(0).length);
+        assertArrayEquals(new byte[] {1, 2}, chunks.get(1));
+    }
+
+    @Test
+    void closeShouldFlushAndRejectFurtherFrames() {
+        // Arrange
+        AudioFrameAggregator aggregator = aggregator(1000);
+        aggregator.accept(frame(60, (byte) 1));
+
+        // Act
+        aggregator.close();
+
+        // Assert
+        assertEquals(1, chunks.size());
+        assertThrows(IllegalStateException.class, () -> aggregator.accept(frame(2, (byte) 1)));
+    }
+
+    @Test
+    void metricsShouldCountFramesAndUpstreamEvents() {
+        // Arrange
+        AudioFrameAggregator aggregator = aggregator(1000);
+
+        // Act
+        aggregator.accept(frame(200, (byte) 1));
+        aggregator.accept(frame(200, (byte) 1));
+
+        // Assert
+        assertEquals(2.0, meterRegistry.counter("transcribe.aggregator.frames.in").count());
+        assertEquals(1.0, meterRegistry.counter("transcribe.upstream.events", "trigger", "full").count());
+        assertEquals(1L, meterRegistry.timer("transcribe.aggregator.added.latency").count());
+    }
+
+    private static byte[] frame(int length, byte value) {
+        byte[] frame = new byte[length];
+        Arrays.fill(frame, value);
+        return frame;
+    }
+}
@@ -0,0 +1,258 @@
+package com.bentham.voiceagent.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for the AudioPreprocessor class.
+ */
+class AudioPreprocessorTest {
+
+    private static final int SAMPLE_RATE = 16000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private static float[] tone(double frequency, double amplitude, int samples) {
+        float[] signal = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            signal[i] = (float) (amplitude * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE));
+        }
+        return signal;
+    }
+
+    private static float[] noise(double amplitude, int samples, long seed) {
+        Random random = new Random(seed);
+        float[] signal = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            signal[i] = (float) (amplitude * random.nextGaussian());
+        }
+        return signal;
+    }
+
+    private static float[] add(float[] a, float[] b) {
+        float[] sum = new float[a.length];
+        for (int i = 0; i < a.length; i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+
+    private static byte[] toPcm(float[] signal) {
+        byte[] pcm = new byte[signal.length * 2];
+        for (int i = 0; i < signal.length; i++) {
+            int value = Math.round(Math.max(-1f, Math.min(1f, signal[i])) * Short.MAX_VALUE);
+            pcm[2 * i] = (byte) value;
+            pcm[2 * i + 1] = (byte) (value >> 8);
+        }
+        return pcm;
+    }
+
+    private static float[] fromPcm(byte[] pcm) {
+        float[] signal = new float[pcm.length / 2];
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = (short) ((pcm[2 * i] & 0xFF) | (pcm[2 * i + 1] << 8)) / 32768f;
+        }
+        return signal;
+    }
+
+    /**
+     * Feeds audio through in frames of the given size and flushes.
+     */
+    private static float[] run(AudioPreprocessor preprocessor, float[] signal, int frameBytes) {
+        byte[] pcm = toPcm(signal);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int offset = 0; offset < pcm.length; offset += frameBytes) {
+            byte[] frame = java.util.Arrays.copyOfRange(pcm, offset, Math.min(pcm.length, offset + frameBytes));
+            out.writeBytes(preprocessor.process(frame));
+        }
+        out.writeBytes(preprocessor.flush());
+        return fromPcm(out.toByteArray());
+    }
+
+    private static double rms(float[] signal, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += signal[i] * signal[i];
+        }
+        return Math.sqrt(sum / (to - from));
+    }
+
+    /**
+     * Measures the amplitude of one frequency in a stretch of a signal.
+     */
+    private static double amplitudeAt(float[] signal, double frequency, int from, int to) {
+        double re = 0;
+        double im = 0;
+        for (int i = from; i < to; i++) {
+            double angle = 2 * Math.PI * frequency * i / SAMPLE_RATE;
+            re += signal[i] * Math.cos(angle);
+            im += signal[i] * Math.sin(angle);
+        }
+        return 2 * Math.hypot(re, im) / (to - from);
+    }
+
+    @Test
+    void withoutSuppressionOrGainTheAudioShouldComeBackUnchangedAndAligned() {
+        // Arrange
+        AudioPreprocessor preprocessor = new AudioPreprocessor(SAMPLE_RATE, 0, 0, 0, meterRegistry);
+        float[] input = add(tone(440, 0.3, 16000), tone(1800, 0.1, 16000));
+
+        // Act: odd frame sizes split samples across calls
+        float[] output = run(preprocessor, input, 333);
+
+        // Assert
+        assertEquals(input.length, output.length);
+        for (int i = 0; i < input.length; i++) {
+            assertEquals(input[i], output[i], 2e-3, "sample " + i);
+        }
+    }
+
+    @Test
+    void outputShouldBeEmptyUntilAWholeHopHasBeenProcessed() {
+        // Arrange
+        AudioPreprocessor preprocessor = new AudioPreprocessor(SAMPLE_RATE, 12, -20, 24, meterRegistry);
+
+        // Act
+        byte[] first = preprocessor.process(new byte[300]);
+        byte[] rest = preprocessor.process(new byte[1000]);
+
+        // Assert
+        assertEquals(0, first.length);
+        assertEquals(512, rest.length);
+        assertEquals(1300 - 512, preprocessor.flush().length);
+    }
+
+    @Test
+    void stationaryNoiseShouldBeSuppressed() {
+        // Arrange
+        AudioPreprocessor preprocessor = new AudioPreprocessor(SAMPLE_RATE, 12, 0, 0, meterRegistry);
+        float[] input = noise(0.05, 5 * SAMPLE_RATE, 1);
+
+        // Act
+        float[] output = run(preprocessor, input, 640);
+
+        // Assert: at least 8 dB quieter once the noise estimate has settled
+        int from = 3 * SAMPLE_RATE;
+        double reductionDb = 20 * Math.log10(rms(input, from, input.length) / rms(output, from, output.length));
+        assertTrue(reductionDb > 8, "noise reduced by " + reductionDb + " dB");
+    }
+
+    @Test
+    void syllablesShouldSurviveSuppressionOfTheNoiseAroundThem() {
+        // Arrange: 250 ms tone bursts, on and off like syllables, in steady noise
+        AudioPreprocessor preprocessor = new AudioPreprocessor(SAMPLE_RATE, 12, 0, 0, meterRegistry);
+        float[] syllables = tone(1000, 0.2, 5 * SAMPLE_RATE);
+        int burst = SAMPLE_RATE / 4;
+        for (int i = 0; i < syllables.length; i++) {
+            if (i / burst % 2 == 1) {
+                syllables[i] = 0;
+            }
+        }
+        float[] input = add(syllables, noise(0.02, 5 * SAMPLE_RATE, 2));
+
+        // Act
+        float[] output = run(preprocessor, input, 640);
+
+        // Assert: the middle of the last burst loses less than 1.5 dB
+        int from = 4 * SAMPLE_RATE + burst / 4;
+        double lossDb = 20 * Math.log10(0.2 / amplitudeAt(output, 1000, from, from + burst / 2));
+        assertTrue(lossDb < 1.5, "syllable attenuated by " + lossDb + " dB");
+    }
+
+    @Test
+    void quietSpeechShouldBeBroughtUpToTheTargetLevel() {
+        // Arrange
+        AudioPreprocessor preprocessor = new AudioPreprocessor(SAMPLE_RATE, 0, -20, 30, meterRegistry);
+        float[] input = tone(300, 0.01, 5 * SAMPLE_RATE);
+
+        // Act
+        float[] output = run(preprocessor, input, 640);
+
+        // Assert: within 2 dB of -20 dBFS
+        double levelDbfs = 20 * Math.log10(rms(output, 4 * SAMPLE_RATE, output.length));
+        assertEquals(-20, levelDbfs, 2);
+    }
+
+    @Test
+    void loudSpeechShouldBeTurnedDownWithoutExceedingFullScale() {
+        // Arrange
+        AudioPreprocessor preprocessor = new AudioPreprocessor(SAMPLE_RATE, 0, -20, 30, meterRegistry);
+        float[] input = tone(300, 0.99, 2 * SAMPLE_RATE);
+
+        // Act
+        float[] output = run(preprocessor, input, 640);
+
+        // Assert
+        double levelDbfs = 20 * Math.log10(rms(output, SAMPLE_RATE, output.length));
+        assertEquals(-20, levelDbfs, 2);
+        for (float sample : output) {
+            assertTrue(Math.abs(sample) <= 1f);
+        }
+    }
+
+    @Test
+    void silenceShouldNotBeAmplified() {
+        // Arrange
+        AudioPreprocessor preprocessor = new AudioPreprocessor(SAMPLE_RATE, 0, -20, 30, meterRegistry);
+        float[] input = noise(0.0005, 3 * SAMPLE_RATE, 3);
+
+        // Act
+        float[] output = run(preprocessor, input, 640);
+
+        // Assert
+        assertEquals(rms(input, SAMPLE_RATE, input.length), rms(output, SAMPLE_RATE, output.length), 1e-4);
+    }
+
+    @Test
+    void vectorKernelsShouldMatchScalarKernels() {
+        assumeTrue(AudioPreprocessor.KERNELS instanceof VectorSpectralKernels, "Vector API not available");
+
+        // Arrange
+        float[] input = add(tone(700, 0.3, 3 * SAMPLE_RATE), noise(0.05, 3 * SAMPLE_RATE, 4));
+        AudioPreprocessor scalar = new AudioPreprocessor(new ScalarSpectralKernels(), SAMPLE_RATE, 12, -20, 24,
+                meterRegistry);
+        AudioPreprocessor vector = new AudioPreprocessor(new VectorSpectralKernels(), SAMPLE_RATE, 12, -20, 24,
+                meterRegistry);
+
+        // Act
+        float[] fromScalar = run(scalar, input, 640);
+        float[] fromVector = run(vector, input, 640);
+
+        // Assert: fused multiply-adds round differently, so allow a couple of PCM steps
+        assertArrayEquals(fromScalar, fromVector, 1e-4f);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "bentham.benchmarks", matches = "true")
+    void hopsShouldStayWithinTheCpuBudget() {
+        // Arrange
+        AudioPreprocessor preprocessor = new AudioPreprocessor(SAMPLE_RATE, 12, -20, 24, meterRegistry);
+        byte[] frame = toPcm(add(tone(500, 0.2, 1600), noise(0.03, 1600, 5)));
+        for (int i = 0; i < 5000; i++) {
+            preprocessor.process(frame);
+        }
+
+        // Act: 100 ms frames, so about six hops each
+        int frames = 5000;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            preprocessor.process(frame);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        // Assert
+        long hops = (long) frames * 1600 / 256;
+        long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos / hops);
+        System.out.println("Audio preprocessing: " + micros + " us per hop with "
+                + AudioPreprocessor.KERNELS.getClass().getSimpleName());
+        assertTrue(micros < AudioPreprocessor.HOP_BUDGET_MICROS, micros + " us per hop");
+    }
+}
@@ -0,0 +1,255 @@
+package com.bentham.voiceagent.service.impl;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.transcribe.model.MediaFormat;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the AudioSniffer class and the decoders it opens WAV and MP3 files with.
+ */
+class AudioSnifferTest {
+
+    /**
+     * An endless stream of zeros, after the given bytes, counting how much of it was read.
+     */
+    private static class CountingStream extends InputStream {
+
+        private final byte[] start;
+        long read;
+
+        CountingStream(byte[] start) {
+            this.start = start;
+        }
+
+        @Override
+        public int read() {
+            int value = read < start.length ? start[(int) read] & 0xff : 0;
+            read++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                buffer[offset + i] = (byte) read();
+            }
+            return length;
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Builds an MPEG-1 layer III frame: 128 kbit/s, 44.1 kHz, mono, 417 bytes.
+     */
+    private static byte[] mp3Frame() {
+        byte[] frame = new byte[417];
+        frame[0] = (byte) 0xff;
+        frame[1] = (byte) 0xfb;
+        frame[2] = (byte) 0x90;
+        frame[3] = (byte) 0xc0;
+        return frame;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            bytes.writeBytes(part);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void wavShouldBeDecodedToTheSamplesItWasWrittenFrom() throws IOException {
+        // Arrange
+        byte[] pcm = new byte[16000];
+        for (int i = 0; i < pcm.length; i += 2) {
+            short sample = (short) (Math.sin(i / 20.0) * 12000);
+            pcm[i] = (byte) sample;
+            pcm[i + 1] = (byte) (sample >> 8);
+        }
+        ByteArrayOutputStream wav = new ByteArrayOutputStream();
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm),
+                new AudioFormat(16000, 16, 1, true, false), pcm.length / 2), AudioFileFormat.Type.WAVE, wav);
+
+        // Act
+        AudioSniffer.SniffedAudio audio = AudioSniffer.sniff(new ByteArrayInputStream(wav.toByteArray()));
+
+        // Assert
+        assertEquals(AudioSniffer.Container.WAV, audio.getContainer());
+        assertEquals(MediaFormat.WAV, audio.getContainer().getMediaFormat());
+        assertEquals("pcm_s16le", audio.getCodec());
+        assertEquals(Integer.valueOf(16000), audio.getSampleRate());
+        assertEquals(1, audio.getChannels());
+        assertTrue(audio.isDecodable());
+        assertArrayEquals(pcm, audio.openPcm().readAllBytes());
+    }
+
+    @Test
+    void floatStereoWavShouldBeAveragedToMonoPastOtherChunks() throws IOException {
+        // Arrange: a LIST chunk of odd length ahead of the data, which a decoder must skip
+        ByteBuffer wav = ByteBuffer.allocate(80).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put(ascii("RIFF")).putInt(64).put(ascii("WAVE"));
+        wav.put(ascii("fmt ")).putInt(16).putShort((short) 3).putShort((short) 2).putInt(22050)
+                .putInt(22050 * 8).putShort((short) 8).putShort((short) 32);
+        wav.put(ascii("LIST")).putInt(3).put(ascii("abc")).put((byte) 0);
+        wav.put(ascii("data")).putInt(16).putFloat(0.5f).putFloat(0.25f).putFloat(-1.0f).putFloat(-1.0f);
+
+        // Act
+        byte[] file = Arrays.copyOf(wav.array(), wav.position());
+        AudioSniffer.SniffedAudio audio = AudioSniffer.sniff(new ByteArrayInputStream(file));
+        byte[] pcm = audio.openPcm().readAllBytes();
+
+        // Assert
+        assertEquals("pcm_f32le", audio.getCodec());
+        assertEquals(Integer.valueOf(22050), audio.getSampleRate());
+        assertEquals(2, audio.getChannels());
+        ByteBuffer samples = ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(4, pcm.length);
+        assertEquals(12288, samples.getShort());
+        assertEquals(Short.MIN_VALUE, samples.getShort());
+    }
+
+    @Test
+    void flacAndOggHeadersShouldGiveTheirCodecAndSampleRate() throws IOException {
+        // Arrange
+        byte[] streamInfo = new byte[34];
+        // 44.1 kHz, 2 channels, 16 bits: 20 bits of rate, 3 of channels - 1, 5 of bits - 1
+        streamInfo[10] = (byte) 0x0a;
+        streamInfo[11] = (byte) 0xc4;
+        streamInfo[12] = (byte) 0x42;
+        streamInfo[13] = (byte) 0xf0;
+        byte[] flac = concat(ascii("fLaC"), new byte[] {(byte) 0x80, 0, 0, 34}, streamInfo);
+        byte[] opusHead = ByteBuffer.allocate(19).order(ByteOrder.LITTLE_ENDIAN)
+                .put(ascii("OpusHead")).put((byte) 1).put((byte) 1).putShort((short) 312).putInt(16000)
+                .putShort((short) 0).put((byte) 0).array();
+        byte[] oggPage = concat(ascii("OggS"), new byte[22], new byte[] {1, 19}, opusHead);
+
+        // Act
+        AudioSniffer.SniffedAudio flacAudio = AudioSniffer.sniff(new ByteArrayInputStream(flac));
+        AudioSniffer.SniffedAudio oggAudio = AudioSniffer.sniff(new ByteArrayInputStream(oggPage));
+
+        // Assert
+        assertEquals(MediaFormat.FLAC, flacAudio.getContainer().getMediaFormat());
+        assertEquals(Integer.valueOf(44100), flacAudio.getSampleRate());
+        assertEquals(2, flacAudio.getChannels());
+        assertEquals(16, flacAudio.getBitsPerSample());
+        assertFalse(flacAudio.isDecodable());
+        assertThrows(IllegalStateException.class, flacAudio::openPcm);
+        assertEquals(MediaFormat.OGG, oggAudio.getContainer().getMediaFormat());
+        assertEquals("opus", oggAudio.getCodec());
+        assertEquals(Integer.valueOf(48000), oggAudio.getSampleRate());
+        assertArrayEquals(flac, flacAudio.getStream().readAllBytes());
+    }
+
+    @Test
+    void mp3ShouldBeFoundPastAnId3TagTooLongToHold() throws IOException {
+        // Arrange: a 100 KB tag, with its size as a synchsafe integer
+        int tagSize = 100 * 1024;
+        byte[] tagHeader = {'I', 'D', '3', 4, 0, 0, (byte) ((tagSize >> 21) & 0x7f), (byte) ((tagSize >> 14) & 0x7f),
+                (byte) ((tagSize >> 7) & 0x7f), (byte) (tagSize & 0x7f)};
+        byte[] frames = concat(mp3Frame(), mp3Frame());
+        byte[] file = concat(tagHeader, new byte[tagSize], frames);
+
+        // Act
+        AudioSniffer.SniffedAudio audio = AudioSniffer.sniff(new ByteArrayInputStream(file));
+
+        // Assert
+        assertEquals(MediaFormat.MP3, audio.getContainer().getMediaFormat());
+        assertEquals(Integer.valueOf(44100), audio.getSampleRate());
+        assertEquals(1, audio.getChannels());
+        assertArrayEquals(frames, audio.getStream().readAllBytes());
+    }
+
+    @Test
+    void mp3FramesShouldNeedAFollowingFrameWithoutATag() throws IOException {
+        // Arrange: PCM that happens to start like a frame header
+        byte[] pcm = concat(Arrays.copyOf(mp3Frame(), 4), new byte[2000]);
+        Arrays.fill(pcm, 4, pcm.length, (byte) 0x11);
+        byte[] mp3 = concat(mp3Frame(), mp3Frame(), mp3Frame());
+
+        // Act
+        AudioSniffer.SniffedAudio raw = AudioSniffer.sniff(new ByteArrayInputStream(pcm));
+        AudioSniffer.SniffedAudio audio = AudioSniffer.sniff(new ByteArrayInputStream(mp3));
+
+        // Assert
+        assertEquals(AudioSniffer.Container.RAW, raw.getContainer());
+        assertNull(raw.getSampleRate());
+        assertTrue(raw.isDecodable());
+        assertArrayEquals(pcm, raw.openPcm().readAllBytes());
+        assertEquals(AudioSniffer.Container.MP3, audio.getContainer());
+    }
+
+    @Test
+    void mp3ShouldBeDecodedToPcmFrameByFrame() throws IOException {
+        // Arrange: silent frames, as every field after the header is zero
+        byte[] mp3 = concat(mp3Frame(), mp3Frame(), mp3Frame());
+
+        // Act
+        AudioSniffer.SniffedAudio audio = AudioSniffer.sniff(new ByteArrayInputStream(mp3));
+        byte[] pcm = audio.openPcm().readAllBytes();
+
+        // Assert
+        assertTrue(audio.isDecodable());
+        assertEquals(3 * 1152 * 2, pcm.length);
+        assertArrayEquals(new byte[pcm.length], pcm);
+    }
+
+    @Test
+    void otherContainersTranscribeAcceptsShouldNotBeTakenForPcm() throws IOException {
+        // Arrange
+        byte[] webm = concat(new byte[]{0x1a, 0x45, (byte) 0xdf, (byte) 0xa3}, new byte[100]);
+        byte[] mp4 = concat(new byte[]{0, 0, 0, 0x20}, ascii("ftypisom"), new byte[100]);
+        byte[] m4a = concat(new byte[]{0, 0, 0, 0x20}, ascii("ftypM4A "), new byte[100]);
+        byte[] amr = concat(ascii("#!AMR\n"), new byte[100]);
+        byte[] amrWb = concat(ascii("#!AMR-WB\n"), new byte[100]);
+
+        // Act
+        AudioSniffer.SniffedAudio webmAudio = AudioSniffer.sniff(new ByteArrayInputStream(webm));
+        AudioSniffer.SniffedAudio mp4Audio = AudioSniffer.sniff(new ByteArrayInputStream(mp4));
+        AudioSniffer.SniffedAudio m4aAudio = AudioSniffer.sniff(new ByteArrayInputStream(m4a));
+        AudioSniffer.SniffedAudio amrAudio = AudioSniffer.sniff(new ByteArrayInputStream(amr));
+        AudioSniffer.SniffedAudio amrWbAudio = AudioSniffer.sniff(new ByteArrayInputStream(amrWb));
+
+        // Assert
+        assertEquals(MediaFormat.WEBM, webmAudio.getContainer().getMediaFormat());
+        assertEquals(MediaFormat.MP4, mp4Audio.getContainer().getMediaFormat());
+        assertEquals(MediaFormat.M4A, m4aAudio.getContainer().getMediaFormat());
+        assertEquals(MediaFormat.AMR, amrAudio.getContainer().getMediaFormat());
+        assertEquals(Integer.valueOf(8000), amrAudio.getSampleRate());
+        assertEquals(Integer.valueOf(16000), amrWbAudio.getSampleRate());
+        for (AudioSniffer.SniffedAudio audio : new AudioSniffer.SniffedAudio[]{webmAudio, mp4Audio, m4aAudio, amrAudio}) {
+            assertFalse(audio.isDecodable(), audio.toString());
+        }
+        assertArrayEquals(webm, webmAudio.getStream().readAllBytes());
+    }
+
+    @Test
+    void sniffingShouldReadNoMoreThanTheHeaders() throws IOException {
+        // Arrange
+        CountingStream stream = new CountingStream(mp3Frame());
+
+        // Act
+        AudioSniffer.SniffedAudio audio = AudioSniffer.sniff(stream);
+
+        // Assert
+        assertEquals(AudioSniffer.Container.RAW, audio.getContainer());
+        assertTrue(stream.read <= AudioSniffer.MAX_HEADER_BYTES + 8192, "Read " + stream.read + " bytes");
+    }
+}
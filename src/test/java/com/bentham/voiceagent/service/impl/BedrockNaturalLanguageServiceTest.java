@@ -0,0 +1,144 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.BedrockConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.model.ContentBlock;
+import software.amazon.awssdk.services.bedrockruntime.model.ConversationRole;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseOutput;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.Message;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the BedrockNaturalLanguageService class.
+ */
+@ExtendWith(MockitoExtension.class)
+class BedrockNaturalLanguageServiceTest {
+
+    @Mock
+    private BedrockRuntimeAsyncClient bedrockClient;
+
+    private BedrockNaturalLanguageService naturalLanguageService;
+
+    @BeforeEach
+    void setUp() {
+        BedrockConfig bedrockConfig = new BedrockConfig() {
+            @Override
+            public String getModelId() {
+                return "test-model";
+            }
+
+            @Override
+            public Double getTemperature() {
+                return 0.5;
+            }
+
+            @Override
+            public Integer getMaxTokens() {
+                return 256;
+            }
+        };
+        naturalLanguageService = new BedrockNaturalLanguageService(bedrockClient,
+                new BedrockRequestBuilder(bedrockConfig, new SimpleMeterRegistry()));
+    }
+
+    private static ConverseResponse response(String text) {
+        return ConverseResponse.builder()
+                .output(ConverseOutput.builder()
+                        .message(Message.builder()
+                                .role(ConversationRole.ASSISTANT)
+                                .content(ContentBlock.fromText(text))
+                                .build())
+                        .build())
+                .build();
+    }
+
+    @Test
+    void processMessageShouldReturnResponseText() {
+        // Arrange
+        when(bedrockClient.converse(any(ConverseRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(response("Hello there.")));
+
+        // Act
+        String result = naturalLanguageService.processMessage("Hello").join();
+
+        // Assert
+        assertEquals("Hello there.", result);
+        ArgumentCaptor<ConverseRequest> request = ArgumentCaptor.forClass(ConverseRequest.class);
+        verify(bedrockClient).converse(request.capture());
+        assertEquals("test-model", request.getValue().modelId());
+        assertEquals(256, request.getValue().inferenceConfig().maxTokens());
+        assertEquals("Hello", request.getValue().messages().get(0).content().get(0).text());
+    }
+
+    @Test
+    void cancellingResponseShouldCancelBedrockRequest() {
+        // Arrange
+        CompletableFuture<ConverseResponse> call = new CompletableFuture<>();
+        when(bedrockClient.converse(any(ConverseRequest.class))).thenReturn(call);
+
+        // Act
+        naturalLanguageService.processMessage("Hello").cancel(true);
+
+        // Assert
+        assertTrue(call.isCancelled());
+    }
+
+    @Test
+    void processMessageWithParamsShouldOverrideDefaults() {
+        // Arrange
+        when(bedrockClient.converse(any(ConverseRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(response("Done.")));
+
+        // Act
+        naturalLanguageService.processMessageWithParams("Hello",
+                Map.of("modelId", "other-model", "maxTokens", 64, "system", "Be brief.")).join();
+
+        // Assert
+        ArgumentCaptor<ConverseRequest> request = ArgumentCaptor.forClass(ConverseRequest.class);
+        verify(bedrockClient).converse(request.capture());
+        assertEquals("other-model", request.getValue().modelId());
+        assertEquals(64, request.getValue().inferenceConfig().maxTokens());
+        assertEquals("Be brief.", request.getValue().system().get(0).text());
+    }
+
+    @Test
+    void conversationShouldIncludeCompletedExchanges() {
+        // Arrange
+        String conversationId = naturalLanguageService.createConversation();
+        when(bedrockClient.converse(any(ConverseRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(response("First answer.")))
+                .thenReturn(CompletableFuture.completedFuture(response("Second answer.")));
+
+        // Act
+        naturalLanguageService.processMessage("First question", conversationId).join();
+        naturalLanguageService.processMessage("Second question", conversationId).join();
+
+        // Assert
+        ArgumentCaptor<ConverseRequest> request = ArgumentCaptor.forClass(ConverseRequest.class);
+        verify(bedrockClient, times(2)).converse(request.capture());
+        assertEquals(3, request.getAllValues().get(1).messages().size());
+        assertEquals("First answer.", request.getAllValues().get(1).messages().get(1).content().get(0).text());
+    }
+
+    @Test
+    void processMessageShouldThrowExceptionForUnknownConversation() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> naturalLanguageService.processMessage("Hello", "unknown"));
+    }
+}
@@ -0,0 +1,260 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.BedrockConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.bedrockruntime.model.ContentBlock;
+import software.amazon.awssdk.services.bedrockruntime.model.ConversationRole;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.Message;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the BedrockRequestBuilder class.
+ */
+class BedrockRequestBuilderTest {
+
+    private static final String LEGAL_PROMPT = "You are a legal intake assistant. ".repeat(200);
+
+    private SimpleMeterRegistry meterRegistry;
+    private StubConverseEndpoint endpoint;
+    private BedrockRequestBuilder requestBuilder;
+    private BedrockNaturalLanguageService naturalLanguageService;
+    private boolean cachingEnabled;
+    private String systemPrompt;
+    private int cacheTtlSeconds;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        endpoint = new StubConverseEndpoint(1024);
+        cachingEnabled = true;
+        systemPrompt = LEGAL_PROMPT;
+        cacheTtlSeconds = 300;
+        BedrockConfig bedrockConfig = new BedrockConfig() {
+            @Override
+            public String getModelId() {
+                return "test-model";
+            }
+
+            @Override
+            public Double getTemperature() {
+                return 0.5;
+            }
+
+            @Override
+            public Integer getMaxTokens() {
+                return 256;
+            }
+
+            @Override
+            public String getSystemPrompt() {
+                return systemPrompt;
+            }
+
+            @Override
+            public Boolean getPromptCachingEnabled() {
+                return cachingEnabled;
+            }
+
+            @Override
+            public Integer getPromptCacheMinPrefixChars() {
+                return 4096;
+            }
+
+            @Override
+            public Integer getPromptCacheTtlSeconds() {
+                return cacheTtlSeconds;
+            }
+        };
+        requestBuilder = new BedrockRequestBuilder(bedrockConfig, meterRegistry);
+        naturalLanguageService = new BedrockNaturalLanguageService(endpoint, requestBuilder);
+    }
+
+    private static Message message(ConversationRole role, String text) {
+        return Message.builder().role(role).content(ContentBlock.fromText(text)).build();
+    }
+
+    private double tokens(String type) {
+        return meterRegistry.get("voice.bedrock.tokens").tags("model", "test-model", "type", type)
+                .summary().totalAmount();
+    }
+
+    private double cacheOutcomes(String outcome) {
+        return meterRegistry.counter("voice.bedrock.prompt.cache", "model", "test-model", "outcome", outcome).count();
+    }
+
+    @Test
+    void longSystemPromptShouldEndWithCachePoint() {
+        // Act
+        ConverseRequest request = requestBuilder.build(List.of(),
+                message(ConversationRole.USER, "Hello"), Map.of()).getRequest();
+
+        // Assert
+        assertEquals(LEGAL_PROMPT, request.system().get(0).text());
+        assertNotNull(request.system().get(1).cachePoint());
+    }
+
+    @Test
+    void systemParameterShouldBePartOfCachedPrefix() {
+        // Act
+        ConverseRequest request = requestBuilder.build(List.of(),
+                message(ConversationRole.USER, "Hello"), Map.of("system", "Be brief.")).getRequest();
+
+        // Assert
+        assertEquals(3, request.system().size());
+        assertEquals("Be brief.", request.system().get(1).text());
+        assertNotNull(request.system().get(2).cachePoint());
+    }
+
+    @Test
+    void shortPrefixShouldNotBeMarked() {
+        // Arrange
+        systemPrompt = "";
+
+        // Act
+        BedrockRequestBuilder.PreparedRequest request = requestBuilder.build(List.of(),
+                message(ConversationRole.USER, "Hello"), Map.of("system", "Be brief."));
+
+        // Assert
+        assertTrue(request.getCachedPrefixes().isEmpty());
+        assertEquals(1, request.getRequest().system().size());
+    }
+
+    @Test
+    void cachingDisabledShouldNotMarkPrefixes() {
+        // Arrange
+        cachingEnabled = false;
+
+        // Act
+        BedrockRequestBuilder.PreparedRequest request = requestBuilder.build(List.of(),
+                message(ConversationRole.USER, "Hello"), Map.of());
+
+        // Assert
+        assertTrue(request.getCachedPrefixes().isEmpty());
+        assertEquals("none", request.getPrefixState());
+        assertTrue(request.getRequest().system().stream().allMatch(block -> block.cachePoint() == null));
+    }
+
+    @Test
+    void repeatedPromptShouldBeReadFromCache() {
+        // Act
+        naturalLanguageService.processMessage("First question").join();
+        naturalLanguageService.processMessage("Second question").join();
+
+        // Assert
+        assertEquals(1, cacheOutcomes("write"));
+        assertEquals(1, cacheOutcomes("hit"));
+        assertTrue(tokens("cache-read") > 1000, "Second call should read the system prompt from the cache");
+        assertEquals(tokens("cache-write"), tokens("cache-read"));
+        assertEquals(1, meterRegistry.get("voice.bedrock.latency").tags("prefix", "cold").timer().count());
+        assertEquals(1, meterRegistry.get("voice.bedrock.latency").tags("prefix", "warm").timer().count());
+    }
+
+    @Test
+    void prefixFingerprintShouldBeWarmAfterCacheWrite() {
+        // Arrange
+        BedrockRequestBuilder.PreparedRequest first = requestBuilder.build(List.of(),
+                message(ConversationRole.USER, "Hello"), Map.of());
+
+        // Act
+        naturalLanguageService.processMessage("Hello").join();
+        BedrockRequestBuilder.PreparedRequest second = requestBuilder.build(List.of(),
+                message(ConversationRole.USER, "Another"), Map.of());
+
+        // Assert
+        assertEquals("cold", first.getPrefixState());
+        assertEquals("warm", second.getPrefixState());
+        assertEquals(first.getCachedPrefixes(), second.getCachedPrefixes());
+        assertTrue(requestBuilder.isWarm(second.getCachedPrefixes().get(0)));
+    }
+
+    @Test
+    void expiredPrefixShouldBeDroppedWhenLookedUp() {
+        // Arrange: cached prefixes expire as soon as they are written
+        cacheTtlSeconds = 0;
+        naturalLanguageService.processMessage("Hello").join();
+        BedrockRequestBuilder.PreparedRequest request = requestBuilder.build(List.of(),
+                message(ConversationRole.USER, "Another"), Map.of());
+
+        // Act
+        boolean warm = requestBuilder.isWarm(request.getCachedPrefixes().get(0));
+
+        // Assert
+        assertFalse(warm);
+        assertEquals("cold", request.getPrefixState());
+        assertEquals(0, requestBuilder.getTrackedPrefixCount());
+    }
+
+    @Test
+    void nonNumericParameterShouldBeRejected() {
+        // Act & Assert
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> requestBuilder.build(
+                List.of(), message(ConversationRole.USER, "Hello"), Map.of("temperature", "warm")));
+        assertTrue(thrown.getMessage().contains("temperature"));
+    }
+
+    @Test
+    void differentModelShouldHaveDifferentFingerprint() {
+        // Act
+        BedrockRequestBuilder.PreparedRequest first = requestBuilder.build(List.of(),
+                message(ConversationRole.USER, "Hello"), Map.of());
+        BedrockRequestBuilder.PreparedRequest other = requestBuilder.build(List.of(),
+                message(ConversationRole.USER, "Hello"), Map.of("modelId", "other-model"));
+
+        // Assert
+        assertNotEquals(first.getCachedPrefixes(), other.getCachedPrefixes());
+    }
+
+    @Test
+    void conversationHistoryShouldBeMarkedForCaching() {
+        // Arrange
+        String conversationId = naturalLanguageService.createConversation();
+        naturalLanguageService.processMessage("First question", conversationId).join();
+
+        // Act
+        naturalLanguageService.processMessage("Second question", conversationId).join();
+
+        // Assert
+        ConverseRequest second = endpoint.requests.get(1);
+        Message lastEarlierTurn = second.messages().get(1);
+        assertEquals(ConversationRole.ASSISTANT, lastEarlierTurn.role());
+        assertNotNull(lastEarlierTurn.content().get(lastEarlierTurn.content().size() - 1).cachePoint());
+        assertEquals("Second question", second.messages().get(2).content().get(0).text());
+    }
+
+    @Test
+    void evictedPrefixShouldBeCountedAndRewritten() {
+        // Arrange
+        naturalLanguageService.processMessage("First question").join();
+        endpoint.evictAll();
+
+        // Act
+        naturalLanguageService.processMessage("Second question").join();
+
+        // Assert
+        assertEquals(1, cacheOutcomes("evicted"));
+        assertEquals(0, cacheOutcomes("hit"));
+    }
+
+    @Test
+    void unsupportedCachingShouldNotLeavePrefixWarm() {
+        // Arrange
+        endpoint.cachingSupported = false;
+
+        // Act
+        naturalLanguageService.processMessage("Hello").join();
+        BedrockRequestBuilder.PreparedRequest next = requestBuilder.build(List.of(),
+                message(ConversationRole.USER, "Again"), Map.of());
+
+        // Assert
+        assertEquals(1, cacheOutcomes("uncached"));
+        assertEquals("cold", next.getPrefixState());
+        assertTrue(tokens("input") > 1000);
+    }
+}
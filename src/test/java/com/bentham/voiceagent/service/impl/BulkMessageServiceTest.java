@@ -0,0 +1,308 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.BulkMessageConfig;
+import com.bentham.voiceagent.model.BulkMessageRequest;
+import com.bentham.voiceagent.model.BulkMessageResult;
+import com.bentham.voiceagent.service.NaturalLanguageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the BulkMessageService class.
+ */
+class BulkMessageServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private FakeNaturalLanguageService naturalLanguageService;
+    private BulkMessageService bulkMessageService;
+
+    /**
+     * Answers after a delay taken from the message ("slow" takes longer) and throttles
+     * whenever the given predicate on the number of requests in flight holds.
+     */
+    private static class FakeNaturalLanguageService implements NaturalLanguageService {
+
+        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        volatile Predicate<Integer> throttleWhen = concurrent -> false;
+
+        @Override
+        public CompletableFuture<String> processMessage(String message) {
+            return processMessageWithParams(message, Map.of());
+        }
+
+        @Override
+        public CompletableFuture<String> processMessage(String message, String conversationId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<String> processMessageWithParams(String message, Map<String, Object> parameters) {
+            calls.incrementAndGet();
+            int concurrent = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(concurrent, Math::max);
+            CompletableFuture<String> response = new CompletableFuture<>();
+            boolean throttle = throttleWhen.test(concurrent);
+            scheduler.schedule(() -> {
+                inFlight.decrementAndGet();
+                if (throttle) {
+                    response.completeExceptionally(SdkServiceException.builder()
+                            .message("Too many requests").statusCode(429).build());
+                } else {
+                    response.complete("Reply to " + message);
+                }
+            }, message.startsWith("slow") ? 200 : 5, TimeUnit.MILLISECONDS);
+            return response;
+        }
+
+        @Override
+        public CompletableFuture<String> processMessageWithParams(String message, String conversationId,
+                                                                  Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String createConversation() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void endConversation(String conversationId) {
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        naturalLanguageService = new FakeNaturalLanguageService();
+        BulkMessageConfig config = new BulkMessageConfig() {
+            @Override
+            public Integer getInitialConcurrency() {
+                return 4;
+            }
+
+            @Override
+            public Integer getMinConcurrency() {
+                return 1;
+            }
+
+            @Override
+            public Integer getMaxConcurrency() {
+                return 8;
+            }
+
+            @Override
+            public Integer getMaxAttempts() {
+                return 3;
+            }
+
+            @Override
+            public Integer getRetryBackoffMs() {
+                return 5;
+            }
+        };
+        bulkMessageService = new BulkMessageService(naturalLanguageService, config, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bulkMessageService.shutdown();
+        naturalLanguageService.scheduler.shutdownNow();
+    }
+
+    private static List<BulkMessageRequest> messages(int count) {
+        List<BulkMessageRequest> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(new BulkMessageRequest("m" + i, "Message " + i, null));
+        }
+        return requests;
+    }
+
+    @Test
+    void everyMessageShouldGetOneResultWithItsId() throws InterruptedException {
+        // Arrange
+        List<BulkMessageResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        bulkMessageService.process(messages(100).iterator(), results::add);
+
+        // Assert
+        assertEquals(100, results.size());
+        Set<String> ids = results.stream().map(BulkMessageResult::getId).collect(Collectors.toSet());
+        assertEquals(100, ids.size());
+        BulkMessageResult first = results.stream().filter(r -> r.getId().equals("m7")).findFirst().orElseThrow();
+        assertEquals("Reply to Message 7", first.getResponse());
+        assertNull(first.getError());
+        assertEquals(100, meterRegistry.counter("voice.bulk.messages", "outcome", "success").count());
+    }
+
+    @Test
+    void resultsShouldArriveInCompletionOrder() throws InterruptedException {
+        // Arrange
+        List<BulkMessageRequest> requests = List.of(
+                new BulkMessageRequest("slow", "slow message", null),
+                new BulkMessageRequest("fast", "fast message", null));
+        List<BulkMessageResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        bulkMessageService.process(requests.iterator(), results::add);
+
+        // Assert
+        assertEquals("fast", results.get(0).getId());
+        assertEquals("slow", results.get(1).getId());
+    }
+
+    @Test
+    void concurrencyShouldStayWithinMaximum() throws InterruptedException {
+        // Act
+        bulkMessageService.process(messages(300).iterator(), result -> { });
+
+        // Assert
+        assertTrue(naturalLanguageService.maxInFlight.get() <= 8,
+                "In flight peaked at " + naturalLanguageService.maxInFlight.get());
+    }
+
+    @Test
+    void throttlingShouldLowerConcurrencyAndRetry() throws InterruptedException {
+        // Arrange: the simulated quota allows two requests at once
+        naturalLanguageService.throttleWhen = concurrent -> concurrent > 2;
+        List<BulkMessageResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        bulkMessageService.process(messages(40).iterator(), results::add);
+
+        // Assert
+        assertEquals(40, results.size());
+        assertTrue(meterRegistry.counter("voice.bulk.throttles").count() > 0);
+        assertTrue(meterRegistry.get("voice.bulk.concurrency.limit").gauge().value() < 8);
+        long failed = results.stream().filter(r -> r.getError() != null).count();
+        assertTrue(failed < 40, "Most messages should succeed once concurrency adapts: " + failed + " failed");
+    }
+
+    @Test
+    void messageThrottledOnEveryAttemptShouldFail() throws InterruptedException {
+        // Arrange
+        naturalLanguageService.throttleWhen = concurrent -> true;
+        List<BulkMessageResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        bulkMessageService.process(messages(1).iterator(), results::add);
+
+        // Assert
+        assertEquals(1, results.size());
+        assertEquals("Too many requests", results.get(0).getError());
+        assertEquals(3, results.get(0).getAttempts());
+        assertEquals(3, naturalLanguageService.calls.get());
+    }
+
+    @Test
+    void throttledMessageShouldFailOnceRetriesCannotBeScheduled() throws InterruptedException {
+        // Arrange
+        naturalLanguageService.throttleWhen = concurrent -> true;
+        List<BulkMessageResult> results = new CopyOnWriteArrayList<>();
+        bulkMessageService.shutdown();
+
+        // Act
+        bulkMessageService.process(messages(1).iterator(), results::add);
+
+        // Assert
+        assertEquals(1, results.size());
+        assertEquals("Too many requests", results.get(0).getError());
+        assertEquals(1, results.get(0).getAttempts());
+    }
+
+    @Test
+    void messagesWithoutIdShouldBeNumbered() throws InterruptedException {
+        // Arrange
+        List<BulkMessageRequest> requests = List.of(new BulkMessageRequest(null, "Hello", null));
+        List<BulkMessageResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        bulkMessageService.process(requests.iterator(), results::add);
+
+        // Assert
+        assertEquals("1", results.get(0).getId());
+    }
+
+    @Test
+    void resultsShouldBeReportedOffTheCompletingThreads() throws InterruptedException {
+        // Arrange
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        // Act
+        bulkMessageService.process(messages(50).iterator(), result -> threads.add(Thread.currentThread().getName()));
+
+        // Assert
+        assertFalse(threads.isEmpty());
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("voice-bulk-report-")), threads.toString());
+    }
+
+    @Test
+    void slowConsumerShouldHoldBackNewMessages() throws InterruptedException {
+        // Arrange
+        AtomicInteger reported = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+
+        // Act
+        bulkMessageService.process(messages(60).iterator(), result -> {
+            maxAhead.accumulateAndGet(naturalLanguageService.calls.get() - reported.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // Assert: about the backlog limit waiting, plus the limit in flight; without the backlog
+        // limit, nearly all 60 would be sent before a quarter were reported
+        assertEquals(60, reported.get());
+        assertTrue(maxAhead.get() <= 24, "Messages sent ahead of the consumer peaked at " + maxAhead.get());
+    }
+
+    @Test
+    void failingConsumerShouldStopJob() {
+        // Arrange
+        RuntimeException broken = new IllegalStateException("Client went away");
+
+        // Act & Assert
+        RuntimeException thrown = assertThrows(IllegalStateException.class,
+                () -> bulkMessageService.process(messages(1000).iterator(), result -> {
+                    throw broken;
+                }));
+        assertSame(broken, thrown);
+        assertTrue(naturalLanguageService.calls.get() < 1000, "Job should stop sending once results cannot be reported");
+    }
+
+    @Test
+    void throttlingShouldBeDetectedThroughWrappers() {
+        // Arrange
+        SdkServiceException throttled = SdkServiceException.builder().message("slow down").statusCode(429).build();
+        SdkServiceException serverError = SdkServiceException.builder().message("oops").statusCode(500).build();
+
+        // Act & Assert
+        assertTrue(BulkMessageService.isThrottling(new java.util.concurrent.CompletionException(throttled)));
+        assertFalse(BulkMessageService.isThrottling(serverError));
+        assertFalse(BulkMessageService.isThrottling(new IllegalStateException("other")));
+    }
+}
@@ -0,0 +1,425 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.BulkSpeechConfig;
+import com.bentham.voiceagent.config.PollyConfig;
+import com.bentham.voiceagent.config.SpeechStreamingConfig;
+import com.bentham.voiceagent.model.BulkSpeechRequest;
+import com.bentham.voiceagent.model.BulkSpeechResult;
+import com.bentham.voiceagent.model.BulkSpeechSummary;
+import com.bentham.voiceagent.model.SpeechFormat;
+import com.bentham.voiceagent.service.SpeechSynthesisService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the BulkSpeechService class.
+ */
+class BulkSpeechServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private FakeSpeechSynthesisService synthesis;
+    private SpeechStreamingService speechStreamingService;
+    private BulkSpeechService bulkSpeechService;
+    private int prerenderedMaxBytes = 4096;
+
+    /**
+     * Answers with the text's bytes after a short delay, fails text starting with "broken", and
+     * throttles whenever the given predicate on the number of requests in flight holds.
+     */
+    private static class FakeSpeechSynthesisService implements SpeechSynthesisService {
+
+        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        final Set<String> broken = ConcurrentHashMap.newKeySet();
+        final List<String> ssmlFormats = new CopyOnWriteArrayList<>();
+        volatile Predicate<Integer> throttleWhen = concurrent -> false;
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeech(String text) {
+            return synthesizeSpeech(text, "Joanna", "mp3");
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId) {
+            return synthesizeSpeech(text, voiceId, "mp3");
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId, String outputFormat) {
+            calls.incrementAndGet();
+            int concurrent = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(concurrent, Math::max);
+            CompletableFuture<InputStream> speech = new CompletableFuture<>();
+            boolean throttle = throttleWhen.test(concurrent);
+            scheduler.schedule(() -> {
+                inFlight.decrementAndGet();
+                if (throttle) {
+                    speech.completeExceptionally(SdkServiceException.builder()
+                            .message("Rate exceeded").statusCode(429).build());
+                } else if (broken.contains(text)) {
+                    speech.completeExceptionally(SdkServiceException.builder()
+                            .message("Invalid voice").statusCode(400).build());
+                } else {
+                    speech.complete(new ByteArrayInputStream((voiceId + ":" + text).getBytes(StandardCharsets.UTF_8)));
+                }
+            }, 5, TimeUnit.MILLISECONDS);
+            return speech;
+        }
+
+        @Override
+        public CompletableFuture<String[]> getAvailableVoices() {
+            return CompletableFuture.completedFuture(new String[] {"Joanna"});
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml) {
+            return synthesizeSpeechFromSsml(ssml, "Joanna");
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml, String voiceId) {
+            ssmlFormats.add("mp3");
+            return synthesizeSpeech(ssml, voiceId, "mp3");
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        synthesis = new FakeSpeechSynthesisService();
+        SpeechStreamingConfig streamingConfig = new SpeechStreamingConfig() {
+            @Override
+            public Integer getChunkBytes() {
+                return 4096;
+            }
+
+            // Fewer than most jobs here render
+            @Override
+            public Integer getClipCacheSize() {
+                return 4;
+            }
+
+            @Override
+            public Integer getMaxCachedClipBytes() {
+                return 64;
+            }
+
+            @Override
+            public Integer getPrerenderedMaxBytes() {
+                return prerenderedMaxBytes;
+            }
+        };
+        PollyConfig pollyConfig = new PollyConfig() {
+            @Override
+            public String getVoiceId() {
+                return "Joanna";
+            }
+
+            @Override
+            public String getOutputFormat() {
+                return "mp3";
+            }
+        };
+        BulkSpeechConfig config = new BulkSpeechConfig() {
+            @Override
+            public Integer getInitialConcurrency() {
+                return 4;
+            }
+
+            @Override
+            public Integer getMinConcurrency() {
+                return 1;
+            }
+
+            @Override
+            public Integer getMaxConcurrency() {
+                return 8;
+            }
+
+            @Override
+            public Integer getMaxAttempts() {
+                return 3;
+            }
+
+            @Override
+            public Integer getRetryBackoffMs() {
+                return 5;
+            }
+        };
+        speechStreamingService = new SpeechStreamingService(synthesis, streamingConfig, meterRegistry);
+        bulkSpeechService = new BulkSpeechService(synthesis, speechStreamingService, pollyConfig, config,
+                meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bulkSpeechService.shutdown();
+        speechStreamingService.shutdown();
+        synthesis.scheduler.shutdownNow();
+    }
+
+    private static List<BulkSpeechRequest> clips(int count) {
+        List<BulkSpeechRequest> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(new BulkSpeechRequest("menu-" + i, "Press " + i, null, null, null));
+        }
+        return requests;
+    }
+
+    @Test
+    void everyClipShouldBeReportedWithItsAudio() throws InterruptedException {
+        // Arrange
+        Map<String, byte[]> audio = new ConcurrentHashMap<>();
+        List<BulkSpeechResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        BulkSpeechSummary summary = bulkSpeechService.process(clips(50).iterator(), false, (result, clip) -> {
+            results.add(result);
+            audio.put(result.getId(), clip);
+        });
+
+        // Assert
+        assertEquals(50, results.size());
+        assertEquals(50, summary.getSynthesized());
+        assertEquals(0, summary.getFailed());
+        assertTrue(summary.getClipsPerSecond() > 0);
+        assertEquals("Joanna:Press 7", new String(audio.get("menu-7"), StandardCharsets.UTF_8));
+        BulkSpeechResult seventh = results.stream().filter(r -> r.getId().equals("menu-7")).findFirst().orElseThrow();
+        assertEquals(SpeechStreamingService.clipId("Press 7", "Joanna", SpeechFormat.MP3), seventh.getClipId());
+        assertEquals("mp3", seventh.getFormat());
+        assertFalse(seventh.isCached());
+        assertTrue(synthesis.maxInFlight.get() <= 8, "In flight peaked at " + synthesis.maxInFlight.get());
+        assertEquals(1, meterRegistry.get("voice.bulk.speech.throughput").summary().count());
+        assertNull(speechStreamingService.getCachedClip(seventh.getClipId()), "Zip output should not fill the cache");
+    }
+
+    @Test
+    void throttlingShouldLowerConcurrencyAndRetry() throws InterruptedException {
+        // Arrange: the simulated quota allows two requests at once
+        synthesis.throttleWhen = concurrent -> concurrent > 2;
+        List<BulkSpeechResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        bulkSpeechService.process(clips(40).iterator(), false, (result, clip) -> results.add(result));
+
+        // Assert
+        assertEquals(40, results.size());
+        assertTrue(meterRegistry.counter("voice.bulk.speech.throttles").count() > 0);
+        assertTrue(meterRegistry.get("voice.bulk.speech.concurrency.limit").gauge().value() < 8);
+        long failed = results.stream().filter(r -> r.getError() != null).count();
+        assertTrue(failed < 40, "Most clips should succeed once concurrency adapts: " + failed + " failed");
+    }
+
+    @Test
+    void resendingAManifestShouldOnlySynthesizeClipsThatFailed() throws InterruptedException {
+        // Arrange: two clips fail the first time
+        synthesis.broken.addAll(List.of("Press 3", "Press 8"));
+        List<BulkSpeechResult> first = new CopyOnWriteArrayList<>();
+        bulkSpeechService.process(clips(10).iterator(), true, (result, clip) -> first.add(result));
+        synthesis.broken.clear();
+        synthesis.calls.set(0);
+        List<BulkSpeechResult> second = new CopyOnWriteArrayList<>();
+
+        // Act
+        BulkSpeechSummary summary = bulkSpeechService.process(clips(10).iterator(), true,
+                (result, clip) -> second.add(result));
+
+        // Assert
+        assertEquals(2, first.stream().filter(r -> r.getError() != null).count());
+        assertEquals(2, synthesis.calls.get());
+        assertEquals(2, summary.getSynthesized());
+        assertEquals(8, summary.getCached());
+        assertTrue(second.stream().allMatch(r -> r.getError() == null));
+        assertNotNull(speechStreamingService.getCachedClip(
+                SpeechStreamingService.clipId("Press 3", "Joanna", SpeechFormat.MP3)));
+    }
+
+    @Test
+    void jobLargerThanTheClipCacheShouldKeepEveryClip() throws InterruptedException {
+        // Arrange: ten times the clip cache size, with on-demand deliveries filling the cache meanwhile
+        bulkSpeechService.process(clips(40).iterator(), true, (result, clip) -> { });
+        for (int i = 0; i < 8; i++) {
+            speechStreamingService.stream("On demand " + i, "Joanna", SpeechFormat.MP3, chunk -> { }).join();
+        }
+        synthesis.calls.set(0);
+
+        // Act
+        BulkSpeechSummary summary = bulkSpeechService.process(clips(40).iterator(), true, (result, clip) -> { });
+
+        // Assert
+        assertEquals(0, synthesis.calls.get());
+        assertEquals(40, summary.getCached());
+        assertEquals(0, summary.getFailed());
+    }
+
+    @Test
+    void clipsBeyondThePrerenderedStoreShouldFail() throws InterruptedException {
+        // Arrange: room for five of the clips
+        prerenderedMaxBytes = 5 * "Joanna:Press 0".length();
+        List<BulkSpeechResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        BulkSpeechSummary summary = bulkSpeechService.process(clips(10).iterator(), true,
+                (result, clip) -> results.add(result));
+
+        // Assert: every clip reported as rendered is still kept
+        assertEquals(5, summary.getSynthesized());
+        assertEquals(5, summary.getFailed());
+        for (BulkSpeechResult result : results) {
+            if (result.getError() == null) {
+                assertNotNull(speechStreamingService.getCachedClip(result.getClipId()), result.getId());
+            } else {
+                assertTrue(result.getError().contains("send the rest as another job"), result.getError());
+            }
+        }
+        assertEquals(prerenderedMaxBytes, speechStreamingService.getPrerenderedBytes());
+    }
+
+    @Test
+    void invalidClipsShouldFailWithoutCallingPolly() throws InterruptedException {
+        // Arrange
+        List<BulkSpeechRequest> requests = List.of(
+                new BulkSpeechRequest("both", "Hello", "<speak>Hello</speak>", null, null),
+                new BulkSpeechRequest("neither", " ", null, null, null),
+                new BulkSpeechRequest("format", "Hello", null, null, "wav"),
+                BulkSpeechRequest.invalid("line-4", "Invalid JSON: Unexpected end-of-input"));
+        List<BulkSpeechResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        BulkSpeechSummary summary = bulkSpeechService.process(requests.iterator(), true,
+                (result, clip) -> results.add(result));
+
+        // Assert
+        assertEquals(4, summary.getFailed());
+        assertEquals(0, synthesis.calls.get());
+        assertEquals(List.of("both", "neither", "format", "line-4"), results.stream().map(BulkSpeechResult::getId).toList());
+        assertTrue(results.get(2).getError().startsWith("Unsupported audio format: wav"));
+        assertEquals("Invalid JSON: Unexpected end-of-input", results.get(3).getError());
+    }
+
+    @Test
+    void resendingSsmlClipsShouldTakeThemFromTheStore() throws InterruptedException {
+        // Arrange
+        List<BulkSpeechRequest> requests = List.of(
+                new BulkSpeechRequest("greeting", null, "<speak>Hello</speak>", null, null),
+                new BulkSpeechRequest("text", "<speak>Hello</speak>", null, null, null));
+        bulkSpeechService.process(requests.iterator(), true, (result, clip) -> { });
+        synthesis.calls.set(0);
+        List<BulkSpeechResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        BulkSpeechSummary summary = bulkSpeechService.process(requests.iterator(), true,
+                (result, clip) -> results.add(result));
+
+        // Assert: the SSML is not mistaken for the same markup spoken as text
+        assertEquals(0, synthesis.calls.get());
+        assertEquals(2, summary.getCached());
+        String ssmlClipId = SpeechStreamingService.ssmlClipId("<speak>Hello</speak>", "Joanna", SpeechFormat.MP3);
+        assertNotEquals(SpeechStreamingService.clipId("<speak>Hello</speak>", "Joanna", SpeechFormat.MP3), ssmlClipId);
+        assertEquals(ssmlClipId, results.stream().filter(r -> r.getId().equals("greeting")).findFirst().orElseThrow()
+                .getClipId());
+    }
+
+    @Test
+    void clipsRenderedByAPreviousRunShouldBeSkipped() throws InterruptedException {
+        // Arrange: menu-0 was rendered as reported, menu-1 received without a report, menu-2 has changed since
+        Map<String, BulkSpeechResult> rendered = Map.of(
+                "menu-0", BulkSpeechResult.skipped("menu-0",
+                        SpeechStreamingService.clipId("Press 0", "Joanna", SpeechFormat.MP3), "mp3", 7L),
+                "menu-1", BulkSpeechResult.skipped("menu-1", null, null, null),
+                "menu-2", BulkSpeechResult.skipped("menu-2",
+                        SpeechStreamingService.clipId("Press two", "Joanna", SpeechFormat.MP3), "mp3", 9L));
+        Map<String, byte[]> audio = new ConcurrentHashMap<>();
+        List<BulkSpeechResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        BulkSpeechSummary summary = bulkSpeechService.process(clips(4).iterator(), false, rendered,
+                (result, clip) -> {
+                    results.add(result);
+                    if (clip != null) {
+                        audio.put(result.getId(), clip);
+                    }
+                });
+
+        // Assert
+        assertEquals(2, synthesis.calls.get());
+        assertEquals(2, summary.getSkipped());
+        assertEquals(2, summary.getSynthesized());
+        assertEquals(4, summary.getClips());
+        assertEquals(Set.of("menu-2", "menu-3"), audio.keySet());
+        BulkSpeechResult reported = results.stream().filter(r -> r.getId().equals("menu-1")).findFirst().orElseThrow();
+        assertTrue(reported.isSkipped());
+        assertEquals(SpeechStreamingService.clipId("Press 1", "Joanna", SpeechFormat.MP3), reported.getClipId());
+        assertEquals(2, meterRegistry.counter("voice.bulk.speech.clips", "outcome", "skipped").count());
+    }
+
+    @Test
+    void clipsTooLargeToCacheShouldFailWhenCaching() throws InterruptedException {
+        // Arrange
+        String longText = "Your call may be recorded for quality and training purposes. " + "x".repeat(64);
+        List<BulkSpeechResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        bulkSpeechService.process(List.of(new BulkSpeechRequest("disclaimer", longText, null, null, null)).iterator(),
+                true, (result, clip) -> results.add(result));
+
+        // Assert
+        assertTrue(results.get(0).getError().contains("too large to cache"));
+    }
+
+    @Test
+    void ssmlShouldBeSynthesizedInTheConfiguredFormat() throws InterruptedException {
+        // Arrange
+        List<BulkSpeechRequest> requests = List.of(
+                new BulkSpeechRequest("greeting", null, "<speak>Hello</speak>", "Matthew", null),
+                new BulkSpeechRequest("other", null, "<speak>Hello</speak>", null, "pcm"));
+        List<BulkSpeechResult> results = new CopyOnWriteArrayList<>();
+
+        // Act
+        bulkSpeechService.process(requests.iterator(), false, (result, clip) -> results.add(result));
+
+        // Assert
+        assertEquals(List.of("mp3"), synthesis.ssmlFormats);
+        BulkSpeechResult greeting = results.stream().filter(r -> r.getId().equals("greeting")).findFirst().orElseThrow();
+        assertNull(greeting.getError());
+        BulkSpeechResult other = results.stream().filter(r -> r.getId().equals("other")).findFirst().orElseThrow();
+        assertEquals("SSML is synthesized in the configured format, mp3", other.getError());
+    }
+
+    @Test
+    void failingSinkShouldStopJob() {
+        // Arrange
+        RuntimeException broken = new IllegalStateException("Client went away");
+
+        // Act & Assert
+        RuntimeException thrown = assertThrows(IllegalStateException.class,
+                () -> bulkSpeechService.process(clips(1000).iterator(), false, (result, clip) -> {
+                    throw broken;
+                }));
+        assertSame(broken, thrown);
+        assertTrue(synthesis.calls.get() < 1000, "Job should stop sending once clips cannot be reported");
+    }
+}
@@ -0,0 +1,94 @@
+package com.bentham.voiceagent.service.impl;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Local stand-in for a remote service that answers asynchronously with injected latency and
+ * errors: a base latency with jitter, an occasional slow tail, and a failure rate. Seeded, so
+ * runs are repeatable. Cancelling a response stops it from completing, as an SDK call would.
+ */
+class FaultInjector implements AutoCloseable {
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4, runnable -> {
+        Thread thread = new Thread(runnable, "fault-injector");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Random random;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private volatile long baseLatencyMs;
+    private volatile double tailProbability;
+    private volatile long tailLatencyMs;
+    private volatile double errorRate;
+
+    FaultInjector(long seed, long baseLatencyMs) {
+        this.random = new Random(seed);
+        this.baseLatencyMs = baseLatencyMs;
+    }
+
+    /**
+     * Makes a share of responses take much longer than the rest.
+     */
+    FaultInjector withTail(double probability, long latencyMs) {
+        this.tailProbability = probability;
+        this.tailLatencyMs = latencyMs;
+        return this;
+    }
+
+    /**
+     * Makes a share of responses fail.
+     */
+    FaultInjector withErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Answers a request after the injected latency, or fails it.
+     */
+    <T> CompletableFuture<T> respond(Supplier<T> response) {
+        requests.incrementAndGet();
+        long latencyMs;
+        boolean fail;
+        synchronized (random) {
+            latencyMs = random.nextDouble() < tailProbability
+                    ? tailLatencyMs
+                    : baseLatencyMs + random.nextInt((int) baseLatencyMs + 1);
+            fail = random.nextDouble() < errorRate;
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ScheduledFuture<?> reply = scheduler.schedule(() -> {
+            if (fail) {
+                future.completeExceptionally(new IllegalStateException("Injected fault"));
+            } else {
+                future.complete(response.get());
+            }
+        }, latencyMs, TimeUnit.MILLISECONDS);
+        future.whenComplete((value, error) -> {
+            if (future.isCancelled()) {
+                reply.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Gets the number of requests answered or still in flight.
+     */
+    int getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
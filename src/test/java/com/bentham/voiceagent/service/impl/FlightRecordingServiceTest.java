@@ -0,0 +1,168 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.FlightRecorderConfig;
+import com.bentham.voiceagent.config.TranscribeConfig;
+import com.bentham.voiceagent.util.VoiceEvents;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the FlightRecordingService class and the flight recorder events it captures.
+ */
+class FlightRecordingServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FlightRecordingService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    private FlightRecorderConfig config() {
+        return new FlightRecorderConfig() {
+            @Override
+            public Boolean getStartOnBoot() {
+                return false;
+            }
+
+            @Override
+            public String getSettings() {
+                return "default";
+            }
+
+            @Override
+            public Integer getMaxAgeSeconds() {
+                return 60;
+            }
+
+            @Override
+            public Integer getMaxSizeMb() {
+                return 16;
+            }
+
+            @Override
+            public String getDirectory() {
+                return tempDir.toString();
+            }
+        };
+    }
+
+    private static List<RecordedEvent> events(Path file, String name) throws IOException {
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .toList();
+    }
+
+    @Test
+    void stoppedRecordingShouldBeDumpedWithTheQueueEventsOfASession() throws Exception {
+        // Arrange
+        service = new FlightRecordingService(config());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        StreamingTranscriptionHandler handler = new StreamingTranscriptionHandler("session-1", new TranscribeConfig(),
+                result -> { }, executor);
+
+        // Act
+        assertEquals("RUNNING", service.start().getState());
+        handler.startStreaming();
+        handler.addAudioChunk(new byte[640]);
+        Thread.sleep(300);
+        handler.stopStreaming().join();
+        executor.shutdown();
+        FlightRecordingService.Status status = service.stop();
+
+        // Assert
+        assertEquals("STOPPED", status.getState());
+        Path file = Path.of(status.getLastDump());
+        assertTrue(Files.size(file) > 0);
+        List<RecordedEvent> enqueued = events(file, "com.bentham.voice.ChunkEnqueue");
+        List<RecordedEvent> dequeued = events(file, "com.bentham.voice.ChunkDequeue");
+        assertEquals(1, enqueued.size());
+        assertEquals("session-1", enqueued.get(0).getString("sessionId"));
+        assertEquals(640, enqueued.get(0).getInt("bytes"));
+        assertEquals(1, dequeued.size());
+        assertTrue(dequeued.get(0).getLong("queueWait") >= 0);
+    }
+
+    @Test
+    void dumpShouldLeaveTheRecordingRunning() throws IOException {
+        // Arrange
+        service = new FlightRecordingService(config());
+        service.start();
+        VoiceEvents.AwsCall call = new VoiceEvents.AwsCall();
+        call.begin();
+        call.service = "polly";
+        call.operation = "SynthesizeSpeech";
+        call.succeeded = true;
+        call.commit();
+
+        // Act
+        Path file = service.dump();
+
+        // Assert
+        assertEquals("RUNNING", service.getStatus().getState());
+        assertEquals(file.toString(), service.getStatus().getLastDump());
+        assertEquals("SynthesizeSpeech", events(file, "com.bentham.voice.AwsCall").get(0).getString("operation"));
+    }
+
+    @Test
+    void dumpAndStopShouldFailWithoutARecording() {
+        // Arrange
+        service = new FlightRecordingService(config());
+
+        // Act & Assert
+        assertEquals("NONE", service.getStatus().getState());
+        assertThrows(IllegalStateException.class, () -> service.dump());
+        assertThrows(IllegalStateException.class, () -> service.stop());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "bentham.benchmarks", matches = "true")
+    void eventsShouldCostMicrosecondsAtMostWhileRecording() {
+        // Arrange
+        service = new FlightRecordingService(config());
+        service.start();
+        for (int i = 0; i < 200_000; i++) {
+            commitChunkEvent(i);
+        }
+
+        // Act
+        int events = 1_000_000;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            commitChunkEvent(i);
+        }
+        long nanosPerEvent = (System.nanoTime() - startNanos) / events;
+
+        // Assert: a session sends about ten frames a second, each giving two chunk events
+        System.out.println("Flight recorder event: " + nanosPerEvent + " ns while recording");
+        assertTrue(nanosPerEvent < 2000, nanosPerEvent + " ns per event");
+    }
+
+    private static void commitChunkEvent(int i) {
+        VoiceEvents.ChunkEnqueue event = new VoiceEvents.ChunkEnqueue();
+        if (event.isEnabled()) {
+            event.sessionId = "session-1";
+            event.bytes = 3200;
+            event.queueDepth = i & 7;
+            event.commit();
+        }
+    }
+}
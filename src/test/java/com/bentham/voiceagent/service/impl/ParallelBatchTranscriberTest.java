@@ -0,0 +1,333 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.TranscribeConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.Sinks;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.transcribestreaming.TranscribeStreamingAsyncClient;
+import software.amazon.awssdk.services.transcribestreaming.TranscribeStreamingServiceClientConfiguration;
+import software.amazon.awssdk.services.transcribestreaming.model.Alternative;
+import software.amazon.awssdk.services.transcribestreaming.model.AudioEvent;
+import software.amazon.awssdk.services.transcribestreaming.model.AudioStream;
+import software.amazon.awssdk.services.transcribestreaming.model.Item;
+import software.amazon.awssdk.services.transcribestreaming.model.ItemType;
+import software.amazon.awssdk.services.transcribestreaming.model.Result;
+import software.amazon.awssdk.services.transcribestreaming.model.StartStreamTranscriptionRequest;
+import software.amazon.awssdk.services.transcribestreaming.model.StartStreamTranscriptionResponse;
+import software.amazon.awssdk.services.transcribestreaming.model.StartStreamTranscriptionResponseHandler;
+import software.amazon.awssdk.services.transcribestreaming.model.Transcript;
+import software.amazon.awssdk.services.transcribestreaming.model.TranscriptEvent;
+import software.amazon.awssdk.services.transcribestreaming.model.TranscriptResultStream;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ParallelBatchTranscriber class.
+ */
+class ParallelBatchTranscriberTest {
+
+    private static final int SAMPLE_RATE = 16000;
+
+    /**
+     * Stands in for Transcribe: once a stream's audio ends, waits a while and answers with one
+     * word per run of non-zero samples, named after the sample value, timed from the start of
+     * the stream.
+     */
+    private static class FakeStreamingClient implements TranscribeStreamingAsyncClient {
+
+        private final long delayMs;
+        final AtomicInteger streams = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final Set<Integer> sampleRates = ConcurrentHashMap.newKeySet();
+
+        FakeStreamingClient(long delayMs) {
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public CompletableFuture<Void> startStreamTranscription(StartStreamTranscriptionRequest request,
+                                                                Publisher<AudioStream> audio,
+                                                                StartStreamTranscriptionResponseHandler handler) {
+            streams.incrementAndGet();
+            sampleRates.add(request.mediaSampleRateHertz());
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            CompletableFuture<Void> call = new CompletableFuture<>();
+            Sinks.Many<TranscriptResultStream> events = Sinks.many().unicast().onBackpressureBuffer();
+            handler.responseReceived(StartStreamTranscriptionResponse.builder().sessionId("aws-session").build());
+            handler.onEventStream(SdkPublisher.adapt(events.asFlux()));
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            audio.subscribe(new Subscriber<>() {
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(AudioStream frame) {
+                    received.writeBytes(((AudioEvent) frame).audioChunk().asByteArray());
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    active.decrementAndGet();
+                    call.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS).execute(() -> {
+                        events.tryEmitNext(words(received.toByteArray(), request.mediaSampleRateHertz()));
+                        events.tryEmitComplete();
+                        handler.complete();
+                        active.decrementAndGet();
+                        call.complete(null);
+                    });
+                }
+            });
+            return call;
+        }
+
+        private static TranscriptEvent words(byte[] pcm, int sampleRate) {
+            List<Item> items = new ArrayList<>();
+            int samples = pcm.length / 2;
+            int runStart = -1;
+            for (int i = 0; i <= samples; i++) {
+                int value = i < samples ? sample(pcm, i) : 0;
+                if (value != 0 && runStart < 0) {
+                    runStart = i;
+                } else if (value == 0 && runStart >= 0) {
+                    items.add(Item.builder()
+                            .content("w" + (sample(pcm, runStart) - 1000) / 10)
+                            .type(ItemType.PRONUNCIATION)
+                            .startTime((double) runStart / sampleRate)
+                            .endTime((double) i / sampleRate)
+                            .build());
+                    runStart = -1;
+                }
+            }
+            return TranscriptEvent.builder()
+                    .transcript(Transcript.builder()
+                            .results(Result.builder()
+                                    .isPartial(false)
+                                    .alternatives(Alternative.builder().items(items).build())
+                                    .build())
+                            .build())
+                    .build();
+        }
+
+        private static int sample(byte[] pcm, int index) {
+            return (short) ((pcm[2 * index] & 0xff) | (pcm[2 * index + 1] << 8));
+        }
+
+        @Override
+        public TranscribeStreamingServiceClientConfiguration serviceClientConfiguration() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String serviceName() {
+            return "transcribe";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static TranscribeConfig config(int maxConcurrency) {
+        return config(maxConcurrency, 16);
+    }
+
+    private static TranscribeConfig config(int maxConcurrency, int maxStreams) {
+        return new TranscribeConfig() {
+            @Override
+            public String getLanguageCode() {
+                return "en-US";
+            }
+
+            @Override
+            public Integer getSampleRate() {
+                return SAMPLE_RATE;
+            }
+
+            @Override
+            public Integer getSplitTargetSegmentSeconds() {
+                return 4;
+            }
+
+            @Override
+            public Integer getSplitMaxSegmentSeconds() {
+                return 8;
+            }
+
+            @Override
+            public Integer getSplitMinSilenceMs() {
+                return 300;
+            }
+
+            @Override
+            public Double getSplitSilenceMarginDb() {
+                return 10.0;
+            }
+
+            @Override
+            public Integer getSplitOverlapMs() {
+                return 500;
+            }
+
+            @Override
+            public Integer getSplitMaxConcurrency() {
+                return maxConcurrency;
+            }
+
+            @Override
+            public Integer getSplitMaxStreams() {
+                return maxStreams;
+            }
+        };
+    }
+
+    /**
+     * Builds a recording of words the fake client can read back: word {@code n} is 800 ms of
+     * the constant sample {@code 1000 + 10n}, words are 200 ms apart, and every fifth word is
+     * followed by a 600 ms pause. Every channel carries the same samples.
+     */
+    private static byte[] recording(int words, StringJoiner expected, int sampleRate, int channels) {
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        for (int word = 0; word < words; word++) {
+            write(pcm, 1000 + 10 * word, sampleRate * 800 / 1000, channels);
+            write(pcm, 0, sampleRate * ((word + 1) % 5 == 0 ? 600 : 200) / 1000, channels);
+            expected.add("w" + word);
+        }
+        return pcm.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream pcm, int value, int samples, int channels) {
+        for (int i = 0; i < samples * channels; i++) {
+            pcm.write(value & 0xff);
+            pcm.write((value >> 8) & 0xff);
+        }
+    }
+
+    @Test
+    void segmentsShouldBeTranscribedInParallelAndStitchedInOrder() throws IOException {
+        // Arrange
+        FakeStreamingClient client = new FakeStreamingClient(200);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TranscribeConfig config = config(3);
+        ParallelBatchTranscriber transcriber = new ParallelBatchTranscriber(
+                new TranscribeStreamingUpstream(client, config), config, meterRegistry);
+        StringJoiner expected = new StringJoiner(" ");
+        byte[] pcm = recording(30, expected, SAMPLE_RATE, 1);
+
+        // Act
+        String transcript = transcriber.transcribe(AudioSniffer.sniff(new ByteArrayInputStream(pcm))).join();
+
+        // Assert
+        assertEquals(expected.toString(), transcript);
+        assertTrue(client.streams.get() >= 5, "32 s of audio should be split into several 4 s segments");
+        assertEquals(3, client.maxActive.get());
+        assertEquals(Set.of(SAMPLE_RATE), client.sampleRates);
+        assertEquals(1, meterRegistry.get("transcribe.batch.duration").tag("mode", "split").timer().count());
+        assertEquals((double) client.streams.get(), meterRegistry.get("transcribe.split.segments").summary().totalAmount());
+        assertTrue(meterRegistry.get("transcribe.split.speedup").summary().max() > 1.5,
+                "Three streams at once should beat one stream after another");
+    }
+
+    @Test
+    void recordingsTogetherShouldNotExceedTheServiceStreamLimit() throws IOException {
+        // Arrange: three streams allowed per recording, but only four in all
+        FakeStreamingClient client = new FakeStreamingClient(100);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TranscribeConfig config = config(3, 4);
+        ParallelBatchTranscriber transcriber = new ParallelBatchTranscriber(
+                new TranscribeStreamingUpstream(client, config), config, meterRegistry);
+        StringJoiner expected = new StringJoiner(" ");
+        byte[] pcm = recording(30, expected, SAMPLE_RATE, 1);
+        List<CompletableFuture<String>> transcripts = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            transcripts.add(transcriber.transcribe(AudioSniffer.sniff(new ByteArrayInputStream(pcm))));
+        }
+
+        // Assert
+        for (CompletableFuture<String> transcript : transcripts) {
+            assertEquals(expected.toString(), transcript.join());
+        }
+        assertEquals(4, client.maxActive.get());
+        assertEquals(0, meterRegistry.get("transcribe.split.streams").gauge().value());
+        assertEquals(0, meterRegistry.get("transcribe.split.streams.waiting").gauge().value());
+    }
+
+    @Test
+    void stereoWavShouldBeStreamedAsMonoAtItsOwnSampleRate() throws IOException {
+        // Arrange
+        FakeStreamingClient client = new FakeStreamingClient(50);
+        TranscribeConfig config = config(4);
+        ParallelBatchTranscriber transcriber = new ParallelBatchTranscriber(
+                new TranscribeStreamingUpstream(client, config), config, new SimpleMeterRegistry());
+        StringJoiner expected = new StringJoiner(" ");
+        byte[] pcm = recording(12, expected, 8000, 2);
+        AudioFormat format = new AudioFormat(8000, 16, 2, true, false);
+        ByteArrayOutputStream wav = new ByteArrayOutputStream();
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), format, pcm.length / 4),
+                AudioFileFormat.Type.WAVE, wav);
+
+        // Act
+        String transcript = transcriber.transcribe(AudioSniffer.sniff(new ByteArrayInputStream(wav.toByteArray()))).join();
+
+        // Assert
+        assertEquals(expected.toString(), transcript);
+        assertEquals(Set.of(8000), client.sampleRates);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "bentham.benchmarks", matches = "true")
+    void splitTranscriptionShouldScaleWithConcurrency() throws IOException {
+        // Arrange: two minutes of audio, each stream answering after a second
+        StringJoiner expected = new StringJoiner(" ");
+        byte[] pcm = recording(120, expected, SAMPLE_RATE, 1);
+        long[] wallMs = new long[2];
+        int[] concurrency = {1, 8};
+
+        // Act
+        for (int i = 0; i < concurrency.length; i++) {
+            TranscribeConfig config = config(concurrency[i]);
+            ParallelBatchTranscriber transcriber = new ParallelBatchTranscriber(
+                    new TranscribeStreamingUpstream(new FakeStreamingClient(1000), config), config,
+                    new SimpleMeterRegistry());
+            long start = System.nanoTime();
+            assertEquals(expected.toString(),
+                    transcriber.transcribe(AudioSniffer.sniff(new ByteArrayInputStream(pcm))).join());
+            wallMs[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+
+        // Assert
+        System.out.printf("Split transcription: %d ms one stream at a time, %d ms eight at once (%.1fx)%n",
+                wallMs[0], wallMs[1], (double) wallMs[0] / wallMs[1]);
+        assertTrue(wallMs[0] > 4 * wallMs[1]);
+    }
+}
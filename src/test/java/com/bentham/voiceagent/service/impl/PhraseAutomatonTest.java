@@ -0,0 +1,132 @@
+package com.bentham.voiceagent.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the PhraseAutomaton class.
+ */
+class PhraseAutomatonTest {
+
+    @Test
+    void misrecognitionsShouldBeReplacedIgnoringCaseAndSpacing() {
+        // Arrange
+        PhraseAutomaton automaton = PhraseAutomaton.compile(Map.of(
+                "happy us corpus", "habeas corpus",
+                "miranda versus arizona", "Miranda v. Arizona"));
+
+        // Act
+        String corrected = automaton.replace("File a Happy  us corpus petition citing miranda versus Arizona.");
+
+        // Assert
+        assertEquals("File a habeas corpus petition citing Miranda v. Arizona.", corrected);
+    }
+
+    @Test
+    void phrasesShouldOnlyMatchWholeWords() {
+        // Arrange
+        PhraseAutomaton automaton = PhraseAutomaton.compile(Map.of("pro se", "pro se", "rea", "REA"));
+
+        // Act
+        String corrected = automaton.replace("A prose filing in the area");
+
+        // Assert
+        assertSame("A prose filing in the area", corrected);
+    }
+
+    @Test
+    void leftmostThenLongestMatchShouldWin() {
+        // Arrange
+        Map<String, String> phrases = new HashMap<>();
+        phrases.put("summary", "SUMMARY");
+        phrases.put("summary judgement", "summary judgment");
+        phrases.put("judgement day", "JUDGEMENT DAY");
+        PhraseAutomaton automaton = PhraseAutomaton.compile(phrases);
+
+        // Act
+        String corrected = automaton.replace("summary judgement day and a summary");
+
+        // Assert
+        assertEquals("summary judgment day and a SUMMARY", corrected);
+    }
+
+    @Test
+    void phrasesSharingSuffixesShouldAllBeFound() {
+        // Arrange: the classic he, she, his, hers set exercises the failure and output links
+        Map<String, String> phrases = new HashMap<>();
+        phrases.put("he", "1");
+        phrases.put("she", "2");
+        phrases.put("his", "3");
+        phrases.put("hers", "4");
+        phrases.put("us her", "5");
+        PhraseAutomaton automaton = PhraseAutomaton.compile(phrases);
+
+        // Act
+        String corrected = automaton.replace("ushers say she and he told us hers is his");
+
+        // Assert
+        assertEquals("ushers say 2 and 1 told us 4 is 3", corrected);
+    }
+
+    @Test
+    void textWithoutPhrasesShouldBeReturnedAsIs() {
+        // Arrange
+        PhraseAutomaton automaton = PhraseAutomaton.compile(Map.of("voir dire", "voir dire"));
+        String text = "The jury was sworn in.";
+
+        // Act & Assert
+        assertSame(text, automaton.replace(text));
+        assertSame(text, PhraseAutomaton.EMPTY.replace(text));
+        assertEquals(1, automaton.getPhraseCount());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "bentham.benchmarks", matches = "true")
+    void matchingShouldBeFastWithThousandsOfPhrases() {
+        // Arrange: 5000 three-word phrases over a 2000-word vocabulary, in text that mostly misses
+        Random random = new Random(1);
+        String[] words = new String[2000];
+        for (int i = 0; i < words.length; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int j = 3 + random.nextInt(6); j > 0; j--) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words[i] = word.toString();
+        }
+        Map<String, String> phrases = new HashMap<>();
+        while (phrases.size() < 5000) {
+            String phrase = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]
+                    + " " + words[random.nextInt(words.length)];
+            phrases.put(phrase, phrase.toUpperCase());
+        }
+        PhraseAutomaton automaton = PhraseAutomaton.compile(phrases);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1_000_000) {
+            text.append(words[random.nextInt(words.length)]).append(random.nextInt(10) == 0 ? ". " : " ");
+        }
+        String transcript = text.toString();
+        for (int i = 0; i < 20; i++) {
+            automaton.replace(transcript);
+        }
+
+        // Act
+        int runs = 50;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            automaton.replace(transcript);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        // Assert: a spoken sentence is about 100 chars, so this is far beyond any session rate
+        double charsPerSecond = (double) runs * transcript.length() * 1e9 / elapsedNanos;
+        System.out.printf("Vocabulary correction: %.1f million chars per second with %d phrases%n",
+                charsPerSecond / 1e6, automaton.getPhraseCount());
+        assertTrue(charsPerSecond > 10_000_000, charsPerSecond + " chars per second");
+    }
+}
@@ -0,0 +1,255 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.AdmissionConfig;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.service.AdmissionRejectedException;
+import com.bentham.voiceagent.service.TranscriptionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the RecordingReplayDriver class.
+ */
+class RecordingReplayDriverTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<RecordingReplayDriver> drivers = new ArrayList<>();
+
+    @AfterEach
+    void shutdownDrivers() {
+        drivers.forEach(RecordingReplayDriver::shutdown);
+    }
+
+    /**
+     * Records the frames it receives and when they arrived.
+     */
+    private static class RecordingTranscriptionService implements TranscriptionService {
+
+        final List<byte[]> chunks = new ArrayList<>();
+        final List<Long> arrivals = new ArrayList<>();
+        volatile Boolean recorded;
+        volatile boolean stopped;
+
+        @Override
+        public CompletableFuture<String> transcribeAudio(InputStream audioStream) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String startStreamingTranscription() {
+            return startStreamingTranscription(true);
+        }
+
+        @Override
+        public String startStreamingTranscription(boolean recorded) {
+            this.recorded = recorded;
+            return "replay-session";
+        }
+
+        @Override
+        public void sendAudioChunk(String sessionId, byte[] audioChunk) {
+            chunks.add(audioChunk);
+            arrivals.add(System.nanoTime());
+        }
+
+        @Override
+        public String getLatestTranscription(String sessionId) {
+            return "";
+        }
+
+        @Override
+        public String stopStreamingTranscription(String sessionId) {
+            stopped = true;
+            return "final transcript";
+        }
+
+        @Override
+        public CompletableFuture<String> stopStreamingTranscriptionAsync(String sessionId) {
+            return CompletableFuture.completedFuture(stopStreamingTranscription(sessionId));
+        }
+
+        @Override
+        public Flux<TranscriptionResult> transcribe(Flux<DataBuffer> audio) {
+            return Flux.error(new UnsupportedOperationException());
+        }
+    }
+
+    private RecordingReplayDriver driver(TranscriptionService service, boolean admissionEnabled) {
+        AdmissionConfig config = new AdmissionConfig() {
+            @Override
+            public Boolean getEnabled() {
+                return admissionEnabled;
+            }
+
+            @Override
+            public Integer getMaxConcurrentSessions() {
+                return 0;
+            }
+
+            @Override
+            public Integer getMaxQueuedSessions() {
+                return 0;
+            }
+
+            @Override
+            public Double getTenantSessionsPerSecond() {
+                return 10.0;
+            }
+
+            @Override
+            public Integer getTenantSessionBurst() {
+                return 10;
+            }
+
+            @Override
+            public Integer getTenantAudioBytesPerSecond() {
+                return 32000;
+            }
+
+            @Override
+            public Integer getTenantAudioBurstBytes() {
+                return 32000;
+            }
+        };
+        RecordingReplayDriver driver = new RecordingReplayDriver(service,
+                new SessionAdmissionService(config, new SimpleMeterRegistry()));
+        drivers.add(driver);
+        return driver;
+    }
+
+    private RecordingReplayDriver driver(TranscriptionService service) {
+        return driver(service, false);
+    }
+
+    private Path record(int frames, long gapMillis) throws IOException {
+        Path directory = tempDir.resolve("session");
+        try (SessionAudioRecorder recorder = new SessionAudioRecorder(directory, 4096, 16000)) {
+            for (int i = 0; i < frames; i++) {
+                if (i > 0) {
+                    LockSupport.parkNanos(gapMillis * 1_000_000);
+                }
+                recorder.append(new byte[] {(byte) i, (byte) i});
+            }
+        }
+        return directory;
+    }
+
+    @Test
+    void replayShouldSendEveryFrameInOrderAndStopTheSession() throws IOException {
+        // Arrange
+        Path directory = record(5, 0);
+        RecordingTranscriptionService service = new RecordingTranscriptionService();
+
+        // Act
+        RecordingReplayDriver.ReplayResult result = driver(service).replay(directory, Double.POSITIVE_INFINITY).join();
+
+        // Assert
+        assertEquals(5, service.chunks.size());
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(new byte[] {(byte) i, (byte) i}, service.chunks.get(i));
+        }
+        assertTrue(service.stopped);
+        assertEquals(Boolean.FALSE, service.recorded);
+        assertEquals("replay-session", result.getSessionId());
+        assertEquals("final transcript", result.getTranscript());
+        assertEquals(5, result.getFrames());
+        assertEquals(10, result.getBytes());
+        assertEquals(0, result.getMaxLatenessMs());
+    }
+
+    @Test
+    void replayShouldPreserveRecordedPacing() throws IOException {
+        // Arrange
+        Path directory = record(3, 50);
+        RecordingTranscriptionService service = new RecordingTranscriptionService();
+
+        // Act
+        RecordingReplayDriver.ReplayResult result = driver(service).replay(directory, 1).join();
+
+        // Assert
+        long replayedNanos = service.arrivals.get(2) - service.arrivals.get(0);
+        assertTrue(replayedNanos >= 95_000_000, "Replay ran faster than recorded: " + replayedNanos);
+        assertTrue(result.getRecordedDurationMs() >= 100);
+    }
+
+    @Test
+    void acceleratedReplayShouldCompressGaps() throws IOException {
+        // Arrange
+        Path directory = record(3, 100);
+        RecordingTranscriptionService service = new RecordingTranscriptionService();
+
+        // Act
+        RecordingReplayDriver.ReplayResult result = driver(service).replay(directory, 4).join();
+
+        // Assert
+        long replayedNanos = service.arrivals.get(2) - service.arrivals.get(0);
+        assertTrue(replayedNanos >= 45_000_000, "Replay ran faster than requested: " + replayedNanos);
+        assertTrue(result.getWallDurationMs() < result.getRecordedDurationMs());
+    }
+
+    @Test
+    void replayShouldRejectNonPositiveSpeed() {
+        // Arrange
+        RecordingReplayDriver driver = driver(new RecordingTranscriptionService());
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> driver.replay(tempDir, 0));
+    }
+
+    @Test
+    void submittedReplayShouldBeFollowedToCompletion() throws IOException {
+        // Arrange
+        Path directory = record(3, 0);
+        RecordingReplayDriver driver = driver(new RecordingTranscriptionService());
+
+        // Act
+        RecordingReplayDriver.Replay replay = driver.submit("recorded-session", directory, Double.POSITIVE_INFINITY);
+        replay.getOutcome().join();
+
+        // Assert
+        RecordingReplayDriver.Replay status = driver.getReplay(replay.getReplayId());
+        assertSame(replay, status);
+        assertEquals("recorded-session", status.getRecordingSessionId());
+        assertEquals("completed", status.getStatus());
+        assertEquals(3, status.getResult().getFrames());
+        assertNull(status.getError());
+        assertNull(driver.getReplay("unknown"));
+    }
+
+    @Test
+    void replayShouldNotStartASessionWithoutAdmission() throws IOException {
+        // Arrange
+        Path directory = record(3, 0);
+        RecordingTranscriptionService service = new RecordingTranscriptionService();
+        RecordingReplayDriver driver = driver(service, true);
+
+        // Act
+        RecordingReplayDriver.Replay replay = driver.submit("recorded-session", directory, Double.POSITIVE_INFINITY);
+
+        // Assert
+        CompletionException thrown = assertThrows(CompletionException.class, () -> replay.getOutcome().join());
+        assertInstanceOf(AdmissionRejectedException.class, thrown.getCause());
+        assertEquals("failed", replay.getStatus());
+        assertNotNull(replay.getError());
+        assertNull(replay.getResult());
+        assertNull(service.recorded);
+        assertTrue(service.chunks.isEmpty());
+    }
+}
@@ -0,0 +1,210 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.BedrockConfig;
+import com.bentham.voiceagent.config.ResilienceConfig;
+import com.bentham.voiceagent.service.NaturalLanguageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ResilientNaturalLanguageService class.
+ */
+class ResilientNaturalLanguageServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private FaultInjector primaryInjector;
+    private FaultInjector hedgeInjector;
+    private FakeNaturalLanguageService primary;
+    private FakeNaturalLanguageService hedge;
+    private ResilientNaturalLanguageService service;
+
+    /**
+     * Language model backed by a fault injector; records the parameters of each request.
+     */
+    private static class FakeNaturalLanguageService implements NaturalLanguageService {
+
+        final FaultInjector injector;
+        final List<Map<String, Object>> parameters = new CopyOnWriteArrayList<>();
+        final Set<String> conversations = ConcurrentHashMap.newKeySet();
+
+        FakeNaturalLanguageService(FaultInjector injector) {
+            this.injector = injector;
+        }
+
+        @Override
+        public CompletableFuture<String> processMessage(String message) {
+            return processMessageWithParams(message, Map.of());
+        }
+
+        @Override
+        public CompletableFuture<String> processMessage(String message, String conversationId) {
+            return processMessageWithParams(message, conversationId, Map.of());
+        }
+
+        @Override
+        public CompletableFuture<String> processMessageWithParams(String message, Map<String, Object> parameters) {
+            this.parameters.add(parameters);
+            return injector.respond(() -> "Reply to " + message);
+        }
+
+        @Override
+        public CompletableFuture<String> processMessageWithParams(String message, String conversationId,
+                                                                  Map<String, Object> parameters) {
+            if (!conversations.contains(conversationId)) {
+                throw new IllegalArgumentException("No conversation found with ID: " + conversationId);
+            }
+            return processMessageWithParams(message, parameters);
+        }
+
+        @Override
+        public String createConversation() {
+            conversations.add("conversation-1");
+            return "conversation-1";
+        }
+
+        @Override
+        public void endConversation(String conversationId) {
+            conversations.remove(conversationId);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        primaryInjector = new FaultInjector(1, 200);
+        hedgeInjector = new FaultInjector(2, 1);
+        primary = new FakeNaturalLanguageService(primaryInjector);
+        hedge = new FakeNaturalLanguageService(hedgeInjector);
+
+        BedrockConfig bedrockConfig = new BedrockConfig() {
+            @Override
+            public String getFallbackModelId() {
+                return "fallback-model";
+            }
+        };
+        ResilienceConfig resilienceConfig = new ResilienceConfig() {
+            @Override
+            public Boolean getHedgingEnabled() {
+                return true;
+            }
+
+            @Override
+            public Double getHedgingPercentile() {
+                return 0.95;
+            }
+
+            @Override
+            public Integer getHedgingMinSamples() {
+                return 0;
+            }
+
+            @Override
+            public Integer getHedgingMinDelayMs() {
+                return 20;
+            }
+
+            @Override
+            public Integer getLatencyWindowSize() {
+                return 512;
+            }
+
+            @Override
+            public Integer getCircuitWindowSize() {
+                return 4;
+            }
+
+            @Override
+            public Integer getCircuitMinimumCalls() {
+                return 2;
+            }
+
+            @Override
+            public Double getCircuitFailureRateThreshold() {
+                return 0.5;
+            }
+
+            @Override
+            public Integer getCircuitOpenDurationMs() {
+                return 60000;
+            }
+        };
+        service = new ResilientNaturalLanguageService(primary, hedge, null, bedrockConfig, resilienceConfig,
+                meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        primaryInjector.close();
+        hedgeInjector.close();
+    }
+
+    @Test
+    void slowMessageShouldBeHedged() {
+        // Act
+        String response = service.processMessage("Hello").join();
+
+        // Assert
+        assertEquals("Reply to Hello", response);
+        assertEquals(1, hedge.parameters.size());
+    }
+
+    @Test
+    void conversationMessagesShouldNotBeHedged() {
+        // Arrange
+        String conversationId = service.createConversation();
+
+        // Act
+        String response = service.processMessage("Hello", conversationId).join();
+
+        // Assert
+        assertEquals("Reply to Hello", response);
+        assertEquals(0, hedge.parameters.size());
+    }
+
+    @Test
+    void openCircuitShouldFallBackToFallbackModel() {
+        // Arrange
+        primaryInjector.withErrorRate(1.0);
+        hedgeInjector.withErrorRate(1.0);
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<String> failed = service.processMessageWithParams("Hello", Map.of("temperature", 0.2));
+            assertThrows(Exception.class, failed::join);
+        }
+
+        // Act
+        service.processMessageWithParams("Hello", Map.of("temperature", 0.2));
+
+        // Assert
+        Map<String, Object> fallback = primary.parameters.get(primary.parameters.size() - 1);
+        assertEquals("fallback-model", fallback.get("modelId"));
+        assertEquals(0.2, fallback.get("temperature"));
+        assertEquals(1, meterRegistry.counter("voice.resilience.fallbacks",
+                "service", "bedrock", "operation", "converse").count());
+    }
+
+    @Test
+    void unknownConversationShouldNotCountAsFailure() {
+        // Act
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalArgumentException.class, () -> service.processMessage("Hello", "missing"));
+        }
+        service.processMessage("Hello");
+
+        // Assert
+        assertFalse(primary.parameters.get(primary.parameters.size() - 1).containsKey("modelId"));
+        assertEquals(0, meterRegistry.counter("voice.resilience.fallbacks",
+                "service", "bedrock", "operation", "converse").count());
+    }
+}
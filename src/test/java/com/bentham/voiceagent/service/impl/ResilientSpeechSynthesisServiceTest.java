@@ -0,0 +1,281 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.PollyConfig;
+import com.bentham.voiceagent.config.ResilienceConfig;
+import com.bentham.voiceagent.service.SpeechSynthesisService;
+import com.bentham.voiceagent.util.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ResilientSpeechSynthesisService class.
+ */
+class ResilientSpeechSynthesisServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private final List<FaultInjector> injectors = new ArrayList<>();
+    private final List<ResilientSpeechSynthesisService> services = new ArrayList<>();
+
+    private final PollyConfig pollyConfig = new PollyConfig() {
+        @Override
+        public String getVoiceId() {
+            return "Joanna";
+        }
+
+        @Override
+        public String getFallbackVoiceId() {
+            return "Matthew";
+        }
+    };
+
+    /**
+     * Synthesis backed by a fault injector; records the voice of each request and the futures handed out.
+     */
+    private static class FakeSpeechSynthesisService implements SpeechSynthesisService {
+
+        final FaultInjector injector;
+        final List<String> voices = new CopyOnWriteArrayList<>();
+        final List<CompletableFuture<InputStream>> requests = new CopyOnWriteArrayList<>();
+
+        FakeSpeechSynthesisService(FaultInjector injector) {
+            this.injector = injector;
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeech(String text) {
+            return synthesizeSpeech(text, "Joanna");
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId) {
+            voices.add(voiceId);
+            CompletableFuture<InputStream> request = injector.respond(() -> new ByteArrayInputStream(text.getBytes()));
+            requests.add(request);
+            return request;
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId, String outputFormat) {
+            return synthesizeSpeech(text, voiceId);
+        }
+
+        @Override
+        public CompletableFuture<String[]> getAvailableVoices() {
+            return CompletableFuture.completedFuture(new String[] {"Joanna", "Matthew"});
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml) {
+            return synthesizeSpeech(ssml);
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml, String voiceId) {
+            return synthesizeSpeech(ssml, voiceId);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(ResilientSpeechSynthesisService::shutdown);
+        injectors.forEach(FaultInjector::close);
+    }
+
+    private FaultInjector injector(long seed, long baseLatencyMs) {
+        FaultInjector injector = new FaultInjector(seed, baseLatencyMs);
+        injectors.add(injector);
+        return injector;
+    }
+
+    private ResilientSpeechSynthesisService service(SpeechSynthesisService primary, SpeechSynthesisService hedge,
+                                                    boolean hedging, int minSamples) {
+        ResilienceConfig config = new ResilienceConfig() {
+            @Override
+            public Boolean getHedgingEnabled() {
+                return hedging;
+            }
+
+            @Override
+            public Double getHedgingPercentile() {
+                return 0.95;
+            }
+
+            @Override
+            public Integer getHedgingMinSamples() {
+                return minSamples;
+            }
+
+            @Override
+            public Integer getHedgingMinDelayMs() {
+                return 20;
+            }
+
+            @Override
+            public Integer getLatencyWindowSize() {
+                return 512;
+            }
+
+            @Override
+            public Integer getCircuitWindowSize() {
+                return 10;
+            }
+
+            @Override
+            public Integer getCircuitMinimumCalls() {
+                return 5;
+            }
+
+            @Override
+            public Double getCircuitFailureRateThreshold() {
+                return 0.5;
+            }
+
+            @Override
+            public Integer getCircuitOpenDurationMs() {
+                return 60000;
+            }
+        };
+        ResilientSpeechSynthesisService service =
+                new ResilientSpeechSynthesisService(primary, hedge, null, pollyConfig, config, meterRegistry);
+        services.add(service);
+        return service;
+    }
+
+    /**
+     * Runs calls ten at a time and gets the 99th percentile of their latencies in milliseconds.
+     */
+    private static double p99LatencyMs(SpeechSynthesisService service, int calls) {
+        long[] latencies = new long[calls];
+        for (int batch = 0; batch < calls; batch += 10) {
+            List<CompletableFuture<InputStream>> pending = new ArrayList<>();
+            for (int i = batch; i < Math.min(calls, batch + 10); i++) {
+                int index = i;
+                long start = System.nanoTime();
+                pending.add(service.synthesizeSpeech("Hello").whenComplete(
+                        (speech, error) -> latencies[index] = System.nanoTime() - start));
+            }
+            pending.forEach(CompletableFuture::join);
+        }
+        Arrays.sort(latencies);
+        return TimeUnit.NANOSECONDS.toMicros(latencies[(int) Math.ceil(0.99 * calls) - 1]) / 1000.0;
+    }
+
+    @Test
+    void hedgingShouldCutTailLatency() {
+        // Arrange: 3% of responses take 250 ms instead of 5-10 ms
+        FakeSpeechSynthesisService unhedgedPolly = new FakeSpeechSynthesisService(injector(42, 5).withTail(0.03, 250));
+        FakeSpeechSynthesisService hedgedPolly = new FakeSpeechSynthesisService(injector(42, 5).withTail(0.03, 250));
+        ResilientSpeechSynthesisService unhedged = service(unhedgedPolly, unhedgedPolly, false, 20);
+        ResilientSpeechSynthesisService hedged = service(hedgedPolly, hedgedPolly, true, 20);
+
+        // Act
+        double unhedgedP99 = p99LatencyMs(unhedged, 300);
+        double hedgedP99 = p99LatencyMs(hedged, 300);
+
+        // Assert
+        assertTrue(unhedgedP99 >= 200, "Unhedged p99 should include the slow tail: " + unhedgedP99);
+        assertTrue(hedgedP99 < unhedgedP99 / 2,
+                "Hedged p99 " + hedgedP99 + " ms should be well below unhedged p99 " + unhedgedP99 + " ms");
+        assertTrue(meterRegistry.counter("voice.resilience.hedges",
+                "service", "polly", "operation", "synthesize", "winner", "hedge").count() > 0);
+    }
+
+    @Test
+    void hedgeShouldWinWhenPrimaryIsSlowAndPrimaryShouldBeCancelled() {
+        // Arrange
+        FakeSpeechSynthesisService primary = new FakeSpeechSynthesisService(injector(1, 500));
+        FakeSpeechSynthesisService hedge = new FakeSpeechSynthesisService(injector(2, 5));
+        ResilientSpeechSynthesisService service = service(primary, hedge, true, 0);
+
+        // Act
+        InputStream speech = service.synthesizeSpeech("Hello").join();
+
+        // Assert
+        assertNotNull(speech);
+        assertEquals(1, hedge.requests.size());
+        assertTrue(primary.requests.get(0).isCancelled(), "Losing request should be cancelled");
+        assertEquals(1, meterRegistry.counter("voice.resilience.hedges",
+                "service", "polly", "operation", "synthesize", "winner", "hedge").count());
+    }
+
+    @Test
+    void fastCallsShouldNotBeHedged() {
+        // Arrange
+        FakeSpeechSynthesisService primary = new FakeSpeechSynthesisService(injector(3, 1));
+        FakeSpeechSynthesisService hedge = new FakeSpeechSynthesisService(injector(4, 1));
+        ResilientSpeechSynthesisService service = service(primary, hedge, true, 0);
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            service.synthesizeSpeech("Hello").join();
+        }
+
+        // Assert
+        assertEquals(0, hedge.requests.size());
+    }
+
+    @Test
+    void circuitShouldOpenAndFallBackToFallbackVoice() {
+        // Arrange
+        FakeSpeechSynthesisService polly = new FakeSpeechSynthesisService(injector(5, 1).withErrorRate(1.0));
+        ResilientSpeechSynthesisService service = service(polly, polly, false, 20);
+        for (int i = 0; i < 5; i++) {
+            CompletableFuture<InputStream> failed = service.synthesizeSpeech("Hello");
+            assertThrows(Exception.class, failed::join);
+        }
+
+        // Act
+        service.synthesizeSpeech("Hello");
+
+        // Assert
+        assertEquals("Matthew", polly.voices.get(polly.voices.size() - 1));
+        assertEquals(1, meterRegistry.counter("voice.resilience.fallbacks",
+                "service", "polly", "operation", "synthesize").count());
+        assertEquals(1, meterRegistry.get("voice.resilience.circuit.open").gauge().value());
+    }
+
+    @Test
+    void cancellingShouldCancelEveryRequest() {
+        // Arrange
+        FakeSpeechSynthesisService polly = new FakeSpeechSynthesisService(injector(6, 500));
+        ResilientSpeechSynthesisService service = service(polly, polly, true, 20);
+
+        // Act
+        CompletableFuture<InputStream> speech = service.synthesizeSpeech("Hello");
+        speech.cancel(true);
+
+        // Assert
+        assertTrue(polly.requests.get(0).isCancelled());
+    }
+
+    @Test
+    void availableVoicesShouldPassThrough() {
+        // Arrange
+        FakeSpeechSynthesisService polly = new FakeSpeechSynthesisService(injector(7, 1));
+        ResilientSpeechSynthesisService service = service(polly, polly, true, 20);
+
+        // Act
+        String[] voices = service.getAvailableVoices().join();
+
+        // Assert
+        assertArrayEquals(new String[] {"Joanna", "Matthew"}, voices);
+    }
+}
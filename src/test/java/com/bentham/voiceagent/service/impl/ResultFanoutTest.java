@@ -0,0 +1,191 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.service.TranscriptionResultListener;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ResultFanout class.
+ */
+class ResultFanoutTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ResultFanout fanout;
+
+    /**
+     * Records the transcripts it receives, and can be held inside its first result.
+     */
+    private static class RecordingListener implements TranscriptionResultListener {
+
+        private final Overflow overflow;
+        final List<String> transcripts = new CopyOnWriteArrayList<>();
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release;
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        RecordingListener(Overflow overflow, boolean held) {
+            this.overflow = overflow;
+            this.release = new CountDownLatch(held ? 1 : 0);
+        }
+
+        @Override
+        public void onResult(TranscriptionResult result) {
+            transcripts.add(result.getTranscript());
+            threads.add(Thread.currentThread().getName());
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onSessionClosed(String sessionId) {
+            closed.countDown();
+        }
+
+        @Override
+        public Overflow getOverflowPolicy() {
+            return overflow;
+        }
+    }
+
+    private static class DropOldestListener extends RecordingListener {
+        DropOldestListener(boolean held) {
+            super(Overflow.DROP_OLDEST, held);
+        }
+    }
+
+    private static class SkipToLatestListener extends RecordingListener {
+        SkipToLatestListener(boolean held) {
+            super(Overflow.SKIP_TO_LATEST, held);
+        }
+    }
+
+    private static TranscriptionResult result(String sessionId, int index) {
+        return new TranscriptionResult(sessionId, "result " + index, true, 0.9);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (fanout != null) {
+            fanout.shutdown();
+        }
+    }
+
+    @Test
+    void listenersShouldReceiveEveryResultInOrderOnTheirOwnThreads() throws InterruptedException {
+        // Arrange
+        DropOldestListener first = new DropOldestListener(false);
+        SkipToLatestListener second = new SkipToLatestListener(false);
+        fanout = new ResultFanout(List.of(first, second), 1024, meterRegistry);
+        fanout.open("session-1");
+
+        // Act
+        for (int i = 0; i < 500; i++) {
+            fanout.publish(result("session-1", i));
+        }
+        fanout.close("session-1");
+
+        // Assert
+        assertTrue(first.closed.await(5, TimeUnit.SECONDS));
+        assertTrue(second.closed.await(5, TimeUnit.SECONDS));
+        for (RecordingListener listener : List.of(first, second)) {
+            assertEquals(500, listener.transcripts.size());
+            for (int i = 0; i < 500; i++) {
+                assertEquals("result " + i, listener.transcripts.get(i));
+            }
+        }
+        assertTrue(first.threads.stream().allMatch(name -> name.equals("voice-results-DropOldestListener")));
+        assertTrue(second.threads.stream().allMatch(name -> name.equals("voice-results-SkipToLatestListener")));
+    }
+
+    @Test
+    void aHeldListenerShouldNeitherBlockTheSessionNorTheOtherListeners() throws InterruptedException {
+        // Arrange
+        DropOldestListener held = new DropOldestListener(true);
+        SkipToLatestListener free = new SkipToLatestListener(false);
+        fanout = new ResultFanout(List.of(held, free), 8, meterRegistry);
+        fanout.open("session-1");
+
+        // Act
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            fanout.publish(result("session-1", i));
+        }
+        long publishMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        fanout.close("session-1");
+
+        // Assert
+        assertTrue(free.closed.await(5, TimeUnit.SECONDS));
+        assertTrue(held.entered.await(5, TimeUnit.SECONDS));
+        assertEquals(1, held.transcripts.size());
+        assertTrue(publishMillis < 1000, "Publishing took " + publishMillis + " ms");
+        held.release.countDown();
+        assertTrue(held.closed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void listenersThatFallARingBehindShouldResumeAsTheirPolicySays() throws InterruptedException {
+        // Arrange
+        DropOldestListener oldest = new DropOldestListener(true);
+        SkipToLatestListener latest = new SkipToLatestListener(true);
+        fanout = new ResultFanout(List.of(oldest, latest), 4, meterRegistry);
+        fanout.open("session-1");
+        fanout.publish(result("session-1", 0));
+        assertTrue(oldest.entered.await(5, TimeUnit.SECONDS));
+        assertTrue(latest.entered.await(5, TimeUnit.SECONDS));
+
+        // Act: nine more results while both are held in the first, over twice the ring
+        for (int i = 1; i < 10; i++) {
+            fanout.publish(result("session-1", i));
+        }
+        double lag = meterRegistry.get("transcribe.results.lag").tag("listener", "DropOldestListener").gauge().value();
+        fanout.close("session-1");
+        oldest.release.countDown();
+        latest.release.countDown();
+
+        // Assert
+        assertTrue(oldest.closed.await(5, TimeUnit.SECONDS));
+        assertTrue(latest.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(9.0, lag);
+        assertEquals(List.of("result 0", "result 6", "result 7", "result 8", "result 9"), oldest.transcripts);
+        assertEquals(List.of("result 0", "result 9"), latest.transcripts);
+        assertEquals(5.0, meterRegistry.get("transcribe.results.dropped")
+                .tags("listener", "DropOldestListener", "policy", "DROP_OLDEST").counter().count());
+        assertEquals(8.0, meterRegistry.get("transcribe.results.dropped")
+                .tags("listener", "SkipToLatestListener", "policy", "SKIP_TO_LATEST").counter().count());
+        assertEquals(5, meterRegistry.get("transcribe.results.delivery.lag")
+                .tag("listener", "DropOldestListener").timer().count());
+    }
+
+    @Test
+    void resultsForSessionsThatAreNotOpenShouldBeDropped() throws InterruptedException {
+        // Arrange
+        DropOldestListener listener = new DropOldestListener(false);
+        fanout = new ResultFanout(List.of(listener), 16, meterRegistry);
+        fanout.open("session-1");
+
+        // Act
+        fanout.publish(result("session-2", 0));
+        fanout.publish(result("session-1", 1));
+        fanout.close("session-1");
+        fanout.publish(result("session-1", 2));
+
+        // Assert
+        assertTrue(listener.closed.await(5, TimeUnit.SECONDS));
+        fanout.shutdown();
+        assertEquals(List.of("result 1"), listener.transcripts);
+    }
+}
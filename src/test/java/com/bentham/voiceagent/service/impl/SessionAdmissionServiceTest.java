@@ -0,0 +1,279 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.AdmissionConfig;
+import com.bentham.voiceagent.service.AdmissionRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the SessionAdmissionService class.
+ */
+class SessionAdmissionServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private final List<SessionAdmissionService> services = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(SessionAdmissionService::shutdown);
+    }
+
+    private SessionAdmissionService service(int maxSessions, int maxQueued, int maxWaitMs, int sessionBurst) {
+        return service(maxSessions, maxQueued, maxWaitMs, sessionBurst, 0.001, 1);
+    }
+
+    private SessionAdmissionService service(int maxSessions, int maxQueued, int maxWaitMs, int sessionBurst,
+                                            double sessionsPerSecond, int audioBytesPerSecond) {
+        AdmissionConfig config = new AdmissionConfig() {
+            @Override
+            public Boolean getEnabled() {
+                return true;
+            }
+
+            @Override
+            public Integer getMaxConcurrentSessions() {
+                return maxSessions;
+            }
+
+            @Override
+            public Integer getMaxQueuedSessions() {
+                return maxQueued;
+            }
+
+            @Override
+            public Integer getMaxQueueWaitMs() {
+                return maxWaitMs;
+            }
+
+            @Override
+            public Double getTenantSessionsPerSecond() {
+                return sessionsPerSecond;
+            }
+
+            @Override
+            public Integer getTenantSessionBurst() {
+                return sessionBurst;
+            }
+
+            @Override
+            public Integer getTenantAudioBytesPerSecond() {
+                return audioBytesPerSecond;
+            }
+
+            @Override
+            public Integer getTenantAudioBurstBytes() {
+                return 1000;
+            }
+        };
+        SessionAdmissionService service = new SessionAdmissionService(config, meterRegistry);
+        services.add(service);
+        return service;
+    }
+
+    private static AdmissionRejectedException rejection(CompletableFuture<SessionAdmissionService.Permit> admission) {
+        CompletionException thrown = assertThrows(CompletionException.class, admission::join);
+        return assertInstanceOf(AdmissionRejectedException.class, thrown.getCause());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition not met in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private double rejections(String reason) {
+        return meterRegistry.counter("voice.admission.rejections", "reason", reason).count();
+    }
+
+    @Test
+    void sessionsWithinLimitShouldBeAdmittedImmediately() {
+        // Arrange
+        SessionAdmissionService service = service(2, 10, 1000, 10);
+
+        // Act
+        CompletableFuture<SessionAdmissionService.Permit> first = service.admit("tenant-a");
+        CompletableFuture<SessionAdmissionService.Permit> second = service.admit("tenant-b");
+
+        // Assert
+        assertTrue(first.isDone() && second.isDone());
+        assertEquals(2, service.getActiveSessions());
+        assertEquals(0, service.getQueuedSessions());
+    }
+
+    @Test
+    void waitingSessionShouldBeAdmittedWhenSlotIsReleased() throws Exception {
+        // Arrange
+        SessionAdmissionService service = service(1, 10, 5000, 10);
+        SessionAdmissionService.Permit first = service.admit("tenant-a").join();
+        CompletableFuture<SessionAdmissionService.Permit> second = service.admit("tenant-a");
+        assertFalse(second.isDone());
+        assertEquals(1, service.getQueuedSessions());
+
+        // Act
+        first.close();
+
+        // Assert
+        assertNotNull(second.get());
+        assertEquals(1, service.getActiveSessions());
+        assertEquals(0, service.getQueuedSessions());
+    }
+
+    @Test
+    void waitingSessionShouldBeRejectedAfterMaxWait() {
+        // Arrange
+        SessionAdmissionService service = service(1, 10, 50, 10);
+        service.admit("tenant-a");
+
+        // Act & Assert
+        AdmissionRejectedException exception = rejection(service.admit("tenant-a"));
+        assertEquals("queue-timeout", exception.getReason());
+        assertEquals(0, service.getQueuedSessions());
+        assertEquals(1.0, rejections("queue-timeout"));
+    }
+
+    @Test
+    void sessionShouldBeRejectedWhenQueueIsFull() {
+        // Arrange
+        SessionAdmissionService service = service(1, 0, 1000, 10);
+        service.admit("tenant-a");
+
+        // Act & Assert
+        AdmissionRejectedException exception = rejection(service.admit("tenant-b"));
+        assertEquals("queue-full", exception.getReason());
+    }
+
+    @Test
+    void freedSlotsShouldRotateBetweenTenants() throws Exception {
+        // Arrange
+        SessionAdmissionService service = service(1, 10, 5000, 10);
+        SessionAdmissionService.Permit held = service.admit("busy").join();
+        List<String> admitted = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<SessionAdmissionService.Permit>> waiters = new CopyOnWriteArrayList<>();
+        for (String tenant : List.of("busy", "busy", "busy", "quiet")) {
+            CompletableFuture<SessionAdmissionService.Permit> waiter = service.admit(tenant);
+            waiter.thenRun(() -> admitted.add(tenant));
+            waiters.add(waiter);
+        }
+        assertEquals(4, service.getQueuedSessions());
+
+        // Act
+        held.close();
+        await(() -> admitted.size() == 1);
+        String firstAdmitted = admitted.get(0);
+        waiters.stream().filter(CompletableFuture::isDone).findFirst().orElseThrow().get().close();
+        await(() -> admitted.size() == 2);
+
+        // Assert
+        assertEquals("busy", firstAdmitted);
+        assertEquals("quiet", admitted.get(1));
+    }
+
+    @Test
+    void startsShouldWaitWithoutHoldingTheCallingThread() {
+        // Arrange
+        SessionAdmissionService service = service(1, 10, 5000, 10);
+        SessionAdmissionService.Permit first = service.admit("tenant-a").join();
+
+        // Act
+        CompletableFuture<Thread> grantedOn = service.admit("tenant-a").thenApply(permit -> Thread.currentThread());
+        first.close();
+
+        // Assert: the waiter goes on with its start on a service thread, not the releasing one
+        assertNotSame(Thread.currentThread(), grantedOn.join());
+        assertTrue(grantedOn.join().getName().startsWith("voice-admission-"));
+    }
+
+    @Test
+    void cancelledStartShouldLeaveTheQueue() {
+        // Arrange
+        SessionAdmissionService service = service(1, 10, 5000, 10);
+        SessionAdmissionService.Permit first = service.admit("tenant-a").join();
+        CompletableFuture<SessionAdmissionService.Permit> second = service.admit("tenant-a");
+
+        // Act
+        second.cancel(false);
+        first.close();
+
+        // Assert
+        assertEquals(0, service.getQueuedSessions());
+        assertEquals(0, service.getActiveSessions());
+    }
+
+    @Test
+    void closingPermitTwiceShouldReleaseOneSlot() {
+        // Arrange
+        SessionAdmissionService service = service(2, 10, 1000, 10);
+        SessionAdmissionService.Permit permit = service.admit("tenant-a").join();
+        service.admit("tenant-a");
+
+        // Act
+        permit.close();
+        permit.close();
+
+        // Assert
+        assertEquals(1, service.getActiveSessions());
+    }
+
+    @Test
+    void tenantOverSessionRateShouldBeRejected() {
+        // Arrange
+        SessionAdmissionService service = service(10, 10, 1000, 2);
+        service.admit("tenant-a");
+        service.admit("tenant-a");
+
+        // Act & Assert
+        AdmissionRejectedException exception = rejection(service.admit("tenant-a"));
+        assertEquals("tenant-session-rate", exception.getReason());
+        assertDoesNotThrow(() -> service.admit("tenant-b").join());
+    }
+
+    @Test
+    void tenantOverAudioRateShouldBeRejected() {
+        // Arrange
+        SessionAdmissionService service = service(10, 10, 1000, 10);
+        service.checkAudio("tenant-a", 600);
+
+        // Act & Assert
+        AdmissionRejectedException exception =
+                assertThrows(AdmissionRejectedException.class, () -> service.checkAudio("tenant-a", 600));
+        assertEquals("tenant-audio-rate", exception.getReason());
+        assertDoesNotThrow(() -> service.checkAudio("tenant-b", 600));
+        assertEquals(1.0, rejections("tenant-audio-rate"));
+    }
+
+    @Test
+    void idleTenantsShouldBeDroppedOnceTheirBucketsHaveRefilled() throws InterruptedException {
+        // Arrange: buckets refill from empty in 100 ms
+        SessionAdmissionService service = service(10, 10, 1000, 2, 20.0, 10000);
+        service.admit("tenant-a").join().close();
+        service.checkAudio("tenant-b", 600);
+        assertEquals(2, service.getTenantCount());
+
+        // Act
+        Thread.sleep(150);
+        service.admit("tenant-c").join().close();
+
+        // Assert
+        assertEquals(1, service.getTenantCount());
+        assertEquals(1.0, meterRegistry.get("voice.admission.tenants").gauge().value());
+    }
+}
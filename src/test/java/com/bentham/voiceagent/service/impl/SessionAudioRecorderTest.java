@@ -0,0 +1,142 @@
+package com.bentham.voiceagent.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the SessionAudioRecorder and SessionRecordingReader classes.
+ */
+class SessionAudioRecorderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] frame(int length, int fill) {
+        byte[] frame = new byte[length];
+        for (int i = 0; i < length; i++) {
+            frame[i] = (byte) (fill + i);
+        }
+        return frame;
+    }
+
+    private List<SessionRecordingReader.RecordedFrame> readAll(Path directory) throws IOException {
+        List<SessionRecordingReader.RecordedFrame> frames = new ArrayList<>();
+        new SessionRecordingReader(directory).forEach(frames::add);
+        return frames;
+    }
+
+    private long segmentCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void recordedFramesShouldBeReadBackInOrder() throws IOException {
+        // Arrange
+        Path directory = tempDir.resolve("session");
+
+        // Act
+        try (SessionAudioRecorder recorder = new SessionAudioRecorder(directory, 4096, 16000)) {
+            recorder.append(frame(320, 1));
+            recorder.append(frame(17, 2));
+            recorder.append(frame(640, 3));
+        }
+        List<SessionRecordingReader.RecordedFrame> frames = readAll(directory);
+
+        // Assert
+        assertEquals(16000, new SessionRecordingReader(directory).getSampleRate());
+        assertEquals(3, frames.size());
+        assertArrayEquals(frame(320, 1), frames.get(0).getAudio());
+        assertArrayEquals(frame(17, 2), frames.get(1).getAudio());
+        assertArrayEquals(frame(640, 3), frames.get(2).getAudio());
+        assertTrue(frames.get(0).getArrivalOffsetNanos() <= frames.get(1).getArrivalOffsetNanos());
+        assertTrue(frames.get(1).getArrivalOffsetNanos() <= frames.get(2).getArrivalOffsetNanos());
+        assertTrue(frames.get(0).getArrivalEpochMicros() > 0);
+    }
+
+    @Test
+    void recorderShouldRollOverToNewSegmentsWhenFull() throws IOException {
+        // Arrange
+        Path directory = tempDir.resolve("session");
+
+        // Act
+        try (SessionAudioRecorder recorder = new SessionAudioRecorder(directory, 1024, 16000)) {
+            for (int i = 0; i < 10; i++) {
+                recorder.append(frame(320, i));
+            }
+            assertEquals(10, recorder.getFramesWritten());
+            assertEquals(3200, recorder.getBytesWritten());
+        }
+        List<SessionRecordingReader.RecordedFrame> frames = readAll(directory);
+
+        // Assert
+        // Two 340-byte frames fit in each 1024-byte segment
+        assertEquals(5, segmentCount(directory));
+        assertEquals(10, frames.size());
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals(frame(320, i), frames.get(i).getAudio());
+        }
+    }
+
+    @Test
+    void framesLargerThanASegmentShouldGetTheirOwnSegment() throws IOException {
+        // Arrange
+        Path directory = tempDir.resolve("session");
+
+        // Act
+        try (SessionAudioRecorder recorder = new SessionAudioRecorder(directory, 256, 16000)) {
+            recorder.append(frame(100, 1));
+            recorder.append(frame(8192, 2));
+            recorder.append(frame(100, 3));
+        }
+        List<SessionRecordingReader.RecordedFrame> frames = readAll(directory);
+
+        // Assert
+        assertEquals(3, frames.size());
+        assertArrayEquals(frame(8192, 2), frames.get(1).getAudio());
+        assertArrayEquals(frame(100, 3), frames.get(2).getAudio());
+    }
+
+    @Test
+    void emptyFramesShouldNotBeRecorded() throws IOException {
+        // Arrange
+        Path directory = tempDir.resolve("session");
+
+        // Act
+        try (SessionAudioRecorder recorder = new SessionAudioRecorder(directory, 4096, 16000)) {
+            recorder.append(new byte[0]);
+            recorder.append(frame(10, 1));
+            recorder.append(new byte[0]);
+            recorder.append(frame(10, 2));
+        }
+
+        // Assert
+        assertEquals(2, readAll(directory).size());
+    }
+
+    @Test
+    void appendAfterCloseShouldThrowException() throws IOException {
+        // Arrange
+        SessionAudioRecorder recorder = new SessionAudioRecorder(tempDir.resolve("session"), 4096, 16000);
+        recorder.close();
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> recorder.append(frame(10, 1)));
+    }
+
+    @Test
+    void readerShouldRejectDirectoryWithoutSegments() {
+        // Act & Assert
+        assertThrows(IOException.class, () -> new SessionRecordingReader(tempDir));
+    }
+}
@@ -0,0 +1,145 @@
+package com.bentham.voiceagent.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the SilenceSplitter class.
+ */
+class SilenceSplitterTest {
+
+    private static final int SAMPLE_RATE = 16000;
+
+    /**
+     * Builds speech-like audio: 800 ms tone bursts over faint noise, separated by 200 ms gaps,
+     * with a 600 ms pause after every fifth burst.
+     *
+     * @param pauses receives the start and end sample of each long pause
+     */
+    private static byte[] speech(int words, List<int[]> pauses) {
+        Random random = new Random(42);
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        int position = 0;
+        for (int word = 0; word < words; word++) {
+            position += write(pcm, random, 800, 0.3);
+            int gapMs = (word + 1) % 5 == 0 ? 600 : 200;
+            int gapStart = position;
+            position += write(pcm, random, gapMs, 0.0);
+            if (gapMs == 600) {
+                pauses.add(new int[] {gapStart, position});
+            }
+        }
+        return pcm.toByteArray();
+    }
+
+    private static int write(ByteArrayOutputStream pcm, Random random, int ms, double amplitude) {
+        int samples = SAMPLE_RATE * ms / 1000;
+        for (int i = 0; i < samples; i++) {
+            double value = amplitude * Math.sin(2 * Math.PI * 220 * i / SAMPLE_RATE)
+                    + 0.001 * random.nextGaussian();
+            short sample = (short) Math.round(value * 32767);
+            pcm.write(sample & 0xff);
+            pcm.write((sample >> 8) & 0xff);
+        }
+        return samples;
+    }
+
+    private static void assertContiguous(List<SilenceSplitter.Segment> segments, int totalSamples, int overlapSamples) {
+        assertEquals(0, segments.get(0).getOwnedStartSample());
+        assertEquals(totalSamples, segments.get(segments.size() - 1).getOwnedEndSample());
+        for (int i = 0; i < segments.size(); i++) {
+            SilenceSplitter.Segment segment = segments.get(i);
+            assertEquals(i, segment.getIndex());
+            assertEquals(Math.max(0, segment.getOwnedStartSample() - overlapSamples), segment.getStartSample());
+            assertEquals(Math.min(totalSamples, segment.getOwnedEndSample() + overlapSamples), segment.getEndSample());
+            if (i > 0) {
+                assertEquals(segments.get(i - 1).getOwnedEndSample(), segment.getOwnedStartSample());
+            }
+        }
+    }
+
+    @Test
+    void cutsShouldFallInPausesAndSegmentsShouldOverlap() {
+        // Arrange
+        List<int[]> pauses = new ArrayList<>();
+        byte[] pcm = speech(40, pauses);
+        SilenceSplitter splitter = new SilenceSplitter(SAMPLE_RATE, 8000, 12000, 300, 10, 500);
+
+        // Act
+        List<SilenceSplitter.Segment> segments = splitter.split(pcm);
+
+        // Assert
+        assertTrue(segments.size() >= 4, "40 s of speech should make several 8 s segments");
+        assertContiguous(segments, pcm.length / 2, SAMPLE_RATE / 2);
+        for (SilenceSplitter.Segment segment : segments.subList(1, segments.size())) {
+            int cut = segment.getOwnedStartSample();
+            assertTrue(pauses.stream().anyMatch(pause -> cut > pause[0] && cut < pause[1]),
+                    "Cut at " + cut + " should be inside a long pause");
+        }
+        for (SilenceSplitter.Segment segment : segments) {
+            assertTrue(segment.getOwnedEndSample() - segment.getOwnedStartSample() <= 12 * SAMPLE_RATE);
+        }
+    }
+
+    @Test
+    void speechWithoutPausesShouldBeCutAtTheTargetLength() {
+        // Arrange
+        ByteArrayOutputStream tone = new ByteArrayOutputStream();
+        write(tone, new Random(7), 30000, 0.3);
+        byte[] pcm = tone.toByteArray();
+        SilenceSplitter splitter = new SilenceSplitter(SAMPLE_RATE, 8000, 12000, 300, 10, 500);
+
+        // Act
+        List<SilenceSplitter.Segment> segments = splitter.split(pcm);
+
+        // Assert
+        assertContiguous(segments, SAMPLE_RATE * 30, SAMPLE_RATE / 2);
+        assertEquals(8 * SAMPLE_RATE, segments.get(1).getOwnedStartSample());
+        assertEquals(16 * SAMPLE_RATE, segments.get(2).getOwnedStartSample());
+    }
+
+    @Test
+    void audioNoLongerThanTheMaximumShouldBeOneSegment() {
+        // Arrange
+        byte[] pcm = speech(8, new ArrayList<>());
+        SilenceSplitter splitter = new SilenceSplitter(SAMPLE_RATE, 8000, 12000, 300, 10, 500);
+
+        // Act
+        List<SilenceSplitter.Segment> segments = splitter.split(pcm);
+
+        // Assert
+        assertEquals(1, segments.size());
+        assertEquals(0, segments.get(0).getStartSample());
+        assertEquals(pcm.length / 2, segments.get(0).getEndSample());
+        assertArrayEquals(pcm, segments.get(0).audio(pcm));
+    }
+
+    @Test
+    void meterShouldGiveTheSameSegmentsWhateverPiecesTheAudioArrivesIn() {
+        // Arrange
+        byte[] pcm = speech(40, new ArrayList<>());
+        SilenceSplitter splitter = new SilenceSplitter(SAMPLE_RATE, 8000, 12000, 300, 10, 500);
+        SilenceSplitter.LevelMeter meter = splitter.meter();
+
+        // Act: odd-sized pieces, which split samples between them
+        for (int offset = 0; offset < pcm.length; offset += 4097) {
+            meter.write(pcm, offset, Math.min(4097, pcm.length - offset));
+        }
+        List<SilenceSplitter.Segment> streamed = splitter.split(meter);
+        List<SilenceSplitter.Segment> whole = splitter.split(pcm);
+
+        // Assert
+        assertEquals(pcm.length / 2, meter.getSamples());
+        assertEquals(whole.size(), streamed.size());
+        for (int i = 0; i < whole.size(); i++) {
+            assertEquals(whole.get(i).getOwnedStartSample(), streamed.get(i).getOwnedStartSample());
+            assertEquals(whole.get(i).getEndSample(), streamed.get(i).getEndSample());
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.SpeechStreamingConfig;
+import com.bentham.voiceagent.model.SpeechFormat;
+import com.bentham.voiceagent.service.SpeechSynthesisService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the SpeechStreamingService class.
+ */
+class SpeechStreamingServiceTest {
+
+    private FakeSpeechSynthesisService synthesis;
+    private SimpleMeterRegistry meterRegistry;
+    private SpeechStreamingService service;
+
+    /**
+     * Records each request and answers it with the next queued stream, or the text's bytes.
+     */
+    private static class FakeSpeechSynthesisService implements SpeechSynthesisService {
+
+        final List<String> formats = new CopyOnWriteArrayList<>();
+        final BlockingQueue<CompletableFuture<InputStream>> queued = new LinkedBlockingQueue<>();
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeech(String text) {
+            return synthesizeSpeech(text, "Joanna", "mp3");
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId) {
+            return synthesizeSpeech(text, voiceId, "mp3");
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId, String outputFormat) {
+            formats.add(outputFormat);
+            CompletableFuture<InputStream> next = queued.poll();
+            return next != null ? next : CompletableFuture.completedFuture(new ByteArrayInputStream(text.getBytes()));
+        }
+
+        @Override
+        public CompletableFuture<String[]> getAvailableVoices() {
+            return CompletableFuture.completedFuture(new String[] {"Joanna"});
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml) {
+            return synthesizeSpeech(ssml);
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml, String voiceId) {
+            return synthesizeSpeech(ssml, voiceId);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        synthesis = new FakeSpeechSynthesisService();
+        meterRegistry = new SimpleMeterRegistry();
+        service = new SpeechStreamingService(synthesis, config(4, 16), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private static SpeechStreamingConfig config(int chunkBytes, int maxCachedClipBytes) {
+        return new SpeechStreamingConfig() {
+            @Override
+            public Integer getChunkBytes() {
+                return chunkBytes;
+            }
+
+            @Override
+            public Integer getClipCacheSize() {
+                return 8;
+            }
+
+            @Override
+            public Integer getMaxCachedClipBytes() {
+                return maxCachedClipBytes;
+            }
+        };
+    }
+
+    @Test
+    void streamShouldSendEachChunkAsItArrives() throws Exception {
+        // Arrange
+        PipedOutputStream polly = new PipedOutputStream();
+        synthesis.queued.add(CompletableFuture.completedFuture(new PipedInputStream(polly, 64)));
+        BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+
+        // Act
+        CompletableFuture<SpeechStreamingService.Delivery> delivery =
+                service.stream("Hello", "Joanna", SpeechFormat.PCM, chunks::add);
+        polly.write(new byte[] {1, 2});
+        polly.flush();
+
+        // Assert
+        assertArrayEquals(new byte[] {1, 2}, chunks.poll(5, TimeUnit.SECONDS));
+        assertFalse(delivery.isDone());
+        polly.write(new byte[] {3});
+        polly.close();
+        assertEquals(3, delivery.get(5, TimeUnit.SECONDS).getBytes());
+        assertEquals(List.of("pcm"), synthesis.formats);
+    }
+
+    @Test
+    void deliveredClipShouldBeServedFromCache() throws Exception {
+        // Arrange
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+
+        // Act
+        SpeechStreamingService.Delivery streamed =
+                service.stream("Hello there", "Joanna", SpeechFormat.MP3, first::writeBytes).get(5, TimeUnit.SECONDS);
+        SpeechStreamingService.Delivery cached =
+                service.stream("Hello there", "Joanna", SpeechFormat.MP3, second::writeBytes).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertFalse(streamed.isCached());
+        assertTrue(cached.isCached());
+        assertEquals(streamed.getClipId(), cached.getClipId());
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+        assertEquals(1, synthesis.formats.size());
+        assertNotNull(service.getCachedClip(streamed.getClipId()));
+    }
+
+    @Test
+    void clipIdShouldDependOnFormatAndVoice() {
+        String mp3 = SpeechStreamingService.clipId("Hello", "Joanna", SpeechFormat.MP3);
+
+        assertNotEquals(mp3, SpeechStreamingService.clipId("Hello", "Joanna", SpeechFormat.PCM));
+        assertNotEquals(mp3, SpeechStreamingService.clipId("Hello", "Matthew", SpeechFormat.MP3));
+        assertEquals(mp3, SpeechStreamingService.clipId("Hello", "Joanna", SpeechFormat.MP3));
+    }
+
+    @Test
+    void clipLargerThanLimitShouldNotBeCached() throws Exception {
+        // Act
+        SpeechStreamingService.Delivery delivery = service.stream("This clip is longer than sixteen bytes",
+                "Joanna", SpeechFormat.MP3, chunk -> { }).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertNull(service.getCachedClip(delivery.getClipId()));
+    }
+
+    @Test
+    void cancellingDeliveryShouldCloseSpeechStream() throws Exception {
+        // Arrange
+        PipedOutputStream polly = new PipedOutputStream();
+        PipedInputStream speech = new PipedInputStream(polly, 64) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                polly.close();
+            }
+        };
+        synthesis.queued.add(CompletableFuture.completedFuture(speech));
+        BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+        CompletableFuture<SpeechStreamingService.Delivery> delivery =
+                service.stream("Hello", "Joanna", SpeechFormat.MP3, chunks::add);
+        polly.write(1);
+        polly.flush();
+        assertNotNull(chunks.poll(5, TimeUnit.SECONDS));
+
+        // Act
+        delivery.cancel(true);
+
+        // Assert
+        assertThrows(IOException.class, () -> polly.write(2));
+        assertEquals(1.0, meterRegistry.counter("voice.speech.deliveries", "outcome", "cancelled").count());
+    }
+
+    @Test
+    void cancellingDeliveryBeforeSynthesisShouldCancelRequest() {
+        // Arrange
+        CompletableFuture<InputStream> request = new CompletableFuture<>();
+        synthesis.queued.add(request);
+
+        // Act
+        service.stream("Hello", "Joanna", SpeechFormat.MP3, chunk -> { }).cancel(true);
+
+        // Assert
+        assertTrue(request.isCancelled());
+    }
+
+    @Test
+    void sinkFailureShouldFailDeliveryAndSkipCache() {
+        // Act
+        CompletableFuture<SpeechStreamingService.Delivery> delivery = service.stream("Hi", "Joanna",
+                SpeechFormat.MP3, chunk -> {
+                    throw new IOException("client went away");
+                });
+
+        // Assert
+        ExecutionException error = assertThrows(ExecutionException.class, () -> delivery.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, error.getCause());
+        assertNull(service.getCachedClip(SpeechStreamingService.clipId("Hi", "Joanna", SpeechFormat.MP3)));
+    }
+}
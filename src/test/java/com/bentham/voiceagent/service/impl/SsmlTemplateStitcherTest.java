@@ -0,0 +1,222 @@
+package com.bentham.voiceagent.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.bentham.voiceagent.util.SyntheticMp3.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the SsmlTemplateStitcher class.
+ */
+class SsmlTemplateStitcherTest {
+
+    private static final String TEMPLATE =
+            "<speak><static>Your order number is</static> <say-as interpret-as=\"digits\">4521</say-as>"
+                    + "<static>. Is there anything else?</static></speak>";
+
+    /**
+     * Synthesizer that returns each segment's SSML as its audio and records the requests.
+     */
+    private static class RecordingSynthesizer implements SsmlTemplateStitcher.SegmentSynthesizer {
+
+        private final List<String> requests = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableFuture<byte[]> synthesize(String ssml, String voiceId) {
+            requests.add(ssml);
+            return CompletableFuture.completedFuture(ssml.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String read(CompletableFuture<InputStream> speech) throws IOException {
+        try (InputStream stream = speech.join()) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void isTemplateShouldRequireStaticElementInsideSpeak() {
+        assertTrue(SsmlTemplateStitcher.isTemplate(TEMPLATE));
+        assertFalse(SsmlTemplateStitcher.isTemplate("<speak>Hello</speak>"));
+        assertFalse(SsmlTemplateStitcher.isTemplate("<static>Hello</static>"));
+    }
+
+    @Test
+    void flattenShouldRemoveStaticMarkers() {
+        assertEquals("<speak>Your order number is <say-as interpret-as=\"digits\">4521</say-as>"
+                + ". Is there anything else?</speak>", SsmlTemplateStitcher.flatten(TEMPLATE));
+    }
+
+    @Test
+    void synthesizeShouldJoinSegmentsInOrder() throws IOException {
+        // Arrange
+        SsmlTemplateStitcher stitcher = new SsmlTemplateStitcher(16);
+        RecordingSynthesizer synthesizer = new RecordingSynthesizer();
+
+        // Act
+        String audio = read(stitcher.synthesize(TEMPLATE, "Joanna", "pcm", synthesizer));
+
+        // Assert
+        assertEquals("<speak>Your order number is</speak>"
+                + "<speak> <say-as interpret-as=\"digits\">4521</say-as></speak>"
+                + "<speak>. Is there anything else?</speak>", audio);
+    }
+
+    @Test
+    void synthesizeShouldKeepSpeakAttributesOnEverySegment() throws IOException {
+        // Arrange
+        SsmlTemplateStitcher stitcher = new SsmlTemplateStitcher(16);
+        RecordingSynthesizer synthesizer = new RecordingSynthesizer();
+
+        // Act
+        read(stitcher.synthesize("<speak xml:lang=\"en-GB\"><static>Hello</static> Sam</speak>",
+                "Amy", "pcm", synthesizer));
+
+        // Assert
+        assertEquals(List.of("<speak xml:lang=\"en-GB\">Hello</speak>", "<speak xml:lang=\"en-GB\"> Sam</speak>"),
+                synthesizer.requests);
+    }
+
+    @Test
+    void staticSegmentsShouldBeSynthesizedOncePerVoice() throws IOException {
+        // Arrange
+        SsmlTemplateStitcher stitcher = new SsmlTemplateStitcher(16);
+        RecordingSynthesizer synthesizer = new RecordingSynthesizer();
+
+        // Act
+        read(stitcher.synthesize(TEMPLATE, "Joanna", "pcm", synthesizer));
+        read(stitcher.synthesize(TEMPLATE.replace("4521", "9902"), "Joanna", "pcm", synthesizer));
+        read(stitcher.synthesize(TEMPLATE, "Matthew", "pcm", synthesizer));
+
+        // Assert
+        assertEquals(3 + 1 + 3, synthesizer.requests.size());
+        assertEquals(4, stitcher.getCachedSegmentCount());
+    }
+
+    @Test
+    void cacheShouldEvictLeastRecentlyUsedSegments() throws IOException {
+        // Arrange
+        SsmlTemplateStitcher stitcher = new SsmlTemplateStitcher(1);
+        RecordingSynthesizer synthesizer = new RecordingSynthesizer();
+
+        // Act
+        read(stitcher.synthesize(TEMPLATE, "Joanna", "pcm", synthesizer));
+        read(stitcher.synthesize(TEMPLATE, "Joanna", "pcm", synthesizer));
+
+        // Assert
+        assertEquals(1, stitcher.getCachedSegmentCount());
+        assertEquals(6, synthesizer.requests.size());
+    }
+
+    @Test
+    void prerenderShouldCacheOnlyStaticSegments() throws IOException {
+        // Arrange
+        SsmlTemplateStitcher stitcher = new SsmlTemplateStitcher(16);
+        RecordingSynthesizer synthesizer = new RecordingSynthesizer();
+
+        // Act
+        stitcher.prerender(TEMPLATE, "Joanna", "pcm", synthesizer).join();
+        read(stitcher.synthesize(TEMPLATE, "Joanna", "pcm", synthesizer));
+
+        // Assert
+        assertEquals(3, synthesizer.requests.size());
+        assertTrue(synthesizer.requests.get(2).contains("4521"));
+    }
+
+    @Test
+    void failedStaticSegmentShouldNotBeCached() throws IOException {
+        // Arrange
+        SsmlTemplateStitcher stitcher = new SsmlTemplateStitcher(16);
+        AtomicInteger calls = new AtomicInteger();
+        SsmlTemplateStitcher.SegmentSynthesizer flaky = (ssml, voiceId) -> calls.incrementAndGet() == 1
+                ? CompletableFuture.failedFuture(new IllegalStateException("throttled"))
+                : CompletableFuture.completedFuture(ssml.getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        CompletableFuture<InputStream> failed = stitcher.synthesize(TEMPLATE, "Joanna", "pcm", flaky);
+        String audio = read(stitcher.synthesize(TEMPLATE, "Joanna", "pcm", flaky));
+
+        // Assert
+        assertTrue(failed.isCompletedExceptionally());
+        assertTrue(audio.startsWith("<speak>Your order number is</speak>"));
+    }
+
+    @Test
+    void streamShouldBeAvailableBeforeLaterSegmentsAreSynthesized() throws IOException {
+        // Arrange
+        SsmlTemplateStitcher stitcher = new SsmlTemplateStitcher(16);
+        Map<String, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
+        SsmlTemplateStitcher.SegmentSynthesizer slowDynamic = (ssml, voiceId) -> ssml.contains("4521")
+                ? pending.computeIfAbsent(ssml, key -> new CompletableFuture<>())
+                : CompletableFuture.completedFuture(ssml.getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        CompletableFuture<InputStream> speech = stitcher.synthesize(TEMPLATE, "Joanna", "pcm", slowDynamic);
+
+        // Assert
+        assertTrue(speech.isDone());
+        InputStream stream = speech.join();
+        byte[] first = new byte["<speak>Your order number is</speak>".length()];
+        assertEquals(first.length, stream.readNBytes(first, 0, first.length));
+        stream.close();
+        assertTrue(pending.values().iterator().next().isCancelled());
+    }
+
+    @Test
+    void failedDynamicSegmentShouldFailRead() {
+        // Arrange
+        SsmlTemplateStitcher stitcher = new SsmlTemplateStitcher(16);
+        SsmlTemplateStitcher.SegmentSynthesizer failingDynamic = (ssml, voiceId) -> ssml.contains("4521")
+                ? CompletableFuture.failedFuture(new IllegalStateException("throttled"))
+                : CompletableFuture.completedFuture(ssml.getBytes(StandardCharsets.UTF_8));
+
+        // Act & Assert
+        InputStream stream = stitcher.synthesize(TEMPLATE, "Joanna", "pcm", failingDynamic).join();
+        IOException error = assertThrows(IOException.class, stream::readAllBytes);
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+    }
+
+    @Test
+    void mp3SegmentsShouldBeJoinedAtFrameBoundaries() throws IOException {
+        // Arrange
+        SsmlTemplateStitcher stitcher = new SsmlTemplateStitcher(16);
+        Map<String, byte[]> audio = Map.of(
+                "<speak>Your order number is</speak>", concat(xingFrame(MONO_24K), clip(MONO_24K, 3, 0x11)),
+                "<speak> <say-as interpret-as=\"digits\">4521</say-as></speak>", clip(MONO_24K, 2, 0x22),
+                "<speak>. Is there anything else?</speak>", concat(clip(MONO_24K, 4, 0x33), Arrays.copyOf(frame(MONO_24K, 0x44), 40)));
+        SsmlTemplateStitcher.SegmentSynthesizer synthesizer =
+                (ssml, voiceId) -> CompletableFuture.completedFuture(audio.get(ssml));
+
+        // Act
+        byte[] joined;
+        try (InputStream stream = stitcher.synthesize(TEMPLATE, "Joanna", "mp3", synthesizer).join()) {
+            joined = stream.readAllBytes();
+        }
+
+        // Assert
+        assertArrayEquals(concat(clip(MONO_24K, 3, 0x11), clip(MONO_24K, 2, 0x22), clip(MONO_24K, 4, 0x33)), joined);
+    }
+
+    @Test
+    void mp3SegmentsWithDifferentFormatsShouldFailRead() {
+        // Arrange
+        SsmlTemplateStitcher stitcher = new SsmlTemplateStitcher(16);
+        SsmlTemplateStitcher.SegmentSynthesizer mixed = (ssml, voiceId) -> CompletableFuture.completedFuture(
+                ssml.contains("4521") ? clip(MONO_22K, 2, 0x22) : clip(MONO_24K, 2, 0x11));
+
+        // Act & Assert
+        InputStream stream = stitcher.synthesize(TEMPLATE, "Joanna", "mp3", mixed).join();
+        assertThrows(IOException.class, stream::readAllBytes);
+    }
+}
@@ -0,0 +1,116 @@
+package com.bentham.voiceagent.service.impl;
+
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.model.ContentBlock;
+import software.amazon.awssdk.services.bedrockruntime.model.ConversationRole;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseOutput;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.Message;
+import software.amazon.awssdk.services.bedrockruntime.model.SystemContentBlock;
+import software.amazon.awssdk.services.bedrockruntime.model.TokenUsage;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Local stand-in for the Bedrock Converse API that simulates prompt caching.
+ *
+ * <p>Prompt text before each cache point is remembered once seen. A later request whose
+ * prefix up to a cache point was seen before reads it from the cache; newly marked prefixes
+ * are written to it; the rest is ordinary input. Tokens are counted as four characters each.
+ * Prefixes shorter than the minimum are not cached, as with the real service.</p>
+ */
+class StubConverseEndpoint implements BedrockRuntimeAsyncClient {
+
+    final List<ConverseRequest> requests = new CopyOnWriteArrayList<>();
+    private final Set<String> cache = ConcurrentHashMap.newKeySet();
+    private final int minCachedTokens;
+    volatile boolean cachingSupported = true;
+
+    StubConverseEndpoint(int minCachedTokens) {
+        this.minCachedTokens = minCachedTokens;
+    }
+
+    @Override
+    public CompletableFuture<ConverseResponse> converse(ConverseRequest request) {
+        requests.add(request);
+        StringBuilder prefix = new StringBuilder(request.modelId()).append('\u0000');
+        int cacheRead = 0;
+        int cacheWrite = 0;
+        int counted = 0;
+        for (SystemContentBlock block : request.system()) {
+            if (block.cachePoint() != null) {
+                int[] usage = cachePoint(prefix.toString(), tokens(prefix) - counted);
+                cacheRead += usage[0];
+                cacheWrite += usage[1];
+                counted = tokens(prefix);
+            } else {
+                prefix.append(block.text()).append('\u0000');
+            }
+        }
+        for (Message message : request.messages()) {
+            for (ContentBlock block : message.content()) {
+                if (block.cachePoint() != null) {
+                    int[] usage = cachePoint(prefix.toString(), tokens(prefix) - counted);
+                    cacheRead += usage[0];
+                    cacheWrite += usage[1];
+                    counted = tokens(prefix);
+                } else {
+                    prefix.append(block.text()).append('\u0000');
+                }
+            }
+        }
+        int input = tokens(prefix) - cacheRead - cacheWrite;
+        return CompletableFuture.completedFuture(ConverseResponse.builder()
+                .output(ConverseOutput.builder()
+                        .message(Message.builder()
+                                .role(ConversationRole.ASSISTANT)
+                                .content(ContentBlock.fromText("Answer " + requests.size()))
+                                .build())
+                        .build())
+                .usage(TokenUsage.builder()
+                        .inputTokens(input)
+                        .cacheReadInputTokens(cacheRead)
+                        .cacheWriteInputTokens(cacheWrite)
+                        .outputTokens(5)
+                        .totalTokens(input + cacheRead + cacheWrite + 5)
+                        .build())
+                .build());
+    }
+
+    /**
+     * Looks up or stores a prefix.
+     *
+     * @return the tokens read from and written to the cache for the segment ending at this point
+     */
+    private int[] cachePoint(String prefix, int segmentTokens) {
+        if (!cachingSupported || prefix.length() / 4 < minCachedTokens) {
+            return new int[] {0, 0};
+        }
+        return cache.add(prefix) ? new int[] {0, segmentTokens} : new int[] {segmentTokens, 0};
+    }
+
+    private static int tokens(CharSequence text) {
+        return text.length() / 4;
+    }
+
+    /**
+     * Forgets every cached prefix, as when the cache entries expire.
+     */
+    void evictAll() {
+        cache.clear();
+    }
+
+    @Override
+    public String serviceName() {
+        return "bedrock-runtime";
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,167 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.TranscribeConfig;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TranscribeStreamPool class.
+ */
+class TranscribeStreamPoolTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<TranscriptionResult> results = new CopyOnWriteArrayList<>();
+    private TranscribeStreamPool pool;
+
+    /**
+     * Stands in for Transcribe: starts reading audio once the gate opens, and answers each frame
+     * with a final result naming its size.
+     */
+    private static class FakeUpstream extends TranscribeStreamingUpstream {
+
+        private final Sinks.Empty<Void> gate = Sinks.empty();
+
+        FakeUpstream(boolean open) {
+            super(null, null);
+            if (open) {
+                gate.tryEmitEmpty();
+            }
+        }
+
+        void open() {
+            gate.tryEmitEmpty();
+        }
+
+        @Override
+        public Flux<TranscriptionResult> transcribe(String sessionId, Flux<byte[]> audio) {
+            return gate.asMono().thenMany(audio.map(frame ->
+                    TranscriptionResult.final_(sessionId, frame.length + " bytes", 0.9)));
+        }
+    }
+
+    private static TranscribeConfig config(int minIdle, int maxIdle, int maxIdleAgeMs) {
+        return new TranscribeConfig() {
+            @Override
+            public Boolean getPoolEnabled() {
+                return true;
+            }
+
+            @Override
+            public Integer getPoolMinIdle() {
+                return minIdle;
+            }
+
+            @Override
+            public Integer getPoolMaxIdle() {
+                return maxIdle;
+            }
+
+            @Override
+            public Integer getPoolMaxIdleAgeMs() {
+                return maxIdleAgeMs;
+            }
+
+            @Override
+            public Integer getPoolRefillIntervalMs() {
+                // Long enough that the tests drive every refill
+                return 3600000;
+            }
+
+            @Override
+            public Integer getPoolStopTimeoutMs() {
+                return 5000;
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void audioSentBeforeTheStreamIsReadyShouldBeSentInOrderOnceItIs() {
+        // Arrange
+        FakeUpstream upstream = new FakeUpstream(false);
+        pool = new TranscribeStreamPool(upstream, config(0, 4, 10000), meterRegistry);
+        StreamingSession session = pool.claim("session-1", results::add);
+
+        // Act
+        session.addAudioChunk(new byte[320]);
+        session.addAudioChunk(new byte[640]);
+        session.addAudioChunk(new byte[960]);
+        upstream.open();
+        session.stopStreaming().join();
+
+        // Assert
+        assertEquals(3, results.size());
+        assertEquals("320 bytes", results.get(0).getTranscript());
+        assertEquals("640 bytes", results.get(1).getTranscript());
+        assertEquals("960 bytes", results.get(2).getTranscript());
+        assertEquals("session-1", results.get(2).getSessionId());
+        assertEquals("960 bytes", session.getLatestTranscription());
+        assertEquals(1, meterRegistry.counter("transcribe.pool.claims", "stream", "cold").count());
+        assertEquals(1, meterRegistry.timer("transcribe.session.first.byte", "stream", "cold").count());
+    }
+
+    @Test
+    void sessionsShouldClaimWarmStreamsOpenedByTheRefill() {
+        // Arrange
+        pool = new TranscribeStreamPool(new FakeUpstream(true), config(2, 4, 10000), meterRegistry);
+        pool.refill();
+
+        // Act
+        StreamingSession session = pool.claim("session-1", results::add);
+        session.addAudioChunk(new byte[320]);
+        session.stopStreaming().join();
+
+        // Assert
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(1, meterRegistry.counter("transcribe.pool.claims", "stream", "warm").count());
+        assertEquals(1, results.size());
+        assertEquals("session-1", results.get(0).getSessionId());
+    }
+
+    @Test
+    void expiredStreamsShouldBeReplaced() {
+        // Arrange
+        pool = new TranscribeStreamPool(new FakeUpstream(true), config(2, 4, 0), meterRegistry);
+        pool.refill();
+
+        // Act
+        pool.refill();
+
+        // Assert
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(2, meterRegistry.counter("transcribe.pool.expired").count());
+    }
+
+    @Test
+    void targetShouldFollowTheArrivalRateWithinTheLimits() {
+        // Arrange
+        pool = new TranscribeStreamPool(new FakeUpstream(true), config(0, 8, 10000), meterRegistry);
+        pool.refill();
+        assertEquals(0, pool.getTargetSize());
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            pool.claim("session-" + i, results::add);
+        }
+        pool.refill();
+
+        // Assert
+        assertEquals(8, pool.getTargetSize());
+        assertEquals(8, pool.getIdleCount());
+    }
+}
@@ -0,0 +1,210 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.TranscribeConfig;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.transcribestreaming.TranscribeStreamingAsyncClient;
+import software.amazon.awssdk.services.transcribestreaming.TranscribeStreamingServiceClientConfiguration;
+import software.amazon.awssdk.services.transcribestreaming.model.Alternative;
+import software.amazon.awssdk.services.transcribestreaming.model.AudioEvent;
+import software.amazon.awssdk.services.transcribestreaming.model.AudioStream;
+import software.amazon.awssdk.services.transcribestreaming.model.Item;
+import software.amazon.awssdk.services.transcribestreaming.model.Result;
+import software.amazon.awssdk.services.transcribestreaming.model.StartStreamTranscriptionRequest;
+import software.amazon.awssdk.services.transcribestreaming.model.StartStreamTranscriptionResponse;
+import software.amazon.awssdk.services.transcribestreaming.model.StartStreamTranscriptionResponseHandler;
+import software.amazon.awssdk.services.transcribestreaming.model.Transcript;
+import software.amazon.awssdk.services.transcribestreaming.model.TranscriptEvent;
+import software.amazon.awssdk.services.transcribestreaming.model.TranscriptResultStream;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TranscribeStreamingUpstream class.
+ */
+class TranscribeStreamingUpstreamTest {
+
+    /**
+     * Stands in for Transcribe: requests a fixed number of audio frames and answers each with a
+     * partial and a final result.
+     */
+    private static class FakeStreamingClient implements TranscribeStreamingAsyncClient {
+
+        private final long framesToRequest;
+        CompletableFuture<Void> call;
+        StartStreamTranscriptionRequest request;
+
+        FakeStreamingClient(long framesToRequest) {
+            this.framesToRequest = framesToRequest;
+        }
+
+        @Override
+        public CompletableFuture<Void> startStreamTranscription(StartStreamTranscriptionRequest request,
+                                                                Publisher<AudioStream> audio,
+                                                                StartStreamTranscriptionResponseHandler handler) {
+            this.request = request;
+            call = new CompletableFuture<>();
+            Sinks.Many<TranscriptResultStream> events = Sinks.many().unicast().onBackpressureBuffer();
+            handler.responseReceived(StartStreamTranscriptionResponse.builder().sessionId("aws-session").build());
+            handler.onEventStream(SdkPublisher.adapt(events.asFlux()));
+            audio.subscribe(new Subscriber<>() {
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    subscription.request(framesToRequest);
+                }
+
+                @Override
+                public void onNext(AudioStream frame) {
+                    int bytes = ((AudioEvent) frame).audioChunk().asByteArray().length;
+                    events.tryEmitNext(event(true, bytes + " bytes"));
+                    events.tryEmitNext(event(false, bytes + " bytes", 0.8, 1.0));
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    events.tryEmitError(throwable);
+                    call.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    events.tryEmitComplete();
+                    handler.complete();
+                    call.complete(null);
+                }
+            });
+            return call;
+        }
+
+        private static TranscriptEvent event(boolean partial, String text, double... confidences) {
+            Item[] items = new Item[confidences.length];
+            for (int i = 0; i < confidences.length; i++) {
+                items[i] = Item.builder().content("word").confidence(confidences[i]).build();
+            }
+            return TranscriptEvent.builder()
+                    .transcript(Transcript.builder()
+                            .results(Result.builder()
+                                    .isPartial(partial)
+                                    .alternatives(Alternative.builder().transcript(text).items(items).build())
+                                    .build())
+                            .build())
+                    .build();
+        }
+
+        @Override
+        public TranscribeStreamingServiceClientConfiguration serviceClientConfiguration() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String serviceName() {
+            return "transcribe";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static TranscribeConfig config(boolean partialResults) {
+        return new TranscribeConfig() {
+            @Override
+            public String getLanguageCode() {
+                return "en-US";
+            }
+
+            @Override
+            public Integer getSampleRate() {
+                return 16000;
+            }
+
+            @Override
+            public Boolean getEnablePartialResults() {
+                return partialResults;
+            }
+        };
+    }
+
+    @Test
+    void resultsShouldBeMappedWithTheSessionIdAndAverageConfidence() {
+        // Arrange
+        FakeStreamingClient client = new FakeStreamingClient(Long.MAX_VALUE);
+        TranscribeStreamingUpstream upstream = new TranscribeStreamingUpstream(client, config(true));
+
+        // Act
+        List<TranscriptionResult> results = upstream.transcribe("session-1", Flux.just(new byte[320]))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        // Assert
+        assertNotNull(results);
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isPartial());
+        assertFalse(results.get(1).isPartial());
+        assertEquals("320 bytes", results.get(1).getTranscript());
+        assertEquals("session-1", results.get(1).getSessionId());
+        assertEquals(0.9, results.get(1).getConfidence(), 1e-9);
+        assertEquals(16000, client.request.mediaSampleRateHertz());
+    }
+
+    @Test
+    void partialResultsShouldBeDroppedWhenDisabled() {
+        // Arrange
+        TranscribeStreamingUpstream upstream = new TranscribeStreamingUpstream(
+                new FakeStreamingClient(Long.MAX_VALUE), config(false));
+
+        // Act
+        List<TranscriptionResult> results = upstream.transcribe("session-1", Flux.just(new byte[320], new byte[0]))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        // Assert
+        assertNotNull(results);
+        assertEquals(1, results.size());
+        assertFalse(results.get(0).isPartial());
+    }
+
+    @Test
+    void audioShouldOnlyBeRequestedAsFastAsTranscribeAsksForIt() {
+        // Arrange
+        FakeStreamingClient client = new FakeStreamingClient(3);
+        TranscribeStreamingUpstream upstream = new TranscribeStreamingUpstream(client, config(true));
+        AtomicLong requested = new AtomicLong();
+        Flux<byte[]> audio = Flux.range(0, 1000)
+                .map(i -> new byte[320])
+                .doOnRequest(requested::addAndGet);
+
+        // Act
+        Disposable subscription = upstream.transcribe("session-1", audio).subscribe();
+
+        // Assert
+        assertEquals(3, requested.get());
+        subscription.dispose();
+    }
+
+    @Test
+    void cancellingTheResultsShouldCancelTheCall() {
+        // Arrange
+        FakeStreamingClient client = new FakeStreamingClient(1);
+        TranscribeStreamingUpstream upstream = new TranscribeStreamingUpstream(client, config(true));
+
+        // Act
+        Disposable subscription = upstream.transcribe("session-1", Flux.never()).subscribe();
+        subscription.dispose();
+
+        // Assert
+        assertTrue(client.call.isCancelled());
+    }
+}
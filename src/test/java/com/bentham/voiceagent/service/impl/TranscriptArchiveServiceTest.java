@@ -0,0 +1,133 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.TranscriptArchiveConfig;
+import com.bentham.voiceagent.model.TranscriptSearchResult;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TranscriptArchiveService class.
+ */
+class TranscriptArchiveServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TranscriptArchiveService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    private TranscriptArchiveConfig config(boolean enabled) {
+        return new TranscriptArchiveConfig() {
+            @Override
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            @Override
+            public String getDirectory() {
+                return tempDir.toString();
+            }
+
+            @Override
+            public Integer getSegmentSizeBytes() {
+                return 1 << 20;
+            }
+
+            @Override
+            public Integer getQueueCapacity() {
+                return 100;
+            }
+
+            @Override
+            public Integer getFlushIntervalMs() {
+                return 50;
+            }
+        };
+    }
+
+    private TranscriptSearchResult awaitHits(String query, long expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        TranscriptSearchResult result = service.search(query, 10);
+        while (result.getTotalHits() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            result = service.search(query, 10);
+        }
+        return result;
+    }
+
+    @Test
+    void finalResultsShouldBeArchivedAndSearchable() throws Exception {
+        // Arrange
+        service = new TranscriptArchiveService(config(true), meterRegistry);
+
+        // Act
+        service.onResult(TranscriptionResult.final_("session-1", "I need to reset my password", 0.95));
+        service.onResult(TranscriptionResult.final_("session-2", "My password expired", 0.9));
+        TranscriptSearchResult result = awaitHits("password", 2);
+
+        // Assert
+        assertEquals(2, result.getTotalHits());
+        assertEquals("session-2", result.getHits().get(0).getSessionId());
+        assertEquals("My password expired", result.getHits().get(0).getTranscript());
+        assertEquals(2.0, meterRegistry.counter("voice.archive.ingested").count());
+    }
+
+    @Test
+    void partialAndBlankResultsShouldNotBeArchived() throws Exception {
+        // Arrange
+        service = new TranscriptArchiveService(config(true), meterRegistry);
+
+        // Act
+        service.onResult(TranscriptionResult.partial("session-1", "reset my"));
+        service.onResult(TranscriptionResult.final_("session-1", "  ", 0.5));
+        service.onResult(TranscriptionResult.final_("session-1", "reset my password", 0.95));
+        TranscriptSearchResult result = awaitHits("reset", 1);
+
+        // Assert
+        assertEquals(1, result.getTotalHits());
+        assertEquals("reset my password", result.getHits().get(0).getTranscript());
+    }
+
+    @Test
+    void archivedResultsShouldSurviveARestart() throws Exception {
+        // Arrange
+        service = new TranscriptArchiveService(config(true), meterRegistry);
+        service.onResult(TranscriptionResult.final_("session-1", "cancel my subscription", 0.9));
+        service.shutdown();
+
+        // Act
+        service = new TranscriptArchiveService(config(true), new SimpleMeterRegistry());
+        TranscriptSearchResult result = service.search("\"cancel my subscription\"", 10);
+
+        // Assert
+        assertEquals(1, result.getTotalHits());
+    }
+
+    @Test
+    void searchShouldBeRejectedWhenDisabledOrInvalid() throws IOException {
+        // Arrange
+        TranscriptArchiveService disabled = new TranscriptArchiveService(config(false), meterRegistry);
+        service = new TranscriptArchiveService(config(true), new SimpleMeterRegistry());
+
+        // Act & Assert
+        assertFalse(disabled.isEnabled());
+        assertThrows(IllegalStateException.class, () -> disabled.search("password", 10));
+        assertThrows(IllegalArgumentException.class, () -> service.search("!!!", 10));
+        assertThrows(IllegalArgumentException.class, () -> service.search("password", 0));
+    }
+}
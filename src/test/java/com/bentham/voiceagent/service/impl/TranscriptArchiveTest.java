@@ -0,0 +1,207 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.model.TranscriptHit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TranscriptArchive class and the segment log and index it is built on.
+ */
+class TranscriptArchiveTest {
+
+    private static final Instant NOW = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    @TempDir
+    Path tempDir;
+
+    private static void append(TranscriptArchive archive, String sessionId, String transcript) throws IOException {
+        archive.append(sessionId, transcript, 0.9, NOW);
+    }
+
+    private static List<String> transcripts(TranscriptArchive.Matches matches) {
+        return matches.getHits().stream().map(TranscriptHit::getTranscript).toList();
+    }
+
+    @Test
+    void tokenizeShouldLowerCaseWordsAndKeepInnerApostrophes() {
+        // Act
+        List<String> terms = TranscriptIndex.tokenize("I can't log in -- the customers' PIN, 1234!");
+
+        // Assert
+        assertEquals(List.of("i", "can't", "log", "in", "the", "customers", "pin", "1234"), terms);
+    }
+
+    @Test
+    void termSearchShouldReturnEveryUtteranceContainingAllTerms() throws IOException {
+        // Arrange
+        try (TranscriptArchive archive = TranscriptArchive.open(tempDir, 1 << 20)) {
+            append(archive, "s1", "I would like a refund");
+            append(archive, "s1", "The refund was for my account");
+            append(archive, "s2", "What is my account balance");
+
+            // Act
+            TranscriptArchive.Matches refund = archive.search(TranscriptQuery.parse("REFUND"), 10);
+            TranscriptArchive.Matches both = archive.search(TranscriptQuery.parse("refund account"), 10);
+            TranscriptArchive.Matches none = archive.search(TranscriptQuery.parse("refund password"), 10);
+
+            // Assert
+            assertEquals(2, refund.getTotal());
+            assertTrue(refund.isExact());
+            assertEquals(List.of("The refund was for my account"), transcripts(both));
+            assertEquals("s1", both.getHits().get(0).getSessionId());
+            assertEquals(NOW, both.getHits().get(0).getTimestamp());
+            assertEquals(0, none.getTotal());
+        }
+    }
+
+    @Test
+    void phraseSearchShouldRequireConsecutiveTerms() throws IOException {
+        // Arrange
+        try (TranscriptArchive archive = TranscriptArchive.open(tempDir, 1 << 20)) {
+            append(archive, "s1", "please check my account number");
+            append(archive, "s1", "the number on my account");
+
+            // Act
+            TranscriptArchive.Matches phrase = archive.search(TranscriptQuery.parse("\"account number\""), 10);
+            TranscriptArchive.Matches reversed = archive.search(TranscriptQuery.parse("\"number account\""), 10);
+
+            // Assert
+            assertEquals(List.of("please check my account number"), transcripts(phrase));
+            assertEquals(0, reversed.getTotal());
+        }
+    }
+
+    @Test
+    void searchShouldReturnNewestHitsFirstUpToTheLimit() throws IOException {
+        // Arrange
+        try (TranscriptArchive archive = TranscriptArchive.open(tempDir, 256)) {
+            for (int i = 0; i < 20; i++) {
+                append(archive, "s" + i, "hello number " + i);
+            }
+
+            // Act
+            TranscriptArchive.Matches matches = archive.search(TranscriptQuery.parse("hello"), 3);
+
+            // Assert
+            assertTrue(archive.getSegmentCount() > 1);
+            assertEquals(3, matches.getTotal());
+            assertFalse(matches.isExact());
+            assertEquals(List.of("hello number 19", "hello number 18", "hello number 17"), transcripts(matches));
+        }
+    }
+
+    @Test
+    void sealedAndActiveSegmentsShouldBeSearchableAfterReopening() throws IOException {
+        // Arrange
+        try (TranscriptArchive archive = TranscriptArchive.open(tempDir, 200)) {
+            for (int i = 0; i < 10; i++) {
+                append(archive, "s" + i, "order " + i + " was delivered late");
+            }
+        }
+
+        // Act
+        try (TranscriptArchive reopened = TranscriptArchive.open(tempDir, 200)) {
+            TranscriptArchive.Matches matches = reopened.search(TranscriptQuery.parse("\"delivered late\""), 100);
+            append(reopened, "s10", "order 10 was delivered late");
+
+            // Assert
+            assertTrue(Files.exists(tempDir.resolve("segment-000000.idx")));
+            assertEquals(10, matches.getTotal());
+            assertEquals(10, reopened.getUtteranceCount() - 1);
+            assertEquals(11, reopened.search(TranscriptQuery.parse("late"), 100).getTotal());
+        }
+    }
+
+    @Test
+    void sealedSegmentsShouldMatchAcrossPostingBlocks() throws IOException {
+        // Arrange
+        try (TranscriptArchive archive = TranscriptArchive.open(tempDir, 1 << 14)) {
+            for (int i = 0; i < 1000; i++) {
+                append(archive, "s" + i, i % 7 == 0 ? "my account number is " + i : "number " + i + " of my account");
+            }
+
+            // Act
+            TranscriptArchive.Matches phrase = archive.search(TranscriptQuery.parse("\"account number\""), 1000);
+            TranscriptArchive.Matches terms = archive.search(TranscriptQuery.parse("account number"), 1000);
+            TranscriptArchive.Matches rare = archive.search(TranscriptQuery.parse("account 994"), 10);
+
+            // Assert
+            assertTrue(archive.getSegmentCount() > 2);
+            assertTrue(archive.getUtteranceCount() / archive.getSegmentCount() > TranscriptIndexBuilder.BLOCK_SIZE);
+            assertEquals(143, phrase.getTotal());
+            assertEquals("my account number is 994", phrase.getHits().get(0).getTranscript());
+            assertEquals(1000, terms.getTotal());
+            assertTrue(terms.isExact());
+            assertEquals(List.of("my account number is 994"), transcripts(rare));
+        }
+    }
+
+    @Test
+    void indexInAnOlderFormatShouldBeRebuiltWhenReopening() throws IOException {
+        // Arrange
+        try (TranscriptArchive archive = TranscriptArchive.open(tempDir, 200)) {
+            for (int i = 0; i < 10; i++) {
+                append(archive, "s" + i, "order " + i + " was delivered late");
+            }
+        }
+        Path index = tempDir.resolve("segment-000000.idx");
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(1).flip(), Integer.BYTES);
+        }
+
+        // Act
+        try (TranscriptArchive reopened = TranscriptArchive.open(tempDir, 200)) {
+
+            // Assert
+            assertTrue(SealedTranscriptIndex.isCurrentVersion(index));
+            assertEquals(10, reopened.search(TranscriptQuery.parse("\"delivered late\""), 100).getTotal());
+        }
+    }
+
+    @Test
+    void segmentTooLargeToMapShouldBeRejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> TranscriptArchive.open(tempDir, TranscriptArchive.MAX_SEGMENT_BYTES + 1));
+    }
+
+    @Test
+    void tornRecordShouldBeDiscardedWhenReopening() throws IOException {
+        // Arrange
+        try (TranscriptArchive archive = TranscriptArchive.open(tempDir, 1 << 20)) {
+            append(archive, "s1", "first complete utterance");
+            append(archive, "s1", "second utterance torn by a crash");
+        }
+        Path log = tempDir.resolve("segment-000000.log");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        // Act
+        try (TranscriptArchive reopened = TranscriptArchive.open(tempDir, 1 << 20)) {
+            append(reopened, "s2", "third utterance");
+
+            // Assert
+            assertEquals(2, reopened.getUtteranceCount());
+            assertEquals(List.of("third utterance", "first complete utterance"),
+                    transcripts(reopened.search(TranscriptQuery.parse("utterance"), 10)));
+        }
+    }
+
+    @Test
+    void queryWithoutWordsShouldBeRejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> TranscriptQuery.parse(" \"\" -- "));
+    }
+}
@@ -0,0 +1,74 @@
+package com.bentham.voiceagent.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TranscriptStitcher class.
+ */
+class TranscriptStitcherTest {
+
+    // One sample per millisecond keeps the segment bounds readable
+    private static final int SAMPLE_RATE = 1000;
+
+    // Two segments cut at 5 s, each overlapping the other by 1 s
+    private static final List<SilenceSplitter.Segment> SEGMENTS = List.of(
+            new SilenceSplitter.Segment(0, 0, 6000, 0, 5000),
+            new SilenceSplitter.Segment(1, 4000, 10000, 5000, 10000));
+
+    private static TimedWord word(String content, double start, double end) {
+        return new TimedWord(content, false, start, end);
+    }
+
+    private static TimedWord punctuation(String content, double at) {
+        return new TimedWord(content, true, at, at);
+    }
+
+    @Test
+    void wordsHeardInTheOverlapShouldBeKeptOnceByTheSegmentOwningThem() {
+        // Arrange
+        List<TimedWord> first = List.of(word("the", 4.2, 4.4), word("quick", 4.5, 4.8),
+                word("brown", 4.9, 5.2), word("fox", 5.3, 5.7), word("ju", 5.8, 6.0));
+        // Times from the start of the second segment, at 4 s
+        List<TimedWord> second = List.of(word("ick", 0.0, 0.1), word("quick", 0.5, 0.8),
+                word("brown", 0.92, 1.22), word("fox", 1.3, 1.7), word("jumps", 1.8, 2.3),
+                punctuation(".", 2.3));
+
+        // Act
+        String transcript = TranscriptStitcher.stitch(SEGMENTS, List.of(first, second), SAMPLE_RATE);
+
+        // Assert
+        assertEquals("the quick brown fox jumps.", transcript);
+    }
+
+    @Test
+    void wordPlacedEitherSideOfTheCutShouldNotBeRepeated() {
+        // Arrange
+        List<TimedWord> first = List.of(word("over", 4.4, 4.7), word("Lazy", 4.8, 5.15));
+        List<TimedWord> second = List.of(word("lazy", 0.9, 1.3), word("dogs", 1.4, 1.8));
+
+        // Act
+        String transcript = TranscriptStitcher.stitch(SEGMENTS, List.of(first, second), SAMPLE_RATE);
+
+        // Assert
+        assertEquals("over Lazy dogs", transcript);
+    }
+
+    @Test
+    void punctuationShouldFollowTheWordBeforeIt() {
+        // Arrange
+        List<TimedWord> first = List.of(word("Well", 4.0, 4.3), punctuation(",", 4.3),
+                word("then", 5.1, 5.4), punctuation("?", 5.4));
+        List<TimedWord> second = List.of(word("then", 1.1, 1.4), punctuation("?", 1.4),
+                word("Yes", 2.0, 2.2), punctuation(".", 2.2));
+
+        // Act
+        String transcript = TranscriptStitcher.stitch(SEGMENTS, List.of(first, second), SAMPLE_RATE);
+
+        // Assert
+        assertEquals("Well, then? Yes.", transcript);
+    }
+}
@@ -0,0 +1,142 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.TranscribeConfig;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the VocabularyCorrector class.
+ */
+class VocabularyCorrectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private VocabularyCorrector corrector;
+
+    @AfterEach
+    void tearDown() {
+        if (corrector != null) {
+            corrector.shutdown();
+        }
+    }
+
+    private static TranscribeConfig config(String dictionary, int reloadIntervalMs) {
+        return new TranscribeConfig() {
+            @Override
+            public Boolean getVocabularyEnabled() {
+                return true;
+            }
+
+            @Override
+            public String getVocabularyDictionary() {
+                return dictionary;
+            }
+
+            @Override
+            public Integer getVocabularyReloadIntervalMs() {
+                return reloadIntervalMs;
+            }
+        };
+    }
+
+    private static void write(Path file, String dictionary, long modifiedMillis) throws IOException {
+        Files.writeString(file, dictionary);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedMillis));
+    }
+
+    @Test
+    void parseShouldMapThePhraseAndEachVariantToThePhrase() throws IOException {
+        // Act
+        Map<String, String> replacements = VocabularyCorrector.parse(new StringReader(
+                "# comment\n\nHabeas Corpus => happy us corpus | habeas  corpse\nin camera\n"));
+
+        // Assert
+        assertEquals(Map.of(
+                "habeas corpus", "Habeas Corpus",
+                "happy us corpus", "Habeas Corpus",
+                "habeas corpse", "Habeas Corpus",
+                "in camera", "in camera"), replacements);
+    }
+
+    @Test
+    void finalResultsShouldBeCorrectedAndPartialResultsLeftAlone() {
+        // Arrange
+        corrector = new VocabularyCorrector(config("classpath:vocabulary/legal.txt", 0), meterRegistry);
+        TranscriptionResult partial = TranscriptionResult.partial("session-1", "a happy us corpus");
+        TranscriptionResult finalResult = TranscriptionResult.final_("session-1", "a happy us corpus petition", 0.9);
+
+        // Act
+        TranscriptionResult correctedPartial = corrector.correct(partial);
+        TranscriptionResult correctedFinal = corrector.correct(finalResult);
+
+        // Assert
+        assertSame(partial, correctedPartial);
+        assertEquals("a habeas corpus petition", correctedFinal.getTranscript());
+        assertFalse(correctedFinal.isPartial());
+        assertEquals(0.9, correctedFinal.getConfidence());
+        assertEquals(1.0, meterRegistry.counter("transcribe.vocabulary.corrections").count());
+    }
+
+    @Test
+    void changedDictionaryFileShouldBeReloaded() throws IOException, InterruptedException {
+        // Arrange
+        Path file = tempDir.resolve("vocabulary.txt");
+        write(file, "voir dire => four dire\n", 1_000_000L);
+        corrector = new VocabularyCorrector(config(file.toString(), 20), meterRegistry);
+        assertEquals("the voir dire began", corrector.correct("the four dire began"));
+
+        // Act
+        write(file, "voir dire => four dire\nres judicata => race judicata\n", 2_000_000L);
+        for (int i = 0; i < 200 && corrector.getPhraseCount() < 4; i++) {
+            Thread.sleep(10);
+        }
+
+        // Assert
+        assertEquals(4, corrector.getPhraseCount());
+        assertEquals("barred by res judicata", corrector.correct("barred by race judicata"));
+    }
+
+    @Test
+    void unreadableDictionaryShouldKeepThePreviousOne() throws IOException, InterruptedException {
+        // Arrange
+        Path file = tempDir.resolve("vocabulary.txt");
+        write(file, "voir dire => four dire\n", 1_000_000L);
+        corrector = new VocabularyCorrector(config(file.toString(), 20), meterRegistry);
+
+        // Act
+        Files.delete(file);
+        for (int i = 0; i < 200
+                && meterRegistry.counter("transcribe.vocabulary.reloads", "outcome", "failure").count() == 0; i++) {
+            Thread.sleep(10);
+        }
+
+        // Assert
+        assertEquals(2, corrector.getPhraseCount());
+        assertEquals("the voir dire began", corrector.correct("the four dire began"));
+    }
+
+    @Test
+    void disabledCorrectorShouldReturnTranscriptsUnchanged() {
+        // Arrange
+        corrector = new VocabularyCorrector(new TranscribeConfig(), meterRegistry);
+
+        // Act & Assert
+        assertEquals("a happy us corpus", corrector.correct("a happy us corpus"));
+        assertEquals(0, corrector.getPhraseCount());
+    }
+}
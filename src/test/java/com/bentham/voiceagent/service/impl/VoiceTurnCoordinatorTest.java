@@ -0,0 +1,441 @@
+package com.bentham.voiceagent.service.impl;
+
+import com.bentham.voiceagent.config.VoiceTurnConfig;
+import com.bentham.voiceagent.model.TranscriptionResult;
+import com.bentham.voiceagent.service.NaturalLanguageService;
+import com.bentham.voiceagent.service.SpeechSynthesisService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the VoiceTurnCoordinator class.
+ */
+class VoiceTurnCoordinatorTest {
+
+    private static final String SESSION_ID = "test-session";
+    private static final String WEBSOCKET_SESSION_ID = "test-websocket-session";
+
+    private FakeNaturalLanguageService naturalLanguageService;
+    private FakeSpeechSynthesisService speechSynthesisService;
+    private List<Message<?>> published;
+    private SessionMessenger sessionMessenger;
+    private SimpleMeterRegistry meterRegistry;
+    private boolean speculationEnabled;
+    private VoiceTurnCoordinator coordinator;
+
+    /**
+     * Records each request and hands back a future the test completes.
+     */
+    private static class FakeNaturalLanguageService implements NaturalLanguageService {
+
+        final List<String> messages = new CopyOnWriteArrayList<>();
+        final List<CompletableFuture<String>> responses = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableFuture<String> processMessage(String message) {
+            CompletableFuture<String> response = new CompletableFuture<>();
+            messages.add(message);
+            responses.add(response);
+            return response;
+        }
+
+        @Override
+        public CompletableFuture<String> processMessage(String message, String conversationId) {
+            return processMessage(message);
+        }
+
+        @Override
+        public CompletableFuture<String> processMessageWithParams(String message, Map<String, Object> parameters) {
+            return processMessage(message);
+        }
+
+        @Override
+        public CompletableFuture<String> processMessageWithParams(String message, String conversationId,
+                                                                  Map<String, Object> parameters) {
+            return processMessage(message);
+        }
+
+        @Override
+        public String createConversation() {
+            return "conversation";
+        }
+
+        @Override
+        public void endConversation(String conversationId) {
+        }
+    }
+
+    /**
+     * Records each synthesis request and hands back a future the test completes.
+     */
+    private static class FakeSpeechSynthesisService implements SpeechSynthesisService {
+
+        final List<String> texts = new CopyOnWriteArrayList<>();
+        final List<CompletableFuture<InputStream>> speech = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeech(String text) {
+            CompletableFuture<InputStream> future = new CompletableFuture<>();
+            texts.add(text);
+            speech.add(future);
+            return future;
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId) {
+            return synthesizeSpeech(text);
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeech(String text, String voiceId, String outputFormat) {
+            return synthesizeSpeech(text);
+        }
+
+        @Override
+        public CompletableFuture<String[]> getAvailableVoices() {
+            return CompletableFuture.completedFuture(new String[0]);
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml) {
+            return synthesizeSpeech(ssml);
+        }
+
+        @Override
+        public CompletableFuture<InputStream> synthesizeSpeechFromSsml(String ssml, String voiceId) {
+            return synthesizeSpeech(ssml);
+        }
+    }
+
+    /**
+     * Audio stream that never ends until it is closed, like a long reply still being synthesized.
+     */
+    private static class EndlessAudioStream extends InputStream {
+
+        final CountDownLatch closed = new CountDownLatch(1);
+        volatile boolean firstChunkRead;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0];
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (!firstChunkRead) {
+                firstChunkRead = true;
+                return length;
+            }
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Stream closed");
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        naturalLanguageService = new FakeNaturalLanguageService();
+        speechSynthesisService = new FakeSpeechSynthesisService();
+        published = new CopyOnWriteArrayList<>();
+        sessionMessenger = new SessionMessenger(
+                new SimpMessagingTemplate((message, timeout) -> published.add(message)));
+        sessionMessenger.bind(SESSION_ID, WEBSOCKET_SESSION_ID);
+        meterRegistry = new SimpleMeterRegistry();
+        speculationEnabled = true;
+        coordinator = createCoordinator();
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.shutdown();
+    }
+
+    private VoiceTurnCoordinator createCoordinator() {
+        VoiceTurnConfig config = new VoiceTurnConfig() {
+            @Override
+            public Boolean getSpeechEnabled() {
+                return true;
+            }
+
+            @Override
+            public Boolean getBargeInEnabled() {
+                return true;
+            }
+
+            @Override
+            public Boolean getSpeculationEnabled() {
+                return speculationEnabled;
+            }
+
+            @Override
+            public Integer getStabilityWindowMs() {
+                return 20;
+            }
+
+            @Override
+            public Integer getMinWords() {
+                return 2;
+            }
+        };
+        return new VoiceTurnCoordinator(naturalLanguageService, speechSynthesisService, config,
+                sessionMessenger, meterRegistry);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition not met in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private double outcomes(String outcome) {
+        return meterRegistry.counter("voice.speculation.outcomes", "outcome", outcome).count();
+    }
+
+    @Test
+    void stablePartialShouldStartSpeculativeRequest() throws InterruptedException {
+        // Act
+        coordinator.onResult(TranscriptionResult.partial(SESSION_ID, "what is the weather"));
+
+        // Assert
+        await(() -> naturalLanguageService.messages.size() == 1);
+        assertEquals("what is the weather", naturalLanguageService.messages.get(0));
+    }
+
+    @Test
+    void matchingFinalShouldReuseSpeculativeResponse() throws InterruptedException {
+        // Arrange
+        coordinator.onResult(TranscriptionResult.partial(SESSION_ID, "what is the weather"));
+        await(() -> naturalLanguageService.messages.size() == 1);
+
+        // Act
+        coordinator.onResult(TranscriptionResult.final_(SESSION_ID, "What is the weather?", 0.95));
+        naturalLanguageService.responses.get(0).complete("It is sunny.");
+
+        // Assert
+        assertEquals(1, naturalLanguageService.messages.size());
+        assertEquals(1, published.size());
+        assertEquals("/user/" + WEBSOCKET_SESSION_ID + "/queue/response",
+                SimpMessageHeaderAccessor.getDestination(published.get(0).getHeaders()));
+        Map<?, ?> payload = (Map<?, ?>) published.get(0).getPayload();
+        assertEquals(SESSION_ID, payload.get("sessionId"));
+        assertEquals("What is the weather?", payload.get("transcript"));
+        assertEquals("It is sunny.", payload.get("response"));
+        assertEquals(1.0, outcomes("hit"));
+        assertEquals(1, meterRegistry.timer("voice.turn.latency", "speculation", "hit").count());
+    }
+
+    @Test
+    void differingFinalShouldCancelSpeculativeRequest() throws InterruptedException {
+        // Arrange
+        coordinator.onResult(TranscriptionResult.partial(SESSION_ID, "what is the weather"));
+        await(() -> naturalLanguageService.messages.size() == 1);
+
+        // Act
+        coordinator.onResult(TranscriptionResult.final_(SESSION_ID, "what is the weather in Leeds", 0.95));
+        naturalLanguageService.responses.get(1).complete("It is raining.");
+
+        // Assert
+        assertTrue(naturalLanguageService.responses.get(0).isCancelled());
+        assertEquals("what is the weather in Leeds", naturalLanguageService.messages.get(1));
+        assertEquals("It is raining.", ((Map<?, ?>) published.get(0).getPayload()).get("response"));
+        assertEquals(1.0, outcomes("miss"));
+    }
+
+    @Test
+    void changedPartialShouldDiscardSpeculativeRequest() throws InterruptedException {
+        // Arrange
+        coordinator.onResult(TranscriptionResult.partial(SESSION_ID, "what is the weather"));
+        await(() -> naturalLanguageService.messages.size() == 1);
+
+        // Act
+        coordinator.onResult(TranscriptionResult.partial(SESSION_ID, "what is the weather in"));
+
+        // Assert
+        assertTrue(naturalLanguageService.responses.get(0).isCancelled());
+        assertEquals(1.0, outcomes("discarded"));
+        await(() -> naturalLanguageService.messages.size() == 2);
+        assertEquals("what is the weather in", naturalLanguageService.messages.get(1));
+    }
+
+    @Test
+    void shortPartialShouldNotStartSpeculativeRequest() throws InterruptedException {
+        // Act
+        coordinator.onResult(TranscriptionResult.partial(SESSION_ID, "hello"));
+        Thread.sleep(100);
+
+        // Assert
+        assertTrue(naturalLanguageService.messages.isEmpty());
+    }
+
+    @Test
+    void disabledSpeculationShouldOnlyProcessFinalTranscript() throws InterruptedException {
+        // Arrange
+        coordinator.shutdown();
+        speculationEnabled = false;
+        coordinator = createCoordinator();
+
+        // Act
+        coordinator.onResult(TranscriptionResult.partial(SESSION_ID, "what is the weather"));
+        Thread.sleep(100);
+        coordinator.onResult(TranscriptionResult.final_(SESSION_ID, "what is the weather", 0.95));
+
+        // Assert
+        assertEquals(1, naturalLanguageService.messages.size());
+        assertEquals(0.0, outcomes("hit"));
+    }
+
+    @Test
+    void closedSessionShouldCancelSpeculativeRequest() throws InterruptedException {
+        // Arrange
+        coordinator.onResult(TranscriptionResult.partial(SESSION_ID, "what is the weather"));
+        await(() -> naturalLanguageService.messages.size() == 1);
+
+        // Act
+        coordinator.onSessionClosed(SESSION_ID);
+
+        // Assert
+        assertTrue(naturalLanguageService.responses.get(0).isCancelled());
+    }
+
+    private long audioBytesPublished() {
+        return published.stream()
+                .filter(message -> message.getPayload() instanceof byte[])
+                .mapToLong(message -> ((byte[]) message.getPayload()).length)
+                .sum();
+    }
+
+    private boolean cancelledEventPublished() {
+        return published.stream()
+                .anyMatch(message -> message.getPayload() instanceof Map<?, ?> payload
+                        && "cancelled".equals(payload.get("event")));
+    }
+
+    @Test
+    void responseShouldBeSynthesizedAndStreamedAsAudio() throws InterruptedException {
+        // Arrange
+        coordinator.onResult(TranscriptionResult.final_(SESSION_ID, "hello", 0.95));
+
+        // Act
+        naturalLanguageService.responses.get(0).complete("Hello, how can I help?");
+        speechSynthesisService.speech.get(0).complete(new ByteArrayInputStream(new byte[20000]));
+
+        // Assert
+        assertEquals("Hello, how can I help?", speechSynthesisService.texts.get(0));
+        await(() -> audioBytesPublished() == 20000);
+    }
+
+    @Test
+    void newSpeechShouldCancelPendingResponse() {
+        // Arrange
+        coordinator.onResult(TranscriptionResult.final_(SESSION_ID, "hello", 0.95));
+
+        // Act
+        coordinator.onResult(TranscriptionResult.partial(SESSION_ID, "wait"));
+
+        // Assert
+        assertTrue(naturalLanguageService.responses.get(0).isCancelled());
+        assertTrue(speechSynthesisService.texts.isEmpty());
+        assertTrue(cancelledEventPublished());
+        assertEquals(1.0, meterRegistry.counter("voice.turn.barge.in").count());
+        assertEquals(1, meterRegistry.timer("voice.turn.cancel.latency").count());
+    }
+
+    @Test
+    void newSpeechShouldCancelPendingSynthesis() {
+        // Arrange
+        coordinator.onResult(TranscriptionResult.final_(SESSION_ID, "hello", 0.95));
+        naturalLanguageService.responses.get(0).complete("Hello, how can I help?");
+
+        // Act
+        coordinator.onResult(TranscriptionResult.partial(SESSION_ID, "wait"));
+
+        // Assert
+        assertTrue(speechSynthesisService.speech.get(0).isCancelled());
+        assertEquals(0, audioBytesPublished());
+    }
+
+    @Test
+    void newSpeechShouldStopAudioBeingStreamed() throws InterruptedException {
+        // Arrange
+        EndlessAudioStream audio = new EndlessAudioStream();
+        coordinator.onResult(TranscriptionResult.final_(SESSION_ID, "hello", 0.95));
+        naturalLanguageService.responses.get(0).complete("Hello, how can I help?");
+        speechSynthesisService.speech.get(0).complete(audio);
+        await(() -> audioBytesPublished() > 0);
+
+        // Act
+        coordinator.onResult(TranscriptionResult.partial(SESSION_ID, "wait"));
+
+        // Assert
+        assertEquals(0, audio.closed.getCount());
+        await(() -> meterRegistry.timer("voice.turn.cancel.latency").count() == 1);
+        long bytesAfterCancel = audioBytesPublished();
+        Thread.sleep(50);
+        assertEquals(bytesAfterCancel, audioBytesPublished());
+    }
+
+    @Test
+    void speechAfterFinishedTurnShouldNotCountAsBargeIn() throws InterruptedException {
+        // Arrange
+        coordinator.onResult(TranscriptionResult.final_(SESSION_ID, "hello", 0.95));
+        naturalLanguageService.responses.get(0).complete("Hi.");
+        speechSynthesisService.speech.get(0).complete(new ByteArrayInputStream(new byte[100]));
+        await(() -> audioBytesPublished() == 100);
+        Thread.sleep(20);
+
+        // Act
+        coordinator.onResult(TranscriptionResult.partial(SESSION_ID, "thanks"));
+
+        // Assert
+        assertFalse(cancelledEventPublished());
+        assertEquals(0.0, meterRegistry.counter("voice.turn.barge.in").count());
+    }
+
+    @Test
+    void responseShouldNotBeSentWithoutAConnection() {
+        // Arrange
+        sessionMessenger.unbind(SESSION_ID, WEBSOCKET_SESSION_ID);
+        coordinator.onResult(TranscriptionResult.final_(SESSION_ID, "hello", 0.95));
+
+        // Act
+        naturalLanguageService.responses.get(0).complete("Hello, how can I help?");
+
+        // Assert
+        assertTrue(published.isEmpty());
+    }
+
+    @Test
+    void normalizeShouldIgnoreCasePunctuationAndSpacing() {
+        assertEquals("what's the weather", VoiceTurnCoordinator.normalize("  What's   the weather?! "));
+    }
+}
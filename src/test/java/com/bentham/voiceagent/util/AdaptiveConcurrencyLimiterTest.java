@@ -0,0 +1,96 @@
+package com.bentham.voiceagent.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the AdaptiveConcurrencyLimiter class.
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void limitShouldGrowAfterALimitsWorthOfSuccesses() throws InterruptedException {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10);
+
+        // Act
+        for (int i = 0; i < 2; i++) {
+            limiter.release(limiter.acquire(), AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        }
+
+        // Assert
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void limitShouldNotExceedMaximum() throws InterruptedException {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(3, 1, 3);
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            limiter.release(limiter.acquire(), AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        }
+
+        // Assert
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void throttleShouldHalveLimitOncePerBatch() throws InterruptedException {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 8);
+        long[] permits = new long[8];
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = limiter.acquire();
+        }
+
+        // Act: every call of the batch is throttled
+        for (long permit : permits) {
+            limiter.release(permit, AdaptiveConcurrencyLimiter.Outcome.THROTTLED);
+        }
+
+        // Assert
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void limitShouldNotFallBelowMinimum() throws InterruptedException {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 2, 8);
+
+        // Act
+        limiter.release(limiter.acquire(), AdaptiveConcurrencyLimiter.Outcome.THROTTLED);
+
+        // Assert
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void acquireShouldWaitForARelease() throws InterruptedException {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+        long held = limiter.acquire();
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // Act
+        waiter.start();
+        Thread.sleep(50);
+        boolean blocked = waiter.isAlive();
+        limiter.release(held, AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+        waiter.join(1000);
+
+        // Assert
+        assertTrue(blocked, "Second acquire should wait while the limit is reached");
+        assertFalse(waiter.isAlive());
+        assertEquals(1, limiter.getInFlight());
+    }
+}
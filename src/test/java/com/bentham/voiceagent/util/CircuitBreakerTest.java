@@ -0,0 +1,112 @@
+package com.bentham.voiceagent.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the CircuitBreaker class.
+ */
+class CircuitBreakerTest {
+
+    @Test
+    void circuitShouldStayClosedBelowMinimumCalls() {
+        // Arrange
+        CircuitBreaker circuit = new CircuitBreaker(10, 5, 0.5, 60000);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            assertTrue(circuit.tryAcquire());
+            circuit.recordFailure();
+        }
+
+        // Assert
+        assertEquals(CircuitBreaker.State.CLOSED, circuit.getState());
+        assertTrue(circuit.tryAcquire());
+    }
+
+    @Test
+    void circuitShouldOpenWhenFailureRateReachesThreshold() {
+        // Arrange
+        CircuitBreaker circuit = new CircuitBreaker(10, 4, 0.5, 60000);
+
+        // Act
+        circuit.recordSuccess();
+        circuit.recordSuccess();
+        circuit.recordFailure();
+        circuit.recordFailure();
+
+        // Assert
+        assertEquals(CircuitBreaker.State.OPEN, circuit.getState());
+        assertFalse(circuit.tryAcquire());
+    }
+
+    @Test
+    void oldOutcomesShouldLeaveTheWindow() {
+        // Arrange
+        CircuitBreaker circuit = new CircuitBreaker(4, 4, 0.5, 60000);
+        circuit.recordFailure();
+        for (int i = 0; i < 3; i++) {
+            circuit.recordSuccess();
+        }
+
+        // Act: the early failure is pushed out, so one more failure is 1 in 4
+        circuit.recordSuccess();
+        circuit.recordFailure();
+
+        // Assert
+        assertEquals(CircuitBreaker.State.CLOSED, circuit.getState());
+    }
+
+    @Test
+    void successfulTrialShouldCloseCircuit() throws InterruptedException {
+        // Arrange
+        CircuitBreaker circuit = new CircuitBreaker(2, 2, 0.5, 10);
+        circuit.recordFailure();
+        circuit.recordFailure();
+        Thread.sleep(20);
+
+        // Act
+        assertTrue(circuit.tryAcquire());
+        assertFalse(circuit.tryAcquire(), "Only one trial call should be let through");
+        circuit.recordSuccess();
+
+        // Assert
+        assertEquals(CircuitBreaker.State.CLOSED, circuit.getState());
+        assertTrue(circuit.tryAcquire());
+    }
+
+    @Test
+    void failedTrialShouldReopenCircuit() throws InterruptedException {
+        // Arrange
+        CircuitBreaker circuit = new CircuitBreaker(2, 2, 0.5, 10);
+        circuit.recordFailure();
+        circuit.recordFailure();
+        Thread.sleep(20);
+
+        // Act
+        assertTrue(circuit.tryAcquire());
+        circuit.recordFailure();
+
+        // Assert
+        assertEquals(CircuitBreaker.State.OPEN, circuit.getState());
+        assertFalse(circuit.tryAcquire());
+    }
+
+    @Test
+    void ignoredTrialShouldLetAnotherTrialThrough() throws InterruptedException {
+        // Arrange
+        CircuitBreaker circuit = new CircuitBreaker(2, 2, 0.5, 10);
+        circuit.recordFailure();
+        circuit.recordFailure();
+        Thread.sleep(20);
+        assertTrue(circuit.tryAcquire());
+
+        // Act
+        circuit.recordIgnored();
+
+        // Assert
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuit.getState());
+        assertTrue(circuit.tryAcquire());
+    }
+}
@@ -0,0 +1,117 @@
+package com.bentham.voiceagent.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the KeyedSerialExecutor class.
+ */
+class KeyedSerialExecutorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void tasksForOneKeyShouldRunInOrderAndOneAtATime() throws InterruptedException {
+        // Arrange
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(500);
+
+        // Act
+        for (int i = 0; i < 500; i++) {
+            int index = i;
+            executor.execute("session", () -> {
+                if (running.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                order.add(index);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        // Assert
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, order.get(i).intValue());
+        }
+    }
+
+    @Test
+    void blockedKeyShouldNotHoldUpOtherKeys() throws InterruptedException {
+        // Arrange
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch othersDone = new CountDownLatch(10);
+        executor.execute("blocked", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            executor.execute("session-" + i, othersDone::countDown);
+        }
+
+        // Assert
+        assertTrue(othersDone.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    void failingTaskShouldNotStopLaterTasksForItsKey() throws InterruptedException {
+        // Arrange
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        CountDownLatch done = new CountDownLatch(1);
+
+        // Act
+        executor.execute("session", () -> {
+            throw new IllegalStateException("boom");
+        });
+        executor.execute("session", done::countDown);
+
+        // Assert
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void countsShouldReturnToZeroOnceIdle() throws InterruptedException {
+        // Arrange
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        CountDownLatch done = new CountDownLatch(100);
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            executor.execute("session-" + i % 7, done::countDown);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        // Assert
+        assertEquals(0, executor.getPendingCount());
+        assertEquals(0, executor.getActiveKeyCount());
+    }
+}
@@ -0,0 +1,113 @@
+package com.bentham.voiceagent.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.bentham.voiceagent.util.SyntheticMp3.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Mp3Frames class.
+ */
+class Mp3FramesTest {
+
+    @Test
+    void parseShouldReturnWholeFrames() throws IOException {
+        // Arrange
+        byte[] mp3 = clip(MONO_24K, 3, 0x11);
+
+        // Act
+        Mp3Frames.Clip clip = Mp3Frames.parse(mp3);
+
+        // Assert
+        assertEquals(3, clip.getFrameCount());
+        assertEquals(24000, clip.getSampleFrequency());
+        assertArrayEquals(mp3, clip.getFrames());
+    }
+
+    @Test
+    void parseShouldSkipId3v2Tag() throws IOException {
+        // Arrange
+        byte[] tag = new byte[10 + 20];
+        tag[0] = 'I';
+        tag[1] = 'D';
+        tag[2] = '3';
+        tag[3] = 4;
+        tag[9] = 20;
+        byte[] frames = clip(MONO_24K, 2, 0x11);
+
+        // Act
+        Mp3Frames.Clip clip = Mp3Frames.parse(concat(tag, frames));
+
+        // Assert
+        assertEquals(2, clip.getFrameCount());
+        assertArrayEquals(frames, clip.getFrames());
+    }
+
+    @Test
+    void parseShouldDropXingFrame() throws IOException {
+        // Arrange
+        byte[] frames = clip(MONO_24K, 2, 0x11);
+
+        // Act
+        Mp3Frames.Clip clip = Mp3Frames.parse(concat(xingFrame(MONO_24K), frames));
+
+        // Assert
+        assertEquals(2, clip.getFrameCount());
+        assertArrayEquals(frames, clip.getFrames());
+    }
+
+    @Test
+    void parseShouldDropTruncatedLastFrame() throws IOException {
+        // Arrange
+        byte[] frames = clip(MONO_24K, 2, 0x11);
+        byte[] partial = Arrays.copyOf(frame(MONO_24K, 0x22), MONO_24K_FRAME_LENGTH / 2);
+
+        // Act
+        Mp3Frames.Clip clip = Mp3Frames.parse(concat(frames, partial));
+
+        // Assert
+        assertEquals(2, clip.getFrameCount());
+        assertArrayEquals(frames, clip.getFrames());
+    }
+
+    @Test
+    void parseShouldDropId3v1Tag() throws IOException {
+        // Arrange
+        byte[] frames = clip(MONO_24K, 2, 0x11);
+        byte[] tag = new byte[128];
+        System.arraycopy("TAG".getBytes(StandardCharsets.US_ASCII), 0, tag, 0, 3);
+
+        // Act
+        Mp3Frames.Clip clip = Mp3Frames.parse(concat(frames, tag));
+
+        // Assert
+        assertEquals(2, clip.getFrameCount());
+        assertArrayEquals(frames, clip.getFrames());
+    }
+
+    @Test
+    void parseShouldReturnNoFramesForEmptyData() throws IOException {
+        // Act
+        Mp3Frames.Clip clip = Mp3Frames.parse(new byte[0]);
+
+        // Assert
+        assertEquals(0, clip.getFrameCount());
+        assertEquals(0, clip.getFrames().length);
+    }
+
+    @Test
+    void clipsWithDifferentSampleRatesShouldNotBeCompatible() throws IOException {
+        // Arrange
+        Mp3Frames.Clip first = Mp3Frames.parse(clip(MONO_24K, 2, 0x11));
+        Mp3Frames.Clip same = Mp3Frames.parse(clip(MONO_24K, 1, 0x22));
+        Mp3Frames.Clip other = Mp3Frames.parse(clip(MONO_22K, 2, 0x11));
+
+        // Assert
+        assertTrue(first.isCompatibleWith(same));
+        assertFalse(first.isCompatibleWith(other));
+    }
+}
@@ -0,0 +1,203 @@
+package com.bentham.voiceagent.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the SingleFlightCache class.
+ */
+class SingleFlightCacheTest {
+
+    /**
+     * Records each call and leaves it to the test to complete.
+     */
+    private static class ManualLoader {
+
+        final List<CompletableFuture<String>> calls = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<String> load(String key) {
+            CompletableFuture<String> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        }
+
+        CompletableFuture<String> last() {
+            return calls.get(calls.size() - 1);
+        }
+    }
+
+    @Test
+    void concurrentRequestsShouldShareOneCall() {
+        // Arrange
+        ManualLoader loader = new ManualLoader();
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(loader::load, 60000, 0, 16, Runnable::run);
+
+        // Act
+        List<CompletableFuture<String>> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(cache.get("voices"));
+        }
+        loader.last().complete("Joanna");
+
+        // Assert
+        assertEquals(1, loader.calls.size());
+        for (CompletableFuture<String> request : requests) {
+            assertEquals("Joanna", request.join());
+        }
+        assertEquals("Joanna", cache.get("voices").join());
+        assertEquals(1, loader.calls.size());
+        SingleFlightCache.Stats stats = cache.getStats().get("voices");
+        assertEquals(11, stats.getRequests());
+        assertEquals(1, stats.getUpstreamCalls());
+        assertEquals(10, stats.getCallsSaved());
+    }
+
+    @Test
+    void cancellingOneRequestShouldNotCancelTheSharedCall() {
+        // Arrange
+        ManualLoader loader = new ManualLoader();
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(loader::load, 60000, 0, 16, Runnable::run);
+        CompletableFuture<String> first = cache.get("voices");
+        CompletableFuture<String> second = cache.get("voices");
+
+        // Act
+        first.cancel(true);
+        loader.last().complete("Joanna");
+
+        // Assert
+        assertFalse(loader.last().isCancelled());
+        assertEquals("Joanna", second.join());
+    }
+
+    @Test
+    void staleValueShouldBeServedWhileOneRefreshRuns() throws InterruptedException {
+        // Arrange
+        ManualLoader loader = new ManualLoader();
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(loader::load, 50, 60000, 16, Runnable::run);
+        cache.get("voices");
+        loader.last().complete("Joanna");
+        Thread.sleep(100);
+
+        // Act
+        String first = cache.get("voices").join();
+        String second = cache.get("voices").join();
+        loader.last().complete("Joanna,Matthew");
+
+        // Assert
+        assertEquals("Joanna", first);
+        assertEquals("Joanna", second);
+        assertEquals(2, loader.calls.size());
+        assertEquals("Joanna,Matthew", cache.get("voices").join());
+        assertEquals(2, loader.calls.size());
+    }
+
+    @Test
+    void expiredValueShouldWaitForANewCall() throws InterruptedException {
+        // Arrange
+        ManualLoader loader = new ManualLoader();
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(loader::load, 20, 20, 16, Runnable::run);
+        cache.get("job-1");
+        loader.last().complete("IN_PROGRESS");
+        Thread.sleep(100);
+
+        // Act
+        CompletableFuture<String> request = cache.get("job-1");
+
+        // Assert
+        assertFalse(request.isDone());
+        loader.last().complete("COMPLETED");
+        assertEquals("COMPLETED", request.join());
+    }
+
+    @Test
+    void failuresShouldNotBeCached() throws InterruptedException {
+        // Arrange
+        ManualLoader loader = new ManualLoader();
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(loader::load, 50, 60000, 16, Runnable::run);
+        CompletableFuture<String> first = cache.get("voices");
+        CompletableFuture<String> second = cache.get("voices");
+
+        // Act
+        loader.last().completeExceptionally(new IllegalStateException("Throttled"));
+
+        // Assert: both shared the failed load, and the next request calls again
+        assertThrows(CompletionException.class, first::join);
+        assertThrows(CompletionException.class, second::join);
+        CompletableFuture<String> retry = cache.get("voices");
+        assertEquals(2, loader.calls.size());
+        loader.last().complete("Joanna");
+        assertEquals("Joanna", retry.join());
+
+        // Act: a failed refresh leaves the stale value in place
+        Thread.sleep(100);
+        cache.get("voices");
+        loader.last().completeExceptionally(new IllegalStateException("Throttled"));
+
+        // Assert
+        assertEquals("Joanna", cache.get("voices").join());
+        assertEquals(4, loader.calls.size());
+    }
+
+    @Test
+    void loaderThatThrowsShouldFailTheRequest() {
+        // Arrange
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(key -> {
+            throw new IllegalStateException("No credentials");
+        }, 60000, 0, 16, Runnable::run);
+
+        // Act
+        CompletableFuture<String> request = cache.get("voices");
+
+        // Assert
+        CompletionException thrown = assertThrows(CompletionException.class, request::join);
+        assertEquals("No credentials", thrown.getCause().getMessage());
+    }
+
+    @Test
+    void fullCacheShouldEvictTheLeastRecentlyLoadedKey() throws InterruptedException {
+        // Arrange
+        ManualLoader loader = new ManualLoader();
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(loader::load, 60000, 0, 2, Runnable::run);
+        cache.get("job-1");
+        loader.last().complete("COMPLETED");
+        Thread.sleep(5);
+        cache.get("job-2");
+        loader.last().complete("COMPLETED");
+
+        // Act
+        cache.get("job-3");
+        loader.last().complete("IN_PROGRESS");
+
+        // Assert
+        assertEquals(2, cache.getStats().size());
+        assertFalse(cache.getStats().containsKey("job-1"));
+        cache.get("job-2");
+        assertEquals(3, loader.calls.size());
+        assertEquals(4, cache.getRequests());
+        assertEquals(3, cache.getUpstreamCalls());
+    }
+
+    @Test
+    void invalidatedKeyShouldBeLoadedAgain() {
+        // Arrange
+        ManualLoader loader = new ManualLoader();
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(loader::load, 60000, 60000, 16, Runnable::run);
+        cache.get("voices");
+        loader.last().complete("Joanna");
+
+        // Act
+        cache.invalidate("voices");
+        CompletableFuture<String> request = cache.get("voices");
+
+        // Assert
+        assertFalse(request.isDone());
+        assertEquals(2, loader.calls.size());
+    }
+}
@@ -0,0 +1,88 @@
+package com.bentham.voiceagent.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds MP3 data from MPEG Layer III frames with valid headers and filler payloads, for tests
+ * that split or join audio without decoding it.
+ */
+public final class SyntheticMp3 {
+
+    /** MPEG-2, Layer III, 48 kbps, 24000 Hz, mono: 144-byte frames, as Polly produces. */
+    public static final int[] MONO_24K = {0xFF, 0xF3, 0x64, 0xC0};
+
+    /** MPEG-2, Layer III, 48 kbps, 22050 Hz, mono: 156-byte frames. */
+    public static final int[] MONO_22K = {0xFF, 0xF3, 0x60, 0xC0};
+
+    public static final int MONO_24K_FRAME_LENGTH = 144;
+
+    private SyntheticMp3() {
+    }
+
+    /**
+     * Builds a single frame.
+     *
+     * @param header the four header bytes
+     * @param fill the payload byte, which must not be 0xFF
+     * @return the frame
+     */
+    public static byte[] frame(int[] header, int fill) {
+        byte[] frame = new byte[frameLength(header)];
+        Arrays.fill(frame, (byte) fill);
+        for (int i = 0; i < 4; i++) {
+            frame[i] = (byte) header[i];
+        }
+        return frame;
+    }
+
+    /**
+     * Builds a clip of identical frames.
+     *
+     * @param header the four header bytes
+     * @param count the number of frames
+     * @param fill the payload byte
+     * @return the clip
+     */
+    public static byte[] clip(int[] header, int count, int fill) {
+        ByteArrayOutputStream clip = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            clip.writeBytes(frame(header, fill));
+        }
+        return clip.toByteArray();
+    }
+
+    /**
+     * Builds a Xing header frame, which encoders put before the audio frames.
+     *
+     * @param header the four header bytes
+     * @return the frame
+     */
+    public static byte[] xingFrame(int[] header) {
+        byte[] frame = frame(header, 0);
+        // Mono MPEG-2 side information is 9 bytes
+        System.arraycopy("Xing".getBytes(StandardCharsets.US_ASCII), 0, frame, 4 + 9, 4);
+        return frame;
+    }
+
+    /**
+     * Joins byte arrays.
+     *
+     * @param parts the arrays to join
+     * @return the joined bytes
+     */
+    public static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            joined.writeBytes(part);
+        }
+        return joined.toByteArray();
+    }
+
+    private static int frameLength(int[] header) {
+        int bitrate = new int[] {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}[header[2] >> 4] * 1000;
+        int frequency = new int[] {22050, 24000, 16000}[(header[2] >> 2) & 3];
+        return 72 * bitrate / frequency + ((header[2] >> 1) & 1);
+    }
+}
@@ -0,0 +1,52 @@
+package com.bentham.voiceagent.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TokenBucket class.
+ */
+class TokenBucketTest {
+
+    @Test
+    void bucketShouldAllowBurstUpToCapacity() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(3, 0.001);
+
+        // Act & Assert
+        assertTrue(bucket.tryConsume(1));
+        assertTrue(bucket.tryConsume(2));
+        assertFalse(bucket.tryConsume(1));
+    }
+
+    @Test
+    void bucketShouldRefillOverTime() throws InterruptedException {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(10, 1000);
+        assertTrue(bucket.tryConsume(10));
+
+        // Act
+        Thread.sleep(20);
+
+        // Assert
+        assertTrue(bucket.tryConsume(10));
+    }
+
+    @Test
+    void failedConsumeShouldNotTakeTokens() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(5, 0.001);
+
+        // Act
+        assertFalse(bucket.tryConsume(6));
+
+        // Assert
+        assertTrue(bucket.tryConsume(5));
+    }
+
+    @Test
+    void constructorShouldRejectNonPositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(5, 0));
+    }
+}
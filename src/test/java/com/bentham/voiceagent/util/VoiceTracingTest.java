@@ -0,0 +1,193 @@
+package com.bentham.voiceagent.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the VoiceTracing class and the FileSpanExporter it is exported with.
+ */
+class VoiceTracingTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    private SdkTracerProvider tracerProvider;
+
+    @AfterEach
+    void tearDown() {
+        VoiceTracing.install(OpenTelemetry.noop());
+        if (tracerProvider != null) {
+            tracerProvider.close();
+        }
+    }
+
+    private Path install(Sampler sampler) {
+        Path file = tempDir.resolve("traces/spans.jsonl");
+        tracerProvider = SdkTracerProvider.builder()
+                .setSampler(sampler)
+                .setResource(Resource.getDefault().merge(Resource.create(
+                        Attributes.of(AttributeKey.stringKey("service.name"), "bentham-voice-api"))))
+                .addSpanProcessor(SimpleSpanProcessor.create(new FileSpanExporter(file)))
+                .build();
+        VoiceTracing.install(OpenTelemetrySdk.builder().setTracerProvider(tracerProvider).build());
+        return file;
+    }
+
+    /**
+     * Reads the exported spans by name.
+     */
+    private static Map<String, JsonNode> readSpans(Path file) throws IOException {
+        Map<String, JsonNode> spans = new HashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            for (JsonNode resourceSpans : MAPPER.readTree(line).get("resourceSpans")) {
+                for (JsonNode scopeSpans : resourceSpans.get("scopeSpans")) {
+                    assertEquals(VoiceTracing.INSTRUMENTATION_NAME, scopeSpans.get("scope").get("name").asText());
+                    for (JsonNode span : scopeSpans.get("spans")) {
+                        spans.put(span.get("name").asText(), span);
+                    }
+                }
+            }
+        }
+        return spans;
+    }
+
+    private static JsonNode attribute(JsonNode node, String key) {
+        for (JsonNode attribute : node.get("attributes")) {
+            if (attribute.get("key").asText().equals(key)) {
+                return attribute.get("value");
+            }
+        }
+        return null;
+    }
+
+    @Test
+    void spansShouldFollowTheSessionAcrossFuturesAndReactorContexts() throws IOException {
+        // Arrange
+        Path file = install(Sampler.alwaysOn());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Span session = VoiceTracing.startSpan("voice.session", SpanKind.INTERNAL);
+        Context context = Context.current().with(session);
+
+        // Act
+        CompletableFuture.supplyAsync(() -> "reply", executor)
+                .whenComplete(context.wrapConsumer((reply, error) ->
+                        VoiceTracing.startSpan("voice.turn", SpanKind.INTERNAL).end()))
+                .join();
+        Flux.deferContextual(reactorContext -> {
+                    VoiceTracing.startAwsSpan("TranscribeStreaming", "StartStreamTranscription",
+                            VoiceTracing.fromReactorContext(reactorContext)).end();
+                    return Flux.just(1);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .contextWrite(VoiceTracing.propagate(context))
+                .blockLast();
+        session.end();
+        executor.shutdown();
+
+        // Assert
+        Map<String, JsonNode> spans = readSpans(file);
+        JsonNode sessionSpan = spans.get("voice.session");
+        JsonNode turn = spans.get("voice.turn");
+        JsonNode stream = spans.get("TranscribeStreaming.StartStreamTranscription");
+        assertNull(sessionSpan.get("parentSpanId"));
+        assertEquals(sessionSpan.get("spanId"), turn.get("parentSpanId"));
+        assertEquals(sessionSpan.get("traceId"), turn.get("traceId"));
+        assertEquals(sessionSpan.get("spanId"), stream.get("parentSpanId"));
+        assertEquals(3, stream.get("kind").asInt());
+        assertEquals("aws-api", attribute(stream, "rpc.system").get("stringValue").asText());
+    }
+
+    @Test
+    void exportedSpansShouldBeOtlpJsonWithTheirAttributesAndStatus() throws IOException {
+        // Arrange
+        Path file = install(Sampler.alwaysOn());
+        Span span = VoiceTracing.startAwsSpan("Polly", "SynthesizeSpeech");
+        VoiceTracing.AudioTally tally = VoiceTracing.tally(span);
+
+        // Act
+        span.setAttribute(VoiceTracing.VOICE_ID, "Joanna");
+        tally.add(3200);
+        tally.add(1600);
+        tally.recordOn(span);
+        VoiceTracing.recordFailure(span, new IllegalStateException("throttled"));
+        span.end();
+
+        // Assert
+        JsonNode exported = readSpans(file).get("Polly.SynthesizeSpeech");
+        assertEquals("Joanna", attribute(exported, "voice.polly.voice_id").get("stringValue").asText());
+        assertEquals("2", attribute(exported, "voice.audio.chunks").get("intValue").asText());
+        assertEquals("4800", attribute(exported, "voice.audio.bytes").get("intValue").asText());
+        assertEquals(2, exported.get("status").get("code").asInt());
+        assertEquals("throttled", exported.get("status").get("message").asText());
+        assertEquals("exception", exported.get("events").get(0).get("name").asText());
+        assertTrue(Long.parseLong(exported.get("endTimeUnixNano").asText())
+                >= Long.parseLong(exported.get("startTimeUnixNano").asText()));
+        JsonNode resource = MAPPER.readTree(Files.readAllLines(file).get(0))
+                .get("resourceSpans").get(0).get("resource");
+        assertEquals("bentham-voice-api", attribute(resource, "service.name").get("stringValue").asText());
+    }
+
+    @Test
+    void cancelledFutureShouldMarkTheSpanCancelledRatherThanFailed() throws IOException {
+        // Arrange
+        Path file = install(Sampler.alwaysOn());
+        Span span = VoiceTracing.startAwsSpan("BedrockRuntime", "Converse");
+        CompletableFuture<String> call = new CompletableFuture<>();
+        VoiceTracing.endWhenComplete(span, call.thenApply(String::trim));
+
+        // Act
+        call.cancel(true);
+
+        // Assert
+        JsonNode exported = readSpans(file).get("BedrockRuntime.Converse");
+        assertTrue(attribute(exported, "voice.cancelled").get("boolValue").asBoolean());
+        assertEquals(0, exported.get("status").get("code").asInt());
+    }
+
+    @Test
+    void unsampledSessionShouldNeitherTallyAudioNorExportSpans() {
+        // Arrange
+        Path file = install(Sampler.parentBased(Sampler.traceIdRatioBased(0.0)));
+
+        // Act
+        Span session = VoiceTracing.startSpan("voice.session", SpanKind.INTERNAL);
+        Span turn = VoiceTracing.startSpan("voice.turn", SpanKind.INTERNAL, Context.current().with(session));
+        VoiceTracing.AudioTally tally = VoiceTracing.tally(session);
+        turn.end();
+        session.end();
+
+        // Assert
+        assertNull(tally);
+        assertFalse(turn.getSpanContext().isSampled());
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,148 @@
+package com.bentham.voiceagent.service.impl;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementation of the spectral kernels, using the widest float vectors the CPU
+ * supports. Only loaded when the {@code jdk.incubator.vector} module is present.
+ */
+final class VectorSpectralKernels implements SpectralKernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // Lane indexes, for ramps
+    private static final FloatVector LANES;
+
+    static {
+        float[] lanes = new float[SPECIES.length()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = i;
+        }
+        LANES = FloatVector.fromArray(SPECIES, lanes, 0);
+    }
+
+    /**
+     * Gets the number of floats processed per vector.
+     *
+     * @return the vector length
+     */
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public void multiply(float[] a, float[] b, float[] out, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            va.mul(FloatVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void multiplyAdd(float[] a, float[] b, float[] acc, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            va.fma(FloatVector.fromArray(SPECIES, b, i), FloatVector.fromArray(SPECIES, acc, i)).intoArray(acc, i);
+        }
+        for (; i < n; i++) {
+            acc[i] += a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void power(float[] re, float[] im, float[] out, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            FloatVector vr = FloatVector.fromArray(SPECIES, re, i);
+            FloatVector vi = FloatVector.fromArray(SPECIES, im, i);
+            vr.fma(vr, vi.mul(vi)).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = re[i] * re[i] + im[i] * im[i];
+        }
+    }
+
+    @Override
+    public void trackNoise(float[] power, float[] noise, float rise, float fall, int n) {
+        FloatVector riseRate = FloatVector.broadcast(SPECIES, rise);
+        FloatVector fallRate = FloatVector.broadcast(SPECIES, fall);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            FloatVector vp = FloatVector.fromArray(SPECIES, power, i);
+            FloatVector vn = FloatVector.fromArray(SPECIES, noise, i);
+            VectorMask<Float> falling = vp.compare(VectorOperators.LT, vn);
+            FloatVector rate = riseRate.blend(fallRate, falling);
+            vp.sub(vn).fma(rate, vn).intoArray(noise, i);
+        }
+        for (; i < n; i++) {
+            float rate = power[i] < noise[i] ? fall : rise;
+            noise[i] += (power[i] - noise[i]) * rate;
+        }
+    }
+
+    @Override
+    public void suppressionGain(float[] power, float[] noise, float[] gain, float overSubtraction, float floor,
+                                float release, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            FloatVector vp = FloatVector.fromArray(SPECIES, power, i).add(AudioPreprocessor.EPSILON);
+            FloatVector ratio = FloatVector.fromArray(SPECIES, noise, i).div(vp);
+            FloatVector g = ratio.mul(-overSubtraction).add(1f).max(floor);
+            g.max(FloatVector.fromArray(SPECIES, gain, i).mul(release)).intoArray(gain, i);
+        }
+        for (; i < n; i++) {
+            float g = Math.max(floor, 1f - overSubtraction * noise[i] / (power[i] + AudioPreprocessor.EPSILON));
+            gain[i] = Math.max(g, gain[i] * release);
+        }
+    }
+
+    @Override
+    public void applyGain(float[] re, float[] im, float[] gain, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            FloatVector g = FloatVector.fromArray(SPECIES, gain, i);
+            FloatVector.fromArray(SPECIES, re, i).mul(g).intoArray(re, i);
+            FloatVector.fromArray(SPECIES, im, i).mul(g).intoArray(im, i);
+        }
+        for (; i < n; i++) {
+            re[i] *= gain[i];
+            im[i] *= gain[i];
+        }
+    }
+
+    @Override
+    public float sumOfSquares(float[] x, int n) {
+        FloatVector sums = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            FloatVector v = FloatVector.fromArray(SPECIES, x, i);
+            sums = v.fma(v, sums);
+        }
+        float sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += x[i] * x[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void ramp(float[] x, float start, float step, float limit, int n) {
+        FloatVector offsets = LANES.mul(step);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            FloatVector g = offsets.add(start + step * i);
+            FloatVector.fromArray(SPECIES, x, i).mul(g).max(-limit).min(limit).intoArray(x, i);
+        }
+        for (; i < n; i++) {
+            x[i] = Math.max(-limit, Math.min(limit, x[i] * (start + step * i)));
+        }
+    }
+}